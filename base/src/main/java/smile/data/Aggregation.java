@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.data;
+
+/**
+ * An aggregate function on a column of grouped data frame.
+ * Nulls and NaN are ignored by all aggregate functions.
+ *
+ * @param function the aggregate function.
+ * @param column the column to aggregate, or null for counting rows.
+ * @param name the name of output column.
+ *
+ * @author Haifeng Li
+ */
+public record Aggregation(Function function, String column, String name) {
+    /** Aggregate functions. */
+    public enum Function {
+        /** The number of non-null values, or of rows if no column is given. */
+        COUNT,
+        /** The sum of values. */
+        SUM,
+        /** The mean of values. */
+        MEAN,
+        /** The minimum of values. */
+        MIN,
+        /** The maximum of values. */
+        MAX,
+        /** The sample variance of values. */
+        VAR,
+        /** The sample standard deviation of values. */
+        SD
+    }
+
+    /**
+     * Constructor.
+     * @param function the aggregate function.
+     * @param column the column to aggregate, or null for counting rows.
+     * @param name the name of output column.
+     */
+    public Aggregation {
+        if (column == null && function != Function.COUNT) {
+            throw new IllegalArgumentException(String.format("%s requires a column", function));
+        }
+
+        if (name == null) {
+            name = column == null ? "count" : String.format("%s(%s)", function.name().toLowerCase(), column);
+        }
+    }
+
+    /**
+     * Returns a copy of aggregation with a new output column name.
+     * @param name the name of output column.
+     * @return the aggregation.
+     */
+    public Aggregation as(String name) {
+        return new Aggregation(function, column, name);
+    }
+
+    /**
+     * Returns the aggregation that counts the rows of groups.
+     * @return the aggregation.
+     */
+    public static Aggregation count() {
+        return new Aggregation(Function.COUNT, null, null);
+    }
+
+    /**
+     * Returns the aggregation that counts the non-null values of a column.
+     * @param column the column name.
+     * @return the aggregation.
+     */
+    public static Aggregation count(String column) {
+        return new Aggregation(Function.COUNT, column, null);
+    }
+
+    /**
+     * Returns the aggregation of sum. The sum of integral columns
+     * is an exact long value.
+     * @param column the column name.
+     * @return the aggregation.
+     */
+    public static Aggregation sum(String column) {
+        return new Aggregation(Function.SUM, column, null);
+    }
+
+    /**
+     * Returns the aggregation of mean.
+     * @param column the column name.
+     * @return the aggregation.
+     */
+    public static Aggregation mean(String column) {
+        return new Aggregation(Function.MEAN, column, null);
+    }
+
+    /**
+     * Returns the aggregation of minimum.
+     * @param column the column name.
+     * @return the aggregation.
+     */
+    public static Aggregation min(String column) {
+        return new Aggregation(Function.MIN, column, null);
+    }
+
+    /**
+     * Returns the aggregation of maximum.
+     * @param column the column name.
+     * @return the aggregation.
+     */
+    public static Aggregation max(String column) {
+        return new Aggregation(Function.MAX, column, null);
+    }
+
+    /**
+     * Returns the aggregation of sample variance.
+     * @param column the column name.
+     * @return the aggregation.
+     */
+    public static Aggregation var(String column) {
+        return new Aggregation(Function.VAR, column, null);
+    }
+
+    /**
+     * Returns the aggregation of sample standard deviation.
+     * @param column the column name.
+     * @return the aggregation.
+     */
+    public static Aggregation sd(String column) {
+        return new Aggregation(Function.SD, column, null);
+    }
+}
@@ -1035,6 +1035,60 @@ public interface DataFrame extends Iterable<Tuple> {
      */
     DataFrame union(DataFrame... dataframes);
 
+    /**
+     * Groups the rows by the values of key columns.
+     * @param columns the key columns.
+     * @return the grouped data frame.
+     */
+    default GroupBy groupBy(String... columns) {
+        return new GroupBy(this, columns);
+    }
+
+    /**
+     * Returns a new DataFrame sorted by the given columns in ascending order.
+     * The sort is stable and nulls (or NaN) are at the end.
+     * @param columns the sort columns.
+     * @return a new DataFrame sorted by the given columns.
+     */
+    default DataFrame sortBy(String... columns) {
+        boolean[] ascending = new boolean[columns.length];
+        Arrays.fill(ascending, true);
+        return sortBy(columns, ascending);
+    }
+
+    /**
+     * Returns a new DataFrame sorted by the given columns.
+     * The sort is stable and nulls (or NaN) are at the end.
+     * @param columns the sort columns.
+     * @param ascending the sort order of each column.
+     * @return a new DataFrame sorted by the given columns.
+     */
+    default DataFrame sortBy(String[] columns, boolean[] ascending) {
+        return of(Keys.order(this, columns, ascending));
+    }
+
+    /**
+     * Inner joins with another data frame by hash join.
+     * @param other the right data frame.
+     * @param keys the key columns that both data frames have.
+     * @return the joined data frame.
+     */
+    default DataFrame join(DataFrame other, String... keys) {
+        return Join.hash(this, other, Join.Type.INNER, keys);
+    }
+
+    /**
+     * Joins with another data frame by hash join.
+     * @param other the right data frame.
+     * @param type the type of join.
+     * @param keys the key columns that both data frames have.
+     * @return the joined data frame.
+     * @see Join
+     */
+    default DataFrame join(DataFrame other, Join.Type type, String... keys) {
+        return Join.hash(this, other, type, keys);
+    }
+
     /**
      * Returns a new DataFrame with given columns converted to nominal.
      *
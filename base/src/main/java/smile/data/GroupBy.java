@@ -0,0 +1,413 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.data;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import smile.data.type.DataType;
+import smile.data.vector.*;
+
+/**
+ * A data frame grouped by the values of key columns. The groups are
+ * ordered by the keys and the null key, if any, is the last group.
+ * The rows of groups are aggregated column by column on the primitive
+ * arrays of vectors. When there are few groups relative to the rows,
+ * the rows are partitioned into chunks that are aggregated in parallel
+ * and the partial results are merged. Otherwise, the rows are bucketed
+ * by group and the groups are aggregated in parallel.
+ *
+ * @author Haifeng Li
+ */
+public class GroupBy {
+    /** The data frame. */
+    private final DataFrame data;
+    /** The key columns. */
+    private final String[] keys;
+    /** The group index of rows. */
+    private final int[] group;
+    /** The number of groups. */
+    private final int size;
+    /** The first row of each group. */
+    private final int[] first;
+    /** The row index of groups, sorted by group. */
+    private int[] rows;
+    /** The offsets of groups in the row index. */
+    private int[] offsets;
+
+    /**
+     * Constructor.
+     * @param data the data frame.
+     * @param keys the key columns.
+     */
+    GroupBy(DataFrame data, String... keys) {
+        if (keys.length == 0) {
+            throw new IllegalArgumentException("No group by columns");
+        }
+
+        this.data = data;
+        this.keys = keys;
+
+        BaseVector[] columns = Arrays.stream(keys).map(data::column).toArray(BaseVector[]::new);
+        Keys codes = Keys.of(true, columns);
+        this.group = codes.codes[0];
+        this.size = codes.size;
+
+        first = new int[size];
+        Arrays.fill(first, -1);
+        for (int i = 0; i < group.length; i++) {
+            int g = group[i];
+            if (first[g] < 0) first[g] = i;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GroupBy(%s): %d groups", String.join(", ", keys), size);
+    }
+
+    /**
+     * Returns the number of groups.
+     * @return the number of groups.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the group index of a row.
+     * @param i the row index.
+     * @return the group index.
+     */
+    public int group(int i) {
+        return group[i];
+    }
+
+    /**
+     * Returns the key values of groups, one row per group.
+     * @return the key values of groups.
+     */
+    public DataFrame keys() {
+        return DataFrame.of(Arrays.stream(keys).map(key -> data.column(key).get(first)).toArray(BaseVector[]::new));
+    }
+
+    /**
+     * Returns the rows of a group.
+     * @param g the group index.
+     * @return the rows of group.
+     */
+    public DataFrame get(int g) {
+        index();
+        return data.of(Arrays.copyOfRange(rows, offsets[g], offsets[g+1]));
+    }
+
+    /**
+     * Returns the number of rows in each group.
+     * @return the data frame of group keys and the count column.
+     */
+    public DataFrame count() {
+        return agg(Aggregation.count());
+    }
+
+    /**
+     * Aggregates the groups.
+     * @param aggregations the aggregations.
+     * @return the data frame of group keys and aggregated columns.
+     */
+    public DataFrame agg(Aggregation... aggregations) {
+        int n = group.length;
+        int chunks = Math.max(1, Math.min(n / 4096, 4 * ForkJoinPool.getCommonPoolParallelism()));
+        boolean partitioned = (long) size * chunks * 4 <= n;
+        if (!partitioned) index();
+
+        BaseVector[] vectors = new BaseVector[keys.length + aggregations.length];
+        for (int j = 0; j < keys.length; j++) {
+            vectors[j] = data.column(keys[j]).get(first);
+        }
+
+        for (int j = 0; j < aggregations.length; j++) {
+            Aggregation aggregation = aggregations[j];
+            // The column is extracted once and shared by the chunk states.
+            Values values = values(aggregation);
+            State state;
+            if (partitioned) {
+                State[] states = IntStream.range(0, chunks).parallel().mapToObj(c -> {
+                    State s = new State(aggregation, values);
+                    int from = (int) ((long) n * c / chunks);
+                    int to = (int) ((long) n * (c + 1) / chunks);
+                    for (int i = from; i < to; i++) {
+                        s.add(group[i], i);
+                    }
+                    return s;
+                }).toArray(State[]::new);
+
+                state = states[0];
+                for (int c = 1; c < chunks; c++) {
+                    state.merge(states[c]);
+                }
+            } else {
+                State s = new State(aggregation, values);
+                IntStream.range(0, size).parallel().forEach(g -> {
+                    for (int k = offsets[g]; k < offsets[g+1]; k++) {
+                        s.add(g, rows[k]);
+                    }
+                });
+                state = s;
+            }
+
+            vectors[keys.length + j] = state.vector(aggregation.name());
+        }
+
+        return DataFrame.of(vectors);
+    }
+
+    /** Buckets the rows by group with counting sort. */
+    private synchronized void index() {
+        if (rows != null) return;
+
+        int[] offsets = new int[size + 1];
+        for (int g : group) {
+            offsets[g + 1]++;
+        }
+
+        for (int g = 0; g < size; g++) {
+            offsets[g + 1] += offsets[g];
+        }
+
+        int[] pos = Arrays.copyOf(offsets, size);
+        int[] rows = new int[group.length];
+        for (int i = 0; i < group.length; i++) {
+            rows[pos[group[i]]++] = i;
+        }
+
+        this.offsets = offsets;
+        this.rows = rows;
+    }
+
+    /**
+     * The column values of an aggregation. Primitive integral columns
+     * are in int or long so that sum, min and max are exact. Other
+     * numeric columns are in double with NaN as null. All arrays are
+     * null when counting rows.
+     *
+     * @param x floating values.
+     * @param ix int values.
+     * @param lx long values.
+     */
+    private record Values(double[] x, int[] ix, long[] lx) {
+
+    }
+
+    /**
+     * Returns the column values of an aggregation, which reuses the
+     * array of vector if possible.
+     * @param aggregation the aggregation.
+     * @return the column values.
+     */
+    private Values values(Aggregation aggregation) {
+        String column = aggregation.column();
+        if (column == null) {
+            return new Values(null, null, null);
+        }
+
+        BaseVector vector = data.column(column);
+        DataType type = vector.type();
+        if (type.isPrimitive() && type.isIntegral()) {
+            Object array = vector.array();
+            if (array instanceof long[] values) return new Values(null, null, values);
+            if (array instanceof int[] values) return new Values(null, values, null);
+            return new Values(null, vector.toIntArray(), null);
+        } else if (type.isNumeric()) {
+            return new Values(vector instanceof DoubleVector values ? values.array() : vector.toDoubleArray(), null, null);
+        } else if (aggregation.function() == Aggregation.Function.COUNT) {
+            double[] x = new double[vector.size()];
+            for (int i = 0; i < x.length; i++) {
+                x[i] = vector.get(i) == null ? Double.NaN : 0.0;
+            }
+            return new Values(x, null, null);
+        } else {
+            throw new IllegalArgumentException(String.format("%s of non-numeric column %s: %s", aggregation.function(), column, type));
+        }
+    }
+
+    /**
+     * The aggregation state of groups. Integral values are aggregated
+     * in long so that sum, min and max are exact. Other numeric values
+     * are aggregated in double with NaN as null.
+     */
+    private class State {
+        /** The aggregate function. */
+        final Aggregation.Function function;
+        /** Floating values. */
+        final double[] x;
+        /** Int values. */
+        final int[] ix;
+        /** Long values. */
+        final long[] lx;
+        /** Whether the values are integral. */
+        final boolean integral;
+        /** The number of non-null values. */
+        final long[] count;
+        /** The sum, min, max or mean in double. */
+        final double[] a;
+        /** The sum of squared deviations. */
+        final double[] m2;
+        /** The sum, min or max in long. */
+        final long[] la;
+
+        /**
+         * Constructor.
+         * @param aggregation the aggregation.
+         * @param values the column values shared by the states of chunks.
+         */
+        State(Aggregation aggregation, Values values) {
+            function = aggregation.function();
+            x = values.x();
+            ix = values.ix();
+            lx = values.lx();
+            integral = ix != null || lx != null;
+
+            count = new long[size];
+            boolean floating = !integral || function == Aggregation.Function.VAR || function == Aggregation.Function.SD;
+            a = floating ? new double[size] : null;
+            la = floating ? null : new long[size];
+            m2 = function == Aggregation.Function.VAR || function == Aggregation.Function.SD ? new double[size] : null;
+        }
+
+        /**
+         * Adds a row to its group.
+         * @param g the group index.
+         * @param i the row index.
+         */
+        void add(int g, int i) {
+            if (x != null) {
+                double v = x[i];
+                if (!Double.isNaN(v)) add(g, v);
+            } else if (ix != null) {
+                add(g, (long) ix[i]);
+            } else if (lx != null) {
+                add(g, lx[i]);
+            } else {
+                count[g]++;
+            }
+        }
+
+        /** Adds a floating value to a group. */
+        private void add(int g, double v) {
+            long n = ++count[g];
+            switch (function) {
+                case SUM, MEAN -> a[g] += v;
+                case MIN -> {
+                    if (n == 1 || v < a[g]) a[g] = v;
+                }
+                case MAX -> {
+                    if (n == 1 || v > a[g]) a[g] = v;
+                }
+                case VAR, SD -> {
+                    // Welford's online algorithm
+                    double delta = v - a[g];
+                    a[g] += delta / n;
+                    m2[g] += delta * (v - a[g]);
+                }
+            }
+        }
+
+        /** Adds an integral value to a group. */
+        private void add(int g, long v) {
+            long n = ++count[g];
+            switch (function) {
+                case SUM, MEAN -> la[g] += v;
+                case MIN -> {
+                    if (n == 1 || v < la[g]) la[g] = v;
+                }
+                case MAX -> {
+                    if (n == 1 || v > la[g]) la[g] = v;
+                }
+                case VAR, SD -> {
+                    double delta = v - a[g];
+                    a[g] += delta / n;
+                    m2[g] += delta * (v - a[g]);
+                }
+            }
+        }
+
+        /**
+         * Merges the partial aggregation of other rows.
+         * @param other the partial aggregation.
+         */
+        void merge(State other) {
+            for (int g = 0; g < size; g++) {
+                long nb = other.count[g];
+                if (nb == 0) continue;
+
+                long na = count[g];
+                count[g] = na + nb;
+                if (function == Aggregation.Function.COUNT) continue;
+
+                if (na == 0) {
+                    if (a != null) a[g] = other.a[g];
+                    if (la != null) la[g] = other.la[g];
+                    if (m2 != null) m2[g] = other.m2[g];
+                    continue;
+                }
+
+                switch (function) {
+                    case SUM, MEAN -> {
+                        if (la != null) la[g] += other.la[g];
+                        else a[g] += other.a[g];
+                    }
+                    case MIN -> {
+                        if (la != null) la[g] = Math.min(la[g], other.la[g]);
+                        else a[g] = Math.min(a[g], other.a[g]);
+                    }
+                    case MAX -> {
+                        if (la != null) la[g] = Math.max(la[g], other.la[g]);
+                        else a[g] = Math.max(a[g], other.a[g]);
+                    }
+                    case VAR, SD -> {
+                        // Chan's parallel algorithm
+                        double n = na + nb;
+                        double delta = other.a[g] - a[g];
+                        a[g] += delta * nb / n;
+                        m2[g] += other.m2[g] + delta * delta * na * nb / n;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the aggregated values.
+         * @param name the vector name.
+         * @return the aggregated values.
+         */
+        BaseVector vector(String name) {
+            return switch (function) {
+                case COUNT -> LongVector.of(name, count);
+                case SUM -> la != null ? LongVector.of(name, la) : DoubleVector.of(name, a);
+                case MEAN -> DoubleVector.of(name, IntStream.range(0, size).mapToDouble(g ->
+                        count[g] == 0 ? Double.NaN : (la != null ? la[g] : a[g]) / count[g]).toArray());
+                case MIN, MAX -> la != null ? LongVector.of(name, la) : DoubleVector.of(name,
+                        IntStream.range(0, size).mapToDouble(g -> count[g] == 0 ? Double.NaN : a[g]).toArray());
+                case VAR -> DoubleVector.of(name, IntStream.range(0, size).mapToDouble(g ->
+                        count[g] < 2 ? Double.NaN : m2[g] / (count[g] - 1)).toArray());
+                case SD -> DoubleVector.of(name, IntStream.range(0, size).mapToDouble(g ->
+                        count[g] < 2 ? Double.NaN : Math.sqrt(m2[g] / (count[g] - 1))).toArray());
+            };
+        }
+    }
+}
@@ -0,0 +1,455 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.data;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.stream.IntStream;
+import smile.data.type.DataType;
+import smile.data.type.StructField;
+import smile.data.vector.*;
+
+/**
+ * Relational joins of data frames on key columns of the same names.
+ * The output contains the key columns, the other columns of left data
+ * frame and then the other columns of right data frame. The right
+ * columns with the same names as left columns are suffixed with
+ * {@code _right}. The key columns are coalesced from both sides.
+ * The missing values of unmatched rows in outer joins are null, or
+ * NaN for floating columns. Null or NaN keys never match.
+ * <p>
+ * Both algorithms encode the keys of two data frames with a shared
+ * dictionary of dense codes. The hash join buckets the right rows by
+ * key and probes them with the left rows in parallel. The output keeps
+ * the order of left rows, followed by unmatched right rows. The
+ * sort-merge join sorts both sides by key with counting sort on the
+ * order-preserving codes and merges them. The output is ordered by
+ * keys with null keys at the end.
+ *
+ * @author Haifeng Li
+ */
+public final class Join {
+    /** Private constructor to prevent instance creation. */
+    private Join() {
+
+    }
+
+    /** The type of join. */
+    public enum Type {
+        /** Returns the rows that have matching keys in both data frames. */
+        INNER,
+        /** Returns all rows of left data frame and the matching rows of right data frame. */
+        LEFT,
+        /** Returns all rows of right data frame and the matching rows of left data frame. */
+        RIGHT,
+        /** Returns all rows of both data frames. */
+        OUTER;
+
+        /** Returns true if unmatched left rows are kept. */
+        boolean left() {
+            return this == LEFT || this == OUTER;
+        }
+
+        /** Returns true if unmatched right rows are kept. */
+        boolean right() {
+            return this == RIGHT || this == OUTER;
+        }
+    }
+
+    /**
+     * Hash join of two data frames.
+     * @param left the left data frame.
+     * @param right the right data frame.
+     * @param type the type of join.
+     * @param keys the key columns.
+     * @return the joined data frame.
+     */
+    public static DataFrame hash(DataFrame left, DataFrame right, Type type, String... keys) {
+        Keys codes = encode(left, right, keys);
+        int[] lc = codes.codes[0];
+        int[] rc = codes.codes[1];
+        int size = codes.size;
+
+        int[] offsets = new int[size + 2];
+        int[] rows = bucket(rc, size, offsets);
+
+        // The number of output rows of each left row.
+        int nl = lc.length;
+        int[] start = new int[nl + 1];
+        IntStream.range(0, nl).parallel().forEach(i -> {
+            int c = lc[i];
+            int m = c >= 0 ? offsets[c+1] - offsets[c] : 0;
+            start[i + 1] = m == 0 && type.left() ? 1 : m;
+        });
+
+        long total = 0;
+        for (int i = 0; i < nl; i++) {
+            total += start[i + 1];
+            if (total > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many rows of join: " + total);
+            }
+            start[i + 1] = (int) total;
+        }
+
+        int[] li = new int[(int) total];
+        int[] ri = new int[(int) total];
+        IntStream.range(0, nl).parallel().forEach(i -> {
+            int pos = start[i];
+            if (pos == start[i + 1]) return;
+
+            int c = lc[i];
+            if (c < 0 || offsets[c] == offsets[c+1]) {
+                li[pos] = i;
+                ri[pos] = -1;
+            } else {
+                for (int k = offsets[c]; k < offsets[c+1]; k++, pos++) {
+                    li[pos] = i;
+                    ri[pos] = rows[k];
+                }
+            }
+        });
+
+        if (type.right()) {
+            boolean[] matched = new boolean[size];
+            for (int c : lc) {
+                if (c >= 0) matched[c] = true;
+            }
+
+            int[] unmatched = IntStream.range(0, rc.length).filter(r -> rc[r] < 0 || !matched[rc[r]]).toArray();
+            int n = li.length;
+            int[] lj = Arrays.copyOf(li, n + unmatched.length);
+            int[] rj = Arrays.copyOf(ri, n + unmatched.length);
+            Arrays.fill(lj, n, lj.length, -1);
+            System.arraycopy(unmatched, 0, rj, n, unmatched.length);
+            return select(left, right, keys, lj, rj);
+        }
+
+        return select(left, right, keys, li, ri);
+    }
+
+    /**
+     * Sort-merge join of two data frames.
+     * @param left the left data frame.
+     * @param right the right data frame.
+     * @param type the type of join.
+     * @param keys the key columns.
+     * @return the joined data frame.
+     */
+    public static DataFrame sortMerge(DataFrame left, DataFrame right, Type type, String... keys) {
+        Keys codes = encode(left, right, keys);
+        int size = codes.size;
+
+        int[] lo = new int[size + 2];
+        int[] lrows = bucket(codes.codes[0], size, lo);
+        int[] ro = new int[size + 2];
+        int[] rrows = bucket(codes.codes[1], size, ro);
+
+        long total = 0;
+        for (int c = 0; c < size; c++) {
+            int nl = lo[c+1] - lo[c];
+            int nr = ro[c+1] - ro[c];
+            if (nl > 0 && nr > 0) total += (long) nl * nr;
+            else if (nl > 0 && type.left()) total += nl;
+            else if (nr > 0 && type.right()) total += nr;
+        }
+
+        // The rows of null keys are in the last bucket.
+        if (type.left()) total += lo[size+1] - lo[size];
+        if (type.right()) total += ro[size+1] - ro[size];
+
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many rows of join: " + total);
+        }
+
+        int[] li = new int[(int) total];
+        int[] ri = new int[(int) total];
+        int pos = 0;
+        for (int c = 0; c < size; c++) {
+            int nl = lo[c+1] - lo[c];
+            int nr = ro[c+1] - ro[c];
+            if (nl > 0 && nr > 0) {
+                for (int i = lo[c]; i < lo[c+1]; i++) {
+                    for (int j = ro[c]; j < ro[c+1]; j++, pos++) {
+                        li[pos] = lrows[i];
+                        ri[pos] = rrows[j];
+                    }
+                }
+            } else if (nl > 0 && type.left()) {
+                for (int i = lo[c]; i < lo[c+1]; i++, pos++) {
+                    li[pos] = lrows[i];
+                    ri[pos] = -1;
+                }
+            } else if (nr > 0 && type.right()) {
+                for (int j = ro[c]; j < ro[c+1]; j++, pos++) {
+                    li[pos] = -1;
+                    ri[pos] = rrows[j];
+                }
+            }
+        }
+
+        if (type.left()) {
+            for (int i = lo[size]; i < lo[size+1]; i++, pos++) {
+                li[pos] = lrows[i];
+                ri[pos] = -1;
+            }
+        }
+
+        if (type.right()) {
+            for (int j = ro[size]; j < ro[size+1]; j++, pos++) {
+                li[pos] = -1;
+                ri[pos] = rrows[j];
+            }
+        }
+
+        return select(left, right, keys, li, ri);
+    }
+
+    /**
+     * Encodes the keys of two data frames with a shared dictionary.
+     * @param left the left data frame.
+     * @param right the right data frame.
+     * @param keys the key columns.
+     * @return the key codes.
+     */
+    private static Keys encode(DataFrame left, DataFrame right, String[] keys) {
+        if (keys.length == 0) {
+            throw new IllegalArgumentException("No join columns");
+        }
+
+        BaseVector[] lk = Arrays.stream(keys).map(left::column).toArray(BaseVector[]::new);
+        BaseVector[] rk = Arrays.stream(keys).map(right::column).toArray(BaseVector[]::new);
+        return Keys.of(false, lk, rk);
+    }
+
+    /**
+     * Buckets the rows by key code with counting sort.
+     * The rows of null keys (code -1) are in the last bucket.
+     * @param codes the key codes.
+     * @param size the number of distinct keys.
+     * @param offsets the output offsets of buckets, of size + 2 length.
+     * @return the rows sorted by key code.
+     */
+    private static int[] bucket(int[] codes, int size, int[] offsets) {
+        for (int c : codes) {
+            offsets[(c < 0 ? size : c) + 1]++;
+        }
+
+        for (int c = 0; c <= size; c++) {
+            offsets[c + 1] += offsets[c];
+        }
+
+        int[] pos = Arrays.copyOf(offsets, size + 1);
+        int[] rows = new int[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            int c = codes[i];
+            rows[pos[c < 0 ? size : c]++] = i;
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the joined data frame.
+     * @param left the left data frame.
+     * @param right the right data frame.
+     * @param keys the key columns.
+     * @param li the left row index of output, -1 for missing.
+     * @param ri the right row index of output, -1 for missing.
+     * @return the joined data frame.
+     */
+    private static DataFrame select(DataFrame left, DataFrame right, String[] keys, int[] li, int[] ri) {
+        HashSet<String> keySet = new HashSet<>(Arrays.asList(keys));
+        HashSet<String> names = new HashSet<>(Arrays.asList(left.names()));
+        String[] leftColumns = Arrays.stream(left.names()).filter(name -> !keySet.contains(name)).toArray(String[]::new);
+        String[] rightColumns = Arrays.stream(right.names()).filter(name -> !keySet.contains(name)).toArray(String[]::new);
+
+        BaseVector[] vectors = new BaseVector[keys.length + leftColumns.length + rightColumns.length];
+        int j = 0;
+        if (Arrays.stream(li).allMatch(i -> i >= 0)) {
+            for (String key : keys) {
+                vectors[j++] = left.column(key).get(li);
+            }
+        } else {
+            // The keys of unmatched right rows are taken from the right.
+            int[] index = new int[li.length];
+            for (int t = 0; t < index.length; t++) {
+                index[t] = li[t] >= 0 ? li[t] : -2 - ri[t];
+            }
+
+            for (String key : keys) {
+                BaseVector lv = left.column(key);
+                vectors[j++] = gather(lv.field(), lv, right.column(key), index);
+            }
+        }
+
+        for (String name : leftColumns) {
+            vectors[j++] = gather(left.column(name), li, name);
+        }
+
+        for (String name : rightColumns) {
+            vectors[j++] = gather(right.column(name), ri, names.contains(name) ? name + "_right" : name);
+        }
+
+        return DataFrame.of(vectors);
+    }
+
+    /**
+     * Returns the elements of vector at the given index.
+     * @param vector the vector.
+     * @param index the element index, -1 for missing.
+     * @param name the name of output vector.
+     * @return the vector of selected elements.
+     */
+    private static BaseVector gather(BaseVector vector, int[] index, String name) {
+        if (Arrays.stream(index).allMatch(i -> i >= 0)) {
+            BaseVector x = vector.get(index);
+            return name.equals(x.name()) ? x : rename(x, name);
+        }
+
+        return gather(new StructField(name, vector.type(), vector.measure()), vector, null, index);
+    }
+
+    /**
+     * Returns a vector of new name that shares the data.
+     * @param x the vector.
+     * @param name the new name.
+     * @return the renamed vector.
+     */
+    private static BaseVector rename(BaseVector x, String name) {
+        StructField field = new StructField(name, x.type(), x.measure());
+        if (x instanceof BooleanVector v) return BooleanVector.of(field, v.array());
+        if (x instanceof CharVector v) return CharVector.of(field, v.array());
+        if (x instanceof ByteVector v) return ByteVector.of(field, v.array());
+        if (x instanceof ShortVector v) return ShortVector.of(field, v.array());
+        if (x instanceof IntVector v) return IntVector.of(field, v.array());
+        if (x instanceof LongVector v) return LongVector.of(field, v.array());
+        if (x instanceof FloatVector v) return FloatVector.of(field, v.array());
+        if (x instanceof DoubleVector v) return DoubleVector.of(field, v.array());
+        if (x instanceof StringVector v) return StringVector.of(field, v.toArray());
+        if (x instanceof NumberVector v) return NumberVector.of(field, v.toArray());
+        return Vector.of(field, ((Vector<?>) x).toArray());
+    }
+
+    /**
+     * Returns the elements of two vectors at the given index, which are
+     * gathered into primitive arrays. Floating values are missing as NaN.
+     * Other primitive types have no missing value, so the vector is boxed
+     * only if it has missing elements.
+     *
+     * @param field the struct field of vector.
+     * @param x the vector of nonnegative index.
+     * @param y the vector of index {@code i <= -2}, whose element is at
+     *          {@code -2 - i}. It may be null.
+     * @param index the element index, -1 for missing.
+     * @return the vector.
+     */
+    private static BaseVector gather(StructField field, BaseVector x, BaseVector y, int[] index) {
+        int n = index.length;
+        DataType type = field.type;
+        boolean missing = Arrays.stream(index).anyMatch(i -> i == -1);
+
+        if (type.isPrimitive()) {
+            if (type.isDouble()) {
+                double[] a = new double[n];
+                for (int t = 0; t < n; t++) {
+                    int i = index[t];
+                    a[t] = i >= 0 ? x.getDouble(i) : i == -1 ? Double.NaN : y.getDouble(-2 - i);
+                }
+                return DoubleVector.of(field, a);
+            }
+
+            if (type.isFloat()) {
+                float[] a = new float[n];
+                for (int t = 0; t < n; t++) {
+                    int i = index[t];
+                    a[t] = i >= 0 ? x.getFloat(i) : i == -1 ? Float.NaN : y.getFloat(-2 - i);
+                }
+                return FloatVector.of(field, a);
+            }
+
+            if (!missing) {
+                if (type.isBoolean()) {
+                    boolean[] a = new boolean[n];
+                    for (int t = 0; t < n; t++) {
+                        int i = index[t];
+                        a[t] = i >= 0 ? x.getBoolean(i) : y.getBoolean(-2 - i);
+                    }
+                    return BooleanVector.of(field, a);
+                }
+
+                if (type.isChar()) {
+                    char[] a = new char[n];
+                    for (int t = 0; t < n; t++) {
+                        int i = index[t];
+                        a[t] = i >= 0 ? x.getChar(i) : y.getChar(-2 - i);
+                    }
+                    return CharVector.of(field, a);
+                }
+
+                if (type.isByte()) {
+                    byte[] a = new byte[n];
+                    for (int t = 0; t < n; t++) {
+                        int i = index[t];
+                        a[t] = i >= 0 ? x.getByte(i) : y.getByte(-2 - i);
+                    }
+                    return ByteVector.of(field, a);
+                }
+
+                if (type.isShort()) {
+                    short[] a = new short[n];
+                    for (int t = 0; t < n; t++) {
+                        int i = index[t];
+                        a[t] = i >= 0 ? x.getShort(i) : y.getShort(-2 - i);
+                    }
+                    return ShortVector.of(field, a);
+                }
+
+                if (type.isInt()) {
+                    int[] a = new int[n];
+                    for (int t = 0; t < n; t++) {
+                        int i = index[t];
+                        a[t] = i >= 0 ? x.getInt(i) : y.getInt(-2 - i);
+                    }
+                    return IntVector.of(field, a);
+                }
+
+                if (type.isLong()) {
+                    long[] a = new long[n];
+                    for (int t = 0; t < n; t++) {
+                        int i = index[t];
+                        a[t] = i >= 0 ? x.getLong(i) : y.getLong(-2 - i);
+                    }
+                    return LongVector.of(field, a);
+                }
+            }
+
+            field = new StructField(field.name, type.boxed(), field.measure);
+        }
+
+        Object[] values = type.isString() ? new String[n] : new Object[n];
+        for (int t = 0; t < n; t++) {
+            int i = index[t];
+            values[t] = i >= 0 ? x.get(i) : i == -1 ? null : y.get(-2 - i);
+        }
+
+        if (type.isString()) {
+            return StringVector.of(field, (String[]) values);
+        }
+
+        return Vector.of(field, values);
+    }
+}
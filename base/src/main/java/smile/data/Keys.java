@@ -0,0 +1,499 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntToLongFunction;
+import java.util.stream.IntStream;
+import smile.data.type.DataType;
+import smile.data.vector.*;
+import smile.util.LongIntHashMap;
+
+/**
+ * Dense, order-preserving codes of the (composite) keys of data frame rows.
+ * The rows of one or several data frames are encoded with a shared
+ * dictionary so that equal keys get the same code, which is the basis
+ * of grouping, sorting and joins. The codes are in [0, size) and follow
+ * the order of keys, with null (or NaN) keys at the end. If nulls are
+ * not treated as a key, null keys are coded as -1 and never match.
+ * <p>
+ * Primitive columns are encoded with open-addressing primitive hash
+ * tables (or a direct lookup table for integral columns of small range)
+ * so that no values are boxed. Composite keys are encoded by combining
+ * the codes of columns pairwise and re-densifying them.
+ *
+ * @author Haifeng Li
+ */
+final class Keys {
+    /** The key codes of rows in each data frame. */
+    final int[][] codes;
+    /** The number of distinct keys. */
+    final int size;
+    /** The code of null keys, or -1 if there is no null key or nulls are not a key. */
+    final int nullCode;
+
+    /**
+     * Constructor.
+     * @param codes the key codes of rows in each data frame.
+     * @param size the number of distinct keys.
+     * @param nullCode the code of null keys.
+     */
+    private Keys(int[][] codes, int size, int nullCode) {
+        this.codes = codes;
+        this.size = size;
+        this.nullCode = nullCode;
+    }
+
+    /**
+     * Encodes the keys of data frames.
+     * @param nullAsKey if true, nulls are treated as a key value.
+     *                  Otherwise, rows with null in any key column
+     *                  are coded as -1.
+     * @param columns columns[p][j] is the j-th key column of p-th data frame.
+     * @return the key codes.
+     */
+    static Keys of(boolean nullAsKey, BaseVector[]... columns) {
+        int k = columns[0].length;
+        Keys keys = null;
+        for (int j = 0; j < k; j++) {
+            BaseVector[] parts = new BaseVector[columns.length];
+            for (int p = 0; p < parts.length; p++) {
+                parts[p] = columns[p][j];
+            }
+
+            Keys column = column(nullAsKey, parts);
+            keys = keys == null ? column : keys.combine(column);
+        }
+
+        return keys;
+    }
+
+    /**
+     * Encodes a key column that spans multiple data frames.
+     * @param nullAsKey if true, nulls are treated as a key value.
+     * @param parts the key column of each data frame.
+     * @return the key codes.
+     */
+    static Keys column(boolean nullAsKey, BaseVector... parts) {
+        boolean object = false;
+        boolean floating = false;
+        for (BaseVector part : parts) {
+            DataType type = part.type();
+            if (!type.isPrimitive()) object = true;
+            if (type.isFloating()) floating = true;
+        }
+
+        int[][] codes = new int[parts.length][];
+        int[] rank;
+        if (object) {
+            rank = objects(parts, codes);
+        } else if (floating) {
+            rank = doubles(parts, codes);
+        } else {
+            rank = longs(parts, codes);
+        }
+
+        int size = rank.length;
+        int nullCode = -1;
+        if (nullAsKey && Arrays.stream(codes).flatMapToInt(Arrays::stream).anyMatch(c -> c < 0)) {
+            nullCode = size++;
+        }
+
+        remap(codes, rank, nullCode);
+        return new Keys(codes, size, nullCode);
+    }
+
+    /**
+     * Returns the row order of data frame sorted by the given columns.
+     * The sort is stable and nulls are always at the end.
+     * @param data the data frame.
+     * @param columns the sort columns.
+     * @param ascending the sort order of each column.
+     * @return the row order.
+     */
+    static int[] order(DataFrame data, String[] columns, boolean[] ascending) {
+        if (columns.length != ascending.length) {
+            throw new IllegalArgumentException(String.format("The number of columns and sort orders don't match: %d != %d", columns.length, ascending.length));
+        }
+
+        // LSD sort with a stable radix sort per column.
+        int n = data.size();
+        int[] order = IntStream.range(0, n).toArray();
+        for (int j = columns.length - 1; j >= 0; j--) {
+            BaseVector column = data.column(columns[j]);
+            DataType type = column.type();
+            long[] key = new long[n];
+            if (type.isFloating() && type.isPrimitive()) {
+                IntToDoubleFunction x = doubles(column);
+                for (int i = 0; i < n; i++) {
+                    key[i] = sortable(x.applyAsDouble(order[i]));
+                }
+            } else if (type.isPrimitive()) {
+                IntToLongFunction x = longs(column);
+                for (int i = 0; i < n; i++) {
+                    key[i] = x.applyAsLong(order[i]);
+                }
+            } else {
+                // nulls are coded as Long.MAX_VALUE.
+                Keys keys = column(true, column);
+                int[] code = keys.codes[0];
+                for (int i = 0; i < n; i++) {
+                    int c = code[order[i]];
+                    key[i] = c == keys.nullCode ? Long.MAX_VALUE : c;
+                }
+            }
+
+            if (!ascending[j]) {
+                long nan = sortable(Double.NaN);
+                boolean floating = type.isFloating() && type.isPrimitive();
+                boolean object = !type.isPrimitive();
+                for (int i = 0; i < n; i++) {
+                    long k = key[i];
+                    boolean isNull = (floating && k == nan) || (object && k == Long.MAX_VALUE);
+                    if (!isNull) key[i] = ~k;
+                }
+            }
+
+            order = sort(key, order);
+        }
+
+        return order;
+    }
+
+    /**
+     * Combines the codes of two key columns into composite keys
+     * in the lexicographic order.
+     * @param other the codes of next key column.
+     * @return the codes of composite keys.
+     */
+    private Keys combine(Keys other) {
+        LongIntHashMap map = new LongIntHashMap();
+        long[] values = new long[16];
+        int[][] codes = new int[this.codes.length][];
+        for (int p = 0; p < codes.length; p++) {
+            int[] a = this.codes[p];
+            int[] b = other.codes[p];
+            int[] c = new int[a.length];
+            codes[p] = c;
+            for (int i = 0; i < a.length; i++) {
+                if (a[i] < 0 || b[i] < 0) {
+                    c[i] = -1;
+                } else {
+                    long key = (long) a[i] * other.size + b[i];
+                    int size = map.size();
+                    int code = map.putIfAbsent(key, size);
+                    if (code < 0) {
+                        if (size == values.length) values = Arrays.copyOf(values, 2 * size);
+                        values[size] = key;
+                        code = size;
+                    }
+                    c[i] = code;
+                }
+            }
+        }
+
+        int size = map.size();
+        int[] rank = rank(Arrays.copyOf(values, size));
+        remap(codes, rank, -1);
+        return new Keys(codes, size, -1);
+    }
+
+    /**
+     * Replaces the codes with the ranks.
+     * @param codes the codes of first appearance.
+     * @param rank the rank of codes.
+     * @param nullCode the code of nulls, which replaces -1 if nonnegative.
+     */
+    private static void remap(int[][] codes, int[] rank, int nullCode) {
+        for (int[] c : codes) {
+            IntStream.range(0, c.length).parallel().forEach(i -> {
+                int code = c[i];
+                c[i] = code < 0 ? nullCode : rank[code];
+            });
+        }
+    }
+
+    /**
+     * Returns the rank of distinct values.
+     * @param values the distinct values.
+     * @return the rank of values.
+     */
+    private static int[] rank(long[] values) {
+        int[] order = sort(values.clone(), IntStream.range(0, values.length).toArray());
+        int[] rank = new int[values.length];
+        for (int i = 0; i < order.length; i++) {
+            rank[order[i]] = i;
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the rank of distinct values.
+     * @param values the distinct values, which have no NaN.
+     * @return the rank of values.
+     */
+    private static int[] rank(double[] values) {
+        long[] keys = new long[values.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = sortable(values[i]);
+        }
+        return rank(keys);
+    }
+
+    /**
+     * Returns a long value of which the order is the same as the double value.
+     * All NaN values are mapped to the same value larger than positive infinity.
+     * @param x the double value.
+     * @return the sortable long value.
+     */
+    private static long sortable(double x) {
+        long bits = Double.doubleToLongBits(x == 0.0 ? 0.0 : x);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    /**
+     * Stable LSD radix sort of items by signed long keys with 16-bit digits.
+     * The passes of constant digits are skipped so that keys of small range
+     * take one or two passes.
+     * @param keys the keys of items, which will be destroyed.
+     * @param items the items.
+     * @return the sorted items.
+     */
+    private static int[] sort(long[] keys, int[] items) {
+        int n = items.length;
+        long[] k2 = new long[n];
+        int[] i2 = new int[n];
+        int[] count = new int[65536];
+        for (int shift = 0; shift < 64; shift += 16) {
+            Arrays.fill(count, 0);
+            for (long key : keys) {
+                // flip the sign bit for the order of signed values.
+                count[(int) (((key ^ Long.MIN_VALUE) >>> shift) & 0xFFFF)]++;
+            }
+
+            if (n == 0 || count[(int) (((keys[0] ^ Long.MIN_VALUE) >>> shift) & 0xFFFF)] == n) {
+                continue;
+            }
+
+            for (int d = 0, sum = 0; d < count.length; d++) {
+                int c = count[d];
+                count[d] = sum;
+                sum += c;
+            }
+
+            for (int i = 0; i < n; i++) {
+                long key = keys[i];
+                int pos = count[(int) (((key ^ Long.MIN_VALUE) >>> shift) & 0xFFFF)]++;
+                k2[pos] = key;
+                i2[pos] = items[i];
+            }
+
+            long[] kt = keys; keys = k2; k2 = kt;
+            int[] it = items; items = i2; i2 = it;
+        }
+        return items;
+    }
+
+    /**
+     * Encodes integral, boolean or char columns.
+     * @param parts the key column of each data frame.
+     * @param codes the output codes of first appearance.
+     * @return the rank of codes.
+     */
+    private static int[] longs(BaseVector[] parts, int[][] codes) {
+        IntToLongFunction[] getters = new IntToLongFunction[parts.length];
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        long n = 0;
+        for (int p = 0; p < parts.length; p++) {
+            IntToLongFunction x = longs(parts[p]);
+            getters[p] = x;
+            int size = parts[p].size();
+            n += size;
+            for (int i = 0; i < size; i++) {
+                long v = x.applyAsLong(i);
+                if (v < min) min = v;
+                if (v > max) max = v;
+            }
+        }
+
+        // A direct lookup table for the codes of small range values
+        // such as nominal variables.
+        if (n > 0 && max - min >= 0 && max - min < Math.max(65536, n)) {
+            int[] table = new int[(int) (max - min + 1)];
+            Arrays.fill(table, -1);
+            int size = 0;
+            for (int p = 0; p < parts.length; p++) {
+                IntToLongFunction x = getters[p];
+                int[] c = new int[parts[p].size()];
+                codes[p] = c;
+                for (int i = 0; i < c.length; i++) {
+                    long v = x.applyAsLong(i);
+                    int slot = (int) (v - min);
+                    int code = table[slot];
+                    if (code < 0) {
+                        code = size++;
+                        table[slot] = code;
+                    }
+                    c[i] = code;
+                }
+            }
+
+            int[] rank = new int[size];
+            for (int slot = 0, r = 0; slot < table.length; slot++) {
+                int code = table[slot];
+                if (code >= 0) rank[code] = r++;
+            }
+            return rank;
+        }
+
+        LongIntHashMap map = new LongIntHashMap();
+        long[] values = new long[16];
+        for (int p = 0; p < parts.length; p++) {
+            IntToLongFunction x = getters[p];
+            int[] c = new int[parts[p].size()];
+            codes[p] = c;
+            for (int i = 0; i < c.length; i++) {
+                long v = x.applyAsLong(i);
+                int size = map.size();
+                int code = map.putIfAbsent(v, size);
+                if (code < 0) {
+                    if (size == values.length) values = Arrays.copyOf(values, 2 * size);
+                    values[size] = v;
+                    code = size;
+                }
+                c[i] = code;
+            }
+        }
+        return rank(Arrays.copyOf(values, map.size()));
+    }
+
+    /**
+     * Encodes floating columns. NaN is treated as null.
+     * @param parts the key column of each data frame.
+     * @param codes the output codes of first appearance.
+     * @return the rank of codes.
+     */
+    private static int[] doubles(BaseVector[] parts, int[][] codes) {
+        LongIntHashMap map = new LongIntHashMap();
+        double[] values = new double[16];
+        for (int p = 0; p < parts.length; p++) {
+            IntToDoubleFunction x = doubles(parts[p]);
+            int[] c = new int[parts[p].size()];
+            codes[p] = c;
+            for (int i = 0; i < c.length; i++) {
+                double v = x.applyAsDouble(i);
+                if (Double.isNaN(v)) {
+                    c[i] = -1;
+                } else {
+                    // +0.0 and -0.0 are the same key.
+                    long bits = v == 0.0 ? 0L : Double.doubleToRawLongBits(v);
+                    int size = map.size();
+                    int code = map.putIfAbsent(bits, size);
+                    if (code < 0) {
+                        if (size == values.length) values = Arrays.copyOf(values, 2 * size);
+                        values[size] = v == 0.0 ? 0.0 : v;
+                        code = size;
+                    }
+                    c[i] = code;
+                }
+            }
+        }
+        return rank(Arrays.copyOf(values, map.size()));
+    }
+
+    /**
+     * Encodes object columns. The keys are ordered by their natural
+     * order if they are comparable. Otherwise, by the first appearance.
+     * @param parts the key column of each data frame.
+     * @param codes the output codes of first appearance.
+     * @return the rank of codes.
+     */
+    @SuppressWarnings("unchecked")
+    private static int[] objects(BaseVector[] parts, int[][] codes) {
+        HashMap<Object, Integer> map = new HashMap<>();
+        ArrayList<Object> values = new ArrayList<>();
+        for (int p = 0; p < parts.length; p++) {
+            BaseVector x = parts[p];
+            int[] c = new int[x.size()];
+            codes[p] = c;
+            for (int i = 0; i < c.length; i++) {
+                Object v = x.get(i);
+                if (v == null) {
+                    c[i] = -1;
+                } else {
+                    Integer code = map.putIfAbsent(v, values.size());
+                    if (code == null) {
+                        code = values.size();
+                        values.add(v);
+                    }
+                    c[i] = code;
+                }
+            }
+        }
+
+        int size = values.size();
+        Integer[] index = new Integer[size];
+        for (int i = 0; i < size; i++) index[i] = i;
+
+        boolean comparable = size > 0 && values.get(0) instanceof Comparable
+                && values.stream().allMatch(v -> v.getClass() == values.get(0).getClass());
+        if (comparable) {
+            Arrays.sort(index, (a, b) -> ((Comparable<Object>) values.get(a)).compareTo(values.get(b)));
+        }
+
+        int[] rank = new int[size];
+        for (int i = 0; i < size; i++) {
+            rank[index[i]] = i;
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the long value accessor of a primitive vector.
+     * @param vector the vector.
+     * @return the value accessor.
+     */
+    private static IntToLongFunction longs(BaseVector vector) {
+        Object array = vector.array();
+        if (array instanceof int[] x) return i -> x[i];
+        if (array instanceof long[] x) return i -> x[i];
+        if (array instanceof short[] x) return i -> x[i];
+        if (array instanceof byte[] x) return i -> x[i];
+        if (array instanceof char[] x) return i -> x[i];
+        if (array instanceof boolean[] x) return i -> x[i] ? 1 : 0;
+        return vector::getLong;
+    }
+
+    /**
+     * Returns the double value accessor of a primitive vector.
+     * @param vector the vector.
+     * @return the value accessor.
+     */
+    private static IntToDoubleFunction doubles(BaseVector vector) {
+        Object array = vector.array();
+        if (array instanceof double[] x) return i -> x[i];
+        if (array instanceof float[] x) return i -> x[i];
+        if (array instanceof int[] x) return i -> x[i];
+        if (array instanceof long[] x) return i -> x[i];
+        return vector::getDouble;
+    }
+}
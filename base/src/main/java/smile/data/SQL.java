@@ -16,6 +16,7 @@
  */
 package smile.data;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -29,6 +30,8 @@ public class SQL implements AutoCloseable {
     private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(SQL.class);
     /** JDBC connection. */
     private final Connection db;
+    /** True if the Arrow C data interface is available to export the query results. */
+    private static final boolean arrow;
 
     static {
         try {
@@ -36,6 +39,16 @@ public class SQL implements AutoCloseable {
         } catch (ClassNotFoundException ex) {
             logger.error("Failed to load DuckDB driver: ", ex);
         }
+
+        boolean available = false;
+        try {
+            Class.forName("org.apache.arrow.c.Data");
+            Class.forName("org.apache.arrow.vector.FieldVector");
+            available = true;
+        } catch (ClassNotFoundException ex) {
+            logger.debug("Arrow C data interface is not available, query results are read through JDBC");
+        }
+        arrow = available;
     }
 
     /**
@@ -296,7 +309,14 @@ public class SQL implements AutoCloseable {
     }
 
     /**
-     * Executes a SELECT statement.
+     * Executes a SELECT statement. If Apache Arrow and its C data
+     * interface are in the classpath and all columns of the result
+     * have supported types, the result is exported as a stream of
+     * Arrow record batches, whose numeric and boolean columns are
+     * copied in bulk, or wrapped without copying if the Arrow memory
+     * is bounded by {@link smile.io.Arrow#allocate(long)}. Otherwise,
+     * the rows are read through JDBC.
+     *
      * @param sql a SELECT statement.
      * @return the query result.
      * @throws SQLException if fail to execute the SQL query.
@@ -304,7 +324,15 @@ public class SQL implements AutoCloseable {
     public DataFrame query(String sql) throws SQLException {
         logger.info(sql);
         try (var stmt = db.createStatement()) {
-            return DataFrame.of(stmt.executeQuery(sql));
+            ResultSet rs = stmt.executeQuery(sql);
+            if (arrow && smile.io.Arrow.canRead(rs.getMetaData())) {
+                try {
+                    return new smile.io.Arrow().read(rs);
+                } catch (IOException ex) {
+                    throw new SQLException("Failed to read the query result as Arrow record batches", ex);
+                }
+            }
+            return DataFrame.of(rs);
         }
     }
 
@@ -20,20 +20,32 @@ package smile.io;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.time.*;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.apache.arrow.memory.RootAllocator;
 import org.apache.arrow.vector.*;
 import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowReader;
 import org.apache.arrow.vector.ipc.ArrowStreamReader;
 import org.apache.arrow.vector.ipc.ArrowStreamWriter;
 import org.apache.arrow.vector.types.DateUnit;
@@ -43,6 +55,8 @@ import org.apache.arrow.vector.types.pojo.ArrowType;
 import org.apache.arrow.vector.types.pojo.Field;
 import org.apache.arrow.vector.types.pojo.FieldType;
 import org.apache.arrow.vector.types.pojo.Schema;
+import org.apache.arrow.vector.util.TransferPair;
+import org.duckdb.DuckDBResultSet;
 import static org.apache.arrow.vector.types.FloatingPointPrecision.DOUBLE;
 import static org.apache.arrow.vector.types.FloatingPointPrecision.SINGLE;
 import smile.data.DataFrame;
@@ -102,7 +116,10 @@ public class Arrow {
     /**
      * Creates the root allocator.
      * The RootAllocator is responsible for being the master
-     * bookeeper for memory allocations.
+     * bookeeper for memory allocations. With a limit less than
+     * {@code Long.MAX_VALUE}, {@link #read(ArrowReader, int)} wraps
+     * the Arrow buffers without copying as the limit bounds the
+     * native memory held by the vectors until they are collected.
      *
      * @param limit the memory allocation limit in bytes.
      */
@@ -176,96 +193,310 @@ public class Arrow {
         }
 
         try (ArrowStreamReader reader = new ArrowStreamReader(input, allocator)) {
+            return read(reader, limit);
+        }
+    }
+
+    /**
+     * Reads a limited number of records from an arrow reader. Unlike
+     * {@link #stream(InputStream, String...)}, the buffers of record
+     * batches are transferred out of the reader. If the root allocator
+     * has a limit set by {@link #allocate(long)}, the integral, floating
+     * and boolean columns are wrapped without copying. The values are
+     * read directly from the Arrow buffers and the nulls from the
+     * validity bitmaps. The Arrow buffers are released when the vectors
+     * become unreachable. With the default unbounded allocator, these
+     * columns are copied into Java arrays in bulk and the buffers are
+     * released right away, as the garbage collector doesn't see the
+     * native memory. Other columns are copied into Java objects.
+     *
+     * @param reader the arrow reader, which is not closed by this method.
+     * @param limit the number of records to read.
+     * @throws IOException when fails to read the record batches.
+     * @return the data frame.
+     */
+    public DataFrame read(ArrowReader reader, int limit) throws IOException {
+        if (allocator == null) {
+            allocate(Long.MAX_VALUE);
+        }
+
+        // The holder for a set of vectors to be loaded/unloaded.
+        VectorSchemaRoot root = reader.getVectorSchemaRoot();
+        int ncol = root.getFieldVectors().size();
+        List<List<FieldVector>> chunks = new ArrayList<>();
+        for (int j = 0; j < ncol; j++) {
+            chunks.add(new ArrayList<>());
+        }
 
-            // The holder for a set of vectors to be loaded/unloaded.
-            VectorSchemaRoot root = reader.getVectorSchemaRoot();
-            List<DataFrame> frames = new ArrayList<>();
+        boolean success = false;
+        try {
             int size = 0;
-            while (reader.loadNextBatch() && size < limit) {
-                List<FieldVector> fieldVectors = root.getFieldVectors();
-                logger.info("read {} rows and {} columns", root.getRowCount(), fieldVectors.size());
-
-                smile.data.vector.BaseVector[] vectors = new smile.data.vector.BaseVector[fieldVectors.size()];
-                for (int j = 0; j < fieldVectors.size(); j++) {
-                    FieldVector fieldVector = fieldVectors.get(j);
-                    ArrowType type = fieldVector.getField().getType();
-                    switch (type.getTypeID()) {
-                        case Int:
-                            ArrowType.Int itype = (ArrowType.Int) type;
-                            int bitWidth = itype.getBitWidth();
-                            switch (bitWidth) {
-                                case 8:
-                                    vectors[j] = readByteField(fieldVector);
-                                    break;
-                                case 16:
-                                    if (itype.getIsSigned())
-                                        vectors[j] = readShortField(fieldVector);
-                                    else
-                                        vectors[j] = readCharField(fieldVector);
-                                    break;
-                                case 32:
-                                    vectors[j] = readIntField(fieldVector);
-                                    break;
-                                case 64:
-                                    vectors[j] = readLongField(fieldVector);
-                                    break;
-                                default:
-                                    throw new UnsupportedOperationException("Unsupported integer bit width: " + bitWidth);
-                            }
-                            break;
-                        case FloatingPoint:
-                            FloatingPointPrecision precision = ((ArrowType.FloatingPoint) type).getPrecision();
-                            switch (precision) {
-                                case DOUBLE:
-                                    vectors[j] = readDoubleField(fieldVector);
-                                    break;
-                                case SINGLE:
-                                    vectors[j] = readFloatField(fieldVector);
-                                    break;
-                                case HALF:
-                                    throw new UnsupportedOperationException("Unsupported float precision: " + precision);
-                            }
-                            break;
-                        case Decimal:
-                            vectors[j] = readDecimalField(fieldVector);
-                            break;
-                        case Bool:
-                            vectors[j] = readBitField(fieldVector);
-                            break;
-                        case Date:
-                            vectors[j] = readDateField(fieldVector);
-                            break;
-                        case Time:
-                            vectors[j] = readTimeField(fieldVector);
-                            break;
-                        case Timestamp:
-                            vectors[j] = readDateTimeField(fieldVector);
-                            break;
-                        case Binary:
-                        case FixedSizeBinary:
-                            vectors[j] = readByteArrayField(fieldVector);
-                            break;
-                        case Utf8:
-                            vectors[j] = readStringField(fieldVector);
-                            break;
-                        default: throw new UnsupportedOperationException("Unsupported column type: " + fieldVector.getMinorType());
+            boolean empty = true;
+            while (size < limit && reader.loadNextBatch()) {
+                transfer(root, chunks);
+                size += root.getRowCount();
+                empty = false;
+            }
+
+            if (empty) {
+                // Keep the schema of empty result.
+                transfer(root, chunks);
+            }
+            logger.info("read {} rows and {} columns", size, ncol);
+
+            boolean copy = allocator.getLimit() == Long.MAX_VALUE;
+            smile.data.vector.BaseVector[] vectors = new smile.data.vector.BaseVector[ncol];
+            for (int j = 0; j < ncol; j++) {
+                List<FieldVector> column = chunks.get(j);
+                vectors[j] = ArrowVector.of(column, copy);
+                if (vectors[j] == null) {
+                    try {
+                        vectors[j] = readField(column);
+                    } finally {
+                        column.forEach(FieldVector::close);
                     }
                 }
+            }
 
-                DataFrame frame = DataFrame.of(vectors);
-                frames.add(frame);
-                size += frames.size();
+            DataFrame df = DataFrame.of(vectors);
+            success = true;
+            return df;
+        } finally {
+            if (!success) {
+                // Closing a vector twice is harmless, which releases
+                // the buffers of all columns including the wrapped ones.
+                chunks.forEach(column -> column.forEach(FieldVector::close));
             }
+        }
+    }
 
-            if (frames.isEmpty()) {
-                throw new IllegalStateException("No record batch");
-            } else if (frames.size() == 1) {
-                return frames.get(0);
-            } else {
-                DataFrame df = frames.get(0);
-                return df.union(frames.subList(1, frames.size()).toArray(new DataFrame[frames.size() - 1]));
+    /**
+     * Reads the result set of a DuckDB query through the Arrow stream
+     * export, which fills the vectors with record batches instead of
+     * iterating the rows through JDBC. It requires the arrow-c-data
+     * module in the classpath. Call {@link #canRead(ResultSetMetaData)}
+     * first as the result set cannot be read again after a failure.
+     *
+     * @param rs the result set of DuckDB query.
+     * @throws SQLException when fails to export the result set.
+     * @throws IOException when fails to read the record batches.
+     * @return the data frame.
+     */
+    public DataFrame read(ResultSet rs) throws SQLException, IOException {
+        if (allocator == null) {
+            allocate(Long.MAX_VALUE);
+        }
+
+        DuckDBResultSet result = rs.unwrap(DuckDBResultSet.class);
+        try (ArrowReader reader = (ArrowReader) result.arrowExportStream(allocator, batch)) {
+            return read(reader, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Returns true if all columns of a DuckDB result set are exported
+     * as the Arrow types supported by {@link #read(ResultSet)}.
+     * Unsigned integers, intervals, time zones, enums and nested
+     * types are not supported.
+     *
+     * @param meta the metadata of DuckDB result set.
+     * @throws SQLException when fails to access the metadata.
+     * @return true if the result set can be read as Arrow record batches.
+     */
+    public static boolean canRead(ResultSetMetaData meta) throws SQLException {
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            String type = meta.getColumnTypeName(i).toUpperCase();
+            if (type.startsWith("DECIMAL")) continue;
+            switch (type) {
+                case "BOOLEAN", "TINYINT", "SMALLINT", "INTEGER", "BIGINT", "FLOAT", "DOUBLE",
+                     "VARCHAR", "BLOB", "DATE", "TIME", "TIMESTAMP", "TIMESTAMP_S", "TIMESTAMP_MS", "TIMESTAMP_NS":
+                    break;
+                default:
+                    return false;
             }
         }
+        return true;
+    }
+
+    /**
+     * Transfers the buffers of the current record batch to new vectors.
+     *
+     * @param root the holder of record batch vectors.
+     * @param chunks the list of vectors of each column.
+     */
+    private void transfer(VectorSchemaRoot root, List<List<FieldVector>> chunks) {
+        List<FieldVector> fieldVectors = root.getFieldVectors();
+        for (int j = 0; j < fieldVectors.size(); j++) {
+            TransferPair pair = fieldVectors.get(j).getTransferPair(allocator);
+            pair.transfer();
+            chunks.get(j).add((FieldVector) pair.getTo());
+        }
+    }
+
+    /**
+     * Returns a lazy stream of data frames, one per record batch, of
+     * an arrow file. Unlike {@link #read(Path)}, only one record batch
+     * is in memory at a time, which makes it possible to process files
+     * larger than the memory. The stream should be closed after use,
+     * e.g. in a try-with-resources statement, to release the file.
+     *
+     * @param path the input file path.
+     * @param columns the columns to read. If empty, read all columns.
+     * @throws IOException when fails to read the file.
+     * @return the stream of record batches.
+     */
+    public Stream<DataFrame> stream(Path path, String... columns) throws IOException {
+        return stream(Files.newInputStream(path), columns);
+    }
+
+    /**
+     * Returns a lazy stream of data frames, one per record batch, of
+     * an arrow file. The stream should be closed after use.
+     *
+     * @param path the input file path.
+     * @param columns the columns to read. If empty, read all columns.
+     * @throws IOException when fails to read the file.
+     * @throws URISyntaxException when the file path syntax is wrong.
+     * @return the stream of record batches.
+     */
+    public Stream<DataFrame> stream(String path, String... columns) throws IOException, URISyntaxException {
+        return stream(Input.stream(path), columns);
+    }
+
+    /**
+     * Returns a lazy stream of data frames, one per record batch, of
+     * an arrow stream. The stream should be closed after use to release
+     * the input and the memory of arrow buffers.
+     *
+     * @param input the input stream.
+     * @param columns the columns to read. If empty, read all columns.
+     * @return the stream of record batches.
+     */
+    public Stream<DataFrame> stream(InputStream input, String... columns) {
+        if (allocator == null) {
+            allocate(Long.MAX_VALUE);
+        }
+
+        Set<String> projection = columns.length == 0 ? null : new HashSet<>(Arrays.asList(columns));
+        ArrowStreamReader reader = new ArrowStreamReader(input, allocator);
+        Spliterator<DataFrame> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super DataFrame> action) {
+                try {
+                    if (!reader.loadNextBatch()) {
+                        return false;
+                    }
+
+                    action.accept(toDataFrame(reader.getVectorSchemaRoot(), projection));
+                    return true;
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+    }
+
+    /**
+     * Converts the current record batch to a data frame.
+     *
+     * @param root the holder of record batch vectors.
+     * @param columns the columns to convert. If null, convert all columns.
+     * @return the data frame.
+     */
+    private DataFrame toDataFrame(VectorSchemaRoot root, Set<String> columns) {
+        List<FieldVector> fieldVectors = root.getFieldVectors();
+        if (columns != null) {
+            fieldVectors = fieldVectors.stream()
+                    .filter(vector -> columns.contains(vector.getField().getName()))
+                    .collect(Collectors.toList());
+        }
+        logger.info("read {} rows and {} columns", root.getRowCount(), fieldVectors.size());
+
+        smile.data.vector.BaseVector[] vectors = new smile.data.vector.BaseVector[fieldVectors.size()];
+        for (int j = 0; j < fieldVectors.size(); j++) {
+            vectors[j] = readField(fieldVectors.get(j));
+        }
+
+        return DataFrame.of(vectors);
+    }
+
+    /**
+     * Reads a column of record batches into Java objects.
+     *
+     * @param chunks the vectors of column in record batches.
+     * @return the column vector.
+     */
+    private smile.data.vector.BaseVector readField(List<FieldVector> chunks) {
+        if (chunks.size() == 1) {
+            return readField(chunks.get(0));
+        }
+
+        DataFrame[] frames = chunks.stream().map(chunk -> DataFrame.of(readField(chunk))).toArray(DataFrame[]::new);
+        return frames[0].union(Arrays.copyOfRange(frames, 1, frames.length)).column(0);
+    }
+
+    /**
+     * Reads a column vector into Java objects.
+     *
+     * @param fieldVector the column vector.
+     * @return the column vector.
+     */
+    private smile.data.vector.BaseVector readField(FieldVector fieldVector) {
+        ArrowType type = fieldVector.getField().getType();
+        switch (type.getTypeID()) {
+            case Int:
+                ArrowType.Int itype = (ArrowType.Int) type;
+                int bitWidth = itype.getBitWidth();
+                switch (bitWidth) {
+                    case 8:
+                        return readByteField(fieldVector);
+                    case 16:
+                        if (itype.getIsSigned())
+                            return readShortField(fieldVector);
+                        else
+                            return readCharField(fieldVector);
+                    case 32:
+                        return readIntField(fieldVector);
+                    case 64:
+                        return readLongField(fieldVector);
+                    default:
+                        throw new UnsupportedOperationException("Unsupported integer bit width: " + bitWidth);
+                }
+            case FloatingPoint:
+                FloatingPointPrecision precision = ((ArrowType.FloatingPoint) type).getPrecision();
+                switch (precision) {
+                    case DOUBLE:
+                        return readDoubleField(fieldVector);
+                    case SINGLE:
+                        return readFloatField(fieldVector);
+                    default:
+                        throw new UnsupportedOperationException("Unsupported float precision: " + precision);
+                }
+            case Decimal:
+                return readDecimalField(fieldVector);
+            case Bool:
+                return readBitField(fieldVector);
+            case Date:
+                return readDateField(fieldVector);
+            case Time:
+                return readTimeField(fieldVector);
+            case Timestamp:
+                return readDateTimeField(fieldVector);
+            case Binary:
+            case FixedSizeBinary:
+                return readByteArrayField(fieldVector);
+            case Utf8:
+                return readStringField(fieldVector);
+            default: throw new UnsupportedOperationException("Unsupported column type: " + fieldVector.getMinorType());
+        }
     }
 
     /**
@@ -0,0 +1,904 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.io;
+
+import java.lang.ref.Cleaner;
+import java.lang.ref.Reference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.*;
+import smile.data.type.DataType;
+import smile.data.type.ObjectType;
+
+/**
+ * Vectors that wrap the buffers of Arrow record batches without copying.
+ * A column may span several record batches (chunks). The values are read
+ * directly from the Arrow data buffers and nulls from the validity bitmaps.
+ * The {@code array()} methods, which require a Java array by contract,
+ * copy the values once in bulk and cache them. The Arrow buffers are
+ * released when the vector becomes unreachable. Therefore, the methods
+ * accessing the buffers keep the vector reachable until they are done.
+ *
+ * @author Haifeng Li
+ */
+abstract class ArrowVector {
+    /** The cleaner to release Arrow buffers. */
+    private static final Cleaner cleaner = Cleaner.create();
+
+    /** The name of vector. */
+    final String name;
+    /** The chunks of vector. */
+    final FieldVector[] chunks;
+    /** The data buffers of chunks. */
+    final ArrowBuf[] buffers;
+    /** The first row of each chunk, with the size of vector at the end. */
+    final int[] offsets;
+    /** The number of elements. */
+    final int size;
+    /** The action to release Arrow buffers. */
+    private final Cleaner.Cleanable cleanable;
+
+    /**
+     * Constructor. Takes the ownership of chunks.
+     * @param name the name of vector.
+     * @param chunks the chunks of vector.
+     */
+    ArrowVector(String name, List<FieldVector> chunks) {
+        List<FieldVector> nonempty = new ArrayList<>();
+        for (FieldVector chunk : chunks) {
+            if (chunk.getValueCount() > 0) {
+                nonempty.add(chunk);
+            } else {
+                chunk.close();
+            }
+        }
+
+        this.name = name;
+        this.chunks = nonempty.toArray(new FieldVector[0]);
+        this.buffers = new ArrowBuf[this.chunks.length];
+        this.offsets = new int[this.chunks.length + 1];
+        long size = 0;
+        for (int c = 0; c < this.chunks.length; c++) {
+            buffers[c] = this.chunks[c].getDataBuffer();
+            offsets[c] = (int) size;
+            size += this.chunks[c].getValueCount();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many rows: " + size);
+            }
+        }
+        this.size = (int) size;
+        offsets[this.chunks.length] = this.size;
+
+        FieldVector[] vectors = this.chunks;
+        cleanable = cleaner.register(this, () -> {
+            for (FieldVector vector : vectors) {
+                vector.close();
+            }
+        });
+    }
+
+    /**
+     * Returns the vector of Arrow record batches. Returns null if the
+     * type of vector is not supported, in which case the chunks are
+     * not owned by the returned vector.
+     * @param chunks the chunks of vector.
+     * @param copy if true, the values are copied into Java arrays and
+     *             the chunks are closed. Otherwise, the chunks are
+     *             wrapped without copying.
+     * @return the vector or null.
+     */
+    static smile.data.vector.BaseVector of(List<FieldVector> chunks, boolean copy) {
+        FieldVector first = chunks.get(0);
+        String name = first.getField().getName();
+        ArrowVector vector;
+        if (first instanceof IntVector) vector = new Ints(name, chunks);
+        else if (first instanceof BigIntVector) vector = new Longs(name, chunks);
+        else if (first instanceof Float8Vector) vector = new Doubles(name, chunks);
+        else if (first instanceof Float4Vector) vector = new Floats(name, chunks);
+        else if (first instanceof SmallIntVector) vector = new Shorts(name, chunks);
+        else if (first instanceof TinyIntVector) vector = new Bytes(name, chunks);
+        else if (first instanceof BitVector) vector = new Booleans(name, chunks);
+        else return null;
+
+        boolean nulls = Arrays.stream(vector.chunks).anyMatch(chunk -> chunk.getNullCount() > 0);
+        if (copy) {
+            try {
+                return nulls ? new Nullable<>(vector).copy() : vector.copy();
+            } finally {
+                vector.close();
+            }
+        }
+        return nulls ? new Nullable<>(vector) : (smile.data.vector.BaseVector) vector;
+    }
+
+    /**
+     * Returns the name of vector.
+     * @return the name of vector.
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the number of elements.
+     * @return the number of elements.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Releases the Arrow buffers. The vector must not be used afterwards.
+     */
+    final void close() {
+        cleanable.clean();
+    }
+
+    /**
+     * Returns the chunk of an element.
+     * @param i the element index.
+     * @return the chunk index.
+     */
+    final int chunk(int i) {
+        if (chunks.length == 1) return 0;
+        int c = Arrays.binarySearch(offsets, i);
+        return c >= 0 ? c : -c - 2;
+    }
+
+    /**
+     * Returns true if the element is null.
+     * @param i the element index.
+     * @return true if the element is null.
+     */
+    final boolean isNull(int i) {
+        int c = chunk(i);
+        try {
+            return chunks[c].isNull(i - offsets[c]);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    /**
+     * Returns the data buffer of a chunk as a little-endian byte buffer.
+     * The caller should keep the vector reachable while using the view.
+     * @param c the chunk index.
+     * @param width the byte width of elements.
+     * @return the byte buffer.
+     */
+    final ByteBuffer nio(int c, int width) {
+        int n = offsets[c + 1] - offsets[c];
+        return buffers[c].nioBuffer(0, n * width).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns the element as a double value, ignoring the validity.
+     * @param i the element index.
+     * @return the element value.
+     */
+    abstract double value(int i);
+
+    /**
+     * Returns a copy of vector in Java arrays.
+     * @return a copy of vector.
+     */
+    abstract smile.data.vector.BaseVector copy();
+
+    /**
+     * Serializes a copy of vector as the Arrow buffers are not serializable.
+     * @return a copy of vector.
+     */
+    Object writeReplace() {
+        return copy();
+    }
+
+    /** The vector of Arrow int chunks. */
+    static final class Ints extends ArrowVector implements smile.data.vector.IntVector {
+        /** The values copied to Java array on demand. */
+        private int[] array;
+
+        /** Constructor. */
+        Ints(String name, List<FieldVector> chunks) {
+            super(name, chunks);
+        }
+
+        @Override
+        public int getInt(int i) {
+            int c = chunk(i);
+            try {
+                return buffers[c].getInt((long) (i - offsets[c]) << 2);
+            } finally {
+                Reference.reachabilityFence(this);
+            }
+        }
+
+        @Override
+        double value(int i) {
+            return getInt(i);
+        }
+
+        @Override
+        public Integer get(int i) {
+            return getInt(i);
+        }
+
+        @Override
+        public synchronized int[] array() {
+            if (array == null) {
+                int[] a = new int[size];
+                for (int c = 0; c < chunks.length; c++) {
+                    nio(c, 4).asIntBuffer().get(a, offsets[c], offsets[c + 1] - offsets[c]);
+                }
+                Reference.reachabilityFence(this);
+                array = a;
+            }
+            return array;
+        }
+
+        @Override
+        public int[] toIntArray(int[] a) {
+            System.arraycopy(array(), 0, a, 0, size);
+            return a;
+        }
+
+        @Override
+        public double[] toDoubleArray(double[] a) {
+            for (int i = 0; i < size; i++) a[i] = getInt(i);
+            Reference.reachabilityFence(this);
+            return a;
+        }
+
+        @Override
+        public smile.data.vector.IntVector get(int... index) {
+            int[] v = new int[index.length];
+            for (int i = 0; i < index.length; i++) v[i] = getInt(index[i]);
+            return smile.data.vector.IntVector.of(name, v);
+        }
+
+        @Override
+        public IntStream stream() {
+            return IntStream.range(0, size).map(this::getInt);
+        }
+
+        @Override
+        smile.data.vector.BaseVector copy() {
+            return smile.data.vector.IntVector.of(name, array());
+        }
+
+        @Override
+        public String toString() {
+            return toString(10);
+        }
+    }
+
+    /** The vector of Arrow bigint chunks. */
+    static final class Longs extends ArrowVector implements smile.data.vector.LongVector {
+        /** The values copied to Java array on demand. */
+        private long[] array;
+
+        /** Constructor. */
+        Longs(String name, List<FieldVector> chunks) {
+            super(name, chunks);
+        }
+
+        @Override
+        public long getLong(int i) {
+            int c = chunk(i);
+            try {
+                return buffers[c].getLong((long) (i - offsets[c]) << 3);
+            } finally {
+                Reference.reachabilityFence(this);
+            }
+        }
+
+        @Override
+        double value(int i) {
+            return getLong(i);
+        }
+
+        @Override
+        public Long get(int i) {
+            return getLong(i);
+        }
+
+        @Override
+        public synchronized long[] array() {
+            if (array == null) {
+                long[] a = new long[size];
+                for (int c = 0; c < chunks.length; c++) {
+                    nio(c, 8).asLongBuffer().get(a, offsets[c], offsets[c + 1] - offsets[c]);
+                }
+                Reference.reachabilityFence(this);
+                array = a;
+            }
+            return array;
+        }
+
+        @Override
+        public double[] toDoubleArray(double[] a) {
+            for (int i = 0; i < size; i++) a[i] = getLong(i);
+            Reference.reachabilityFence(this);
+            return a;
+        }
+
+        @Override
+        public smile.data.vector.LongVector get(int... index) {
+            long[] v = new long[index.length];
+            for (int i = 0; i < index.length; i++) v[i] = getLong(index[i]);
+            return smile.data.vector.LongVector.of(name, v);
+        }
+
+        @Override
+        public LongStream stream() {
+            return IntStream.range(0, size).mapToLong(this::getLong);
+        }
+
+        @Override
+        smile.data.vector.BaseVector copy() {
+            return smile.data.vector.LongVector.of(name, array());
+        }
+
+        @Override
+        public String toString() {
+            return toString(10);
+        }
+    }
+
+    /** The vector of Arrow float8 chunks. */
+    static final class Doubles extends ArrowVector implements smile.data.vector.DoubleVector {
+        /** The values copied to Java array on demand. */
+        private double[] array;
+
+        /** Constructor. */
+        Doubles(String name, List<FieldVector> chunks) {
+            super(name, chunks);
+        }
+
+        @Override
+        public double getDouble(int i) {
+            int c = chunk(i);
+            try {
+                return buffers[c].getDouble((long) (i - offsets[c]) << 3);
+            } finally {
+                Reference.reachabilityFence(this);
+            }
+        }
+
+        @Override
+        double value(int i) {
+            return getDouble(i);
+        }
+
+        @Override
+        public Double get(int i) {
+            return getDouble(i);
+        }
+
+        @Override
+        public synchronized double[] array() {
+            if (array == null) {
+                double[] a = new double[size];
+                for (int c = 0; c < chunks.length; c++) {
+                    nio(c, 8).asDoubleBuffer().get(a, offsets[c], offsets[c + 1] - offsets[c]);
+                }
+                Reference.reachabilityFence(this);
+                array = a;
+            }
+            return array;
+        }
+
+        @Override
+        public double[] toDoubleArray(double[] a) {
+            System.arraycopy(array(), 0, a, 0, size);
+            return a;
+        }
+
+        @Override
+        public smile.data.vector.DoubleVector get(int... index) {
+            double[] v = new double[index.length];
+            for (int i = 0; i < index.length; i++) v[i] = getDouble(index[i]);
+            return smile.data.vector.DoubleVector.of(name, v);
+        }
+
+        @Override
+        public DoubleStream stream() {
+            return IntStream.range(0, size).mapToDouble(this::getDouble);
+        }
+
+        @Override
+        smile.data.vector.BaseVector copy() {
+            return smile.data.vector.DoubleVector.of(name, array());
+        }
+
+        @Override
+        public synchronized void fillna(double value) {
+            for (int i = 0; i < size; i++) {
+                double x = getDouble(i);
+                if (Double.isNaN(x) || Double.isInfinite(x)) {
+                    int c = chunk(i);
+                    buffers[c].setDouble((long) (i - offsets[c]) << 3, value);
+                    if (array != null) array[i] = value;
+                }
+            }
+            Reference.reachabilityFence(this);
+        }
+
+        @Override
+        public String toString() {
+            return toString(10);
+        }
+    }
+
+    /** The vector of Arrow float4 chunks. */
+    static final class Floats extends ArrowVector implements smile.data.vector.FloatVector {
+        /** The values copied to Java array on demand. */
+        private float[] array;
+
+        /** Constructor. */
+        Floats(String name, List<FieldVector> chunks) {
+            super(name, chunks);
+        }
+
+        @Override
+        public float getFloat(int i) {
+            int c = chunk(i);
+            try {
+                return buffers[c].getFloat((long) (i - offsets[c]) << 2);
+            } finally {
+                Reference.reachabilityFence(this);
+            }
+        }
+
+        @Override
+        double value(int i) {
+            return getFloat(i);
+        }
+
+        @Override
+        public Float get(int i) {
+            return getFloat(i);
+        }
+
+        @Override
+        public synchronized float[] array() {
+            if (array == null) {
+                float[] a = new float[size];
+                for (int c = 0; c < chunks.length; c++) {
+                    nio(c, 4).asFloatBuffer().get(a, offsets[c], offsets[c + 1] - offsets[c]);
+                }
+                Reference.reachabilityFence(this);
+                array = a;
+            }
+            return array;
+        }
+
+        @Override
+        public double[] toDoubleArray(double[] a) {
+            for (int i = 0; i < size; i++) a[i] = getFloat(i);
+            Reference.reachabilityFence(this);
+            return a;
+        }
+
+        @Override
+        public smile.data.vector.FloatVector get(int... index) {
+            float[] v = new float[index.length];
+            for (int i = 0; i < index.length; i++) v[i] = getFloat(index[i]);
+            return smile.data.vector.FloatVector.of(name, v);
+        }
+
+        @Override
+        public DoubleStream stream() {
+            return IntStream.range(0, size).mapToDouble(this::getFloat);
+        }
+
+        @Override
+        smile.data.vector.BaseVector copy() {
+            return smile.data.vector.FloatVector.of(name, array());
+        }
+
+        @Override
+        public synchronized void fillna(float value) {
+            for (int i = 0; i < size; i++) {
+                float x = getFloat(i);
+                if (Float.isNaN(x) || Float.isInfinite(x)) {
+                    int c = chunk(i);
+                    buffers[c].setFloat((long) (i - offsets[c]) << 2, value);
+                    if (array != null) array[i] = value;
+                }
+            }
+            Reference.reachabilityFence(this);
+        }
+
+        @Override
+        public String toString() {
+            return toString(10);
+        }
+    }
+
+    /** The vector of Arrow smallint chunks. */
+    static final class Shorts extends ArrowVector implements smile.data.vector.ShortVector {
+        /** The values copied to Java array on demand. */
+        private short[] array;
+
+        /** Constructor. */
+        Shorts(String name, List<FieldVector> chunks) {
+            super(name, chunks);
+        }
+
+        @Override
+        public short getShort(int i) {
+            int c = chunk(i);
+            try {
+                return buffers[c].getShort((long) (i - offsets[c]) << 1);
+            } finally {
+                Reference.reachabilityFence(this);
+            }
+        }
+
+        @Override
+        double value(int i) {
+            return getShort(i);
+        }
+
+        @Override
+        public Short get(int i) {
+            return getShort(i);
+        }
+
+        @Override
+        public synchronized short[] array() {
+            if (array == null) {
+                short[] a = new short[size];
+                for (int c = 0; c < chunks.length; c++) {
+                    nio(c, 2).asShortBuffer().get(a, offsets[c], offsets[c + 1] - offsets[c]);
+                }
+                Reference.reachabilityFence(this);
+                array = a;
+            }
+            return array;
+        }
+
+        @Override
+        public int[] toIntArray(int[] a) {
+            for (int i = 0; i < size; i++) a[i] = getShort(i);
+            Reference.reachabilityFence(this);
+            return a;
+        }
+
+        @Override
+        public double[] toDoubleArray(double[] a) {
+            for (int i = 0; i < size; i++) a[i] = getShort(i);
+            Reference.reachabilityFence(this);
+            return a;
+        }
+
+        @Override
+        public smile.data.vector.ShortVector get(int... index) {
+            short[] v = new short[index.length];
+            for (int i = 0; i < index.length; i++) v[i] = getShort(index[i]);
+            return smile.data.vector.ShortVector.of(name, v);
+        }
+
+        @Override
+        public IntStream stream() {
+            return IntStream.range(0, size).map(this::getShort);
+        }
+
+        @Override
+        smile.data.vector.BaseVector copy() {
+            return smile.data.vector.ShortVector.of(name, array());
+        }
+
+        @Override
+        public String toString() {
+            return toString(10);
+        }
+    }
+
+    /** The vector of Arrow tinyint chunks. */
+    static final class Bytes extends ArrowVector implements smile.data.vector.ByteVector {
+        /** The values copied to Java array on demand. */
+        private byte[] array;
+
+        /** Constructor. */
+        Bytes(String name, List<FieldVector> chunks) {
+            super(name, chunks);
+        }
+
+        @Override
+        public byte getByte(int i) {
+            int c = chunk(i);
+            try {
+                return buffers[c].getByte(i - offsets[c]);
+            } finally {
+                Reference.reachabilityFence(this);
+            }
+        }
+
+        @Override
+        double value(int i) {
+            return getByte(i);
+        }
+
+        @Override
+        public Byte get(int i) {
+            return getByte(i);
+        }
+
+        @Override
+        public synchronized byte[] array() {
+            if (array == null) {
+                byte[] a = new byte[size];
+                for (int c = 0; c < chunks.length; c++) {
+                    nio(c, 1).get(a, offsets[c], offsets[c + 1] - offsets[c]);
+                }
+                Reference.reachabilityFence(this);
+                array = a;
+            }
+            return array;
+        }
+
+        @Override
+        public int[] toIntArray(int[] a) {
+            for (int i = 0; i < size; i++) a[i] = getByte(i);
+            Reference.reachabilityFence(this);
+            return a;
+        }
+
+        @Override
+        public double[] toDoubleArray(double[] a) {
+            for (int i = 0; i < size; i++) a[i] = getByte(i);
+            Reference.reachabilityFence(this);
+            return a;
+        }
+
+        @Override
+        public smile.data.vector.ByteVector get(int... index) {
+            byte[] v = new byte[index.length];
+            for (int i = 0; i < index.length; i++) v[i] = getByte(index[i]);
+            return smile.data.vector.ByteVector.of(name, v);
+        }
+
+        @Override
+        public IntStream stream() {
+            return IntStream.range(0, size).map(this::getByte);
+        }
+
+        @Override
+        smile.data.vector.BaseVector copy() {
+            return smile.data.vector.ByteVector.of(name, array());
+        }
+
+        @Override
+        public String toString() {
+            return toString(10);
+        }
+    }
+
+    /** The vector of Arrow bit chunks. */
+    static final class Booleans extends ArrowVector implements smile.data.vector.BooleanVector {
+        /** The values copied to Java array on demand. */
+        private boolean[] array;
+
+        /** Constructor. */
+        Booleans(String name, List<FieldVector> chunks) {
+            super(name, chunks);
+        }
+
+        @Override
+        public boolean getBoolean(int i) {
+            int c = chunk(i);
+            try {
+                return BitVectorHelper.get(buffers[c], i - offsets[c]) != 0;
+            } finally {
+                Reference.reachabilityFence(this);
+            }
+        }
+
+        @Override
+        double value(int i) {
+            return getBoolean(i) ? 1.0 : 0.0;
+        }
+
+        @Override
+        public Boolean get(int i) {
+            return getBoolean(i);
+        }
+
+        @Override
+        public synchronized boolean[] array() {
+            if (array == null) {
+                boolean[] a = new boolean[size];
+                for (int i = 0; i < size; i++) a[i] = getBoolean(i);
+                Reference.reachabilityFence(this);
+                array = a;
+            }
+            return array;
+        }
+
+        @Override
+        public int[] toIntArray(int[] a) {
+            for (int i = 0; i < size; i++) a[i] = getBoolean(i) ? 1 : 0;
+            Reference.reachabilityFence(this);
+            return a;
+        }
+
+        @Override
+        public double[] toDoubleArray(double[] a) {
+            for (int i = 0; i < size; i++) a[i] = getBoolean(i) ? 1.0 : 0.0;
+            Reference.reachabilityFence(this);
+            return a;
+        }
+
+        @Override
+        public smile.data.vector.BooleanVector get(int... index) {
+            boolean[] v = new boolean[index.length];
+            for (int i = 0; i < index.length; i++) v[i] = getBoolean(index[i]);
+            return smile.data.vector.BooleanVector.of(name, v);
+        }
+
+        @Override
+        public IntStream stream() {
+            return IntStream.range(0, size).map(i -> getBoolean(i) ? 1 : 0);
+        }
+
+        @Override
+        smile.data.vector.BaseVector copy() {
+            return smile.data.vector.BooleanVector.of(name, array());
+        }
+
+        @Override
+        public String toString() {
+            return toString(10);
+        }
+    }
+
+    /**
+     * The vector of Arrow chunks with nulls, which are read from
+     * the validity bitmaps. The values are boxed on access.
+     * @param <T> the boxed type of elements.
+     */
+    static final class Nullable<T> implements smile.data.vector.Vector<T> {
+        /** The values, ignoring the validity. */
+        private final ArrowVector values;
+        /** The boxed data type. */
+        private final DataType type;
+
+        /** Constructor. */
+        Nullable(ArrowVector values) {
+            this.values = values;
+            this.type = ((smile.data.vector.BaseVector) values).type().boxed();
+        }
+
+        @Override
+        public String name() {
+            return values.name;
+        }
+
+        @Override
+        public DataType type() {
+            return type;
+        }
+
+        @Override
+        public int size() {
+            return values.size;
+        }
+
+        @Override
+        public boolean isNullAt(int i) {
+            return values.isNull(i);
+        }
+
+        @Override
+        public boolean anyNull() {
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int i) {
+            return values.isNull(i) ? null : (T) ((smile.data.vector.BaseVector) values).get(i);
+        }
+
+        @Override
+        public smile.data.vector.Vector<T> get(int... index) {
+            T[] v = newArray(index.length);
+            for (int i = 0; i < index.length; i++) v[i] = get(index[i]);
+            return smile.data.vector.Vector.of(name(), type, v);
+        }
+
+        @Override
+        public Object array() {
+            return toArray();
+        }
+
+        @Override
+        public T[] toArray() {
+            T[] v = newArray(size());
+            for (int i = 0; i < v.length; i++) v[i] = get(i);
+            return v;
+        }
+
+        @Override
+        public double[] toDoubleArray(double[] a) {
+            for (int i = 0; i < a.length; i++) {
+                a[i] = values.isNull(i) ? Double.NaN : values.value(i);
+            }
+            return a;
+        }
+
+        @Override
+        public Stream<T> stream() {
+            return IntStream.range(0, size()).mapToObj(this::get);
+        }
+
+        @Override
+        public smile.data.vector.Vector<LocalDate> toDate() {
+            throw new UnsupportedOperationException("Unsupported data type for toDate(): " + type);
+        }
+
+        @Override
+        public smile.data.vector.Vector<LocalTime> toTime() {
+            throw new UnsupportedOperationException("Unsupported data type for toTime(): " + type);
+        }
+
+        @Override
+        public smile.data.vector.Vector<LocalDateTime> toDateTime() {
+            throw new UnsupportedOperationException("Unsupported data type for toDateTime(): " + type);
+        }
+
+        @Override
+        public String toString() {
+            return toString(10);
+        }
+
+        /**
+         * Returns a copy of vector in Java arrays.
+         * @return a copy of vector.
+         */
+        smile.data.vector.BaseVector copy() {
+            return smile.data.vector.Vector.of(name(), type, toArray());
+        }
+
+        /**
+         * Serializes a copy of vector as the Arrow buffers are not serializable.
+         * @return a copy of vector.
+         */
+        private Object writeReplace() {
+            return copy();
+        }
+
+        /** Returns a new array of boxed type. */
+        @SuppressWarnings("unchecked")
+        private T[] newArray(int n) {
+            return (T[]) java.lang.reflect.Array.newInstance(((ObjectType) type).getObjectClass(), n);
+        }
+    }
+}
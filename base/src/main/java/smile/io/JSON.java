@@ -19,35 +19,54 @@ package smile.io;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.function.Function;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.stream.IntStream;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import smile.data.DataFrame;
-import smile.data.Tuple;
 import smile.data.type.DataType;
 import smile.data.type.DataTypes;
 import smile.data.type.StructField;
 import smile.data.type.StructType;
+import smile.data.vector.*;
+import smile.data.vector.Vector;
 import smile.util.Strings;
 
 /**
- * Reads JSON datasets. No nested objects are currently allowed.
+ * Reads JSON datasets. No nested objects are currently supported,
+ * which are skipped.
+ * <p>
+ * The objects are parsed in a streaming way directly into the column
+ * builders of schema fields, without materializing the object trees.
+ * The numeric and boolean fields are stored in primitive arrays. The
+ * fields not in the schema are skipped without being materialized.
+ * Therefore, a schema with a subset of fields works as a projection.
+ * In single-line mode, a large UTF-8 file is split into line-aligned
+ * chunks, which are parsed in parallel.
  *
  * @author Haifeng Li
  */
 public class JSON {
+    /** The factory of streaming parsers, which is thread-safe. */
+    private static final JsonFactory factory = new JsonFactory();
     /** The schema of data structure. */
     private StructType schema;
     /** Charset of file. */
     private Charset charset = StandardCharsets.UTF_8;
     /** Reads JSON files in single-line or multi-line mode. */
     private Mode mode = Mode.SINGLE_LINE;
+    /** The size of chunks in bytes to parse in parallel. */
+    private int chunkSize = 64 * 1024 * 1024;
 
     /** JSON files in single-line or multi-line mode. */
     public enum Mode {
@@ -99,6 +118,22 @@ public class JSON {
         return this;
     }
 
+    /**
+     * Sets the size of chunks to parse in parallel. Only the files
+     * in single-line mode and UTF-8 encoding are split into chunks,
+     * which are aligned to lines.
+     * @param size the chunk size in bytes.
+     * @return this object.
+     */
+    public JSON chunkSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Invalid chunk size: " + size);
+        }
+
+        this.chunkSize = size;
+        return this;
+    }
+
     /**
      * Reads a JSON file.
      * @param path the input file path.
@@ -119,10 +154,20 @@ public class JSON {
     public DataFrame read(Path path, int limit) throws IOException {
         if (schema == null) {
             // infer the schema from top 1000 objects.
-            schema = inferSchema(Files.newBufferedReader(path, charset), Math.min(1000, limit));
+            try (BufferedReader reader = Files.newBufferedReader(path, charset)) {
+                schema = inferSchema(reader, Math.min(1000, limit));
+            }
+        }
+
+        if (mode == Mode.SINGLE_LINE && limit == Integer.MAX_VALUE
+                && (charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII))
+                && Files.size(path) > chunkSize) {
+            return readChunks(path);
         }
 
-        return read(Files.newBufferedReader(path, charset), Integer.MAX_VALUE);
+        try (BufferedReader reader = Files.newBufferedReader(path, charset)) {
+            return read(reader, limit);
+        }
     }
 
     /**
@@ -147,10 +192,14 @@ public class JSON {
     public DataFrame read(String path, int limit) throws IOException, URISyntaxException {
         if (schema == null) {
             // infer the schema from top 1000 objects.
-            schema = inferSchema(Input.reader(path, charset), Math.min(1000, limit));
+            try (BufferedReader reader = Input.reader(path, charset)) {
+                schema = inferSchema(reader, Math.min(1000, limit));
+            }
         }
 
-        return read(Input.reader(path, charset), Integer.MAX_VALUE);
+        try (BufferedReader reader = Input.reader(path, charset)) {
+            return read(reader, limit);
+        }
     }
 
     /**
@@ -166,46 +215,173 @@ public class JSON {
             throw new IllegalStateException("The schema is not set or inferred.");
         }
 
-        List<Function<String, Object>> parser = schema.parser();
-        List<Tuple> rows = new ArrayList<>();
-        ObjectMapper objectMapper = new ObjectMapper();
+        Column[] columns = columns();
+        try (JsonParser parser = factory.createParser(reader)) {
+            parse(parser, columns, index(), limit);
+        }
 
-        if (mode == Mode.MULTI_LINE) {
-            List<Map<String, String>> maps = objectMapper.readValue(reader, new TypeReference<>() {
-            });
-            for (Map<String, String> map : maps) {
-                rows.add(toTuple(map, parser));
-                if (rows.size() >= limit) break;
-            }
-        } else {
-            String line = reader.readLine();
-            while (rows.size() < limit && line != null) {
+        return toDataFrame(columns);
+    }
+
+    /**
+     * Reads a large JSON-lines file in parallel. The file is split into
+     * chunks at line boundaries, which are parsed into separate column
+     * builders and concatenated in order.
+     * @param path the input file path.
+     * @throws IOException when fails to read the file.
+     * @return the data frame.
+     */
+    private DataFrame readChunks(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] splits = split(channel);
+            Map<String, Integer> index = index();
+            Column[][] chunks = IntStream.range(0, splits.length - 1).parallel().mapToObj(i -> {
                 try {
-                    Map<String, String> map = objectMapper.readValue(line, new TypeReference<>() {
-                    });
-                    rows.add(toTuple(map, parser));
-                } catch (Exception ex) {
-                    throw new RuntimeException(ex);
+                    int length = Math.toIntExact(splits[i+1] - splits[i]);
+                    ByteBuffer buffer = ByteBuffer.allocate(length);
+                    while (buffer.hasRemaining()) {
+                        if (channel.read(buffer, splits[i] + buffer.position()) < 0) break;
+                    }
+
+                    Column[] columns = columns();
+                    try (JsonParser parser = factory.createParser(buffer.array(), 0, buffer.position())) {
+                        parse(parser, columns, index, Integer.MAX_VALUE);
+                    }
+                    return columns;
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }).toArray(Column[][]::new);
+
+            Column[] columns = chunks[0];
+            for (int i = 1; i < chunks.length; i++) {
+                for (int j = 0; j < columns.length; j++) {
+                    columns[j].addAll(chunks[i][j]);
                 }
-                line = reader.readLine();
+            }
+            return toDataFrame(columns);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Returns the chunk boundaries, each of which is the beginning
+     * of a line except the end of file.
+     * @param channel the file channel.
+     * @throws IOException when fails to read the file.
+     * @return the chunk boundaries.
+     */
+    private long[] split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<Long> splits = new ArrayList<>();
+        splits.add(0L);
+
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long position = chunkSize;
+        while (position < size) {
+            buffer.clear();
+            int n = channel.read(buffer, position);
+            if (n <= 0) break;
+
+            int i = 0;
+            while (i < n && buffer.get(i) != '\n') i++;
+            if (i < n) {
+                // the next line starts after the line feed.
+                position += i + 1;
+                if (position < size) splits.add(position);
+                position = Math.max(position, splits.get(splits.size() - 1) + chunkSize);
+            } else {
+                position += n;
             }
         }
 
-        schema = schema.boxed(rows);
-        return DataFrame.of(rows, schema);
+        splits.add(size);
+        return splits.stream().mapToLong(Long::longValue).toArray();
     }
 
-    /** Converts a map to tuple. */
-    private Tuple toTuple(Map<String, String> map, List<Function<String, Object>> parser) {
-        Object[] row = new Object[schema.length()];
-        for (int i = 0; i < row.length; i++) {
-            String s = map.get(schema.field(i).name);
-            if (!Strings.isNullOrEmpty(s)) {
-                row[i] = parser.get(i).apply(s);
+    /**
+     * Returns the column index of field names.
+     * @return the column index of field names.
+     */
+    private Map<String, Integer> index() {
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < schema.length(); i++) {
+            index.put(schema.field(i).name, i);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the column builders of schema fields.
+     * @return the column builders.
+     */
+    private Column[] columns() {
+        Column[] columns = new Column[schema.length()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = Column.of(schema.field(i));
+        }
+        return columns;
+    }
+
+    /**
+     * Parses the objects into column builders.
+     * @param parser the JSON parser.
+     * @param columns the column builders.
+     * @param index the column index of field names.
+     * @param limit the number of records to read.
+     * @throws IOException when fails to parse the input.
+     */
+    private void parse(JsonParser parser, Column[] columns, Map<String, Integer> index, int limit) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (mode == Mode.MULTI_LINE) {
+            if (token != JsonToken.START_ARRAY) {
+                throw new IOException("Expect a JSON array of objects at " + parser.currentLocation());
             }
+            token = parser.nextToken();
+        }
+
+        int n = 0;
+        while (n < limit && token == JsonToken.START_OBJECT) {
+            for (Column column : columns) {
+                column.add();
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                Integer i = index.get(parser.currentName());
+                JsonToken value = parser.nextToken();
+                if (i == null || value.isStructStart()) {
+                    parser.skipChildren();
+                } else if (value != JsonToken.VALUE_NULL) {
+                    columns[i].set(n, parser, value);
+                }
+            }
+
+            n++;
+            token = parser.nextToken();
+        }
+
+        if (n < limit && token != null && token != JsonToken.END_ARRAY) {
+            throw new IOException(String.format("Expect a JSON object but get %s at %s", token, parser.currentLocation()));
+        }
+    }
+
+    /**
+     * Returns the data frame of column builders. The schema is
+     * updated with boxed types for the columns with missing values.
+     * @param columns the column builders.
+     * @return the data frame.
+     */
+    private DataFrame toDataFrame(Column[] columns) {
+        BaseVector<?, ?, ?>[] vectors = new BaseVector[columns.length];
+        StructField[] fields = new StructField[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            vectors[i] = columns[i].toVector();
+            fields[i] = vectors[i].field();
         }
 
-        return Tuple.of(row, schema);
+        schema = DataTypes.struct(fields);
+        return DataFrame.of(vectors);
     }
 
     /**
@@ -222,48 +398,319 @@ public class JSON {
      * @return the data frame.
      */
     public StructType inferSchema(BufferedReader reader, int limit) throws IOException {
-        List<Map<String, String>> rows = new ArrayList<>();
-        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, DataType> types = new HashMap<>();
+        int n = 0;
 
-        if (mode == Mode.MULTI_LINE) {
-            List<Map<String, String>> maps = objectMapper.readValue(reader, new TypeReference<>() {
-            });
-            for (Map<String, String> map : maps) {
-                rows.add(map);
-                if (rows.size() >= limit) break;
-            }
-        } else {
-            String line = reader.readLine();
-            while (rows.size() < limit && line != null) {
-                try {
-                    Map<String, String> map = objectMapper.readValue(line, new TypeReference<>() {
-                    });
-                    rows.add(map);
-                } catch (Exception ex) {
-                    throw new RuntimeException(ex);
+        JsonParser parser = factory.createParser(reader);
+        JsonToken token = parser.nextToken();
+        if (mode == Mode.MULTI_LINE && token == JsonToken.START_ARRAY) {
+            token = parser.nextToken();
+        }
+
+        while (n < limit && token == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value.isStructStart()) {
+                    parser.skipChildren();
+                } else if (value != JsonToken.VALUE_NULL) {
+                    types.put(name, DataType.coerce(types.get(name), DataType.infer(parser.getText())));
+                } else {
+                    types.putIfAbsent(name, null);
                 }
-                line = reader.readLine();
             }
-        }
 
-        if (rows.isEmpty()) {
-            throw new IOException("Empty file");
+            n++;
+            token = parser.nextToken();
         }
 
-        Map<String, DataType> types = new HashMap<>();
-        for (Map<String, String> row : rows) {
-            for (Map.Entry<String, String> e : row.entrySet()) {
-                String name = e.getKey();
-                String value = e.getValue();
-                types.put(name, DataType.coerce(types.get(name), DataType.infer(value)));
-            }
+        if (n == 0) {
+            throw new IOException("Empty file");
         }
 
         int i = 0;
         StructField[] fields = new StructField[types.size()];
         for (Map.Entry<String, DataType> type : types.entrySet()) {
-            fields[i++] = new StructField(type.getKey(), type.getValue());
+            fields[i++] = new StructField(type.getKey(), type.getValue() == null ? DataTypes.StringType : type.getValue());
         }
         return DataTypes.struct(fields);
     }
+
+    /**
+     * The column builder of a field, which stores the values
+     * in a growable array and tracks the missing values.
+     */
+    private abstract static class Column {
+        /** The field of column. */
+        final StructField field;
+        /** The missing values. */
+        final BitSet missing = new BitSet();
+        /** The number of values. */
+        int size = 0;
+
+        /**
+         * Constructor.
+         * @param field the field of column.
+         */
+        Column(StructField field) {
+            this.field = field;
+        }
+
+        /**
+         * Returns the column builder of a field.
+         * @param field the field of column.
+         * @return the column builder.
+         */
+        static Column of(StructField field) {
+            return switch (field.type.id()) {
+                case Integer -> new IntColumn(field);
+                case Long -> new LongColumn(field);
+                case Double -> new DoubleColumn(field);
+                case Float -> new FloatColumn(field);
+                case Boolean -> new BooleanColumn(field);
+                default -> new ObjectColumn(field);
+            };
+        }
+
+        /** Appends a missing value, which may be set later. */
+        void add() {
+            if (size == capacity()) {
+                grow(Math.max(16, 2 * size));
+            }
+            missing.set(size++);
+        }
+
+        /**
+         * Sets the value of the current token.
+         * @param i the row index.
+         * @param parser the JSON parser.
+         * @param token the current token, which is a scalar value.
+         * @throws IOException when fails to parse the value.
+         */
+        void set(int i, JsonParser parser, JsonToken token) throws IOException {
+            String s = parser.getText();
+            if (!Strings.isNullOrEmpty(s)) {
+                missing.clear(i);
+                set(i, field.valueOf(s));
+            }
+        }
+
+        /**
+         * Appends the values of another column builder.
+         * @param other the column builder of next chunk.
+         */
+        void addAll(Column other) {
+            if (size + other.size > capacity()) {
+                grow(size + other.size);
+            }
+            System.arraycopy(other.array(), 0, array(), size, other.size);
+            for (int i = other.missing.nextSetBit(0); i >= 0; i = other.missing.nextSetBit(i + 1)) {
+                missing.set(size + i);
+            }
+            size += other.size;
+        }
+
+        /**
+         * Returns the vector of column values. The values are boxed
+         * if some of them are missing.
+         * @return the vector of column values.
+         */
+        BaseVector<?, ?, ?> toVector() {
+            if (missing.isEmpty() && field.type.isPrimitive()) {
+                return primitive();
+            }
+
+            DataType type = field.type.isPrimitive() ? field.type.boxed() : field.type;
+            StructField boxed = new StructField(field.name, type, field.measure);
+            Object[] values = new Object[size];
+            for (int i = 0; i < size; i++) {
+                if (!missing.get(i)) values[i] = get(i);
+            }
+            return type.id() == DataType.ID.String ?
+                    StringVector.of(boxed, Arrays.copyOf(values, size, String[].class)) :
+                    Vector.of(boxed, values);
+        }
+
+        /**
+         * Returns the capacity of value array.
+         * @return the capacity of value array.
+         */
+        abstract int capacity();
+
+        /**
+         * Grows the value array.
+         * @param capacity the new capacity.
+         */
+        abstract void grow(int capacity);
+
+        /**
+         * Returns the value array.
+         * @return the value array.
+         */
+        abstract Object array();
+
+        /**
+         * Returns the boxed value.
+         * @param i the row index.
+         * @return the boxed value.
+         */
+        abstract Object get(int i);
+
+        /**
+         * Sets the value parsed from string.
+         * @param i the row index.
+         * @param value the value.
+         */
+        abstract void set(int i, Object value);
+
+        /**
+         * Returns the primitive vector without missing values.
+         * @return the primitive vector.
+         */
+        abstract BaseVector<?, ?, ?> primitive();
+    }
+
+    /** The column builder of int values. */
+    private static class IntColumn extends Column {
+        int[] values = new int[0];
+        IntColumn(StructField field) { super(field); }
+        @Override int capacity() { return values.length; }
+        @Override void grow(int capacity) { values = Arrays.copyOf(values, capacity); }
+        @Override Object array() { return values; }
+        @Override Object get(int i) { return values[i]; }
+        @Override void set(int i, Object value) { values[i] = ((Number) value).intValue(); }
+        @Override BaseVector<?, ?, ?> primitive() { return IntVector.of(field, Arrays.copyOf(values, size)); }
+
+        @Override
+        void set(int i, JsonParser parser, JsonToken token) throws IOException {
+            if (token == JsonToken.VALUE_NUMBER_INT) {
+                missing.clear(i);
+                values[i] = parser.getIntValue();
+            } else {
+                super.set(i, parser, token);
+            }
+        }
+    }
+
+    /** The column builder of long values. */
+    private static class LongColumn extends Column {
+        long[] values = new long[0];
+        LongColumn(StructField field) { super(field); }
+        @Override int capacity() { return values.length; }
+        @Override void grow(int capacity) { values = Arrays.copyOf(values, capacity); }
+        @Override Object array() { return values; }
+        @Override Object get(int i) { return values[i]; }
+        @Override void set(int i, Object value) { values[i] = ((Number) value).longValue(); }
+        @Override BaseVector<?, ?, ?> primitive() { return LongVector.of(field, Arrays.copyOf(values, size)); }
+
+        @Override
+        void set(int i, JsonParser parser, JsonToken token) throws IOException {
+            if (token == JsonToken.VALUE_NUMBER_INT) {
+                missing.clear(i);
+                values[i] = parser.getLongValue();
+            } else {
+                super.set(i, parser, token);
+            }
+        }
+    }
+
+    /** The column builder of double values. */
+    private static class DoubleColumn extends Column {
+        double[] values = new double[0];
+        DoubleColumn(StructField field) { super(field); }
+        @Override int capacity() { return values.length; }
+        @Override void grow(int capacity) { values = Arrays.copyOf(values, capacity); }
+        @Override Object array() { return values; }
+        @Override Object get(int i) { return values[i]; }
+        @Override void set(int i, Object value) { values[i] = ((Number) value).doubleValue(); }
+        @Override BaseVector<?, ?, ?> primitive() { return DoubleVector.of(field, Arrays.copyOf(values, size)); }
+
+        @Override
+        void set(int i, JsonParser parser, JsonToken token) throws IOException {
+            if (token.isNumeric()) {
+                missing.clear(i);
+                values[i] = parser.getDoubleValue();
+            } else {
+                super.set(i, parser, token);
+            }
+        }
+    }
+
+    /** The column builder of float values. */
+    private static class FloatColumn extends Column {
+        float[] values = new float[0];
+        FloatColumn(StructField field) { super(field); }
+        @Override int capacity() { return values.length; }
+        @Override void grow(int capacity) { values = Arrays.copyOf(values, capacity); }
+        @Override Object array() { return values; }
+        @Override Object get(int i) { return values[i]; }
+        @Override void set(int i, Object value) { values[i] = ((Number) value).floatValue(); }
+        @Override BaseVector<?, ?, ?> primitive() { return FloatVector.of(field, Arrays.copyOf(values, size)); }
+
+        @Override
+        void set(int i, JsonParser parser, JsonToken token) throws IOException {
+            if (token.isNumeric()) {
+                missing.clear(i);
+                values[i] = parser.getFloatValue();
+            } else {
+                super.set(i, parser, token);
+            }
+        }
+    }
+
+    /** The column builder of boolean values. */
+    private static class BooleanColumn extends Column {
+        boolean[] values = new boolean[0];
+        BooleanColumn(StructField field) { super(field); }
+        @Override int capacity() { return values.length; }
+        @Override void grow(int capacity) { values = Arrays.copyOf(values, capacity); }
+        @Override Object array() { return values; }
+        @Override Object get(int i) { return values[i]; }
+        @Override void set(int i, Object value) { values[i] = (Boolean) value; }
+        @Override BaseVector<?, ?, ?> primitive() { return BooleanVector.of(field, Arrays.copyOf(values, size)); }
+
+        @Override
+        void set(int i, JsonParser parser, JsonToken token) throws IOException {
+            if (token.isBoolean()) {
+                missing.clear(i);
+                values[i] = token == JsonToken.VALUE_TRUE;
+            } else {
+                super.set(i, parser, token);
+            }
+        }
+    }
+
+    /** The column builder of other types, including the less common primitive types. */
+    private static class ObjectColumn extends Column {
+        Object[] values = new Object[0];
+        ObjectColumn(StructField field) { super(field); }
+        @Override int capacity() { return values.length; }
+        @Override void grow(int capacity) { values = Arrays.copyOf(values, capacity); }
+        @Override Object array() { return values; }
+        @Override Object get(int i) { return values[i]; }
+        @Override void set(int i, Object value) { values[i] = value; }
+
+        @Override
+        BaseVector<?, ?, ?> primitive() {
+            switch (field.type.id()) {
+                case Byte: {
+                    byte[] x = new byte[size];
+                    for (int i = 0; i < size; i++) x[i] = (Byte) values[i];
+                    return ByteVector.of(field, x);
+                }
+                case Short: {
+                    short[] x = new short[size];
+                    for (int i = 0; i < size; i++) x[i] = (Short) values[i];
+                    return ShortVector.of(field, x);
+                }
+                case Char: {
+                    char[] x = new char[size];
+                    for (int i = 0; i < size; i++) x[i] = (Character) values[i];
+                    return CharVector.of(field, x);
+                }
+                default:
+                    throw new IllegalStateException("Unsupported primitive type: " + field.type);
+            }
+        }
+    }
 }
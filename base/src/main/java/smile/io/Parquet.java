@@ -18,6 +18,7 @@
 package smile.io;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.URISyntaxException;
@@ -26,13 +27,23 @@ import java.nio.ByteOrder;
 import java.nio.file.Path;
 import java.time.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import org.apache.parquet.ParquetReadOptions;
 import org.apache.parquet.column.ColumnDescriptor;
 import org.apache.parquet.column.page.PageReadStore;
 import org.apache.parquet.example.data.Group;
 import org.apache.parquet.example.data.simple.convert.GroupRecordConverter;
+import org.apache.parquet.filter2.compat.FilterCompat;
+import org.apache.parquet.filter2.predicate.FilterPredicate;
 import org.apache.parquet.hadoop.ParquetFileReader;
 import org.apache.parquet.hadoop.metadata.ParquetMetadata;
 import org.apache.parquet.io.ColumnIOFactory;
@@ -149,6 +160,117 @@ public class Parquet {
         }
     }
 
+    /**
+     * Returns a lazy stream of data frames, one per row group, of a local
+     * parquet file. The stream should be closed after use, e.g. in a
+     * try-with-resources statement, to release the file.
+     * @param path the input file path.
+     * @param columns the columns to read. If empty, read all columns.
+     * @throws IOException when fails to read the file.
+     * @return the stream of row groups.
+     */
+    public static Stream<DataFrame> stream(Path path, String... columns) throws IOException {
+        return stream(new LocalInputFile(path), null, columns);
+    }
+
+    /**
+     * Returns a lazy stream of data frames, one per row group, of a HDFS
+     * parquet file. The stream should be closed after use.
+     * @param path the input file path.
+     * @param columns the columns to read. If empty, read all columns.
+     * @throws IOException when fails to read the file.
+     * @throws URISyntaxException when the file path syntax is wrong.
+     * @return the stream of row groups.
+     */
+    public static Stream<DataFrame> stream(String path, String... columns) throws IOException, URISyntaxException {
+        return stream(HadoopInput.file(path), null, columns);
+    }
+
+    /**
+     * Returns a lazy stream of data frames, one per row group, of a parquet
+     * file. Only one row group is in memory at a time so that files much
+     * larger than the memory can be processed batch by batch, e.g. for
+     * batch scoring or incremental training.
+     * <p>
+     * The filter predicate is pushed down to the reader. The row groups
+     * whose column statistics or dictionaries prove no match are skipped
+     * without being read. The remaining records are filtered one by one.
+     * The columns referenced by the filter should be in the projection.
+     * Row groups without any matching records are skipped in the stream.
+     * <p>
+     * The stream should be closed after use to release the file.
+     *
+     * @param file an interface with the methods needed by Parquet
+     *             to read data files. See HadoopInputFile for example.
+     * @param filter the filter predicate, e.g.
+     *               {@code FilterApi.gt(FilterApi.doubleColumn("x"), 0.0)}.
+     *               If null, all records are read.
+     * @param columns the columns to read. If empty, read all columns.
+     * @throws IOException when fails to read the file.
+     * @return the stream of row groups.
+     */
+    public static Stream<DataFrame> stream(InputFile file, FilterPredicate filter, String... columns) throws IOException {
+        FilterCompat.Filter recordFilter = filter == null ? FilterCompat.NOOP : FilterCompat.get(filter);
+        ParquetReadOptions options = ParquetReadOptions.builder().withRecordFilter(recordFilter).build();
+        ParquetFileReader reader = ParquetFileReader.open(file, options);
+
+        MessageType schema;
+        try {
+            schema = reader.getFooter().getFileMetaData().getSchema();
+            if (columns.length > 0) {
+                List<Type> fields = Arrays.stream(columns).map(schema::getType).collect(Collectors.toList());
+                schema = new MessageType(schema.getName(), fields);
+                reader.setRequestedSchema(schema);
+            }
+        } catch (RuntimeException ex) {
+            reader.close();
+            throw ex;
+        }
+
+        final MessageType projection = schema;
+        final StructType struct = toSmileSchema(projection);
+        final List<ColumnDescriptor> descriptors = projection.getColumns();
+        logger.debug("Stream {} row groups of parquet file {}", reader.getRowGroups().size(), file);
+
+        Spliterator<DataFrame> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super DataFrame> action) {
+                try {
+                    PageReadStore store;
+                    while ((store = reader.readNextFilteredRowGroup()) != null) {
+                        final long rowCount = store.getRowCount();
+                        final MessageColumnIO columnIO = new ColumnIOFactory().getColumnIO(projection);
+                        final RecordReader<Group> recordReader = columnIO.getRecordReader(store, new GroupRecordConverter(projection), recordFilter);
+                        List<Tuple> rows = new ArrayList<>();
+                        for (long i = 0; i < rowCount; i++) {
+                            Group g = recordReader.read();
+                            // The record is null or marked to skip if filtered out.
+                            if (g != null && !recordReader.shouldSkipCurrentRecord()) {
+                                rows.add(Tuple.of(readRowGroup(g, descriptors, struct), struct));
+                            }
+                        }
+
+                        if (!rows.isEmpty()) {
+                            action.accept(DataFrame.of(rows));
+                            return true;
+                        }
+                    }
+                    return false;
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+    }
+
     private static Object[] readRowGroup(Group g, List<ColumnDescriptor> columns, StructType schema) {
         int length = schema.length();
         Object[] o = new Object[length];
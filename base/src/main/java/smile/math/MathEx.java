@@ -26,6 +26,7 @@ import java.util.stream.LongStream;
 import smile.math.blas.UPLO;
 import smile.math.distance.Distance;
 import smile.math.matrix.Matrix;
+import smile.math.simd.SIMD;
 import smile.sort.QuickSelect;
 import smile.sort.QuickSort;
 import smile.sort.Sort;
@@ -2706,14 +2707,7 @@ public class MathEx {
             }
         }
 
-        double sum = 0.0;
-        for (int i = 0; i < a.length; i++) {
-            // convert x and y for better precision
-            double d = (double) a[i] - (double) b[i];
-            sum += d * d;
-        }
-
-        return sum;
+        return SIMD.engine.squaredDistance(a, b);
     }
 
     /**
@@ -2751,13 +2745,7 @@ public class MathEx {
             }
         }
 
-        double sum = 0.0;
-        for (int i = 0; i < a.length; i++) {
-            double d = a[i] - b[i];
-            sum += d * d;
-        }
-
-        return sum;
+        return SIMD.engine.squaredDistance(a, b);
     }
 
     /**
@@ -3296,12 +3284,7 @@ public class MathEx {
             throw new IllegalArgumentException("Arrays have different length.");
         }
 
-        float sum = 0.0F;
-        for (int i = 0; i < a.length; i++) {
-            sum += a[i] * b[i];
-        }
-
-        return sum;
+        return SIMD.engine.dot(a, b);
     }
 
     /**
@@ -3315,12 +3298,7 @@ public class MathEx {
             throw new IllegalArgumentException("Arrays have different length.");
         }
 
-        double sum = 0.0;
-        for (int i = 0; i < a.length; i++) {
-            sum += a[i] * b[i];
-        }
-
-        return sum;
+        return SIMD.engine.dot(a, b);
     }
 
     /**
@@ -3619,15 +3597,7 @@ public class MathEx {
             throw new IllegalArgumentException("array length has to be at least 3.");
         }
 
-        double Sxy = cov(x, y);
-        double Sxx = var(x);
-        double Syy = var(y);
-
-        if (Sxx == 0 || Syy == 0) {
-            return Double.NaN;
-        }
-
-        return Sxy / sqrt(Sxx * Syy);
+        return SIMD.engine.cor(x, y);
     }
 
     /**
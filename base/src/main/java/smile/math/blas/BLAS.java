@@ -35,11 +35,32 @@ public interface BLAS {
     BLAS engine = getInstance();
 
     /**
-     * Creates an instance.
+     * Creates an instance. The engine is chosen by the system property
+     * {@code smile.blas}, which may be {@code openblas} (the default) or
+     * {@code java}. If the native library of OpenBLAS fails to load, e.g.
+     * the native jars are not deployed, it falls back to the pure Java
+     * implementation.
      * @return a BLAS instance.
      */
     static BLAS getInstance() {
-        return new smile.math.blas.openblas.OpenBLAS();
+        String engine = System.getProperty("smile.blas", "openblas");
+        if (engine.equalsIgnoreCase("java")) {
+            return new smile.math.blas.jvm.JavaBLAS();
+        }
+
+        if (!engine.equalsIgnoreCase("openblas")) {
+            throw new IllegalArgumentException("Unknown BLAS engine: " + engine);
+        }
+
+        try {
+            BLAS blas = new smile.math.blas.openblas.OpenBLAS();
+            // Loads the native library, which is deferred to the first call.
+            blas.nrm2(1, new double[1], 1);
+            return blas;
+        } catch (LinkageError e) {
+            org.slf4j.LoggerFactory.getLogger(BLAS.class).warn("Failed to load OpenBLAS, fall back to pure Java BLAS: {}", e.getMessage());
+            return new smile.math.blas.jvm.JavaBLAS();
+        }
     }
 
     /**
@@ -1978,4 +1999,91 @@ public interface BLAS {
      * @param ldc the leading dimension of C as declared in the caller.
      */
     void symm(Layout layout, Side side, UPLO uplo, int m, int n, float alpha, FloatBuffer A, int lda, FloatBuffer B, int ldb, float beta, FloatBuffer C, int ldc);
+
+    /**
+     * Performs the symmetric rank-k update.
+     * <pre>{@code
+     *     C := alpha*A*A' + beta*C
+     * }</pre>
+     * or
+     * <pre>{@code
+     *     C := alpha*A'*A + beta*C
+     * }</pre>
+     * where C is symmetric and only its upper or lower triangular part
+     * is updated.
+     *
+     * @param layout matrix layout.
+     * @param uplo the upper or lower triangular part of the matrix C is
+     *             to be updated.
+     * @param trans {@code C := alpha*A*A' + beta*C} if trans is normal or
+     *              {@code C := alpha*A'*A + beta*C} if trans is transpose.
+     * @param n the order of the matrix C.
+     * @param k the number of columns of the matrix op(A).
+     * @param alpha the scalar alpha.
+     * @param A the matrix A.
+     * @param lda the leading dimension of A as declared in the caller.
+     * @param beta the scalar beta. When beta is supplied as zero,
+     *             C need not be set on input.
+     * @param C the matrix C.
+     * @param ldc the leading dimension of C as declared in the caller.
+     */
+    void syrk(Layout layout, UPLO uplo, Transpose trans, int n, int k, double alpha, double[] A, int lda, double beta, double[] C, int ldc);
+
+    /**
+     * Performs the symmetric rank-k update.
+     * <pre>{@code
+     *     C := alpha*A*A' + beta*C
+     * }</pre>
+     * or
+     * <pre>{@code
+     *     C := alpha*A'*A + beta*C
+     * }</pre>
+     * where C is symmetric and only its upper or lower triangular part
+     * is updated.
+     *
+     * @param layout matrix layout.
+     * @param uplo the upper or lower triangular part of the matrix C is
+     *             to be updated.
+     * @param trans {@code C := alpha*A*A' + beta*C} if trans is normal or
+     *              {@code C := alpha*A'*A + beta*C} if trans is transpose.
+     * @param n the order of the matrix C.
+     * @param k the number of columns of the matrix op(A).
+     * @param alpha the scalar alpha.
+     * @param A the matrix A.
+     * @param lda the leading dimension of A as declared in the caller.
+     * @param beta the scalar beta. When beta is supplied as zero,
+     *             C need not be set on input.
+     * @param C the matrix C.
+     * @param ldc the leading dimension of C as declared in the caller.
+     */
+    void syrk(Layout layout, UPLO uplo, Transpose trans, int n, int k, double alpha, DoublePointer A, int lda, double beta, DoublePointer C, int ldc);
+
+    /**
+     * Performs the symmetric rank-k update.
+     * <pre>{@code
+     *     C := alpha*A*A' + beta*C
+     * }</pre>
+     * or
+     * <pre>{@code
+     *     C := alpha*A'*A + beta*C
+     * }</pre>
+     * where C is symmetric and only its upper or lower triangular part
+     * is updated.
+     *
+     * @param layout matrix layout.
+     * @param uplo the upper or lower triangular part of the matrix C is
+     *             to be updated.
+     * @param trans {@code C := alpha*A*A' + beta*C} if trans is normal or
+     *              {@code C := alpha*A'*A + beta*C} if trans is transpose.
+     * @param n the order of the matrix C.
+     * @param k the number of columns of the matrix op(A).
+     * @param alpha the scalar alpha.
+     * @param A the matrix A.
+     * @param lda the leading dimension of A as declared in the caller.
+     * @param beta the scalar beta. When beta is supplied as zero,
+     *             C need not be set on input.
+     * @param C the matrix C.
+     * @param ldc the leading dimension of C as declared in the caller.
+     */
+    void syrk(Layout layout, UPLO uplo, Transpose trans, int n, int k, float alpha, float[] A, int lda, float beta, float[] C, int ldc);
 }
@@ -0,0 +1,643 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.math.blas.jvm;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import smile.math.blas.Diag;
+import smile.math.blas.Side;
+import smile.math.blas.Transpose;
+import smile.math.blas.UPLO;
+
+/**
+ * Single precision kernels of pure Java BLAS. The matrices are in
+ * column-major order and each array argument comes with the offset
+ * of its first element. The vector arguments of level 2 routines
+ * with non-unit increments are gathered into contiguous arrays.
+ *
+ * @author Haifeng Li
+ */
+final class FloatKernel {
+    /** The number of rows of the micro-tile of C. */
+    static final int MR = 4;
+    /** The number of columns of the micro-tile of C. */
+    static final int NR = 4;
+    /**
+     * The depth of packed panels. A KC x NR panel of B and
+     * a MR x KC panel of A fit in the L1 cache together.
+     */
+    static final int KC = 256;
+    /** The number of rows of packed block of A, which fits in the L2 cache. */
+    static final int MC = 128;
+    /** The number of columns of packed block of B, which fits in the L3 cache. */
+    static final int NC = 2048;
+    /** The number of multiply-adds below which GEMM runs without packing. */
+    static final long SMALL = 32 * 32 * 32;
+    /** The number of multiply-adds above which the kernels run in parallel. */
+    static final long PARALLEL = 1L << 20;
+
+    /** The buffer of packed block of A per thread. */
+    private static final ThreadLocal<float[]> packA = ThreadLocal.withInitial(() -> new float[MC * KC]);
+
+    /** Private constructor to prevent instance creation. */
+    private FloatKernel() {
+
+    }
+
+    /**
+     * Returns true if a kernel of given number of multiply-adds
+     * should run in parallel.
+     */
+    private static boolean parallel(long flops) {
+        return flops >= PARALLEL && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+    /** Returns the offset of first element of a vector with possibly negative increment. */
+    static int start(int n, int inc) {
+        return inc < 0 ? (1 - n) * inc : 0;
+    }
+
+    /** Copies a strided vector into a contiguous array. */
+    static float[] gather(int n, float[] x, int xo, int incx) {
+        float[] v = new float[n];
+        int ix = xo + start(n, incx);
+        for (int i = 0; i < n; i++, ix += incx) {
+            v[i] = x[ix];
+        }
+        return v;
+    }
+
+    /** Copies a contiguous array into a strided vector. */
+    static void scatter(int n, float[] v, float[] x, int xo, int incx) {
+        int ix = xo + start(n, incx);
+        for (int i = 0; i < n; i++, ix += incx) {
+            x[ix] = v[i];
+        }
+    }
+
+    /** y = beta * y. Note that y is set to zero if beta is zero even if it has NaN. */
+    private static void scale(int n, float beta, float[] y, int yo) {
+        if (beta == 0.0f) {
+            java.util.Arrays.fill(y, yo, yo + n, 0.0f);
+        } else if (beta != 1.0f) {
+            for (int i = yo; i < yo + n; i++) {
+                y[i] *= beta;
+            }
+        }
+    }
+
+    /** C = beta * C of a m x n matrix. */
+    private static void scale(int m, int n, float beta, float[] C, int co, int ldc) {
+        if (beta != 1.0f) {
+            for (int j = 0; j < n; j++) {
+                scale(m, beta, C, co + j * ldc);
+            }
+        }
+    }
+
+    static float asum(int n, float[] x, int xo, int incx) {
+        double sum = 0.0;
+        if (incx <= 0) return 0.0f;
+        for (int i = 0, ix = xo; i < n; i++, ix += incx) {
+            sum += Math.abs(x[ix]);
+        }
+        return (float) sum;
+    }
+
+    static void axpy(int n, float alpha, float[] x, int xo, int incx, float[] y, int yo, int incy) {
+        if (n <= 0 || alpha == 0.0f) return;
+        int ix = xo + start(n, incx);
+        int iy = yo + start(n, incy);
+        for (int i = 0; i < n; i++, ix += incx, iy += incy) {
+            y[iy] += alpha * x[ix];
+        }
+    }
+
+    static float dot(int n, float[] x, int xo, int incx, float[] y, int yo, int incy) {
+        float sum = 0.0f;
+        int ix = xo + start(n, incx);
+        int iy = yo + start(n, incy);
+        for (int i = 0; i < n; i++, ix += incx, iy += incy) {
+            sum += x[ix] * y[iy];
+        }
+        return sum;
+    }
+
+    static float nrm2(int n, float[] x, int xo, int incx) {
+        if (n <= 0 || incx <= 0) return 0.0f;
+        // The sum of squares of floats doesn't overflow in double precision.
+        double ssq = 0.0;
+        for (int i = 0, ix = xo; i < n; i++, ix += incx) {
+            ssq += (double) x[ix] * x[ix];
+        }
+        return (float) Math.sqrt(ssq);
+    }
+
+    static void scal(int n, float alpha, float[] x, int xo, int incx) {
+        if (incx <= 0) return;
+        for (int i = 0, ix = xo; i < n; i++, ix += incx) {
+            x[ix] *= alpha;
+        }
+    }
+
+    static void swap(int n, float[] x, int xo, int incx, float[] y, int yo, int incy) {
+        int ix = xo + start(n, incx);
+        int iy = yo + start(n, incy);
+        for (int i = 0; i < n; i++, ix += incx, iy += incy) {
+            float t = x[ix];
+            x[ix] = y[iy];
+            y[iy] = t;
+        }
+    }
+
+    static long iamax(int n, float[] x, int xo, int incx) {
+        if (n <= 0 || incx <= 0) return 0;
+        int index = 0;
+        float max = Math.abs(x[xo]);
+        for (int i = 1, ix = xo + incx; i < n; i++, ix += incx) {
+            float a = Math.abs(x[ix]);
+            if (a > max) {
+                max = a;
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    static void gemv(Transpose trans, int m, int n, float alpha, float[] A, int ao, int lda, float[] x, float beta, float[] y) {
+        int leny = trans == Transpose.NO_TRANSPOSE ? m : n;
+        scale(leny, beta, y, 0);
+        if (alpha == 0.0f || m <= 0 || n <= 0) return;
+
+        if (trans == Transpose.NO_TRANSPOSE) {
+            // Sweeps the columns on row blocks so that each thread updates its own part of y.
+            int blocks = parallel((long) m * n) ? Math.min(ForkJoinPool.getCommonPoolParallelism(), (m + 255) / 256) : 1;
+            IntStream stream = IntStream.range(0, blocks);
+            if (blocks > 1) stream = stream.parallel();
+            stream.forEach(b -> {
+                int i0 = (int) ((long) b * m / blocks);
+                int i1 = (int) ((long) (b + 1) * m / blocks);
+                for (int j = 0; j < n; j++) {
+                    float t = alpha * x[j];
+                    if (t != 0.0f) {
+                        int col = ao + j * lda;
+                        for (int i = i0; i < i1; i++) {
+                            y[i] += t * A[col + i];
+                        }
+                    }
+                }
+            });
+        } else {
+            IntStream stream = IntStream.range(0, n);
+            if (parallel((long) m * n)) stream = stream.parallel();
+            stream.forEach(j -> {
+                int col = ao + j * lda;
+                float sum = 0.0f;
+                for (int i = 0; i < m; i++) {
+                    sum += A[col + i] * x[i];
+                }
+                y[j] += alpha * sum;
+            });
+        }
+    }
+
+    static void symv(UPLO uplo, int n, float alpha, float[] A, int ao, int lda, float[] x, float beta, float[] y) {
+        scale(n, beta, y, 0);
+        if (alpha == 0.0f) return;
+
+        for (int j = 0; j < n; j++) {
+            float t1 = alpha * x[j];
+            float t2 = 0.0f;
+            int col = ao + j * lda;
+            if (uplo == UPLO.UPPER) {
+                for (int i = 0; i < j; i++) {
+                    y[i] += t1 * A[col + i];
+                    t2 += A[col + i] * x[i];
+                }
+                y[j] += t1 * A[col + j] + alpha * t2;
+            } else {
+                y[j] += t1 * A[col + j];
+                for (int i = j + 1; i < n; i++) {
+                    y[i] += t1 * A[col + i];
+                    t2 += A[col + i] * x[i];
+                }
+                y[j] += alpha * t2;
+            }
+        }
+    }
+
+    /** Returns the index of the first element of column j of a packed triangular matrix. */
+    private static int packed(UPLO uplo, int n, int j) {
+        return uplo == UPLO.UPPER ? j * (j + 1) / 2 : j * (2 * n - j + 1) / 2 - j;
+    }
+
+    static void spmv(UPLO uplo, int n, float alpha, float[] A, int ao, float[] x, float beta, float[] y) {
+        scale(n, beta, y, 0);
+        if (alpha == 0.0f) return;
+
+        for (int j = 0; j < n; j++) {
+            float t1 = alpha * x[j];
+            float t2 = 0.0f;
+            // A(i, j) is at col + i.
+            int col = ao + packed(uplo, n, j);
+            if (uplo == UPLO.UPPER) {
+                for (int i = 0; i < j; i++) {
+                    y[i] += t1 * A[col + i];
+                    t2 += A[col + i] * x[i];
+                }
+                y[j] += t1 * A[col + j] + alpha * t2;
+            } else {
+                y[j] += t1 * A[col + j];
+                for (int i = j + 1; i < n; i++) {
+                    y[i] += t1 * A[col + i];
+                    t2 += A[col + i] * x[i];
+                }
+                y[j] += alpha * t2;
+            }
+        }
+    }
+
+    /**
+     * x = op(A) * x of a triangular matrix, where A(i, j) is at
+     * A[ao + i + offset(j)] and offset(j) is j * lda for full storage.
+     */
+    private static void tr(UPLO uplo, Transpose trans, Diag diag, int n, float[] A, int ao, int lda, boolean pack, float[] x) {
+        boolean unit = diag == Diag.UNIT;
+        boolean upper = uplo == UPLO.UPPER;
+        if (trans == Transpose.NO_TRANSPOSE) {
+            if (upper) {
+                for (int j = 0; j < n; j++) {
+                    float t = x[j];
+                    int col = ao + (pack ? packed(uplo, n, j) : j * lda);
+                    for (int i = 0; i < j; i++) {
+                        x[i] += t * A[col + i];
+                    }
+                    if (!unit) x[j] *= A[col + j];
+                }
+            } else {
+                for (int j = n - 1; j >= 0; j--) {
+                    float t = x[j];
+                    int col = ao + (pack ? packed(uplo, n, j) : j * lda);
+                    for (int i = n - 1; i > j; i--) {
+                        x[i] += t * A[col + i];
+                    }
+                    if (!unit) x[j] *= A[col + j];
+                }
+            }
+        } else {
+            if (upper) {
+                for (int j = n - 1; j >= 0; j--) {
+                    int col = ao + (pack ? packed(uplo, n, j) : j * lda);
+                    float t = unit ? x[j] : x[j] * A[col + j];
+                    for (int i = j - 1; i >= 0; i--) {
+                        t += A[col + i] * x[i];
+                    }
+                    x[j] = t;
+                }
+            } else {
+                for (int j = 0; j < n; j++) {
+                    int col = ao + (pack ? packed(uplo, n, j) : j * lda);
+                    float t = unit ? x[j] : x[j] * A[col + j];
+                    for (int i = j + 1; i < n; i++) {
+                        t += A[col + i] * x[i];
+                    }
+                    x[j] = t;
+                }
+            }
+        }
+    }
+
+    static void trmv(UPLO uplo, Transpose trans, Diag diag, int n, float[] A, int ao, int lda, float[] x) {
+        tr(uplo, trans, diag, n, A, ao, lda, false, x);
+    }
+
+    static void tpmv(UPLO uplo, Transpose trans, Diag diag, int n, float[] A, int ao, float[] x) {
+        tr(uplo, trans, diag, n, A, ao, 0, true, x);
+    }
+
+    static void gbmv(Transpose trans, int m, int n, int kl, int ku, float alpha, float[] A, int ao, int lda, float[] x, float beta, float[] y) {
+        int leny = trans == Transpose.NO_TRANSPOSE ? m : n;
+        scale(leny, beta, y, 0);
+        if (alpha == 0.0f) return;
+
+        for (int j = 0; j < n; j++) {
+            // A(i, j) is at col + i.
+            int col = ao + ku - j + j * lda;
+            int i0 = Math.max(0, j - ku);
+            int i1 = Math.min(m, j + kl + 1);
+            if (trans == Transpose.NO_TRANSPOSE) {
+                float t = alpha * x[j];
+                for (int i = i0; i < i1; i++) {
+                    y[i] += t * A[col + i];
+                }
+            } else {
+                float sum = 0.0f;
+                for (int i = i0; i < i1; i++) {
+                    sum += A[col + i] * x[i];
+                }
+                y[j] += alpha * sum;
+            }
+        }
+    }
+
+    static void sbmv(UPLO uplo, int n, int k, float alpha, float[] A, int ao, int lda, float[] x, float beta, float[] y) {
+        scale(n, beta, y, 0);
+        if (alpha == 0.0f) return;
+
+        for (int j = 0; j < n; j++) {
+            float t1 = alpha * x[j];
+            float t2 = 0.0f;
+            if (uplo == UPLO.UPPER) {
+                int col = ao + k - j + j * lda;
+                for (int i = Math.max(0, j - k); i < j; i++) {
+                    y[i] += t1 * A[col + i];
+                    t2 += A[col + i] * x[i];
+                }
+                y[j] += t1 * A[col + j] + alpha * t2;
+            } else {
+                int col = ao - j + j * lda;
+                y[j] += t1 * A[col + j];
+                int i1 = Math.min(n, j + k + 1);
+                for (int i = j + 1; i < i1; i++) {
+                    y[i] += t1 * A[col + i];
+                    t2 += A[col + i] * x[i];
+                }
+                y[j] += alpha * t2;
+            }
+        }
+    }
+
+    static void ger(int m, int n, float alpha, float[] x, float[] y, float[] A, int ao, int lda) {
+        if (alpha == 0.0f) return;
+        IntStream stream = IntStream.range(0, n);
+        if (parallel((long) m * n)) stream = stream.parallel();
+        stream.forEach(j -> {
+            float t = alpha * y[j];
+            if (t != 0.0f) {
+                int col = ao + j * lda;
+                for (int i = 0; i < m; i++) {
+                    A[col + i] += x[i] * t;
+                }
+            }
+        });
+    }
+
+    static void syr(UPLO uplo, int n, float alpha, float[] x, float[] A, int ao, int lda, boolean pack) {
+        if (alpha == 0.0f) return;
+        for (int j = 0; j < n; j++) {
+            float t = alpha * x[j];
+            if (t != 0.0f) {
+                int col = ao + (pack ? packed(uplo, n, j) : j * lda);
+                int i0 = uplo == UPLO.UPPER ? 0 : j;
+                int i1 = uplo == UPLO.UPPER ? j + 1 : n;
+                for (int i = i0; i < i1; i++) {
+                    A[col + i] += x[i] * t;
+                }
+            }
+        }
+    }
+
+    /**
+     * C = alpha * op(A) * op(B) + beta * C. The large products are computed
+     * on packed blocks of A and B with a register-blocked micro-kernel in
+     * the loop order of GotoBLAS. The row blocks of C, or the column panels
+     * if there are few row blocks, are computed in parallel.
+     */
+    static void gemm(Transpose transA, Transpose transB, int m, int n, int k, float alpha, float[] A, int ao, int lda, float[] B, int bo, int ldb, float beta, float[] C, int co, int ldc) {
+        if (m <= 0 || n <= 0) return;
+        scale(m, n, beta, C, co, ldc);
+        if (alpha == 0.0f || k <= 0) return;
+
+        boolean ta = transA != Transpose.NO_TRANSPOSE;
+        boolean tb = transB != Transpose.NO_TRANSPOSE;
+        long flops = (long) m * n * k;
+        if (flops < SMALL) {
+            small(ta, tb, m, n, k, alpha, A, ao, lda, B, bo, ldb, C, co, ldc);
+            return;
+        }
+
+        int threads = parallel(flops) ? ForkJoinPool.getCommonPoolParallelism() : 1;
+        float[] packB = new float[KC * (Math.min(NC, n) + NR)];
+        int mBlocks = (m + MC - 1) / MC;
+        for (int jc = 0; jc < n; jc += NC) {
+            int nc = Math.min(NC, n - jc);
+            int panels = (nc + NR - 1) / NR;
+            int splits = Math.max(1, Math.min(panels, threads / mBlocks));
+            for (int pc = 0; pc < k; pc += KC) {
+                int kc = Math.min(KC, k - pc);
+                packB(tb, kc, nc, B, bo + (tb ? jc + pc * ldb : pc + jc * ldb), ldb, packB);
+
+                int offset = co + jc * ldc;
+                int aOffset = ao + (ta ? pc : pc * lda);
+                IntStream stream = IntStream.range(0, mBlocks * splits);
+                if (threads > 1) stream = stream.parallel();
+                stream.forEach(task -> {
+                    int ic = (task / splits) * MC;
+                    int split = task % splits;
+                    int mc = Math.min(MC, m - ic);
+                    float[] pa = packA.get();
+                    packA(ta, mc, kc, A, aOffset + (ta ? ic * lda : ic), lda, pa);
+                    int p0 = split * panels / splits;
+                    int p1 = (split + 1) * panels / splits;
+                    for (int p = p0; p < p1; p++) {
+                        int jr = p * NR;
+                        int nr = Math.min(NR, nc - jr);
+                        for (int ir = 0; ir < mc; ir += MR) {
+                            int mr = Math.min(MR, mc - ir);
+                            micro(kc, alpha, pa, ir * kc, packB, jr * kc, C, offset + ic + ir + jr * ldc, ldc, mr, nr);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /** C += alpha * op(A) * op(B) of small matrices without packing. */
+    private static void small(boolean ta, boolean tb, int m, int n, int k, float alpha, float[] A, int ao, int lda, float[] B, int bo, int ldb, float[] C, int co, int ldc) {
+        for (int j = 0; j < n; j++) {
+            int cj = co + j * ldc;
+            if (ta) {
+                for (int i = 0; i < m; i++) {
+                    int ai = ao + i * lda;
+                    float sum = 0.0f;
+                    for (int p = 0; p < k; p++) {
+                        sum += A[ai + p] * (tb ? B[bo + j + p * ldb] : B[bo + p + j * ldb]);
+                    }
+                    C[cj + i] += alpha * sum;
+                }
+            } else {
+                for (int p = 0; p < k; p++) {
+                    float t = alpha * (tb ? B[bo + j + p * ldb] : B[bo + p + j * ldb]);
+                    if (t != 0.0f) {
+                        int ap = ao + p * lda;
+                        for (int i = 0; i < m; i++) {
+                            C[cj + i] += t * A[ap + i];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Packs a mc x kc block of op(A) into row panels of MR rows, each of
+     * which is stored column by column. The last panel is padded with zeros.
+     */
+    private static void packA(boolean ta, int mc, int kc, float[] A, int ao, int lda, float[] pa) {
+        int index = 0;
+        for (int ir = 0; ir < mc; ir += MR) {
+            int mr = Math.min(MR, mc - ir);
+            for (int p = 0; p < kc; p++) {
+                for (int r = 0; r < mr; r++) {
+                    int i = ir + r;
+                    pa[index + r] = ta ? A[ao + p + i * lda] : A[ao + i + p * lda];
+                }
+                for (int r = mr; r < MR; r++) {
+                    pa[index + r] = 0.0f;
+                }
+                index += MR;
+            }
+        }
+    }
+
+    /**
+     * Packs a kc x nc block of op(B) into column panels of NR columns, each of
+     * which is stored row by row. The last panel is padded with zeros.
+     */
+    private static void packB(boolean tb, int kc, int nc, float[] B, int bo, int ldb, float[] pb) {
+        int index = 0;
+        for (int jr = 0; jr < nc; jr += NR) {
+            int nr = Math.min(NR, nc - jr);
+            for (int p = 0; p < kc; p++) {
+                for (int c = 0; c < nr; c++) {
+                    int j = jr + c;
+                    pb[index + c] = tb ? B[bo + j + p * ldb] : B[bo + p + j * ldb];
+                }
+                for (int c = nr; c < NR; c++) {
+                    pb[index + c] = 0.0f;
+                }
+                index += NR;
+            }
+        }
+    }
+
+    /** C += alpha * A * B of a MR x NR tile on packed panels, of which mr x nr are stored. */
+    private static void micro(int kc, float alpha, float[] pa, int a, float[] pb, int b, float[] C, int c, int ldc, int mr, int nr) {
+        float c00 = 0.0f, c01 = 0.0f, c02 = 0.0f, c03 = 0.0f;
+        float c10 = 0.0f, c11 = 0.0f, c12 = 0.0f, c13 = 0.0f;
+        float c20 = 0.0f, c21 = 0.0f, c22 = 0.0f, c23 = 0.0f;
+        float c30 = 0.0f, c31 = 0.0f, c32 = 0.0f, c33 = 0.0f;
+        for (int p = 0; p < kc; p++, a += MR, b += NR) {
+            float a0 = pa[a], a1 = pa[a + 1], a2 = pa[a + 2], a3 = pa[a + 3];
+            float b0 = pb[b];
+            c00 += a0 * b0; c10 += a1 * b0; c20 += a2 * b0; c30 += a3 * b0;
+            float b1 = pb[b + 1];
+            c01 += a0 * b1; c11 += a1 * b1; c21 += a2 * b1; c31 += a3 * b1;
+            float b2 = pb[b + 2];
+            c02 += a0 * b2; c12 += a1 * b2; c22 += a2 * b2; c32 += a3 * b2;
+            float b3 = pb[b + 3];
+            c03 += a0 * b3; c13 += a1 * b3; c23 += a2 * b3; c33 += a3 * b3;
+        }
+
+        if (mr == MR && nr == NR) {
+            C[c] += alpha * c00; C[c + 1] += alpha * c10; C[c + 2] += alpha * c20; C[c + 3] += alpha * c30;
+            c += ldc;
+            C[c] += alpha * c01; C[c + 1] += alpha * c11; C[c + 2] += alpha * c21; C[c + 3] += alpha * c31;
+            c += ldc;
+            C[c] += alpha * c02; C[c + 1] += alpha * c12; C[c + 2] += alpha * c22; C[c + 3] += alpha * c32;
+            c += ldc;
+            C[c] += alpha * c03; C[c + 1] += alpha * c13; C[c + 2] += alpha * c23; C[c + 3] += alpha * c33;
+        } else {
+            float[] tile = {
+                    c00, c10, c20, c30,
+                    c01, c11, c21, c31,
+                    c02, c12, c22, c32,
+                    c03, c13, c23, c33
+            };
+            for (int j = 0; j < nr; j++, c += ldc) {
+                for (int i = 0; i < mr; i++) {
+                    C[c + i] += alpha * tile[j * MR + i];
+                }
+            }
+        }
+    }
+
+    /**
+     * C = alpha * A * B + beta * C or C = alpha * B * A + beta * C,
+     * where A is symmetric and only its uplo triangle is referenced.
+     * The symmetric matrix is expanded to full storage and multiplied
+     * by GEMM.
+     */
+    static void symm(Side side, UPLO uplo, int m, int n, float alpha, float[] A, int ao, int lda, float[] B, int bo, int ldb, float beta, float[] C, int co, int ldc) {
+        int na = side == Side.LEFT ? m : n;
+        float[] full = new float[na * na];
+        for (int j = 0; j < na; j++) {
+            int i0 = uplo == UPLO.UPPER ? 0 : j;
+            int i1 = uplo == UPLO.UPPER ? j + 1 : na;
+            for (int i = i0; i < i1; i++) {
+                float a = A[ao + i + j * lda];
+                full[i + j * na] = a;
+                full[j + i * na] = a;
+            }
+        }
+
+        if (side == Side.LEFT) {
+            gemm(Transpose.NO_TRANSPOSE, Transpose.NO_TRANSPOSE, m, n, m, alpha, full, 0, na, B, bo, ldb, beta, C, co, ldc);
+        } else {
+            gemm(Transpose.NO_TRANSPOSE, Transpose.NO_TRANSPOSE, m, n, n, alpha, B, bo, ldb, full, 0, na, beta, C, co, ldc);
+        }
+    }
+
+    /**
+     * C = alpha * op(A) * op(A)' + beta * C, where only the uplo triangle
+     * of C is updated. The off-diagonal blocks are computed by GEMM
+     * and the diagonal blocks in a workspace.
+     */
+    static void syrk(UPLO uplo, Transpose trans, int n, int k, float alpha, float[] A, int ao, int lda, float beta, float[] C, int co, int ldc) {
+        if (n <= 0) return;
+        boolean ta = trans != Transpose.NO_TRANSPOSE;
+        Transpose t1 = ta ? Transpose.TRANSPOSE : Transpose.NO_TRANSPOSE;
+        Transpose t2 = ta ? Transpose.NO_TRANSPOSE : Transpose.TRANSPOSE;
+        int nb = MC;
+        float[] work = new float[nb * nb];
+        for (int j0 = 0; j0 < n; j0 += nb) {
+            int jb = Math.min(nb, n - j0);
+            int aj = ao + (ta ? j0 * lda : j0);
+
+            // The diagonal block.
+            gemm(t1, t2, jb, jb, k, alpha, A, aj, lda, A, aj, lda, 0.0f, work, 0, jb);
+            for (int j = 0; j < jb; j++) {
+                int i0 = uplo == UPLO.UPPER ? 0 : j;
+                int i1 = uplo == UPLO.UPPER ? j + 1 : jb;
+                int cj = co + j0 + (j0 + j) * ldc;
+                for (int i = i0; i < i1; i++) {
+                    C[cj + i] = (beta == 0.0f ? 0.0f : beta * C[cj + i]) + work[i + j * jb];
+                }
+            }
+
+            // The block below or above the diagonal block.
+            if (uplo == UPLO.LOWER && j0 + jb < n) {
+                int i0 = j0 + jb;
+                int ai = ao + (ta ? i0 * lda : i0);
+                gemm(t1, t2, n - i0, jb, k, alpha, A, ai, lda, A, aj, lda, beta, C, co + i0 + j0 * ldc, ldc);
+            } else if (uplo == UPLO.UPPER && j0 > 0) {
+                gemm(t1, t2, j0, jb, k, alpha, A, ao, lda, A, aj, lda, beta, C, co + j0 * ldc, ldc);
+            }
+        }
+    }
+}
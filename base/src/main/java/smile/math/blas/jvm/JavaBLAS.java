@@ -0,0 +1,798 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.math.blas.jvm;
+
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import org.bytedeco.javacpp.DoublePointer;
+import smile.math.blas.*;
+
+/**
+ * Pure Java implementation of BLAS, which doesn't need any native
+ * library. The level 3 routines multiply packed blocks of matrices
+ * that fit in the caches with a register-blocked micro-kernel, and
+ * run in parallel on the common fork-join pool for large matrices.
+ * Row-major operations are mapped to the equivalent column-major
+ * ones on the transposed matrices as the reference CBLAS does.
+ * <p>
+ * The buffer and pointer arguments that are not backed by heap arrays,
+ * e.g. direct buffers, are copied to and from temporary arrays.
+ * This engine may be selected with the system property
+ * {@code -Dsmile.blas=java}. It is also the fallback when the
+ * native library of OpenBLAS fails to load.
+ *
+ * @author Haifeng Li
+ */
+public class JavaBLAS implements BLAS {
+    /** Constructor. */
+    public JavaBLAS() {
+
+    }
+
+    /** Returns the transpose operation on the transposed matrix. */
+    private static Transpose flip(Transpose trans) {
+        return trans == Transpose.NO_TRANSPOSE ? Transpose.TRANSPOSE : Transpose.NO_TRANSPOSE;
+    }
+
+    /** Returns the triangular part of the transposed matrix. */
+    private static UPLO flip(UPLO uplo) {
+        return uplo == UPLO.UPPER ? UPLO.LOWER : UPLO.UPPER;
+    }
+
+    /** Returns the other side. */
+    private static Side flip(Side side) {
+        return side == Side.LEFT ? Side.RIGHT : Side.LEFT;
+    }
+
+    /**
+     * The heap array of a buffer. If the buffer is not backed by an
+     * array, the elements from the current position are copied and
+     * should be written back by release() if the buffer is an output.
+     */
+    private record DoubleArray(double[] array, int offset, DoubleBuffer buffer) {
+        static DoubleArray of(DoubleBuffer buffer) {
+            if (buffer.hasArray()) {
+                return new DoubleArray(buffer.array(), buffer.arrayOffset() + buffer.position(), null);
+            }
+
+            double[] array = new double[buffer.remaining()];
+            buffer.get(buffer.position(), array);
+            return new DoubleArray(array, 0, buffer);
+        }
+
+        static DoubleArray of(DoublePointer pointer) {
+            return of(pointer.asBuffer());
+        }
+
+        void release() {
+            if (buffer != null) {
+                buffer.put(buffer.position(), array);
+            }
+        }
+    }
+
+    /** Returns a contiguous vector, which is x itself if possible. */
+    private static double[] vector(int n, double[] x, int xo, int incx) {
+        return xo == 0 && incx == 1 ? x : DoubleKernel.gather(n, x, xo, incx);
+    }
+
+    /** Writes back a contiguous vector to y if it is a copy. */
+    private static void update(int n, double[] v, double[] y, int yo, int incy) {
+        if (v != y) {
+            DoubleKernel.scatter(n, v, y, yo, incy);
+        }
+    }
+
+    @Override
+    public double asum(int n, double[] x, int incx) {
+        return DoubleKernel.asum(n, x, 0, incx);
+    }
+
+    @Override
+    public void axpy(int n, double alpha, double[] x, int incx, double[] y, int incy) {
+        DoubleKernel.axpy(n, alpha, x, 0, incx, y, 0, incy);
+    }
+
+    @Override
+    public double dot(int n, double[] x, int incx, double[] y, int incy) {
+        return DoubleKernel.dot(n, x, 0, incx, y, 0, incy);
+    }
+
+    @Override
+    public double nrm2(int n, double[] x, int incx) {
+        return DoubleKernel.nrm2(n, x, 0, incx);
+    }
+
+    @Override
+    public void scal(int n, double alpha, double[] x, int incx) {
+        DoubleKernel.scal(n, alpha, x, 0, incx);
+    }
+
+    @Override
+    public void swap(int n, double[] x, int incx, double[] y, int incy) {
+        DoubleKernel.swap(n, x, 0, incx, y, 0, incy);
+    }
+
+    @Override
+    public long iamax(int n, double[] x, int incx) {
+        return DoubleKernel.iamax(n, x, 0, incx);
+    }
+
+    private void gemv(Layout layout, Transpose trans, int m, int n, double alpha, double[] A, int ao, int lda, double[] x, int xo, int incx, double beta, double[] y, int yo, int incy) {
+        if (layout == Layout.ROW_MAJOR) {
+            int t = m; m = n; n = t;
+            trans = flip(trans);
+        }
+
+        int lenx = trans == Transpose.NO_TRANSPOSE ? n : m;
+        int leny = trans == Transpose.NO_TRANSPOSE ? m : n;
+        double[] xv = vector(lenx, x, xo, incx);
+        double[] yv = vector(leny, y, yo, incy);
+        DoubleKernel.gemv(trans, m, n, alpha, A, ao, lda, xv, beta, yv);
+        update(leny, yv, y, yo, incy);
+    }
+
+    @Override
+    public void gemv(Layout layout, Transpose trans, int m, int n, double alpha, double[] A, int lda, double[] x, int incx, double beta, double[] y, int incy) {
+        gemv(layout, trans, m, n, alpha, A, 0, lda, x, 0, incx, beta, y, 0, incy);
+    }
+
+    @Override
+    public void gemv(Layout layout, Transpose trans, int m, int n, double alpha, DoubleBuffer A, int lda, DoubleBuffer x, int incx, double beta, DoubleBuffer y, int incy) {
+        DoubleArray a = DoubleArray.of(A), xa = DoubleArray.of(x), ya = DoubleArray.of(y);
+        gemv(layout, trans, m, n, alpha, a.array, a.offset, lda, xa.array, xa.offset, incx, beta, ya.array, ya.offset, incy);
+        ya.release();
+    }
+
+    @Override
+    public void gemv(Layout layout, Transpose trans, int m, int n, double alpha, DoublePointer A, int lda, DoublePointer x, int incx, double beta, DoublePointer y, int incy) {
+        DoubleArray a = DoubleArray.of(A), xa = DoubleArray.of(x), ya = DoubleArray.of(y);
+        gemv(layout, trans, m, n, alpha, a.array, a.offset, lda, xa.array, xa.offset, incx, beta, ya.array, ya.offset, incy);
+        ya.release();
+    }
+
+
+    private void symv(Layout layout, UPLO uplo, int n, double alpha, double[] A, int ao, int lda, double[] x, int xo, int incx, double beta, double[] y, int yo, int incy) {
+        if (layout == Layout.ROW_MAJOR) uplo = flip(uplo);
+        double[] xv = vector(n, x, xo, incx);
+        double[] yv = vector(n, y, yo, incy);
+        DoubleKernel.symv(uplo, n, alpha, A, ao, lda, xv, beta, yv);
+        update(n, yv, y, yo, incy);
+    }
+
+    @Override
+    public void symv(Layout layout, UPLO uplo, int n, double alpha, double[] A, int lda, double[] x, int incx, double beta, double[] y, int incy) {
+        symv(layout, uplo, n, alpha, A, 0, lda, x, 0, incx, beta, y, 0, incy);
+    }
+
+    @Override
+    public void symv(Layout layout, UPLO uplo, int n, double alpha, DoubleBuffer A, int lda, DoubleBuffer x, int incx, double beta, DoubleBuffer y, int incy) {
+        DoubleArray a = DoubleArray.of(A), xa = DoubleArray.of(x), ya = DoubleArray.of(y);
+        symv(layout, uplo, n, alpha, a.array, a.offset, lda, xa.array, xa.offset, incx, beta, ya.array, ya.offset, incy);
+        ya.release();
+    }
+
+    @Override
+    public void symv(Layout layout, UPLO uplo, int n, double alpha, DoublePointer A, int lda, DoublePointer x, int incx, double beta, DoublePointer y, int incy) {
+        DoubleArray a = DoubleArray.of(A), xa = DoubleArray.of(x), ya = DoubleArray.of(y);
+        symv(layout, uplo, n, alpha, a.array, a.offset, lda, xa.array, xa.offset, incx, beta, ya.array, ya.offset, incy);
+        ya.release();
+    }
+
+
+    private void spmv(Layout layout, UPLO uplo, int n, double alpha, double[] A, int ao, double[] x, int xo, int incx, double beta, double[] y, int yo, int incy) {
+        if (layout == Layout.ROW_MAJOR) uplo = flip(uplo);
+        double[] xv = vector(n, x, xo, incx);
+        double[] yv = vector(n, y, yo, incy);
+        DoubleKernel.spmv(uplo, n, alpha, A, ao, xv, beta, yv);
+        update(n, yv, y, yo, incy);
+    }
+
+    @Override
+    public void spmv(Layout layout, UPLO uplo, int n, double alpha, double[] A, double[] x, int incx, double beta, double[] y, int incy) {
+        spmv(layout, uplo, n, alpha, A, 0, x, 0, incx, beta, y, 0, incy);
+    }
+
+    @Override
+    public void spmv(Layout layout, UPLO uplo, int n, double alpha, DoubleBuffer A, DoubleBuffer x, int incx, double beta, DoubleBuffer y, int incy) {
+        DoubleArray a = DoubleArray.of(A), xa = DoubleArray.of(x), ya = DoubleArray.of(y);
+        spmv(layout, uplo, n, alpha, a.array, a.offset, xa.array, xa.offset, incx, beta, ya.array, ya.offset, incy);
+        ya.release();
+    }
+
+    private void trmv(Layout layout, UPLO uplo, Transpose trans, Diag diag, int n, double[] A, int ao, int lda, double[] x, int xo, int incx) {
+        if (layout == Layout.ROW_MAJOR) {
+            uplo = flip(uplo);
+            trans = flip(trans);
+        }
+
+        double[] xv = vector(n, x, xo, incx);
+        DoubleKernel.trmv(uplo, trans, diag, n, A, ao, lda, xv);
+        update(n, xv, x, xo, incx);
+    }
+
+    @Override
+    public void trmv(Layout layout, UPLO uplo, Transpose trans, Diag diag, int n, double[] A, int lda, double[] x, int incx) {
+        trmv(layout, uplo, trans, diag, n, A, 0, lda, x, 0, incx);
+    }
+
+    @Override
+    public void trmv(Layout layout, UPLO uplo, Transpose trans, Diag diag, int n, DoubleBuffer A, int lda, DoubleBuffer x, int incx) {
+        DoubleArray a = DoubleArray.of(A), xa = DoubleArray.of(x);
+        trmv(layout, uplo, trans, diag, n, a.array, a.offset, lda, xa.array, xa.offset, incx);
+        xa.release();
+    }
+
+    @Override
+    public void trmv(Layout layout, UPLO uplo, Transpose trans, Diag diag, int n, DoublePointer A, int lda, DoublePointer x, int incx) {
+        DoubleArray a = DoubleArray.of(A), xa = DoubleArray.of(x);
+        trmv(layout, uplo, trans, diag, n, a.array, a.offset, lda, xa.array, xa.offset, incx);
+        xa.release();
+    }
+
+
+    private void tpmv(Layout layout, UPLO uplo, Transpose trans, Diag diag, int n, double[] A, int ao, double[] x, int xo, int incx) {
+        if (layout == Layout.ROW_MAJOR) {
+            uplo = flip(uplo);
+            trans = flip(trans);
+        }
+
+        double[] xv = vector(n, x, xo, incx);
+        DoubleKernel.tpmv(uplo, trans, diag, n, A, ao, xv);
+        update(n, xv, x, xo, incx);
+    }
+
+    @Override
+    public void tpmv(Layout layout, UPLO uplo, Transpose trans, Diag diag, int n, double[] A, double[] x, int incx) {
+        tpmv(layout, uplo, trans, diag, n, A, 0, x, 0, incx);
+    }
+
+    @Override
+    public void tpmv(Layout layout, UPLO uplo, Transpose trans, Diag diag, int n, DoubleBuffer A, DoubleBuffer x, int incx) {
+        DoubleArray a = DoubleArray.of(A), xa = DoubleArray.of(x);
+        tpmv(layout, uplo, trans, diag, n, a.array, a.offset, xa.array, xa.offset, incx);
+        xa.release();
+    }
+
+    private void gbmv(Layout layout, Transpose trans, int m, int n, int kl, int ku, double alpha, double[] A, int ao, int lda, double[] x, int xo, int incx, double beta, double[] y, int yo, int incy) {
+        if (layout == Layout.ROW_MAJOR) {
+            int t = m; m = n; n = t;
+            t = kl; kl = ku; ku = t;
+            trans = flip(trans);
+        }
+
+        int lenx = trans == Transpose.NO_TRANSPOSE ? n : m;
+        int leny = trans == Transpose.NO_TRANSPOSE ? m : n;
+        double[] xv = vector(lenx, x, xo, incx);
+        double[] yv = vector(leny, y, yo, incy);
+        DoubleKernel.gbmv(trans, m, n, kl, ku, alpha, A, ao, lda, xv, beta, yv);
+        update(leny, yv, y, yo, incy);
+    }
+
+    @Override
+    public void gbmv(Layout layout, Transpose trans, int m, int n, int kl, int ku, double alpha, double[] A, int lda, double[] x, int incx, double beta, double[] y, int incy) {
+        gbmv(layout, trans, m, n, kl, ku, alpha, A, 0, lda, x, 0, incx, beta, y, 0, incy);
+    }
+
+    @Override
+    public void gbmv(Layout layout, Transpose trans, int m, int n, int kl, int ku, double alpha, DoubleBuffer A, int lda, DoubleBuffer x, int incx, double beta, DoubleBuffer y, int incy) {
+        DoubleArray a = DoubleArray.of(A), xa = DoubleArray.of(x), ya = DoubleArray.of(y);
+        gbmv(layout, trans, m, n, kl, ku, alpha, a.array, a.offset, lda, xa.array, xa.offset, incx, beta, ya.array, ya.offset, incy);
+        ya.release();
+    }
+
+    private void sbmv(Layout layout, UPLO uplo, int n, int k, double alpha, double[] A, int ao, int lda, double[] x, int xo, int incx, double beta, double[] y, int yo, int incy) {
+        if (layout == Layout.ROW_MAJOR) uplo = flip(uplo);
+        double[] xv = vector(n, x, xo, incx);
+        double[] yv = vector(n, y, yo, incy);
+        DoubleKernel.sbmv(uplo, n, k, alpha, A, ao, lda, xv, beta, yv);
+        update(n, yv, y, yo, incy);
+    }
+
+    @Override
+    public void sbmv(Layout layout, UPLO uplo, int n, int k, double alpha, double[] A, int lda, double[] x, int incx, double beta, double[] y, int incy) {
+        sbmv(layout, uplo, n, k, alpha, A, 0, lda, x, 0, incx, beta, y, 0, incy);
+    }
+
+    @Override
+    public void sbmv(Layout layout, UPLO uplo, int n, int k, double alpha, DoubleBuffer A, int lda, DoubleBuffer x, int incx, double beta, DoubleBuffer y, int incy) {
+        DoubleArray a = DoubleArray.of(A), xa = DoubleArray.of(x), ya = DoubleArray.of(y);
+        sbmv(layout, uplo, n, k, alpha, a.array, a.offset, lda, xa.array, xa.offset, incx, beta, ya.array, ya.offset, incy);
+        ya.release();
+    }
+
+    private void ger(Layout layout, int m, int n, double alpha, double[] x, int xo, int incx, double[] y, int yo, int incy, double[] A, int ao, int lda) {
+        if (layout == Layout.ROW_MAJOR) {
+            ger(Layout.COL_MAJOR, n, m, alpha, y, yo, incy, x, xo, incx, A, ao, lda);
+            return;
+        }
+
+        double[] xv = vector(m, x, xo, incx);
+        double[] yv = vector(n, y, yo, incy);
+        DoubleKernel.ger(m, n, alpha, xv, yv, A, ao, lda);
+    }
+
+    @Override
+    public void ger(Layout layout, int m, int n, double alpha, double[] x, int incx, double[] y, int incy, double[] A, int lda) {
+        ger(layout, m, n, alpha, x, 0, incx, y, 0, incy, A, 0, lda);
+    }
+
+    @Override
+    public void ger(Layout layout, int m, int n, double alpha, DoubleBuffer x, int incx, DoubleBuffer y, int incy, DoubleBuffer A, int lda) {
+        DoubleArray xa = DoubleArray.of(x), ya = DoubleArray.of(y), a = DoubleArray.of(A);
+        ger(layout, m, n, alpha, xa.array, xa.offset, incx, ya.array, ya.offset, incy, a.array, a.offset, lda);
+        a.release();
+    }
+
+    @Override
+    public void ger(Layout layout, int m, int n, double alpha, DoublePointer x, int incx, DoublePointer y, int incy, DoublePointer A, int lda) {
+        DoubleArray xa = DoubleArray.of(x), ya = DoubleArray.of(y), a = DoubleArray.of(A);
+        ger(layout, m, n, alpha, xa.array, xa.offset, incx, ya.array, ya.offset, incy, a.array, a.offset, lda);
+        a.release();
+    }
+
+
+    private void syr(Layout layout, UPLO uplo, int n, double alpha, double[] x, int xo, int incx, double[] A, int ao, int lda, boolean pack) {
+        if (layout == Layout.ROW_MAJOR) uplo = flip(uplo);
+        double[] xv = vector(n, x, xo, incx);
+        DoubleKernel.syr(uplo, n, alpha, xv, A, ao, lda, pack);
+    }
+
+    @Override
+    public void syr(Layout layout, UPLO uplo, int n, double alpha, double[] x, int incx, double[] A, int lda) {
+        syr(layout, uplo, n, alpha, x, 0, incx, A, 0, lda, false);
+    }
+
+    @Override
+    public void syr(Layout layout, UPLO uplo, int n, double alpha, DoubleBuffer x, int incx, DoubleBuffer A, int lda) {
+        DoubleArray xa = DoubleArray.of(x), a = DoubleArray.of(A);
+        syr(layout, uplo, n, alpha, xa.array, xa.offset, incx, a.array, a.offset, lda, false);
+        a.release();
+    }
+
+    @Override
+    public void syr(Layout layout, UPLO uplo, int n, double alpha, DoublePointer x, int incx, DoublePointer A, int lda) {
+        DoubleArray xa = DoubleArray.of(x), a = DoubleArray.of(A);
+        syr(layout, uplo, n, alpha, xa.array, xa.offset, incx, a.array, a.offset, lda, false);
+        a.release();
+    }
+
+
+    @Override
+    public void spr(Layout layout, UPLO uplo, int n, double alpha, double[] x, int incx, double[] A) {
+        syr(layout, uplo, n, alpha, x, 0, incx, A, 0, 0, true);
+    }
+
+    @Override
+    public void spr(Layout layout, UPLO uplo, int n, double alpha, DoubleBuffer x, int incx, DoubleBuffer A) {
+        DoubleArray xa = DoubleArray.of(x), a = DoubleArray.of(A);
+        syr(layout, uplo, n, alpha, xa.array, xa.offset, incx, a.array, a.offset, 0, true);
+        a.release();
+    }
+
+    private void gemm(Layout layout, Transpose transA, Transpose transB, int m, int n, int k, double alpha, double[] A, int ao, int lda, double[] B, int bo, int ldb, double beta, double[] C, int co, int ldc) {
+        if (layout == Layout.ROW_MAJOR) {
+            // C' = op(B)' * op(A)'
+            DoubleKernel.gemm(transB, transA, n, m, k, alpha, B, bo, ldb, A, ao, lda, beta, C, co, ldc);
+        } else {
+            DoubleKernel.gemm(transA, transB, m, n, k, alpha, A, ao, lda, B, bo, ldb, beta, C, co, ldc);
+        }
+    }
+
+    @Override
+    public void gemm(Layout layout, Transpose transA, Transpose transB, int m, int n, int k, double alpha, double[] A, int lda, double[] B, int ldb, double beta, double[] C, int ldc) {
+        gemm(layout, transA, transB, m, n, k, alpha, A, 0, lda, B, 0, ldb, beta, C, 0, ldc);
+    }
+
+    @Override
+    public void gemm(Layout layout, Transpose transA, Transpose transB, int m, int n, int k, double alpha, DoubleBuffer A, int lda, DoubleBuffer B, int ldb, double beta, DoubleBuffer C, int ldc) {
+        DoubleArray a = DoubleArray.of(A), b = DoubleArray.of(B), c = DoubleArray.of(C);
+        gemm(layout, transA, transB, m, n, k, alpha, a.array, a.offset, lda, b.array, b.offset, ldb, beta, c.array, c.offset, ldc);
+        c.release();
+    }
+
+    @Override
+    public void gemm(Layout layout, Transpose transA, Transpose transB, int m, int n, int k, double alpha, DoublePointer A, int lda, DoublePointer B, int ldb, double beta, DoublePointer C, int ldc) {
+        DoubleArray a = DoubleArray.of(A), b = DoubleArray.of(B), c = DoubleArray.of(C);
+        gemm(layout, transA, transB, m, n, k, alpha, a.array, a.offset, lda, b.array, b.offset, ldb, beta, c.array, c.offset, ldc);
+        c.release();
+    }
+
+
+    private void symm(Layout layout, Side side, UPLO uplo, int m, int n, double alpha, double[] A, int ao, int lda, double[] B, int bo, int ldb, double beta, double[] C, int co, int ldc) {
+        if (layout == Layout.ROW_MAJOR) {
+            DoubleKernel.symm(flip(side), flip(uplo), n, m, alpha, A, ao, lda, B, bo, ldb, beta, C, co, ldc);
+        } else {
+            DoubleKernel.symm(side, uplo, m, n, alpha, A, ao, lda, B, bo, ldb, beta, C, co, ldc);
+        }
+    }
+
+    @Override
+    public void symm(Layout layout, Side side, UPLO uplo, int m, int n, double alpha, double[] A, int lda, double[] B, int ldb, double beta, double[] C, int ldc) {
+        symm(layout, side, uplo, m, n, alpha, A, 0, lda, B, 0, ldb, beta, C, 0, ldc);
+    }
+
+    @Override
+    public void symm(Layout layout, Side side, UPLO uplo, int m, int n, double alpha, DoubleBuffer A, int lda, DoubleBuffer B, int ldb, double beta, DoubleBuffer C, int ldc) {
+        DoubleArray a = DoubleArray.of(A), b = DoubleArray.of(B), c = DoubleArray.of(C);
+        symm(layout, side, uplo, m, n, alpha, a.array, a.offset, lda, b.array, b.offset, ldb, beta, c.array, c.offset, ldc);
+        c.release();
+    }
+
+    @Override
+    public void symm(Layout layout, Side side, UPLO uplo, int m, int n, double alpha, DoublePointer A, int lda, DoublePointer B, int ldb, double beta, DoublePointer C, int ldc) {
+        DoubleArray a = DoubleArray.of(A), b = DoubleArray.of(B), c = DoubleArray.of(C);
+        symm(layout, side, uplo, m, n, alpha, a.array, a.offset, lda, b.array, b.offset, ldb, beta, c.array, c.offset, ldc);
+        c.release();
+    }
+
+
+    private void syrk(Layout layout, UPLO uplo, Transpose trans, int n, int k, double alpha, double[] A, int ao, int lda, double beta, double[] C, int co, int ldc) {
+        if (layout == Layout.ROW_MAJOR) {
+            uplo = flip(uplo);
+            trans = flip(trans);
+        }
+
+        DoubleKernel.syrk(uplo, trans, n, k, alpha, A, ao, lda, beta, C, co, ldc);
+    }
+
+    @Override
+    public void syrk(Layout layout, UPLO uplo, Transpose trans, int n, int k, double alpha, double[] A, int lda, double beta, double[] C, int ldc) {
+        syrk(layout, uplo, trans, n, k, alpha, A, 0, lda, beta, C, 0, ldc);
+    }
+
+    @Override
+    public void syrk(Layout layout, UPLO uplo, Transpose trans, int n, int k, double alpha, DoublePointer A, int lda, double beta, DoublePointer C, int ldc) {
+        DoubleArray a = DoubleArray.of(A), c = DoubleArray.of(C);
+        syrk(layout, uplo, trans, n, k, alpha, a.array, a.offset, lda, beta, c.array, c.offset, ldc);
+        c.release();
+    }
+
+    /**
+     * The heap array of a buffer. If the buffer is not backed by an
+     * array, the elements from the current position are copied and
+     * should be written back by release() if the buffer is an output.
+     */
+    private record FloatArray(float[] array, int offset, FloatBuffer buffer) {
+        static FloatArray of(FloatBuffer buffer) {
+            if (buffer.hasArray()) {
+                return new FloatArray(buffer.array(), buffer.arrayOffset() + buffer.position(), null);
+            }
+
+            float[] array = new float[buffer.remaining()];
+            buffer.get(buffer.position(), array);
+            return new FloatArray(array, 0, buffer);
+        }
+
+        void release() {
+            if (buffer != null) {
+                buffer.put(buffer.position(), array);
+            }
+        }
+    }
+
+    /** Returns a contiguous vector, which is x itself if possible. */
+    private static float[] vector(int n, float[] x, int xo, int incx) {
+        return xo == 0 && incx == 1 ? x : FloatKernel.gather(n, x, xo, incx);
+    }
+
+    /** Writes back a contiguous vector to y if it is a copy. */
+    private static void update(int n, float[] v, float[] y, int yo, int incy) {
+        if (v != y) {
+            FloatKernel.scatter(n, v, y, yo, incy);
+        }
+    }
+
+    @Override
+    public float asum(int n, float[] x, int incx) {
+        return FloatKernel.asum(n, x, 0, incx);
+    }
+
+    @Override
+    public void axpy(int n, float alpha, float[] x, int incx, float[] y, int incy) {
+        FloatKernel.axpy(n, alpha, x, 0, incx, y, 0, incy);
+    }
+
+    @Override
+    public float dot(int n, float[] x, int incx, float[] y, int incy) {
+        return FloatKernel.dot(n, x, 0, incx, y, 0, incy);
+    }
+
+    @Override
+    public float nrm2(int n, float[] x, int incx) {
+        return FloatKernel.nrm2(n, x, 0, incx);
+    }
+
+    @Override
+    public void scal(int n, float alpha, float[] x, int incx) {
+        FloatKernel.scal(n, alpha, x, 0, incx);
+    }
+
+    @Override
+    public void swap(int n, float[] x, int incx, float[] y, int incy) {
+        FloatKernel.swap(n, x, 0, incx, y, 0, incy);
+    }
+
+    @Override
+    public long iamax(int n, float[] x, int incx) {
+        return FloatKernel.iamax(n, x, 0, incx);
+    }
+
+    private void gemv(Layout layout, Transpose trans, int m, int n, float alpha, float[] A, int ao, int lda, float[] x, int xo, int incx, float beta, float[] y, int yo, int incy) {
+        if (layout == Layout.ROW_MAJOR) {
+            int t = m; m = n; n = t;
+            trans = flip(trans);
+        }
+
+        int lenx = trans == Transpose.NO_TRANSPOSE ? n : m;
+        int leny = trans == Transpose.NO_TRANSPOSE ? m : n;
+        float[] xv = vector(lenx, x, xo, incx);
+        float[] yv = vector(leny, y, yo, incy);
+        FloatKernel.gemv(trans, m, n, alpha, A, ao, lda, xv, beta, yv);
+        update(leny, yv, y, yo, incy);
+    }
+
+    @Override
+    public void gemv(Layout layout, Transpose trans, int m, int n, float alpha, float[] A, int lda, float[] x, int incx, float beta, float[] y, int incy) {
+        gemv(layout, trans, m, n, alpha, A, 0, lda, x, 0, incx, beta, y, 0, incy);
+    }
+
+    @Override
+    public void gemv(Layout layout, Transpose trans, int m, int n, float alpha, FloatBuffer A, int lda, FloatBuffer x, int incx, float beta, FloatBuffer y, int incy) {
+        FloatArray a = FloatArray.of(A), xa = FloatArray.of(x), ya = FloatArray.of(y);
+        gemv(layout, trans, m, n, alpha, a.array, a.offset, lda, xa.array, xa.offset, incx, beta, ya.array, ya.offset, incy);
+        ya.release();
+    }
+
+    private void symv(Layout layout, UPLO uplo, int n, float alpha, float[] A, int ao, int lda, float[] x, int xo, int incx, float beta, float[] y, int yo, int incy) {
+        if (layout == Layout.ROW_MAJOR) uplo = flip(uplo);
+        float[] xv = vector(n, x, xo, incx);
+        float[] yv = vector(n, y, yo, incy);
+        FloatKernel.symv(uplo, n, alpha, A, ao, lda, xv, beta, yv);
+        update(n, yv, y, yo, incy);
+    }
+
+    @Override
+    public void symv(Layout layout, UPLO uplo, int n, float alpha, float[] A, int lda, float[] x, int incx, float beta, float[] y, int incy) {
+        symv(layout, uplo, n, alpha, A, 0, lda, x, 0, incx, beta, y, 0, incy);
+    }
+
+    @Override
+    public void symv(Layout layout, UPLO uplo, int n, float alpha, FloatBuffer A, int lda, FloatBuffer x, int incx, float beta, FloatBuffer y, int incy) {
+        FloatArray a = FloatArray.of(A), xa = FloatArray.of(x), ya = FloatArray.of(y);
+        symv(layout, uplo, n, alpha, a.array, a.offset, lda, xa.array, xa.offset, incx, beta, ya.array, ya.offset, incy);
+        ya.release();
+    }
+
+    private void spmv(Layout layout, UPLO uplo, int n, float alpha, float[] A, int ao, float[] x, int xo, int incx, float beta, float[] y, int yo, int incy) {
+        if (layout == Layout.ROW_MAJOR) uplo = flip(uplo);
+        float[] xv = vector(n, x, xo, incx);
+        float[] yv = vector(n, y, yo, incy);
+        FloatKernel.spmv(uplo, n, alpha, A, ao, xv, beta, yv);
+        update(n, yv, y, yo, incy);
+    }
+
+    @Override
+    public void spmv(Layout layout, UPLO uplo, int n, float alpha, float[] A, float[] x, int incx, float beta, float[] y, int incy) {
+        spmv(layout, uplo, n, alpha, A, 0, x, 0, incx, beta, y, 0, incy);
+    }
+
+    @Override
+    public void spmv(Layout layout, UPLO uplo, int n, float alpha, FloatBuffer A, FloatBuffer x, int incx, float beta, FloatBuffer y, int incy) {
+        FloatArray a = FloatArray.of(A), xa = FloatArray.of(x), ya = FloatArray.of(y);
+        spmv(layout, uplo, n, alpha, a.array, a.offset, xa.array, xa.offset, incx, beta, ya.array, ya.offset, incy);
+        ya.release();
+    }
+
+    private void trmv(Layout layout, UPLO uplo, Transpose trans, Diag diag, int n, float[] A, int ao, int lda, float[] x, int xo, int incx) {
+        if (layout == Layout.ROW_MAJOR) {
+            uplo = flip(uplo);
+            trans = flip(trans);
+        }
+
+        float[] xv = vector(n, x, xo, incx);
+        FloatKernel.trmv(uplo, trans, diag, n, A, ao, lda, xv);
+        update(n, xv, x, xo, incx);
+    }
+
+    @Override
+    public void trmv(Layout layout, UPLO uplo, Transpose trans, Diag diag, int n, float[] A, int lda, float[] x, int incx) {
+        trmv(layout, uplo, trans, diag, n, A, 0, lda, x, 0, incx);
+    }
+
+    @Override
+    public void trmv(Layout layout, UPLO uplo, Transpose trans, Diag diag, int n, FloatBuffer A, int lda, FloatBuffer x, int incx) {
+        FloatArray a = FloatArray.of(A), xa = FloatArray.of(x);
+        trmv(layout, uplo, trans, diag, n, a.array, a.offset, lda, xa.array, xa.offset, incx);
+        xa.release();
+    }
+
+    private void tpmv(Layout layout, UPLO uplo, Transpose trans, Diag diag, int n, float[] A, int ao, float[] x, int xo, int incx) {
+        if (layout == Layout.ROW_MAJOR) {
+            uplo = flip(uplo);
+            trans = flip(trans);
+        }
+
+        float[] xv = vector(n, x, xo, incx);
+        FloatKernel.tpmv(uplo, trans, diag, n, A, ao, xv);
+        update(n, xv, x, xo, incx);
+    }
+
+    @Override
+    public void tpmv(Layout layout, UPLO uplo, Transpose trans, Diag diag, int n, float[] A, float[] x, int incx) {
+        tpmv(layout, uplo, trans, diag, n, A, 0, x, 0, incx);
+    }
+
+    @Override
+    public void tpmv(Layout layout, UPLO uplo, Transpose trans, Diag diag, int n, FloatBuffer A, FloatBuffer x, int incx) {
+        FloatArray a = FloatArray.of(A), xa = FloatArray.of(x);
+        tpmv(layout, uplo, trans, diag, n, a.array, a.offset, xa.array, xa.offset, incx);
+        xa.release();
+    }
+
+    private void gbmv(Layout layout, Transpose trans, int m, int n, int kl, int ku, float alpha, float[] A, int ao, int lda, float[] x, int xo, int incx, float beta, float[] y, int yo, int incy) {
+        if (layout == Layout.ROW_MAJOR) {
+            int t = m; m = n; n = t;
+            t = kl; kl = ku; ku = t;
+            trans = flip(trans);
+        }
+
+        int lenx = trans == Transpose.NO_TRANSPOSE ? n : m;
+        int leny = trans == Transpose.NO_TRANSPOSE ? m : n;
+        float[] xv = vector(lenx, x, xo, incx);
+        float[] yv = vector(leny, y, yo, incy);
+        FloatKernel.gbmv(trans, m, n, kl, ku, alpha, A, ao, lda, xv, beta, yv);
+        update(leny, yv, y, yo, incy);
+    }
+
+    @Override
+    public void gbmv(Layout layout, Transpose trans, int m, int n, int kl, int ku, float alpha, float[] A, int lda, float[] x, int incx, float beta, float[] y, int incy) {
+        gbmv(layout, trans, m, n, kl, ku, alpha, A, 0, lda, x, 0, incx, beta, y, 0, incy);
+    }
+
+    @Override
+    public void gbmv(Layout layout, Transpose trans, int m, int n, int kl, int ku, float alpha, FloatBuffer A, int lda, FloatBuffer x, int incx, float beta, FloatBuffer y, int incy) {
+        FloatArray a = FloatArray.of(A), xa = FloatArray.of(x), ya = FloatArray.of(y);
+        gbmv(layout, trans, m, n, kl, ku, alpha, a.array, a.offset, lda, xa.array, xa.offset, incx, beta, ya.array, ya.offset, incy);
+        ya.release();
+    }
+
+    private void sbmv(Layout layout, UPLO uplo, int n, int k, float alpha, float[] A, int ao, int lda, float[] x, int xo, int incx, float beta, float[] y, int yo, int incy) {
+        if (layout == Layout.ROW_MAJOR) uplo = flip(uplo);
+        float[] xv = vector(n, x, xo, incx);
+        float[] yv = vector(n, y, yo, incy);
+        FloatKernel.sbmv(uplo, n, k, alpha, A, ao, lda, xv, beta, yv);
+        update(n, yv, y, yo, incy);
+    }
+
+    @Override
+    public void sbmv(Layout layout, UPLO uplo, int n, int k, float alpha, float[] A, int lda, float[] x, int incx, float beta, float[] y, int incy) {
+        sbmv(layout, uplo, n, k, alpha, A, 0, lda, x, 0, incx, beta, y, 0, incy);
+    }
+
+    @Override
+    public void sbmv(Layout layout, UPLO uplo, int n, int k, float alpha, FloatBuffer A, int lda, FloatBuffer x, int incx, float beta, FloatBuffer y, int incy) {
+        FloatArray a = FloatArray.of(A), xa = FloatArray.of(x), ya = FloatArray.of(y);
+        sbmv(layout, uplo, n, k, alpha, a.array, a.offset, lda, xa.array, xa.offset, incx, beta, ya.array, ya.offset, incy);
+        ya.release();
+    }
+
+    private void ger(Layout layout, int m, int n, float alpha, float[] x, int xo, int incx, float[] y, int yo, int incy, float[] A, int ao, int lda) {
+        if (layout == Layout.ROW_MAJOR) {
+            ger(Layout.COL_MAJOR, n, m, alpha, y, yo, incy, x, xo, incx, A, ao, lda);
+            return;
+        }
+
+        float[] xv = vector(m, x, xo, incx);
+        float[] yv = vector(n, y, yo, incy);
+        FloatKernel.ger(m, n, alpha, xv, yv, A, ao, lda);
+    }
+
+    @Override
+    public void ger(Layout layout, int m, int n, float alpha, float[] x, int incx, float[] y, int incy, float[] A, int lda) {
+        ger(layout, m, n, alpha, x, 0, incx, y, 0, incy, A, 0, lda);
+    }
+
+    @Override
+    public void ger(Layout layout, int m, int n, float alpha, FloatBuffer x, int incx, FloatBuffer y, int incy, FloatBuffer A, int lda) {
+        FloatArray xa = FloatArray.of(x), ya = FloatArray.of(y), a = FloatArray.of(A);
+        ger(layout, m, n, alpha, xa.array, xa.offset, incx, ya.array, ya.offset, incy, a.array, a.offset, lda);
+        a.release();
+    }
+
+    private void syr(Layout layout, UPLO uplo, int n, float alpha, float[] x, int xo, int incx, float[] A, int ao, int lda, boolean pack) {
+        if (layout == Layout.ROW_MAJOR) uplo = flip(uplo);
+        float[] xv = vector(n, x, xo, incx);
+        FloatKernel.syr(uplo, n, alpha, xv, A, ao, lda, pack);
+    }
+
+    @Override
+    public void syr(Layout layout, UPLO uplo, int n, float alpha, float[] x, int incx, float[] A, int lda) {
+        syr(layout, uplo, n, alpha, x, 0, incx, A, 0, lda, false);
+    }
+
+    @Override
+    public void syr(Layout layout, UPLO uplo, int n, float alpha, FloatBuffer x, int incx, FloatBuffer A, int lda) {
+        FloatArray xa = FloatArray.of(x), a = FloatArray.of(A);
+        syr(layout, uplo, n, alpha, xa.array, xa.offset, incx, a.array, a.offset, lda, false);
+        a.release();
+    }
+
+    @Override
+    public void spr(Layout layout, UPLO uplo, int n, float alpha, float[] x, int incx, float[] A) {
+        syr(layout, uplo, n, alpha, x, 0, incx, A, 0, 0, true);
+    }
+
+    @Override
+    public void spr(Layout layout, UPLO uplo, int n, float alpha, FloatBuffer x, int incx, FloatBuffer A) {
+        FloatArray xa = FloatArray.of(x), a = FloatArray.of(A);
+        syr(layout, uplo, n, alpha, xa.array, xa.offset, incx, a.array, a.offset, 0, true);
+        a.release();
+    }
+
+    private void gemm(Layout layout, Transpose transA, Transpose transB, int m, int n, int k, float alpha, float[] A, int ao, int lda, float[] B, int bo, int ldb, float beta, float[] C, int co, int ldc) {
+        if (layout == Layout.ROW_MAJOR) {
+            // C' = op(B)' * op(A)'
+            FloatKernel.gemm(transB, transA, n, m, k, alpha, B, bo, ldb, A, ao, lda, beta, C, co, ldc);
+        } else {
+            FloatKernel.gemm(transA, transB, m, n, k, alpha, A, ao, lda, B, bo, ldb, beta, C, co, ldc);
+        }
+    }
+
+    @Override
+    public void gemm(Layout layout, Transpose transA, Transpose transB, int m, int n, int k, float alpha, float[] A, int lda, float[] B, int ldb, float beta, float[] C, int ldc) {
+        gemm(layout, transA, transB, m, n, k, alpha, A, 0, lda, B, 0, ldb, beta, C, 0, ldc);
+    }
+
+    @Override
+    public void gemm(Layout layout, Transpose transA, Transpose transB, int m, int n, int k, float alpha, FloatBuffer A, int lda, FloatBuffer B, int ldb, float beta, FloatBuffer C, int ldc) {
+        FloatArray a = FloatArray.of(A), b = FloatArray.of(B), c = FloatArray.of(C);
+        gemm(layout, transA, transB, m, n, k, alpha, a.array, a.offset, lda, b.array, b.offset, ldb, beta, c.array, c.offset, ldc);
+        c.release();
+    }
+
+    private void symm(Layout layout, Side side, UPLO uplo, int m, int n, float alpha, float[] A, int ao, int lda, float[] B, int bo, int ldb, float beta, float[] C, int co, int ldc) {
+        if (layout == Layout.ROW_MAJOR) {
+            FloatKernel.symm(flip(side), flip(uplo), n, m, alpha, A, ao, lda, B, bo, ldb, beta, C, co, ldc);
+        } else {
+            FloatKernel.symm(side, uplo, m, n, alpha, A, ao, lda, B, bo, ldb, beta, C, co, ldc);
+        }
+    }
+
+    @Override
+    public void symm(Layout layout, Side side, UPLO uplo, int m, int n, float alpha, float[] A, int lda, float[] B, int ldb, float beta, float[] C, int ldc) {
+        symm(layout, side, uplo, m, n, alpha, A, 0, lda, B, 0, ldb, beta, C, 0, ldc);
+    }
+
+    @Override
+    public void symm(Layout layout, Side side, UPLO uplo, int m, int n, float alpha, FloatBuffer A, int lda, FloatBuffer B, int ldb, float beta, FloatBuffer C, int ldc) {
+        FloatArray a = FloatArray.of(A), b = FloatArray.of(B), c = FloatArray.of(C);
+        symm(layout, side, uplo, m, n, alpha, a.array, a.offset, lda, b.array, b.offset, ldb, beta, c.array, c.offset, ldc);
+        c.release();
+    }
+
+    @Override
+    public void syrk(Layout layout, UPLO uplo, Transpose trans, int n, int k, float alpha, float[] A, int lda, float beta, float[] C, int ldc) {
+        if (layout == Layout.ROW_MAJOR) {
+            uplo = flip(uplo);
+            trans = flip(trans);
+        }
+
+        FloatKernel.syrk(uplo, trans, n, k, alpha, A, 0, lda, beta, C, 0, ldc);
+    }
+}
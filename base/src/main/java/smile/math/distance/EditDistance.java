@@ -21,6 +21,7 @@ import smile.math.MathEx;
 import smile.util.IntArray2D;
 
 import java.io.Serial;
+import java.util.Arrays;
 
 /**
  * The Edit distance between two strings is a metric for measuring the amount
@@ -31,9 +32,16 @@ import java.io.Serial;
  * distance (Damerau-Levenshtein distance) allows the transposition of two
  * characters as an operation.
  * <p>
- * Given two strings x and y of length m and n (suppose {@code n >= m}), this
- * implementation takes O(ne) time and O(mn) space by an extended Ukkonen's
- * algorithm in case of unit cost, where e is the edit distance between x and y.
+ * Given two strings x and y of length m and n (suppose {@code n >= m}), the
+ * unit cost edit distance is computed by the bit-parallel algorithm of Myers
+ * and Hyyr&ouml;, which takes O(&lceil;m/64&rceil; n) time and no memory
+ * allocation per call (see {@link EditPattern}). Long patterns with many
+ * distinct non-ASCII characters, whose bit vectors would take too much
+ * memory, fall back to the dynamic programming in O(n) space. The
+ * Damerau-Levenshtein distance is the optimal string alignment variant. If the maximum string
+ * length is given to the constructor and both strings are longer than 64
+ * characters, this implementation takes O(ne) time and O(mn) space by an
+ * extended Ukkonen's algorithm, where e is the edit distance between x and y.
  * Thus, this algorithm is output sensitive. The smaller the distance, the faster
  * it runs.
  * <p>
@@ -45,6 +53,14 @@ import java.io.Serial;
 public class EditDistance implements Metric<String> {
     @Serial
     private static final long serialVersionUID = 1L;
+    /**
+     * The thread local workspace of bit-parallel Levenshtein distance.
+     */
+    private static final ThreadLocal<EditPattern> LEVENSHTEIN = ThreadLocal.withInitial(() -> new EditPattern(false));
+    /**
+     * The thread local workspace of bit-parallel Damerau-Levenshtein distance.
+     */
+    private static final ThreadLocal<EditPattern> DAMERAU = ThreadLocal.withInitial(() -> new EditPattern(true));
 
     /**
      * Weight matrix for weighted Levenshtein distance.
@@ -154,15 +170,16 @@ public class EditDistance implements Metric<String> {
 
     /**
      * Edit distance between two strings. O(mn) time and O(n) space for weighted
-     * edit distance. O(ne) time and O(mn) space for unit cost edit distance.
-     * For weighted edit distance, this method is multi-thread safe. However,
-     * it is NOT multi-thread safe for unit cost edit distance.
+     * edit distance. O(&lceil;m/64&rceil; n) time for unit cost edit distance,
+     * or O(ne) time and O(mn) space if the maximum string length is given
+     * to the constructor and both strings are longer than 64 characters.
+     * In the latter case, it is NOT multi-thread safe.
      */
     @Override
     public double d(String a, String b) {
         if (weight != null)
             return weightedEdit(a, b);
-        else if (FKP == null || a.length() == 1 || b.length() == 1)
+        else if (FKP == null || Math.min(a.length(), b.length()) <= 64)
             return damerau ? damerau(a, b) : levenshtein(a, b);
         else
             return br(a, b);
@@ -170,9 +187,10 @@ public class EditDistance implements Metric<String> {
 
     /**
      * Edit distance between two strings. O(mn) time and O(n) space for weighted
-     * edit distance. O(ne) time and O(mn) space for unit cost edit distance.
-     * For weighted edit distance, this method is multi-thread safe. However,
-     * it is NOT multi-thread safe for unit cost edit distance.
+     * edit distance. O(&lceil;m/64&rceil; n) time for unit cost edit distance,
+     * or O(ne) time and O(mn) space if the maximum string length is given
+     * to the constructor and both strings are longer than 64 characters.
+     * In the latter case, it is NOT multi-thread safe.
      * @param a a string.
      * @param b a string.
      * @return the distance.
@@ -180,7 +198,7 @@ public class EditDistance implements Metric<String> {
     public double d(char[] a, char[] b) {
         if (weight != null) {
             return weightedEdit(a, b);
-        } else if (FKP == null || a.length == 1 || b.length == 1) {
+        } else if (FKP == null || Math.min(a.length, b.length) <= 64) {
             return damerau ? damerau(a, b) : levenshtein(a, b);
         } else {
             return br(a, b);
@@ -496,121 +514,157 @@ public class EditDistance implements Metric<String> {
     }
 
     /**
-     * Levenshtein distance between two strings allows insertion, deletion,
-     * or substitution of characters. O(mn) time and O(n) space.
-     * Multi-thread safe.
+     * Returns the edit distance between two strings with the thread local
+     * bit-parallel pattern. The common prefix and suffix are skipped and
+     * the shorter string is compiled as the pattern.
+     * @param pattern the workspace.
      * @param a a string.
      * @param b a string.
-     * @return the distance.
+     * @param maxDistance the threshold of distance.
+     * @return the distance if it is no greater than maxDistance,
+     *         otherwise maxDistance + 1.
      */
-    public static int levenshtein(String a, String b) {
-        // switch parameters to use the shorter one as b to save space.
-        if (a.length() < b.length()) {
+    private static int distance(EditPattern pattern, String a, String b, int maxDistance) {
+        if (a.length() > b.length()) {
             String swap = a;
             a = b;
             b = swap;
         }
 
-        int[][] d = new int[2][b.length() + 1];
-
-        for (int j = 0; j <= b.length(); j++) {
-            d[0][j] = j;
+        int m = a.length();
+        int n = b.length();
+        int prefix = 0;
+        while (prefix < m && a.charAt(prefix) == b.charAt(prefix)) {
+            prefix++;
         }
 
-        for (int i = 1; i <= a.length(); i++) {
-            d[1][0] = i;
+        int suffix = 0;
+        while (suffix < m - prefix && a.charAt(m - 1 - suffix) == b.charAt(n - 1 - suffix)) {
+            suffix++;
+        }
 
-            for (int j = 1; j <= b.length(); j++) {
-                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
-                d[1][j] = MathEx.min(
-                        d[0][j] + 1, // deletion
-                        d[1][j - 1] + 1, // insertion
-                        d[0][j - 1] + cost); // substitution
-            }
-            int[] swap = d[0];
-            d[0] = d[1];
-            d[1] = swap;
+        if (!fits(a, prefix, m - suffix)) {
+            return dp(a.substring(prefix, m - suffix).toCharArray(), b.substring(prefix, n - suffix).toCharArray(), pattern.isDamerau(), maxDistance);
         }
 
-        return d[0][b.length()];
+        pattern.reset(a, prefix, m - suffix);
+        return pattern.d(b, prefix, n - suffix, maxDistance);
     }
 
     /**
-     * Levenshtein distance between two strings allows insertion, deletion,
-     * or substitution of characters. O(mn) time and O(n) space.
-     * Multi-thread safe.
+     * Returns the edit distance between two strings with the thread local
+     * bit-parallel pattern. The common prefix and suffix are skipped and
+     * the shorter string is compiled as the pattern.
+     * @param pattern the workspace.
      * @param a a string.
      * @param b a string.
-     * @return the distance.
+     * @param maxDistance the threshold of distance.
+     * @return the distance if it is no greater than maxDistance,
+     *         otherwise maxDistance + 1.
      */
-    public static int levenshtein(char[] a, char[] b) {
-        // switch parameters to use the shorter one as b to save space.
-        if (a.length < b.length) {
+    private static int distance(EditPattern pattern, char[] a, char[] b, int maxDistance) {
+        if (a.length > b.length) {
             char[] swap = a;
             a = b;
             b = swap;
         }
 
-        int[][] d = new int[2][b.length + 1];
+        int m = a.length;
+        int n = b.length;
+        int prefix = 0;
+        while (prefix < m && a[prefix] == b[prefix]) {
+            prefix++;
+        }
 
-        for (int j = 0; j <= b.length; j++) {
-            d[0][j] = j;
+        int suffix = 0;
+        while (suffix < m - prefix && a[m - 1 - suffix] == b[n - 1 - suffix]) {
+            suffix++;
         }
 
-        for (int i = 1; i <= a.length; i++) {
-            d[1][0] = i;
+        if (!fits(a, prefix, m - suffix)) {
+            return dp(Arrays.copyOfRange(a, prefix, m - suffix), Arrays.copyOfRange(b, prefix, n - suffix), pattern.isDamerau(), maxDistance);
+        }
 
-            for (int j = 1; j <= b.length; j++) {
-                int cost = a[i - 1] == b[j - 1] ? 0 : 1;
-                d[1][j] = MathEx.min(
-                        d[0][j] + 1, // deletion
-                        d[1][j - 1] + 1, // insertion
-                        d[0][j - 1] + cost); // substitution
-            }
-            int[] swap = d[0];
-            d[0] = d[1];
-            d[1] = swap;
+        pattern.reset(a, prefix, m - suffix);
+        return pattern.d(b, prefix, n - suffix, maxDistance);
+    }
+
+    /**
+     * Returns true if the bit-parallel pattern of a string range fits in
+     * the table size limit.
+     * @param s the pattern string.
+     * @param from the index of first character, inclusive.
+     * @param to the index of last character, exclusive.
+     * @return true if the pattern fits in the table size limit.
+     */
+    private static boolean fits(String s, int from, int to) {
+        int nonAscii = 0;
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) >= 128) nonAscii++;
         }
+        return EditPattern.fits(to - from, nonAscii);
+    }
 
-        return d[0][b.length];
+    /**
+     * Returns true if the bit-parallel pattern of a string range fits in
+     * the table size limit.
+     * @param s the pattern string.
+     * @param from the index of first character, inclusive.
+     * @param to the index of last character, exclusive.
+     * @return true if the pattern fits in the table size limit.
+     */
+    private static boolean fits(char[] s, int from, int to) {
+        int nonAscii = 0;
+        for (int i = from; i < to; i++) {
+            if (s[i] >= 128) nonAscii++;
+        }
+        return EditPattern.fits(to - from, nonAscii);
     }
 
     /**
-     * Damerau-Levenshtein distance between two strings allows insertion,
-     * deletion, substitution, or transposition of characters.
-     * O(mn) time and O(n) space. Multi-thread safe.
+     * The dynamic programming of unit cost edit distance for long patterns
+     * with many distinct characters, whose bit-parallel tables would be
+     * too large. It takes O(mn) time and O(n) space, and stops as soon as
+     * all cells of a row exceed the threshold.
      * @param a a string.
      * @param b a string.
-     * @return the distance.
+     * @param damerau if true, calculate the optimal string alignment distance.
+     * @param maxDistance the threshold of distance.
+     * @return the distance if it is no greater than maxDistance,
+     *         otherwise maxDistance + 1.
      */
-    public static int damerau(String a, String b) {
-        // switch parameters to use the shorter one as b to save space.
-        if (a.length() < b.length()) {
-            String swap = a;
-            a = b;
-            b = swap;
+    private static int dp(char[] a, char[] b, boolean damerau, int maxDistance) {
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("Invalid max distance: " + maxDistance);
         }
 
-        int[][] d = new int[3][b.length() + 1];
-
-        for (int j = 0; j <= b.length(); j++) {
+        int n = b.length;
+        int[][] d = new int[3][n + 1];
+        for (int j = 0; j <= n; j++) {
             d[1][j] = j;
         }
 
-        for (int i = 1; i <= a.length(); i++) {
+        for (int i = 1; i <= a.length; i++) {
             d[2][0] = i;
-
-            for (int j = 1; j <= b.length(); j++) {
-                int cost = a.charAt(i-1) == b.charAt(j-1) ? 0 : 1;
-                d[2][j] = MathEx.min(
-                        d[1][j] + 1,       // deletion
+            int min = i;
+            for (int j = 1; j <= n; j++) {
+                int cost = a[i-1] == b[j-1] ? 0 : 1;
+                int x = MathEx.min(
+                        d[1][j] + 1,         // deletion
                         d[2][j-1] + 1,       // insertion
-                        d[1][j-1] + cost); // substitution
+                        d[1][j-1] + cost);   // substitution
 
-                if (i > 1 && j > 1) {
-                    if (a.charAt(i-1) == b.charAt(j-2) && a.charAt(i-2) == b.charAt(j-1))
-                        d[2][j] = Math.min(d[2][j], d[0][j-2] + cost);   // damerau
+                if (damerau && i > 1 && j > 1 && a[i-1] == b[j-2] && a[i-2] == b[j-1]) {
+                    x = Math.min(x, d[0][j-2] + cost); // transposition
                 }
+
+                d[2][j] = x;
+                if (x < min) min = x;
+            }
+
+            // With transposition, the next row may reach back two rows.
+            if (min > maxDistance && (!damerau || Arrays.stream(d[1]).min().getAsInt() > maxDistance)) {
+                return maxDistance + 1;
             }
 
             int[] swap = d[0];
@@ -619,54 +673,110 @@ public class EditDistance implements Metric<String> {
             d[2] = swap;
         }
 
-        return d[1][b.length()];
+        return d[1][n] <= maxDistance ? d[1][n] : maxDistance + 1;
     }
 
     /**
-     * Damerau-Levenshtein distance between two strings allows insertion,
-     * deletion, substitution, or transposition of characters.
-     * O(mn) time and O(n) space. Multi-thread safe.
+     * Levenshtein distance between two strings allows insertion, deletion,
+     * or substitution of characters. O(&lceil;m/64&rceil; n) time by
+     * bit-parallel algorithm. Multi-thread safe.
      * @param a a string.
      * @param b a string.
      * @return the distance.
      */
-    public static int damerau(char[] a, char[] b) {
-        // switch parameters to use the shorter one as b to save space.
-        if (a.length < b.length) {
-            char[] swap = a;
-            a = b;
-            b = swap;
-        }
+    public static int levenshtein(String a, String b) {
+        return distance(LEVENSHTEIN.get(), a, b, Integer.MAX_VALUE);
+    }
 
-        int[][] d = new int[3][b.length + 1];
+    /**
+     * Levenshtein distance between two strings allows insertion, deletion,
+     * or substitution of characters. O(&lceil;m/64&rceil; n) time by
+     * bit-parallel algorithm. Multi-thread safe.
+     * @param a a string.
+     * @param b a string.
+     * @return the distance.
+     */
+    public static int levenshtein(char[] a, char[] b) {
+        return distance(LEVENSHTEIN.get(), a, b, Integer.MAX_VALUE);
+    }
 
-        for (int j = 0; j <= b.length; j++) {
-            d[1][j] = j;
-        }
+    /**
+     * Bounded Levenshtein distance, which stops as soon as the distance
+     * is known to exceed the threshold. Multi-thread safe.
+     * @param a a string.
+     * @param b a string.
+     * @param maxDistance the threshold of distance.
+     * @return the distance if it is no greater than maxDistance,
+     *         otherwise maxDistance + 1.
+     */
+    public static int levenshtein(String a, String b, int maxDistance) {
+        return distance(LEVENSHTEIN.get(), a, b, maxDistance);
+    }
 
-        for (int i = 1; i <= a.length; i++) {
-            d[2][0] = i;
+    /**
+     * Bounded Levenshtein distance, which stops as soon as the distance
+     * is known to exceed the threshold. Multi-thread safe.
+     * @param a a string.
+     * @param b a string.
+     * @param maxDistance the threshold of distance.
+     * @return the distance if it is no greater than maxDistance,
+     *         otherwise maxDistance + 1.
+     */
+    public static int levenshtein(char[] a, char[] b, int maxDistance) {
+        return distance(LEVENSHTEIN.get(), a, b, maxDistance);
+    }
 
-            for (int j = 1; j <= b.length; j++) {
-                int cost = a[i-1] == b[j-1] ? 0 : 1;
-                d[2][j] = MathEx.min(
-                        d[1][j] + 1,       // deletion
-                        d[2][j-1] + 1,       // insertion
-                        d[1][j-1] + cost); // substitution
+    /**
+     * Damerau-Levenshtein distance between two strings allows insertion,
+     * deletion, substitution, or transposition of characters.
+     * This is the optimal string alignment variant, i.e. no substring
+     * is edited more than once. O(&lceil;m/64&rceil; n) time by
+     * bit-parallel algorithm. Multi-thread safe.
+     * @param a a string.
+     * @param b a string.
+     * @return the distance.
+     */
+    public static int damerau(String a, String b) {
+        return distance(DAMERAU.get(), a, b, Integer.MAX_VALUE);
+    }
 
-                if (i > 1 && j > 1) {
-                    if (a[i-1] == b[j-2] && a[i-2] == b[j-1])
-                        d[2][j] = Math.min(d[2][j], d[0][j-2] + cost);   // damerau
-                }
-            }
+    /**
+     * Damerau-Levenshtein distance between two strings allows insertion,
+     * deletion, substitution, or transposition of characters.
+     * This is the optimal string alignment variant, i.e. no substring
+     * is edited more than once. O(&lceil;m/64&rceil; n) time by
+     * bit-parallel algorithm. Multi-thread safe.
+     * @param a a string.
+     * @param b a string.
+     * @return the distance.
+     */
+    public static int damerau(char[] a, char[] b) {
+        return distance(DAMERAU.get(), a, b, Integer.MAX_VALUE);
+    }
 
-            int[] swap = d[0];
-            d[0] = d[1];
-            d[1] = d[2];
-            d[2] = swap;
-        }
+    /**
+     * Bounded Damerau-Levenshtein distance, which stops as soon as the
+     * distance is known to exceed the threshold. Multi-thread safe.
+     * @param a a string.
+     * @param b a string.
+     * @param maxDistance the threshold of distance.
+     * @return the distance if it is no greater than maxDistance,
+     *         otherwise maxDistance + 1.
+     */
+    public static int damerau(String a, String b, int maxDistance) {
+        return distance(DAMERAU.get(), a, b, maxDistance);
+    }
 
-        return d[1][b.length];
+    /**
+     * Bounded Damerau-Levenshtein distance, which stops as soon as the
+     * distance is known to exceed the threshold. Multi-thread safe.
+     * @param a a string.
+     * @param b a string.
+     * @param maxDistance the threshold of distance.
+     * @return the distance if it is no greater than maxDistance,
+     *         otherwise maxDistance + 1.
+     */
+    public static int damerau(char[] a, char[] b, int maxDistance) {
+        return distance(DAMERAU.get(), a, b, maxDistance);
     }
 }
-
@@ -0,0 +1,484 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.math.distance;
+
+import java.util.Arrays;
+
+/**
+ * A string pattern compiled for the bit-parallel edit distance to many
+ * texts. The columns of dynamic programming matrix are encoded as the
+ * bit vectors of vertical deltas, which are advanced by a few word
+ * operations per character of text. For a pattern of length m and a text
+ * of length n, it takes O(&lceil;m/64&rceil; n) time. Both Levenshtein
+ * distance (Myers' algorithm in Hyyr&ouml;'s formulation) and the optimal
+ * string alignment variant of Damerau-Levenshtein distance (Hyyr&ouml;'s
+ * extension with transposition) are supported.
+ * <p>
+ * The bounded methods return {@code maxDistance + 1} as soon as the distance
+ * is known to exceed the threshold, which is common in the fuzzy search
+ * of dictionary.
+ * <p>
+ * The pattern keeps the bit vectors as workspace and does not allocate
+ * memory per call. Therefore, it is NOT multi-thread safe. Use one
+ * pattern per thread.
+ *
+ * <h2>References</h2>
+ * <ol>
+ * <li> Gene Myers. A fast bit-vector algorithm for approximate string matching based on dynamic programming. Journal of the ACM, 46(3):395-415, 1999.</li>
+ * <li> Heikki Hyyr&ouml;. A bit-vector algorithm for computing Levenshtein and Damerau edit distances. Nordic Journal of Computing, 10:29-39, 2003.</li>
+ * </ol>
+ *
+ * @author Haifeng Li
+ */
+public class EditPattern {
+    /** The size of directly indexed alphabet. */
+    private static final int ASCII = 128;
+    /**
+     * The maximum number of 64-bit words of match bit vectors. Longer
+     * patterns with many distinct non-ASCII characters should use the
+     * dynamic programming instead, which takes O(n) space.
+     */
+    static final int MAX_TABLE_SIZE = 1 << 17;
+
+    /** True if transposition is allowed. */
+    private final boolean damerau;
+    /** The pattern. */
+    private char[] pattern = new char[0];
+    /** The length of pattern. */
+    private int length;
+    /** The number of 64-bit words per bit vector. */
+    private int words;
+    /**
+     * The match bit vectors of characters. The first ASCII blocks are
+     * indexed by the character directly. The blocks of non-ASCII
+     * characters follow in the order of first occurrence in the pattern.
+     * The block after them is always zero.
+     */
+    private long[] peq = new long[0];
+    /** The hash slots of non-ASCII characters, storing the character + 1. */
+    private int[] slots = new int[0];
+    /** The block index of non-ASCII characters in the hash slots. */
+    private int[] blocks = new int[0];
+    /** The number of distinct non-ASCII characters in the pattern. */
+    private int distinct;
+    /** The positive vertical deltas. */
+    private long[] vp = new long[0];
+    /** The negative vertical deltas. */
+    private long[] vn = new long[0];
+    /** The diagonal zero deltas of previous column. */
+    private long[] d0 = new long[0];
+    /** The match bit vectors of previous text character. */
+    private long[] pm = new long[0];
+    /** The buffer of text. */
+    private char[] text = new char[0];
+
+    /**
+     * Constructor of an empty pattern to be reset later.
+     * @param damerau if true, calculate Damerau-Levenshtein distance
+     *                instead of plain Levenshtein distance.
+     */
+    EditPattern(boolean damerau) {
+        this.damerau = damerau;
+        reset(pattern, 0, 0);
+    }
+
+    /**
+     * Constructor.
+     * @param pattern the pattern.
+     * @param damerau if true, calculate Damerau-Levenshtein distance
+     *                instead of plain Levenshtein distance.
+     */
+    public EditPattern(String pattern, boolean damerau) {
+        this(pattern.toCharArray(), damerau);
+    }
+
+    /**
+     * Constructor.
+     * @param pattern the pattern.
+     * @param damerau if true, calculate Damerau-Levenshtein distance
+     *                instead of plain Levenshtein distance.
+     */
+    public EditPattern(char[] pattern, boolean damerau) {
+        this.damerau = damerau;
+        reset(pattern, 0, pattern.length);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s(%s)", damerau ? "Damerau-Levenshtein" : "Levenshtein", new String(pattern, 0, length));
+    }
+
+    /**
+     * Returns true if transposition is allowed.
+     * @return true if transposition is allowed.
+     */
+    boolean isDamerau() {
+        return damerau;
+    }
+
+    /**
+     * Returns the length of pattern.
+     * @return the length of pattern.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Compiles a new pattern, reusing the memory of previous one.
+     * @param s the pattern.
+     * @param from the index of first character, inclusive.
+     * @param to the index of last character, exclusive.
+     */
+    void reset(String s, int from, int to) {
+        clear();
+        int m = to - from;
+        if (pattern.length < m) {
+            pattern = new char[Math.max(m, 2 * pattern.length)];
+        }
+        s.getChars(from, to, pattern, 0);
+        compile(m);
+    }
+
+    /**
+     * Compiles a new pattern, reusing the memory of previous one.
+     * @param s the pattern.
+     * @param from the index of first character, inclusive.
+     * @param to the index of last character, exclusive.
+     */
+    void reset(char[] s, int from, int to) {
+        clear();
+        int m = to - from;
+        if (s != pattern) {
+            if (pattern.length < m) {
+                pattern = new char[Math.max(m, 2 * pattern.length)];
+            }
+            System.arraycopy(s, from, pattern, 0, m);
+        }
+        compile(m);
+    }
+
+    /**
+     * Clears the match bit vectors of current pattern, which costs
+     * O(m) rather than the size of tables.
+     */
+    private void clear() {
+        for (int i = 0; i < length; i++) {
+            int base = base(pattern[i]);
+            Arrays.fill(peq, base, base + words, 0L);
+        }
+        Arrays.fill(slots, 0);
+        length = 0;
+        distinct = 0;
+    }
+
+    /**
+     * Returns true if the match bit vectors of a pattern fit in
+     * {@link #MAX_TABLE_SIZE} words.
+     * @param length the length of pattern.
+     * @param nonAscii the number of non-ASCII characters in the pattern.
+     * @return true if the match bit vectors fit in the table size limit.
+     */
+    static boolean fits(int length, int nonAscii) {
+        long words = Math.max(1, (length + 63) >>> 6);
+        return (ASCII + nonAscii + 1L) * words <= MAX_TABLE_SIZE;
+    }
+
+    /**
+     * Builds the match bit vectors of the first m characters of pattern.
+     * @param m the length of new pattern.
+     */
+    private void compile(int m) {
+        length = m;
+        words = Math.max(1, (m + 63) >>> 6);
+        // The hash slots and blocks are sized by the non-ASCII characters
+        // in the pattern so that the memory is O(m) for ASCII patterns.
+        int nonAscii = 0;
+        for (int i = 0; i < m; i++) {
+            if (pattern[i] >= ASCII) nonAscii++;
+        }
+        int capacity = Integer.highestOneBit(Math.max(2, 2 * nonAscii - 1)) << 1;
+        if (slots.length < capacity) {
+            slots = new int[capacity];
+            blocks = new int[capacity];
+        }
+        int size = (ASCII + nonAscii + 1) * words;
+        if (peq.length < size) {
+            peq = new long[size];
+        }
+        if (vp.length < words) {
+            vp = new long[words];
+            vn = new long[words];
+            d0 = new long[words];
+            pm = new long[words];
+        }
+
+        for (int i = 0; i < m; i++) {
+            char c = pattern[i];
+            int base;
+            if (c < ASCII) {
+                base = c * words;
+            } else {
+                int mask = slots.length - 1;
+                int h = (c * 0x9E3779B1) >>> 16 & mask;
+                while (slots[h] != 0 && slots[h] != c + 1) {
+                    h = (h + 1) & mask;
+                }
+                if (slots[h] == 0) {
+                    slots[h] = c + 1;
+                    blocks[h] = ASCII + distinct++;
+                }
+                base = blocks[h] * words;
+            }
+            peq[base + (i >>> 6)] |= 1L << (i & 63);
+        }
+    }
+
+    /**
+     * Returns the offset of match bit vector of a character.
+     * @param c the character.
+     * @return the offset of match bit vector.
+     */
+    private int base(char c) {
+        if (c < ASCII) {
+            return c * words;
+        }
+
+        int mask = slots.length - 1;
+        int h = (c * 0x9E3779B1) >>> 16 & mask;
+        int slot;
+        while ((slot = slots[h]) != 0) {
+            if (slot == c + 1) {
+                return blocks[h] * words;
+            }
+            h = (h + 1) & mask;
+        }
+        // The zero block.
+        return (ASCII + distinct) * words;
+    }
+
+    /**
+     * Returns the edit distance between the pattern and a text.
+     * @param s the text.
+     * @return the distance.
+     */
+    public int d(String s) {
+        return d(s, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the edit distance between the pattern and a text.
+     * @param s the text.
+     * @return the distance.
+     */
+    public int d(char[] s) {
+        return d(s, 0, s.length, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the edit distance between the pattern and a text
+     * if it is no greater than the threshold.
+     * @param s the text.
+     * @param maxDistance the threshold of distance.
+     * @return the distance if it is no greater than maxDistance,
+     *         otherwise maxDistance + 1.
+     */
+    public int d(String s, int maxDistance) {
+        return d(s, 0, s.length(), maxDistance);
+    }
+
+    /**
+     * Returns the edit distance between the pattern and a text
+     * if it is no greater than the threshold.
+     * @param s the text.
+     * @param maxDistance the threshold of distance.
+     * @return the distance if it is no greater than maxDistance,
+     *         otherwise maxDistance + 1.
+     */
+    public int d(char[] s, int maxDistance) {
+        return d(s, 0, s.length, maxDistance);
+    }
+
+    /**
+     * Returns the edit distance between the pattern and a range of text
+     * if it is no greater than the threshold.
+     * @param s the text.
+     * @param from the index of first character, inclusive.
+     * @param to the index of last character, exclusive.
+     * @param maxDistance the threshold of distance.
+     * @return the distance if it is no greater than maxDistance,
+     *         otherwise maxDistance + 1.
+     */
+    int d(String s, int from, int to, int maxDistance) {
+        int n = to - from;
+        if (text.length < n) {
+            text = new char[Math.max(n, 2 * text.length)];
+        }
+        s.getChars(from, to, text, 0);
+        return d(text, 0, n, maxDistance);
+    }
+
+    /**
+     * Returns the edit distance between the pattern and a range of text
+     * if it is no greater than the threshold.
+     * @param s the text.
+     * @param from the index of first character, inclusive.
+     * @param to the index of last character, exclusive.
+     * @param maxDistance the threshold of distance.
+     * @return the distance if it is no greater than maxDistance,
+     *         otherwise maxDistance + 1.
+     */
+    int d(char[] s, int from, int to, int maxDistance) {
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("Invalid max distance: " + maxDistance);
+        }
+
+        int m = length;
+        int n = to - from;
+        if (Math.abs(m - n) > maxDistance) {
+            return maxDistance + 1;
+        }
+
+        if (m == 0) return n;
+        if (n == 0) return m;
+
+        if (words == 1) {
+            return damerau ? osa(s, from, to, maxDistance) : levenshtein(s, from, to, maxDistance);
+        } else {
+            return block(s, from, to, maxDistance);
+        }
+    }
+
+    /** Levenshtein distance with a single word. */
+    private int levenshtein(char[] s, int from, int to, int maxDistance) {
+        long last = 1L << (length - 1);
+        long vp = -1L;
+        long vn = 0L;
+        int score = length;
+        for (int j = from; j < to; j++) {
+            long x = peq[base(s[j])];
+            long d0 = (((x & vp) + vp) ^ vp) | x | vn;
+            long hp = vn | ~(d0 | vp);
+            long hn = d0 & vp;
+            if ((hp & last) != 0) score++;
+            else if ((hn & last) != 0) score--;
+
+            // The distance decreases at most one per remaining character.
+            if (score - (to - j - 1) > maxDistance) {
+                return maxDistance + 1;
+            }
+
+            hp = (hp << 1) | 1L;
+            hn = hn << 1;
+            vp = hn | ~(d0 | hp);
+            vn = hp & d0;
+        }
+        return score;
+    }
+
+    /** Optimal string alignment distance with a single word. */
+    private int osa(char[] s, int from, int to, int maxDistance) {
+        long last = 1L << (length - 1);
+        long vp = -1L;
+        long vn = 0L;
+        long d0 = 0L;
+        long pm = 0L;
+        int score = length;
+        for (int j = from; j < to; j++) {
+            long x = peq[base(s[j])];
+            long tr = (((~d0) & x) << 1) & pm;
+            d0 = (((x & vp) + vp) ^ vp) | x | vn | tr;
+            long hp = vn | ~(d0 | vp);
+            long hn = d0 & vp;
+            if ((hp & last) != 0) score++;
+            else if ((hn & last) != 0) score--;
+
+            if (score - (to - j - 1) > maxDistance) {
+                return maxDistance + 1;
+            }
+
+            hp = (hp << 1) | 1L;
+            hn = hn << 1;
+            vp = hn | ~(d0 | hp);
+            vn = hp & d0;
+            pm = x;
+        }
+        return score;
+    }
+
+    /** Levenshtein or optimal string alignment distance with multiple words. */
+    private int block(char[] s, int from, int to, int maxDistance) {
+        int w = words;
+        long last = 1L << ((length - 1) & 63);
+        Arrays.fill(vp, 0, w, -1L);
+        Arrays.fill(vn, 0, w, 0L);
+        Arrays.fill(d0, 0, w, 0L);
+        Arrays.fill(pm, 0, w, 0L);
+
+        int score = length;
+        for (int j = from; j < to; j++) {
+            int base = base(s[j]);
+            // The horizontal deltas of the first row are always +1.
+            long hpCarry = 1L;
+            long hnCarry = 0L;
+            // The transposition bit shifted in from the previous word.
+            long trCarry = 0L;
+            for (int i = 0; i < w; i++) {
+                long x = peq[base + i];
+                long vpi = vp[i];
+                long vni = vn[i];
+                long d = d0[i];
+
+                long tr = 0L;
+                if (damerau) {
+                    long t = (~d) & x;
+                    tr = ((t << 1) | trCarry) & pm[i];
+                    trCarry = t >>> 63;
+                    pm[i] = x;
+                }
+
+                x |= hnCarry;
+                d = (((x & vpi) + vpi) ^ vpi) | x | vni | tr;
+                long hp = vni | ~(d | vpi);
+                long hn = d & vpi;
+
+                long hpIn = hpCarry;
+                long hnIn = hnCarry;
+                if (i < w - 1) {
+                    hpCarry = hp >>> 63;
+                    hnCarry = hn >>> 63;
+                } else {
+                    hpCarry = (hp & last) != 0 ? 1L : 0L;
+                    hnCarry = (hn & last) != 0 ? 1L : 0L;
+                }
+
+                hp = (hp << 1) | hpIn;
+                hn = (hn << 1) | hnIn;
+                vp[i] = hn | ~(d | hp);
+                vn[i] = hp & d;
+                d0[i] = d;
+            }
+
+            score += (int) (hpCarry - hnCarry);
+            if (score - (to - j - 1) > maxDistance) {
+                return maxDistance + 1;
+            }
+        }
+        return score;
+    }
+}
@@ -19,6 +19,7 @@ package smile.math.distance;
 
 import java.io.Serial;
 import java.util.Arrays;
+import smile.math.simd.SIMD;
 
 /**
  * Euclidean distance. For float or double arrays, missing values (i.e. NaN)
@@ -118,6 +119,13 @@ public class EuclideanDistance implements Metric<double[]> {
         double dist = 0.0;
 
         if (weight == null) {
+            // The vectorized kernel doesn't handle missing values.
+            // NaN in the result indicates missing values in the input.
+            double simd = SIMD.engine.squaredDistance(x, y);
+            if (!Double.isNaN(simd)) {
+                return Math.sqrt(simd);
+            }
+
             for (int i = 0; i < n; i++) {
                 if (!Float.isNaN(x[i]) && !Float.isNaN(y[i])) {
                     m++;
@@ -165,6 +173,13 @@ public class EuclideanDistance implements Metric<double[]> {
         double dist = 0.0;
 
         if (weight == null) {
+            // The vectorized kernel doesn't handle missing values.
+            // NaN in the result indicates missing values in the input.
+            double simd = SIMD.engine.squaredDistance(x, y);
+            if (!Double.isNaN(simd)) {
+                return Math.sqrt(simd);
+            }
+
             for (int i = 0; i < n; i++) {
                 if (!Double.isNaN(x[i]) && !Double.isNaN(y[i])) {
                     m++;
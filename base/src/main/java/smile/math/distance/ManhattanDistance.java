@@ -19,6 +19,7 @@ package smile.math.distance;
 
 import java.io.Serial;
 import java.util.Arrays;
+import smile.math.simd.SIMD;
 
 /**
  * Manhattan distance, also known as L<sub>1</sub> distance or L<sub>1</sub>
@@ -117,6 +118,13 @@ public class ManhattanDistance implements Metric<double[]> {
         double dist = 0.0;
 
         if (weight == null) {
+            // The vectorized kernel doesn't handle missing values.
+            // NaN in the result indicates missing values in the input.
+            double simd = SIMD.engine.manhattan(x, y);
+            if (!Double.isNaN(simd)) {
+                return simd;
+            }
+
             for (int i = 0; i < n; i++) {
                 if (!Float.isNaN(x[i]) && !Float.isNaN(y[i])) {
                     m++;
@@ -157,6 +165,13 @@ public class ManhattanDistance implements Metric<double[]> {
         double dist = 0.0;
 
         if (weight == null) {
+            // The vectorized kernel doesn't handle missing values.
+            // NaN in the result indicates missing values in the input.
+            double simd = SIMD.engine.manhattan(x, y);
+            if (!Double.isNaN(simd)) {
+                return simd;
+            }
+
             for (int i = 0; i < n; i++) {
                 if (!Double.isNaN(x[i]) && !Double.isNaN(y[i])) {
                     m++;
@@ -1646,7 +1646,9 @@ public class BigMatrix extends IMatrix implements AutoCloseable {
      */
     public BigMatrix ata() {
         BigMatrix C = new BigMatrix(n, n);
-        C.mm(TRANSPOSE, this, NO_TRANSPOSE, this);
+        Transpose trans = layout() == COL_MAJOR ? TRANSPOSE : NO_TRANSPOSE;
+        BLAS.engine.syrk(COL_MAJOR, LOWER, trans, n, m, 1.0, A, ld, 0.0, C.A, C.ld);
+        C.symmetrize();
         C.uplo(LOWER);
         return C;
     }
@@ -1657,11 +1659,25 @@ public class BigMatrix extends IMatrix implements AutoCloseable {
      */
     public BigMatrix aat() {
         BigMatrix C = new BigMatrix(m, m);
-        C.mm(NO_TRANSPOSE, this, TRANSPOSE, this);
+        Transpose trans = layout() == COL_MAJOR ? NO_TRANSPOSE : TRANSPOSE;
+        BLAS.engine.syrk(COL_MAJOR, LOWER, trans, m, n, 1.0, A, ld, 0.0, C.A, C.ld);
+        C.symmetrize();
         C.uplo(LOWER);
         return C;
     }
 
+    /**
+     * Copies the lower triangular part of a column-major square matrix
+     * to the upper triangular part, e.g. after a symmetric rank-k update.
+     */
+    void symmetrize() {
+        for (int j = 1; j < n; j++) {
+            for (int i = 0; i < j; i++) {
+                A.put(index(i, j), A.get(index(j, i)));
+            }
+        }
+    }
+
     /**
      * Returns {@code A * D * B}, where D is a diagonal matrix.
      * @param transA normal, transpose, or conjugate transpose
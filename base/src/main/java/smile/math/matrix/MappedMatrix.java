@@ -0,0 +1,593 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.math.matrix;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.bytedeco.javacpp.DoublePointer;
+import smile.math.blas.*;
+
+import static smile.math.blas.Diag.*;
+import static smile.math.blas.Layout.*;
+import static smile.math.blas.Transpose.*;
+import static smile.math.blas.UPLO.*;
+
+/**
+ * Out-of-core dense matrix of double precision values in a memory-mapped
+ * file. The file contains the elements in row-major order and native byte
+ * order without any header, i.e. the rows are simply appended one after
+ * another as they come from the data source.
+ * <p>
+ * As a Java buffer cannot map more than 2GB, the matrix is processed in
+ * tiles of consecutive rows. Each tile is a {@link BigMatrix} backed by
+ * the mapped region of the file, which is streamed through the BLAS and
+ * LAPACK routines. While a tile is being computed, the next one is paged
+ * in by a background thread. Therefore, the operations need the memory
+ * of a couple of tiles besides their (much smaller) results.
+ *
+ * @author Haifeng Li
+ */
+public class MappedMatrix implements AutoCloseable {
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(MappedMatrix.class);
+    /** The default size of tiles in bytes. */
+    private static final long TILE_BYTES = 64L << 20;
+    /** The background thread to page in the next tile. */
+    private static final ExecutorService prefetcher = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "smile-mapped-matrix-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The operation on a tile of rows.
+     */
+    private interface TileOperation {
+        /**
+         * Applies the operation.
+         * @param i the index of first row of tile.
+         * @param A the tile of this matrix.
+         * @param B the tile of the other matrix, or null.
+         */
+        void apply(int i, BigMatrix A, BigMatrix B);
+    }
+
+    /**
+     * The file path.
+     */
+    private final Path path;
+    /**
+     * The file channel.
+     */
+    private final FileChannel channel;
+    /**
+     * The mapping mode.
+     */
+    private final FileChannel.MapMode mode;
+    /**
+     * The number of rows.
+     */
+    private final int m;
+    /**
+     * The number of columns.
+     */
+    private final int n;
+    /**
+     * The number of rows per tile.
+     */
+    private int tile;
+    /**
+     * If true, the file will be deleted when the matrix is closed.
+     */
+    private boolean temporary = false;
+
+    /**
+     * Constructor.
+     * @param path the file path.
+     * @param channel the file channel.
+     * @param mode the mapping mode.
+     * @param m the number of rows.
+     * @param n the number of columns.
+     */
+    private MappedMatrix(Path path, FileChannel channel, FileChannel.MapMode mode, int m, int n) {
+        this.path = path;
+        this.channel = channel;
+        this.mode = mode;
+        this.m = m;
+        this.n = n;
+        this.tile = (int) Math.max(1, Math.min(m, TILE_BYTES / ((long) n * Double.BYTES)));
+    }
+
+    /**
+     * Opens a matrix file in read-only mode.
+     * @param path the file path.
+     * @param m the number of rows.
+     * @param n the number of columns.
+     * @throws IOException when fails to open the file.
+     * @return the matrix.
+     */
+    public static MappedMatrix open(Path path, int m, int n) throws IOException {
+        if (m <= 0 || n <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid matrix size: %d x %d", m, n));
+        }
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        long size = channel.size();
+        if (size < (long) m * n * Double.BYTES) {
+            channel.close();
+            throw new IllegalArgumentException(String.format("The file of %d bytes is too small for %d x %d matrix", size, m, n));
+        }
+
+        return new MappedMatrix(path, channel, FileChannel.MapMode.READ_ONLY, m, n);
+    }
+
+    /**
+     * Creates a zero matrix file, which is mapped in read-write mode.
+     * An existing file will be overwritten.
+     * @param path the file path.
+     * @param m the number of rows.
+     * @param n the number of columns.
+     * @throws IOException when fails to create the file.
+     * @return the matrix.
+     */
+    public static MappedMatrix create(Path path, int m, int n) throws IOException {
+        if (m <= 0 || n <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid matrix size: %d x %d", m, n));
+        }
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new MappedMatrix(path, channel, FileChannel.MapMode.READ_WRITE, m, n);
+    }
+
+    /**
+     * Creates a temporary matrix file in the given directory, which is
+     * deleted when the matrix is closed.
+     * @param dir the directory of file.
+     * @param m the number of rows.
+     * @param n the number of columns.
+     * @throws IOException when fails to create the file.
+     * @return the matrix.
+     */
+    private static MappedMatrix temporary(Path dir, int m, int n) throws IOException {
+        Path file = Files.createTempFile(dir, "smile", ".matrix");
+        MappedMatrix matrix = create(file, m, n);
+        matrix.temporary = true;
+        return matrix;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        if (temporary) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Returns the number of rows.
+     * @return the number of rows.
+     */
+    public int nrow() {
+        return m;
+    }
+
+    /**
+     * Returns the number of columns.
+     * @return the number of columns.
+     */
+    public int ncol() {
+        return n;
+    }
+
+    /**
+     * Returns the file path.
+     * @return the file path.
+     */
+    public Path path() {
+        return path;
+    }
+
+    /**
+     * Returns the number of rows per tile.
+     * @return the number of rows per tile.
+     */
+    public int tile() {
+        return tile;
+    }
+
+    /**
+     * Sets the number of rows per tile, which bounds the memory footprint
+     * of operations. The default tile is of 64MB.
+     * @param rows the number of rows per tile.
+     * @return this matrix.
+     */
+    public MappedMatrix tile(int rows) {
+        if (rows <= 0 || (long) rows * n * Double.BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid number of rows per tile: " + rows);
+        }
+
+        this.tile = Math.min(rows, m);
+        return this;
+    }
+
+    /**
+     * Returns the rows of matrix, which top at row i and bottom at row k.
+     * The returned matrix is backed by the file. If the file is mapped
+     * in read-write mode, changes to the returned matrix will be written
+     * to the file.
+     *
+     * @param i the beginning row, inclusive.
+     * @param k the ending row, inclusive.
+     * @return the rows of matrix.
+     */
+    public BigMatrix view(int i, int k) {
+        return view(i, k, false);
+    }
+
+    /**
+     * Returns the rows of matrix backed by the file.
+     * @param i the beginning row, inclusive.
+     * @param k the ending row, inclusive.
+     * @param load if true, loads the rows into physical memory.
+     * @return the rows of matrix.
+     */
+    private BigMatrix view(int i, int k, boolean load) {
+        if (i < 0 || k < i || k >= m) {
+            throw new IllegalArgumentException(String.format("Invalid row range %d:%d of %d x %d", i, k, m, n));
+        }
+
+        int rows = k - i + 1;
+        long size = (long) rows * n * Double.BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Rows %d:%d exceed the 2GB limit of mapping", i, k));
+        }
+
+        try {
+            MappedByteBuffer buffer = channel.map(mode, (long) i * n * Double.BYTES, size);
+            if (load) {
+                buffer.load();
+            }
+
+            // The row-major rows are the column-major storage of their transpose.
+            DoublePointer A = new DoublePointer(buffer.order(ByteOrder.nativeOrder()).asDoubleBuffer());
+            return new BigMatrix(n, rows, n, A).transpose();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Writes the rows of matrix from row i.
+     * @param i the beginning row.
+     * @param rows the row values.
+     */
+    public void set(int i, double[]... rows) {
+        checkWritable();
+        try (BigMatrix view = view(i, i + rows.length - 1)) {
+            for (int k = 0; k < rows.length; k++) {
+                double[] row = rows[k];
+                if (row.length != n) {
+                    throw new IllegalArgumentException(String.format("Row %d has %d columns, but the matrix has %d", i + k, row.length, n));
+                }
+
+                for (int j = 0; j < n; j++) {
+                    view.set(k, j, row[j]);
+                }
+            }
+        }
+    }
+
+    /** Throws an exception if the matrix is read-only. */
+    private void checkWritable() {
+        if (mode != FileChannel.MapMode.READ_WRITE) {
+            throw new UnsupportedOperationException("The matrix is read-only: " + path);
+        }
+    }
+
+    /**
+     * Applies an operation on the tiles of this matrix and the
+     * corresponding rows of another matrix. The next tiles are
+     * mapped and loaded while the current ones are processed.
+     *
+     * @param other the other matrix of the same number of rows, may be null.
+     * @param load if true, loads the tiles of the other matrix into
+     *             physical memory before the operation, i.e. the
+     *             other matrix is an input rather than output.
+     * @param op the operation.
+     */
+    private void scan(MappedMatrix other, boolean load, TileOperation op) {
+        int rows = other == null ? tile : Math.min(tile, other.tile);
+        Future<BigMatrix[]> next = prefetch(other, load, 0, rows);
+        for (int i = 0; i < m; i += rows) {
+            BigMatrix[] tiles = get(next);
+            if (i + rows < m) {
+                next = prefetch(other, load, i + rows, rows);
+            }
+
+            try (BigMatrix A = tiles[0]) {
+                op.apply(i, A, tiles[1]);
+            } finally {
+                if (tiles[1] != null) tiles[1].close();
+            }
+        }
+    }
+
+    /** Maps and loads the tiles in background. */
+    private Future<BigMatrix[]> prefetch(MappedMatrix other, boolean load, int i, int rows) {
+        int k = Math.min(m, i + rows) - 1;
+        return prefetcher.submit(() -> new BigMatrix[] {
+                view(i, k, true),
+                other == null ? null : other.view(i, k, load)
+        });
+    }
+
+    /** Waits for the prefetched tiles. */
+    private static BigMatrix[] get(Future<BigMatrix[]> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading the tile", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * Returns {@code A' * A}, e.g. the scatter matrix for covariance.
+     * The symmetric rank-k update of each tile is accumulated so that
+     * only the n x n result is in memory.
+     * @return {@code A' * A}.
+     */
+    public BigMatrix ata() {
+        BigMatrix C = new BigMatrix(n, n);
+        scan(null, false, (i, A, B) ->
+            // The column-major storage of tile is its transpose.
+            BLAS.engine.syrk(COL_MAJOR, LOWER, NO_TRANSPOSE, n, A.m, 1.0, A.A, A.ld, 1.0, C.A, C.ld)
+        );
+
+        C.symmetrize();
+        C.uplo(LOWER);
+        return C;
+    }
+
+    /**
+     * Returns matrix multiplication {@code A * B} in memory.
+     * @param B the operand.
+     * @return the multiplication.
+     */
+    public BigMatrix mm(BigMatrix B) {
+        if (n != B.m) {
+            throw new IllegalArgumentException(String.format("Matrix multiplication A * B: %d x %d vs %d x %d", m, n, B.m, B.n));
+        }
+
+        BigMatrix C = new BigMatrix(m, B.n);
+        scan(null, false, (i, A, unused) -> C.submatrix(i, 0, i + A.m - 1, B.n - 1).mm(NO_TRANSPOSE, A, NO_TRANSPOSE, B));
+        return C;
+    }
+
+    /**
+     * Matrix multiplication {@code C = A * B}, where C is out-of-core too.
+     * @param B the operand.
+     * @param C the output matrix, which must be mapped in read-write mode.
+     */
+    public void mm(BigMatrix B, MappedMatrix C) {
+        if (n != B.m || m != C.m || B.n != C.n) {
+            throw new IllegalArgumentException(String.format("Matrix multiplication A * B = C: %d x %d vs %d x %d vs %d x %d", m, n, B.m, B.n, C.m, C.n));
+        }
+
+        C.checkWritable();
+        scan(C, false, (i, A, Ci) -> Ci.mm(NO_TRANSPOSE, A, NO_TRANSPOSE, B));
+    }
+
+    /**
+     * Returns matrix multiplication {@code A' * B}.
+     * @param B the operand.
+     * @return the multiplication.
+     */
+    public BigMatrix tm(MappedMatrix B) {
+        if (m != B.m) {
+            throw new IllegalArgumentException(String.format("Matrix multiplication A' * B: %d x %d vs %d x %d", m, n, B.m, B.n));
+        }
+
+        BigMatrix C = new BigMatrix(n, B.n);
+        scan(B, true, (i, A, Bi) -> C.mm(TRANSPOSE, A, NO_TRANSPOSE, Bi, 1.0, 1.0));
+        return C;
+    }
+
+    /**
+     * Returns the upper triangular factor R of QR decomposition by
+     * the tall-and-skinny QR (TSQR) algorithm. The tiles are copied in
+     * bulk below the R factor of previous rows until there are at least
+     * n new rows, which are then decomposed together. Therefore, each
+     * decomposition reduces at least as many rows as it keeps, and small
+     * tiles don't lead to one (2n x n) decomposition per tile. The matrix
+     * is read once. The orthogonal factor {@code Q = A * inv(R)} is not
+     * formed.
+     *
+     * @return the upper triangular factor R, which is in row-major order.
+     */
+    public BigMatrix qr() {
+        if (m < n) {
+            throw new IllegalArgumentException(String.format("TSQR requires a tall matrix: %d x %d", m, n));
+        }
+
+        // The stacked rows in row-major order: the R factor of previous
+        // rows (at most n), the pending rows (less than n) and a tile.
+        DoublePointer S = new DoublePointer((long) Math.min(m, 2 * n + tile) * n);
+        // The number of rows of R factor and the number of pending rows.
+        int[] rows = {0, 0};
+        try {
+            scan(null, false, (i, A, unused) -> {
+                // The tile is a row-major view of the file with ld = n.
+                long offset = (long) (rows[0] + rows[1]) * n;
+                DoublePointer.memcpy(S.getPointer(offset), A.A, (long) A.m * n * Double.BYTES);
+                rows[1] += A.m;
+                if (rows[1] >= n || i + A.m == m) {
+                    rows[0] = geqrf(S, rows[0] + rows[1]);
+                    rows[1] = 0;
+                }
+            });
+
+            long size = (long) rows[0] * n;
+            DoublePointer P = new DoublePointer(size);
+            DoublePointer.memcpy(P, S, size * Double.BYTES);
+            // The row-major R is the column-major storage of its transpose.
+            BigMatrix R = new BigMatrix(n, rows[0], n, P).transpose();
+            R.uplo(UPPER);
+            R.triangular(NON_UNIT);
+            return R;
+        } finally {
+            S.close();
+        }
+    }
+
+    /**
+     * Decomposes the top rows of row-major stack in place and keeps
+     * the R factor by zeroing out the Householder vectors.
+     * @param S the row-major stack of n columns.
+     * @param rows the number of rows to decompose.
+     * @return the number of rows of R factor.
+     */
+    private int geqrf(DoublePointer S, int rows) {
+        int k = Math.min(rows, n);
+        try (DoublePointer tau = new DoublePointer(k)) {
+            int info = LAPACK.engine.geqrf(ROW_MAJOR, rows, n, S, n, tau);
+            if (info != 0) {
+                logger.error("LAPACK GEQRF error code: {}", info);
+                throw new ArithmeticException("LAPACK GEQRF error code: " + info);
+            }
+        }
+
+        for (int l = 1; l < k; l++) {
+            DoublePointer.memset(S.getPointer((long) l * n), 0, (long) l * Double.BYTES);
+        }
+        return k;
+    }
+
+    /**
+     * Overwrites this matrix with the orthonormal factor of QR decomposition.
+     * @return the upper triangular factor R.
+     */
+    private BigMatrix orthonormalize() {
+        checkWritable();
+        BigMatrix R = qr();
+        scan(null, false, (i, A, unused) -> {
+            // A * R^-1 = (R'^-1 * A')', where A' is the column-major storage of the tile
+            // and the row-major storage of R is the column-major storage of lower triangular R'.
+            int info = LAPACK.engine.trtrs(COL_MAJOR, LOWER, NO_TRANSPOSE, NON_UNIT, n, A.m, R.A, R.ld, A.A, A.ld);
+            if (info != 0) {
+                logger.error("LAPACK TRTRS error code: {}", info);
+                throw new ArithmeticException("LAPACK TRTRS error code: " + info);
+            }
+        });
+        return R;
+    }
+
+    /**
+     * Returns the truncated singular value decomposition by the randomized
+     * algorithm with 10 oversamples and 2 power iterations.
+     * @param k the number of singular values.
+     * @throws IOException when fails to create the scratch file.
+     * @return the truncated singular value decomposition.
+     */
+    public BigMatrix.SVD svd(int k) throws IOException {
+        return svd(k, 10, 2);
+    }
+
+    /**
+     * Returns the truncated singular value decomposition by the randomized
+     * algorithm of Halko, Martinsson and Tropp. The range of A is captured
+     * by the orthonormal basis Q of {@code (A * A')^q * A * Omega},
+     * where Omega is a Gaussian random matrix of {@code k + p} columns.
+     * Then the SVD of the small matrix {@code Q' * A} gives the result.
+     * Each power iteration reads the matrix twice. The m x (k + p) basis
+     * Q is kept in a scratch file in the same directory as this matrix.
+     *
+     * @param k the number of singular values.
+     * @param p the number of oversamples.
+     * @param q the number of power iterations.
+     * @throws IOException when fails to create the scratch file.
+     * @return the truncated singular value decomposition.
+     */
+    public BigMatrix.SVD svd(int k, int p, int q) throws IOException {
+        if (k <= 0 || k > Math.min(m, n)) {
+            throw new IllegalArgumentException("Invalid number of singular values: " + k);
+        }
+
+        if (p < 0) {
+            throw new IllegalArgumentException("Invalid number of oversamples: " + p);
+        }
+
+        if (q < 0) {
+            throw new IllegalArgumentException("Invalid number of power iterations: " + q);
+        }
+
+        int l = Math.min(k + p, Math.min(m, n));
+        Path dir = path.toAbsolutePath().getParent();
+        try (BigMatrix omega = BigMatrix.randn(n, l);
+             MappedMatrix Y = temporary(dir, m, l)) {
+            mm(omega, Y);
+            Y.orthonormalize().close();
+
+            for (int iter = 0; iter < q; iter++) {
+                try (BigMatrix Z = tm(Y)) {
+                    BigMatrix.QR qr = Z.qr(true);
+                    try (BigMatrix Q = qr.Q()) {
+                        mm(Q, Y);
+                    }
+                    qr.tau.close();
+                }
+                Y.orthonormalize().close();
+            }
+
+            // B = Q' * A and A ~ Q * B = (Q * Vb) * S * Ub' with B' = Ub * S * Vb'.
+            try (BigMatrix Bt = tm(Y)) {
+                BigMatrix.SVD svd = Bt.svd(true, true);
+                BigMatrix U;
+                try (BigMatrix Vb = svd.V.submatrix(0, 0, l - 1, k - 1).copy()) {
+                    U = Y.mm(Vb);
+                }
+
+                BigMatrix V = svd.U.submatrix(0, 0, n - 1, k - 1).copy();
+                DoublePointer s = new DoublePointer(k);
+                for (int i = 0; i < k; i++) {
+                    s.put(i, svd.s.get(i));
+                }
+
+                svd.U.close();
+                svd.V.close();
+                svd.s.close();
+                return new BigMatrix.SVD(s, U, V);
+            }
+        }
+    }
+}
@@ -1637,7 +1637,9 @@ public class Matrix extends IMatrix {
      */
     public Matrix ata() {
         Matrix C = new Matrix(n, n);
-        C.mm(TRANSPOSE, this, NO_TRANSPOSE, this);
+        Transpose trans = layout() == COL_MAJOR ? TRANSPOSE : NO_TRANSPOSE;
+        BLAS.engine.syrk(COL_MAJOR, LOWER, trans, n, m, 1.0f, A, ld, 0.0f, C.A, C.ld);
+        C.symmetrize();
         C.uplo(LOWER);
         return C;
     }
@@ -1648,11 +1650,25 @@ public class Matrix extends IMatrix {
      */
     public Matrix aat() {
         Matrix C = new Matrix(m, m);
-        C.mm(NO_TRANSPOSE, this, TRANSPOSE, this);
+        Transpose trans = layout() == COL_MAJOR ? NO_TRANSPOSE : TRANSPOSE;
+        BLAS.engine.syrk(COL_MAJOR, LOWER, trans, m, n, 1.0f, A, ld, 0.0f, C.A, C.ld);
+        C.symmetrize();
         C.uplo(LOWER);
         return C;
     }
 
+    /**
+     * Copies the lower triangular part of a column-major square matrix
+     * to the upper triangular part, e.g. after a symmetric rank-k update.
+     */
+    private void symmetrize() {
+        for (int j = 1; j < n; j++) {
+            for (int i = 0; i < j; i++) {
+                A[i + j * ld] = A[j + i * ld];
+            }
+        }
+    }
+
     /**
      * Returns {@code A * D * B}, where D is a diagonal matrix.
      * @param transA normal, transpose, or conjugate transpose
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2010-2021 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.neighbor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.stream.IntStream;
+import smile.math.MathEx;
+import smile.math.blas.BLAS;
+import smile.math.blas.Layout;
+import smile.math.blas.Transpose;
+
+/**
+ * Brute force k-nearest neighbor search of dense vectors in Euclidean
+ * distance with blocked distance kernels. The squared distances between
+ * a block of queries and a block of references are computed by matrix
+ * multiplication as
+ * <pre>
+ *     ||a - b||<sup>2</sup> = ||a||<sup>2</sup> + ||b||<sup>2</sup> - 2 a<sup>T</sup>b
+ * </pre>
+ * which is a single GEMM call per block pair. The k nearest candidates
+ * of each query are tracked in primitive heaps, and query blocks are
+ * processed in parallel. Compared to {@link LinearSearch}, it avoids the
+ * per-candidate function calls and object allocation, and exploits the
+ * cache blocking of optimized BLAS. It is the method of choice for batch
+ * search of high dimensional data, where space partitioning trees degrade
+ * to linear scan anyway.
+ * <p>
+ * The reference vectors are copied into contiguous blocks so that the
+ * memory footprint is about twice of the data. Because of the cancellation
+ * in the expansion, the distances of nearly identical vectors are less
+ * accurate than direct computation, which matters only for ties.
+ * <p>
+ * As other search data structures, the query object (reference equality)
+ * is excluded from the neighborhood.
+ *
+ * @see FloatBlockLinearSearch
+ *
+ * @author Haifeng Li
+ */
+public class BlockLinearSearch implements KNNSearch<double[], double[]>, Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+    /**
+     * The default number of references per block.
+     */
+    static final int BLOCK_SIZE = 1024;
+    /**
+     * The number of queries per block.
+     */
+    static final int QUERY_BLOCK_SIZE = 128;
+
+    /**
+     * The data objects.
+     */
+    private final double[][] data;
+    /**
+     * The dimension of data.
+     */
+    private final int d;
+    /**
+     * The number of references per block.
+     */
+    private final int blockSize;
+    /**
+     * The blocks of references in row major.
+     */
+    private final double[][] blocks;
+    /**
+     * The squared norms of references by blocks.
+     */
+    private final double[][] norms;
+
+    /**
+     * Constructor.
+     * @param data the data objects.
+     */
+    public BlockLinearSearch(double[][] data) {
+        this(data, BLOCK_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * @param data the data objects.
+     * @param blockSize the number of references per block.
+     */
+    public BlockLinearSearch(double[][] data, int blockSize) {
+        if (data.length == 0) {
+            throw new IllegalArgumentException("Empty data");
+        }
+
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+
+        this.data = data;
+        this.d = data[0].length;
+        this.blockSize = blockSize;
+
+        int n = data.length;
+        int nb = (n + blockSize - 1) / blockSize;
+        this.blocks = new double[nb][];
+        this.norms = new double[nb][];
+        IntStream.range(0, nb).parallel().forEach(b -> {
+            int from = b * blockSize;
+            int size = Math.min(n, from + blockSize) - from;
+            double[] block = new double[size * d];
+            double[] norm = new double[size];
+            for (int i = 0; i < size; i++) {
+                double[] x = data[from + i];
+                if (x.length != d) {
+                    throw new IllegalArgumentException(String.format("Invalid dimension of data[%d]: %d != %d", from + i, x.length, d));
+                }
+                System.arraycopy(x, 0, block, i * d, d);
+                norm[i] = MathEx.dot(x, x);
+            }
+            blocks[b] = block;
+            norms[b] = norm;
+        });
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Block Linear Search (%d x %d)", data.length, d);
+    }
+
+    /**
+     * Returns the number of data objects.
+     * @return the number of data objects.
+     */
+    public int size() {
+        return data.length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Neighbor<double[], double[]>[] search(double[] q, int k) {
+        double[][] distance = new double[1][];
+        int[] index = search(new double[][]{q}, k, distance)[0];
+        Neighbor<double[], double[]>[] neighbors = new Neighbor[k];
+        for (int i = 0; i < k; i++) {
+            if (index[i] >= 0) {
+                neighbors[i] = Neighbor.of(data[index[i]], index[i], distance[0][i]);
+            }
+        }
+        return neighbors;
+    }
+
+    @Override
+    public int[][] search(double[][] q, int k, double[][] distance) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Invalid k: " + k);
+        }
+
+        if (k > data.length) {
+            throw new IllegalArgumentException("Neighbor array length is larger than the data size");
+        }
+
+        int m = q.length;
+        int[][] index = new int[m][];
+        int nb = (m + QUERY_BLOCK_SIZE - 1) / QUERY_BLOCK_SIZE;
+        IntStream.range(0, nb).parallel().forEach(b -> {
+            int from = b * QUERY_BLOCK_SIZE;
+            int to = Math.min(m, from + QUERY_BLOCK_SIZE);
+            search(q, from, to, k, index, distance);
+        });
+        return index;
+    }
+
+    /**
+     * Searches a block of queries against all references.
+     * @param q the queries.
+     * @param from the index of first query in the block, inclusive.
+     * @param to the index of last query in the block, exclusive.
+     * @param k the number of nearest neighbors.
+     * @param index the output of neighbor indices.
+     * @param distance the optional output of neighbor distances.
+     */
+    private void search(double[][] q, int from, int to, int k, int[][] index, double[][] distance) {
+        int m = to - from;
+        double[] A = new double[m * d];
+        double[] norm = new double[m];
+        TopK[] heap = new TopK[m];
+        for (int i = 0; i < m; i++) {
+            double[] x = q[from + i];
+            if (x.length != d) {
+                throw new IllegalArgumentException(String.format("Invalid dimension of query[%d]: %d != %d", from + i, x.length, d));
+            }
+            System.arraycopy(x, 0, A, i * d, d);
+            norm[i] = MathEx.dot(x, x);
+            heap[i] = new TopK(k);
+        }
+
+        double[] C = new double[m * blockSize];
+        for (int b = 0; b < blocks.length; b++) {
+            double[] B = blocks[b];
+            double[] bnorm = norms[b];
+            int n = bnorm.length;
+            int offset = b * blockSize;
+            // C = -2 * A * B'
+            BLAS.engine.gemm(Layout.ROW_MAJOR, Transpose.NO_TRANSPOSE, Transpose.TRANSPOSE, m, n, d, -2.0, A, d, B, d, 0.0, C, n);
+
+            for (int i = 0; i < m; i++) {
+                TopK top = heap[i];
+                double[] x = q[from + i];
+                double qnorm = norm[i];
+                int row = i * n;
+                for (int j = 0; j < n; j++) {
+                    double dist = qnorm + bnorm[j] + C[row + j];
+                    if (dist < top.peek() && x != data[offset + j]) {
+                        top.add(dist, offset + j);
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < m; i++) {
+            TopK top = heap[i];
+            top.sort();
+            index[from + i] = top.index;
+            if (distance != null) {
+                double[] dist = top.distance;
+                for (int j = 0; j < k; j++) {
+                    dist[j] = Math.sqrt(Math.max(0.0, dist[j]));
+                }
+                distance[from + i] = dist;
+            }
+        }
+    }
+}
@@ -0,0 +1,568 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.neighbor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Exact k-nearest neighbor search of time series in dynamic time warping
+ * distance with Sakoe-Chiba band. Following the UCR suite, most candidates
+ * are rejected by a cascade of lower bounds before the expensive DTW:
+ * <ol>
+ * <li>LB_Kim, which compares the first and last three points in constant time.</li>
+ * <li>LB_Keogh of candidate against the envelope of query, visiting the points
+ *     in descending order of absolute query values with early abandoning.</li>
+ * <li>LB_Keogh of query against the envelope of candidate.</li>
+ * </ol>
+ * The surviving candidates are evaluated by DTW, which is early abandoned
+ * once the partial cost plus the cumulative LB_Keogh of remaining points
+ * exceeds the k-th best distance so far.
+ * <p>
+ * If z-normalization is enabled, the query and references are compared
+ * after normalized to zero mean and unit variance. The mean and standard
+ * deviation of references are computed once at construction, and the points
+ * are normalized on the fly only when they are visited by the lower bounds,
+ * so that the data are not copied.
+ * <p>
+ * The point-wise cost is the squared difference and the distance is the
+ * square root of accumulated cost, as in the UCR suite. Note that it is
+ * different from {@link smile.math.distance.DynamicTimeWarping} of which
+ * the cost is the absolute difference. A single query scans the references
+ * in parallel chunks, which share the best-so-far distance for pruning.
+ * A batch of queries is processed in parallel.
+ * <p>
+ * As other search data structures, the query object (reference equality)
+ * is excluded from the neighborhood.
+ *
+ * <h2>References</h2>
+ * <ol>
+ * <li> Thanawin Rakthanmanon, et al. Searching and Mining Trillions of Time Series Subsequences under Dynamic Time Warping. KDD, 2012.</li>
+ * <li> Eamonn Keogh and Chotirat Ann Ratanamahatana. Exact indexing of dynamic time warping. Knowledge and Information Systems, 7(3):358-386, 2005.</li>
+ * <li> Daniel Lemire. Faster retrieval with a two-pass dynamic-time-warping lower bound. Pattern Recognition, 42(9):2169-2180, 2009.</li>
+ * </ol>
+ *
+ * @param <E> the type of associated objects.
+ *
+ * @author Haifeng Li
+ */
+public class DTWSearch<E> implements KNNSearch<double[], E>, Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+    /**
+     * The number of references per chunk in the parallel scan of a single query.
+     */
+    private static final int CHUNK_SIZE = 4096;
+
+    /**
+     * The time series of references.
+     */
+    private final double[][] keys;
+    /**
+     * The data objects.
+     */
+    private final E[] data;
+    /**
+     * The length of time series.
+     */
+    private final int length;
+    /**
+     * The window width of Sakoe-Chiba band.
+     */
+    private final int radius;
+    /**
+     * True if the time series are z-normalized.
+     */
+    private final boolean normalize;
+    /**
+     * The mean of references.
+     */
+    private final double[] mean;
+    /**
+     * The standard deviation of references.
+     */
+    private final double[] sd;
+
+    /**
+     * Constructor with z-normalization.
+     * @param keys the time series of references, which must have the same length.
+     * @param data the data objects.
+     * @param radius the window width of Sakoe-Chiba band in terms of
+     *               percentage of sequence length.
+     */
+    public DTWSearch(double[][] keys, E[] data, double radius) {
+        this(keys, data, radius, true);
+    }
+
+    /**
+     * Constructor.
+     * @param keys the time series of references, which must have the same length.
+     * @param data the data objects.
+     * @param radius the window width of Sakoe-Chiba band in terms of
+     *               percentage of sequence length.
+     * @param normalize true if the time series are z-normalized before
+     *                  comparison.
+     */
+    public DTWSearch(double[][] keys, E[] data, double radius, boolean normalize) {
+        if (keys.length != data.length) {
+            throw new IllegalArgumentException("Different size of keys and data objects");
+        }
+
+        if (keys.length == 0) {
+            throw new IllegalArgumentException("Empty data");
+        }
+
+        if (radius < 0 || radius > 1) {
+            throw new IllegalArgumentException("radius = " + radius);
+        }
+
+        this.keys = keys;
+        this.data = data;
+        this.length = keys[0].length;
+        this.radius = Math.min(length - 1, (int) Math.round(radius * length));
+        this.normalize = normalize;
+
+        int n = keys.length;
+        this.mean = new double[n];
+        this.sd = new double[n];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            double[] x = keys[i];
+            if (x.length != length) {
+                throw new IllegalArgumentException(String.format("Invalid length of keys[%d]: %d != %d", i, x.length, length));
+            }
+
+            if (normalize) {
+                double sum = 0.0;
+                double sum2 = 0.0;
+                for (double xi : x) {
+                    sum += xi;
+                    sum2 += xi * xi;
+                }
+                mean[i] = sum / length;
+                double variance = sum2 / length - mean[i] * mean[i];
+                sd[i] = variance > 0.0 ? Math.sqrt(variance) : 1.0;
+            } else {
+                sd[i] = 1.0;
+            }
+        });
+    }
+
+    /**
+     * Returns the time series search with z-normalization.
+     * @param data the time series, which are also used as the data objects.
+     * @param radius the window width of Sakoe-Chiba band in terms of
+     *               percentage of sequence length.
+     * @return the time series search.
+     */
+    public static DTWSearch<double[]> of(double[][] data, double radius) {
+        return new DTWSearch<>(data, data, radius);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DTW Search (%d x %d, radius = %d)", keys.length, length, radius);
+    }
+
+    /**
+     * Returns the number of references.
+     * @return the number of references.
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Neighbor<double[], E>[] search(double[] q, int k) {
+        check(k);
+        Query query = new Query(q);
+        int n = keys.length;
+        int chunks = (n + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        // The smallest k-th distance of chunks, which bounds the global one.
+        AtomicLong bound = new AtomicLong(Double.doubleToLongBits(Double.POSITIVE_INFINITY));
+        TopK[] heaps = IntStream.range(0, chunks).parallel().mapToObj(b -> {
+            TopK heap = new TopK(k);
+            Query worker = b == 0 ? query : query.copy();
+            worker.scan(b * CHUNK_SIZE, Math.min(n, (b + 1) * CHUNK_SIZE), heap, bound);
+            return heap;
+        }).toArray(TopK[]::new);
+
+        TopK heap = new TopK(k);
+        for (TopK h : heaps) {
+            for (int i = 0; i < k; i++) {
+                if (h.index[i] >= 0 && h.distance[i] < heap.peek()) {
+                    heap.add(h.distance[i], h.index[i]);
+                }
+            }
+        }
+        heap.sort();
+
+        Neighbor<double[], E>[] neighbors = new Neighbor[k];
+        for (int i = 0; i < k; i++) {
+            int index = heap.index[i];
+            if (index >= 0) {
+                neighbors[i] = new Neighbor<>(keys[index], data[index], index, Math.sqrt(heap.distance[i]));
+            }
+        }
+        return neighbors;
+    }
+
+    @Override
+    public int[][] search(double[][] q, int k, double[][] distance) {
+        check(k);
+        int n = keys.length;
+        int[][] index = new int[q.length][];
+        IntStream.range(0, q.length).parallel().forEach(i -> {
+            TopK heap = new TopK(k);
+            new Query(q[i]).scan(0, n, heap, null);
+            heap.sort();
+
+            index[i] = heap.index;
+            if (distance != null) {
+                double[] dist = heap.distance;
+                for (int j = 0; j < k; j++) {
+                    dist[j] = Math.sqrt(dist[j]);
+                }
+                distance[i] = dist;
+            }
+        });
+        return index;
+    }
+
+    /** Checks the number of neighbors. */
+    private void check(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Invalid k: " + k);
+        }
+
+        if (k > keys.length) {
+            throw new IllegalArgumentException("Neighbor array length is larger than the data size");
+        }
+    }
+
+    /**
+     * The normalized query with its envelope and the workspace of search.
+     * A query object is used by a single thread.
+     */
+    private class Query {
+        /** The original query, for the reference equality test. */
+        final double[] key;
+        /** The normalized query. */
+        final double[] q;
+        /** The upper envelope of query. */
+        final double[] upper;
+        /** The lower envelope of query. */
+        final double[] lower;
+        /** The indices of query points in descending order of absolute values. */
+        final int[] order;
+        /** The normalized candidate. */
+        final double[] c;
+        /** The upper envelope of candidate. */
+        final double[] cu;
+        /** The lower envelope of candidate. */
+        final double[] cl;
+        /** The point-wise LB_Keogh of candidate against query envelope. */
+        final double[] cb1;
+        /** The point-wise LB_Keogh of query against candidate envelope. */
+        final double[] cb2;
+        /** The cumulative lower bound from the end. */
+        final double[] cb;
+        /** The cost of current row in the band. */
+        double[] cost;
+        /** The cost of previous row in the band. */
+        double[] prev;
+        /** The workspace of envelope. */
+        final int[] upperQueue;
+        /** The workspace of envelope. */
+        final int[] lowerQueue;
+
+        /**
+         * Constructor.
+         * @param key the query time series.
+         */
+        Query(double[] key) {
+            if (key.length != length) {
+                throw new IllegalArgumentException(String.format("Invalid length of query: %d != %d", key.length, length));
+            }
+
+            this.key = key;
+            this.q = key.clone();
+            if (normalize) {
+                double sum = 0.0;
+                double sum2 = 0.0;
+                for (double qi : q) {
+                    sum += qi;
+                    sum2 += qi * qi;
+                }
+                double mu = sum / length;
+                double variance = sum2 / length - mu * mu;
+                double sigma = variance > 0.0 ? Math.sqrt(variance) : 1.0;
+                for (int i = 0; i < length; i++) {
+                    q[i] = (q[i] - mu) / sigma;
+                }
+            }
+
+            this.upper = new double[length];
+            this.lower = new double[length];
+            this.upperQueue = new int[length];
+            this.lowerQueue = new int[length];
+            envelope(q, upper, lower);
+
+            double[] abs = Arrays.stream(q).map(qi -> -Math.abs(qi)).toArray();
+            this.order = IntStream.range(0, length).boxed()
+                    .sorted((i, j) -> Double.compare(abs[i], abs[j]))
+                    .mapToInt(Integer::intValue).toArray();
+
+            this.c = new double[length];
+            this.cu = new double[length];
+            this.cl = new double[length];
+            this.cb1 = new double[length];
+            this.cb2 = new double[length];
+            this.cb = new double[length];
+            this.cost = new double[2 * radius + 1];
+            this.prev = new double[2 * radius + 1];
+        }
+
+        /** Constructor for a copy with separate workspace. */
+        private Query(Query query) {
+            this.key = query.key;
+            this.q = query.q;
+            this.upper = query.upper;
+            this.lower = query.lower;
+            this.order = query.order;
+            this.upperQueue = new int[length];
+            this.lowerQueue = new int[length];
+            this.c = new double[length];
+            this.cu = new double[length];
+            this.cl = new double[length];
+            this.cb1 = new double[length];
+            this.cb2 = new double[length];
+            this.cb = new double[length];
+            this.cost = new double[2 * radius + 1];
+            this.prev = new double[2 * radius + 1];
+        }
+
+        /** Returns a copy with separate workspace for another thread. */
+        Query copy() {
+            return new Query(this);
+        }
+
+        /**
+         * Scans the references in [from, to).
+         * @param from the index of first reference, inclusive.
+         * @param to the index of last reference, exclusive.
+         * @param heap the k nearest candidates in squared distance.
+         * @param bound the optional best-so-far distance shared by threads.
+         */
+        void scan(int from, int to, TopK heap, AtomicLong bound) {
+            for (int j = from; j < to; j++) {
+                double[] x = keys[j];
+                if (x == key) continue;
+
+                double bsf = heap.peek();
+                if (bound != null) {
+                    bsf = Math.min(bsf, Double.longBitsToDouble(bound.get()));
+                }
+
+                // The distance is exact only if it is less than bsf.
+                double d = distance(x, mean[j], sd[j], bsf);
+                if (d < bsf) {
+                    heap.add(d, j);
+                    if (bound != null && heap.index[0] >= 0) {
+                        double kth = heap.peek();
+                        long current;
+                        while (kth < Double.longBitsToDouble(current = bound.get())) {
+                            if (bound.compareAndSet(current, Double.doubleToLongBits(kth))) break;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the squared DTW distance to a candidate, or a lower bound
+         * of it that is no less than the best-so-far distance.
+         */
+        double distance(double[] x, double mu, double sigma, double bsf) {
+            double lb = kim(x, mu, sigma, bsf);
+            if (lb >= bsf) return lb;
+
+            lb = keogh(x, mu, sigma, bsf);
+            if (lb >= bsf) return lb;
+
+            for (int i = 0; i < length; i++) {
+                c[i] = (x[i] - mu) / sigma;
+            }
+            envelope(c, cu, cl);
+
+            double lb2 = 0.0;
+            for (int i = 0; i < length && lb2 < bsf; i++) {
+                int p = order[i];
+                double qi = q[p];
+                double d = 0.0;
+                if (qi > cu[p]) {
+                    d = (qi - cu[p]) * (qi - cu[p]);
+                } else if (qi < cl[p]) {
+                    d = (qi - cl[p]) * (qi - cl[p]);
+                }
+                cb2[p] = d;
+                lb2 += d;
+            }
+            if (lb2 >= bsf) return lb2;
+
+            // The cumulative lower bound of the tighter LB_Keogh.
+            double[] tight = lb > lb2 ? cb1 : cb2;
+            cb[length - 1] = tight[length - 1];
+            for (int i = length - 2; i >= 0; i--) {
+                cb[i] = cb[i + 1] + tight[i];
+            }
+
+            return dtw(bsf);
+        }
+
+        /** The hierarchical LB_Kim with early abandoning. */
+        double kim(double[] x, double mu, double sigma, double bsf) {
+            int m = length;
+            double x0 = (x[0] - mu) / sigma;
+            double y0 = (x[m - 1] - mu) / sigma;
+            double lb = m == 1 ? dist(x0, q[0]) : dist(x0, q[0]) + dist(y0, q[m - 1]);
+            if (lb >= bsf || m < 6) return lb;
+
+            double x1 = (x[1] - mu) / sigma;
+            lb += min(dist(x1, q[0]), dist(x0, q[1]), dist(x1, q[1]));
+            if (lb >= bsf) return lb;
+
+            double y1 = (x[m - 2] - mu) / sigma;
+            lb += min(dist(y1, q[m - 1]), dist(y0, q[m - 2]), dist(y1, q[m - 2]));
+            if (lb >= bsf) return lb;
+
+            double x2 = (x[2] - mu) / sigma;
+            lb += Math.min(min(dist(x0, q[2]), dist(x1, q[2]), dist(x2, q[2])), Math.min(dist(x2, q[1]), dist(x2, q[0])));
+            if (lb >= bsf) return lb;
+
+            double y2 = (x[m - 3] - mu) / sigma;
+            lb += Math.min(min(dist(y0, q[m - 3]), dist(y1, q[m - 3]), dist(y2, q[m - 3])), Math.min(dist(y2, q[m - 2]), dist(y2, q[m - 1])));
+            return lb;
+        }
+
+        /** LB_Keogh of candidate against query envelope with early abandoning. */
+        double keogh(double[] x, double mu, double sigma, double bsf) {
+            double lb = 0.0;
+            for (int i = 0; i < length && lb < bsf; i++) {
+                int p = order[i];
+                double xi = (x[p] - mu) / sigma;
+                double d = 0.0;
+                if (xi > upper[p]) {
+                    d = (xi - upper[p]) * (xi - upper[p]);
+                } else if (xi < lower[p]) {
+                    d = (xi - lower[p]) * (xi - lower[p]);
+                }
+                cb1[p] = d;
+                lb += d;
+            }
+            return lb;
+        }
+
+        /**
+         * DTW with early abandoning between the query and the normalized
+         * candidate. Returns a lower bound no less than bsf if abandoned.
+         */
+        double dtw(double bsf) {
+            int m = length;
+            int r = radius;
+            int width = 2 * r + 1;
+            Arrays.fill(prev, Double.POSITIVE_INFINITY);
+
+            for (int i = 0; i < m; i++) {
+                Arrays.fill(cost, Double.POSITIVE_INFINITY);
+                double rowMin = Double.POSITIVE_INFINITY;
+                // The column j is at the position k = j - i + r in the band.
+                for (int j = Math.max(0, i - r), end = Math.min(m - 1, i + r); j <= end; j++) {
+                    int k = j - i + r;
+                    double d = dist(q[i], c[j]);
+                    if (i == 0 && j == 0) {
+                        cost[k] = d;
+                    } else {
+                        double left = k > 0 ? cost[k - 1] : Double.POSITIVE_INFINITY;
+                        double up = k + 1 < width ? prev[k + 1] : Double.POSITIVE_INFINITY;
+                        double diagonal = prev[k];
+                        cost[k] = d + min(left, up, diagonal);
+                    }
+                    rowMin = Math.min(rowMin, cost[k]);
+                }
+
+                // The remaining rows cost at least the lower bound of points
+                // beyond the band of current row.
+                if (i + r < m - 1 && rowMin + cb[i + r + 1] >= bsf) {
+                    return rowMin + cb[i + r + 1];
+                }
+                if (rowMin >= bsf) {
+                    return rowMin;
+                }
+
+                double[] swap = prev;
+                prev = cost;
+                cost = swap;
+            }
+
+            return prev[r];
+        }
+
+        /**
+         * Computes the envelope of Sakoe-Chiba band by Lemire's streaming
+         * min-max filter in linear time.
+         */
+        void envelope(double[] t, double[] u, double[] l) {
+            int m = length;
+            int r = radius;
+            int uh = 0, ut = 0, lh = 0, lt = 0;
+            int[] du = upperQueue;
+            int[] dl = lowerQueue;
+            // The window of position p is [p - r, p + r].
+            for (int i = 0; i < m + r; i++) {
+                if (i < m) {
+                    while (ut > uh && t[du[ut - 1]] <= t[i]) ut--;
+                    du[ut++] = i;
+                    while (lt > lh && t[dl[lt - 1]] >= t[i]) lt--;
+                    dl[lt++] = i;
+                }
+
+                int p = i - r;
+                if (p >= 0) {
+                    while (du[uh] < p - r) uh++;
+                    while (dl[lh] < p - r) lh++;
+                    u[p] = t[du[uh]];
+                    l[p] = t[dl[lh]];
+                }
+            }
+        }
+    }
+
+    /** Returns the squared difference. */
+    private static double dist(double x, double y) {
+        return (x - y) * (x - y);
+    }
+
+    /** Returns the minimum of three values. */
+    private static double min(double a, double b, double c) {
+        return Math.min(a, Math.min(b, c));
+    }
+}
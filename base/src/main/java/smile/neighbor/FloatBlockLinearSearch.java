@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2010-2021 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.neighbor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.stream.IntStream;
+import smile.math.MathEx;
+import smile.math.blas.BLAS;
+import smile.math.blas.Layout;
+import smile.math.blas.Transpose;
+
+/**
+ * Brute force k-nearest neighbor search of single precision dense vectors
+ * in Euclidean distance with blocked distance kernels. This is the single
+ * precision version of {@link BlockLinearSearch}, which halves the memory
+ * footprint and doubles the throughput of GEMM. The squared distances are
+ * accumulated in single precision, which is adequate for ranking neighbors
+ * of typical embedding vectors. The returned distances are in double.
+ * <p>
+ * As other search data structures, the query object (reference equality)
+ * is excluded from the neighborhood.
+ *
+ * @see BlockLinearSearch
+ *
+ * @author Haifeng Li
+ */
+public class FloatBlockLinearSearch implements KNNSearch<float[], float[]>, Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+    /**
+     * The default number of references per block.
+     */
+    static final int BLOCK_SIZE = BlockLinearSearch.BLOCK_SIZE;
+    /**
+     * The number of queries per block.
+     */
+    static final int QUERY_BLOCK_SIZE = BlockLinearSearch.QUERY_BLOCK_SIZE;
+
+    /**
+     * The data objects.
+     */
+    private final float[][] data;
+    /**
+     * The dimension of data.
+     */
+    private final int d;
+    /**
+     * The number of references per block.
+     */
+    private final int blockSize;
+    /**
+     * The blocks of references in row major.
+     */
+    private final float[][] blocks;
+    /**
+     * The squared norms of references by blocks.
+     */
+    private final float[][] norms;
+
+    /**
+     * Constructor.
+     * @param data the data objects.
+     */
+    public FloatBlockLinearSearch(float[][] data) {
+        this(data, BLOCK_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * @param data the data objects.
+     * @param blockSize the number of references per block.
+     */
+    public FloatBlockLinearSearch(float[][] data, int blockSize) {
+        if (data.length == 0) {
+            throw new IllegalArgumentException("Empty data");
+        }
+
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+
+        this.data = data;
+        this.d = data[0].length;
+        this.blockSize = blockSize;
+
+        int n = data.length;
+        int nb = (n + blockSize - 1) / blockSize;
+        this.blocks = new float[nb][];
+        this.norms = new float[nb][];
+        IntStream.range(0, nb).parallel().forEach(b -> {
+            int from = b * blockSize;
+            int size = Math.min(n, from + blockSize) - from;
+            float[] block = new float[size * d];
+            float[] norm = new float[size];
+            for (int i = 0; i < size; i++) {
+                float[] x = data[from + i];
+                if (x.length != d) {
+                    throw new IllegalArgumentException(String.format("Invalid dimension of data[%d]: %d != %d", from + i, x.length, d));
+                }
+                System.arraycopy(x, 0, block, i * d, d);
+                norm[i] = MathEx.dot(x, x);
+            }
+            blocks[b] = block;
+            norms[b] = norm;
+        });
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Float Block Linear Search (%d x %d)", data.length, d);
+    }
+
+    /**
+     * Returns the number of data objects.
+     * @return the number of data objects.
+     */
+    public int size() {
+        return data.length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Neighbor<float[], float[]>[] search(float[] q, int k) {
+        double[][] distance = new double[1][];
+        int[] index = search(new float[][]{q}, k, distance)[0];
+        Neighbor<float[], float[]>[] neighbors = new Neighbor[k];
+        for (int i = 0; i < k; i++) {
+            if (index[i] >= 0) {
+                neighbors[i] = Neighbor.of(data[index[i]], index[i], distance[0][i]);
+            }
+        }
+        return neighbors;
+    }
+
+    @Override
+    public int[][] search(float[][] q, int k, double[][] distance) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Invalid k: " + k);
+        }
+
+        if (k > data.length) {
+            throw new IllegalArgumentException("Neighbor array length is larger than the data size");
+        }
+
+        int m = q.length;
+        int[][] index = new int[m][];
+        int nb = (m + QUERY_BLOCK_SIZE - 1) / QUERY_BLOCK_SIZE;
+        IntStream.range(0, nb).parallel().forEach(b -> {
+            int from = b * QUERY_BLOCK_SIZE;
+            int to = Math.min(m, from + QUERY_BLOCK_SIZE);
+            search(q, from, to, k, index, distance);
+        });
+        return index;
+    }
+
+    /**
+     * Searches a block of queries against all references.
+     * @param q the queries.
+     * @param from the index of first query in the block, inclusive.
+     * @param to the index of last query in the block, exclusive.
+     * @param k the number of nearest neighbors.
+     * @param index the output of neighbor indices.
+     * @param distance the optional output of neighbor distances.
+     */
+    private void search(float[][] q, int from, int to, int k, int[][] index, double[][] distance) {
+        int m = to - from;
+        float[] A = new float[m * d];
+        float[] norm = new float[m];
+        TopK[] heap = new TopK[m];
+        for (int i = 0; i < m; i++) {
+            float[] x = q[from + i];
+            if (x.length != d) {
+                throw new IllegalArgumentException(String.format("Invalid dimension of query[%d]: %d != %d", from + i, x.length, d));
+            }
+            System.arraycopy(x, 0, A, i * d, d);
+            norm[i] = MathEx.dot(x, x);
+            heap[i] = new TopK(k);
+        }
+
+        float[] C = new float[m * blockSize];
+        for (int b = 0; b < blocks.length; b++) {
+            float[] B = blocks[b];
+            float[] bnorm = norms[b];
+            int n = bnorm.length;
+            int offset = b * blockSize;
+            // C = -2 * A * B'
+            BLAS.engine.gemm(Layout.ROW_MAJOR, Transpose.NO_TRANSPOSE, Transpose.TRANSPOSE, m, n, d, -2.0f, A, d, B, d, 0.0f, C, n);
+
+            for (int i = 0; i < m; i++) {
+                TopK top = heap[i];
+                float[] x = q[from + i];
+                float qnorm = norm[i];
+                int row = i * n;
+                for (int j = 0; j < n; j++) {
+                    float dist = qnorm + bnorm[j] + C[row + j];
+                    if (dist < top.peek() && x != data[offset + j]) {
+                        top.add(dist, offset + j);
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < m; i++) {
+            TopK top = heap[i];
+            top.sort();
+            index[from + i] = top.index;
+            if (distance != null) {
+                double[] dist = top.distance;
+                for (int j = 0; j < k; j++) {
+                    dist[j] = Math.sqrt(Math.max(0.0, dist[j]));
+                }
+                distance[from + i] = dist;
+            }
+        }
+    }
+}
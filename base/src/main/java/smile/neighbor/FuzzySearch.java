@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.neighbor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import smile.math.distance.EditPattern;
+
+/**
+ * Fuzzy search of strings in a dictionary by edit distance. The query is
+ * compiled once into a bit-parallel pattern, which is then matched against
+ * the dictionary words with the bounded edit distance. Because the edit
+ * distance is no less than the difference of string lengths, the words
+ * are grouped by length and only the groups within the search radius are
+ * scanned. The k-nearest neighbor search visits the groups in ascending
+ * order of length difference and tightens the bound with the k-th best
+ * distance so far.
+ * <p>
+ * A batch of queries is searched in parallel. Compared to {@link BKTree}
+ * with {@link smile.math.distance.EditDistance}, it takes no memory
+ * allocation per comparison and works well for the small search radius
+ * of typical spell checking and entity matching.
+ * <p>
+ * As other search data structures, the query object (reference equality)
+ * is excluded from the neighborhood.
+ *
+ * @param <E> the type of associated objects.
+ *
+ * @author Haifeng Li
+ */
+public class FuzzySearch<E> implements RNNSearch<String, E>, KNNSearch<String, E>, Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The dictionary words.
+     */
+    private final String[] keys;
+    /**
+     * The data objects.
+     */
+    private final E[] data;
+    /**
+     * True if transposition is allowed.
+     */
+    private final boolean damerau;
+    /**
+     * The word indices sorted by length.
+     */
+    private final int[] order;
+    /**
+     * The start of words of length l in the order is offset[l].
+     */
+    private final int[] offset;
+
+    /**
+     * Constructor.
+     * @param keys the dictionary words.
+     * @param data the data objects.
+     * @param damerau if true, search by Damerau-Levenshtein distance
+     *                instead of plain Levenshtein distance.
+     */
+    public FuzzySearch(String[] keys, E[] data, boolean damerau) {
+        if (keys.length != data.length) {
+            throw new IllegalArgumentException("Different size of keys and data objects");
+        }
+
+        this.keys = keys;
+        this.data = data;
+        this.damerau = damerau;
+
+        // Counting sort by length.
+        int maxLength = 0;
+        for (String key : keys) {
+            maxLength = Math.max(maxLength, key.length());
+        }
+
+        offset = new int[maxLength + 2];
+        for (String key : keys) {
+            offset[key.length() + 1]++;
+        }
+        for (int l = 1; l < offset.length; l++) {
+            offset[l] += offset[l - 1];
+        }
+
+        order = new int[keys.length];
+        int[] pos = offset.clone();
+        for (int i = 0; i < keys.length; i++) {
+            order[pos[keys[i].length()]++] = i;
+        }
+    }
+
+    /**
+     * Returns the fuzzy search of Levenshtein distance.
+     * @param data the dictionary words, which are also used as the data objects.
+     * @return the fuzzy search.
+     */
+    public static FuzzySearch<String> of(String[] data) {
+        return of(data, false);
+    }
+
+    /**
+     * Returns the fuzzy search.
+     * @param data the dictionary words, which are also used as the data objects.
+     * @param damerau if true, search by Damerau-Levenshtein distance
+     *                instead of plain Levenshtein distance.
+     * @return the fuzzy search.
+     */
+    public static FuzzySearch<String> of(String[] data, boolean damerau) {
+        return new FuzzySearch<>(data, data, damerau);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Fuzzy Search (%s, %d words)", damerau ? "Damerau-Levenshtein" : "Levenshtein", keys.length);
+    }
+
+    /**
+     * Returns the number of dictionary words.
+     * @return the number of dictionary words.
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public void search(String q, double radius, List<Neighbor<String, E>> neighbors) {
+        if (radius < 0 || radius != (int) radius) {
+            throw new IllegalArgumentException("The parameter radius has to be a non-negative integer: " + radius);
+        }
+
+        search(q, (int) radius, neighbors);
+    }
+
+    /**
+     * Search the neighbors in the given radius of query object, i.e.
+     * {@code d(q, v) <= radius}.
+     *
+     * @param q the query object.
+     * @param radius the radius of search range from target.
+     * @param neighbors the list to store found neighbors in the given range on output.
+     */
+    public void search(String q, int radius, List<Neighbor<String, E>> neighbors) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("Invalid radius: " + radius);
+        }
+
+        EditPattern pattern = new EditPattern(q, damerau);
+        int length = q.length();
+        int from = offset[Math.max(0, Math.min(offset.length - 1, length - radius))];
+        int to = offset[(int) Math.min(offset.length - 1, (long) length + radius + 1)];
+        for (int i = from; i < to; i++) {
+            int index = order[i];
+            String key = keys[index];
+            if (key == q) continue;
+
+            int d = pattern.d(key, radius);
+            if (d <= radius) {
+                neighbors.add(new Neighbor<>(key, data[index], index, d));
+            }
+        }
+    }
+
+    /**
+     * Search the neighbors in the given radius of a batch of queries
+     * in parallel.
+     *
+     * @param q the query objects.
+     * @param radius the radius of search range from target.
+     * @return the neighbors of each query in the given range.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Neighbor<String, E>>[] search(String[] q, int radius) {
+        List<Neighbor<String, E>>[] neighbors = new List[q.length];
+        IntStream.range(0, q.length).parallel().forEach(i -> {
+            List<Neighbor<String, E>> list = new ArrayList<>();
+            search(q[i], radius, list);
+            neighbors[i] = list;
+        });
+        return neighbors;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Neighbor<String, E>[] search(String q, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Invalid k: " + k);
+        }
+
+        if (k > keys.length) {
+            throw new IllegalArgumentException("Neighbor array length is larger than the data size");
+        }
+
+        TopK heap = new TopK(k);
+        knn(q, heap);
+
+        Neighbor<String, E>[] neighbors = new Neighbor[k];
+        for (int i = 0; i < k; i++) {
+            int index = heap.index[i];
+            if (index >= 0) {
+                neighbors[i] = new Neighbor<>(keys[index], data[index], index, heap.distance[i]);
+            }
+        }
+        return neighbors;
+    }
+
+    @Override
+    public int[][] search(String[] q, int k, double[][] distance) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Invalid k: " + k);
+        }
+
+        if (k > keys.length) {
+            throw new IllegalArgumentException("Neighbor array length is larger than the data size");
+        }
+
+        int[][] index = new int[q.length][];
+        IntStream.range(0, q.length).parallel().forEach(i -> {
+            TopK heap = new TopK(k);
+            knn(q[i], heap);
+            index[i] = heap.index;
+            if (distance != null) {
+                distance[i] = heap.distance;
+            }
+        });
+        return index;
+    }
+
+    /**
+     * Searches the k-nearest neighbors by visiting the groups of words
+     * in ascending order of length difference.
+     * @param q the query.
+     * @param heap the k nearest candidates, sorted on output.
+     */
+    private void knn(String q, TopK heap) {
+        EditPattern pattern = new EditPattern(q, damerau);
+        int length = q.length();
+        int maxLength = offset.length - 2;
+        for (int delta = 0; delta < heap.peek(); delta++) {
+            int shorter = length - delta;
+            int longer = length + delta;
+            if (shorter < 0 && longer > maxLength) break;
+
+            if (shorter >= 0 && shorter <= maxLength) {
+                scan(q, pattern, shorter, heap);
+            }
+
+            if (delta > 0 && longer <= maxLength) {
+                scan(q, pattern, longer, heap);
+            }
+        }
+        heap.sort();
+    }
+
+    /**
+     * Matches the words of given length against the pattern.
+     * @param q the query.
+     * @param pattern the compiled query.
+     * @param length the length of words.
+     * @param heap the k nearest candidates.
+     */
+    private void scan(String q, EditPattern pattern, int length, TopK heap) {
+        for (int i = offset[length]; i < offset[length + 1]; i++) {
+            int index = order[i];
+            String key = keys[index];
+            if (key == q) continue;
+
+            double bound = heap.peek();
+            int max = bound == Double.POSITIVE_INFINITY ? Integer.MAX_VALUE : (int) bound - 1;
+            if (max < 0) return;
+
+            int d = pattern.d(key, max);
+            if (d <= max) {
+                heap.add(d, index);
+            }
+        }
+    }
+}
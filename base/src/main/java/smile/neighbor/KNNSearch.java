@@ -52,4 +52,38 @@ public interface KNNSearch<K, V> {
      * @return the k nearest neighbors
      */
     Neighbor<K, V>[] search(K q, int k);
+
+    /**
+     * Retrieves the k nearest neighbors to a batch of query keys. The default
+     * implementation searches the queries one by one. Implementations
+     * for dense vectors may override it with blocked distance kernels.
+     *
+     * @param q the query keys.
+     * @param k the number of nearest neighbors to search for.
+     * @param distance the optional output of distances to the neighbors,
+     *                 which is ignored if null. Otherwise, its i-th row
+     *                 will be set to the distances of i-th query.
+     * @return the indices of k nearest neighbors of each query in
+     *         ascending order of distance. The index is -1 if fewer
+     *         than k neighbors are found.
+     */
+    default int[][] search(K[] q, int k, double[][] distance) {
+        int[][] index = new int[q.length][];
+        for (int i = 0; i < q.length; i++) {
+            Neighbor<K, V>[] neighbors = search(q[i], k);
+            int[] idx = new int[neighbors.length];
+            double[] dist = new double[neighbors.length];
+            for (int j = 0; j < neighbors.length; j++) {
+                Neighbor<K, V> neighbor = neighbors[j];
+                idx[j] = neighbor == null ? -1 : neighbor.index;
+                dist[j] = neighbor == null ? Double.POSITIVE_INFINITY : neighbor.distance;
+            }
+
+            index[i] = idx;
+            if (distance != null) {
+                distance[i] = dist;
+            }
+        }
+        return index;
+    }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2010-2021 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.neighbor;
+
+import java.util.Arrays;
+
+/**
+ * A bounded max-heap of (distance, index) pairs in primitive arrays that
+ * tracks the k nearest candidates seen so far. It is the allocation free
+ * counterpart of {@code HeapSelect<NeighborBuilder>} used by the block
+ * search kernels.
+ *
+ * @author Haifeng Li
+ */
+final class TopK {
+    /** The distances of candidates. The root is the largest. */
+    final double[] distance;
+    /** The indices of candidates. */
+    final int[] index;
+
+    /**
+     * Constructor.
+     * @param k the number of nearest neighbors to track.
+     */
+    TopK(int k) {
+        distance = new double[k];
+        index = new int[k];
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        Arrays.fill(index, -1);
+    }
+
+    /**
+     * Returns the largest distance in the heap, i.e. the threshold
+     * for a new candidate to enter the heap.
+     * @return the largest distance in the heap.
+     */
+    double peek() {
+        return distance[0];
+    }
+
+    /**
+     * Replaces the root with a new candidate. The caller should check
+     * that the distance is smaller than {@link #peek()}.
+     * @param d the distance of candidate.
+     * @param i the index of candidate.
+     */
+    void add(double d, int i) {
+        distance[0] = d;
+        index[0] = i;
+        siftDown(0, distance.length);
+    }
+
+    /** Restores the heap order from the node i in the first n elements. */
+    private void siftDown(int i, int n) {
+        double d = distance[i];
+        int id = index[i];
+        int child;
+        while ((child = 2 * i + 1) < n) {
+            if (child + 1 < n && greater(child + 1, child)) {
+                child++;
+            }
+
+            if (distance[child] < d || (distance[child] == d && index[child] <= id)) {
+                break;
+            }
+
+            distance[i] = distance[child];
+            index[i] = index[child];
+            i = child;
+        }
+        distance[i] = d;
+        index[i] = id;
+    }
+
+    /** Returns true if the element i is ordered after the element j. */
+    private boolean greater(int i, int j) {
+        return distance[i] > distance[j] || (distance[i] == distance[j] && index[i] > index[j]);
+    }
+
+    /**
+     * Sorts the candidates in ascending order of distance by heap sort.
+     * Ties are broken by the index. The heap is destroyed afterwards.
+     */
+    void sort() {
+        for (int n = distance.length - 1; n > 0; n--) {
+            double d = distance[0];
+            distance[0] = distance[n];
+            distance[n] = d;
+            int i = index[0];
+            index[0] = index[n];
+            index[n] = i;
+            siftDown(0, n);
+        }
+    }
+}
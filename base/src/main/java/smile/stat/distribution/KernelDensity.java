@@ -19,6 +19,7 @@ package smile.stat.distribution;
 
 import java.io.Serial;
 import java.util.Arrays;
+import java.util.stream.IntStream;
 import smile.math.MathEx;
 
 /**
@@ -27,7 +28,16 @@ import smile.math.MathEx;
  * is a fundamental data smoothing problem where inferences about the population
  * are made, based on a finite data sample. It is also known as the
  * Parzen window method.
- * 
+ * <p>
+ * The density at a point sums the Gaussian kernel over the samples within
+ * 5 bandwidths, which takes linear time per query. For evaluating the
+ * density over many points, e.g. for plotting, the method {@code grid}
+ * bins the samples linearly on an equally spaced grid and convolves the
+ * bin counts with the kernel by FFT, which takes {@code O(n + m log m)}
+ * time for m grid points.
+ *
+ * @see MultivariateKernelDensity
+ *
  * @author Haifeng Li
  */
 public class KernelDensity implements Distribution {
@@ -167,6 +177,157 @@ public class KernelDensity implements Distribution {
         return p / this.x.length;
     }
 
+    /**
+     * Returns the density at a batch of points, which are evaluated in parallel.
+     * @param x the points.
+     * @return the density at the points.
+     */
+    public double[] p(double[] x) {
+        return Arrays.stream(x).parallel().map(this::p).toArray();
+    }
+
+    /**
+     * Returns the density on an equally spaced grid. The samples are
+     * linearly binned on the grid, which is extended by 5 bandwidths on
+     * both sides. The bin counts are then convolved with the kernel by
+     * FFT. The error of linear binning is {@code O(delta<sup>2</sup>)}
+     * where delta is the grid spacing, which is negligible when the
+     * spacing is a small fraction of the bandwidth.
+     *
+     * @param from the lower bound of grid.
+     * @param to the upper bound of grid.
+     * @param m the number of grid points.
+     * @return the density at the grid points {@code from + i * (to - from) / (m - 1)}.
+     */
+    public double[] grid(double from, double to, int m) {
+        if (m < 2) {
+            throw new IllegalArgumentException("Invalid number of grid points: " + m);
+        }
+
+        if (from >= to) {
+            throw new IllegalArgumentException(String.format("Invalid grid range: [%f, %f]", from, to));
+        }
+
+        double delta = (to - from) / (m - 1);
+        // The half width of kernel in the number of grid points,
+        // which is also the padding on both sides of grid.
+        int width = (int) Math.ceil(5 * h / delta);
+        int size = m + 2 * width;
+        double start = from - width * delta;
+
+        // Linear binning in parallel blocks.
+        int n = this.x.length;
+        int blockSize = Math.max(4096, (n + 63) / 64);
+        int blocks = (n + blockSize - 1) / blockSize;
+        int fftSize = Integer.highestOneBit(size) == size ? size : Integer.highestOneBit(size) << 1;
+        double[] count = IntStream.range(0, blocks).parallel().mapToObj(b -> {
+            double[] c = new double[fftSize];
+            for (int i = b * blockSize, end = Math.min(n, i + blockSize); i < end; i++) {
+                double t = (this.x[i] - start) / delta;
+                if (t < 0 || t > size - 1) continue;
+
+                int j = (int) t;
+                double w = t - j;
+                c[j] += 1 - w;
+                if (j + 1 < size) c[j + 1] += w;
+            }
+            return c;
+        }).reduce((a, b) -> {
+            for (int i = 0; i < a.length; i++) a[i] += b[i];
+            return a;
+        }).orElseThrow();
+
+        // The kernel is wrapped around for circular convolution. As the
+        // FFT size is at least the size of extended grid, the wrapped
+        // terms never reach the grid points in [from, to].
+        double[] kernel = new double[fftSize];
+        for (int i = 0; i <= width; i++) {
+            double k = gaussian.p(i * delta);
+            kernel[i] = k;
+            if (i > 0) kernel[fftSize - i] = k;
+        }
+
+        double[] countIm = new double[fftSize];
+        double[] kernelIm = new double[fftSize];
+        fft(count, countIm, false);
+        fft(kernel, kernelIm, false);
+        for (int i = 0; i < fftSize; i++) {
+            double re = count[i] * kernel[i] - countIm[i] * kernelIm[i];
+            double im = count[i] * kernelIm[i] + countIm[i] * kernel[i];
+            count[i] = re;
+            countIm[i] = im;
+        }
+        fft(count, countIm, true);
+
+        double[] p = new double[m];
+        for (int i = 0; i < m; i++) {
+            // Clips the tiny negative values due to round-off errors.
+            p[i] = Math.max(0.0, count[width + i] / n);
+        }
+        return p;
+    }
+
+    /**
+     * In-place iterative radix-2 fast Fourier transform.
+     * @param re the real part, of which the length is a power of 2.
+     * @param im the imaginary part.
+     * @param inverse true for the inverse transform.
+     */
+    private static void fft(double[] re, double[] im, boolean inverse) {
+        int n = re.length;
+        // Bit reversal permutation.
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+
+            if (i < j) {
+                double t = re[i]; re[i] = re[j]; re[j] = t;
+                t = im[i]; im[i] = im[j]; im[j] = t;
+            }
+        }
+
+        // The twiddle factors are tabulated once to avoid
+        // the accumulation of round-off errors.
+        int half = n / 2;
+        double[] cos = new double[half];
+        double[] sin = new double[half];
+        double sign = inverse ? 1 : -1;
+        for (int i = 0; i < half; i++) {
+            double angle = 2 * Math.PI * i / n;
+            cos[i] = Math.cos(angle);
+            sin[i] = sign * Math.sin(angle);
+        }
+
+        for (int len = 2; len <= n; len <<= 1) {
+            int step = n / len;
+            int mid = len / 2;
+            for (int i = 0; i < n; i += len) {
+                for (int j = 0; j < mid; j++) {
+                    int a = i + j;
+                    int b = a + mid;
+                    double wr = cos[j * step];
+                    double wi = sin[j * step];
+                    double vr = re[b] * wr - im[b] * wi;
+                    double vi = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - vr;
+                    im[b] = im[a] - vi;
+                    re[a] += vr;
+                    im[a] += vi;
+                }
+            }
+        }
+
+        if (inverse) {
+            for (int i = 0; i < n; i++) {
+                re[i] /= n;
+                im[i] /= n;
+            }
+        }
+    }
+
     @Override
     public double logp(double x) {
         return Math.log(p(x));
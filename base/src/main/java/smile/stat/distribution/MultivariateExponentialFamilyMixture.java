@@ -17,13 +17,15 @@
 
 package smile.stat.distribution;
 
-import smile.math.MathEx;
-
 import java.io.Serial;
+import java.util.stream.IntStream;
+import smile.math.MathEx;
 
 /**
  * The finite mixture of distributions from multivariate exponential family.
  * The EM algorithm can be used to learn the mixture model from data.
+ * The expectation step is parallelized over blocks of samples and the
+ * maximization step over components.
  *
  * @author Haifeng Li
  */
@@ -101,32 +103,102 @@ public class MultivariateExponentialFamilyMixture extends MultivariateMixture {
         double[][] posteriori = new double[k][n];
 
         // Log Likelihood
-        double L = 0.0;
+        double L = estep(x, components, gamma, posteriori);
 
         // EM loop until convergence
         double diff = Double.MAX_VALUE;
         for (int iter = 1; iter <= maxIter && diff > tol; iter++) {
-            // Expectation step
+            // Maximization step
+            IntStream.range(0, k).parallel().forEach(i ->
+                components[i] = ((MultivariateExponentialFamily) components[i].distribution).M(x, posteriori[i])
+            );
+
+            double Z = 0.0;
             for (int i = 0; i < k; i++) {
-                Component c = components[i];
+                Z += components[i].priori;
+            }
 
-                for (int j = 0; j < n; j++) {
-                    posteriori[i][j] = c.priori * c.distribution.p(x[j]);
-                }
+            for (int i = 0; i < k; i++) {
+                components[i] = new Component(components[i].priori / Z, components[i].distribution);
+            }
+
+            // Expectation step, which also evaluates the log-likelihood
+            // of the new parameters for the convergence test.
+            double loglikelihood = estep(x, components, gamma, posteriori);
+
+            diff = loglikelihood - L;
+            L = loglikelihood;
+
+            if (iter % 10 == 0) {
+                logger.info(String.format("The log-likelihood after %d iterations: %.4f", iter, L));
             }
+        }
 
-            // Normalize posteriori probability.
-            for (int j = 0; j < n; j++) {
-                double p = 0.0;
+        return new MultivariateExponentialFamilyMixture(L, x.length, components);
+    }
 
+    /**
+     * The expectation step of EM algorithm. The samples are processed in
+     * parallel blocks. The posteriori probabilities are computed in log
+     * space with the log-sum-exp trick, which avoids underflow when the
+     * densities are tiny in high dimensional space.
+     *
+     * @param x the training data.
+     * @param components the mixture components.
+     * @param gamma the regularization parameter.
+     * @param posteriori the output posteriori probabilities of each component.
+     * @return the log-likelihood of data.
+     */
+    static double estep(double[][] x, Component[] components, double gamma, double[][] posteriori) {
+        int n = x.length;
+        int d = x[0].length;
+        int k = components.length;
+
+        double[] logPriori = new double[k];
+        MultivariateGaussianDistribution[] gaussian = new MultivariateGaussianDistribution[k];
+        for (int i = 0; i < k; i++) {
+            logPriori[i] = Math.log(components[i].priori);
+            if (components[i].distribution instanceof MultivariateGaussianDistribution g) {
+                gaussian[i] = g;
+            }
+        }
+
+        int blockSize = blockSize(n);
+        int blocks = (n + blockSize - 1) / blockSize;
+        return IntStream.range(0, blocks).parallel().mapToDouble(b -> {
+            double[] work = new double[d];
+            double loglikelihood = 0.0;
+            for (int j = b * blockSize, end = Math.min(n, j + blockSize); j < end; j++) {
+                double[] xj = x[j];
+                double max = Double.NEGATIVE_INFINITY;
                 for (int i = 0; i < k; i++) {
-                    p += posteriori[i][j];
+                    double logp = gaussian[i] != null ? gaussian[i].logp(xj, work) : components[i].distribution.logp(xj);
+                    double p = logPriori[i] + logp;
+                    posteriori[i][j] = p;
+                    if (p > max) max = p;
                 }
 
+                // The sample has zero probability in all components.
+                if (max == Double.NEGATIVE_INFINITY || Double.isNaN(max)) {
+                    for (int i = 0; i < k; i++) {
+                        posteriori[i][j] = 0.0;
+                    }
+                    continue;
+                }
+
+                double sum = 0.0;
                 for (int i = 0; i < k; i++) {
-                    posteriori[i][j] /= p;
+                    double p = Math.exp(posteriori[i][j] - max);
+                    posteriori[i][j] = p;
+                    sum += p;
                 }
 
+                for (int i = 0; i < k; i++) {
+                    posteriori[i][j] /= sum;
+                }
+
+                loglikelihood += max + Math.log(sum);
+
                 // Adjust posterior probabilites based on Regularized EM algorithm.
                 if (gamma > 0) {
                     for (int i = 0; i < k; i++) {
@@ -137,36 +209,7 @@ public class MultivariateExponentialFamilyMixture extends MultivariateMixture {
                     }
                 }
             }
-
-            // Maximization step
-            double Z = 0.0;
-            for (int i = 0; i < k; i++) {
-                components[i] = ((MultivariateExponentialFamily) components[i].distribution).M(x, posteriori[i]);
-                Z += components[i].priori;
-            }
-
-            for (int i = 0; i < k; i++) {
-                components[i] = new Component(components[i].priori / Z, components[i].distribution);
-            }
-
-            double loglikelihood = 0.0;
-            for (double[] xi : x) {
-                double p = 0.0;
-                for (Component c : components) {
-                    p += c.priori * c.distribution.p(xi);
-                }
-                if (p > 0) loglikelihood += Math.log(p);
-            }
-
-
-            diff = loglikelihood - L;
-            L = loglikelihood;
-
-            if (iter % 10 == 0) {
-                logger.info(String.format("The log-likelihood after %d iterations: %.4f", iter, L));
-            }
-        }
-
-        return new MultivariateExponentialFamilyMixture(L, x.length, components);
+            return loglikelihood;
+        }).sum();
     }
 }
@@ -19,6 +19,7 @@ package smile.stat.distribution;
 
 import java.io.Serial;
 import java.util.Arrays;
+import java.util.stream.IntStream;
 import smile.math.MathEx;
 import smile.math.blas.UPLO;
 import smile.math.matrix.Matrix;
@@ -45,8 +46,6 @@ public class MultivariateGaussianDistribution implements MultivariateDistributio
 
     /** The dimension. */
     private int dim;
-    /** The inverse of covariance matrix. */
-    private Matrix sigmaInv;
     /** The Cholesky decomposition of covariance matrix. */
     private Matrix sigmaL;
     /** The determinant of covariance matrix. */
@@ -169,7 +168,6 @@ public class MultivariateGaussianDistribution implements MultivariateDistributio
         dim = mu.length;
         sigma.uplo(UPLO.LOWER);
         Matrix.Cholesky cholesky = sigma.cholesky();
-        sigmaInv = cholesky.inverse();
         sigmaDet = cholesky.det();
         sigmaL = cholesky.lu;
         pdfConstant = (dim * Math.log(2 * Math.PI) + Math.log(sigmaDet)) / 2.0;
@@ -209,10 +207,40 @@ public class MultivariateGaussianDistribution implements MultivariateDistributio
             throw new IllegalArgumentException("Sample has different dimension.");
         }
 
-        double[] v = x.clone();
-        MathEx.sub(v, mu);
-        double result = sigmaInv.xAx(v) / -2.0;
-        return result - pdfConstant;
+        return logp(x, new double[dim]);
+    }
+
+    /**
+     * Returns the log of density with a workspace, which avoids the
+     * allocation of temporary arrays in the EM algorithm. The squared
+     * Mahalanobis distance is computed by the forward substitution of
+     * the Cholesky factor.
+     *
+     * @param x a real vector.
+     * @param work the workspace of length {@code dim}.
+     * @return the log of density.
+     */
+    double logp(double[] x, double[] work) {
+        double q = 0.0;
+        if (diagonal) {
+            for (int i = 0; i < dim; i++) {
+                double z = (x[i] - mu[i]) / sigmaL.get(i, i);
+                q += z * z;
+            }
+        } else {
+            // Solves L z = x - mu in place.
+            for (int i = 0; i < dim; i++) {
+                double z = x[i] - mu[i];
+                for (int j = 0; j < i; j++) {
+                    z -= sigmaL.get(i, j) * work[j];
+                }
+                z /= sigmaL.get(i, i);
+                work[i] = z;
+                q += z * z;
+            }
+        }
+
+        return -0.5 * q - pdfConstant;
     }
 
     @Override
@@ -328,31 +356,48 @@ public class MultivariateGaussianDistribution implements MultivariateDistributio
     public MultivariateMixture.Component M(double[][] data, double[] posteriori) {
         int n = data.length;
         int d = data[0].length;
+        int blockSize = MultivariateMixture.blockSize(n);
+        int blocks = (n + blockSize - 1) / blockSize;
 
-        double alpha = 0.0;
-        double[] mean = new double[d];
+        // The weighted sums are accumulated per block in parallel.
+        // The last element is the sum of weights.
+        double[] sum = IntStream.range(0, blocks).parallel().mapToObj(b -> {
+            double[] s = new double[d + 1];
+            for (int k = b * blockSize, end = Math.min(n, k + blockSize); k < end; k++) {
+                double w = posteriori[k];
+                if (w == 0.0) continue;
 
-        for (int k = 0; k < n; k++) {
-            alpha += posteriori[k];
-            double[] x = data[k];
-            for (int i = 0; i < d; i++) {
-                mean[i] += x[i] * posteriori[k];
+                double[] x = data[k];
+                for (int i = 0; i < d; i++) {
+                    s[i] += w * x[i];
+                }
+                s[d] += w;
             }
-        }
+            return s;
+        }).reduce(MultivariateMixture::merge).orElseThrow();
 
+        double alpha = sum[d];
+        double[] mean = Arrays.copyOf(sum, d);
         for (int i = 0; i < d; i++) {
             mean[i] /= alpha;
         }
 
         MultivariateGaussianDistribution gaussian;
         if (diagonal) {
-            double[] variance = new double[d];
-            for (int k = 0; k < n; k++) {
-                double[] x = data[k];
-                for (int i = 0; i < d; i++) {
-                    variance[i] += (x[i] - mean[i]) * (x[i] - mean[i]) * posteriori[k];
+            double[] variance = IntStream.range(0, blocks).parallel().mapToObj(b -> {
+                double[] s = new double[d];
+                for (int k = b * blockSize, end = Math.min(n, k + blockSize); k < end; k++) {
+                    double w = posteriori[k];
+                    if (w == 0.0) continue;
+
+                    double[] x = data[k];
+                    for (int i = 0; i < d; i++) {
+                        double xi = x[i] - mean[i];
+                        s[i] += w * xi * xi;
+                    }
                 }
-            }
+                return s;
+            }).reduce(MultivariateMixture::merge).orElseThrow();
 
             for (int i = 0; i < d; i++) {
                 variance[i] /= alpha;
@@ -360,19 +405,36 @@ public class MultivariateGaussianDistribution implements MultivariateDistributio
 
             gaussian = new MultivariateGaussianDistribution(mean, variance);
         } else {
-            Matrix cov = new Matrix(d, d);
-            for (int k = 0; k < n; k++) {
-                double[] x = data[k];
-                for (int i = 0; i < d; i++) {
-                    for (int j = 0; j < d; j++) {
-                        cov.add(i, j, (x[i] - mean[i]) * (x[j] - mean[j]) * posteriori[k]);
+            // Only the lower triangular part is accumulated.
+            double[] scatter = IntStream.range(0, blocks).parallel().mapToObj(b -> {
+                double[] s = new double[d * d];
+                double[] v = new double[d];
+                for (int k = b * blockSize, end = Math.min(n, k + blockSize); k < end; k++) {
+                    double w = posteriori[k];
+                    if (w == 0.0) continue;
+
+                    double[] x = data[k];
+                    for (int i = 0; i < d; i++) {
+                        v[i] = x[i] - mean[i];
+                    }
+
+                    for (int i = 0; i < d; i++) {
+                        double wi = w * v[i];
+                        int offset = i * d;
+                        for (int j = 0; j <= i; j++) {
+                            s[offset + j] += wi * v[j];
+                        }
                     }
                 }
-            }
+                return s;
+            }).reduce(MultivariateMixture::merge).orElseThrow();
 
+            Matrix cov = new Matrix(d, d);
             for (int i = 0; i < d; i++) {
-                for (int j = 0; j < d; j++) {
-                    cov.div(i, j, alpha);
+                for (int j = 0; j <= i; j++) {
+                    double cij = scatter[i * d + j] / alpha;
+                    cov.set(i, j, cij);
+                    cov.set(j, i, cij);
                 }
 
                 // make sure the covariance matrix is positive definite.
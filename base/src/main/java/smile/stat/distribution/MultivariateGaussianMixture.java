@@ -17,15 +17,23 @@
 
 package smile.stat.distribution;
 
+import java.io.Serial;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import smile.math.MathEx;
 import smile.math.matrix.Matrix;
 
-import java.io.Serial;
-
 /**
  * Finite multivariate Gaussian mixture. The EM algorithm is provided to learn
  * the mixture model from data. The BIC score is employed to estimate the number
  * of components.
+ * <p>
+ * Both the expectation and maximization steps process the data in parallel
+ * blocks. For the data that don't fit in memory, the stochastic EM algorithm
+ * learns the mixture from a stream of mini-batches, in which the running
+ * averages of sufficient statistics are updated with a decaying step size.
  *
  * @author Haifeng Li
  */
@@ -171,8 +179,10 @@ public class MultivariateGaussianMixture extends MultivariateExponentialFamilyMi
         double bic = mixture.bic(data);
         logger.info(String.format("The BIC of %s = %.4f", mixture, bic));
 
+        // Instead of refitting from scratch, each candidate is initialized
+        // by splitting the most dispersive component of previous model.
         for (int k = 2; k < data.length / 20; k++) {
-            MultivariateExponentialFamilyMixture model = fit(k, data);
+            MultivariateExponentialFamilyMixture model = fit(data, split(mixture.components));
             logger.info(String.format("The BIC of %s = %.4f", model, model.bic));
 
             if (model.bic <= bic) break;
@@ -184,6 +194,236 @@ public class MultivariateGaussianMixture extends MultivariateExponentialFamilyMi
         return mixture;
     }
 
+    /**
+     * Fits the Gaussian mixture model with the stochastic EM algorithm
+     * on a stream of mini-batches.
+     * @param k the number of components.
+     * @param batches the stream of mini-batches.
+     * @param diagonal true if the components have diagonal covariance matrix.
+     * @return the distribution.
+     */
+    public static MultivariateGaussianMixture fit(int k, Stream<double[][]> batches, boolean diagonal) {
+        return fit(k, batches, diagonal, 0.6);
+    }
+
+    /**
+     * Fits the Gaussian mixture model with the stochastic EM algorithm
+     * on a stream of mini-batches. The model is initialized by the batch
+     * EM algorithm on the first mini-batch. For each following mini-batch,
+     * the expectation step computes the sufficient statistics of batch,
+     * which are blended into the running averages with the step size
+     * {@code (t + 1)<sup>-decay</sup>}, where t is the number of mini-batches
+     * processed so far. The maximization step then updates the components
+     * in closed form from the running averages. Each mini-batch is visited
+     * only once so that the stream may be much larger than the memory.
+     * <p>
+     * The log-likelihood of returned model is accumulated over mini-batches,
+     * each of which is evaluated by the model before updated with it.
+     *
+     * @param k the number of components.
+     * @param batches the stream of mini-batches.
+     * @param diagonal true if the components have diagonal covariance matrix.
+     * @param decay the decay rate of step size in (0.5, 1]. The smaller
+     *              value gives the more weight to recent mini-batches.
+     * @return the distribution.
+     */
+    public static MultivariateGaussianMixture fit(int k, Stream<double[][]> batches, boolean diagonal, double decay) {
+        if (decay <= 0.5 || decay > 1.0) {
+            throw new IllegalArgumentException("Invalid decay rate of step size: " + decay);
+        }
+
+        Iterator<double[][]> iterator = batches.iterator();
+        if (!iterator.hasNext()) {
+            throw new IllegalArgumentException("Empty data stream");
+        }
+
+        double[][] batch = iterator.next();
+        Component[] components = fit(k, batch, diagonal).components;
+        double[][] posteriori = new double[k][batch.length];
+        double L = estep(batch, components, 0.0, posteriori);
+
+        // The moments are centered at the initial means, which are
+        // fixed so that the running averages stay consistent.
+        SufficientStatistics[] stats = new SufficientStatistics[k];
+        for (int i = 0; i < k; i++) {
+            stats[i] = new SufficientStatistics(batch, posteriori[i], components[i].distribution.mean().clone(), diagonal);
+        }
+
+        long n = batch.length;
+        for (int t = 1; iterator.hasNext(); t++) {
+            batch = iterator.next();
+            posteriori = new double[k][batch.length];
+            L += estep(batch, components, 0.0, posteriori);
+            n += batch.length;
+
+            double eta = Math.pow(t + 1, -decay);
+            double Z = 0.0;
+            for (int i = 0; i < k; i++) {
+                stats[i].update(new SufficientStatistics(batch, posteriori[i], stats[i].center, diagonal), eta);
+                Z += stats[i].weight();
+            }
+
+            for (int i = 0; i < k; i++) {
+                components[i] = stats[i].M(components[i], Z);
+            }
+
+            if (t % 10 == 0) {
+                logger.info(String.format("The log-likelihood after %d mini-batches of %d samples: %.4f", t, n, L));
+            }
+        }
+
+        return new MultivariateGaussianMixture(L, (int) Math.min(n, Integer.MAX_VALUE), components);
+    }
+
+    /**
+     * The average sufficient statistics of a Gaussian component, i.e.
+     * the posteriori probability, the weighted first moment, and the
+     * weighted second moment (diagonal or lower triangular part) per
+     * sample. The moments are of the data shifted by a center close to
+     * the component mean, which avoids the catastrophic cancellation of
+     * {@code E[x x'] - E[x] E[x]'} when the mean is large relative to
+     * the spread.
+     */
+    private static class SufficientStatistics {
+        /** The dimension of data. */
+        final int d;
+        /** True if the covariance matrix is diagonal. */
+        final boolean diagonal;
+        /** The center of moments. */
+        final double[] center;
+        /** The concatenated statistics. */
+        final double[] s;
+
+        /**
+         * Computes the average sufficient statistics of a mini-batch.
+         * @param x the mini-batch.
+         * @param posteriori the posteriori probabilities of component.
+         * @param center the center of moments.
+         * @param diagonal true if the covariance matrix is diagonal.
+         */
+        SufficientStatistics(double[][] x, double[] posteriori, double[] center, boolean diagonal) {
+            int n = x.length;
+            int d = x[0].length;
+            int blockSize = blockSize(n);
+            int blocks = (n + blockSize - 1) / blockSize;
+            int length = 1 + d + (diagonal ? d : d * d);
+
+            this.d = d;
+            this.diagonal = diagonal;
+            this.center = center;
+            this.s = IntStream.range(0, blocks).parallel().mapToObj(b -> {
+                double[] s = new double[length];
+                double[] v = new double[d];
+                for (int k = b * blockSize, end = Math.min(n, k + blockSize); k < end; k++) {
+                    double w = posteriori[k];
+                    if (w == 0.0) continue;
+
+                    double[] xk = x[k];
+                    for (int i = 0; i < d; i++) {
+                        v[i] = xk[i] - center[i];
+                    }
+
+                    s[0] += w;
+                    for (int i = 0; i < d; i++) {
+                        double wi = w * v[i];
+                        s[1 + i] += wi;
+                        if (diagonal) {
+                            s[1 + d + i] += wi * v[i];
+                        } else {
+                            int offset = 1 + d + i * d;
+                            for (int j = 0; j <= i; j++) {
+                                s[offset + j] += wi * v[j];
+                            }
+                        }
+                    }
+                }
+                return s;
+            }).reduce(MultivariateMixture::merge).orElseThrow();
+
+            for (int i = 0; i < length; i++) {
+                s[i] /= n;
+            }
+        }
+
+        /** Returns the average posteriori probability. */
+        double weight() {
+            return s[0];
+        }
+
+        /**
+         * Updates the running averages with the statistics of a mini-batch.
+         * @param batch the statistics of mini-batch.
+         * @param eta the step size.
+         */
+        void update(SufficientStatistics batch, double eta) {
+            for (int i = 0; i < s.length; i++) {
+                s[i] += eta * (batch.s[i] - s[i]);
+            }
+        }
+
+        /**
+         * The maximization step.
+         * @param component the current component, which is returned
+         *                  as is if the statistics are degenerate.
+         * @param Z the normalizing factor of priori probabilities.
+         * @return the updated component.
+         */
+        Component M(Component component, double Z) {
+            double w = s[0];
+            if (w <= 0.0) return component;
+
+            // The mean relative to the center.
+            double[] mu = new double[d];
+            double[] mean = new double[d];
+            for (int i = 0; i < d; i++) {
+                mu[i] = s[1 + i] / w;
+                mean[i] = center[i] + mu[i];
+            }
+
+            MultivariateGaussianDistribution gaussian;
+            if (diagonal) {
+                double[] variance = new double[d];
+                for (int i = 0; i < d; i++) {
+                    double m2 = s[1 + d + i] / w;
+                    variance[i] = Math.max(m2 - mu[i] * mu[i], MathEx.EPSILON * m2);
+                }
+
+                if (Arrays.stream(variance).anyMatch(v -> v <= 0.0)) return component;
+                gaussian = new MultivariateGaussianDistribution(mean, variance);
+            } else {
+                Matrix cov = new Matrix(d, d);
+                double trace = 0.0;
+                for (int i = 0; i < d; i++) {
+                    int offset = 1 + d + i * d;
+                    for (int j = 0; j <= i; j++) {
+                        double cij = s[offset + j] / w - mu[i] * mu[j];
+                        cov.set(i, j, cij);
+                        cov.set(j, i, cij);
+                    }
+                    trace += cov.get(i, i);
+                }
+
+                if (!(trace > 0.0)) return component;
+
+                // The ridge relative to the average variance makes sure
+                // that the covariance matrix is positive definite.
+                double ridge = 1E-6 * trace / d;
+                for (int i = 0; i < d; i++) {
+                    cov.add(i, i, ridge);
+                }
+
+                try {
+                    gaussian = new MultivariateGaussianDistribution(mean, cov);
+                } catch (ArithmeticException ex) {
+                    logger.debug("Keep the component of singular covariance matrix", ex);
+                    return component;
+                }
+            }
+
+            return new Component(w / Z, gaussian);
+        }
+    }
+
     /**
      * Split the most heterogeneous cluster along its main direction (eigenvector).
      */
@@ -210,15 +450,48 @@ public class MultivariateGaussianMixture extends MultivariateExponentialFamilyMi
         Component[] mixture = new Component[k+1];
         System.arraycopy(components, 0, mixture, 0, k);
 
-        double[] mu1 = new double[mu.length];
-        double[] mu2 = new double[mu.length];
-        for (int i = 0; i < mu.length; i++) {
-            mu1[i] = mu[i] + Math.sqrt(delta.get(i, i))/2;
-            mu2[i] = mu[i] - Math.sqrt(delta.get(i, i)) / 2;
+        // The main direction is found by the power iteration, which is
+        // much cheaper than the full eigen decomposition.
+        int d = mu.length;
+        double[] v = new double[d];
+        Arrays.fill(v, 1.0 / Math.sqrt(d));
+        double lambda = 0.0;
+        for (int iter = 0; iter < 100; iter++) {
+            double[] w = new double[d];
+            for (int i = 0; i < d; i++) {
+                for (int j = 0; j < d; j++) {
+                    w[i] += delta.get(i, j) * v[j];
+                }
+            }
+
+            double norm = MathEx.norm(w);
+            if (norm == 0.0) break;
+            for (int i = 0; i < d; i++) {
+                w[i] /= norm;
+            }
+
+            boolean converged = Math.abs(norm - lambda) <= 1E-7 * norm;
+            lambda = norm;
+            v = w;
+            if (converged) break;
         }
 
-        mixture[index] = new Component(priori, new MultivariateGaussianDistribution(mu1, delta));
-        mixture[k] = new Component(priori, new MultivariateGaussianDistribution(mu2, delta));
+        double[] mu1 = new double[d];
+        double[] mu2 = new double[d];
+        double step = Math.sqrt(lambda) / 2;
+        for (int i = 0; i < d; i++) {
+            mu1[i] = mu[i] + step * v[i];
+            mu2[i] = mu[i] - step * v[i];
+        }
+
+        if (((MultivariateGaussianDistribution) component.distribution).diagonal) {
+            double[] variance = delta.diag();
+            mixture[index] = new Component(priori, new MultivariateGaussianDistribution(mu1, variance));
+            mixture[k] = new Component(priori, new MultivariateGaussianDistribution(mu2, variance));
+        } else {
+            mixture[index] = new Component(priori, new MultivariateGaussianDistribution(mu1, delta));
+            mixture[k] = new Component(priori, new MultivariateGaussianDistribution(mu2, delta));
+        }
         return mixture;
     }
 }
\ No newline at end of file
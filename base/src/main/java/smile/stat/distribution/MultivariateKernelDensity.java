@@ -0,0 +1,520 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.stat.distribution;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.stream.IntStream;
+import smile.math.MathEx;
+import smile.math.matrix.Matrix;
+
+/**
+ * Multivariate kernel density estimation with the Gaussian product kernel.
+ * The samples are scaled by the bandwidth of each dimension and organized
+ * in a KD-tree. A batch of queries is organized in another KD-tree and
+ * evaluated by the dual-tree algorithm. For a pair of query node and
+ * reference node, the kernel values between them are bounded by the
+ * minimum and maximum distances between their bounding boxes. If the
+ * bounds are tight enough, the contribution of reference node is
+ * approximated by the midpoint of bounds for all the queries in the
+ * query node without visiting individual samples. Otherwise, the larger
+ * node is split and the children are visited recursively.
+ * <p>
+ * The pruning rule guarantees that the error of estimated density is at
+ * most {@code rtol * p(x) + atol} for every query. With zero tolerances,
+ * only the node pairs of which the kernel values underflow are pruned
+ * and the density is exact. The query blocks are processed in parallel.
+ *
+ * <h2>References</h2>
+ * <ol>
+ * <li> Alexander G. Gray and Andrew W. Moore. Nonparametric Density Estimation: Toward Computational Tractability. SDM, 2003.</li>
+ * </ol>
+ *
+ * @see KernelDensity
+ *
+ * @author Haifeng Li
+ */
+public class MultivariateKernelDensity implements MultivariateDistribution {
+    @Serial
+    private static final long serialVersionUID = 1L;
+    /** The maximum number of samples in a leaf node. */
+    private static final int LEAF_SIZE = 32;
+    /** The number of queries in a block, which is processed by a thread. */
+    private static final int QUERY_BLOCK_SIZE = 1024;
+
+    /**
+     * The node of KD-tree, which covers the points in [start, end)
+     * of the reordered data.
+     */
+    private static class Node implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+        /** The index of node in the pre-order traversal. */
+        final int id;
+        /** The start index of points in the node. */
+        final int start;
+        /** The end index (exclusive) of points in the node. */
+        final int end;
+        /** The lower bound of bounding box. */
+        final double[] lower;
+        /** The upper bound of bounding box. */
+        final double[] upper;
+        /** The left child. */
+        Node left;
+        /** The right child. */
+        Node right;
+
+        /**
+         * Constructor.
+         * @param id the index of node.
+         * @param data the points.
+         * @param start the start index of points in the node.
+         * @param end the end index (exclusive) of points in the node.
+         */
+        Node(int id, double[][] data, int start, int end) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.lower = data[start].clone();
+            this.upper = data[start].clone();
+            for (int i = start + 1; i < end; i++) {
+                double[] x = data[i];
+                for (int j = 0; j < x.length; j++) {
+                    if (x[j] < lower[j]) lower[j] = x[j];
+                    if (x[j] > upper[j]) upper[j] = x[j];
+                }
+            }
+        }
+
+        /** Returns true if the node is a leaf. */
+        boolean isLeaf() {
+            return left == null;
+        }
+
+        /** Returns the number of points in the node. */
+        int size() {
+            return end - start;
+        }
+    }
+
+    /**
+     * KD-tree built by splitting the widest dimension at the median.
+     * The points and their original indices are reordered in place.
+     */
+    private static class Tree implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+        /** The reordered points. */
+        final double[][] data;
+        /** The original index of reordered points. */
+        final int[] index;
+        /** The root node. */
+        final Node root;
+        /** The number of nodes. */
+        int size;
+
+        /**
+         * Constructor.
+         * @param data the points, which will be reordered.
+         */
+        Tree(double[][] data) {
+            this.data = data;
+            this.index = IntStream.range(0, data.length).toArray();
+            this.root = build(0, data.length);
+        }
+
+        /** Builds the subtree on the points in [start, end). */
+        private Node build(int start, int end) {
+            Node node = new Node(size++, data, start, end);
+            if (end - start <= LEAF_SIZE) {
+                return node;
+            }
+
+            int dim = 0;
+            double width = -1.0;
+            for (int j = 0; j < node.lower.length; j++) {
+                double w = node.upper[j] - node.lower[j];
+                if (w > width) {
+                    width = w;
+                    dim = j;
+                }
+            }
+
+            // All points are identical.
+            if (width <= 0.0) {
+                return node;
+            }
+
+            int mid = (start + end) >>> 1;
+            select(start, end - 1, mid, dim);
+            node.left = build(start, mid);
+            node.right = build(mid, end);
+            return node;
+        }
+
+        /**
+         * Reorders the points in [left, right] so that the k-th point
+         * is in its sorted position along the given dimension.
+         */
+        private void select(int left, int right, int k, int dim) {
+            while (right > left) {
+                double pivot = data[(left + right) >>> 1][dim];
+                int i = left;
+                int j = right;
+                while (i <= j) {
+                    while (data[i][dim] < pivot) i++;
+                    while (data[j][dim] > pivot) j--;
+                    if (i <= j) {
+                        swap(i++, j--);
+                    }
+                }
+
+                if (k <= j) {
+                    right = j;
+                } else if (k >= i) {
+                    left = i;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        /** Swaps two points. */
+        private void swap(int i, int j) {
+            double[] x = data[i];
+            data[i] = data[j];
+            data[j] = x;
+            int t = index[i];
+            index[i] = index[j];
+            index[j] = t;
+        }
+    }
+
+    /** The KD-tree of samples scaled by the bandwidth. */
+    private final Tree tree;
+    /** The bandwidth of each dimension. */
+    private final double[] h;
+    /** The log of normalizing constant of kernel. */
+    private final double logNorm;
+    /** The mean vector. */
+    private final double[] mean;
+    /** The covariance matrix. */
+    private final Matrix cov;
+
+    /**
+     * Constructor. The bandwidth of kernel will be estimated by Scott's rule.
+     * @param data the samples to estimate the density function.
+     */
+    public MultivariateKernelDensity(double[][] data) {
+        this(data, scott(data));
+    }
+
+    /**
+     * Constructor.
+     * @param data the samples to estimate the density function.
+     * @param h the bandwidth of each dimension.
+     */
+    public MultivariateKernelDensity(double[][] data, double[] h) {
+        int d = data[0].length;
+        if (h.length != d) {
+            throw new IllegalArgumentException(String.format("The dimension of bandwidth %d != %d", h.length, d));
+        }
+
+        for (double hj : h) {
+            if (hj <= 0) {
+                throw new IllegalArgumentException("Invalid bandwidth: " + hj);
+            }
+        }
+
+        this.h = h.clone();
+        this.mean = MathEx.colMeans(data);
+        this.cov = Matrix.of(MathEx.cov(data, mean));
+        for (int j = 0; j < d; j++) {
+            cov.add(j, j, h[j] * h[j]);
+        }
+
+        double logNorm = -0.5 * d * Math.log(2 * Math.PI);
+        for (double hj : h) {
+            logNorm -= Math.log(hj);
+        }
+        this.logNorm = logNorm;
+        this.tree = new Tree(scale(data));
+    }
+
+    /**
+     * Returns the bandwidth by Scott's rule.
+     * @param data the samples.
+     * @return the bandwidth of each dimension.
+     */
+    private static double[] scott(double[][] data) {
+        int n = data.length;
+        int d = data[0].length;
+        double factor = Math.pow(n, -1.0 / (d + 4));
+        double[] h = MathEx.colSds(data);
+        for (int j = 0; j < d; j++) {
+            if (h[j] == 0.0) {
+                throw new IllegalArgumentException("Samples has no variance in dimension " + j);
+            }
+            h[j] *= factor;
+        }
+        return h;
+    }
+
+    /** Returns a copy of points scaled by the bandwidth. */
+    private double[][] scale(double[][] x) {
+        int d = h.length;
+        double[][] z = new double[x.length][d];
+        for (int i = 0; i < x.length; i++) {
+            if (x[i].length != d) {
+                throw new IllegalArgumentException(String.format("Invalid dimension of point %d: %d != %d", i, x[i].length, d));
+            }
+
+            for (int j = 0; j < d; j++) {
+                z[i][j] = x[i][j] / h[j];
+            }
+        }
+        return z;
+    }
+
+    /**
+     * Returns the bandwidth of kernel.
+     * @return the bandwidth of each dimension.
+     */
+    public double[] bandwidth() {
+        return h.clone();
+    }
+
+    /**
+     * Returns the number of samples.
+     * @return the number of samples.
+     */
+    public int size() {
+        return tree.data.length;
+    }
+
+    @Override
+    public int length() {
+        return 0;
+    }
+
+    /**
+     * Shannon's entropy. Not supported.
+     */
+    @Override
+    public double entropy() {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    @Override
+    public double[] mean() {
+        return mean;
+    }
+
+    /**
+     * Returns the covariance matrix of estimated density, which is the
+     * sample covariance plus the diagonal matrix of squared bandwidth.
+     */
+    @Override
+    public Matrix cov() {
+        return cov;
+    }
+
+    @Override
+    public double p(double[] x) {
+        return p(new double[][]{x})[0];
+    }
+
+    @Override
+    public double logp(double[] x) {
+        return Math.log(p(x));
+    }
+
+    /**
+     * Cumulative distribution function. Not supported.
+     */
+    @Override
+    public double cdf(double[] x) {
+        throw new UnsupportedOperationException("Not supported.");
+    }
+
+    /**
+     * Returns the exact density at a batch of points.
+     * @param x the points.
+     * @return the density at the points.
+     */
+    public double[] p(double[][] x) {
+        return p(x, 0.0, 0.0);
+    }
+
+    /**
+     * Returns the approximate density at a batch of points by the
+     * dual-tree algorithm. The error of each estimate is at most
+     * {@code rtol * p(x) + atol}.
+     *
+     * @param x the points.
+     * @param rtol the relative error tolerance.
+     * @param atol the absolute error tolerance.
+     * @return the density at the points.
+     */
+    public double[] p(double[][] x, double rtol, double atol) {
+        if (rtol < 0.0) {
+            throw new IllegalArgumentException("Invalid relative error tolerance: " + rtol);
+        }
+
+        if (atol < 0.0) {
+            throw new IllegalArgumentException("Invalid absolute error tolerance: " + atol);
+        }
+
+        // The absolute tolerance per sample in the unit of scaled kernel.
+        double tau = atol > 0.0 ? Math.exp(Math.log(atol) - logNorm) : 0.0;
+        double[] density = new double[x.length];
+        int blocks = (x.length + QUERY_BLOCK_SIZE - 1) / QUERY_BLOCK_SIZE;
+        IntStream.range(0, blocks).parallel().forEach(b -> {
+            int start = b * QUERY_BLOCK_SIZE;
+            int end = Math.min(x.length, start + QUERY_BLOCK_SIZE);
+            double[][] block = new double[end - start][];
+            System.arraycopy(x, start, block, 0, block.length);
+
+            Tree query = new Tree(scale(block));
+            double[] sum = new double[block.length];
+            double[] pruned = new double[query.size];
+            dualtree(query, query.root, tree.root, 0.0, rtol, tau, sum, pruned);
+            pushdown(query, query.root, 0.0, sum, pruned);
+
+            double factor = Math.exp(logNorm) / tree.data.length;
+            for (int i = 0; i < block.length; i++) {
+                density[start + query.index[i]] = factor * sum[i];
+            }
+        });
+
+        return density;
+    }
+
+    /**
+     * The dual-tree recursion. Following Gray and Moore, the error budget
+     * of a reference node is proportional to its size, and relative to a
+     * lower bound of the kernel sum of queries. The lower bound consists
+     * of the contributions of other reference nodes, which is passed down
+     * the recursion. The closer child of reference node is visited first
+     * so that its contribution tightens the bound for the farther one.
+     *
+     * @param query the tree of queries.
+     * @param q the query node.
+     * @param r the reference node.
+     * @param others the lower bound of kernel sums of queries in q
+     *               contributed by the samples not in r.
+     * @param rtol the relative error tolerance.
+     * @param tau the absolute error tolerance per sample.
+     * @param sum the kernel sums of queries.
+     * @param pruned the approximate kernel sums of pruned query nodes.
+     * @return the lower bound of kernel sums of queries in q contributed by r.
+     */
+    private double dualtree(Tree query, Node q, Node r, double others, double rtol, double tau, double[] sum, double[] pruned) {
+        double minDist = minDistance(q, r);
+        double maxDist = maxDistance(q, r);
+        double maxKernel = Math.exp(-0.5 * minDist);
+        double minKernel = Math.exp(-0.5 * maxDist);
+
+        double lower = others + r.size() * minKernel;
+        if (maxKernel - minKernel <= 2 * (rtol * lower / tree.data.length + tau)) {
+            pruned[q.id] += 0.5 * (maxKernel + minKernel) * r.size();
+            return r.size() * minKernel;
+        }
+
+        if (q.isLeaf() && r.isLeaf()) {
+            double[][] data = tree.data;
+            double min = Double.MAX_VALUE;
+            for (int i = q.start; i < q.end; i++) {
+                double[] xi = query.data[i];
+                double s = 0.0;
+                for (int j = r.start; j < r.end; j++) {
+                    s += Math.exp(-0.5 * MathEx.squaredDistance(xi, data[j]));
+                }
+                sum[i] += s;
+                min = Math.min(min, s);
+            }
+            return min;
+        }
+
+        if (r.isLeaf()) {
+            double left = dualtree(query, q.left, r, others, rtol, tau, sum, pruned);
+            double right = dualtree(query, q.right, r, others, rtol, tau, sum, pruned);
+            return Math.min(left, right);
+        }
+
+        if (q.isLeaf()) {
+            return split(query, q, r, others, rtol, tau, sum, pruned);
+        }
+
+        // Splits both nodes so that they descend at the same pace.
+        double left = split(query, q.left, r, others, rtol, tau, sum, pruned);
+        double right = split(query, q.right, r, others, rtol, tau, sum, pruned);
+        return Math.min(left, right);
+    }
+
+    /**
+     * Visits the children of reference node, the closer one first.
+     * The parameters and return value are the same as dualtree.
+     */
+    private double split(Tree query, Node q, Node r, double others, double rtol, double tau, double[] sum, double[] pruned) {
+        Node near = r.left;
+        Node far = r.right;
+        if (minDistance(q, far) < minDistance(q, near)) {
+            near = r.right;
+            far = r.left;
+        }
+
+        double farLower = far.size() * Math.exp(-0.5 * maxDistance(q, far));
+        double nearSum = dualtree(query, q, near, others + farLower, rtol, tau, sum, pruned);
+        double farSum = dualtree(query, q, far, others + nearSum, rtol, tau, sum, pruned);
+        return nearSum + farSum;
+    }
+
+    /** Returns the minimum squared distance between the bounding boxes. */
+    private static double minDistance(Node q, Node r) {
+        double dist = 0.0;
+        for (int j = 0; j < q.lower.length; j++) {
+            double gap = Math.max(0.0, Math.max(q.lower[j] - r.upper[j], r.lower[j] - q.upper[j]));
+            dist += gap * gap;
+        }
+        return dist;
+    }
+
+    /** Returns the maximum squared distance between the bounding boxes. */
+    private static double maxDistance(Node q, Node r) {
+        double dist = 0.0;
+        for (int j = 0; j < q.lower.length; j++) {
+            double span = Math.max(q.upper[j] - r.lower[j], r.upper[j] - q.lower[j]);
+            dist += span * span;
+        }
+        return dist;
+    }
+
+    /** Adds the approximate kernel sums of pruned nodes to their queries. */
+    private void pushdown(Tree query, Node q, double base, double[] sum, double[] pruned) {
+        base += pruned[q.id];
+        if (q.isLeaf()) {
+            for (int i = q.start; i < q.end; i++) {
+                sum[i] += base;
+            }
+        } else {
+            pushdown(query, q.left, base, sum, pruned);
+            pushdown(query, q.right, base, sum, pruned);
+        }
+    }
+}
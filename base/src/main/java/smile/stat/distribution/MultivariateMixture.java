@@ -20,6 +20,7 @@ package smile.stat.distribution;
 import java.io.Serial;
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 import smile.math.MathEx;
 import smile.math.matrix.Matrix;
@@ -232,6 +233,32 @@ public class MultivariateMixture implements MultivariateDistribution {
         return logLikelihood - 0.5 * length() * Math.log(n);
     }
 
+    /**
+     * Returns the number of samples per block when the EM algorithm
+     * processes the data in parallel. The blocks are large enough that
+     * the per-block accumulators of sufficient statistics are cheap
+     * to allocate and merge.
+     * @param n the number of samples.
+     * @return the block size.
+     */
+    static int blockSize(int n) {
+        int blocks = 4 * ForkJoinPool.getCommonPoolParallelism();
+        return Math.max(256, (n + blocks - 1) / blocks);
+    }
+
+    /**
+     * Adds the partial sums of a block to the accumulator.
+     * @param a the accumulator.
+     * @param b the partial sums of a block.
+     * @return the accumulator.
+     */
+    static double[] merge(double[] a, double[] b) {
+        for (int i = 0; i < a.length; i++) {
+            a[i] += b[i];
+        }
+        return a;
+    }
+
     @Override
     public String toString() {
         return Arrays.stream(components)
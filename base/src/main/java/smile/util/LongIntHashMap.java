@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.util;
+
+import java.util.Arrays;
+
+/**
+ * {@code HashMap<long, int>} for primitive types with open addressing
+ * and linear probing. Unlike other primitive hash maps in this package,
+ * all long values are valid keys. The values should be non-negative
+ * as -1 is reserved to indicate a missing key, which is the typical
+ * use case of mapping keys to dense indices.
+ *
+ * @author Haifeng Li
+ */
+public class LongIntHashMap {
+    private static final long FREE_KEY = 0L;
+    private static final int NO_VALUE = -1;
+
+    /**
+     * Keys.
+     */
+    private long[] keys;
+    /**
+     * Values.
+     */
+    private int[] values;
+    /**
+     * The value of key 0, which is stored out of the table
+     * as 0 marks the free slots.
+     */
+    private int zeroValue = NO_VALUE;
+
+    /**
+     * The load factor, must be between (0 and 1).
+     */
+    private final float loadFactor;
+    /**
+     * We will resize a map once it reaches this size.
+     */
+    private int threshold;
+    /**
+     * The number of map entries in the table, excluding key 0.
+     */
+    private int size;
+
+    /**
+     * Mask to calculate the original position.
+     */
+    private int mask;
+
+    /**
+     * Constructs an empty HashMap with the default initial
+     * capacity (16) and the default load factor (0.75).
+     */
+    public LongIntHashMap() {
+        this(16, 0.75f);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param initialCapacity the initial capacity.
+     * @param loadFactor the load factor.
+     */
+    public LongIntHashMap(int initialCapacity, float loadFactor) {
+        if (loadFactor <= 0 || loadFactor >= 1) {
+            throw new IllegalArgumentException("Invalid fill factor: " + loadFactor);
+        }
+
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid initial capacity: " + initialCapacity);
+        }
+
+        this.loadFactor = loadFactor;
+        int capacity = arraySize(initialCapacity, loadFactor);
+        mask = capacity - 1;
+
+        keys = new long[capacity];
+        values = new int[capacity];
+        threshold = (int) (capacity * loadFactor);
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped,
+     * or -1 if this map contains no mapping for the key.
+     * @param key the key.
+     * @return the value.
+     */
+    public int get(long key) {
+        if (key == FREE_KEY) {
+            return zeroValue;
+        }
+
+        int ptr = hash(key);
+
+        do {
+            long k = keys[ptr];
+            if (k == FREE_KEY) return NO_VALUE;
+            if (k == key) return values[ptr];
+            ptr = (ptr + 1) & mask; // next index
+        } while (true);
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * @param key the key.
+     * @param value the value, which should be non-negative.
+     * @return the old value or -1 if there was no mapping for the key.
+     */
+    public int put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+
+        if (key == FREE_KEY) {
+            int old = zeroValue;
+            zeroValue = value;
+            return old;
+        }
+
+        int ptr = hash(key);
+        do {
+            long k = keys[ptr];
+            if (k == FREE_KEY) {
+                keys[ptr] = key;
+                values[ptr] = value;
+                if (++size >= threshold) {
+                    rehash(keys.length * 2);
+                }
+
+                return NO_VALUE;
+            }
+
+            if (k == key) {
+                int old = values[ptr];
+                values[ptr] = value;
+                return old;
+            }
+
+            ptr = (ptr + 1) & mask;
+        } while (true);
+    }
+
+    /**
+     * If the specified key is not already associated with a value,
+     * associates it with the given value and returns -1, else returns
+     * the current value. With {@code value = size()}, this assigns
+     * dense indices to the keys in the order of first appearance.
+     * @param key the key.
+     * @param value the value, which should be non-negative.
+     * @return the current value or -1 if there was no mapping for the key.
+     */
+    public int putIfAbsent(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+
+        if (key == FREE_KEY) {
+            int old = zeroValue;
+            if (old == NO_VALUE) zeroValue = value;
+            return old;
+        }
+
+        int ptr = hash(key);
+        do {
+            long k = keys[ptr];
+            if (k == FREE_KEY) {
+                keys[ptr] = key;
+                values[ptr] = value;
+                if (++size >= threshold) {
+                    rehash(keys.length * 2);
+                }
+
+                return NO_VALUE;
+            }
+
+            if (k == key) {
+                return values[ptr];
+            }
+
+            ptr = (ptr + 1) & mask;
+        } while (true);
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     * @return the number of key-value mappings in this map.
+     */
+    public int size() {
+        return zeroValue == NO_VALUE ? size : size + 1;
+    }
+
+    /** Resize the hash table. */
+    private void rehash(int newCapacity) {
+        threshold = (int) (newCapacity * loadFactor);
+        mask = newCapacity - 1;
+
+        int oldCapacity = keys.length;
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+
+        keys = new long[newCapacity];
+        values = new int[newCapacity];
+        size = 0;
+
+        for (int i = 0; i < oldCapacity; i++) {
+            long oldKey = oldKeys[i];
+            if (oldKey != FREE_KEY) {
+                put(oldKey, oldValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Return the least power of two greater than or equal to the specified value.
+     * <p>
+     * Note that this function will return 1 when the argument is 0.
+     *
+     * @param x a long integer smaller than or equal to 2<sup>62</sup>.
+     * @return the least power of two greater than or equal to the specified value.
+     */
+    private long nextPowerOfTwo(long x) {
+        if (x == 0) return 1;
+        x--;
+        x |= x >> 1;
+        x |= x >> 2;
+        x |= x >> 4;
+        x |= x >> 8;
+        x |= x >> 16;
+        return (x | x >> 32) + 1;
+    }
+
+    /**
+     * Returns the least power of two smaller than or equal to
+     * 2<sup>30</sup> and larger than or equal to
+     * <code>ceil(expected / f)</code>.
+     *
+     * @param expected the expected number of elements in a hash table.
+     * @param f        the load factor.
+     * @return the minimum possible size for a backing array.
+     * @throws IllegalArgumentException if the necessary size is larger than 2<sup>30</sup>.
+     */
+    private int arraySize(int expected, float f) {
+        long s = Math.max(2, nextPowerOfTwo((long) Math.ceil(expected / f)));
+
+        if (s > (1 << 30)) {
+            throw new IllegalArgumentException(String.format("Too large %d expected elements with load factor %.2f", expected, f));
+        }
+
+        return (int) s;
+    }
+
+    /** Magic number for hash function. */
+    private static final long LONG_PHI = 0x9E3779B97F4A7C15L;
+
+    /** The hash function for long. */
+    private int hash(long x) {
+        long h = x * LONG_PHI;
+        h ^= h >>> 32;
+        return (int) (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -287,4 +287,198 @@ public class DataFrameTest {
         assertEquals(1, output[2][3], 1E-10);
         assertEquals(1, output[3][3], 1E-10);
     }
-}
\ No newline at end of file
+
+    /**
+     * Test of sortBy method, of class DataFrame.
+     */
+    @Test
+    public void testSortBy() {
+        System.out.println("sortBy");
+        DataFrame output = df.sortBy("age");
+        assertEquals("Amy", output.getString(0, "name"));
+        assertEquals("Bob", output.getString(1, "name"));
+        assertEquals("Alex", output.getString(2, "name"));
+        assertEquals("Jane", output.getString(3, "name"));
+
+        // nulls are at the end in both orders.
+        output = df.sortBy(new String[]{"gender", "salary"}, new boolean[]{true, false});
+        assertEquals("Alex", output.getString(0, "name"));
+        assertEquals("Bob", output.getString(1, "name"));
+        assertEquals("Jane", output.getString(2, "name"));
+        assertEquals("Amy", output.getString(3, "name"));
+
+        output = df.sortBy("salary");
+        assertEquals("Alex", output.getString(0, "name"));
+        assertEquals("Jane", output.getString(1, "name"));
+        assertEquals("Bob", output.getString(2, "name"));
+        assertEquals("Amy", output.getString(3, "name"));
+    }
+
+    /**
+     * Test of groupBy method, of class DataFrame.
+     */
+    @Test
+    public void testGroupBy() {
+        System.out.println("groupBy");
+        GroupBy groups = df.groupBy("gender");
+        assertEquals(2, groups.size());
+        assertEquals(2, groups.get(1).size());
+
+        DataFrame output = groups.agg(
+                Aggregation.count(),
+                Aggregation.mean("age"),
+                Aggregation.max("salary").as("top"),
+                Aggregation.count("salary"),
+                Aggregation.sum("age"));
+        System.out.println(output);
+        assertEquals(2, output.size());
+        assertArrayEquals(new String[]{"gender", "count", "mean(age)", "top", "count(salary)", "sum(age)"}, output.names());
+        assertEquals("Male", output.getScale(0, 0));
+        assertEquals("Female", output.getScale(1, 0));
+        assertEquals(2L, output.getLong(0, 1));
+        assertEquals(30.5, output.getDouble(0, 2), 1E-10);
+        assertEquals(30.5, output.getDouble(1, 2), 1E-10);
+        assertEquals(10000., output.getDouble(0, 3), 1E-10);
+        assertEquals(230000., output.getDouble(1, 3), 1E-10);
+        assertEquals(1L, output.getLong(1, 4));
+        assertEquals(61L, output.getLong(0, 5));
+
+        assertThrows(IllegalArgumentException.class, () -> groups.agg(Aggregation.sum("name")));
+    }
+
+    /**
+     * Test of groupBy method on large data, of class DataFrame.
+     */
+    @Test
+    public void testGroupByLarge() {
+        System.out.println("groupBy large");
+        smile.math.MathEx.setSeed(19650218);
+        int n = 100000;
+        for (int k : new int[]{10, 30000}) {
+            int[] key = new int[n];
+            long[] id = new long[n];
+            double[] x = new double[n];
+            int[] y = new int[n];
+            for (int i = 0; i < n; i++) {
+                key[i] = smile.math.MathEx.randomInt(k);
+                id[i] = key[i] % 3 == 0 ? Long.MIN_VALUE : Long.MAX_VALUE - (key[i] % 3);
+                x[i] = i % 17 == 0 ? Double.NaN : smile.math.MathEx.random();
+                y[i] = smile.math.MathEx.randomInt(1000);
+            }
+
+            DataFrame data = DataFrame.of(
+                    smile.data.vector.IntVector.of("key", key),
+                    smile.data.vector.LongVector.of("id", id),
+                    smile.data.vector.DoubleVector.of("x", x),
+                    smile.data.vector.IntVector.of("y", y));
+
+            DataFrame output = data.groupBy("key", "id").agg(
+                    Aggregation.count(),
+                    Aggregation.sum("x"),
+                    Aggregation.var("x"),
+                    Aggregation.sum("y"),
+                    Aggregation.min("y"));
+
+            int[] count = new int[k];
+            double[] sum = new double[k];
+            double[] sum2 = new double[k];
+            int[] nx = new int[k];
+            long[] sumy = new long[k];
+            int[] miny = new int[k];
+            java.util.Arrays.fill(miny, Integer.MAX_VALUE);
+            for (int i = 0; i < n; i++) {
+                int g = key[i];
+                count[g]++;
+                sumy[g] += y[i];
+                miny[g] = Math.min(miny[g], y[i]);
+                if (!Double.isNaN(x[i])) {
+                    nx[g]++;
+                    sum[g] += x[i];
+                    sum2[g] += x[i] * x[i];
+                }
+            }
+
+            int groups = (int) java.util.Arrays.stream(count).filter(c -> c > 0).count();
+            assertEquals(groups, output.size());
+            int prev = -1;
+            for (int i = 0; i < output.size(); i++) {
+                int g = output.getInt(i, 0);
+                assertTrue(g > prev);
+                prev = g;
+                assertEquals(count[g], output.getLong(i, 2));
+                assertEquals(sum[g], output.getDouble(i, 3), 1E-8);
+                if (nx[g] > 1) {
+                    double mu = sum[g] / nx[g];
+                    assertEquals((sum2[g] - nx[g] * mu * mu) / (nx[g] - 1), output.getDouble(i, 4), 1E-8);
+                }
+                assertEquals(sumy[g], output.getLong(i, 5));
+                assertEquals(miny[g], output.getLong(i, 6));
+            }
+        }
+    }
+
+    /**
+     * Test of join method, of class DataFrame.
+     */
+    @Test
+    public void testJoin() {
+        System.out.println("join");
+        DataFrame dept = DataFrame.of(
+                StringVector.of("name", "Alex", "Jane", "Zoe", "Alex", null),
+                StringVector.of("dept", "R&D", "Sales", "HR", "Legal", "IT"),
+                smile.data.vector.IntVector.of("age", new int[]{1, 2, 3, 4, 5}));
+
+        DataFrame inner = df.join(dept, "name");
+        System.out.println(inner);
+        assertEquals(3, inner.size());
+        assertArrayEquals(new String[]{"name", "age", "birthday", "gender", "salary", "dept", "age_right"}, inner.names());
+        assertEquals("Alex", inner.getString(0, "name"));
+        assertEquals("R&D", inner.getString(0, "dept"));
+        assertEquals("Legal", inner.getString(1, "dept"));
+        assertEquals(38, inner.getInt(1, "age"));
+        assertEquals(4, inner.getInt(1, "age_right"));
+        assertEquals("Jane", inner.getString(2, "name"));
+
+        DataFrame left = df.join(dept, Join.Type.LEFT, "name");
+        assertEquals(5, left.size());
+        assertEquals("Bob", left.getString(2, "name"));
+        assertNull(left.get(2, "dept"));
+        assertNull(left.get(2, "age_right"));
+
+        DataFrame right = df.join(dept, Join.Type.RIGHT, "name");
+        assertEquals(5, right.size());
+        assertEquals("Zoe", right.getString(3, "name"));
+        assertNull(right.get(3, "age"));
+        assertNull(right.get(4, "name"));
+        assertEquals("IT", right.getString(4, "dept"));
+
+        DataFrame outer = df.join(dept, Join.Type.OUTER, "name");
+        assertEquals(7, outer.size());
+
+        DataFrame merged = Join.sortMerge(df, dept, Join.Type.OUTER, "name");
+        assertEquals(7, merged.size());
+        String[] names = {"Alex", "Alex", "Amy", "Bob", "Jane", "Zoe", null};
+        for (int i = 0; i < names.length; i++) {
+            assertEquals(names[i], merged.getString(i, "name"));
+        }
+        assertEquals("HR", merged.getString(5, "dept"));
+        assertNull(merged.get(5, "salary"));
+        assertEquals(3, Join.sortMerge(df, dept, Join.Type.INNER, "name").size());
+
+        // Primitive columns stay primitive with NaN as missing floating value.
+        DataFrame x = DataFrame.of(
+                smile.data.vector.IntVector.of("id", new int[]{1, 2, 3}),
+                smile.data.vector.DoubleVector.of("x", new double[]{0.1, 0.2, 0.3}));
+        DataFrame y = DataFrame.of(
+                smile.data.vector.IntVector.of("id", new int[]{2, 4}),
+                smile.data.vector.DoubleVector.of("y", new double[]{2.0, 4.0}));
+        DataFrame xy = x.join(y, Join.Type.OUTER, "id");
+        assertEquals(4, xy.size());
+        assertTrue(xy.column("id") instanceof smile.data.vector.IntVector);
+        assertTrue(xy.column("y") instanceof smile.data.vector.DoubleVector);
+        assertArrayEquals(new int[]{1, 2, 3, 4}, xy.column("id").toIntArray());
+        assertTrue(Double.isNaN(xy.getDouble(0, "y")));
+        assertEquals(2.0, xy.getDouble(1, "y"), 1E-10);
+        assertTrue(Double.isNaN(xy.getDouble(3, "x")));
+    }
+}
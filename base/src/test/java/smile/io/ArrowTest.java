@@ -25,6 +25,8 @@ import smile.util.Paths;
 import java.io.File;
 import java.nio.file.Path;
 import java.sql.*;
+import java.util.List;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.*;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -174,4 +176,37 @@ public class ArrowTest {
         assertEquals(5.94, output.get(2, 0), 1E-10);
         assertEquals(0.99, output.get(3, 0), 1E-10);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testStream() throws Exception {
+        System.out.println("stream");
+        Path path = File.createTempFile("chinook", "arrow").toPath();
+        new Arrow(100).write(df, path);
+        try (Stream<DataFrame> stream = arrow.stream(path, "Country", "Total")) {
+            List<DataFrame> batches = stream.toList();
+            assertEquals(5, batches.size());
+            int n = 0;
+            for (DataFrame batch : batches) {
+                assertEquals(2, batch.ncol());
+                n += batch.nrow();
+            }
+            assertEquals(412, n);
+        }
+    }
+
+    @Test
+    public void testReadBatches() throws Exception {
+        System.out.println("read batches");
+        Path path = File.createTempFile("chinook", "arrow").toPath();
+        new Arrow(100).write(df, path);
+        DataFrame data = arrow.read(path);
+        assertEquals(412, data.nrow());
+        assertEquals(6, data.ncol());
+        double[] total = data.column("Total").toDoubleArray();
+        for (int i = 0; i < data.nrow(); i++) {
+            assertEquals(df.getDouble(i, 5), data.getDouble(i, 5), 1E-10);
+            assertEquals(df.getDouble(i, 5), total[i], 1E-10);
+            assertEquals(df.getString(i, 4), data.getString(i, 4));
+        }
+    }
+}
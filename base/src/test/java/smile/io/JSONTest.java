@@ -123,4 +123,45 @@ public class JSONTest {
         assertEquals("Michael McCandless", df.get(6, 2));
         assertEquals(30.5, df.getDouble(6, 3), 1E-7);
     }
+
+    @Test
+    public void testBooksProjection() throws Exception {
+        System.out.println("books projection");
+        StructType schema = DataTypes.struct(
+                new StructField("pages_i", DataTypes.IntegerType),
+                new StructField("price", DataTypes.DoubleType),
+                new StructField("series_t", DataTypes.StringType)
+        );
+        JSON json = new JSON().schema(schema);
+        DataFrame df = json.read(Paths.getTestData("kylo/books.json"));
+
+        System.out.println(df);
+        System.out.println(df.schema());
+
+        assertEquals(7, df.nrow());
+        assertEquals(3, df.ncol());
+        assertEquals(schema, df.schema());
+        assertEquals(384, df.getInt(0, 0));
+        assertEquals(12.5, df.getDouble(0, 1), 1E-7);
+        assertEquals("Percy Jackson and the Olympians", df.get(0, 2));
+        assertNull(df.get(6, 2));
+        assertEquals(475, df.getInt(6, 0));
+        assertEquals(30.5, df.getDouble(6, 1), 1E-7);
+    }
+
+    @Test
+    public void testBooksChunks() throws Exception {
+        System.out.println("books chunks");
+        DataFrame expected = new JSON().read(Paths.getTestData("kylo/books.json"));
+        for (int chunkSize : new int[]{1, 256, 1024}) {
+            DataFrame df = new JSON().chunkSize(chunkSize).read(Paths.getTestData("kylo/books.json"));
+            assertEquals(expected.schema(), df.schema());
+            assertEquals(expected.nrow(), df.nrow());
+            for (int i = 0; i < df.nrow(); i++) {
+                for (int j = 0; j < df.ncol(); j++) {
+                    assertEquals(expected.get(i, j), df.get(i, j));
+                }
+            }
+        }
+    }
 }
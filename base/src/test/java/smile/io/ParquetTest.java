@@ -18,6 +18,10 @@
 package smile.io;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+import org.apache.parquet.filter2.predicate.FilterApi;
+import org.apache.parquet.filter2.predicate.FilterPredicate;
 import smile.data.DataFrame;
 import smile.data.type.DataTypes;
 import smile.data.type.StructField;
@@ -171,4 +175,22 @@ public class ParquetTest {
         assertEquals(90263.05, output.get(3, 1), 1E-10);
         assertTrue(Double.isNaN(output.get(4, 1)));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testStream() throws Exception {
+        System.out.println("stream");
+        FilterPredicate filter = FilterApi.gt(FilterApi.intColumn("id"), 500);
+        try (Stream<DataFrame> stream = Parquet.stream(new LocalInputFile(Paths.getTestData("kylo/userdata1.parquet")), filter, "id", "salary")) {
+            List<DataFrame> batches = stream.toList();
+            int n = 0;
+            for (DataFrame batch : batches) {
+                assertEquals(2, batch.ncol());
+                for (int i = 0; i < batch.nrow(); i++) {
+                    assertTrue(batch.getInt(i, 0) > 500);
+                }
+                n += batch.nrow();
+            }
+            assertEquals(500, n);
+        }
+    }
+}
@@ -0,0 +1,529 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.math.blas.jvm;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Random;
+import smile.math.blas.*;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test pure Java BLAS against the definitions of operations.
+ *
+ * @author Haifeng Li
+ */
+public class JavaBLASTest {
+
+    JavaBLAS blas = new JavaBLAS();
+    Random random = new Random(19650218);
+
+    public JavaBLASTest() {
+    }
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterAll
+    public static void tearDownClass() throws Exception {
+    }
+
+    @BeforeEach
+    public void setUp() {
+    }
+
+    @AfterEach
+    public void tearDown() {
+    }
+
+    /** Returns a random m x n matrix. */
+    private double[][] random(int m, int n) {
+        double[][] a = new double[m][n];
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < n; j++) {
+                a[i][j] = random.nextGaussian();
+            }
+        }
+        return a;
+    }
+
+    /** Returns a random symmetric matrix. */
+    private double[][] symmetric(int n) {
+        double[][] a = random(n, n);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < i; j++) {
+                a[j][i] = a[i][j];
+            }
+        }
+        return a;
+    }
+
+    /** Stores a matrix in the given layout with the leading dimension. */
+    private static double[] store(double[][] a, Layout layout, int ld) {
+        int m = a.length, n = a[0].length;
+        double[] x = new double[layout == Layout.COL_MAJOR ? ld * n : ld * m];
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < n; j++) {
+                x[layout == Layout.COL_MAJOR ? i + j * ld : j + i * ld] = a[i][j];
+            }
+        }
+        return x;
+    }
+
+    /** Returns the element of a stored matrix. */
+    private static double get(double[] x, Layout layout, int ld, int i, int j) {
+        return x[layout == Layout.COL_MAJOR ? i + j * ld : j + i * ld];
+    }
+
+    private static double[][] transpose(double[][] a) {
+        double[][] t = new double[a[0].length][a.length];
+        for (int i = 0; i < a.length; i++) {
+            for (int j = 0; j < a[0].length; j++) {
+                t[j][i] = a[i][j];
+            }
+        }
+        return t;
+    }
+
+    /** Returns alpha * A * B + beta * C. */
+    private static double[][] gemm(double alpha, double[][] a, double[][] b, double beta, double[][] c) {
+        double[][] d = new double[a.length][b[0].length];
+        for (int i = 0; i < a.length; i++) {
+            for (int j = 0; j < b[0].length; j++) {
+                double sum = 0.0;
+                for (int p = 0; p < b.length; p++) {
+                    sum += a[i][p] * b[p][j];
+                }
+                d[i][j] = alpha * sum + beta * c[i][j];
+            }
+        }
+        return d;
+    }
+
+    /** Returns alpha * A * x + beta * y. */
+    private static double[] gemv(double alpha, double[][] a, double[] x, double beta, double[] y) {
+        double[] z = new double[a.length];
+        for (int i = 0; i < a.length; i++) {
+            double sum = 0.0;
+            for (int j = 0; j < x.length; j++) {
+                sum += a[i][j] * x[j];
+            }
+            z[i] = alpha * sum + beta * y[i];
+        }
+        return z;
+    }
+
+    /** Returns the triangular part of a matrix. */
+    private static double[][] triangular(double[][] a, UPLO uplo, Diag diag) {
+        int n = a.length;
+        double[][] t = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (i == j) t[i][j] = diag == Diag.UNIT ? 1.0 : a[i][j];
+                else if (uplo == UPLO.UPPER ? i < j : i > j) t[i][j] = a[i][j];
+            }
+        }
+        return t;
+    }
+
+    /** Stores the uplo triangle of a square matrix in packed format. */
+    private static double[] pack(double[][] a, Layout layout, UPLO uplo) {
+        int n = a.length;
+        double[] x = new double[n * (n + 1) / 2];
+        int k = 0;
+        // Column-major upper is row-major lower and so on.
+        boolean columnUpper = (layout == Layout.COL_MAJOR) == (uplo == UPLO.UPPER);
+        for (int j = 0; j < n; j++) {
+            for (int i = columnUpper ? 0 : j; i < (columnUpper ? j + 1 : n); i++) {
+                x[k++] = layout == Layout.COL_MAJOR ? a[i][j] : a[j][i];
+            }
+        }
+        return x;
+    }
+
+    private static void assertMatrix(double[][] expected, double[] actual, Layout layout, int ld, double tol) {
+        for (int i = 0; i < expected.length; i++) {
+            for (int j = 0; j < expected[0].length; j++) {
+                assertEquals(expected[i][j], get(actual, layout, ld, i, j), tol, String.format("(%d, %d)", i, j));
+            }
+        }
+    }
+
+    @Test
+    public void testGemm() {
+        System.out.println("gemm");
+        int[][] sizes = {{3, 5, 7}, {67, 45, 33}, {301, 203, 157}};
+        for (int[] size : sizes) {
+            int m = size[0], n = size[1], k = size[2];
+            double[][] a = random(m, k);
+            double[][] b = random(k, n);
+            double[][] c = random(m, n);
+            double[][] expected = gemm(1.5, a, b, 0.5, c);
+            for (Layout layout : Layout.values()) {
+                for (Transpose transA : new Transpose[]{Transpose.NO_TRANSPOSE, Transpose.TRANSPOSE}) {
+                    for (Transpose transB : new Transpose[]{Transpose.NO_TRANSPOSE, Transpose.TRANSPOSE}) {
+                        double[][] opA = transA == Transpose.NO_TRANSPOSE ? a : transpose(a);
+                        double[][] opB = transB == Transpose.NO_TRANSPOSE ? b : transpose(b);
+                        int lda = (layout == Layout.COL_MAJOR ? opA.length : opA[0].length) + 1;
+                        int ldb = (layout == Layout.COL_MAJOR ? opB.length : opB[0].length) + 2;
+                        int ldc = (layout == Layout.COL_MAJOR ? m : n) + 3;
+                        double[] A = store(opA, layout, lda);
+                        double[] B = store(opB, layout, ldb);
+                        double[] C = store(c, layout, ldc);
+                        blas.gemm(layout, transA, transB, m, n, k, 1.5, A, lda, B, ldb, 0.5, C, ldc);
+                        assertMatrix(expected, C, layout, ldc, 1E-10 * k);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGemmFloat() {
+        System.out.println("gemm float");
+        int m = 130, n = 70, k = 260;
+        double[][] a = random(m, k);
+        double[][] b = random(k, n);
+        double[][] expected = gemm(1.0, a, b, 0.0, new double[m][n]);
+        for (Layout layout : Layout.values()) {
+            int lda = layout == Layout.COL_MAJOR ? m : k;
+            int ldb = layout == Layout.COL_MAJOR ? k : n;
+            int ldc = layout == Layout.COL_MAJOR ? m : n;
+            float[] A = toFloat(store(a, layout, lda));
+            float[] B = toFloat(store(b, layout, ldb));
+            float[] C = new float[m * n];
+            java.util.Arrays.fill(C, Float.NaN);
+            blas.gemm(layout, Transpose.NO_TRANSPOSE, Transpose.NO_TRANSPOSE, m, n, k, 1.0f, A, lda, B, ldb, 0.0f, C, ldc);
+            double[] D = new double[C.length];
+            for (int i = 0; i < C.length; i++) D[i] = C[i];
+            assertMatrix(expected, D, layout, ldc, 1E-3);
+        }
+    }
+
+    private static float[] toFloat(double[] x) {
+        float[] y = new float[x.length];
+        for (int i = 0; i < x.length; i++) y[i] = (float) x[i];
+        return y;
+    }
+
+    @Test
+    public void testGemv() {
+        System.out.println("gemv");
+        int m = 37, n = 23;
+        double[][] a = random(m, n);
+        for (Layout layout : Layout.values()) {
+            int lda = layout == Layout.COL_MAJOR ? m : n;
+            double[] A = store(a, layout, lda);
+            for (Transpose trans : new Transpose[]{Transpose.NO_TRANSPOSE, Transpose.TRANSPOSE}) {
+                double[][] op = trans == Transpose.NO_TRANSPOSE ? a : transpose(a);
+                double[] x = random(1, op[0].length)[0];
+                double[] y = random(1, op.length)[0];
+                double[] expected = gemv(2.0, op, x, 0.5, y);
+
+                // strided x and y
+                double[] xs = new double[2 * x.length];
+                double[] ys = new double[3 * y.length];
+                for (int i = 0; i < x.length; i++) xs[2 * i] = x[i];
+                for (int i = 0; i < y.length; i++) ys[3 * i] = y[i];
+                blas.gemv(layout, trans, m, n, 2.0, A, lda, xs, 2, 0.5, ys, 3);
+                for (int i = 0; i < y.length; i++) {
+                    assertEquals(expected[i], ys[3 * i], 1E-10);
+                }
+
+                // direct buffers with offset
+                DoubleBuffer Ab = ByteBuffer.allocateDirect(8 * A.length).order(ByteOrder.nativeOrder()).asDoubleBuffer().put(A);
+                DoubleBuffer xb = DoubleBuffer.wrap(new double[x.length + 5], 5, x.length);
+                xb.put(5, x);
+                DoubleBuffer yb = ByteBuffer.allocateDirect(8 * y.length).order(ByteOrder.nativeOrder()).asDoubleBuffer().put(y);
+                blas.gemv(layout, trans, m, n, 2.0, Ab.rewind(), lda, xb, 1, 0.5, yb.rewind(), 1);
+                for (int i = 0; i < y.length; i++) {
+                    assertEquals(expected[i], yb.get(i), 1E-10);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSymv() {
+        System.out.println("symv, spmv, sbmv");
+        int n = 29, k = 3;
+        double[][] s = symmetric(n);
+        double[][] band = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = Math.max(0, i - k); j <= Math.min(n - 1, i + k); j++) {
+                band[i][j] = s[i][j];
+            }
+        }
+        double[] x = random(1, n)[0];
+        double[] y = random(1, n)[0];
+        double[] expected = gemv(1.5, s, x, 2.0, y);
+        double[] expectedBand = gemv(1.5, band, x, 2.0, y);
+
+        for (Layout layout : Layout.values()) {
+            for (UPLO uplo : UPLO.values()) {
+                // symv references only the uplo triangle.
+                double[][] t = triangular(s, uplo, Diag.NON_UNIT);
+                double[] z = y.clone();
+                blas.symv(layout, uplo, n, 1.5, store(t, layout, n), n, x, 1, 2.0, z, 1);
+                assertArrayEquals(expected, z, 1E-10);
+
+                z = y.clone();
+                blas.spmv(layout, uplo, n, 1.5, pack(s, layout, uplo), x, 1, 2.0, z, 1);
+                assertArrayEquals(expected, z, 1E-10);
+
+                // The band storage of column-major upper triangle is
+                // the same as the row-major lower triangle and so on.
+                int lda = k + 1;
+                double[] B = new double[lda * n];
+                boolean columnUpper = (layout == Layout.COL_MAJOR) == (uplo == UPLO.UPPER);
+                for (int j = 0; j < n; j++) {
+                    for (int i = Math.max(0, j - k); i <= Math.min(n - 1, j + k); i++) {
+                        if (columnUpper && i <= j) B[k + i - j + j * lda] = band[i][j];
+                        if (!columnUpper && i >= j) B[i - j + j * lda] = band[i][j];
+                    }
+                }
+                z = y.clone();
+                blas.sbmv(layout, uplo, n, k, 1.5, B, lda, x, 1, 2.0, z, 1);
+                assertArrayEquals(expectedBand, z, 1E-10);
+            }
+        }
+    }
+
+    @Test
+    public void testTrmv() {
+        System.out.println("trmv, tpmv");
+        int n = 31;
+        double[][] a = random(n, n);
+        double[] x = random(1, n)[0];
+        for (Layout layout : Layout.values()) {
+            for (UPLO uplo : UPLO.values()) {
+                for (Diag diag : Diag.values()) {
+                    for (Transpose trans : new Transpose[]{Transpose.NO_TRANSPOSE, Transpose.TRANSPOSE}) {
+                        double[][] t = triangular(a, uplo, diag);
+                        double[][] op = trans == Transpose.NO_TRANSPOSE ? t : transpose(t);
+                        double[] expected = gemv(1.0, op, x, 0.0, new double[n]);
+
+                        double[] z = x.clone();
+                        blas.trmv(layout, uplo, trans, diag, n, store(a, layout, n), n, z, 1);
+                        assertArrayEquals(expected, z, 1E-10);
+
+                        z = x.clone();
+                        blas.tpmv(layout, uplo, trans, diag, n, pack(a, layout, uplo), z, 1);
+                        assertArrayEquals(expected, z, 1E-10);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGbmv() {
+        System.out.println("gbmv");
+        int m = 19, n = 17, kl = 2, ku = 3;
+        double[][] a = random(m, n);
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < n; j++) {
+                if (i - j > kl || j - i > ku) a[i][j] = 0.0;
+            }
+        }
+
+        // Column-major band storage.
+        int lda = kl + ku + 1;
+        double[] A = new double[lda * n];
+        for (int j = 0; j < n; j++) {
+            for (int i = Math.max(0, j - ku); i < Math.min(m, j + kl + 1); i++) {
+                A[ku + i - j + j * lda] = a[i][j];
+            }
+        }
+
+        for (Transpose trans : new Transpose[]{Transpose.NO_TRANSPOSE, Transpose.TRANSPOSE}) {
+            double[][] op = trans == Transpose.NO_TRANSPOSE ? a : transpose(a);
+            double[] x = random(1, op[0].length)[0];
+            double[] y = random(1, op.length)[0];
+            double[] expected = gemv(0.5, op, x, -1.0, y);
+            blas.gbmv(Layout.COL_MAJOR, trans, m, n, kl, ku, 0.5, A, lda, x, 1, -1.0, y, 1);
+            assertArrayEquals(expected, y, 1E-10);
+
+            // The row-major band storage of A is the column-major band storage of A'.
+            y = random(1, op.length)[0];
+            expected = gemv(0.5, op, x, -1.0, y);
+            blas.gbmv(Layout.ROW_MAJOR, trans == Transpose.NO_TRANSPOSE ? Transpose.TRANSPOSE : Transpose.NO_TRANSPOSE, n, m, ku, kl, 0.5, A, lda, x, 1, -1.0, y, 1);
+            assertArrayEquals(expected, y, 1E-10);
+        }
+    }
+
+    @Test
+    public void testRankUpdate() {
+        System.out.println("ger, syr, spr");
+        int m = 13, n = 11;
+        double[][] a = random(m, n);
+        double[] x = random(1, m)[0];
+        double[] y = random(1, n)[0];
+        double[][] expected = new double[m][n];
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < n; j++) {
+                expected[i][j] = a[i][j] + 2.0 * x[i] * y[j];
+            }
+        }
+
+        for (Layout layout : Layout.values()) {
+            int lda = layout == Layout.COL_MAJOR ? m : n;
+            double[] A = store(a, layout, lda);
+            blas.ger(layout, m, n, 2.0, x, 1, y, 1, A, lda);
+            assertMatrix(expected, A, layout, lda, 1E-10);
+        }
+
+        double[][] s = symmetric(m);
+        double[][] ss = new double[m][m];
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < m; j++) {
+                ss[i][j] = s[i][j] + 2.0 * x[i] * x[j];
+            }
+        }
+
+        for (Layout layout : Layout.values()) {
+            for (UPLO uplo : UPLO.values()) {
+                double[] S = store(s, layout, m);
+                blas.syr(layout, uplo, m, 2.0, x, 1, S, m);
+                assertMatrix(triangular(ss, uplo, Diag.NON_UNIT), store(triangularOf(S, layout, m, uplo), layout, m), layout, m, 1E-10);
+
+                double[] P = pack(s, layout, uplo);
+                blas.spr(layout, uplo, m, 2.0, x, 1, P);
+                assertArrayEquals(pack(ss, layout, uplo), P, 1E-10);
+            }
+        }
+    }
+
+    /** Returns the uplo triangle of a stored square matrix. */
+    private static double[][] triangularOf(double[] x, Layout layout, int n, UPLO uplo) {
+        double[][] a = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                a[i][j] = get(x, layout, n, i, j);
+            }
+        }
+        return triangular(a, uplo, Diag.NON_UNIT);
+    }
+
+    @Test
+    public void testSymm() {
+        System.out.println("symm");
+        int m = 45, n = 38;
+        for (Side side : Side.values()) {
+            int na = side == Side.LEFT ? m : n;
+            double[][] s = symmetric(na);
+            double[][] b = random(m, n);
+            double[][] c = random(m, n);
+            double[][] expected = side == Side.LEFT ? gemm(1.5, s, b, 0.5, c) : gemm(1.5, b, s, 0.5, c);
+            for (Layout layout : Layout.values()) {
+                for (UPLO uplo : UPLO.values()) {
+                    int ldb = layout == Layout.COL_MAJOR ? m : n;
+                    double[] C = store(c, layout, ldb);
+                    blas.symm(layout, side, uplo, m, n, 1.5, store(triangular(s, uplo, Diag.NON_UNIT), layout, na), na, store(b, layout, ldb), ldb, 0.5, C, ldb);
+                    assertMatrix(expected, C, layout, ldb, 1E-9);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSyrk() {
+        System.out.println("syrk");
+        int n = 150, k = 97;
+        double[][] a = random(n, k);
+        double[][] c = symmetric(n);
+        double[][] expected = gemm(2.0, a, transpose(a), 0.5, c);
+        for (Layout layout : Layout.values()) {
+            for (UPLO uplo : UPLO.values()) {
+                for (Transpose trans : new Transpose[]{Transpose.NO_TRANSPOSE, Transpose.TRANSPOSE}) {
+                    double[][] op = trans == Transpose.NO_TRANSPOSE ? a : transpose(a);
+                    int lda = layout == Layout.COL_MAJOR ? op.length : op[0].length;
+                    double[] C = store(c, layout, n);
+                    blas.syrk(layout, uplo, trans, n, k, 2.0, store(op, layout, lda), lda, 0.5, C, n);
+                    for (int i = 0; i < n; i++) {
+                        for (int j = 0; j < n; j++) {
+                            double value = get(C, layout, n, i, j);
+                            if (uplo == UPLO.UPPER ? i <= j : i >= j) {
+                                assertEquals(expected[i][j], value, 1E-9);
+                            } else {
+                                // The other triangle is not referenced.
+                                assertEquals(c[i][j], value, 1E-15);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLevel1() {
+        System.out.println("level 1");
+        double[] x = {1.0, -4.0, 2.0, 8.0, -3.0, 0.5};
+        double[] y = {2.0, 1.0, -1.0, 0.5, 2.0, 1.0};
+        assertEquals(18.5, blas.asum(x), 1E-15);
+        assertEquals(1.0 * 2 - 4 - 2 + 4 - 6 + 0.5, blas.dot(x, y), 1E-15);
+        assertEquals(Math.sqrt(1 + 16 + 4 + 64 + 9 + 0.25), blas.nrm2(x), 1E-15);
+        assertEquals(3, blas.iamax(x));
+        assertEquals(1E300 * Math.sqrt(2), blas.nrm2(2, new double[]{1E300, 1E300}, 1), 1E285);
+        // every other element
+        assertEquals(7.5, blas.dot(3, x, 2, new double[]{8.0, 0.5, 0.5}, 1), 1E-15);
+        double[] z = y.clone();
+        blas.axpy(2.0, x, z);
+        assertArrayEquals(new double[]{4.0, -7.0, 3.0, 16.5, -4.0, 2.0}, z, 1E-15);
+        blas.axpy(3, 1.0, x, 2, z, -2);
+        assertArrayEquals(new double[]{1.0, -7.0, 5.0, 16.5, -3.0, 2.0}, z, 1E-15);
+    }
+
+    @Test
+    public void benchmarkGemm() {
+        System.out.println("benchmark gemm");
+        BLAS engine = BLAS.engine;
+        for (int n : new int[]{256, 512, 1024}) {
+            double[] A = store(random(n, n), Layout.COL_MAJOR, n);
+            double[] B = store(random(n, n), Layout.COL_MAJOR, n);
+            double[] C = new double[n * n];
+            float[] Af = toFloat(A), Bf = toFloat(B), Cf = new float[n * n];
+            double gflop = 2.0 * n * n * n / 1E9;
+
+            blas.gemm(Layout.COL_MAJOR, Transpose.NO_TRANSPOSE, Transpose.NO_TRANSPOSE, n, n, n, 1.0, A, n, B, n, 0.0, C, n);
+            long start = System.nanoTime();
+            blas.gemm(Layout.COL_MAJOR, Transpose.NO_TRANSPOSE, Transpose.NO_TRANSPOSE, n, n, n, 1.0, A, n, B, n, 0.0, C, n);
+            double time = (System.nanoTime() - start) / 1E9;
+            System.out.format("JavaBLAS dgemm %4d: %.3f seconds, %.2f GFLOPS%n", n, time, gflop / time);
+
+            start = System.nanoTime();
+            blas.gemm(Layout.COL_MAJOR, Transpose.NO_TRANSPOSE, Transpose.NO_TRANSPOSE, n, n, n, 1.0f, Af, n, Bf, n, 0.0f, Cf, n);
+            time = (System.nanoTime() - start) / 1E9;
+            System.out.format("JavaBLAS sgemm %4d: %.3f seconds, %.2f GFLOPS%n", n, time, gflop / time);
+
+            if (!(engine instanceof JavaBLAS)) {
+                double[] D = new double[n * n];
+                engine.gemm(Layout.COL_MAJOR, Transpose.NO_TRANSPOSE, Transpose.NO_TRANSPOSE, n, n, n, 1.0, A, n, B, n, 0.0, D, n);
+                start = System.nanoTime();
+                engine.gemm(Layout.COL_MAJOR, Transpose.NO_TRANSPOSE, Transpose.NO_TRANSPOSE, n, n, n, 1.0, A, n, B, n, 0.0, D, n);
+                time = (System.nanoTime() - start) / 1E9;
+                System.out.format("%s dgemm %4d: %.3f seconds, %.2f GFLOPS%n", engine.getClass().getSimpleName(), n, time, gflop / time);
+                assertArrayEquals(D, C, 1E-9 * n);
+            }
+        }
+    }
+}
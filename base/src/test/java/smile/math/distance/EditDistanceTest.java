@@ -154,6 +154,137 @@ public class EditDistanceTest {
         assertEquals(2, edit.d("ramey", "ramfrey"), 1E-7);
     }
 
+    /** The classic dynamic programming of Levenshtein or OSA distance. */
+    private static int dp(String a, String b, boolean damerau) {
+        int m = a.length();
+        int n = b.length();
+        int[][] d = new int[m + 1][n + 1];
+        for (int i = 0; i <= m; i++) d[i][0] = i;
+        for (int j = 0; j <= n; j++) d[0][j] = j;
+        for (int i = 1; i <= m; i++) {
+            for (int j = 1; j <= n; j++) {
+                int cost = a.charAt(i-1) == b.charAt(j-1) ? 0 : 1;
+                d[i][j] = Math.min(d[i-1][j-1] + cost, Math.min(d[i-1][j], d[i][j-1]) + 1);
+                if (damerau && i > 1 && j > 1 && a.charAt(i-1) == b.charAt(j-2) && a.charAt(i-2) == b.charAt(j-1)) {
+                    d[i][j] = Math.min(d[i][j], d[i-2][j-2] + 1);
+                }
+            }
+        }
+        return d[m][n];
+    }
+
+    /** Random string of small alphabet with a few non-ASCII characters. */
+    private static String random(java.util.Random rng, int length) {
+        char[] alphabet = {'a', 'b', 'c', 'd', '\u00e9', '\u4e2d'};
+        char[] s = new char[length];
+        for (int i = 0; i < length; i++) {
+            s[i] = alphabet[rng.nextInt(alphabet.length)];
+        }
+        return new String(s);
+    }
+
+    @Test
+    public void testBitParallel() {
+        System.out.println("bit-parallel");
+        java.util.Random rng = new java.util.Random(19650218);
+        for (int iter = 0; iter < 3000; iter++) {
+            // cover single word, word boundary, and multiple words
+            int[] lengths = {0, 1, 5, 63, 64, 65, 127, 128, 130, 200};
+            String a = random(rng, iter < 1000 ? rng.nextInt(20) : lengths[rng.nextInt(lengths.length)]);
+            String b;
+            if (rng.nextBoolean()) {
+                b = random(rng, rng.nextInt(Math.max(1, a.length() + 10)));
+            } else {
+                // small perturbations
+                StringBuilder sb = new StringBuilder(a);
+                for (int k = rng.nextInt(4); k > 0 && sb.length() > 1; k--) {
+                    int pos = rng.nextInt(sb.length() - 1);
+                    switch (rng.nextInt(4)) {
+                        case 0 -> sb.deleteCharAt(pos);
+                        case 1 -> sb.insert(pos, 'x');
+                        case 2 -> sb.setCharAt(pos, 'y');
+                        default -> {
+                            char c = sb.charAt(pos);
+                            sb.setCharAt(pos, sb.charAt(pos + 1));
+                            sb.setCharAt(pos + 1, c);
+                        }
+                    }
+                }
+                b = sb.toString();
+            }
+
+            int lev = dp(a, b, false);
+            int osa = dp(a, b, true);
+            assertEquals(lev, EditDistance.levenshtein(a, b));
+            assertEquals(lev, EditDistance.levenshtein(b.toCharArray(), a.toCharArray()));
+            assertEquals(osa, EditDistance.damerau(a, b));
+            assertEquals(osa, EditDistance.damerau(b.toCharArray(), a.toCharArray()));
+            assertEquals(lev, new EditPattern(a, false).d(b));
+            assertEquals(osa, new EditPattern(b, true).d(a));
+
+            int max = rng.nextInt(5);
+            assertEquals(Math.min(lev, max + 1), EditDistance.levenshtein(a, b, max));
+            assertEquals(Math.min(osa, max + 1), EditDistance.damerau(a, b, max));
+            assertEquals(Math.min(lev, max + 1), new EditPattern(a, false).d(b, max));
+        }
+    }
+
+    @Test
+    public void testLongStrings() {
+        System.out.println("long strings");
+        EditDistance edit = new EditDistance(Math.max(H1N1.length(), H1N5.length()));
+        int d = (int) edit.d(H1N1, H1N5);
+        assertEquals(d, EditDistance.levenshtein(H1N1, H1N5));
+        assertEquals(d, dp(H1N1, H1N5, false));
+
+        edit = new EditDistance(Math.max(H1N1.length(), H1N5.length()), true);
+        d = (int) edit.d(H1N1, H1N5);
+        assertEquals(d, EditDistance.damerau(H1N1, H1N5));
+        assertEquals(d, dp(H1N1, H1N5, true));
+
+        assertEquals(d, new EditPattern(H1N1, true).d(H1N5));
+        assertEquals(11, EditDistance.damerau(H1N1, H1N5, 10));
+    }
+
+    @Test
+    public void testLongPatterns() {
+        System.out.println("long patterns");
+        java.util.Random rng = new java.util.Random(19650218);
+        // The match bit vectors of long ASCII patterns are O(m) words.
+        char[] x = new char[40000];
+        for (int i = 0; i < x.length; i++) x[i] = (char) ('a' + rng.nextInt(26));
+        char[] y = x.clone();
+        y[100] = '#';
+        y[20000] = '#';
+        y[39000] = '#';
+        assertEquals(3, EditDistance.levenshtein(x, y));
+        assertEquals(3, EditDistance.damerau(new String(x), new String(y)));
+
+        // Many distinct non-ASCII characters fall back to dynamic programming.
+        for (int iter = 0; iter < 5; iter++) {
+            char[] a = new char[3000];
+            for (int i = 0; i < a.length; i++) a[i] = (char) (0x4e00 + rng.nextInt(20000));
+            char[] b = a.clone();
+            for (int k = 0; k < 10; k++) {
+                int pos = rng.nextInt(b.length - 1);
+                char c = b[pos];
+                b[pos] = b[pos + 1];
+                b[pos + 1] = c;
+            }
+            b[rng.nextInt(b.length)] = 'z';
+            String sa = new String(a);
+            String sb = new String(b);
+            int lev = dp(sa, sb, false);
+            int osa = dp(sa, sb, true);
+            assertEquals(lev, EditDistance.levenshtein(sa, sb));
+            assertEquals(lev, EditDistance.levenshtein(b, a));
+            assertEquals(osa, EditDistance.damerau(sa, sb));
+            assertEquals(osa, EditDistance.damerau(a, b));
+            assertEquals(Math.min(osa, 6), EditDistance.damerau(sa, sb, 5));
+            assertEquals(Math.min(lev, 6), EditDistance.levenshtein(a, b, 5));
+        }
+    }
+
     @Test
     public void testPlainLevenshteinSpeedTest() {
         System.out.println("Levenshtein speed test");
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.math.matrix;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import smile.math.MathEx;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test out-of-core matrix.
+ *
+ * @author Haifeng Li
+ */
+public class MappedMatrixTest {
+
+    Path path;
+    double[][] data;
+
+    public MappedMatrixTest() {
+    }
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterAll
+    public static void tearDownClass() throws Exception {
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        MathEx.setSeed(19650218);
+        path = Files.createTempFile("smile-mapped-matrix", ".bin");
+        data = new double[1000][];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = MathEx.random(-1, 1, 30);
+        }
+
+        try (MappedMatrix matrix = MappedMatrix.create(path, data.length, 30)) {
+            // write in chunks of odd sizes
+            for (int i = 0; i < data.length; i += 333) {
+                matrix.set(i, Arrays.copyOfRange(data, i, Math.min(i + 333, data.length)));
+            }
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void testView() throws Exception {
+        System.out.println("view");
+        try (MappedMatrix matrix = MappedMatrix.open(path, 1000, 30)) {
+            BigMatrix rows = matrix.view(10, 19);
+            assertEquals(10, rows.nrow());
+            assertEquals(30, rows.ncol());
+            for (int i = 0; i < 10; i++) {
+                for (int j = 0; j < 30; j++) {
+                    assertEquals(data[10 + i][j], rows.get(i, j), 1E-15);
+                }
+            }
+
+            assertThrows(UnsupportedOperationException.class, () -> matrix.set(0, data[0]));
+            assertThrows(IllegalArgumentException.class, () -> matrix.view(990, 1000));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> MappedMatrix.open(path, 1001, 30));
+    }
+
+    @Test
+    public void testAtA() throws Exception {
+        System.out.println("ata");
+        BigMatrix expected = BigMatrix.of(data).ata();
+        try (MappedMatrix matrix = MappedMatrix.open(path, 1000, 30).tile(64)) {
+            BigMatrix ata = matrix.ata();
+            assertTrue(ata.isSymmetric());
+            assertTrue(expected.equals(ata, 1E-10));
+        }
+    }
+
+    @Test
+    public void testMm() throws Exception {
+        System.out.println("mm");
+        BigMatrix A = BigMatrix.of(data);
+        BigMatrix B = BigMatrix.randn(30, 7);
+        BigMatrix expected = A.mm(B);
+        Path file = Files.createTempFile("smile-mapped-matrix", ".bin");
+        try (MappedMatrix matrix = MappedMatrix.open(path, 1000, 30).tile(100);
+             MappedMatrix C = MappedMatrix.create(file, 1000, 7).tile(77)) {
+            assertTrue(expected.equals(matrix.mm(B), 1E-10));
+
+            matrix.mm(B, C);
+            assertTrue(expected.equals(C.view(0, 999), 1E-10));
+
+            BigMatrix tm = matrix.tm(C);
+            assertTrue(A.tm(expected).equals(tm, 1E-9));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testQR() throws Exception {
+        System.out.println("QR");
+        try (MappedMatrix matrix = MappedMatrix.open(path, 1000, 30).tile(20)) {
+            BigMatrix R = matrix.qr();
+            assertEquals(30, R.nrow());
+            assertEquals(30, R.ncol());
+            for (int i = 0; i < 30; i++) {
+                for (int j = 0; j < i; j++) {
+                    assertEquals(0.0, R.get(i, j), 1E-15);
+                }
+            }
+
+            // R' * R = A' * A regardless of the signs of rows of R.
+            assertTrue(matrix.ata().equals(R.ata(), 1E-9));
+        }
+    }
+
+    @Test
+    public void testSVD() throws Exception {
+        System.out.println("SVD");
+        int m = 1000, n = 30, k = 5;
+        BigMatrix A = BigMatrix.randn(m, k).mm(BigMatrix.randn(k, n));
+        Path file = Files.createTempFile("smile-mapped-matrix", ".bin");
+        try (MappedMatrix matrix = MappedMatrix.create(file, m, n).tile(128)) {
+            for (int i = 0; i < m; i++) {
+                matrix.set(i, A.row(i));
+            }
+
+            BigMatrix.SVD expected = A.svd(false, false);
+            BigMatrix.SVD svd = matrix.svd(k, 5, 1);
+            for (int i = 0; i < k; i++) {
+                assertEquals(expected.s.get(i), svd.s.get(i), 1E-7 * expected.s.get(0));
+            }
+
+            assertEquals(m, svd.U.nrow());
+            assertEquals(k, svd.U.ncol());
+            assertEquals(n, svd.V.nrow());
+            assertEquals(k, svd.V.ncol());
+
+            // The rank k matrix is reconstructed.
+            BigMatrix USV = svd.U.mm(BigMatrix.diag(svd.s)).mt(svd.V);
+            assertTrue(A.equals(USV, 1E-7));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
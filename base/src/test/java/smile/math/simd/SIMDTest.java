@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2010-2021 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.math.simd;
+
+import smile.math.MathEx;
+import smile.math.distance.EuclideanDistance;
+import smile.math.distance.ManhattanDistance;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author Haifeng Li
+ */
+public class SIMDTest {
+
+    public SIMDTest() {
+    }
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterAll
+    public static void tearDownClass() throws Exception {
+    }
+
+    @BeforeEach
+    public void setUp() {
+    }
+
+    @AfterEach
+    public void tearDown() {
+    }
+
+    @Test
+    public void testKernels() {
+        System.out.println("SIMD kernels: vectorized = " + SIMD.engine.isVectorized());
+
+        MathEx.setSeed(19650218); // to get repeatable results.
+        SIMD scalar = new ScalarSIMD();
+        for (int n : new int[]{1, 3, 7, 8, 17, 64, 100, 1001, 5000}) {
+            double[] x = new double[n];
+            double[] y = new double[n];
+            float[] xf = new float[n];
+            float[] yf = new float[n];
+            byte[] q = new byte[n + 5];
+            for (int i = 0; i < n; i++) {
+                x[i] = MathEx.random() - 0.5;
+                y[i] = MathEx.random() - 0.3;
+                xf[i] = (float) x[i];
+                yf[i] = (float) y[i];
+            }
+            for (int i = 0; i < q.length; i++) {
+                q[i] = (byte) (MathEx.randomInt(256) - 128);
+            }
+
+            assertEquals(scalar.dot(x, y), SIMD.engine.dot(x, y), 1E-10);
+            assertEquals(scalar.dot(xf, yf), SIMD.engine.dot(xf, yf), 1E-3);
+            assertEquals(scalar.dot(xf, 0, q, 5, n), SIMD.engine.dot(xf, 0, q, 5, n), 1E-1);
+            if (n > 2) {
+                assertEquals(scalar.dot(xf, 2, q, 3, n - 2), SIMD.engine.dot(xf, 2, q, 3, n - 2), 1E-1);
+            }
+            assertEquals(scalar.squaredDistance(x, y), SIMD.engine.squaredDistance(x, y), 1E-10);
+            assertEquals(scalar.squaredDistance(xf, yf), SIMD.engine.squaredDistance(xf, yf), 1E-3);
+            assertEquals(scalar.manhattan(x, y), SIMD.engine.manhattan(x, y), 1E-10);
+            assertEquals(scalar.manhattan(xf, yf), SIMD.engine.manhattan(xf, yf), 1E-3);
+            assertEquals(scalar.sum(x), SIMD.engine.sum(x), 1E-10);
+            if (n >= 3) {
+                assertEquals(scalar.cor(x, y), SIMD.engine.cor(x, y), 1E-10);
+            }
+        }
+    }
+
+    @Test
+    public void testMissingValues() {
+        System.out.println("SIMD missing values");
+
+        double[] x = {1.0, 2.0, Double.NaN, 4.0, 5.0, 6.0, 7.0, 8.0, 9.0, 10.0};
+        double[] y = {2.0, 2.0, 3.0, Double.NaN, 5.0, 6.0, 7.0, 8.0, 9.0, 11.0};
+        // n * d / m with n = 10, m = 8, d = 2
+        assertEquals(Math.sqrt(2.5), new EuclideanDistance().d(x, y), 1E-10);
+        assertEquals(2.5, new ManhattanDistance().d(x, y), 1E-10);
+
+        x[2] = 3.0;
+        y[3] = 4.0;
+        assertEquals(Math.sqrt(2.0), new EuclideanDistance().d(x, y), 1E-10);
+        assertEquals(2.0, new ManhattanDistance().d(x, y), 1E-10);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2010-2021 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.neighbor;
+
+import java.util.Arrays;
+import smile.math.MathEx;
+import smile.math.distance.EuclideanDistance;
+import smile.test.data.SwissRoll;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author Haifeng Li
+ */
+public class BlockLinearSearchTest {
+
+    public BlockLinearSearchTest() {
+    }
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterAll
+    public static void tearDownClass() throws Exception {
+    }
+
+    @BeforeEach
+    public void setUp() {
+    }
+
+    @AfterEach
+    public void tearDown() {
+    }
+
+    @Test
+    public void testRandom() {
+        System.out.println("----- random -----");
+
+        MathEx.setSeed(19650218); // to get repeatable results.
+        double[][] x = new double[3000][20];
+        for (double[] xi : x) {
+            for (int j = 0; j < xi.length; j++) {
+                xi[j] = MathEx.random();
+            }
+        }
+
+        double[][] q = new double[300][];
+        System.arraycopy(x, 0, q, 0, 100);
+        for (int i = 100; i < q.length; i++) {
+            q[i] = x[i].clone();
+            q[i][0] += 0.01;
+        }
+
+        // a small block size to exercise multiple and partial blocks
+        BlockLinearSearch block = new BlockLinearSearch(x, 256);
+        LinearSearch<double[], double[]> naive = LinearSearch.of(x, new EuclideanDistance());
+
+        int k = 7;
+        double[][] distance = new double[q.length][];
+        int[][] index = block.search(q, k, distance);
+        for (int i = 0; i < q.length; i++) {
+            Neighbor<double[], double[]>[] truth = naive.search(q[i], k);
+            Arrays.sort(truth);
+            for (int j = 0; j < k; j++) {
+                assertEquals(truth[j].index, index[i][j]);
+                assertEquals(truth[j].distance, distance[i][j], 1E-7);
+            }
+
+            Neighbor<double[], double[]>[] neighbors = block.search(q[i], k);
+            for (int j = 0; j < k; j++) {
+                assertEquals(truth[j].index, neighbors[j].index);
+                assertSame(x[truth[j].index], neighbors[j].value);
+            }
+        }
+
+        assertEquals(naive.nearest(x[5]).index, block.nearest(x[5]).index);
+    }
+
+    @Test
+    public void testFloat() {
+        System.out.println("----- float -----");
+
+        MathEx.setSeed(19650218); // to get repeatable results.
+        double[][] x = new double[2000][16];
+        float[][] xf = new float[x.length][16];
+        for (int i = 0; i < x.length; i++) {
+            for (int j = 0; j < 16; j++) {
+                xf[i][j] = (float) MathEx.random();
+                x[i][j] = xf[i][j];
+            }
+        }
+
+        double[][] q = new double[100][16];
+        float[][] qf = new float[q.length][16];
+        for (int i = 0; i < q.length; i++) {
+            for (int j = 0; j < 16; j++) {
+                qf[i][j] = (float) MathEx.random();
+                q[i][j] = qf[i][j];
+            }
+        }
+
+        FloatBlockLinearSearch block = new FloatBlockLinearSearch(xf, 300);
+        LinearSearch<double[], double[]> naive = LinearSearch.of(x, new EuclideanDistance());
+
+        double[][] distance = new double[q.length][];
+        int[][] index = block.search(qf, 3, distance);
+        for (int i = 0; i < q.length; i++) {
+            Neighbor<double[], double[]>[] truth = naive.search(q[i], 3);
+            Arrays.sort(truth);
+            assertEquals(truth[0].index, index[i][0]);
+            for (int j = 0; j < 3; j++) {
+                assertEquals(truth[j].distance, distance[i][j], 1E-3);
+            }
+        }
+    }
+
+    @Test
+    public void testSwissRoll() {
+        System.out.println("----- Swiss Roll -----");
+
+        double[][] x = new double[10000][];
+        double[][] testx = new double[1000][];
+        System.arraycopy(SwissRoll.data, 0, x, 0, x.length);
+        System.arraycopy(SwissRoll.data, x.length, testx, 0, testx.length);
+
+        BlockLinearSearch block = new BlockLinearSearch(x);
+
+        long start = System.currentTimeMillis();
+        block.search(testx, 10, null);
+        double time = (System.currentTimeMillis() - start) / 1000.0;
+        System.out.format("Batch 10-NN: %.2fs%n", time);
+
+        start = System.currentTimeMillis();
+        for (double[] xi : testx) {
+            block.search(xi, 10);
+        }
+        time = (System.currentTimeMillis() - start) / 1000.0;
+        System.out.format("10-NN: %.2fs%n", time);
+    }
+}
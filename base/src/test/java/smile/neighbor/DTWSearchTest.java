@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.neighbor;
+
+import java.util.Arrays;
+import smile.math.MathEx;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author Haifeng Li
+ */
+public class DTWSearchTest {
+
+    public DTWSearchTest() {
+    }
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterAll
+    public static void tearDownClass() throws Exception {
+    }
+
+    @BeforeEach
+    public void setUp() {
+    }
+
+    @AfterEach
+    public void tearDown() {
+    }
+
+    /** Random walks with random offset and scale. */
+    private static double[][] walks(int n, int m) {
+        double[][] x = new double[n][m];
+        for (double[] xi : x) {
+            double offset = MathEx.random(-10, 10);
+            double scale = MathEx.random(0.5, 2);
+            double v = 0.0;
+            for (int j = 0; j < m; j++) {
+                v += MathEx.random(-1, 1);
+                xi[j] = offset + scale * v;
+            }
+        }
+        return x;
+    }
+
+    /** Z-normalizes a time series. */
+    private static double[] znorm(double[] x) {
+        double mu = MathEx.mean(x);
+        double sum2 = 0.0;
+        for (double xi : x) sum2 += xi * xi;
+        double variance = sum2 / x.length - mu * mu;
+        double sd = variance > 0.0 ? Math.sqrt(variance) : 1.0;
+        return Arrays.stream(x).map(xi -> (xi - mu) / sd).toArray();
+    }
+
+    /** The naive DTW with squared cost and Sakoe-Chiba band. */
+    private static double dtw(double[] x, double[] y, int r) {
+        int m = x.length;
+        double[][] d = new double[m + 1][m + 1];
+        for (double[] di : d) Arrays.fill(di, Double.POSITIVE_INFINITY);
+        d[0][0] = 0.0;
+        for (int i = 1; i <= m; i++) {
+            for (int j = Math.max(1, i - r); j <= Math.min(m, i + r); j++) {
+                double cost = (x[i-1] - y[j-1]) * (x[i-1] - y[j-1]);
+                d[i][j] = cost + Math.min(d[i-1][j-1], Math.min(d[i-1][j], d[i][j-1]));
+            }
+        }
+        return Math.sqrt(d[m][m]);
+    }
+
+    /** Returns the sorted distances to all references by brute force. */
+    private static double[] naive(double[][] x, double[] q, int r, boolean normalize) {
+        double[] z = normalize ? znorm(q) : q;
+        return Arrays.stream(x)
+                .filter(xi -> xi != q)
+                .mapToDouble(xi -> dtw(normalize ? znorm(xi) : xi, z, r))
+                .sorted()
+                .toArray();
+    }
+
+    private void test(boolean normalize) {
+        MathEx.setSeed(19650218); // to get repeatable results.
+        int m = 64;
+        // more than one chunk in the parallel scan
+        double[][] x = walks(5000, m);
+        double[][] q = new double[20][];
+        System.arraycopy(x, 0, q, 0, 10);
+        double[][] y = walks(10, m);
+        System.arraycopy(y, 0, q, 10, 10);
+
+        DTWSearch<double[]> search = new DTWSearch<>(x, x, 0.1, normalize);
+        System.out.println(search);
+        assertEquals(5000, search.size());
+        int r = (int) Math.round(0.1 * m);
+
+        int k = 5;
+        double[][] distance = new double[q.length][];
+        int[][] index = search.search(q, k, distance);
+        for (int i = 0; i < q.length; i++) {
+            double[] truth = naive(x, q[i], r, normalize);
+            Neighbor<double[], double[]>[] neighbors = search.search(q[i], k);
+            for (int j = 0; j < k; j++) {
+                assertEquals(truth[j], neighbors[j].distance, 1E-7);
+                assertEquals(truth[j], distance[i][j], 1E-7);
+                assertNotSame(q[i], neighbors[j].key);
+                double[] key = x[index[i][j]];
+                double d = dtw(normalize ? znorm(key) : key, normalize ? znorm(q[i]) : q[i], r);
+                assertEquals(truth[j], d, 1E-7);
+            }
+
+            Neighbor<double[], double[]> nearest = search.nearest(q[i]);
+            assertEquals(truth[0], nearest.distance, 1E-7);
+        }
+    }
+
+    @Test
+    public void testNormalized() {
+        System.out.println("----- z-normalized -----");
+        test(true);
+    }
+
+    @Test
+    public void testRaw() {
+        System.out.println("----- raw -----");
+        test(false);
+    }
+
+    @Test
+    public void testShort() {
+        System.out.println("----- short -----");
+        MathEx.setSeed(19650218); // to get repeatable results.
+        for (int m = 1; m <= 8; m++) {
+            double[][] x = walks(200, m);
+            DTWSearch<double[]> search = new DTWSearch<>(x, x, 0.5, false);
+            int r = Math.min(m - 1, (int) Math.round(0.5 * m));
+            double[] q = walks(1, m)[0];
+            double[] truth = naive(x, q, r, false);
+            Neighbor<double[], double[]>[] neighbors = search.search(q, 3);
+            for (int j = 0; j < 3; j++) {
+                assertEquals(truth[j], neighbors[j].distance, 1E-7);
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidLength() {
+        System.out.println("----- invalid length -----");
+        double[][] x = {{1, 2, 3}, {1, 2}};
+        assertThrows(IllegalArgumentException.class, () -> DTWSearch.of(x, 0.1));
+    }
+}
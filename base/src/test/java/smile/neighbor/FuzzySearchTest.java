@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.neighbor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import smile.math.MathEx;
+import smile.math.distance.EditDistance;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author Haifeng Li
+ */
+public class FuzzySearchTest {
+
+    String[] words;
+
+    public FuzzySearchTest() {
+        MathEx.setSeed(19650218); // to get repeatable results.
+        char[] alphabet = "abcdefgh".toCharArray();
+        words = new String[5000];
+        for (int i = 0; i < words.length; i++) {
+            char[] w = new char[3 + MathEx.randomInt(8)];
+            for (int j = 0; j < w.length; j++) {
+                w[j] = alphabet[MathEx.randomInt(alphabet.length)];
+            }
+            words[i] = new String(w);
+        }
+    }
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterAll
+    public static void tearDownClass() throws Exception {
+    }
+
+    @BeforeEach
+    public void setUp() {
+    }
+
+    @AfterEach
+    public void tearDown() {
+    }
+
+    private void testRange(boolean damerau) {
+        FuzzySearch<String> search = FuzzySearch.of(words, damerau);
+        BKTree<String, String> bktree = BKTree.of(words, new EditDistance(damerau));
+        System.out.println(search);
+        assertEquals(words.length, search.size());
+
+        String[] q = Arrays.copyOf(words, 100);
+        for (int radius = 1; radius <= 3; radius++) {
+            List<Neighbor<String, String>>[] batch = search.search(q, radius);
+            for (int i = 0; i < q.length; i++) {
+                List<Neighbor<String, String>> n1 = new ArrayList<>();
+                List<Neighbor<String, String>> n2 = new ArrayList<>();
+                search.search(q[i], radius, n1);
+                bktree.search(q[i], radius, n2);
+
+                int[] i1 = n1.stream().mapToInt(n -> n.index).sorted().toArray();
+                int[] i3 = batch[i].stream().mapToInt(n -> n.index).sorted().toArray();
+                assertArrayEquals(i1, i3);
+                // BK-tree drops the duplicate words.
+                Set<String> keys = n1.stream().map(n -> n.key).collect(Collectors.toSet());
+                for (Neighbor<String, String> n : n2) {
+                    assertTrue(keys.contains(n.key));
+                }
+                for (Neighbor<String, String> n : n1) {
+                    int d = damerau ? EditDistance.damerau(q[i], n.key) : EditDistance.levenshtein(q[i], n.key);
+                    assertEquals(d, (int) n.distance);
+                    assertTrue(d <= radius);
+                    assertNotSame(q[i], n.key);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLevenshteinRange() {
+        System.out.println("----- Levenshtein range -----");
+        testRange(false);
+    }
+
+    @Test
+    public void testDamerauRange() {
+        System.out.println("----- Damerau range -----");
+        testRange(true);
+    }
+
+    @Test
+    public void testKNN() {
+        System.out.println("----- knn -----");
+        FuzzySearch<String> search = FuzzySearch.of(words);
+        LinearSearch<String, String> naive = LinearSearch.of(words, new EditDistance());
+
+        String[] q = new String[200];
+        System.arraycopy(words, 0, q, 0, 100);
+        for (int i = 100; i < q.length; i++) {
+            q[i] = words[i] + "x";
+        }
+
+        int k = 5;
+        double[][] distance = new double[q.length][];
+        int[][] index = search.search(q, k, distance);
+        for (int i = 0; i < q.length; i++) {
+            Neighbor<String, String>[] truth = naive.search(q[i], k);
+            Arrays.sort(truth);
+            Neighbor<String, String>[] neighbors = search.search(q[i], k);
+            for (int j = 0; j < k; j++) {
+                assertEquals(truth[j].distance, neighbors[j].distance, 1E-7);
+                assertEquals(truth[j].distance, distance[i][j], 1E-7);
+                assertEquals(truth[j].distance, EditDistance.levenshtein(q[i], words[index[i][j]]), 1E-7);
+            }
+        }
+    }
+}
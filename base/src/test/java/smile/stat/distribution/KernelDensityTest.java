@@ -144,4 +144,42 @@ public class KernelDensityTest {
         double result = instance.logp(3.5);
         assertEquals(expResult, result, 1E-8);
     }
-}
\ No newline at end of file
+
+    /**
+     * Test of batch p method, of class KernelDensity.
+     */
+    @Test
+    public void testBatchP() {
+        System.out.println("batch p");
+        KernelDensity instance = new KernelDensity(x);
+        double[] q = {-2.0, 0.0, 3.5, 7.0, 12.0};
+        double[] result = instance.p(q);
+        for (int i = 0; i < q.length; i++) {
+            assertEquals(instance.p(q[i]), result[i], 1E-15);
+        }
+    }
+
+    /**
+     * Test of grid method, of class KernelDensity.
+     */
+    @Test
+    public void testGrid() {
+        System.out.println("grid");
+        KernelDensity instance = new KernelDensity(x);
+        int m = 201;
+        double from = -6.0;
+        double to = 14.0;
+        double[] result = instance.grid(from, to, m);
+        assertEquals(m, result.length);
+
+        double delta = (to - from) / (m - 1);
+        double integral = 0.0;
+        for (int i = 0; i < m; i++) {
+            double p = instance.p(from + i * delta);
+            assertEquals(p, result[i], 1E-3);
+            integral += result[i] * delta;
+        }
+        assertEquals(1.0, integral, 1E-3);
+        assertEquals(0.10122, result[95], 1E-3);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.stat.distribution;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import smile.math.MathEx;
+import smile.math.matrix.Matrix;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author Haifeng Li
+ */
+public class MultivariateGaussianMixtureTest {
+
+    double[][] mu = {
+            {1.0, 1.0},
+            {8.0, 2.0},
+            {3.0, 9.0}
+    };
+
+    public MultivariateGaussianMixtureTest() {
+    }
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterAll
+    public static void tearDownClass() throws Exception {
+    }
+
+    @BeforeEach
+    public void setUp() {
+    }
+
+    @AfterEach
+    public void tearDown() {
+    }
+
+    /** Generates the samples of three Gaussians. */
+    private double[][] data(int n) {
+        Matrix cov = Matrix.of(new double[][]{{1.0, 0.3}, {0.3, 0.5}});
+        MultivariateGaussianDistribution[] gaussian = Arrays.stream(mu)
+                .map(mean -> new MultivariateGaussianDistribution(mean, cov))
+                .toArray(MultivariateGaussianDistribution[]::new);
+
+        double[][] data = new double[n][];
+        for (int i = 0; i < n; i++) {
+            data[i] = gaussian[i % 3].rand();
+        }
+        return data;
+    }
+
+    /** Checks if each true mean has a close component. */
+    private void check(MultivariateMixture mixture) {
+        for (double[] mean : mu) {
+            double dist = Arrays.stream(mixture.components)
+                    .mapToDouble(c -> MathEx.distance(mean, c.distribution.mean()))
+                    .min().orElseThrow();
+            assertEquals(0.0, dist, 0.2);
+        }
+
+        for (MultivariateMixture.Component c : mixture.components) {
+            assertEquals(1.0 / 3, c.priori, 0.05);
+        }
+    }
+
+    @Test
+    public void testFit() {
+        System.out.println("fit");
+        MathEx.setSeed(19650218); // to get repeatable results.
+        double[][] data = data(30000);
+
+        MultivariateGaussianMixture mixture = MultivariateGaussianMixture.fit(3, data);
+        System.out.println(mixture);
+        assertEquals(3, mixture.size());
+        check(mixture);
+        assertEquals(mixture.L, mixture.bic + 0.5 * mixture.length() * Math.log(data.length), 1E-7);
+        assertEquals(mixture.bic, mixture.bic(data), 1E-4 * Math.abs(mixture.bic));
+    }
+
+    @Test
+    public void testDiagonal() {
+        System.out.println("diagonal");
+        MathEx.setSeed(19650218); // to get repeatable results.
+        double[][] data = data(30000);
+
+        MultivariateGaussianMixture mixture = MultivariateGaussianMixture.fit(3, data, true);
+        System.out.println(mixture);
+        for (MultivariateMixture.Component c : mixture.components) {
+            assertTrue(((MultivariateGaussianDistribution) c.distribution).diagonal);
+        }
+    }
+
+    @Test
+    public void testBIC() {
+        System.out.println("BIC");
+        MathEx.setSeed(19650218); // to get repeatable results.
+        double[][] data = data(3000);
+
+        MultivariateGaussianMixture mixture = MultivariateGaussianMixture.fit(data);
+        System.out.println(mixture);
+        assertEquals(3, mixture.size());
+        check(mixture);
+    }
+
+    @Test
+    public void testMiniBatch() {
+        System.out.println("mini-batch");
+        MathEx.setSeed(19650218); // to get repeatable results.
+        double[][] data = data(100000);
+
+        MultivariateGaussianMixture mixture = MultivariateGaussianMixture.fit(3,
+                IntStream.range(0, 50).mapToObj(i -> Arrays.copyOfRange(data, i * 2000, (i + 1) * 2000)),
+                false);
+        System.out.println(mixture);
+        assertEquals(3, mixture.size());
+        check(mixture);
+
+        MultivariateGaussianMixture batch = MultivariateGaussianMixture.fit(3, data);
+        assertEquals(batch.bic(data), mixture.bic(data), 1E-3 * Math.abs(batch.bic(data)));
+    }
+
+    @Test
+    public void testMiniBatchOffset() {
+        System.out.println("mini-batch with large offset");
+        MathEx.setSeed(19650218); // to get repeatable results.
+        double[][] data = data(100000);
+        // The uncentered second moments lose all precision of variance.
+        for (double[] x : data) {
+            for (int i = 0; i < x.length; i++) {
+                x[i] += 1E8;
+            }
+        }
+
+        MultivariateGaussianMixture mixture = MultivariateGaussianMixture.fit(3,
+                IntStream.range(0, 50).mapToObj(i -> Arrays.copyOfRange(data, i * 2000, (i + 1) * 2000)),
+                false);
+        System.out.println(mixture);
+        assertEquals(3, mixture.size());
+
+        MultivariateGaussianMixture batch = MultivariateGaussianMixture.fit(3, data);
+        assertEquals(batch.bic(data), mixture.bic(data), 1E-3 * Math.abs(batch.bic(data)));
+    }
+
+    @Test
+    public void testLogp() {
+        System.out.println("logp");
+        MathEx.setSeed(19650218); // to get repeatable results.
+        double[][] data = data(100);
+        MultivariateGaussianDistribution gaussian = MultivariateGaussianDistribution.fit(data);
+        MultivariateMixture.Component[] components = {
+                new MultivariateMixture.Component(0.5, gaussian),
+                new MultivariateMixture.Component(0.5, new MultivariateGaussianDistribution(mu[0], 1.0))
+        };
+
+        double[][] posteriori = new double[2][data.length];
+        double L = MultivariateExponentialFamilyMixture.estep(data, components, 0.0, posteriori);
+        MultivariateMixture mixture = new MultivariateMixture(components);
+        double expected = 0.0;
+        for (int j = 0; j < data.length; j++) {
+            expected += mixture.logp(data[j]);
+            double[] p = mixture.posteriori(data[j]);
+            assertEquals(p[0], posteriori[0][j], 1E-10);
+            assertEquals(p[1], posteriori[1][j], 1E-10);
+        }
+        assertEquals(expected, L, 1E-7);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.stat.distribution;
+
+import smile.math.MathEx;
+import smile.math.matrix.Matrix;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author Haifeng Li
+ */
+public class MultivariateKernelDensityTest {
+
+    double[][] data;
+    double[][] query;
+
+    public MultivariateKernelDensityTest() {
+        MathEx.setSeed(19650218); // to get repeatable results.
+        MultivariateGaussianDistribution gaussian = new MultivariateGaussianDistribution(
+                new double[]{1.0, -1.0, 0.5},
+                Matrix.of(new double[][]{{1.0, 0.4, 0.1}, {0.4, 2.0, 0.3}, {0.1, 0.3, 0.5}}));
+        data = gaussian.rand(5000);
+        query = gaussian.rand(2000);
+    }
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterAll
+    public static void tearDownClass() throws Exception {
+    }
+
+    @BeforeEach
+    public void setUp() {
+    }
+
+    @AfterEach
+    public void tearDown() {
+    }
+
+    /** The brute force density. */
+    private double naive(double[][] data, double[] h, double[] x) {
+        double p = 0.0;
+        for (double[] y : data) {
+            double k = 1.0;
+            for (int j = 0; j < h.length; j++) {
+                k *= new GaussianDistribution(0, h[j]).p(x[j] - y[j]);
+            }
+            p += k;
+        }
+        return p / data.length;
+    }
+
+    @Test
+    public void testBandwidth() {
+        System.out.println("bandwidth");
+        MultivariateKernelDensity kde = new MultivariateKernelDensity(data);
+        double[] h = kde.bandwidth();
+        double[] sd = MathEx.colSds(data);
+        double factor = Math.pow(data.length, -1.0 / 7);
+        for (int j = 0; j < h.length; j++) {
+            assertEquals(sd[j] * factor, h[j], 1E-10);
+        }
+        assertEquals(data.length, kde.size());
+    }
+
+    @Test
+    public void testExact() {
+        System.out.println("exact");
+        MultivariateKernelDensity kde = new MultivariateKernelDensity(data);
+        double[] h = kde.bandwidth();
+        double[] p = kde.p(query);
+        for (int i = 0; i < 100; i++) {
+            double expected = naive(data, h, query[i]);
+            assertEquals(expected, p[i], 1E-12 * expected);
+            assertEquals(expected, kde.p(query[i]), 1E-12 * expected);
+        }
+    }
+
+    @Test
+    public void testApproximate() {
+        System.out.println("approximate");
+        MultivariateKernelDensity kde = new MultivariateKernelDensity(data);
+        double[] exact = kde.p(query);
+        double rtol = 0.01;
+        double atol = 1E-6;
+        double[] p = kde.p(query, rtol, atol);
+        for (int i = 0; i < query.length; i++) {
+            assertEquals(exact[i], p[i], rtol * exact[i] + atol);
+        }
+    }
+
+    @Test
+    public void testOutlier() {
+        System.out.println("outlier");
+        MultivariateKernelDensity kde = new MultivariateKernelDensity(data);
+        double[][] x = {{1.0, -1.0, 0.5}, {10.0, 10.0, 10.0}};
+        double[] p = kde.p(x, 0.01, 0.0);
+        assertTrue(p[0] > 0.01);
+        assertEquals(0.0, p[1], 1E-30);
+    }
+}
@@ -20,10 +20,10 @@ package smile.anomaly;
 import java.io.Serial;
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Properties;
 import java.util.stream.IntStream;
 import smile.math.MathEx;
+import smile.math.matrix.Matrix;
 
 /**
  * Isolation forest is an unsupervised learning algorithm for anomaly
@@ -76,6 +76,10 @@ public class IsolationForest implements Serializable {
      * Euler constant.
      */
     private static final double EULER = 0.5772156649;
+    /**
+     * The number of samples scored together in batch scoring.
+     */
+    static final int BLOCK_SIZE = 256;
     /**
      * Forest of isolation trees.
      */
@@ -212,6 +216,41 @@ public class IsolationForest implements Serializable {
      * @return the anomaly score.
      */
     public double score(double[] x) {
+        return score(trees, c, x);
+    }
+
+    /**
+     * Returns the anomaly scores. The samples are scored in blocks.
+     * Within a block, each tree is traversed for all samples before
+     * moving to the next tree so that the tree arrays stay in the cache.
+     * The blocks are processed in parallel.
+     *
+     * @param x the samples.
+     * @return the anomaly scores.
+     */
+    public double[] score(double[][] x) {
+        return score(trees, c, x);
+    }
+
+    /**
+     * Returns the anomaly scores of the rows of a matrix.
+     *
+     * @param x the samples.
+     * @return the anomaly scores.
+     */
+    public double[] score(Matrix x) {
+        return score(trees, c, x);
+    }
+
+    /**
+     * Returns the anomaly score.
+     *
+     * @param trees the isolation trees.
+     * @param c the normalizing factor.
+     * @param x the sample.
+     * @return the anomaly score.
+     */
+    static double score(IsolationTree[] trees, double c, double[] x) {
         double length = 0.0;
         for (IsolationTree tree : trees) {
             length += tree.path(x);
@@ -222,13 +261,64 @@ public class IsolationForest implements Serializable {
     }
 
     /**
-     * Returns the anomaly scores.
+     * Returns the anomaly scores with blocked tree traversal.
      *
+     * @param trees the isolation trees.
+     * @param c the normalizing factor.
      * @param x the samples.
      * @return the anomaly scores.
      */
-    public double[] score(double[][] x) {
-        return Arrays.stream(x).parallel().mapToDouble(this::score).toArray();
+    static double[] score(IsolationTree[] trees, double c, double[][] x) {
+        int n = x.length;
+        double[] score = new double[n];
+        IntStream.range(0, (n + BLOCK_SIZE - 1) / BLOCK_SIZE).parallel().forEach(block -> {
+            int from = block * BLOCK_SIZE;
+            int to = Math.min(from + BLOCK_SIZE, n);
+            double[] length = new double[to - from];
+            for (IsolationTree tree : trees) {
+                tree.path(x, from, to, length);
+            }
+            normalize(trees.length, c, length, score, from);
+        });
+        return score;
+    }
+
+    /**
+     * Returns the anomaly scores of the rows of a matrix with blocked
+     * tree traversal.
+     *
+     * @param trees the isolation trees.
+     * @param c the normalizing factor.
+     * @param x the samples.
+     * @return the anomaly scores.
+     */
+    static double[] score(IsolationTree[] trees, double c, Matrix x) {
+        int n = x.nrow();
+        double[] score = new double[n];
+        IntStream.range(0, (n + BLOCK_SIZE - 1) / BLOCK_SIZE).parallel().forEach(block -> {
+            int from = block * BLOCK_SIZE;
+            int to = Math.min(from + BLOCK_SIZE, n);
+            double[] length = new double[to - from];
+            for (IsolationTree tree : trees) {
+                tree.path(x, from, to, length);
+            }
+            normalize(trees.length, c, length, score, from);
+        });
+        return score;
+    }
+
+    /**
+     * Converts the total path lengths of a block to anomaly scores.
+     * @param ntrees the number of trees.
+     * @param c the normalizing factor.
+     * @param length the total path lengths of a block.
+     * @param score the output anomaly scores.
+     * @param from the offset of block in the output.
+     */
+    private static void normalize(int ntrees, double c, double[] length, double[] score, int from) {
+        for (int i = 0; i < length.length; i++) {
+            score[from + i] = Math.pow(2.0, -length[i] / ntrees / c);
+        }
     }
 
     /**
@@ -17,87 +17,58 @@
 
 package smile.anomaly;
 
+import java.io.Serial;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import smile.math.MathEx;
+import smile.math.matrix.Matrix;
 import smile.stat.distribution.GaussianDistribution;
+import smile.util.DoubleArrayList;
+import smile.util.IntArrayList;
 
 /**
- * Isolation tree.
+ * Isolation tree. The tree is stored in a compact array-encoded form
+ * rather than linked node objects. Node i is an internal node if
+ * {@code left[i] >= 0}. The nonzero components of its random hyperplane
+ * normal vector are stored in {@code index} and {@code weight} within
+ * the range {@code [offset[i], offset[i+1])}, so that the standard
+ * isolation forest (extension level 0) needs only one coefficient per
+ * node. The tree traversal is therefore a tight loop over primitive
+ * arrays, which is cache-friendly for batch scoring.
  *
  * @author Haifeng Li
  */
 public class IsolationTree implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 2L;
+
     /**
-     * Isolation tree node.
+     * The left child of internal nodes, or -1 for leaf nodes.
      */
-    static class Node implements Serializable {
-        /** The adjusted depth of node in the tree. */
-        final double depth;
-        /** The normal vector of random hyperplane, uniformly over the unit N-Sphere. */
-        final double[] slope;
-        /**
-         * The intercept point, draw from a uniform distribution
-         * over the range of values present at each branching point
-         */
-        final double[] intercept;
-        /** The dot product of slope and intercept. */
-        final double bias;
-        /** The left child branch. */
-        final Node left;
-        /** The right child branch. */
-        final Node right;
-
-        /**
-         * Leaf node constructor.
-         * @param depth the adjusted depth of node in the tree.
-         */
-        Node(double depth) {
-            this(depth, null, null, 0.0, null, null);
-        }
-
-        /**
-         * Constructor.
-         * @param depth the adjusted depth of node in the tree.
-         * @param slope the normal vector of random hyperplane.
-         * @param intercept the intercept point.
-         * @param bias the dot product of slope and intercept.
-         * @param left the left child branch.
-         * @param right the right child branch.
-         */
-        Node(double depth, double[] slope, double[] intercept, double bias, Node left, Node right) {
-            this.depth = depth;
-            this.slope = slope;
-            this.intercept = intercept;
-            this.bias = bias;
-            this.left = left;
-            this.right = right;
-        }
-
-        /**
-         * Returns the path length from the root to the leaf node.
-         * @param x the sample.
-         * @return the path length.
-         */
-        public double path(double[] x) {
-            if (left == null && right == null) {
-                return depth;
-            } else {
-                double dot = MathEx.dot(x, slope);
-                if (dot < bias) {
-                    return left.path(x);
-                } else {
-                    return right.path(x);
-                }
-            }
-        }
-    }
-
+    private final int[] left;
+    /**
+     * The right child of internal nodes, or -1 for leaf nodes.
+     */
+    private final int[] right;
+    /**
+     * The split threshold of internal nodes, i.e. the dot product of the
+     * slope and intercept, or the adjusted depth of leaf nodes.
+     */
+    private final double[] value;
+    /**
+     * The start position of node's slope coefficients in index/weight.
+     * It has one more element than the number of nodes.
+     */
+    private final int[] offset;
+    /**
+     * The feature index of nonzero slope coefficients.
+     */
+    private final int[] index;
     /**
-     * Tree root node.
+     * The nonzero slope coefficients.
      */
-    private final Node root;
+    private final double[] weight;
 
     /**
      * Constructor.
@@ -107,7 +78,25 @@ public class IsolationTree implements Serializable {
      * @param extensionLevel the extension level.
      */
     public IsolationTree(List<double[]> data, int maxDepth, int extensionLevel) {
-        root = buildNode(data, maxDepth, extensionLevel, 0);
+        Builder builder = new Builder(maxDepth, extensionLevel);
+        builder.build(data, 0);
+
+        // The sentinel so that offset[i+1] is always valid.
+        builder.offset.add(builder.index.size());
+        left = builder.left.toArray();
+        right = builder.right.toArray();
+        value = builder.value.toArray();
+        offset = builder.offset.toArray();
+        index = builder.index.toArray();
+        weight = builder.weight.toArray();
+    }
+
+    /**
+     * Returns the number of nodes in the tree.
+     * @return the number of nodes in the tree.
+     */
+    public int size() {
+        return left.length;
     }
 
     /**
@@ -116,25 +105,119 @@ public class IsolationTree implements Serializable {
      * @return the path length.
      */
     public double path(double[] x) {
-        return root.path(x);
+        int node = 0;
+        while (left[node] >= 0) {
+            double dot = 0.0;
+            for (int k = offset[node]; k < offset[node+1]; k++) {
+                dot += weight[k] * x[index[k]];
+            }
+            node = dot < value[node] ? left[node] : right[node];
+        }
+        return value[node];
     }
 
     /**
-     * Builds an isolation tree node.
-     * @param data the training data.
-     * @param maxDepth the maximum depth of the tree.
-     * @param extensionLevel the extension level.
-     * @param depth the node depth in the tree.
-     * @return the node.
+     * Returns the path length from the root to the leaf node
+     * of a row in the matrix.
+     * @param x the samples.
+     * @param i the row index of sample.
+     * @return the path length.
      */
-    private Node buildNode(List<double[]> data, int maxDepth, int extensionLevel, int depth) {
-        if (depth >= maxDepth || data.size() <= 1) {
-            double adjustedDepth = depth;
-            if (data.size() > 1) {
-                adjustedDepth += IsolationForest.factor(data.size());
+    public double path(Matrix x, int i) {
+        int node = 0;
+        while (left[node] >= 0) {
+            double dot = 0.0;
+            for (int k = offset[node]; k < offset[node+1]; k++) {
+                dot += weight[k] * x.get(i, index[k]);
             }
-            return new Node(adjustedDepth);
-        } else {
+            node = dot < value[node] ? left[node] : right[node];
+        }
+        return value[node];
+    }
+
+    /**
+     * Adds the path lengths of a block of samples to the accumulator.
+     * Traversing the same tree for consecutive samples keeps the tree
+     * arrays in the cache.
+     * @param x the samples.
+     * @param from the index of first sample, inclusive.
+     * @param to the index of last sample, exclusive.
+     * @param length the accumulator of path lengths, indexed from 0 for
+     *               the sample at {@code from}.
+     */
+    void path(double[][] x, int from, int to, double[] length) {
+        for (int i = from; i < to; i++) {
+            length[i - from] += path(x[i]);
+        }
+    }
+
+    /**
+     * Adds the path lengths of a block of matrix rows to the accumulator.
+     * @param x the samples.
+     * @param from the index of first row, inclusive.
+     * @param to the index of last row, exclusive.
+     * @param length the accumulator of path lengths, indexed from 0 for
+     *               the row at {@code from}.
+     */
+    void path(Matrix x, int from, int to, double[] length) {
+        for (int i = from; i < to; i++) {
+            length[i - from] += path(x, i);
+        }
+    }
+
+    /**
+     * The builder of array-encoded tree, which appends nodes
+     * in the depth-first order.
+     */
+    private static class Builder {
+        /** The maximum depth of the tree. */
+        final int maxDepth;
+        /** The extension level. */
+        final int extensionLevel;
+        /** The left children. */
+        final IntArrayList left = new IntArrayList();
+        /** The right children. */
+        final IntArrayList right = new IntArrayList();
+        /** The split threshold or adjusted depth. */
+        final DoubleArrayList value = new DoubleArrayList();
+        /** The start position of slope coefficients. */
+        final IntArrayList offset = new IntArrayList();
+        /** The feature index of slope coefficients. */
+        final IntArrayList index = new IntArrayList();
+        /** The slope coefficients. */
+        final DoubleArrayList weight = new DoubleArrayList();
+
+        /** Constructor. */
+        Builder(int maxDepth, int extensionLevel) {
+            this.maxDepth = maxDepth;
+            this.extensionLevel = extensionLevel;
+        }
+
+        /** Appends a node and returns its index. */
+        int add(double value) {
+            int node = left.size();
+            left.add(-1);
+            right.add(-1);
+            this.value.add(value);
+            offset.add(index.size());
+            return node;
+        }
+
+        /**
+         * Builds an isolation tree node.
+         * @param data the training data.
+         * @param depth the node depth in the tree.
+         * @return the node index.
+         */
+        int build(List<double[]> data, int depth) {
+            if (depth >= maxDepth || data.size() <= 1) {
+                double adjustedDepth = depth;
+                if (data.size() > 1) {
+                    adjustedDepth += IsolationForest.factor(data.size());
+                }
+                return add(adjustedDepth);
+            }
+
             double[] min = data.get(0).clone();
             double[] max = data.get(0).clone();
             int p = min.length;
@@ -158,12 +241,20 @@ public class IsolationTree implements Serializable {
                 slope[i] = gauss.rand();
             }
 
-            int[] index = MathEx.permutate(p);
+            int[] perm = MathEx.permutate(p);
             for (int i = 0; i < p - extensionLevel - 1; i++) {
-                slope[index[i]] = 0.0;
+                slope[perm[i]] = 0.0;
             }
 
             double bias = MathEx.dot(slope, intercept);
+            int node = add(bias);
+            for (int i = 0; i < p; i++) {
+                if (slope[i] != 0.0) {
+                    index.add(i);
+                    weight.add(slope[i]);
+                }
+            }
+
             ArrayList<double[]> leftData = new ArrayList<>();
             ArrayList<double[]> rightData = new ArrayList<>();
             for (double[] x : data) {
@@ -175,10 +266,9 @@ public class IsolationTree implements Serializable {
                 }
             }
 
-            Node left = buildNode(leftData, maxDepth, extensionLevel, depth+1);
-            Node right = buildNode(rightData, maxDepth, extensionLevel, depth+1);
-
-            return new Node(depth, slope, intercept, bias, left, right);
+            left.set(node, build(leftData, depth+1));
+            right.set(node, build(rightData, depth+1));
+            return node;
         }
     }
 }
@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.anomaly;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+import smile.math.MathEx;
+import smile.math.matrix.Matrix;
+
+/**
+ * Isolation forest over a sliding window of data stream. The model keeps
+ * the most recent samples in a fixed size window. After every refresh
+ * interval of new samples, the oldest trees are rebuilt from random
+ * subsamples of the current window in a round-robin fashion. Therefore,
+ * the forest tracks the drift of stream without refitting from scratch,
+ * and the whole forest is renewed once every
+ * {@code ntrees / refreshTrees * refreshInterval} samples.
+ * <p>
+ * Following the original isolation forest, each tree is built on a small
+ * subsample (256 by default) of the window, which keeps the refresh cheap.
+ * The subsamples are drawn in {@link #update} while the trees are built
+ * in the background, and the forest is replaced atomically when they are
+ * ready. If a refresh is still running when the next one is due, the
+ * next one is deferred and rebuilds the trees of all intervals passed.
+ * The scoring methods can be called concurrently with {@code update},
+ * which are synchronized. The window keeps copies of the samples.
+ *
+ * @see IsolationForest
+ *
+ * @author Haifeng Li
+ */
+public class StreamingIsolationForest implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(StreamingIsolationForest.class);
+
+    /**
+     * The sliding window of recent samples as a ring buffer.
+     */
+    private final double[][] window;
+    /**
+     * The number of samples to build each tree.
+     */
+    private final int sampleSize;
+    /**
+     * The number of trees to rebuild in each refresh.
+     */
+    private final int refreshTrees;
+    /**
+     * The number of new samples between refreshes.
+     */
+    private final int refreshInterval;
+    /**
+     * The maximum depth of trees.
+     */
+    private final int maxDepth;
+    /**
+     * The extension level.
+     */
+    private final int extensionLevel;
+    /**
+     * The position in the window to write next sample.
+     */
+    private int head;
+    /**
+     * The number of samples in the window.
+     */
+    private int size;
+    /**
+     * The number of samples since last refresh.
+     */
+    private int pending;
+    /**
+     * The index of next tree to rebuild.
+     */
+    private int next;
+    /**
+     * Forest of isolation trees, which is copied on write.
+     */
+    private volatile Forest forest;
+    /**
+     * The refresh in progress.
+     */
+    private transient CompletableFuture<Void> refreshing;
+
+    /**
+     * The isolation trees and the normalizing factor of path length.
+     * @param trees the isolation trees.
+     * @param samples the number of samples to build each tree, which is
+     *                less than the sample size if the window was not full.
+     * @param c the normalizing factor, i.e. the average of trees.
+     */
+    private record Forest(IsolationTree[] trees, int[] samples, double c) implements Serializable {
+        /**
+         * Constructor.
+         * @param trees the isolation trees.
+         * @param samples the number of samples to build each tree.
+         */
+        Forest(IsolationTree[] trees, int[] samples) {
+            this(trees, samples, Arrays.stream(samples).mapToDouble(IsolationForest::factor).average().orElseThrow());
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param data the initial samples. Only the most recent
+     *             {@code windowSize} samples are kept.
+     * @param ntrees the number of trees.
+     * @param windowSize the size of sliding window.
+     * @param sampleSize the number of samples to build each tree.
+     * @param refreshTrees the number of trees to rebuild in each refresh.
+     * @param refreshInterval the number of new samples between refreshes.
+     * @param extensionLevel the extension level.
+     */
+    public StreamingIsolationForest(double[][] data, int ntrees, int windowSize, int sampleSize,
+                                    int refreshTrees, int refreshInterval, int extensionLevel) {
+        if (ntrees < 1) {
+            throw new IllegalArgumentException("Invalid number of trees: " + ntrees);
+        }
+
+        if (sampleSize < 2) {
+            throw new IllegalArgumentException("Invalid sample size: " + sampleSize);
+        }
+
+        if (windowSize < sampleSize) {
+            throw new IllegalArgumentException(String.format("Window size %d is smaller than sample size %d", windowSize, sampleSize));
+        }
+
+        if (refreshTrees < 1 || refreshTrees > ntrees) {
+            throw new IllegalArgumentException("Invalid number of trees to refresh: " + refreshTrees);
+        }
+
+        if (refreshInterval < 1) {
+            throw new IllegalArgumentException("Invalid refresh interval: " + refreshInterval);
+        }
+
+        if (data.length < 2) {
+            throw new IllegalArgumentException("Too few initial samples: " + data.length);
+        }
+
+        if (extensionLevel < 0 || extensionLevel > data[0].length - 1) {
+            throw new IllegalArgumentException("Invalid extension level: " + extensionLevel);
+        }
+
+        this.window = new double[windowSize][];
+        this.sampleSize = sampleSize;
+        this.refreshTrees = refreshTrees;
+        this.refreshInterval = refreshInterval;
+        this.maxDepth = (int) Math.ceil(MathEx.log2(sampleSize));
+        this.extensionLevel = extensionLevel;
+
+        for (int i = Math.max(0, data.length - windowSize); i < data.length; i++) {
+            add(data[i]);
+        }
+
+        IsolationTree[] trees = IntStream.range(0, ntrees).parallel()
+                .mapToObj(i -> new IsolationTree(subsample(), maxDepth, extensionLevel))
+                .toArray(IsolationTree[]::new);
+        int[] samples = new int[ntrees];
+        Arrays.fill(samples, Math.min(sampleSize, size));
+        this.forest = new Forest(trees, samples);
+    }
+
+    /**
+     * Fits a streaming isolation forest on the initial samples.
+     *
+     * @param data the initial samples.
+     * @return the model.
+     */
+    public static StreamingIsolationForest fit(double[][] data) {
+        return fit(data, new Properties());
+    }
+
+    /**
+     * Fits a streaming isolation forest on the initial samples.
+     *
+     * @param data the initial samples.
+     * @param params the hyperparameters.
+     * @return the model.
+     */
+    public static StreamingIsolationForest fit(double[][] data, Properties params) {
+        int ntrees = Integer.parseInt(params.getProperty("smile.isolation_forest.trees", "100"));
+        int windowSize = Integer.parseInt(params.getProperty("smile.isolation_forest.window_size", "10000"));
+        int sampleSize = Integer.parseInt(params.getProperty("smile.isolation_forest.sample_size", "256"));
+        int refreshTrees = Integer.parseInt(params.getProperty("smile.isolation_forest.refresh_trees", String.valueOf(Math.max(1, ntrees / 10))));
+        // By default, the whole forest is renewed once per window.
+        int refreshInterval = Integer.parseInt(params.getProperty("smile.isolation_forest.refresh_interval",
+                String.valueOf(Math.max(1, windowSize * refreshTrees / ntrees))));
+        int extensionLevel = Integer.parseInt(params.getProperty("smile.isolation_forest.extension_level",
+                String.valueOf(data[0].length - 1)));
+        return new StreamingIsolationForest(data, ntrees, windowSize, sampleSize, refreshTrees, refreshInterval, extensionLevel);
+    }
+
+    /** Adds a copy of sample to the window. */
+    private void add(double[] x) {
+        window[head] = x.clone();
+        head = (head + 1) % window.length;
+        if (size < window.length) size++;
+    }
+
+    /**
+     * Returns a random subsample of the window. The samples in the window
+     * are never modified so that the subsample can be used by other threads.
+     */
+    private List<double[]> subsample() {
+        int m = Math.min(sampleSize, size);
+        ArrayList<double[]> samples = new ArrayList<>(m);
+        if (m == size) {
+            for (int i = 0; i < size; i++) {
+                samples.add(window[i]);
+            }
+        } else {
+            int[] index = MathEx.permutate(size);
+            for (int i = 0; i < m; i++) {
+                samples.add(window[index[i]]);
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Updates the model with a new sample. When the refresh interval
+     * is reached, the oldest trees are rebuilt on the current window
+     * in the background.
+     *
+     * @param x the new sample.
+     */
+    public synchronized void update(double[] x) {
+        add(x);
+        if (++pending >= refreshInterval && (refreshing == null || refreshing.isDone())) {
+            refresh();
+        }
+    }
+
+    /**
+     * Updates the model with a mini-batch of new samples.
+     *
+     * @param x the new samples.
+     */
+    public synchronized void update(double[][] x) {
+        for (double[] xi : x) {
+            update(xi);
+        }
+    }
+
+    /**
+     * Draws the subsamples of the oldest trees and rebuilds them in the
+     * background, which swaps in the new forest when done. The number of
+     * trees to rebuild covers all the refresh intervals passed.
+     */
+    private void refresh() {
+        int count = (int) Math.min(forest.trees.length, (long) refreshTrees * (pending / refreshInterval));
+        pending %= refreshInterval;
+        List<List<double[]>> samples = IntStream.range(0, count)
+                .mapToObj(i -> subsample())
+                .toList();
+        int from = next;
+        next = (next + count) % forest.trees.length;
+        int windowSize = size;
+
+        refreshing = CompletableFuture.runAsync(() -> {
+            IsolationTree[] fresh = samples.parallelStream()
+                    .map(sample -> new IsolationTree(sample, maxDepth, extensionLevel))
+                    .toArray(IsolationTree[]::new);
+
+            synchronized (this) {
+                IsolationTree[] trees = forest.trees.clone();
+                int[] sizes = forest.samples.clone();
+                for (int i = 0; i < count; i++) {
+                    int j = (from + i) % trees.length;
+                    trees[j] = fresh[i];
+                    sizes[j] = samples.get(i).size();
+                }
+                forest = new Forest(trees, sizes);
+            }
+            logger.debug("Rebuild {} isolation trees on the window of {} samples", count, windowSize);
+        }).exceptionally(ex -> {
+            logger.error("Failed to rebuild isolation trees", ex);
+            return null;
+        });
+    }
+
+    /**
+     * Waits for the refresh in progress, if any, to finish and runs
+     * the refresh deferred by it so that the model reflects the window.
+     */
+    public void awaitRefresh() {
+        while (true) {
+            CompletableFuture<Void> future;
+            synchronized (this) {
+                if (refreshing == null || refreshing.isDone()) {
+                    if (pending < refreshInterval) return;
+                    refresh();
+                }
+                future = refreshing;
+            }
+            future.join();
+        }
+    }
+
+    /**
+     * Returns the number of trees in the model.
+     *
+     * @return the number of trees in the model.
+     */
+    public int size() {
+        return forest.trees.length;
+    }
+
+    /**
+     * Returns the isolation trees in the model.
+     *
+     * @return the isolation trees in the model.
+     */
+    public IsolationTree[] trees() {
+        return forest.trees.clone();
+    }
+
+    /**
+     * Returns the anomaly score.
+     *
+     * @param x the sample.
+     * @return the anomaly score.
+     */
+    public double score(double[] x) {
+        Forest forest = this.forest;
+        return IsolationForest.score(forest.trees, forest.c, x);
+    }
+
+    /**
+     * Returns the anomaly scores.
+     *
+     * @param x the samples.
+     * @return the anomaly scores.
+     */
+    public double[] score(double[][] x) {
+        Forest forest = this.forest;
+        return IsolationForest.score(forest.trees, forest.c, x);
+    }
+
+    /**
+     * Returns the anomaly scores of the rows of a matrix.
+     *
+     * @param x the samples.
+     * @return the anomaly scores.
+     */
+    public double[] score(Matrix x) {
+        Forest forest = this.forest;
+        return IsolationForest.score(forest.trees, forest.c, x);
+    }
+}
@@ -18,6 +18,7 @@
 package smile.association;
 
 import java.util.*;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import smile.association.TotalSupportTree.Node;
@@ -91,7 +92,7 @@ public class ARM implements Iterable<AssociationRule> {
                         Node child = root.children[i];
                         if (root.children[i] != null) {
                             int[] itemset = {child.id};
-                            generate(itemset, i, child);
+                            generate(itemset, i, child, buffer);
 
                             if (!buffer.isEmpty()) {
                                 i++; // we will miss i++ in for loop once break
@@ -123,13 +124,71 @@ public class ARM implements Iterable<AssociationRule> {
         return StreamSupport.stream(arm.spliterator(), false);
     }
 
+    /**
+     * Mines the association rules in parallel. The total support tree is
+     * built by the parallel miner of frequent item sets, and the rules of
+     * each top level subtree are generated as an independent task.
+     * The order of rules is not deterministic.
+     *
+     * @param confidence the confidence threshold for association rules.
+     * @param tree the FP-tree.
+     * @return the parallel stream of association rules.
+     */
+    public static Stream<AssociationRule> parallel(double confidence, FPTree tree) {
+        TotalSupportTree ttree = new TotalSupportTree(tree);
+        ARM arm = new ARM(confidence, ttree);
+        Node root = ttree.root();
+        return IntStream.range(0, root.children.length).parallel()
+                .filter(i -> root.children[i] != null)
+                .mapToObj(i -> {
+                    Queue<AssociationRule> rules = new ArrayDeque<>();
+                    arm.generate(new int[]{root.children[i].id}, i, root.children[i], rules);
+                    return rules;
+                })
+                .flatMap(Collection::stream);
+    }
+
+    /**
+     * Mines the top-k association rules. The rules are streamed through
+     * a bounded heap so that only k rules are retained in memory at any time.
+     * For example, {@code ARM.top(100, 0.5, tree, Comparator.comparingDouble(r -> r.lift))}
+     * returns the 100 rules of the highest lift.
+     *
+     * @param k the number of rules to return.
+     * @param confidence the confidence threshold for association rules.
+     * @param tree the FP-tree.
+     * @param comparator the order of rules, e.g. by confidence or lift.
+     * @return the top-k rules in the descending order.
+     */
+    public static List<AssociationRule> top(int k, double confidence, FPTree tree, Comparator<AssociationRule> comparator) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Invalid k: " + k);
+        }
+
+        // Min-heap of the best rules so far.
+        PriorityQueue<AssociationRule> heap = new PriorityQueue<>(k + 1, comparator);
+        apply(confidence, tree).forEach(rule -> {
+            if (heap.size() < k) {
+                heap.offer(rule);
+            } else if (comparator.compare(rule, heap.peek()) > 0) {
+                heap.poll();
+                heap.offer(rule);
+            }
+        });
+
+        ArrayList<AssociationRule> rules = new ArrayList<>(heap);
+        rules.sort(comparator.reversed());
+        return rules;
+    }
+
     /**
      * Generates association rules from a T-tree.
      * @param itemset the label for a T-tree node as generated so far.
      * @param size the size of the current array level in the T-tree.
      * @param node the current node in the T-tree.
+     * @param rules the buffer to collect the rules.
      */
-    private void generate(int[] itemset, int size, Node node) {
+    private void generate(int[] itemset, int size, Node node, Queue<AssociationRule> rules) {
         if (node.children == null) {
             return;
         }
@@ -138,9 +197,9 @@ public class ARM implements Iterable<AssociationRule> {
             if (node.children[i] != null) {
                 int[] newItemset = FPGrowth.insert(itemset, node.children[i].id);
                 // Generate ARs for current large itemset
-                generate(newItemset, node.children[i].support);
+                generate(newItemset, node.children[i].support, rules);
                 // Continue generation process
-                generate(newItemset, i, node.children[i]);
+                generate(newItemset, i, node.children[i], rules);
             }
         }
     }
@@ -149,8 +208,9 @@ public class ARM implements Iterable<AssociationRule> {
      * Generates all association rules for a given item set.
      * @param itemset the given frequent item set.
      * @param support the associated support value for the item set.
+     * @param rules the buffer to collect the rules.
      */
-    private void generate(int[] itemset, int support) {
+    private void generate(int[] itemset, int support, Queue<AssociationRule> rules) {
         // Determine combinations
         int[][] combinations = getPowerSet(itemset);
 
@@ -168,7 +228,7 @@ public class ARM implements Iterable<AssociationRule> {
                     double lift = support / (antecedentSupport * consequentSupport / size);
                     double leverage = supp - (antecedentSupport / size) * (consequentSupport / size);
                     AssociationRule ar = new AssociationRule(combination, complement, supp, arc, lift, leverage);
-                    buffer.offer(ar);
+                    rules.offer(ar);
                 }
             }
         }
@@ -18,10 +18,10 @@
 package smile.association;
 
 import java.util.*;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import smile.association.FPTree.HeaderTableItem;
-import smile.association.FPTree.Node;
 
 /**
  * Frequent item set mining based on the FP-growth (frequent pattern growth)
@@ -67,10 +67,6 @@ public class FPGrowth implements Iterable<ItemSet> {
      * FP-tree.
      */
     private final FPTree T0;
-    /**
-     * The buffer to collect mining results.
-     */
-    private final Queue<ItemSet> buffer = new LinkedList<>();
 
     /**
      * Constructor.
@@ -92,40 +88,7 @@ public class FPGrowth implements Iterable<ItemSet> {
 
     @Override
     public Iterator<ItemSet> iterator() {
-        return new Iterator<>() {
-            final int[] prefixItemset = new int[T0.maxItemSetSize];
-            final int[] localItemSupport = new int[T0.numItems];
-            int i = T0.headerTable.length;
-
-            @Override
-            public boolean hasNext() {
-                if (buffer.isEmpty()) {
-                    /*
-                     * Mines frequent item sets. Start with the bottom of the header table and
-                     * work upwards. For each available FP tree node:
-                     *
-                     * - Count the support.
-                     * - Build up item set sofar.
-                     * - Add to supported sets.
-                     * - Build a new FP tree: (i) create a new local root, (ii) create a
-                     *   new local header table and (iii) populate with ancestors.
-                     * - If new local FP tree is not empty repeat mining operation.
-                     *
-                     * Otherwise, end.
-                     */
-                    if (i-- > 0) {
-                        grow(T0.headerTable[i], null, localItemSupport, prefixItemset);
-                    }
-                }
-
-                return !buffer.isEmpty();
-            }
-
-            @Override
-            public ItemSet next() {
-                return buffer.poll();
-            }
-        };
+        return new Miner(0, T0.headerTable.length);
     }
 
     /**
@@ -139,147 +102,227 @@ public class FPGrowth implements Iterable<ItemSet> {
     }
 
     /**
-     * Mines frequent item sets. Start with the bottom of the header table and
-     * work upwards. For each available FP tree node:
-     * <OL>
-     * <LI> Count the support.
-     * <LI> Build up item set sofar.
-     * <LI> Add to supported sets.
-     * <LI> Build a new FP tree: (i) create a new local root, (ii) create a
-     * new local header table and (iii) populate with ancestors.
-     * <LI> If new local FP tree is not empty repeat mining operation.
-     * </OL>
-     * Otherwise, end.
-     * @param itemset the current item sets as generated so far (null at start).
+     * Mines the frequent item sets in parallel. The conditional pattern
+     * base of each frequent item (i.e. the projected database) is mined
+     * as an independent fork-join task. Each task has its own workspace
+     * and buffers the item sets of its header item before passing them
+     * downstream. Therefore, only the results of the items being mined
+     * are held in memory at the same time, rather than all item sets.
+     * The order of item sets is not deterministic.
+     *
+     * @param tree the FP-tree of item sets.
+     * @return the parallel stream of frequent item sets.
      */
-    private void grow(FPTree fptree, int[] itemset, int[] localItemSupport, int[] prefixItemset) {
-        // Loop through header table from end to start, item by item
-        for (int i = fptree.headerTable.length; i-- > 0;) {
-            grow(fptree.headerTable[i], itemset, localItemSupport, prefixItemset);
-        }
+    public static Stream<ItemSet> parallel(FPTree tree) {
+        FPGrowth growth = new FPGrowth(tree);
+        // Start with the least frequent items, which usually have
+        // the largest conditional pattern bases.
+        int n = tree.headerTable.length;
+        return IntStream.range(0, n).parallel()
+                .mapToObj(i -> n - 1 - i)
+                .flatMap(i -> StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+                        growth.new Miner(i, i + 1), Spliterator.NONNULL), false));
     }
 
     /**
-     * Adds an item set to the result.
+     * The miner of frequent item sets of a range of header table items.
+     * The header items are mined one at a time and all item sets of
+     * a header item are buffered before being returned. It is not
+     * thread safe, and each thread should have its own miner.
      */
-    private void collect(int[] itemset, int support) {
-        buffer.offer(new ItemSet(itemset, support));
-    }
+    private class Miner implements Iterator<ItemSet> {
+        /** The buffer to collect mining results. */
+        final ArrayDeque<ItemSet> buffer = new ArrayDeque<>();
+        /** The workspace of prefix item set. */
+        final int[] prefixItemset = new int[T0.maxItemSetSize];
+        /** The workspace of local item support. */
+        final int[] localItemSupport = new int[T0.numItems];
+        /** The lower bound of header table items to mine. */
+        final int from;
+        /** The next header table item to mine, in the descending order. */
+        int i;
 
-    /**
-     * Mines all combinations along a single path tree
-     */
-    private void grow(FPTree.Node node, int[] itemset, int support) {
-        int height = 0;
-        for (FPTree.Node currentNode = node; currentNode != null; currentNode = currentNode.parent) {
-            height ++;
+        /**
+         * Constructor.
+         * @param from the lower bound of header table items, inclusive.
+         * @param to the upper bound of header table items, exclusive.
+         */
+        Miner(int from, int to) {
+            this.from = from;
+            this.i = to;
         }
 
-        if (height > 0) {
-            int[] items = new int[height];
-            int i = 0;
-            for (FPTree.Node currentNode = node; currentNode != null; currentNode = currentNode.parent) {
-                items[i ++] = currentNode.id;
+        @Override
+        public boolean hasNext() {
+            /*
+             * Mines frequent item sets. Start with the bottom of the header table and
+             * work upwards. For each available FP tree node:
+             *
+             * - Count the support.
+             * - Build up item set sofar.
+             * - Add to supported sets.
+             * - Build a new FP tree: (i) create a new local root, (ii) create a
+             *   new local header table and (iii) populate with ancestors.
+             * - If new local FP tree is not empty repeat mining operation.
+             *
+             * Otherwise, end.
+             */
+            while (buffer.isEmpty() && i-- > from) {
+                grow(T0, T0.headerTable[i], null);
             }
 
-            int[] itemIndexStack = new int[height];
-            int itemIndexStackPos = 0;
-            itemset = insert(itemset, items[itemIndexStack[itemIndexStackPos]]);
-            collect(itemset, support);
+            return !buffer.isEmpty();
+        }
 
-            while (itemIndexStack[0] < height - 1) {
-                if (itemIndexStack[itemIndexStackPos] < height - 1) {
-                    itemIndexStackPos ++;
-                    itemIndexStack[itemIndexStackPos] = itemIndexStack[itemIndexStackPos - 1] + 1;
-                    itemset = insert(itemset, items[itemIndexStack[itemIndexStackPos]]);
-                    collect(itemset, support);
-                } else {
-                    itemset = drop(itemset);
-                    if (itemset != null) {
-                        itemIndexStackPos --;
-                        itemIndexStack[itemIndexStackPos] = itemIndexStack[itemIndexStackPos] + 1;
-                        itemset[0] = items[itemIndexStack[itemIndexStackPos]];
+        @Override
+        public ItemSet next() {
+            return buffer.poll();
+        }
+
+        /**
+         * Mines frequent item sets. Start with the bottom of the header table and
+         * work upwards. For each available FP tree node:
+         * <OL>
+         * <LI> Count the support.
+         * <LI> Build up item set sofar.
+         * <LI> Add to supported sets.
+         * <LI> Build a new FP tree: (i) create a new local root, (ii) create a
+         * new local header table and (iii) populate with ancestors.
+         * <LI> If new local FP tree is not empty repeat mining operation.
+         * </OL>
+         * Otherwise, end.
+         * @param itemset the current item sets as generated so far (null at start).
+         */
+        private void grow(FPTree fptree, int[] itemset) {
+            // Loop through header table from end to start, item by item
+            for (int i = fptree.headerTable.length; i-- > 0;) {
+                grow(fptree, fptree.headerTable[i], itemset);
+            }
+        }
+
+        /**
+         * Adds an item set to the result.
+         */
+        private void collect(int[] itemset, int support) {
+            buffer.offer(new ItemSet(itemset, support));
+        }
+
+        /**
+         * Mines all combinations along a single path tree
+         */
+        private void grow(FPTree fptree, int node, int[] itemset, int support) {
+            int height = 0;
+            for (int currentNode = node; currentNode != FPTree.NIL; currentNode = fptree.parent[currentNode]) {
+                height ++;
+            }
+
+            if (height > 0) {
+                int[] items = new int[height];
+                int i = 0;
+                for (int currentNode = node; currentNode != FPTree.NIL; currentNode = fptree.parent[currentNode]) {
+                    items[i ++] = fptree.item[currentNode];
+                }
+
+                int[] itemIndexStack = new int[height];
+                int itemIndexStackPos = 0;
+                itemset = insert(itemset, items[itemIndexStack[itemIndexStackPos]]);
+                collect(itemset, support);
+
+                while (itemIndexStack[0] < height - 1) {
+                    if (itemIndexStack[itemIndexStackPos] < height - 1) {
+                        itemIndexStackPos ++;
+                        itemIndexStack[itemIndexStackPos] = itemIndexStack[itemIndexStackPos - 1] + 1;
+                        itemset = insert(itemset, items[itemIndexStack[itemIndexStackPos]]);
                         collect(itemset, support);
+                    } else {
+                        itemset = drop(itemset);
+                        if (itemset != null) {
+                            itemIndexStackPos --;
+                            itemIndexStack[itemIndexStackPos] = itemIndexStack[itemIndexStackPos] + 1;
+                            itemset[0] = items[itemIndexStack[itemIndexStackPos]];
+                            collect(itemset, support);
+                        }
                     }
                 }
             }
         }
-    }
 
-    /**
-     * Mines FP-tree with respect to a single element in the header table.
-     * @param header the header table item of interest.
-     * @param itemset the item set represented by the current FP-tree.
-     */
-    private void grow(HeaderTableItem header, int[] itemset, int[] localItemSupport, int[] prefixItemset) {
-        int support = header.count;
-        int item = header.id;
-        itemset = insert(itemset, item);
-
-        collect(itemset, support);
-        
-        if (header.node.next == null) {
-            FPTree.Node node = header.node;
-            grow(node.parent, itemset, support);
-        } else {
-            // Count singles in linked list
-            if (getLocalItemSupport(header.node, localItemSupport)) {
-                // Create local FP tree
-                FPTree fptree = getLocalFPTree(header.node, localItemSupport, prefixItemset);
-                // Mine new FP-tree
-                grow(fptree, itemset, localItemSupport, prefixItemset);
+        /**
+         * Mines FP-tree with respect to a single element in the header table.
+         * @param fptree the FP-tree.
+         * @param header the header table item of interest.
+         * @param itemset the item set represented by the current FP-tree.
+         */
+        private void grow(FPTree fptree, HeaderTableItem header, int[] itemset) {
+            int support = header.count;
+            int item = header.id;
+            itemset = insert(itemset, item);
+
+            collect(itemset, support);
+
+            if (fptree.next[header.node] == FPTree.NIL) {
+                grow(fptree, fptree.parent[header.node], itemset, support);
+            } else {
+                // Count singles in linked list
+                if (getLocalItemSupport(fptree, header.node)) {
+                    // Create local FP tree
+                    FPTree local = getLocalFPTree(fptree, header.node);
+                    // Mine new FP-tree
+                    grow(local, itemset);
+                }
             }
         }
-    }
 
-    /**
-     * Counts the supports of single items in ancestor item sets linked list.
-     * @return true if there are condition patterns given this node
-     */
-    private boolean getLocalItemSupport(FPTree.Node node, int[] localItemSupport) {
-        boolean end = true;
-        Arrays.fill(localItemSupport, 0);
-        while (node != null) {
-            int support = node.count;
-            Node parent = node.parent;
-            while (parent != null) {
-                localItemSupport[parent.id] += support;
-                parent = parent.parent;
-                end = false;
+        /**
+         * Counts the supports of single items in ancestor item sets linked list.
+         * @return true if there are condition patterns given this node
+         */
+        private boolean getLocalItemSupport(FPTree fptree, int node) {
+            boolean end = true;
+            Arrays.fill(localItemSupport, 0);
+            while (node != FPTree.NIL) {
+                int support = fptree.count[node];
+                int parent = fptree.parent[node];
+                while (parent != FPTree.NIL) {
+                    localItemSupport[fptree.item[parent]] += support;
+                    parent = fptree.parent[parent];
+                    end = false;
+                }
+
+                node = fptree.next[node];
             }
-            
-            node = node.next;
+
+            return !end;
         }
 
-        return !end;
-    }
+        /**
+         * Generates a local FP tree
+         * @param node the conditional patterns given this node to construct the local FP-tree.
+         * @return the local FP-tree.
+         */
+        private FPTree getLocalFPTree(FPTree fptree, int node) {
+            FPTree tree = new FPTree(minSupport, localItemSupport);
 
-    /**
-     * Generates a local FP tree
-     * @param node the conditional patterns given this node to construct the local FP-tree.
-     * @return the local FP-tree.
-     */
-    private FPTree getLocalFPTree(FPTree.Node node, int[] localItemSupport, int[] prefixItemset) {
-        FPTree tree = new FPTree(minSupport, localItemSupport);
-
-        while (node != null) {
-            Node parent = node.parent;
-            int i = prefixItemset.length;
-            while (parent != null) {
-                if (localItemSupport[parent.id] >= minSupport) {
-                    prefixItemset[--i] = parent.id;
+            while (node != FPTree.NIL) {
+                int parent = fptree.parent[node];
+                int i = prefixItemset.length;
+                while (parent != FPTree.NIL) {
+                    int id = fptree.item[parent];
+                    if (localItemSupport[id] >= minSupport) {
+                        prefixItemset[--i] = id;
+                    }
+                    parent = fptree.parent[parent];
                 }
-                parent = parent.parent;
-            }
 
-            if (i < prefixItemset.length) {
-                tree.add(i, prefixItemset.length, prefixItemset, node.count);
+                if (i < prefixItemset.length) {
+                    tree.add(i, prefixItemset.length, prefixItemset, fptree.count[node]);
+                }
+
+                node = fptree.next[node];
             }
 
-            node = node.next;
+            return tree;
         }
-
-        return tree;
     }
 
     /**
@@ -18,7 +18,6 @@
 package smile.association;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 import smile.sort.QuickSort;
@@ -34,117 +33,24 @@ import smile.sort.QuickSort;
  * The list can be accessed through a head element, which also
  * states the total number of occurrences of the item in the
  * database.
+ * <p>
+ * The nodes are stored in parallel primitive arrays rather than objects.
+ * A node is referred by its index in the arrays and the children of a node
+ * are chained through sibling links, except that the children of root are
+ * directly indexed by the item order. It takes 24 bytes per node, which is
+ * a fraction of the object layout with per-node hash maps of children.
  *
  * @author Haifeng Li
  */
 public class FPTree {
-
     /**
-     * FP-tree node object.
+     * The index of root node.
      */
-    class Node {
-        /**
-         * The item identifier.
-         */
-        int id = -1;
-        /**
-         * The number of transactions represented by the portion of the path reaching this node.
-         */
-        int count = 0;
-        /**
-         * The backward link to the parent node in FP tree.
-         */
-        Node parent = null;
-        /**
-         * The forward link to the next node in a linked list of nodes with
-         * same item identifier starting with an element in the header table.
-         */
-        Node next = null;
-        /**
-         * The reference to the child branch (levels in FP-tree branches) are
-         * stored as an arrays of Node structures.
-         */
-        HashMap<Integer, Node> children = null;
-
-        /**
-         * Constructs the root node.
-         */
-        Node() {
-        }
-
-        /**
-         * Constructor.
-         */
-        Node(int id, int support, Node parent) {
-            this.id = id;
-            this.count = support;
-            this.parent = parent;
-        }
-
-        /**
-         * Searches through the list of children for given item set.
-         * If a node for current item set found, increments support count and
-         * proceed down branch. Otherwise, add a new child node.
-         * @param index the current item index in the item set.
-         * @param end the end index of item set to add into the database.
-         * @param itemset the given item set.
-         * @param support the associated support value for the given item set.
-         */
-        void add(int index, int end, int[] itemset, int support) {
-            if (children == null) {
-                children = new HashMap<>();
-            }
-            
-            Node child = children.get(itemset[index]);
-            if (child != null) {
-                // Node already exists. Update its support.
-                child.count += support;
-                if (++index < end) {
-                    child.add(index, end, itemset, support);
-                }
-            } else {
-                // Node doesn't exist. Create a new one.
-                append(index, end, itemset, support);
-            }
-        }
-
-        /**
-         * Appends nodes of items to the current path.
-         * @param index the current item index in the item set.
-         * @param end the end index of item set to append into the database.
-         * @param itemset the given item set.
-         * @param support the associated support value for the given item set.
-         */
-        void append(int index, int end, int[] itemset, int support) {
-            if (children == null) {
-                children = new HashMap<>();
-            }
-            
-            if (index >= maxItemSetSize) {
-                maxItemSetSize = index + 1;
-            }
-            
-            // Create new item subtree node
-            int item = itemset[index];
-            Node child = new Node(item, support, id < 0 ? null : this);
-            // Add link from header table
-            child.addToHeaderTable();
-            // Add into FP tree
-            children.put(item, child);
-            // Proceed down branch with rest of item set
-            if (++index < end) {
-                child.append(index, end, itemset, support);
-            }
-        }
-
-        /**
-         * Adds this node to header table.
-         */
-        void addToHeaderTable() {
-            next = headerTable[order[id]].node;
-            headerTable[order[id]].node = this;
-        }
-    }
+    static final int ROOT = 0;
+    /**
+     * The null link.
+     */
+    static final int NIL = -1;
 
     /**
      * Header table item. Array of these structures used to link into FP-tree.
@@ -163,9 +69,9 @@ public class FPTree {
          */
         int count = 0;
         /**
-         * The forward link to the next node in the link list of nodes.
+         * The forward link to the first node in the link list of nodes.
          */
-        Node node = null;
+        int node = NIL;
 
         /**
          * Constructor.
@@ -183,6 +89,42 @@ public class FPTree {
         }
     }
 
+    /**
+     * The item identifier of nodes.
+     */
+    int[] item;
+    /**
+     * The number of transactions represented by the portion of the path
+     * reaching the node.
+     */
+    int[] count;
+    /**
+     * The backward link to the parent node in FP tree. It is NIL for the
+     * children of root as no other nodes should use root as a parent.
+     */
+    int[] parent;
+    /**
+     * The forward link to the next node in a linked list of nodes with
+     * same item identifier starting with an element in the header table.
+     */
+    int[] next;
+    /**
+     * The first child of node.
+     */
+    int[] child;
+    /**
+     * The next sibling of node.
+     */
+    int[] sibling;
+    /**
+     * The number of nodes including the root.
+     */
+    int numNodes = 1;
+    /**
+     * The children of root indexed by the item order.
+     */
+    int[] rootChildren;
+
     /**
      * The number transactions in the database.
      */
@@ -191,13 +133,6 @@ public class FPTree {
      * The required minimum support of item sets.
      */
     final int minSupport;
-    /**
-     * Start reference for FP-tree. Root is just a dummy node for building the
-     * FP-tree as a starting point. It is used during mining maximal frequent
-     * item sets. No other nodes should use it as a parent node even if they
-     * are root's children nodes.
-     */
-    final Node root = new Node();
     /**
      * The support of single items.
      */
@@ -287,6 +222,22 @@ public class FPTree {
         for (int i = 0; i < numFreqItems; i++) {
             order[headerTable[i].id] = i;
         }
+
+        rootChildren = new int[numFreqItems];
+        Arrays.fill(rootChildren, NIL);
+
+        int capacity = 64;
+        item = new int[capacity];
+        count = new int[capacity];
+        parent = new int[capacity];
+        next = new int[capacity];
+        child = new int[capacity];
+        sibling = new int[capacity];
+        item[ROOT] = NIL;
+        parent[ROOT] = NIL;
+        next[ROOT] = NIL;
+        child[ROOT] = NIL;
+        sibling[ROOT] = NIL;
     }
 
     /**
@@ -423,7 +374,7 @@ public class FPTree {
                 }
             }
             
-            root.add(0, m, itemset, 1);
+            add(0, m, itemset, 1);
         }
     }
 
@@ -436,6 +387,97 @@ public class FPTree {
      * @param support the support/frequency of the item set.
      */
     void add(int index, int end, int[] itemset, int support) {
-        root.add(index, end, itemset, support);
+        int node = ROOT;
+        for (; index < end; index++) {
+            int c = child(node, itemset[index]);
+            if (c == NIL) {
+                // Node doesn't exist. Append the rest of item set.
+                append(node, index, end, itemset, support);
+                return;
+            }
+
+            // Node already exists. Update its support.
+            count[c] += support;
+            node = c;
+        }
+    }
+
+    /**
+     * Returns the child node of given item.
+     * @param node the parent node.
+     * @param id the item identifier.
+     * @return the child node or NIL if not found.
+     */
+    private int child(int node, int id) {
+        if (node == ROOT) {
+            return rootChildren[order[id]];
+        }
+
+        for (int c = child[node]; c != NIL; c = sibling[c]) {
+            if (item[c] == id) return c;
+        }
+        return NIL;
+    }
+
+    /**
+     * Appends nodes of items to the current path.
+     * @param node the current node.
+     * @param index the current item index in the item set.
+     * @param end the end index of item set to append into the database.
+     * @param itemset the given item set.
+     * @param support the associated support value for the given item set.
+     */
+    private void append(int node, int index, int end, int[] itemset, int support) {
+        if (end > maxItemSetSize) {
+            maxItemSetSize = end;
+        }
+
+        for (; index < end; index++) {
+            int id = itemset[index];
+            int c = newNode(id, support, node == ROOT ? NIL : node);
+
+            // Add into FP tree
+            if (node == ROOT) {
+                rootChildren[order[id]] = c;
+            } else {
+                sibling[c] = child[node];
+                child[node] = c;
+            }
+
+            // Add link from header table
+            HeaderTableItem header = headerTable[order[id]];
+            next[c] = header.node;
+            header.node = c;
+
+            node = c;
+        }
+    }
+
+    /**
+     * Creates a new node.
+     * @param id the item identifier.
+     * @param support the support of node.
+     * @param parent the parent node.
+     * @return the index of new node.
+     */
+    private int newNode(int id, int support, int parent) {
+        if (numNodes == item.length) {
+            int capacity = item.length + (item.length >> 1);
+            item = Arrays.copyOf(item, capacity);
+            count = Arrays.copyOf(count, capacity);
+            this.parent = Arrays.copyOf(this.parent, capacity);
+            next = Arrays.copyOf(next, capacity);
+            child = Arrays.copyOf(child, capacity);
+            sibling = Arrays.copyOf(sibling, capacity);
+        }
+
+        int node = numNodes++;
+        item[node] = id;
+        count[node] = support;
+        this.parent[node] = parent;
+        next[node] = NIL;
+        child[node] = NIL;
+        sibling[node] = NIL;
+        return node;
     }
 }
@@ -87,14 +87,20 @@ class TotalSupportTree implements Iterable<ItemSet> {
     private final Queue<ItemSet> buffer = new LinkedList<>();
 
     /**
-     * Constructor.
+     * Constructor. The frequent item sets are mined in parallel
+     * and inserted into the tree, which doesn't depend on the
+     * order of insertion.
      */
     public TotalSupportTree(FPTree tree) {
         this.numTransactions = tree.numTransactions;
         this.minSupport = tree.minSupport;
         this.order = tree.order;
         root.children = new Node[tree.numFreqItems];
-        FPGrowth.apply(tree).forEach(itemset -> add(itemset.items, itemset.support));
+        FPGrowth.parallel(tree).forEach(itemset -> {
+            synchronized (root) {
+                add(itemset.items, itemset.support);
+            }
+        });
     }
 
     /**
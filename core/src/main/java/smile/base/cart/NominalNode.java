@@ -59,6 +59,14 @@ public class NominalNode extends InternalNode {
         return x.getInt(feature) == value ? trueChild.predict(x) : falseChild.predict(x);
     }
 
+    /**
+     * Returns the split value.
+     * @return the split value.
+     */
+    public int value() {
+        return value;
+    }
+
     @Override
     public boolean branch(Tuple x) {
         return x.getInt(feature) == value;
@@ -56,6 +56,14 @@ public class OrdinalNode extends InternalNode {
         return x.getDouble(feature) <= value ? trueChild.predict(x) : falseChild.predict(x);
     }
 
+    /**
+     * Returns the split value.
+     * @return the split value.
+     */
+    public double value() {
+        return value;
+    }
+
     @Override
     public boolean branch(Tuple x) {
         return x.getDouble(feature) <= value;
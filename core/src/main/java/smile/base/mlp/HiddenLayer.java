@@ -18,6 +18,9 @@
 package smile.base.mlp;
 
 import java.io.Serial;
+import smile.math.matrix.Matrix;
+
+import static smile.math.blas.Transpose.*;
 
 /**
  * A hidden layer in the neural network.
@@ -67,4 +70,23 @@ public class HiddenLayer extends Layer {
             weight.tv(outputGradient, lowerLayerGradient);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public void backpropagate(Matrix lowerLayerGradient) {
+        double[] output = batchOutput.get();
+        double[] outputGradient = batchOutputGradient.get();
+        double[] y = this.output.get();
+        double[] g = this.outputGradient.get();
+
+        for (int j = 0; j < output.length; j += n) {
+            System.arraycopy(output, j, y, 0, n);
+            System.arraycopy(outputGradient, j, g, 0, n);
+            activation.g(g, y);
+            System.arraycopy(g, 0, outputGradient, j, n);
+        }
+
+        if (lowerLayerGradient != null) {
+            lowerLayerGradient.mm(TRANSPOSE, weight, NO_TRANSPOSE, batchGradient());
+        }
+    }
+}
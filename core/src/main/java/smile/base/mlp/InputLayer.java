@@ -19,6 +19,7 @@ package smile.base.mlp;
 
 import java.io.IOException;
 import java.io.Serial;
+import smile.math.matrix.Matrix;
 
 /**
  * An input layer in the neural network.
@@ -76,11 +77,29 @@ public class InputLayer extends Layer {
         System.arraycopy(x, 0, output.get(), 0, p);
     }
 
+    @Override
+    public void propagate(Matrix x) {
+        int b = x.ncol();
+        allocateBatch(b);
+
+        double[] output = batchOutput.get();
+        for (int j = 0; j < b; j++) {
+            for (int i = 0; i < n; i++) {
+                output[j * n + i] = x.get(i, j);
+            }
+        }
+    }
+
     @Override
     public void backpropagate(double[] lowerLayerGradient) {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void backpropagate(Matrix lowerLayerGradient) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public void transform(double[] x) {
         // identity activation function
@@ -91,6 +110,11 @@ public class InputLayer extends Layer {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void computeGradient(Matrix x) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public void computeGradientUpdate(double[] x, double learningRate, double momentum, double decay) {
         throw new UnsupportedOperationException();
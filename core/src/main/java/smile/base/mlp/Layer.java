@@ -30,6 +30,8 @@ import smile.math.MathEx;
 import smile.math.matrix.Matrix;
 import smile.util.Regex;
 
+import static smile.math.blas.Transpose.*;
+
 /**
  * A layer in the neural network.
  *
@@ -103,6 +105,18 @@ public abstract class Layer implements Serializable {
      * The dropout mask.
      */
     protected transient ThreadLocal<byte[]> mask;
+    /**
+     * The output of mini-batch, one column per sample.
+     */
+    protected transient ThreadLocal<double[]> batchOutput;
+    /**
+     * The output gradient of mini-batch, one column per sample.
+     */
+    protected transient ThreadLocal<double[]> batchOutputGradient;
+    /**
+     * The dropout mask of mini-batch.
+     */
+    protected transient ThreadLocal<byte[]> batchMask;
 
     /**
      * Constructor for input layer.
@@ -124,6 +138,8 @@ public abstract class Layer implements Serializable {
         if (dropout > 0.0) {
             mask = ThreadLocal.withInitial(() -> new byte[n]);
         }
+
+        initBatch();
     }
 
     /**
@@ -206,6 +222,18 @@ public abstract class Layer implements Serializable {
         if (dropout > 0.0) {
             mask = ThreadLocal.withInitial(() -> new byte[n]);
         }
+
+        initBatch();
+    }
+
+    /**
+     * Initializes the mini-batch workspace, which is allocated
+     * on demand for the size of mini-batch.
+     */
+    void initBatch() {
+        batchOutput = ThreadLocal.withInitial(() -> new double[0]);
+        batchOutputGradient = ThreadLocal.withInitial(() -> new double[0]);
+        batchMask = ThreadLocal.withInitial(() -> new byte[0]);
     }
 
     /**
@@ -240,6 +268,38 @@ public abstract class Layer implements Serializable {
         return outputGradient.get();
     }
 
+    /**
+     * Returns the output of mini-batch.
+     * @return the output matrix of which each column is a sample.
+     */
+    public Matrix batchOutput() {
+        double[] output = batchOutput.get();
+        return new Matrix(n, output.length / n, n, output);
+    }
+
+    /**
+     * Returns the output gradient of mini-batch.
+     * @return the output gradient matrix of which each column is a sample.
+     */
+    public Matrix batchGradient() {
+        double[] gradient = batchOutputGradient.get();
+        return new Matrix(n, gradient.length / n, n, gradient);
+    }
+
+    /**
+     * Allocates the mini-batch workspace if the batch size changes.
+     * @param b the size of mini-batch.
+     */
+    void allocateBatch(int b) {
+        if (batchOutput.get().length != n * b) {
+            batchOutput.set(new double[n * b]);
+            batchOutputGradient.set(new double[n * b]);
+            if (dropout > 0.0) {
+                batchMask.set(new byte[n * b]);
+            }
+        }
+    }
+
     /**
      * Propagates the signals from a lower layer to this layer.
      * @param x the lower layer signals.
@@ -269,6 +329,55 @@ public abstract class Layer implements Serializable {
         }
     }
 
+    /**
+     * Propagates the signals of mini-batch from a lower layer to this layer
+     * with a matrix-matrix multiplication.
+     * @param x the lower layer signals of which each column is a sample.
+     */
+    public void propagate(Matrix x) {
+        int b = x.ncol();
+        allocateBatch(b);
+
+        double[] output = batchOutput.get();
+        for (int j = 0; j < b; j++) {
+            System.arraycopy(bias, 0, output, j * n, n);
+        }
+
+        batchOutput().mm(NO_TRANSPOSE, weight, NO_TRANSPOSE, x, 1.0, 1.0);
+        transform(output, b);
+    }
+
+    /**
+     * Propagates the output signals of mini-batch through the implicit
+     * dropout layer. It should only be applied during training.
+     */
+    public void propagateBatchDropout() {
+        if (dropout > 0.0) {
+            double[] output = batchOutput.get();
+            byte[] mask = batchMask.get();
+            double scale = 1.0 / (1.0 - dropout);
+            for (int i = 0; i < output.length; i++) {
+                byte retain = (byte) (MathEx.random() < dropout ? 0 : 1);
+                mask[i] = retain;
+                output[i] *= retain * scale;
+            }
+        }
+    }
+
+    /**
+     * Applies the activation or output function to each sample of mini-batch.
+     * @param x the input and output values of which each column is a sample.
+     * @param b the size of mini-batch.
+     */
+    void transform(double[] x, int b) {
+        double[] z = output.get();
+        for (int j = 0; j < b; j++) {
+            System.arraycopy(x, j * n, z, 0, n);
+            transform(z);
+            System.arraycopy(z, 0, x, j * n, n);
+        }
+    }
+
     /**
      * The activation or output function.
      * @param x the input and output values.
@@ -281,6 +390,13 @@ public abstract class Layer implements Serializable {
      */
     public abstract void backpropagate(double[] lowerLayerGradient);
 
+    /**
+     * Propagates the errors of mini-batch back to a lower layer.
+     * @param lowerLayerGradient the gradient matrix of lower layer,
+     *                           of which each column is a sample.
+     */
+    public abstract void backpropagate(Matrix lowerLayerGradient);
+
     /**
      * Propagates the errors back through the (implicit) dropout layer.
      */
@@ -295,6 +411,21 @@ public abstract class Layer implements Serializable {
         }
     }
 
+    /**
+     * Propagates the errors of mini-batch back through the (implicit)
+     * dropout layer.
+     */
+    public void backpropagateBatchDropout() {
+        if (dropout > 0.0) {
+            double[] gradient = batchOutputGradient.get();
+            byte[] mask = batchMask.get();
+            double scale = 1.0 / (1.0 - dropout);
+            for (int i = 0; i < gradient.length; i++) {
+                gradient[i] *= mask[i] * scale;
+            }
+        }
+    }
+
     /**
      * Computes the parameter gradient and update the weights.
      *
@@ -347,6 +478,25 @@ public abstract class Layer implements Serializable {
         }
     }
 
+    /**
+     * Computes the parameter gradient of a mini-batch, which is accumulated
+     * with a matrix-matrix multiplication.
+     *
+     * @param x the input signals of which each column is a sample.
+     */
+    public void computeGradient(Matrix x) {
+        double[] outputGradient = batchOutputGradient.get();
+        Matrix weightGradient = this.weightGradient.get();
+        double[] biasGradient = this.biasGradient.get();
+
+        weightGradient.mm(NO_TRANSPOSE, batchGradient(), TRANSPOSE, x, 1.0, 1.0);
+        for (int j = 0; j < outputGradient.length; j += n) {
+            for (int i = 0; i < n; i++) {
+                biasGradient[i] += outputGradient[j + i];
+            }
+        }
+    }
+
     /**
      * Adjust network weights by back-propagation algorithm.
      *
@@ -21,10 +21,15 @@ import java.io.IOException;
 import java.io.Serial;
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import smile.math.MathEx;
 import smile.math.TimeFunction;
+import smile.math.matrix.Matrix;
 
 /**
  * Fully connected multilayer perceptron neural network.
@@ -43,6 +48,10 @@ import smile.math.TimeFunction;
 public abstract class MultilayerPerceptron implements Serializable {
     @Serial
     private static final long serialVersionUID = 2L;
+    /**
+     * The minimum number of samples per thread in mini-batch training.
+     */
+    private static final int MIN_SAMPLES_PER_THREAD = 32;
     /**
      * The dimensionality of input data.
      */
@@ -300,22 +309,68 @@ public abstract class MultilayerPerceptron implements Serializable {
         output.propagate(input);
     }
 
+    /**
+     * Propagates the signals of mini-batch through the neural network.
+     * @param x the input signals of which each column is a sample.
+     * @param training true if this is in training pass.
+     */
+    protected void propagate(Matrix x, boolean training) {
+        Matrix input = x;
+        for (Layer layer : net) {
+            layer.propagate(input);
+            if (training) {
+                layer.propagateBatchDropout();
+            }
+            input = layer.batchOutput();
+        }
+        output.propagate(input);
+    }
+
     /**
      * Gradient clipping prevents exploding gradients in very deep networks,
      * usually in recurrent neural networks.
      * @param gradient the gradient vector.
      */
     private void clipGradient(double[] gradient) {
+        clipGradient(gradient, 0, gradient.length);
+    }
+
+    /**
+     * Clips the gradient of each sample in a mini-batch.
+     * @param gradient the gradient vectors of samples stored contiguously.
+     * @param n the dimension of gradient vector.
+     */
+    private void clipGradient(double[] gradient, int n) {
+        if (clipNorm > 0.0 || clipValue > 0.0) {
+            for (int offset = 0; offset < gradient.length; offset += n) {
+                clipGradient(gradient, offset, n);
+            }
+        }
+    }
+
+    /**
+     * Clips a gradient vector.
+     * @param gradient the array of gradient vector.
+     * @param offset the offset of gradient vector in the array.
+     * @param length the dimension of gradient vector.
+     */
+    private void clipGradient(double[] gradient, int offset, int length) {
+        int end = offset + length;
         if (clipNorm > 0.0) {
-            double norm = MathEx.norm(gradient);
+            double norm = 0.0;
+            for (int j = offset; j < end; j++) {
+                norm += gradient[j] * gradient[j];
+            }
+            norm = Math.sqrt(norm);
+
             if (norm > clipNorm) {
                 double scale = clipNorm / norm;
-                for (int j = 0; j < gradient.length; j++) {
+                for (int j = offset; j < end; j++) {
                     gradient[j] *= scale;
                 }
             }
         } else if (clipValue > 0.0) {
-            for (int j = 0; j < gradient.length; j++) {
+            for (int j = offset; j < end; j++) {
                 if (gradient[j] > clipValue) {
                     gradient[j] = clipValue;
                 } else if (gradient[j] < -clipValue) {
@@ -342,7 +397,7 @@ public abstract class MultilayerPerceptron implements Serializable {
             clipGradient(upper.gradient());
         }
         // first hidden layer
-        upper.backpropagate(null);
+        upper.backpropagate((double[]) null);
 
         if (update) {
             double eta = getLearningRate();
@@ -380,6 +435,135 @@ public abstract class MultilayerPerceptron implements Serializable {
         }
     }
 
+    /**
+     * Propagates the errors of mini-batch back through the network and
+     * accumulates the parameter gradients with matrix-matrix multiplications.
+     * @param target the desired output of which each column is a sample.
+     */
+    protected void backpropagate(Matrix target) {
+        output.computeOutputGradient(target, 1.0);
+        clipGradient(output.batchOutputGradient.get(), output.getOutputSize());
+
+        Layer upper = output;
+        for (int i = net.length; --i > 0;) {
+            upper.backpropagate(net[i].batchGradient());
+            upper = net[i];
+            upper.backpropagateBatchDropout();
+            clipGradient(upper.batchOutputGradient.get(), upper.getOutputSize());
+        }
+        // first hidden layer
+        upper.backpropagate((Matrix) null);
+
+        Matrix x = net[0].batchOutput();
+        for (int i = 1; i < net.length; i++) {
+            Layer layer = net[i];
+            layer.computeGradient(x);
+            x = layer.batchOutput();
+        }
+
+        output.computeGradient(x);
+    }
+
+    /**
+     * Computes the parameter gradients of a mini-batch for training.
+     * The samples are split into chunks, which are processed in parallel,
+     * each with matrix-matrix forward and backward passes. The gradients
+     * accumulated by the worker threads are summed up into the ones of
+     * calling thread, which are then applied by {@link #update(int)}.
+     *
+     * @param x the mini-batch samples.
+     * @param target the function to set the network target vector of
+     *               the sample at given index.
+     */
+    protected void backpropagate(double[][] x, IntConsumer target) {
+        int m = x.length;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int chunks = Math.max(1, Math.min(threads, m / MIN_SAMPLES_PER_THREAD));
+
+        if (chunks == 1) {
+            backpropagate(x, 0, m, target);
+            return;
+        }
+
+        Map<Thread, Gradient> gradients = new ConcurrentHashMap<>();
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            backpropagate(x, chunk * m / chunks, (chunk + 1) * m / chunks, target);
+            gradients.computeIfAbsent(Thread.currentThread(), thread -> gradient());
+        });
+
+        Gradient sum = gradient();
+        Thread caller = Thread.currentThread();
+        for (var entry : gradients.entrySet()) {
+            if (entry.getKey() != caller) {
+                sum.add(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Computes the parameter gradients of a range of samples in a mini-batch
+     * and accumulates them in the workspace of current thread.
+     *
+     * @param x the mini-batch samples.
+     * @param from the index of first sample, inclusive.
+     * @param to the index of last sample, exclusive.
+     * @param target the function to set the network target vector of
+     *               the sample at given index.
+     */
+    private void backpropagate(double[][] x, int from, int to, IntConsumer target) {
+        int b = to - from;
+        int k = output.getOutputSize();
+        double[] input = new double[p * b];
+        double[] desired = new double[k * b];
+        double[] t = this.target.get();
+        for (int j = 0; j < b; j++) {
+            System.arraycopy(x[from + j], 0, input, j * p, p);
+            target.accept(from + j);
+            System.arraycopy(t, 0, desired, j * k, k);
+        }
+
+        propagate(new Matrix(p, b, p, input), true);
+        backpropagate(new Matrix(k, b, k, desired));
+    }
+
+    /**
+     * Returns the parameter gradient accumulators of current thread.
+     * @return the parameter gradient accumulators of current thread.
+     */
+    private Gradient gradient() {
+        int l = net.length;
+        Matrix[] weight = new Matrix[l];
+        double[][] bias = new double[l][];
+        for (int i = 1; i < l; i++) {
+            weight[i-1] = net[i].weightGradient.get();
+            bias[i-1] = net[i].biasGradient.get();
+        }
+        weight[l-1] = output.weightGradient.get();
+        bias[l-1] = output.biasGradient.get();
+        return new Gradient(weight, bias);
+    }
+
+    /**
+     * The parameter gradient accumulators of hidden and output layers
+     * in a thread.
+     * @param weight the weight gradients.
+     * @param bias the bias gradients.
+     */
+    private record Gradient(Matrix[] weight, double[][] bias) {
+        /**
+         * Adds the gradients of another thread and resets them.
+         * @param other the gradients of another thread.
+         */
+        void add(Gradient other) {
+            for (int i = 0; i < weight.length; i++) {
+                weight[i].add(other.weight[i]);
+                other.weight[i].fill(0.0);
+                MathEx.add(bias[i], other.bias[i]);
+                Arrays.fill(other.bias[i], 0.0);
+            }
+        }
+    }
+
     /**
      * Updates the weights for mini-batch training.
      *
@@ -18,6 +18,9 @@
 package smile.base.mlp;
 
 import java.io.Serial;
+import smile.math.matrix.Matrix;
+
+import static smile.math.blas.Transpose.*;
 
 /**
  * The output layer in the neural network.
@@ -84,6 +87,11 @@ public class OutputLayer extends Layer {
         weight.tv(outputGradient.get(), lowerLayerGradient);
     }
 
+    @Override
+    public void backpropagate(Matrix lowerLayerGradient) {
+        lowerLayerGradient.mm(TRANSPOSE, weight, NO_TRANSPOSE, batchGradient());
+    }
+
     /**
      * Compute the network output gradient.
      * @param target the desired output.
@@ -110,4 +118,39 @@ public class OutputLayer extends Layer {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Compute the network output gradient of mini-batch.
+     * @param target the desired output of which each column is a sample.
+     * @param weight a positive weight value associated with the training instances.
+     */
+    public void computeOutputGradient(Matrix target, double weight) {
+        double[] output = batchOutput.get();
+        double[] outputGradient = batchOutputGradient.get();
+
+        int b = output.length / n;
+        if (target.nrow() != n || target.ncol() != b) {
+            throw new IllegalArgumentException(String.format("Invalid target matrix size: %d x %d, expected: %d x %d", target.nrow(), target.ncol(), n, b));
+        }
+
+        double[] y = this.output.get();
+        double[] g = this.outputGradient.get();
+        for (int j = 0; j < b; j++) {
+            int offset = j * n;
+            for (int i = 0; i < n; i++) {
+                g[i] = target.get(i, j) - output[offset + i];
+            }
+
+            System.arraycopy(output, offset, y, 0, n);
+            activation.g(cost, g, y);
+
+            if (weight > 0.0 && weight != 1.0) {
+                for (int i = 0; i < n; i++) {
+                    g[i] *= weight;
+                }
+            }
+
+            System.arraycopy(g, 0, outputGradient, offset, n);
+        }
+    }
+}
@@ -0,0 +1,450 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.classification;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import smile.base.cart.SplitRule;
+import smile.math.MathEx;
+import smile.util.IntSet;
+
+/**
+ * Adaptive random forest for evolving data streams. Adaptive random forest
+ * is an online ensemble of Hoeffding trees. Each tree is trained with online
+ * bagging, i.e. every sample is presented to a tree k times where k is drawn
+ * from Poisson(&lambda;), and each leaf considers only a random subset of
+ * features as in the random forest. Every tree is monitored by a drift
+ * detector on its prequential error. When the detector signals a warning,
+ * a background tree starts to learn from the stream. When the drift is
+ * confirmed, the degraded tree is replaced by its background tree (or a
+ * fresh one if the warning was skipped). The vote of each tree is weighted
+ * by its prequential accuracy since the last reset.
+ *
+ * <h2>References</h2>
+ * <ol>
+ * <li> H. M. Gomes, A. Bifet, J. Read, et al. Adaptive random forests for evolving data stream classification. Machine Learning, 106:1469-1495, 2017.</li>
+ * <li> N. C. Oza and S. Russell. Online Bagging and Boosting. AISTATS, 2001.</li>
+ * <li> J. Gama, P. Medas, G. Castillo and P. Rodrigues. Learning with Drift Detection. SBIA, 2004.</li>
+ * </ol>
+ *
+ * @see HoeffdingTree
+ * @see RandomForest
+ *
+ * @author Haifeng Li
+ */
+public class AdaptiveRandomForest extends AbstractClassifier<double[]> {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Drift detection method (DDM). DDM models the number of errors of
+     * a learner as a binomial random variable. Let p be the error rate
+     * and s = sqrt(p(1-p)/n) its standard deviation after n predictions.
+     * The detector records the minimum of p + s. The warning level is
+     * reached if p + s &gt; p<sub>min</sub> + 2 s<sub>min</sub> and
+     * the drift is signaled if p + s &gt; p<sub>min</sub> + 3 s<sub>min</sub>.
+     * It takes constant time and memory per observation.
+     */
+    public static class DriftDetector implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        /** The state of stream. */
+        public enum State {
+            /** The stream is stable. */
+            STABLE,
+            /** The error rate is increasing. */
+            WARNING,
+            /** The concept drift is detected. */
+            DRIFT
+        }
+
+        /** The minimum number of observations before detecting drift. */
+        private final int minSize;
+        /** The multiple of standard deviation for warning level. */
+        private final double warning;
+        /** The multiple of standard deviation for drift level. */
+        private final double drift;
+        /** The number of observations. */
+        private int n;
+        /** The error rate. */
+        private double p;
+        /** The minimum error rate. */
+        private double pmin;
+        /** The standard deviation at the minimum error rate. */
+        private double smin;
+
+        /** Constructor with the default warning and drift levels. */
+        public DriftDetector() {
+            this(30, 2.0, 3.0);
+        }
+
+        /**
+         * Constructor.
+         * @param minSize the minimum number of observations before
+         *                detecting drift.
+         * @param warning the multiple of standard deviation for warning level.
+         * @param drift the multiple of standard deviation for drift level.
+         */
+        public DriftDetector(int minSize, double warning, double drift) {
+            if (warning <= 0.0 || drift <= warning) {
+                throw new IllegalArgumentException(String.format("Invalid warning level %f and drift level %f", warning, drift));
+            }
+
+            this.minSize = minSize;
+            this.warning = warning;
+            this.drift = drift;
+            reset();
+        }
+
+        /** Resets the detector. */
+        public void reset() {
+            n = 0;
+            p = 1.0;
+            pmin = Double.MAX_VALUE;
+            smin = Double.MAX_VALUE;
+        }
+
+        /**
+         * Updates the detector with a prediction outcome.
+         * @param error true if the prediction is wrong.
+         * @return the state of stream. The detector resets itself
+         *         when the drift is detected.
+         */
+        public State update(boolean error) {
+            n++;
+            p += ((error ? 1.0 : 0.0) - p) / n;
+            double s = Math.sqrt(p * (1 - p) / n);
+
+            if (n < minSize) return State.STABLE;
+
+            if (p + s <= pmin + smin) {
+                pmin = p;
+                smin = s;
+            }
+
+            if (p + s > pmin + drift * smin) {
+                reset();
+                return State.DRIFT;
+            }
+
+            return p + s > pmin + warning * smin ? State.WARNING : State.STABLE;
+        }
+    }
+
+    /**
+     * The base learner with its drift detector and background learner.
+     */
+    private class Member implements Serializable {
+        /** The active tree. */
+        HoeffdingTree tree;
+        /** The background tree grown since the warning. */
+        HoeffdingTree background;
+        /** The drift detector. */
+        final DriftDetector detector = new DriftDetector();
+        /** The number of predictions since the tree was created. */
+        long n;
+        /** The number of correct predictions since the tree was created. */
+        long correct;
+
+        /** Constructor. */
+        Member() {
+            tree = newTree();
+        }
+
+        /** Returns the prequential accuracy as the vote weight. */
+        double weight() {
+            return n == 0 ? 0.0 : (double) correct / n;
+        }
+
+        /** Test-then-train with a sample. */
+        void update(double[] x, int y) {
+            boolean error = tree.predict(x) != y;
+            n++;
+            if (!error) correct++;
+
+            int k = poisson(lambda);
+            if (k > 0) {
+                tree.update(x, y, k);
+                if (background != null) {
+                    background.update(x, y, k);
+                }
+            }
+
+            switch (detector.update(error)) {
+                case WARNING:
+                    if (background == null) {
+                        background = newTree();
+                    }
+                    break;
+
+                case DRIFT:
+                    tree = background != null ? background : newTree();
+                    background = null;
+                    n = 0;
+                    correct = 0;
+                    drifts.incrementAndGet();
+                    break;
+
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * The number of features.
+     */
+    private final int p;
+    /**
+     * The parameter of Poisson distribution for online bagging.
+     */
+    private final double lambda;
+    /** The split rule of trees. */
+    private final SplitRule rule;
+    /** The grace period of trees. */
+    private final int grace;
+    /** The split confidence of trees. */
+    private final double delta;
+    /** The tie threshold of trees. */
+    private final double tau;
+    /** The maximum depth of trees. */
+    private final int maxDepth;
+    /** The maximum number of leaf nodes of trees. */
+    private final int maxNodes;
+    /** The number of features considered by each leaf. */
+    private final int mtry;
+    /** The number of candidate split points per feature. */
+    private final int bins;
+    /**
+     * The ensemble members.
+     */
+    private final Member[] members;
+    /**
+     * The number of detected drifts.
+     */
+    private final AtomicInteger drifts = new AtomicInteger();
+
+    /**
+     * Constructor.
+     * @param p the number of features.
+     * @param labels the class label encoder.
+     * @param ntrees the number of trees.
+     * @param lambda the parameter of Poisson distribution for online bagging.
+     * @param mtry the number of randomly selected features considered by
+     *             each leaf. If {@code mtry <= 0}, sqrt(p) is used.
+     * @param rule the split rule.
+     * @param grace the number of samples a leaf should observe between
+     *              split attempts.
+     * @param delta the allowed probability of making a wrong split decision.
+     * @param tau the threshold of Hoeffding bound below which a tie is broken.
+     * @param maxDepth the maximum depth of trees.
+     * @param maxNodes the maximum number of leaf nodes of trees.
+     * @param bins the number of candidate split points per feature.
+     */
+    public AdaptiveRandomForest(int p, IntSet labels, int ntrees, double lambda, int mtry, SplitRule rule,
+                                int grace, double delta, double tau, int maxDepth, int maxNodes, int bins) {
+        super(labels);
+        if (ntrees < 1) {
+            throw new IllegalArgumentException("Invalid number of trees: " + ntrees);
+        }
+
+        if (lambda <= 0.0) {
+            throw new IllegalArgumentException("Invalid Poisson parameter: " + lambda);
+        }
+
+        this.p = p;
+        this.lambda = lambda;
+        this.mtry = mtry > 0 ? Math.min(mtry, p) : Math.max(1, (int) Math.floor(Math.sqrt(p)));
+        this.rule = rule;
+        this.grace = grace;
+        this.delta = delta;
+        this.tau = tau;
+        this.maxDepth = maxDepth;
+        this.maxNodes = maxNodes;
+        this.bins = bins;
+
+        members = new Member[ntrees];
+        for (int i = 0; i < ntrees; i++) {
+            members[i] = new Member();
+        }
+    }
+
+    /**
+     * Constructor.
+     * @param p the number of features.
+     * @param labels the class label encoder.
+     * @param params the hyperparameters.
+     */
+    public AdaptiveRandomForest(int p, IntSet labels, Properties params) {
+        this(p, labels,
+             Integer.parseInt(params.getProperty("smile.adaptive_random_forest.trees", "100")),
+             Double.parseDouble(params.getProperty("smile.adaptive_random_forest.lambda", "6.0")),
+             Integer.parseInt(params.getProperty("smile.adaptive_random_forest.mtry", "0")),
+             SplitRule.valueOf(params.getProperty("smile.adaptive_random_forest.split_rule", "GINI")),
+             Integer.parseInt(params.getProperty("smile.adaptive_random_forest.grace_period", "50")),
+             Double.parseDouble(params.getProperty("smile.adaptive_random_forest.confidence", "0.01")),
+             Double.parseDouble(params.getProperty("smile.adaptive_random_forest.tie_threshold", "0.05")),
+             Integer.parseInt(params.getProperty("smile.adaptive_random_forest.max_depth", "20")),
+             Integer.parseInt(params.getProperty("smile.adaptive_random_forest.max_nodes", "1000")),
+             Integer.parseInt(params.getProperty("smile.adaptive_random_forest.bins", "10")));
+    }
+
+    /**
+     * Fits an adaptive random forest by streaming the samples through the learner.
+     * @param x the training samples.
+     * @param y the training labels.
+     * @return the model.
+     */
+    public static AdaptiveRandomForest fit(double[][] x, int[] y) {
+        return fit(x, y, new Properties());
+    }
+
+    /**
+     * Fits an adaptive random forest by streaming the samples through the learner.
+     * @param x the training samples.
+     * @param y the training labels.
+     * @param params the hyperparameters.
+     * @return the model.
+     */
+    public static AdaptiveRandomForest fit(double[][] x, int[] y, Properties params) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException(String.format("The sizes of X and Y don't match: %d != %d", x.length, y.length));
+        }
+
+        AdaptiveRandomForest model = new AdaptiveRandomForest(x[0].length, ClassLabels.fit(y).classes, params);
+        model.update(x, y);
+        return model;
+    }
+
+    /** Returns a new base tree. */
+    private HoeffdingTree newTree() {
+        return new HoeffdingTree(p, classes, rule, grace, delta, tau, maxDepth, maxNodes, mtry, bins);
+    }
+
+    /** Returns a random number from Poisson distribution with Knuth's algorithm. */
+    private static int poisson(double lambda) {
+        double L = Math.exp(-lambda);
+        double prod = MathEx.random();
+        int k = 0;
+        while (prod > L) {
+            k++;
+            prod *= MathEx.random();
+        }
+        return k;
+    }
+
+    /**
+     * Returns the number of trees in the ensemble.
+     * @return the number of trees.
+     */
+    public int size() {
+        return members.length;
+    }
+
+    /**
+     * Returns the base trees.
+     * @return the base trees.
+     */
+    public HoeffdingTree[] trees() {
+        return Arrays.stream(members).map(member -> member.tree).toArray(HoeffdingTree[]::new);
+    }
+
+    /**
+     * Returns the number of concept drifts detected by the base trees,
+     * i.e. the number of replaced trees.
+     * @return the number of detected drifts.
+     */
+    public int drifts() {
+        return drifts.get();
+    }
+
+    @Override
+    public int predict(double[] x) {
+        int k = classes.size();
+        double[] votes = new double[k];
+        for (Member member : members) {
+            // Trees with no predictions yet still get a small vote.
+            votes[classes.indexOf(member.tree.predict(x))] += member.weight() + 1E-6;
+        }
+        return classes.valueOf(MathEx.whichMax(votes));
+    }
+
+    @Override
+    public int predict(double[] x, double[] posteriori) {
+        int k = classes.size();
+        Arrays.fill(posteriori, 0.0);
+        double[] prob = new double[k];
+        double sum = 0.0;
+        for (Member member : members) {
+            double w = member.weight() + 1E-6;
+            member.tree.predict(x, prob);
+            for (int i = 0; i < k; i++) {
+                posteriori[i] += w * prob[i];
+            }
+            sum += w;
+        }
+
+        for (int i = 0; i < k; i++) {
+            posteriori[i] /= sum;
+        }
+        return classes.valueOf(MathEx.whichMax(posteriori));
+    }
+
+    @Override
+    public boolean soft() {
+        return true;
+    }
+
+    @Override
+    public boolean online() {
+        return true;
+    }
+
+    @Override
+    public void update(double[] x, int y) {
+        for (Member member : members) {
+            member.update(x, y);
+        }
+    }
+
+    /**
+     * Updates the model with a mini-batch of new samples. The trees are
+     * independent of each other so that they are trained in parallel,
+     * each streaming through the whole mini-batch in order.
+     * @param x the training instances.
+     * @param y the training labels.
+     */
+    @Override
+    public void update(double[][] x, int[] y) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException(String.format("Input vector x of size %d not equal to length %d of y", x.length, y.length));
+        }
+
+        IntStream.range(0, members.length).parallel().forEach(t -> {
+            Member member = members[t];
+            for (int i = 0; i < x.length; i++) {
+                member.update(x[i], y[i]);
+            }
+        });
+    }
+}
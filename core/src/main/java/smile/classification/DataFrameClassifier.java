@@ -108,6 +108,21 @@ public interface DataFrameClassifier extends Classifier<Tuple> {
                 .toArray();
     }
 
+    /**
+     * Updates the model with a mini-batch of new samples, e.g. a record
+     * batch of large dataset streamed by {@code Parquet.stream}. The model
+     * has to support online learning.
+     *
+     * @param batch the data frame of the explanatory and response variables.
+     */
+    default void update(DataFrame batch) {
+        formula().bind(batch.schema());
+        int[] y = formula().y(batch).toIntArray();
+        for (int i = 0; i < y.length; i++) {
+            update(batch.get(i), y[i]);
+        }
+    }
+
     /**
      * Fits a vector classifier on data frame.
      *
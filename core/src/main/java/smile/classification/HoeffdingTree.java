@@ -0,0 +1,644 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.classification;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.stream.IntStream;
+import smile.base.cart.SplitRule;
+import smile.math.MathEx;
+import smile.math.special.Erf;
+import smile.util.IntSet;
+
+/**
+ * Hoeffding tree (Very Fast Decision Tree). Hoeffding tree is an incremental
+ * decision tree learner for data streams. It relies on the Hoeffding bound
+ * to decide, with high probability, that the best split attribute observed
+ * on a small sample of the stream is also the best one on the infinite
+ * stream. Therefore, each sample is seen only once and the tree grows
+ * as the samples arrive, which makes it suitable for the online learning
+ * through {@link #update(double[], int)}.
+ * <p>
+ * Each leaf keeps only sufficient statistics, i.e. the class weights and,
+ * for each candidate feature, the weight, mean and variance of the feature
+ * per class. The class conditional distributions of numeric features are
+ * approximated by Gaussians, from which the class distributions of the
+ * candidate splits are estimated. After every grace period of samples,
+ * a leaf is split on the best feature if the difference between the merits
+ * of the best and second-best splits exceeds the Hoeffding bound
+ * <pre>
+ *     &epsilon; = sqrt(R<sup>2</sup> ln(1/&delta;) / (2n))
+ * </pre>
+ * where R is the range of the split merit and n is the weight of samples
+ * in the leaf, or if &epsilon; falls below a tie threshold. The memory usage
+ * is bounded by the maximum number of leaf nodes, O(maxNodes * mtry * k),
+ * and is independent of the length of stream.
+ *
+ * <h2>References</h2>
+ * <ol>
+ * <li> P. Domingos and G. Hulten. Mining High-Speed Data Streams. KDD, 2000.</li>
+ * <li> G. Hulten, L. Spencer and P. Domingos. Mining Time-Changing Data Streams. KDD, 2001.</li>
+ * </ol>
+ *
+ * @see AdaptiveRandomForest
+ * @see DecisionTree
+ *
+ * @author Haifeng Li
+ */
+public class HoeffdingTree extends AbstractClassifier<double[]> {
+    @Serial
+    private static final long serialVersionUID = 1L;
+    /** The log-likelihood of feature values in a class without samples. */
+    private static final double LOG_EPSILON = Math.log(1E-300);
+
+    /**
+     * The tree node.
+     */
+    private static abstract class Node implements Serializable {
+        /** The depth of node. */
+        final int depth;
+
+        /** Constructor. */
+        Node(int depth) {
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * The internal node with a binary split on a numeric feature.
+     */
+    private static class InternalNode extends Node {
+        /** The split feature. */
+        final int feature;
+        /** The split value. Samples with x[feature] &le; value go to the true child. */
+        final double value;
+        /** The child node for samples satisfying the split condition. */
+        Node trueChild;
+        /** The child node for samples failing the split condition. */
+        Node falseChild;
+
+        /** Constructor. */
+        InternalNode(int depth, int feature, double value, Node trueChild, Node falseChild) {
+            super(depth);
+            this.feature = feature;
+            this.value = value;
+            this.trueChild = trueChild;
+            this.falseChild = falseChild;
+        }
+    }
+
+    /**
+     * The leaf node with the sufficient statistics of samples.
+     */
+    private static class LeafNode extends Node {
+        /** The weighted class counts. */
+        final double[] count;
+        /** The candidate split features. */
+        final int[] features;
+        /** The weight of samples per feature and class. */
+        final double[][] weight;
+        /** The mean of feature per class. */
+        final double[][] mean;
+        /** The sum of squared deviations from the mean per feature and class. */
+        final double[][] m2;
+        /** The minimum of feature. */
+        final double[] min;
+        /** The maximum of feature. */
+        final double[] max;
+        /** The total weight of samples. */
+        double n;
+        /** The total weight of samples at last split attempt. */
+        double lastSplitAttempt;
+        /** The weight of samples correctly classified by the majority class. */
+        double majorityCorrect;
+        /** The weight of samples correctly classified by naive Bayes. */
+        double bayesCorrect;
+
+        /** Constructor. */
+        LeafNode(int depth, double[] count, int[] features) {
+            super(depth);
+            int k = count.length;
+            int m = features.length;
+            this.count = count;
+            this.features = features;
+            this.weight = new double[m][k];
+            this.mean = new double[m][k];
+            this.m2 = new double[m][k];
+            this.min = new double[m];
+            this.max = new double[m];
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+            this.n = MathEx.sum(count);
+            this.lastSplitAttempt = n;
+        }
+
+        /**
+         * Returns the class log-likelihoods of naive Bayes with the
+         * Gaussian approximation of class conditional distributions.
+         */
+        void bayes(double[] x, double[] logp) {
+            int k = count.length;
+            for (int c = 0; c < k; c++) {
+                logp[c] = Math.log(count[c] + 1.0);
+            }
+
+            for (int j = 0; j < features.length; j++) {
+                double xj = x[features[j]];
+                if (Double.isNaN(xj)) continue;
+
+                for (int c = 0; c < k; c++) {
+                    double w = weight[j][c];
+                    if (w <= 0.0) {
+                        logp[c] += LOG_EPSILON;
+                        continue;
+                    }
+
+                    // Floor the variance for constant features in a class.
+                    double variance = Math.max(w > 1.0 ? m2[j][c] / (w - 1.0) : 0.0, 1E-9);
+                    double d = xj - mean[j][c];
+                    logp[c] -= 0.5 * (Math.log(2 * Math.PI * variance) + d * d / variance);
+                }
+            }
+        }
+
+        /**
+         * Returns the predicted class index with the majority class or naive
+         * Bayes, whichever has been more accurate on the leaf's samples.
+         */
+        int predict(double[] x) {
+            if (bayesCorrect > majorityCorrect) {
+                double[] logp = new double[count.length];
+                bayes(x, logp);
+                return MathEx.whichMax(logp);
+            }
+            return MathEx.whichMax(count);
+        }
+
+        /** Adds a sample to the statistics with Welford's algorithm. */
+        void add(double[] x, int y, double w) {
+            if (MathEx.whichMax(count) == y) majorityCorrect += w;
+            double[] logp = new double[count.length];
+            bayes(x, logp);
+            if (MathEx.whichMax(logp) == y) bayesCorrect += w;
+
+            n += w;
+            count[y] += w;
+            for (int j = 0; j < features.length; j++) {
+                double xj = x[features[j]];
+                if (Double.isNaN(xj)) continue;
+
+                if (xj < min[j]) min[j] = xj;
+                if (xj > max[j]) max[j] = xj;
+                double[] wj = weight[j];
+                double[] mj = mean[j];
+                wj[y] += w;
+                double delta = xj - mj[y];
+                mj[y] += w * delta / wj[y];
+                m2[j][y] += w * delta * (xj - mj[y]);
+            }
+        }
+    }
+
+    /**
+     * The number of features.
+     */
+    private final int p;
+    /**
+     * The number of classes.
+     */
+    private final int k;
+    /**
+     * The split rule.
+     */
+    private final SplitRule rule;
+    /**
+     * The number of samples a leaf should observe between split attempts.
+     */
+    private final int grace;
+    /**
+     * The allowed probability of making a wrong split decision.
+     */
+    private final double delta;
+    /**
+     * The threshold of Hoeffding bound below which a tie is broken.
+     */
+    private final double tau;
+    /**
+     * The maximum depth of the tree.
+     */
+    private final int maxDepth;
+    /**
+     * The maximum number of leaf nodes in the tree.
+     */
+    private final int maxNodes;
+    /**
+     * The number of randomly selected features considered by each leaf.
+     */
+    private final int mtry;
+    /**
+     * The number of candidate split points per feature.
+     */
+    private final int bins;
+    /**
+     * The root of tree.
+     */
+    private Node root;
+    /**
+     * The number of leaf nodes.
+     */
+    private int leaves = 1;
+
+    /**
+     * Constructor.
+     * @param p the number of features.
+     * @param labels the class label encoder.
+     * @param rule the split rule.
+     * @param grace the number of samples a leaf should observe between
+     *              split attempts.
+     * @param delta the allowed probability of making a wrong split decision,
+     *              e.g. 1E-7.
+     * @param tau the threshold of Hoeffding bound below which a tie between
+     *            the best two splits is broken, e.g. 0.05.
+     * @param maxDepth the maximum depth of the tree.
+     * @param maxNodes the maximum number of leaf nodes in the tree, which
+     *                 bounds the memory usage.
+     * @param mtry the number of randomly selected features considered by
+     *             each leaf. If {@code mtry <= 0 || mtry >= p}, all features
+     *             are considered.
+     * @param bins the number of candidate split points per feature.
+     */
+    public HoeffdingTree(int p, IntSet labels, SplitRule rule, int grace, double delta, double tau,
+                         int maxDepth, int maxNodes, int mtry, int bins) {
+        super(labels);
+        if (p <= 0) {
+            throw new IllegalArgumentException("Invalid number of features: " + p);
+        }
+
+        if (grace <= 0) {
+            throw new IllegalArgumentException("Invalid grace period: " + grace);
+        }
+
+        if (delta <= 0.0 || delta >= 1.0) {
+            throw new IllegalArgumentException("Invalid split confidence: " + delta);
+        }
+
+        if (tau < 0.0) {
+            throw new IllegalArgumentException("Invalid tie threshold: " + tau);
+        }
+
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("Invalid maximal tree depth: " + maxDepth);
+        }
+
+        if (maxNodes < 2) {
+            throw new IllegalArgumentException("Invalid maximum leaves: " + maxNodes);
+        }
+
+        if (bins < 1) {
+            throw new IllegalArgumentException("Invalid number of split points: " + bins);
+        }
+
+        this.p = p;
+        this.k = labels.size();
+        this.rule = rule;
+        this.grace = grace;
+        this.delta = delta;
+        this.tau = tau;
+        this.maxDepth = maxDepth;
+        this.maxNodes = maxNodes;
+        this.mtry = mtry <= 0 || mtry >= p ? p : mtry;
+        this.bins = bins;
+        this.root = newLeaf(0, new double[k]);
+    }
+
+    /**
+     * Constructor.
+     * @param p the number of features.
+     * @param labels the class label encoder.
+     * @param params the hyperparameters.
+     */
+    public HoeffdingTree(int p, IntSet labels, Properties params) {
+        this(p, labels,
+             SplitRule.valueOf(params.getProperty("smile.hoeffding.split_rule", "GINI")),
+             Integer.parseInt(params.getProperty("smile.hoeffding.grace_period", "200")),
+             Double.parseDouble(params.getProperty("smile.hoeffding.confidence", "1E-7")),
+             Double.parseDouble(params.getProperty("smile.hoeffding.tie_threshold", "0.05")),
+             Integer.parseInt(params.getProperty("smile.hoeffding.max_depth", "20")),
+             Integer.parseInt(params.getProperty("smile.hoeffding.max_nodes", "1000")),
+             Integer.parseInt(params.getProperty("smile.hoeffding.mtry", "0")),
+             Integer.parseInt(params.getProperty("smile.hoeffding.bins", "10")));
+    }
+
+    /**
+     * Fits a Hoeffding tree by streaming the samples through the learner.
+     * @param x the training samples.
+     * @param y the training labels.
+     * @return the model.
+     */
+    public static HoeffdingTree fit(double[][] x, int[] y) {
+        return fit(x, y, new Properties());
+    }
+
+    /**
+     * Fits a Hoeffding tree by streaming the samples through the learner.
+     * @param x the training samples.
+     * @param y the training labels.
+     * @param params the hyperparameters.
+     * @return the model.
+     */
+    public static HoeffdingTree fit(double[][] x, int[] y, Properties params) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException(String.format("The sizes of X and Y don't match: %d != %d", x.length, y.length));
+        }
+
+        HoeffdingTree model = new HoeffdingTree(x[0].length, ClassLabels.fit(y).classes, params);
+        model.update(x, y);
+        return model;
+    }
+
+    /** Returns a new leaf with a random subset of features if mtry &lt; p. */
+    private LeafNode newLeaf(int depth, double[] count) {
+        int[] features;
+        if (mtry == p) {
+            features = IntStream.range(0, p).toArray();
+        } else {
+            features = Arrays.copyOf(MathEx.permutate(p), mtry);
+            Arrays.sort(features);
+        }
+        return new LeafNode(depth, count, features);
+    }
+
+    /** Returns the leaf node that the sample falls in. */
+    private LeafNode leaf(double[] x) {
+        Node node = root;
+        while (node instanceof InternalNode split) {
+            node = x[split.feature] <= split.value ? split.trueChild : split.falseChild;
+        }
+        return (LeafNode) node;
+    }
+
+    @Override
+    public int predict(double[] x) {
+        return classes.valueOf(leaf(x).predict(x));
+    }
+
+    @Override
+    public int predict(double[] x, double[] posteriori) {
+        LeafNode leaf = leaf(x);
+        if (leaf.bayesCorrect > leaf.majorityCorrect) {
+            leaf.bayes(x, posteriori);
+            MathEx.softmax(posteriori);
+        } else {
+            // Laplace smoothing so that a fresh leaf gives the uniform distribution.
+            double n = leaf.n + k;
+            for (int i = 0; i < k; i++) {
+                posteriori[i] = (leaf.count[i] + 1) / n;
+            }
+        }
+        return classes.valueOf(MathEx.whichMax(posteriori));
+    }
+
+    @Override
+    public boolean soft() {
+        return true;
+    }
+
+    @Override
+    public boolean online() {
+        return true;
+    }
+
+    @Override
+    public void update(double[] x, int y) {
+        update(x, y, 1.0);
+    }
+
+    /**
+     * Online update the classifier with a weighted training instance.
+     * An integer weight is equivalent to presenting the sample multiple
+     * times, which is used by online bagging.
+     *
+     * @param x the training instance.
+     * @param y the training label.
+     * @param weight the sample weight.
+     */
+    public void update(double[] x, int y, double weight) {
+        if (weight <= 0.0) return;
+
+        if (x.length != p) {
+            throw new IllegalArgumentException(String.format("Invalid input vector size: %d, expected: %d", x.length, p));
+        }
+
+        InternalNode parent = null;
+        Node node = root;
+        while (node instanceof InternalNode split) {
+            parent = split;
+            node = x[split.feature] <= split.value ? split.trueChild : split.falseChild;
+        }
+
+        LeafNode leaf = (LeafNode) node;
+        leaf.add(x, classes.indexOf(y), weight);
+
+        if (leaf.n - leaf.lastSplitAttempt >= grace) {
+            leaf.lastSplitAttempt = leaf.n;
+            if (leaf.depth < maxDepth && leaves < maxNodes && !pure(leaf.count)) {
+                trySplit(leaf, parent);
+            }
+        }
+    }
+
+    /** Returns true if all samples are of the same class. */
+    private static boolean pure(double[] count) {
+        int nonzero = 0;
+        for (double c : count) {
+            if (c > 0.0) nonzero++;
+        }
+        return nonzero <= 1;
+    }
+
+    /**
+     * Returns the impurity of weighted class counts.
+     * @param rule the split rule.
+     * @param count the weighted class counts.
+     * @return the impurity.
+     */
+    private static double impurity(SplitRule rule, double[] count) {
+        double n = MathEx.sum(count);
+        if (n <= 0.0) return 0.0;
+
+        double impurity = 0.0;
+        switch (rule) {
+            case GINI:
+                double squaredSum = 0.0;
+                for (double c : count) {
+                    squaredSum += c * c;
+                }
+                impurity = 1 - squaredSum / (n * n);
+                break;
+
+            case ENTROPY:
+                for (double c : count) {
+                    if (c > 0) {
+                        double p = c / n;
+                        impurity -= p * MathEx.log2(p);
+                    }
+                }
+                break;
+
+            case CLASSIFICATION_ERROR:
+                impurity = Math.abs(1 - MathEx.max(count) / n);
+                break;
+        }
+
+        return impurity;
+    }
+
+    /** Returns the range of split merit for Hoeffding bound. */
+    private double range() {
+        return switch (rule) {
+            case ENTROPY -> MathEx.log2(Math.max(k, 2));
+            default -> 1.0;
+        };
+    }
+
+    /**
+     * Estimates the weighted class counts of samples with feature value
+     * not greater than the split value from the Gaussian approximation.
+     */
+    private void estimate(LeafNode leaf, int j, double value, double[] left) {
+        for (int c = 0; c < k; c++) {
+            double w = leaf.weight[j][c];
+            if (w <= 0.0) {
+                left[c] = 0.0;
+                continue;
+            }
+
+            double mu = leaf.mean[j][c];
+            double sd = w > 1.0 ? Math.sqrt(leaf.m2[j][c] / (w - 1.0)) : 0.0;
+            double cdf;
+            if (sd <= 0.0) {
+                cdf = mu <= value ? 1.0 : 0.0;
+            } else {
+                cdf = 0.5 * Erf.erfc(-(value - mu) / (sd * Math.sqrt(2.0)));
+            }
+
+            left[c] = w * cdf;
+        }
+    }
+
+    /** Splits the leaf if the Hoeffding bound is satisfied. */
+    private void trySplit(LeafNode leaf, InternalNode parent) {
+        double n = leaf.n;
+        double impurity = impurity(rule, leaf.count);
+
+        int bestFeature = -1;
+        double bestValue = Double.NaN;
+        double bestMerit = 0.0;
+        // The merit of no split is 0, which is the default second best.
+        double secondMerit = 0.0;
+        double[] bestLeft = new double[k];
+
+        double[] left = new double[k];
+        double[] right = new double[k];
+        for (int j = 0; j < leaf.features.length; j++) {
+            double lo = leaf.min[j];
+            double hi = leaf.max[j];
+            if (!(lo < hi)) continue;
+
+            double featureMerit = Double.NEGATIVE_INFINITY;
+            double featureValue = Double.NaN;
+            double step = (hi - lo) / (bins + 1);
+            for (int b = 1; b <= bins; b++) {
+                double value = lo + b * step;
+                estimate(leaf, j, value, left);
+                for (int c = 0; c < k; c++) {
+                    right[c] = leaf.count[c] - left[c];
+                }
+
+                double nl = MathEx.sum(left);
+                double nr = n - nl;
+                if (nl <= 0.0 || nr <= 0.0) continue;
+
+                double merit = impurity - (nl / n) * impurity(rule, left) - (nr / n) * impurity(rule, right);
+                if (merit > featureMerit) {
+                    featureMerit = merit;
+                    featureValue = value;
+                }
+            }
+
+            if (featureMerit > bestMerit) {
+                secondMerit = bestMerit;
+                bestMerit = featureMerit;
+                bestFeature = leaf.features[j];
+                bestValue = featureValue;
+                estimate(leaf, j, featureValue, bestLeft);
+            } else if (featureMerit > secondMerit) {
+                secondMerit = featureMerit;
+            }
+        }
+
+        if (bestFeature < 0) return;
+
+        double R = range();
+        double epsilon = Math.sqrt(R * R * Math.log(1.0 / delta) / (2.0 * n));
+        if (bestMerit - secondMerit > epsilon || epsilon < tau) {
+            double[] bestRight = new double[k];
+            for (int c = 0; c < k; c++) {
+                bestRight[c] = Math.max(leaf.count[c] - bestLeft[c], 0.0);
+            }
+
+            int depth = leaf.depth + 1;
+            InternalNode split = new InternalNode(leaf.depth, bestFeature, bestValue,
+                    newLeaf(depth, bestLeft), newLeaf(depth, bestRight));
+            if (parent == null) {
+                root = split;
+            } else if (parent.trueChild == leaf) {
+                parent.trueChild = split;
+            } else {
+                parent.falseChild = split;
+            }
+            leaves++;
+        }
+    }
+
+    /**
+     * Returns the number of leaf nodes in the tree.
+     * @return the number of leaf nodes in the tree.
+     */
+    public int leaves() {
+        return leaves;
+    }
+
+    /**
+     * Returns the depth of the tree.
+     * @return the depth of the tree.
+     */
+    public int depth() {
+        return depth(root);
+    }
+
+    /** Returns the depth of subtree. */
+    private int depth(Node node) {
+        if (node instanceof InternalNode split) {
+            return 1 + Math.max(depth(split.trueChild), depth(split.falseChild));
+        }
+        return 1;
+    }
+}
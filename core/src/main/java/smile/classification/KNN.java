@@ -23,7 +23,9 @@ import smile.math.MathEx;
 import smile.math.distance.Distance;
 import smile.math.distance.EuclideanDistance;
 import smile.math.distance.Metric;
+import smile.neighbor.BlockLinearSearch;
 import smile.neighbor.CoverTree;
+import smile.neighbor.FloatBlockLinearSearch;
 import smile.neighbor.KDTree;
 import smile.neighbor.KNNSearch;
 import smile.neighbor.LinearSearch;
@@ -66,6 +68,13 @@ import smile.neighbor.Neighbor;
  * achievable error rate given the distribution of the data). k-NN is
  * guaranteed to approach the Bayes error rate, for some value of k (where k
  * increases as a function of the number of data points).
+ * <p>
+ * For batch prediction of dense vectors, especially in high dimensional
+ * space, brute force search with {@link BlockLinearSearch} computes the
+ * distances between blocks of queries and training samples by matrix
+ * multiplication, which is often much faster than space partitioning trees.
+ * It is used by {@code fit(x, y, k, true)} of double precision vectors and
+ * the block search of single precision by {@code fit(float[][], int[], int)}.
  *
  * @param <T> the data type of model input objects.
  *
@@ -152,13 +161,30 @@ public class KNN<T> extends AbstractClassifier<T> {
     }
 
     /**
-     * Fits the K-NN classifier.
+     * Fits the K-NN classifier. The training samples are indexed by
+     * KD-tree if the dimension is less than 10, or by cover tree.
      * @param k the number of neighbors for classification.
      * @param x training samples.
      * @param y training labels.
      * @return the model.
      */
     public static KNN<double[]> fit(double[][] x, int[] y, int k) {
+        return fit(x, y, k, false);
+    }
+
+    /**
+     * Fits the K-NN classifier.
+     * @param k the number of neighbors for classification.
+     * @param x training samples.
+     * @param y training labels.
+     * @param bruteForce if true, use the brute force search of blocked
+     *                   distance kernels, which is preferred for batch
+     *                   prediction of high dimensional data. Otherwise,
+     *                   the training samples are indexed by KD-tree if
+     *                   the dimension is less than 10, or by cover tree.
+     * @return the model.
+     */
+    public static KNN<double[]> fit(double[][] x, int[] y, int k, boolean bruteForce) {
         if (x.length != y.length) {
             throw new IllegalArgumentException(String.format("The sizes of X and Y don't match: %d != %d", x.length, y.length));
         }
@@ -168,7 +194,9 @@ public class KNN<T> extends AbstractClassifier<T> {
         }
 
         KNNSearch<double[], double[]> knn;
-        if (x[0].length < 10) {
+        if (bruteForce) {
+            knn = new BlockLinearSearch(x);
+        } else if (x[0].length < 10) {
             knn = KDTree.of(x);
         } else {
             knn = CoverTree.of(x, new EuclideanDistance());
@@ -177,6 +205,26 @@ public class KNN<T> extends AbstractClassifier<T> {
         return new KNN<>(knn, y, k);
     }
 
+    /**
+     * Fits the K-NN classifier of single precision vectors with
+     * brute force search of blocked distance kernels.
+     * @param k the number of neighbors for classification.
+     * @param x training samples.
+     * @param y training labels.
+     * @return the model.
+     */
+    public static KNN<float[]> fit(float[][] x, int[] y, int k) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException(String.format("The sizes of X and Y don't match: %d != %d", x.length, y.length));
+        }
+
+        if (k < 1) {
+            throw new IllegalArgumentException("Illegal k = " + k);
+        }
+
+        return new KNN<>(new FloatBlockLinearSearch(x), y, k);
+    }
+
     @Override
     public int predict(T x) {
         Neighbor<T,T>[] neighbors = knn.search(x, k);
@@ -194,6 +242,15 @@ public class KNN<T> extends AbstractClassifier<T> {
             }
         }
 
+        return vote(count);
+    }
+
+    /**
+     * Returns the majority vote of neighbors.
+     * @param count the votes of each class.
+     * @return the predicted class label.
+     */
+    private int vote(int[] count) {
         int y = MathEx.whichMax(count);
         if (count[y] == 0) {
             throw new IllegalStateException("No neighbor found.");
@@ -202,6 +259,35 @@ public class KNN<T> extends AbstractClassifier<T> {
         return classes.valueOf(y);
     }
 
+    /**
+     * Returns the votes of neighbors.
+     * @param neighbors the indices of neighbors, -1 for missing ones.
+     * @return the votes of each class.
+     */
+    private int[] count(int[] neighbors) {
+        int[] count = new int[classes.size()];
+        for (int neighbor : neighbors) {
+            if (neighbor >= 0) {
+                count[classes.indexOf(y[neighbor])]++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Predicts the class labels of a batch of instances. The neighbors
+     * of all instances are retrieved with a single batch search, which
+     * is much faster with {@link BlockLinearSearch}.
+     *
+     * @param x the instances to be classified.
+     * @return the predicted class labels.
+     */
+    @Override
+    public int[] predict(T[] x) {
+        int[][] neighbors = knn.search(x, k, null);
+        return Arrays.stream(neighbors).mapToInt(neighbor -> vote(count(neighbor))).toArray();
+    }
+
     @Override
     public boolean soft() {
         return true;
@@ -225,15 +311,25 @@ public class KNN<T> extends AbstractClassifier<T> {
             count[classes.indexOf(y[neighbors[i].index])]++;
         }
 
-        int y = MathEx.whichMax(count);
-        if (count[y] == 0) {
-            throw new IllegalStateException("No neighbor found.");
-        }
-
+        int y = vote(count);
         for (int i = 0; i < count.length; i++) {
             posteriori[i] = (double) count[i] / k;
         }
 
-        return classes.valueOf(y);
+        return y;
+    }
+
+    @Override
+    public int[] predict(T[] x, double[][] posteriori) {
+        int[][] neighbors = knn.search(x, k, null);
+        int[] labels = new int[x.length];
+        for (int i = 0; i < x.length; i++) {
+            int[] count = count(neighbors[i]);
+            labels[i] = vote(count);
+            for (int j = 0; j < count.length; j++) {
+                posteriori[i][j] = (double) count[j] / k;
+            }
+        }
+        return labels;
     }
 }
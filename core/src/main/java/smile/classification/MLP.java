@@ -222,12 +222,7 @@ public class MLP extends MultilayerPerceptron implements Classifier<double[]>, S
     /** Updates the model with a mini-batch. RMSProp is applied if {@code rho > 0}. */
     @Override
     public void update(double[][] x, int[] y) {
-        for (int i = 0; i < x.length; i++) {
-            propagate(x[i], true);
-            setTarget(classes.indexOf(y[i]));
-            backpropagate(false);
-        }
-
+        backpropagate(x, i -> setTarget(classes.indexOf(y[i])));
         update(x.length);
         t++;
     }
@@ -18,9 +18,11 @@
 package smile.feature.imputation;
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import smile.data.DataFrame;
 import smile.data.measure.NominalScale;
@@ -301,6 +303,93 @@ public class SimpleImputer implements Transform {
         return new SimpleImputer(values);
     }
 
+    /**
+     * Fits the missing value imputation values on a stream of data frames,
+     * e.g. the record batches of a file that doesn't fit in the memory.
+     * Impute all the numeric columns with median, boolean/nominal columns
+     * with mode, and text columns with empty string. The statistics are
+     * accumulated batch by batch in a single pass, where the median is
+     * estimated by the incremental quantile estimator {@link IQAgent}.
+     * All data frames should have the same schema.
+     * @param data the stream of training data.
+     * @param columns the columns to impute.
+     *                If empty, impute all the applicable columns.
+     * @return the imputer.
+     */
+    @SuppressWarnings("unchecked")
+    public static SimpleImputer fit(Stream<DataFrame> data, String... columns) {
+        Iterator<DataFrame> iter = data.iterator();
+        if (!iter.hasNext()) {
+            throw new IllegalArgumentException("Empty data stream");
+        }
+
+        DataFrame batch = iter.next();
+        StructType schema = batch.schema();
+        if (columns.length == 0) {
+            columns = batch.names();
+        }
+
+        int p = columns.length;
+        IQAgent[] agents = new IQAgent[p];
+        Map<Integer, Integer>[] counts = new Map[p];
+        for (int j = 0; j < p; j++) {
+            StructField field = schema.field(columns[j]);
+            if (field.type.isBoolean() || field.type.isChar() || field.measure instanceof NominalScale) {
+                counts[j] = new HashMap<>();
+            } else if (!field.type.isString() && field.type.isNumeric()) {
+                agents[j] = new IQAgent();
+            }
+        }
+
+        while (true) {
+            for (int j = 0; j < p; j++) {
+                if (counts[j] != null) {
+                    Map<Integer, Integer> count = counts[j];
+                    for (int x : batch.column(columns[j]).toIntArray()) {
+                        if (x != Integer.MIN_VALUE) {
+                            count.merge(x, 1, Integer::sum);
+                        }
+                    }
+                } else if (agents[j] != null) {
+                    IQAgent agent = agents[j];
+                    for (double x : batch.column(columns[j]).toDoubleArray()) {
+                        if (!Double.isNaN(x)) {
+                            agent.add(x);
+                        }
+                    }
+                }
+            }
+
+            if (!iter.hasNext()) break;
+            batch = iter.next();
+        }
+
+        Map<String, Object> values = new HashMap<>();
+        for (int j = 0; j < p; j++) {
+            StructField field = schema.field(columns[j]);
+            if (field.type.isString()) {
+                values.put(field.name, "");
+            } else if (counts[j] != null) {
+                int mode = counts[j].entrySet().stream()
+                        .max(Map.Entry.comparingByValue())
+                        .map(Map.Entry::getKey)
+                        .orElseThrow(() -> new IllegalArgumentException("All values are missing: " + field.name));
+
+                if (field.type.isBoolean()) {
+                    values.put(field.name, mode != 0);
+                } else if (field.type.isChar()) {
+                    values.put(field.name, (char) mode);
+                } else {
+                    values.put(field.name, mode);
+                }
+            } else if (agents[j] != null) {
+                values.put(field.name, agents[j].quantile(0.5));
+            }
+        }
+
+        return new SimpleImputer(values);
+    }
+
     /**
      * Impute the missing values with column averages.
      * @param data data with missing values.
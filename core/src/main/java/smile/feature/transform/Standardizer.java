@@ -19,7 +19,9 @@ package smile.feature.transform;
 
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import smile.data.transform.InvertibleColumnTransform;
 import smile.data.type.StructField;
@@ -69,27 +71,113 @@ public class Standardizer {
             double[] vector = data.column(column).toDoubleArray();
             double mu = MathEx.mean(vector);
             double sd = MathEx.sd(vector);
-            double scale = MathEx.isZero(sd) ? 1.0 : sd;
+            put(field, mu, sd, transforms, inverses);
+        }
 
-            Function transform = new Function() {
-                @Override
-                public double f(double x) {
-                    return (x - mu) / scale;
-                }
+        return new InvertibleColumnTransform("Standardizer", transforms, inverses);
+    }
+
+    /**
+     * Fits the data transformation on a stream of data frames, e.g.
+     * the record batches of a file that doesn't fit in the memory.
+     * The mean and variance are accumulated batch by batch in a single
+     * pass. All data frames should have the same schema.
+     * @param data the stream of training data.
+     * @param columns the columns to transform.
+     *                If empty, transform all the numeric columns.
+     * @return the transform.
+     */
+    public static InvertibleColumnTransform fit(Stream<DataFrame> data, String... columns) {
+        Iterator<DataFrame> iter = data.iterator();
+        if (!iter.hasNext()) {
+            throw new IllegalArgumentException("Empty data stream");
+        }
 
-                @Override
-                public String toString() {
-                    return (mu >= 0.0) ?
-                            String.format("(%s - %.4f) / %.4f", field.name,  mu, scale)
-                          : String.format("(%s + %.4f) / %.4f", field.name, -mu, scale);
+        DataFrame batch = iter.next();
+        StructType schema = batch.schema();
+        if (columns.length == 0) {
+            columns = Arrays.stream(schema.fields())
+                    .filter(StructField::isNumeric)
+                    .map(field -> field.name)
+                    .toArray(String[]::new);
+        }
+
+        for (String column : columns) {
+            StructField field = schema.field(column);
+            if (!field.isNumeric()) {
+                throw new IllegalArgumentException(String.format("%s is not numeric", field.name));
+            }
+        }
+
+        int p = columns.length;
+        long[] count = new long[p];
+        double[] mean = new double[p];
+        double[] m2 = new double[p];
+        while (true) {
+            for (int j = 0; j < p; j++) {
+                double[] vector = batch.column(columns[j]).toDoubleArray();
+                int n = vector.length;
+                if (n == 0) continue;
+
+                double mu = MathEx.mean(vector);
+                double ss = 0.0;
+                for (double x : vector) {
+                    ss += (x - mu) * (x - mu);
                 }
-            };
 
-            Function inverse = (double x) -> x * scale + mu;
-            transforms.put(field.name, transform);
-            inverses.put(field.name, inverse);
+                // Chan's parallel algorithm to combine the moments.
+                long total = count[j] + n;
+                double delta = mu - mean[j];
+                mean[j] += delta * n / total;
+                m2[j] += ss + delta * delta * count[j] * n / total;
+                count[j] = total;
+            }
+
+            if (!iter.hasNext()) break;
+            batch = iter.next();
+        }
+
+        Map<String, Function> transforms = new HashMap<>();
+        Map<String, Function> inverses = new HashMap<>();
+        for (int j = 0; j < p; j++) {
+            if (count[j] < 2) {
+                throw new IllegalArgumentException("Too few samples of " + columns[j]);
+            }
+
+            double sd = Math.sqrt(m2[j] / (count[j] - 1));
+            put(schema.field(columns[j]), mean[j], sd, transforms, inverses);
         }
 
         return new InvertibleColumnTransform("Standardizer", transforms, inverses);
     }
+
+    /**
+     * Adds the standardization function and its inverse of a column.
+     * @param field the column field.
+     * @param mu the mean of column.
+     * @param sd the standard deviation of column.
+     * @param transforms the map of transform functions.
+     * @param inverses the map of inverse functions.
+     */
+    private static void put(StructField field, double mu, double sd, Map<String, Function> transforms, Map<String, Function> inverses) {
+        double scale = MathEx.isZero(sd) ? 1.0 : sd;
+
+        Function transform = new Function() {
+            @Override
+            public double f(double x) {
+                return (x - mu) / scale;
+            }
+
+            @Override
+            public String toString() {
+                return (mu >= 0.0) ?
+                        String.format("(%s - %.4f) / %.4f", field.name,  mu, scale)
+                      : String.format("(%s + %.4f) / %.4f", field.name, -mu, scale);
+            }
+        };
+
+        Function inverse = (double x) -> x * scale + mu;
+        transforms.put(field.name, transform);
+        inverses.put(field.name, inverse);
+    }
 }
@@ -82,6 +82,21 @@ public interface DataFrameRegression extends Regression<Tuple> {
         return data.stream().mapToDouble(this::predict).toArray();
     }
 
+    /**
+     * Updates the model with a mini-batch of new samples, e.g. a record
+     * batch of large dataset streamed by {@code Parquet.stream}. The model
+     * has to support online learning.
+     *
+     * @param batch the data frame of the explanatory and response variables.
+     */
+    default void update(DataFrame batch) {
+        formula().bind(batch.schema());
+        double[] y = formula().y(batch).toDoubleArray();
+        for (int i = 0; i < y.length; i++) {
+            update(batch.get(i), y[i]);
+        }
+    }
+
     /**
      * Fits a vector regression model on data frame.
      *
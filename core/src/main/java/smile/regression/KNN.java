@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2010-2021 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.regression;
+
+import java.io.Serial;
+import java.util.Arrays;
+import smile.math.distance.Distance;
+import smile.math.distance.EuclideanDistance;
+import smile.math.distance.Metric;
+import smile.neighbor.BlockLinearSearch;
+import smile.neighbor.CoverTree;
+import smile.neighbor.FloatBlockLinearSearch;
+import smile.neighbor.KDTree;
+import smile.neighbor.KNNSearch;
+import smile.neighbor.LinearSearch;
+import smile.neighbor.Neighbor;
+
+/**
+ * K-nearest neighbor regression. The prediction is the average of
+ * the responses of k nearest neighbors in the training set. As a lazy
+ * learner, all computation is deferred until prediction. The model is
+ * local and nonparametric, which adapts to the data without assumptions
+ * on the form of the regression function. But it suffers from the curse
+ * of dimensionality and the prediction is expensive on large training
+ * sets.
+ * <p>
+ * For batch prediction of dense vectors, brute force search with
+ * {@link BlockLinearSearch} computes the distances between blocks of
+ * queries and training samples by matrix multiplication, which is often
+ * much faster than space partitioning trees in high dimensional space.
+ * It is used by {@code fit(x, y, k, true)} of double precision vectors and
+ * the block search of single precision by {@code fit(float[][], double[], int)}.
+ *
+ * @param <T> the data type of model input objects.
+ *
+ * @see smile.classification.KNN
+ *
+ * @author Haifeng Li
+ */
+public class KNN<T> implements Regression<T> {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The data structure for nearest neighbor search.
+     */
+    private final KNNSearch<T, T> knn;
+    /**
+     * The responses of training samples.
+     */
+    private final double[] y;
+    /**
+     * The number of neighbors for prediction.
+     */
+    private final int k;
+
+    /**
+     * Constructor.
+     * @param knn k-nearest neighbor search data structure of training instances.
+     * @param y the responses of training samples.
+     * @param k the number of neighbors for prediction.
+     */
+    public KNN(KNNSearch<T, T> knn, double[] y, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("Illegal k = " + k);
+        }
+
+        this.knn = knn;
+        this.y = y;
+        this.k = k;
+    }
+
+    /**
+     * Fits the K-NN regression.
+     * @param x training samples.
+     * @param y the response variable.
+     * @param k the number of neighbors.
+     * @param distance the distance function.
+     * @param <T> the data type.
+     * @return the model.
+     */
+    public static <T> KNN<T> fit(T[] x, double[] y, int k, Distance<T> distance) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException(String.format("The sizes of X and Y don't match: %d != %d", x.length, y.length));
+        }
+
+        KNNSearch<T, T> knn;
+        if (distance instanceof Metric<T> metric) {
+            knn = CoverTree.of(x, metric);
+        } else {
+            knn = LinearSearch.of(x, distance);
+        }
+
+        return new KNN<>(knn, y, k);
+    }
+
+    /**
+     * Fits the K-NN regression. The training samples are indexed by
+     * KD-tree if the dimension is less than 10, or by cover tree.
+     * @param x training samples.
+     * @param y the response variable.
+     * @param k the number of neighbors.
+     * @return the model.
+     */
+    public static KNN<double[]> fit(double[][] x, double[] y, int k) {
+        return fit(x, y, k, false);
+    }
+
+    /**
+     * Fits the K-NN regression.
+     * @param x training samples.
+     * @param y the response variable.
+     * @param k the number of neighbors.
+     * @param bruteForce if true, use the brute force search of blocked
+     *                   distance kernels, which is preferred for batch
+     *                   prediction of high dimensional data. Otherwise,
+     *                   the training samples are indexed by KD-tree if
+     *                   the dimension is less than 10, or by cover tree.
+     * @return the model.
+     */
+    public static KNN<double[]> fit(double[][] x, double[] y, int k, boolean bruteForce) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException(String.format("The sizes of X and Y don't match: %d != %d", x.length, y.length));
+        }
+
+        KNNSearch<double[], double[]> knn;
+        if (bruteForce) {
+            knn = new BlockLinearSearch(x);
+        } else if (x[0].length < 10) {
+            knn = KDTree.of(x);
+        } else {
+            knn = CoverTree.of(x, new EuclideanDistance());
+        }
+
+        return new KNN<>(knn, y, k);
+    }
+
+    /**
+     * Fits the K-NN regression of single precision vectors with
+     * brute force search of blocked distance kernels.
+     * @param x training samples.
+     * @param y the response variable.
+     * @param k the number of neighbors.
+     * @return the model.
+     */
+    public static KNN<float[]> fit(float[][] x, double[] y, int k) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException(String.format("The sizes of X and Y don't match: %d != %d", x.length, y.length));
+        }
+
+        return new KNN<>(new FloatBlockLinearSearch(x), y, k);
+    }
+
+    /**
+     * Returns the number of neighbors for prediction.
+     * @return the number of neighbors for prediction.
+     */
+    public int k() {
+        return k;
+    }
+
+    @Override
+    public double predict(T x) {
+        Neighbor<T,T>[] neighbors = knn.search(x, k);
+        double sum = 0.0;
+        int n = 0;
+        for (Neighbor<T,T> neighbor : neighbors) {
+            if (neighbor != null) {
+                sum += y[neighbor.index];
+                n++;
+            }
+        }
+
+        if (n == 0) {
+            throw new IllegalStateException("No neighbor found.");
+        }
+
+        return sum / n;
+    }
+
+    /**
+     * Predicts the responses of a batch of instances. The neighbors
+     * of all instances are retrieved with a single batch search, which
+     * is much faster with {@link BlockLinearSearch}.
+     *
+     * @param x the instances.
+     * @return the predicted values.
+     */
+    @Override
+    public double[] predict(T[] x) {
+        int[][] neighbors = knn.search(x, k, null);
+        return Arrays.stream(neighbors).mapToDouble(index -> {
+            double sum = 0.0;
+            int n = 0;
+            for (int i : index) {
+                if (i >= 0) {
+                    sum += y[i];
+                    n++;
+                }
+            }
+
+            if (n == 0) {
+                throw new IllegalStateException("No neighbor found.");
+            }
+
+            return sum / n;
+        }).toArray();
+    }
+}
@@ -109,12 +109,7 @@ import smile.util.Strings;
     /** Updates the model with a mini-batch. RMSProp is applied if {@code rho > 0}. */
     @Override
     public void update(double[][] x, double[] y) {
-        for (int i = 0; i < x.length; i++) {
-            propagate(x[i], true);
-            setTarget(y[i]);
-            backpropagate(false);
-        }
-
+        backpropagate(x, i -> setTarget(y[i]));
         update(x.length);
         t++;
     }
@@ -54,6 +54,13 @@ import smile.util.Strings;
  * gradient tree boosting scales linearly in the order of the Markov model and in
  * the order of the feature interactions, rather than exponentially as
  * in previous algorithms based on iterative scaling and gradient descent.
+ * <p>
+ * The potential functions are evaluated on flattened trees without
+ * extending the feature vector with each previous state, and the trees
+ * not splitting on the previous state are evaluated once per position.
+ * In training, the trees of classes are built in parallel in each round
+ * and the cached outputs of training samples are incrementally updated
+ * by the new trees. A batch of sequences can be labeled in parallel.
  *
  * <h2>References</h2>
  * <ol>
@@ -78,6 +85,10 @@ public class CRF implements Serializable {
      * The learning rate.
      */
     private final double shrinkage;
+    /**
+     * The flattened potential functions.
+     */
+    private transient volatile Potential[] flat;
 
     /**
      * Constructor.
@@ -116,6 +127,7 @@ public class CRF implements Serializable {
     public int[] viterbi(Tuple[] x) {
         int n = x.length;
         int k = potentials.length;
+        Potential[] potential = potentials();
 
         double[][] trellis = new double[n][k];
         int[][] psy = new int[n][k];
@@ -125,11 +137,8 @@ public class CRF implements Serializable {
         double[] t0 = trellis[0];
         int[] p0 = psy[0];
 
-        Tuple x0 = extend(x[0], k);
-        Tuple[] xt = new Tuple[k];
-
         for (int j = 0; j < k; j++) {
-            t0[j] = f(potentials[j], x0);
+            t0[j] = Math.exp(potential[j].f(x[0], k));
             p0[j] = 0;
         }
 
@@ -138,14 +147,10 @@ public class CRF implements Serializable {
             double[] tt1 = trellis[t - 1];
             int[] pt = psy[t];
 
-            for (int j = 0; j < k; j++) {
-                xt[j] = extend(x[t], j);
-            }
-
             for (int i = 0; i < k; i++) {
-                RegressionTree[] pi = potentials[i];
+                potential[i].f(x[t], delta);
                 for (int j = 0; j < k; j++) {
-                    delta[j] = f(pi, xt[j]) + tt1[j];
+                    delta[j] = Math.exp(delta[j]) + tt1[j];
                 }
                 pt[i] = MathEx.whichMax(delta);
                 tt[i] = delta[pt[i]];
@@ -161,6 +166,17 @@ public class CRF implements Serializable {
         return label;
     }
 
+    /**
+     * Labels a batch of sequences with Viterbi algorithm in parallel.
+     *
+     * @param x the sequences.
+     * @return the sequence labels.
+     */
+    public int[][] viterbi(Tuple[][] x) {
+        potentials();
+        return Arrays.stream(x).parallel().map(this::viterbi).toArray(int[][]::new);
+    }
+
     /**
      * Returns the most likely label sequence given the feature sequence by the
      * forward-backward algorithm.
@@ -194,40 +210,55 @@ public class CRF implements Serializable {
         return label;
     }
 
+    /**
+     * Returns the most likely label sequences of a batch of sequences by
+     * the forward-backward algorithm in parallel.
+     *
+     * @param x the sequences.
+     * @return the most likely label sequences.
+     */
+    public int[][] predict(Tuple[][] x) {
+        potentials();
+        return Arrays.stream(x).parallel().map(this::predict).toArray(int[][]::new);
+    }
+
+    /**
+     * Returns the flattened potential functions.
+     * @return the flattened potential functions.
+     */
+    private Potential[] potentials() {
+        Potential[] potential = flat;
+        if (potential == null) {
+            int state = schema.length() - 1;
+            potential = Arrays.stream(potentials)
+                    .map(trees -> new Potential(state, shrinkage, trees))
+                    .toArray(Potential[]::new);
+            flat = potential;
+        }
+        return potential;
+    }
+
     /** Calculates the potential function values. */
     private void f(Tuple[] x, Trellis trellis) {
         int n = x.length;
         int k = potentials.length;
-
-        Tuple x0 = extend(x[0], k);
-        Tuple[] xt = new Tuple[k];
+        Potential[] potential = potentials();
 
         for (int i = 0; i < k; i++) {
-            trellis.table[0][i].expf[0] = f(potentials[i], x0);
+            trellis.table[0][i].expf[0] = Math.exp(potential[i].f(x[0], k));
         }
 
         for (int t = 1; t < n; t++) {
-            for (int j = 0; j < k; j++) {
-                xt[j] = extend(x[t], j);
-            }
-
             for (int i = 0; i < k; i++) {
+                double[] expf = trellis.table[t][i].expf;
+                potential[i].f(x[t], expf);
                 for (int j = 0; j < k; j++) {
-                    trellis.table[t][i].expf[j] = f(potentials[i], xt[j]);
+                    expf[j] = Math.exp(expf[j]);
                 }
             }
         }
     }
 
-    /** Calculates the potential function value. */
-    private double f(RegressionTree[] potential, Tuple x) {
-        double F = 0.0;
-        for (RegressionTree tree : potential) {
-            F += shrinkage * tree.predict(x);
-        }
-        return Math.exp(F);
-    }
-
     /**
      * Fits a CRF model.
      * @param sequences the training data.
@@ -310,6 +341,13 @@ public class CRF implements Serializable {
         Arrays.fill(samples, 1);
         int[][] order = CART.order(data);
 
+        // The offset of each sequence's samples.
+        int stateFeature = data.ncol() - 1;
+        int[] start = new int[sequences.length];
+        for (int s = 1; s < sequences.length; s++) {
+            start[s] = start[s-1] + 1 + (sequences[s-1].length - 1) * k;
+        }
+
         for (int iter = 0; iter < ntrees; iter++) {
             logger.info("Training {} tree", Strings.ordinal(iter+1));
 
@@ -348,15 +386,34 @@ public class CRF implements Serializable {
                 }
             });
 
+            // The trees of classes are independent.
+            int round = iter;
+            IntStream.range(0, k).parallel().forEach(j ->
+                potentials[j][round] = new RegressionTree(data, loss[j], field, maxDepth, maxNodes, nodeSize, data.ncol(), samples, order)
+            );
+
+            // update the cached tree outputs by the new trees
+            Potential[] tree = new Potential[k];
             for (int j = 0; j < k; j++) {
-                RegressionTree tree = new RegressionTree(data, loss[j], field, maxDepth, maxNodes, nodeSize, data.ncol(), samples, order);
-                potentials[j][iter] = tree;
+                tree[j] = new Potential(stateFeature, shrinkage);
+                tree[j].add(potentials[j][iter]);
+            }
 
-                double[] hj = h[j];
-                for (int i = 0; i < n; i++) {
-                    hj[i] += shrinkage * tree.predict(data.get(i));
+            IntStream.range(0, sequences.length).parallel().forEach(s -> {
+                Tuple[] sequence = sequences[s];
+                double[] F = new double[k];
+                for (int j = 0; j < k; j++) {
+                    double[] hj = h[j];
+                    int l = start[s];
+                    hj[l++] += tree[j].f(sequence[0], k);
+                    for (int t = 1; t < sequence.length; t++) {
+                        tree[j].f(sequence[t], F);
+                        for (int i = 0; i < k; i++) {
+                            hj[l++] += F[i];
+                        }
+                    }
                 }
-            }
+            });
         }
 
         return new CRF(sequences[0][0].schema(), potentials, shrinkage);
@@ -397,24 +454,4 @@ public class CRF implements Serializable {
             throw new IllegalStateException();
         }
     }
-
-    /** Extends a feature vector with previous element's state. */
-    Tuple extend(Tuple x, int state) {
-        return new Tuple() {
-            @Override
-            public StructType schema() {
-                return schema;
-            }
-
-            @Override
-            public Object get(int j) {
-                return j == x.length() ? state : x.get(j);
-            }
-
-            @Override
-            public int getInt(int j) {
-                return j == x.length() ? state : x.getInt(j);
-            }
-        };
-    }
 }
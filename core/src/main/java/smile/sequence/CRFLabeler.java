@@ -149,4 +149,14 @@ public class CRFLabeler<T> implements SequenceLabeler<T> {
     public int[] viterbi(T[] o) {
         return model.viterbi(translate(o));
     }
+
+    /**
+     * Labels a batch of sequences with Viterbi algorithm in parallel.
+     *
+     * @param o the observation sequences.
+     * @return the sequence labels.
+     */
+    public int[][] viterbi(T[][] o) {
+        return model.viterbi(Arrays.stream(o).map(this::translate).toArray(Tuple[][]::new));
+    }
 }
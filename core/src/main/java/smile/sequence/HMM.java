@@ -20,7 +20,9 @@ package smile.sequence;
 import java.io.Serial;
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
 import smile.math.MathEx;
 import smile.math.matrix.Matrix;
 
@@ -37,6 +39,15 @@ import smile.math.matrix.Matrix;
  * distribution over the possible output tokens. Therefore, the sequence of
  * tokens generated by an HMM gives some information about the sequence of
  * states.
+ * <p>
+ * The Baum-Welch algorithm processes the training sequences in parallel.
+ * Each thread accumulates the expected counts of its share of sequences
+ * with reusable scaled forward-backward workspace, and the counts are
+ * merged at the end of each iteration. The Viterbi decoding works on the
+ * cached logarithm of model parameters, which are recomputed after the
+ * model is updated by {@link #update}. If the parameter matrices are
+ * modified otherwise, the cache is stale. A batch of sequences can be
+ * decoded in parallel by {@link #predict(int[][])}.
  *
  * @author Haifeng Li
  */
@@ -56,6 +67,10 @@ public class HMM implements Serializable {
      * Symbol emission probabilities.
      */
     private final Matrix b;
+    /**
+     * The cached model parameters in the layout of inference kernels.
+     */
+    private transient volatile Tables tables;
 
     /**
      * Constructor.
@@ -161,90 +176,349 @@ public class HMM implements Serializable {
      * @return the log probability of this sequence.
      */
     public double logp(int[] o) {
-        double[][] alpha = new double[o.length][a.nrow()];
-        double[] scaling = new double[o.length];
+        Tables model = tables();
+        double[] a = model.a;
+        double[] bt = model.bt;
+        int N = pi.length;
+
+        // The scaled forward procedure that keeps only the
+        // forward probabilities of previous and current time steps.
+        double[] prev = new double[N];
+        double[] alpha = new double[N];
+        int e = o[0] * N;
+        for (int k = 0; k < N; k++) {
+            alpha[k] = pi[k] * bt[e + k];
+        }
+        double p = scale(alpha);
+
+        for (int t = 1; t < o.length; t++) {
+            double[] swap = prev;
+            prev = alpha;
+            alpha = swap;
 
-        forward(o, alpha, scaling);
+            Arrays.fill(alpha, 0.0);
+            for (int i = 0; i < N; i++) {
+                double ai = prev[i];
+                int row = i * N;
+                for (int k = 0; k < N; k++) {
+                    alpha[k] += ai * a[row + k];
+                }
+            }
 
-        double p = 0.0;
-        for (int t = 0; t < o.length; t++) {
-            p += Math.log(scaling[t]);
+            e = o[t] * N;
+            for (int k = 0; k < N; k++) {
+                alpha[k] *= bt[e + k];
+            }
+            p += scale(alpha);
         }
 
         return p;
     }
 
     /**
-     * Normalize alpha[t] and put the normalization factor in scaling[t].
+     * Normalizes the forward probabilities of a time step.
+     * @param alpha the forward probabilities.
+     * @return the log of normalization factor.
      */
-    private void scale(double[] scaling, double[][] alpha, int t) {
-        double[] table = alpha[t];
-
+    private static double scale(double[] alpha) {
         double sum = 0.0;
-        for (double x : table) {
-            sum += x;
+        for (double ai : alpha) {
+            sum += ai;
         }
 
-        scaling[t] = sum;
-        for (int i = 0; i < table.length; i++) {
-            table[i] /= sum;
+        for (int i = 0; i < alpha.length; i++) {
+            alpha[i] /= sum;
         }
+        return Math.log(sum);
     }
 
     /**
-     * Scaled forward procedure without underflow.
-     *
-     * @param o an observation sequence.
-     * @param alpha on output, alpha(i, j) holds the scaled total probability of
-     * ending up in state i at time j.
-     * @param scaling on output, it holds scaling factors.
+     * Returns the cached model parameters.
+     * @return the cached model parameters.
      */
-    private void forward(int[] o, double[][] alpha, double[] scaling) {
-        int N = a.nrow();
-        for (int k = 0; k < N; k++) {
-            alpha[0][k] = pi[k] * b.get(k, o[0]);
+    private Tables tables() {
+        Tables model = tables;
+        if (model == null) {
+            model = new Tables(pi, a, b);
+            tables = model;
         }
-        scale(scaling, alpha, 0);
+        return model;
+    }
 
-        for (int t = 1; t < o.length; t++) {
-            for (int k = 0; k < N; k++) {
-                double sum = 0.0;
+    /**
+     * The model parameters in the layout of inference kernels,
+     * i.e. contiguous in the inner loops.
+     */
+    private static class Tables {
+        /** The state transition probabilities, a[i * N + j] = P(s_j | s_i). */
+        final double[] a;
+        /** The symbol emission probabilities, bt[o * N + i] = P(o | s_i). */
+        final double[] bt;
+        /** The log initial state probabilities. */
+        final double[] logPi;
+        /** The log state transition probabilities, logAt[j * N + i] = log P(s_j | s_i). */
+        final double[] logAt;
+        /** The log symbol emission probabilities, logBt[o * N + i] = log P(o | s_i). */
+        final double[] logBt;
+
+        /**
+         * Constructor.
+         * @param pi the initial state probabilities.
+         * @param a the state transition probabilities.
+         * @param b the symbol emission probabilities.
+         */
+        Tables(double[] pi, Matrix a, Matrix b) {
+            int N = a.nrow();
+            int M = b.ncol();
+            this.a = new double[N * N];
+            this.logAt = new double[N * N];
+            for (int i = 0; i < N; i++) {
+                for (int j = 0; j < N; j++) {
+                    double aij = a.get(i, j);
+                    this.a[i * N + j] = aij;
+                    logAt[j * N + i] = MathEx.log(aij);
+                }
+            }
 
+            this.bt = new double[M * N];
+            this.logBt = new double[M * N];
+            for (int j = 0; j < M; j++) {
                 for (int i = 0; i < N; i++) {
-                    sum += alpha[t - 1][i] * a.get(i, k);
+                    double bij = b.get(i, j);
+                    bt[j * N + i] = bij;
+                    logBt[j * N + i] = MathEx.log(bij);
                 }
+            }
 
-                alpha[t][k] = sum * b.get(k, o[t]);
+            this.logPi = new double[N];
+            for (int i = 0; i < N; i++) {
+                logPi[i] = MathEx.log(pi[i]);
             }
-            scale(scaling, alpha, t);
         }
     }
 
     /**
-     * Scaled backward procedure without underflow.
-     *
-     * @param o an observation sequence.
-     * @param beta on output, beta(i, j) holds the scaled total probability of
-     * starting up in state i at time j.
-     * @param scaling on input, it should hold scaling factors computed by
-     * forward procedure.
+     * The expected counts of Baum-Welch algorithm on a share of
+     * training sequences, and the workspace of scaled forward-backward
+     * procedure.
      */
-    private void backward(int[] o, double[][] beta, double[] scaling) {
-        int N = a.nrow();
-        int n = o.length - 1;
-        for (int i = 0; i < N; i++) {
-            beta[n][i] = 1.0 / scaling[n];
+    private static class Statistics {
+        /** The number of states. */
+        final int N;
+        /** The number of symbols. */
+        final int M;
+        /** The number of sequences. */
+        int count;
+        /** The expected number of times in state i at time 0. */
+        final double[] initial;
+        /** The expected number of transitions from state i to j. */
+        final double[] aNum;
+        /** The expected number of transitions from state i. */
+        final double[] aDen;
+        /** The expected number of times in state i observing symbol j. */
+        final double[] bNum;
+        /** The expected number of times in state i. */
+        final double[] bDen;
+        /** The scaled forward probabilities, alpha[t * N + i]. */
+        double[] alpha = new double[0];
+        /** The scaled backward probabilities, beta[t * N + i]. */
+        double[] beta = new double[0];
+        /** The scaling factors. */
+        double[] scaling = new double[0];
+        /** The workspace of emission times backward probabilities. */
+        final double[] w;
+        /** The posterior of last time step. */
+        final double[] last;
+
+        /**
+         * Constructor.
+         * @param N the number of states.
+         * @param M the number of symbols.
+         */
+        Statistics(int N, int M) {
+            this.N = N;
+            this.M = M;
+            this.initial = new double[N];
+            this.aNum = new double[N * N];
+            this.aDen = new double[N];
+            this.bNum = new double[N * M];
+            this.bDen = new double[N];
+            this.w = new double[N];
+            this.last = new double[N];
+        }
+
+        /**
+         * Ensures the capacity of workspace.
+         * @param n the length of sequence.
+         */
+        void ensure(int n) {
+            if (scaling.length < n) {
+                alpha = new double[n * N];
+                beta = new double[n * N];
+                scaling = new double[n];
+            }
         }
 
-        for (int t = n; t-- > 0;) {
+        /**
+         * Normalize alpha[t] and put the normalization factor in scaling[t].
+         */
+        void scale(int t) {
+            int base = t * N;
+            double sum = 0.0;
+            for (int i = 0; i < N; i++) {
+                sum += alpha[base + i];
+            }
+
+            scaling[t] = sum;
             for (int i = 0; i < N; i++) {
-                double sum = 0.;
+                alpha[base + i] /= sum;
+            }
+        }
 
+        /**
+         * Scaled forward procedure without underflow.
+         *
+         * @param o an observation sequence.
+         * @param pi the initial state probabilities.
+         * @param a the state transition probabilities in row-major order.
+         * @param bt the symbol emission probabilities in symbol-major order.
+         */
+        void forward(int[] o, double[] pi, double[] a, double[] bt) {
+            int e = o[0] * N;
+            for (int k = 0; k < N; k++) {
+                alpha[k] = pi[k] * bt[e + k];
+            }
+            scale(0);
+
+            for (int t = 1; t < o.length; t++) {
+                int base = t * N;
+                int prev = base - N;
+                Arrays.fill(alpha, base, base + N, 0.0);
+                for (int i = 0; i < N; i++) {
+                    double ai = alpha[prev + i];
+                    int row = i * N;
+                    for (int k = 0; k < N; k++) {
+                        alpha[base + k] += ai * a[row + k];
+                    }
+                }
+
+                e = o[t] * N;
+                for (int k = 0; k < N; k++) {
+                    alpha[base + k] *= bt[e + k];
+                }
+                scale(t);
+            }
+        }
+
+        /**
+         * Scaled backward procedure without underflow. It should be called
+         * after the forward procedure, which computes the scaling factors.
+         *
+         * @param o an observation sequence.
+         * @param a the state transition probabilities in row-major order.
+         * @param bt the symbol emission probabilities in symbol-major order.
+         */
+        void backward(int[] o, double[] a, double[] bt) {
+            int n = o.length - 1;
+            int base = n * N;
+            for (int i = 0; i < N; i++) {
+                beta[base + i] = 1.0 / scaling[n];
+            }
+
+            for (int t = n; t-- > 0;) {
+                int next = (t + 1) * N;
+                int e = o[t + 1] * N;
                 for (int j = 0; j < N; j++) {
-                    sum += beta[t + 1][j] * a.get(i, j) * b.get(j, o[t + 1]);
+                    w[j] = bt[e + j] * beta[next + j];
                 }
 
-                beta[t][i] = sum / scaling[t];
+                base = t * N;
+                for (int i = 0; i < N; i++) {
+                    int row = i * N;
+                    double sum = 0.0;
+                    for (int j = 0; j < N; j++) {
+                        sum += a[row + j] * w[j];
+                    }
+                    beta[base + i] = sum / scaling[t];
+                }
+            }
+        }
+
+        /**
+         * Accumulates the expected counts of a training sequence.
+         * Here, the xi (and, thus, gamma) values are not divided by the
+         * probability of the sequence because this probability might be
+         * too small and induce an underflow. xi[t][i][j] still can be
+         * interpreted as P(q_t = i and q_(t+1) = j | O, HMM) because
+         * the scaling factors are such that their product is equal to
+         * the inverse of the probability of the sequence.
+         *
+         * @param o an observation sequence.
+         * @param pi the initial state probabilities.
+         * @param a the state transition probabilities in row-major order.
+         * @param bt the symbol emission probabilities in symbol-major order.
+         */
+        void add(int[] o, double[] pi, double[] a, double[] bt) {
+            ensure(o.length);
+            forward(o, pi, a, bt);
+            backward(o, a, bt);
+
+            count++;
+            int n = o.length - 1;
+            Arrays.fill(last, 0.0);
+            for (int t = 0; t < n; t++) {
+                int next = (t + 1) * N;
+                int e = o[t + 1] * N;
+                for (int j = 0; j < N; j++) {
+                    w[j] = bt[e + j] * beta[next + j];
+                }
+
+                int base = t * N;
+                boolean end = t == n - 1;
+                for (int i = 0; i < N; i++) {
+                    double ai = alpha[base + i];
+                    int row = i * N;
+                    // gamma[t][i] = sum of xi[t][i][j] over j
+                    double gamma = 0.0;
+                    for (int j = 0; j < N; j++) {
+                        double xi = ai * a[row + j] * w[j];
+                        aNum[row + j] += xi;
+                        gamma += xi;
+                        if (end) last[j] += xi;
+                    }
+
+                    if (t == 0) initial[i] += gamma;
+                    aDen[i] += gamma;
+                    bNum[i * M + o[t]] += gamma;
+                    bDen[i] += gamma;
+                }
+            }
+
+            // gamma[n][j] = sum of xi[n-1][i][j] over i
+            for (int j = 0; j < N; j++) {
+                bNum[j * M + o[n]] += last[j];
+                bDen[j] += last[j];
+            }
+        }
+
+        /**
+         * Merges the expected counts of another share of sequences.
+         * @param other the expected counts of another share of sequences.
+         */
+        void merge(Statistics other) {
+            count += other.count;
+            for (int i = 0; i < N; i++) {
+                initial[i] += other.initial[i];
+                aDen[i] += other.aDen[i];
+                bDen[i] += other.bDen[i];
+            }
+
+            for (int i = 0; i < aNum.length; i++) {
+                aNum[i] += other.aNum[i];
+            }
+
+            for (int i = 0; i < bNum.length; i++) {
+                bNum[i] += other.bNum[i];
             }
         }
     }
@@ -259,54 +533,127 @@ public class HMM implements Serializable {
      * @return the most likely state sequence.
      */
     public int[] predict(int[] o) {
-        int N = a.nrow();
-        // The probability of the most probable path.
-        double[][] trellis = new double[o.length][N];
-        // Backtrace.
-        int[][] psy = new int[o.length][N];
-        // The most likely state sequence.
-        int[] s = new int[o.length];
-
-        // forward
-        for (int i = 0; i < N; i++) {
-            trellis[0][i] = MathEx.log(pi[i]) + MathEx.log(b.get(i, o[0]));
-            psy[0][i] = 0;
+        return new Trellis(pi.length).viterbi(o, tables());
+    }
+
+    /**
+     * Returns the most likely state sequences of a batch of observation
+     * sequences by the Viterbi algorithm. The sequences are decoded in
+     * parallel, and each thread reuses its trellis.
+     *
+     * @param o the observation sequences.
+     * @return the most likely state sequences.
+     */
+    public int[][] predict(int[][] o) {
+        Tables model = tables();
+        int N = pi.length;
+        int[][] s = new int[o.length][];
+        int chunks = chunks(o.length);
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            Trellis trellis = new Trellis(N);
+            for (int i = chunk; i < o.length; i += chunks) {
+                s[i] = trellis.viterbi(o[i], model);
+            }
+        });
+        return s;
+    }
+
+    /**
+     * Returns the number of chunks of parallel processing.
+     * @param n the number of sequences.
+     * @return the number of chunks.
+     */
+    private static int chunks(int n) {
+        return Math.max(1, Math.min(n, ForkJoinPool.getCommonPoolParallelism()));
+    }
+
+    /**
+     * The workspace of Viterbi algorithm.
+     */
+    private static class Trellis {
+        /** The number of states. */
+        final int N;
+        /** The log probability of the most probable path to each state. */
+        double[] delta;
+        /** The log probability of next time step. */
+        double[] next;
+        /** Backtrace, psy[t * N + j]. */
+        int[] psy = new int[0];
+
+        /**
+         * Constructor.
+         * @param N the number of states.
+         */
+        Trellis(int N) {
+            this.N = N;
+            this.delta = new double[N];
+            this.next = new double[N];
         }
 
-        for (int t = 1; t < o.length; t++) {
-            for (int j = 0; j < N; j++) {
-                double maxDelta = Double.NEGATIVE_INFINITY;
-                int maxPsy = 0;
+        /**
+         * Returns the most likely state sequence.
+         * @param o an observation sequence.
+         * @param model the cached model parameters.
+         * @return the most likely state sequence.
+         */
+        int[] viterbi(int[] o, Tables model) {
+            int n = o.length;
+            if (psy.length < n * N) {
+                psy = new int[n * N];
+            }
 
-                for (int i = 0; i < N; i++) {
-                    double delta = trellis[t - 1][i] + MathEx.log(a.get(i, j));
+            double[] logPi = model.logPi;
+            double[] logAt = model.logAt;
+            double[] logBt = model.logBt;
+
+            // forward
+            int e = o[0] * N;
+            for (int i = 0; i < N; i++) {
+                delta[i] = logPi[i] + logBt[e + i];
+                psy[i] = 0;
+            }
 
-                    if (maxDelta < delta) {
-                        maxDelta = delta;
-                        maxPsy = i;
+            for (int t = 1; t < n; t++) {
+                e = o[t] * N;
+                int base = t * N;
+                for (int j = 0; j < N; j++) {
+                    int row = j * N;
+                    double maxDelta = Double.NEGATIVE_INFINITY;
+                    int maxPsy = 0;
+
+                    for (int i = 0; i < N; i++) {
+                        double d = delta[i] + logAt[row + i];
+                        if (maxDelta < d) {
+                            maxDelta = d;
+                            maxPsy = i;
+                        }
                     }
+
+                    next[j] = maxDelta + logBt[e + j];
+                    psy[base + j] = maxPsy;
                 }
 
-                trellis[t][j] = maxDelta + MathEx.log(b.get(j, o[t]));
-                psy[t][j] = maxPsy;
+                double[] swap = delta;
+                delta = next;
+                next = swap;
             }
-        }
 
-        // trace back
-        int n = o.length - 1;
-        double maxDelta = Double.NEGATIVE_INFINITY;
-        for (int i = 0; i < N; i++) {
-            if (maxDelta < trellis[n][i]) {
-                maxDelta = trellis[n][i];
-                s[n] = i;
+            // trace back
+            int[] s = new int[n];
+            double maxDelta = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < N; i++) {
+                if (maxDelta < delta[i]) {
+                    maxDelta = delta[i];
+                    s[n - 1] = i;
+                }
             }
-        }
 
-        for (int t = n; t-- > 0;) {
-            s[t] = psy[t + 1][s[t + 1]];
-        }
+            for (int t = n - 1; t-- > 0;) {
+                s[t] = psy[(t + 1) * N + s[t + 1]];
+            }
 
-        return s;
+            return s;
+        }
     }
 
     /**
@@ -402,6 +749,12 @@ public class HMM implements Serializable {
      * @param iterations the number of iterations to execute.
      */
     public void update(int[][] observations, int iterations) {
+        for (int k = 0; k < observations.length; k++) {
+            if (observations[k].length <= 2) {
+                throw new IllegalArgumentException(String.format("Training sequence %d is too short.", k));
+            }
+        }
+
         for (int iter = 0; iter < iterations; iter++) {
             iterate(observations);
         }
@@ -415,139 +768,46 @@ public class HMM implements Serializable {
     private void iterate(int[][] sequences) {
         int N = a.nrow();
         int M = b.ncol();
-
-        // gamma[n] = gamma array associated to observation sequence n
-        double[][][] gamma = new double[sequences.length][][];
-
-        // a[i][j] = aijNum[i][j] / aijDen[i]
-        // aijDen[i] = expected number of transitions from state i
-        // aijNum[i][j] = expected number of transitions from state i to j
-        double[][] aijNum = new double[N][N];
-        double[] aijDen = new double[N];
-
-        for (int k = 0; k < sequences.length; k++) {
-            if (sequences[k].length <= 2) {
-                throw new IllegalArgumentException(String.format("Training sequence %d is too short.", k));
+        Tables model = new Tables(pi, a, b);
+
+        // Each chunk accumulates the expected counts of its sequences,
+        // which are merged in the order of chunks for reproducibility.
+        int chunks = chunks(sequences.length);
+        Statistics[] partial = IntStream.range(0, chunks).parallel().mapToObj(chunk -> {
+            Statistics stats = new Statistics(N, M);
+            for (int k = chunk; k < sequences.length; k += chunks) {
+                stats.add(sequences[k], pi, model.a, model.bt);
             }
+            return stats;
+        }).toArray(Statistics[]::new);
 
-            int[] o = sequences[k];
-            double[][] alpha = new double[o.length][N];
-            double[][] beta = new double[o.length][N];
-            double[] scaling = new double[o.length];
-            forward(o, alpha, scaling);
-            backward(o, beta, scaling);
-
-            double[][][] xi = estimateXi(o, alpha, beta);
-            double[][] g = gamma[k] = estimateGamma(xi);
-
-            int n = o.length - 1;
-            for (int i = 0; i < N; i++) {
-                for (int t = 0; t < n; t++) {
-                    aijDen[i] += g[t][i];
-
-                    for (int j = 0; j < N; j++) {
-                        aijNum[i][j] += xi[t][i][j];
-                    }
-                }
-            }
+        Statistics stats = partial[0];
+        for (int i = 1; i < chunks; i++) {
+            stats.merge(partial[i]);
         }
 
+        // a[i][j] = aijNum[i][j] / aijDen[i]
         for (int i = 0; i < N; i++) {
-            if (aijDen[i] != 0.0) {
+            if (stats.aDen[i] != 0.0) {
                 for (int j = 0; j < N; j++) {
-                    a.set(i, j, aijNum[i][j] / aijDen[i]);
+                    a.set(i, j, stats.aNum[i * N + j] / stats.aDen[i]);
                 }
             }
         }
 
-        /*
-         * initial state probability computation
-         */
-        Arrays.fill(pi, 0.0);
-        for (int j = 0; j < sequences.length; j++) {
-            for (int i = 0; i < N; i++) {
-                pi[i] += gamma[j][0][i];
-            }
-        }
-
+        // initial state probability
         for (int i = 0; i < N; i++) {
-            pi[i] /= sequences.length;
+            pi[i] = stats.initial[i] / stats.count;
         }
 
-        /*
-         * emission probability computation
-         */
-        b.fill(0.0);
+        // emission probability
         for (int i = 0; i < N; i++) {
-            double sum = 0.0;
-
-            for (int j = 0; j < sequences.length; j++) {
-                int[] o = sequences[j];
-                for (int t = 0; t < o.length; t++) {
-                    b.add(i, o[t], gamma[j][t][i]);
-                    sum += gamma[j][t][i];
-                }
-            }
-
             for (int j = 0; j < M; j++) {
-                b.div(i, j, sum);
-            }
-        }
-    }
-
-    /**
-     * Here, the xi (and, thus, gamma) values are not divided by the probability
-     * of the sequence because this probability might be too small and induce an
-     * underflow. xi[t][i][j] still can be interpreted as P(q_t = i and q_(t+1)
-     * = j | O, HMM) because we assume that the scaling factors are such that
-     * their product is equal to the inverse of the probability of the sequence.
-     */
-    private double[][][] estimateXi(int[] o, double[][] alpha, double[][] beta) {
-        if (o.length <= 1) {
-            throw new IllegalArgumentException("Observation sequence is too short.");
-        }
-
-        int N = a.nrow();
-        int n = o.length - 1;
-        double[][][] xi = new double[n][N][N];
-
-        for (int t = 0; t < n; t++) {
-            for (int i = 0; i < N; i++) {
-                for (int j = 0; j < N; j++) {
-                    xi[t][i][j] = alpha[t][i] * a.get(i, j) * b.get(j, o[t + 1]) * beta[t + 1][j];
-                }
-            }
-        }
-
-        return xi;
-    }
-
-    /**
-     * gamma[][] could be computed directly using the alpha and beta arrays, but
-     * this (slower) method is preferred because it doesn't change if the xi
-     * array has been scaled (and should be changed with the scaled alpha and
-     * beta arrays).
-     */
-    private double[][] estimateGamma(double[][][] xi) {
-        int N = a.nrow();
-        double[][] gamma = new double[xi.length + 1][N];
-
-        for (int t = 0; t < xi.length; t++) {
-            for (int i = 0; i < N; i++) {
-                for (int j = 0; j < N; j++) {
-                    gamma[t][i] += xi[t][i][j];
-                }
-            }
-        }
-
-        int n = xi.length - 1;
-        for (int j = 0; j < N; j++) {
-            for (int i = 0; i < N; i++) {
-                gamma[xi.length][j] += xi[n][i][j];
+                b.set(i, j, stats.bNum[i * M + j] / stats.bDen[i]);
             }
         }
 
-        return gamma;
+        tables = null;
     }
 
     @Override
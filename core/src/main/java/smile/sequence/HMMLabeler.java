@@ -157,4 +157,16 @@ public class HMMLabeler<T> implements SequenceLabeler<T> {
     public int[] predict(T[] o) {
         return model.predict(translate(o));
     }
+
+    /**
+     * Returns the most likely state sequences of a batch of observation
+     * sequences by the Viterbi algorithm in parallel.
+     *
+     * @param o the observation sequences.
+     * @return the most likely state sequences.
+     */
+    @Override
+    public int[][] predict(T[][] o) {
+        return model.predict(Arrays.stream(o).map(this::translate).toArray(int[][]::new));
+    }
 }
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.sequence;
+
+import java.util.Arrays;
+import smile.base.cart.InternalNode;
+import smile.base.cart.NominalNode;
+import smile.base.cart.Node;
+import smile.base.cart.OrdinalNode;
+import smile.base.cart.RegressionNode;
+import smile.data.Tuple;
+import smile.regression.RegressionTree;
+
+/**
+ * The potential function of a class in CRF, i.e. the weighted sum of
+ * regression trees, flattened into primitive arrays. The trees are
+ * evaluated on the features of a position and the state of previous
+ * position separately, so that the feature vector is not extended
+ * for each state. A tree not splitting on the previous state is
+ * evaluated only once for all states.
+ *
+ * @author Haifeng Li
+ */
+class Potential {
+    /** The index of previous state feature. */
+    private final int stateFeature;
+    /** The learning rate. */
+    private final double shrinkage;
+    /** The number of nodes. */
+    private int size;
+    /** The split feature of nodes, or -1 for leaf nodes. */
+    private int[] feature = new int[64];
+    /** True if the split feature is nominal. */
+    private boolean[] nominal = new boolean[64];
+    /** The split value of internal nodes, or the weighted output of leaf nodes. */
+    private double[] value = new double[64];
+    /** The true branch child of internal nodes. */
+    private int[] trueChild = new int[64];
+    /** The false branch child of internal nodes. */
+    private int[] falseChild = new int[64];
+    /** The number of trees. */
+    private int ntrees;
+    /** The root node of trees. */
+    private int[] root = new int[16];
+    /** True if the tree splits on the previous state. */
+    private boolean[] stateful = new boolean[16];
+
+    /**
+     * Constructor.
+     * @param stateFeature the index of previous state feature.
+     * @param shrinkage the learning rate.
+     */
+    Potential(int stateFeature, double shrinkage) {
+        this.stateFeature = stateFeature;
+        this.shrinkage = shrinkage;
+    }
+
+    /**
+     * Constructor.
+     * @param stateFeature the index of previous state feature.
+     * @param shrinkage the learning rate.
+     * @param trees the regression trees.
+     */
+    Potential(int stateFeature, double shrinkage, RegressionTree[] trees) {
+        this(stateFeature, shrinkage);
+        for (RegressionTree tree : trees) {
+            add(tree);
+        }
+    }
+
+    /**
+     * Adds a tree to the potential function.
+     * @param tree the regression tree.
+     */
+    void add(RegressionTree tree) {
+        if (ntrees == root.length) {
+            root = Arrays.copyOf(root, 2 * ntrees);
+            stateful = Arrays.copyOf(stateful, 2 * ntrees);
+        }
+
+        int start = size;
+        root[ntrees] = flatten(tree.root());
+        for (int i = start; i < size; i++) {
+            if (feature[i] == stateFeature) {
+                stateful[ntrees] = true;
+                break;
+            }
+        }
+        ntrees++;
+    }
+
+    /**
+     * Appends the nodes of a subtree in preorder.
+     * @param node the root of subtree.
+     * @return the index of root.
+     */
+    private int flatten(Node node) {
+        if (size == feature.length) {
+            int capacity = 2 * size;
+            feature = Arrays.copyOf(feature, capacity);
+            nominal = Arrays.copyOf(nominal, capacity);
+            value = Arrays.copyOf(value, capacity);
+            trueChild = Arrays.copyOf(trueChild, capacity);
+            falseChild = Arrays.copyOf(falseChild, capacity);
+        }
+
+        int id = size++;
+        if (node instanceof InternalNode split) {
+            feature[id] = split.feature();
+            if (split instanceof NominalNode nominalNode) {
+                nominal[id] = true;
+                value[id] = nominalNode.value();
+            } else {
+                value[id] = ((OrdinalNode) split).value();
+            }
+            int t = flatten(split.trueChild());
+            int f = flatten(split.falseChild());
+            trueChild[id] = t;
+            falseChild[id] = f;
+        } else {
+            feature[id] = -1;
+            value[id] = shrinkage * ((RegressionNode) node).output();
+        }
+        return id;
+    }
+
+    /**
+     * Evaluates a tree.
+     * @param node the root of tree.
+     * @param x the features of current position.
+     * @param state the state of previous position.
+     * @return the weighted output of tree.
+     */
+    private double eval(int node, Tuple x, int state) {
+        int f;
+        while ((f = feature[node]) >= 0) {
+            boolean branch;
+            if (nominal[node]) {
+                int v = f == stateFeature ? state : x.getInt(f);
+                branch = v == (int) value[node];
+            } else {
+                double v = f == stateFeature ? state : x.getDouble(f);
+                branch = v <= value[node];
+            }
+            node = branch ? trueChild[node] : falseChild[node];
+        }
+        return value[node];
+    }
+
+    /**
+     * Returns the potential function value F(x_t, s_t-1).
+     * @param x the features of current position.
+     * @param state the state of previous position.
+     * @return the potential function value.
+     */
+    double f(Tuple x, int state) {
+        double F = 0.0;
+        for (int i = 0; i < ntrees; i++) {
+            F += eval(root[i], x, state);
+        }
+        return F;
+    }
+
+    /**
+     * Computes the potential function values F(x_t, s_t-1) of
+     * all previous states in [0, F.length).
+     * @param x the features of current position.
+     * @param F the output potential function values.
+     */
+    void f(Tuple x, double[] F) {
+        Arrays.fill(F, 0.0);
+        int k = F.length;
+        for (int i = 0; i < ntrees; i++) {
+            if (stateful[i]) {
+                for (int j = 0; j < k; j++) {
+                    F[j] += eval(root[i], x, j);
+                }
+            } else {
+                double v = eval(root[i], x, 0);
+                for (int j = 0; j < k; j++) {
+                    F[j] += v;
+                }
+            }
+        }
+    }
+}
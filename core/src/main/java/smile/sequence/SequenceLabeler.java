@@ -18,6 +18,7 @@
 package smile.sequence;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  * A sequence labeler assigns a class label to each position of the sequence.
@@ -34,4 +35,14 @@ public interface SequenceLabeler<T> extends Serializable {
      * @return the sequence labels.
      */
     int[] predict(T[] x);
+
+    /**
+     * Predicts the labels of a batch of sequences. The default
+     * implementation labels the sequences in parallel.
+     * @param x the sequences.
+     * @return the sequence labels.
+     */
+    default int[][] predict(T[][] x) {
+        return Arrays.stream(x).parallel().map(xi -> predict(xi)).toArray(int[][]::new);
+    }
 }
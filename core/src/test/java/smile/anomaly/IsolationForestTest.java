@@ -20,8 +20,11 @@ package smile.anomaly;
 import org.apache.commons.csv.CSVFormat;
 import smile.io.Read;
 import smile.io.Write;
+import smile.math.MathEx;
+import smile.math.matrix.Matrix;
 import smile.util.Paths;
 import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  *
@@ -104,4 +107,50 @@ public class IsolationForestTest {
         // ScatterPlot.of(data).canvas().window();
         // Heatmap.of(x, y, grid).canvas().window();
     }
+
+    @Test
+    public void testBatchScore() throws Exception {
+        System.out.println("Batch score");
+
+        CSVFormat format = CSVFormat.Builder.create().setDelimiter(' ').build();
+        double[][] data = Read.csv(Paths.getTestData("clustering/rem.txt"), format).toArray();
+        IsolationForest model = IsolationForest.fit(data);
+
+        double[] score = model.score(data);
+        double[] matrix = model.score(Matrix.of(data));
+        for (int i = 0; i < data.length; i++) {
+            double s = model.score(data[i]);
+            assertEquals(s, score[i], 1E-10);
+            assertEquals(s, matrix[i], 1E-10);
+        }
+    }
+
+    @Test
+    public void testStreaming() {
+        System.out.println("Streaming");
+
+        MathEx.setSeed(19650218); // to get repeatable results.
+        double[][] data = new double[5000][];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = MathEx.random(0.0, 1.0, 2);
+        }
+
+        java.util.Properties params = new java.util.Properties();
+        params.setProperty("smile.isolation_forest.window_size", "2000");
+        StreamingIsolationForest model = StreamingIsolationForest.fit(data, params);
+
+        double[] normal = {0.5, 0.5};
+        double[] shifted = {10.5, 10.5};
+        assertTrue(model.score(shifted) > model.score(normal));
+
+        // The stream drifts to a new region.
+        for (int i = 0; i < 4000; i++) {
+            model.update(MathEx.random(10.0, 11.0, 2));
+        }
+        model.awaitRefresh();
+
+        System.out.format("normal = %.4f, shifted = %.4f%n", model.score(normal), model.score(shifted));
+        assertTrue(model.score(shifted) < model.score(normal));
+        assertEquals(model.score(shifted), model.score(new double[][]{shifted})[0], 1E-10);
+    }
 }
@@ -101,6 +101,40 @@ public class ARMTest {
         assertEquals(6803, rules.count());
     }
 
+    @Test
+    public void testParallel() {
+        System.out.println("parallel");
+
+        FPTree tree = FPTree.of(20, () -> ItemSetTestData.read("transaction/pima.D38.N768.C2"));
+        java.util.Comparator<AssociationRule> order = java.util.Comparator
+                .comparingDouble((AssociationRule rule) -> rule.confidence)
+                .thenComparingDouble(rule -> rule.support)
+                .thenComparing(rule -> java.util.Arrays.toString(rule.antecedent))
+                .thenComparing(rule -> java.util.Arrays.toString(rule.consequent));
+        List<AssociationRule> expected = ARM.apply(0.9, tree).sorted(order).collect(Collectors.toList());
+        List<AssociationRule> rules = ARM.parallel(0.9, tree).sorted(order).collect(Collectors.toList());
+        assertEquals(6803, rules.size());
+        for (int i = 0; i < rules.size(); i++) {
+            assertArrayEquals(expected.get(i).antecedent, rules.get(i).antecedent);
+            assertArrayEquals(expected.get(i).consequent, rules.get(i).consequent);
+            assertEquals(expected.get(i).confidence, rules.get(i).confidence, 1E-10);
+        }
+    }
+
+    @Test
+    public void testTop() {
+        System.out.println("top-k");
+
+        FPTree tree = FPTree.of(20, () -> ItemSetTestData.read("transaction/pima.D38.N768.C2"));
+        java.util.Comparator<AssociationRule> lift = java.util.Comparator.comparingDouble(rule -> rule.lift);
+        List<AssociationRule> expected = ARM.apply(0.9, tree).sorted(lift.reversed()).limit(10).collect(Collectors.toList());
+        List<AssociationRule> rules = ARM.top(10, 0.9, tree, lift);
+        assertEquals(10, rules.size());
+        for (int i = 0; i < rules.size(); i++) {
+            assertEquals(expected.get(i).lift, rules.get(i).lift, 1E-10);
+        }
+    }
+
     @Test
     public void testKosarak() {
         System.out.println("kosarak");
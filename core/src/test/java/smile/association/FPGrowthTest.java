@@ -106,6 +106,20 @@ public class FPGrowthTest {
         assertEquals(1803, FPGrowth.apply(tree).count());
     }
     
+    @Test
+    public void testParallel() {
+        System.out.println("parallel");
+
+        FPTree tree = FPTree.of(20, () -> ItemSetTestData.read("transaction/pima.D38.N768.C2"));
+        java.util.Set<ItemSet> expected = FPGrowth.apply(tree).collect(Collectors.toSet());
+        java.util.Set<ItemSet> results = FPGrowth.parallel(tree).collect(Collectors.toSet());
+        assertEquals(1803, results.size());
+        assertEquals(expected, results);
+
+        tree = FPTree.of(3, itemsets);
+        assertEquals(8, FPGrowth.parallel(tree).count());
+    }
+
     @Test
     public void testKosarak() {
         System.out.println("kosarak");
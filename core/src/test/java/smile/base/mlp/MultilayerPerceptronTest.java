@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.base.mlp;
+
+import smile.math.MathEx;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author Haifeng Li
+ */
+public class MultilayerPerceptronTest {
+
+    /** The network that exposes both per-sample and mini-batch back-propagation. */
+    static class Network extends MultilayerPerceptron {
+        final int[] y;
+
+        Network(int[] y, Layer... net) {
+            super(net);
+            this.y = y;
+            setClipNorm(5.0);
+        }
+
+        void setTarget(int i) {
+            double[] target = this.target.get();
+            java.util.Arrays.fill(target, 0.0);
+            target[y[i]] = 1.0;
+        }
+
+        void updatePerSample(double[][] x) {
+            for (int i = 0; i < x.length; i++) {
+                propagate(x[i], true);
+                setTarget(i);
+                backpropagate(false);
+            }
+            update(x.length);
+        }
+
+        void updateBatch(double[][] x) {
+            backpropagate(x, this::setTarget);
+            update(x.length);
+        }
+
+        double[] predict(double[] x) {
+            propagate(x, false);
+            return output.output().clone();
+        }
+    }
+
+    public MultilayerPerceptronTest() {
+    }
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterAll
+    public static void tearDownClass() throws Exception {
+    }
+
+    @BeforeEach
+    public void setUp() {
+    }
+
+    @AfterEach
+    public void tearDown() {
+    }
+
+    /** Returns a network with the same initial weights for the same seed. */
+    private Network network(int[] y, int p, int k) {
+        MathEx.setSeed(19650218);
+        return new Network(y,
+                new InputLayer(p),
+                new HiddenLayer(20, p, 0.0, ActivationFunction.sigmoid()),
+                new HiddenLayer(10, 20, 0.0, ActivationFunction.tanh()),
+                new OutputLayer(k, 10, OutputFunction.SOFTMAX, Cost.LIKELIHOOD));
+    }
+
+    @Test
+    public void testMiniBatch() {
+        System.out.println("Mini-batch");
+        MathEx.setSeed(19650218);
+        int n = 150, p = 8, k = 3;
+        double[][] x = new double[n][p];
+        int[] y = new int[n];
+        for (int i = 0; i < n; i++) {
+            y[i] = i % k;
+            for (int j = 0; j < p; j++) {
+                x[i][j] = MathEx.random() + y[i] * (j % 2);
+            }
+        }
+
+        Network sgd = network(y, p, k);
+        Network batch = network(y, p, k);
+        sgd.setRMSProp(0.9, 1E-7);
+        batch.setRMSProp(0.9, 1E-7);
+        for (int epoch = 0; epoch < 5; epoch++) {
+            sgd.updatePerSample(x);
+            batch.updateBatch(x);
+        }
+
+        for (double[] xi : x) {
+            assertArrayEquals(sgd.predict(xi), batch.predict(xi), 1E-10);
+        }
+    }
+}
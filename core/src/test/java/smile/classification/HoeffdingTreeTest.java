@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.classification;
+
+import smile.io.Read;
+import smile.io.Write;
+import smile.math.MathEx;
+import smile.test.data.*;
+import smile.validation.metric.Error;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author Haifeng
+ */
+public class HoeffdingTreeTest {
+
+    public HoeffdingTreeTest() {
+    }
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterAll
+    public static void tearDownClass() throws Exception {
+    }
+
+    @BeforeEach
+    public void setUp() {
+    }
+
+    @AfterEach
+    public void tearDown() {
+    }
+
+    @Test
+    public void testSegment() throws Exception {
+        System.out.println("Segment");
+
+        MathEx.setSeed(19650218); // to get repeatable results.
+        java.util.Properties params = new java.util.Properties();
+        params.setProperty("smile.hoeffding.grace_period", "50");
+        params.setProperty("smile.hoeffding.confidence", "0.01");
+        HoeffdingTree model = HoeffdingTree.fit(Segment.x, Segment.y, params);
+        System.out.format("Leaves = %d, depth = %d%n", model.leaves(), model.depth());
+
+        int[] prediction = model.predict(Segment.testx);
+        int error = Error.of(Segment.testy, prediction);
+        System.out.println("Error = " + error);
+        assertTrue(model.leaves() > 1);
+        assertTrue(error < 200);
+
+        for (int i = 0; i < Segment.testx.length; i++) {
+            model.update(Segment.testx[i], Segment.testy[i]);
+        }
+
+        java.nio.file.Path temp = Write.object(model);
+        Read.object(temp);
+    }
+
+    @Test
+    public void testMaxNodes() {
+        System.out.println("Max nodes");
+
+        MathEx.setSeed(19650218); // to get repeatable results.
+        java.util.Properties params = new java.util.Properties();
+        params.setProperty("smile.hoeffding.grace_period", "50");
+        params.setProperty("smile.hoeffding.confidence", "0.01");
+        params.setProperty("smile.hoeffding.max_nodes", "4");
+        HoeffdingTree model = HoeffdingTree.fit(Segment.x, Segment.y, params);
+        for (int loop = 0; loop < 3; loop++) {
+            model.update(Segment.x, Segment.y);
+        }
+        assertTrue(model.leaves() <= 4);
+    }
+
+    @Test
+    public void testAdaptiveRandomForest() {
+        System.out.println("Adaptive Random Forest");
+
+        MathEx.setSeed(19650218); // to get repeatable results.
+        java.util.Properties params = new java.util.Properties();
+        params.setProperty("smile.adaptive_random_forest.trees", "20");
+        AdaptiveRandomForest model = AdaptiveRandomForest.fit(Segment.x, Segment.y, params);
+
+        int[] prediction = model.predict(Segment.testx);
+        int error = Error.of(Segment.testy, prediction);
+        System.out.println("Error = " + error);
+        assertTrue(error < 100);
+
+        double[] posteriori = new double[model.numClasses()];
+        assertEquals(model.predict(Segment.testx[0]), model.predict(Segment.testx[0], posteriori));
+        assertEquals(1.0, MathEx.sum(posteriori), 1E-7);
+    }
+
+    @Test
+    public void testConceptDrift() {
+        System.out.println("Concept drift");
+
+        MathEx.setSeed(19650218); // to get repeatable results.
+        int n = 5000;
+        double[][] x = new double[2 * n][];
+        int[] y = new int[2 * n];
+        for (int i = 0; i < 2 * n; i++) {
+            x[i] = MathEx.random(0.0, 1.0, 2);
+            int label = x[i][0] > 0.5 ? 1 : 0;
+            // The concept flips in the second half of stream.
+            y[i] = i < n ? label : 1 - label;
+        }
+
+        java.util.Properties params = new java.util.Properties();
+        params.setProperty("smile.adaptive_random_forest.trees", "10");
+        AdaptiveRandomForest model = new AdaptiveRandomForest(2, smile.util.IntSet.of(2), params);
+        int error = 0;
+        for (int i = 0; i < 2 * n; i++) {
+            if (i >= 2 * n - 1000 && model.predict(x[i]) != y[i]) error++;
+            model.update(x[i], y[i]);
+        }
+
+        System.out.format("Drifts = %d, error = %d%n", model.drifts(), error);
+        assertTrue(model.drifts() > 0);
+        assertTrue(error < 100);
+    }
+
+    @Test
+    public void testDriftDetector() {
+        System.out.println("Drift detector");
+
+        MathEx.setSeed(19650218); // to get repeatable results.
+        AdaptiveRandomForest.DriftDetector detector = new AdaptiveRandomForest.DriftDetector();
+        for (int i = 0; i < 1000; i++) {
+            assertNotEquals(AdaptiveRandomForest.DriftDetector.State.DRIFT, detector.update(MathEx.random() < 0.1));
+        }
+
+        boolean drift = false;
+        for (int i = 0; i < 1000 && !drift; i++) {
+            drift = detector.update(MathEx.random() < 0.5) == AdaptiveRandomForest.DriftDetector.State.DRIFT;
+        }
+        assertTrue(drift);
+    }
+}
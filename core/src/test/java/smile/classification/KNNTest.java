@@ -130,6 +130,24 @@ public class KNNTest {
         assertEquals(39, error);
     }
 
+    @Test
+    public void testBlockSearch() {
+        System.out.println("Block Search");
+
+        KNN<double[]> model = KNN.fit(Segment.x, Segment.y, 1, true);
+
+        double[][] posteriori = new double[Segment.testx.length][model.numClasses()];
+        int[] prediction = model.predict(Segment.testx, posteriori);
+        int error = Error.of(Segment.testy, prediction);
+
+        System.out.println("Error = " + error);
+        assertEquals(39, error);
+        assertArrayEquals(prediction, model.predict(Segment.testx));
+        for (int i = 0; i < prediction.length; i++) {
+            assertEquals(prediction[i], model.predict(Segment.testx[i]));
+        }
+    }
+
     @Test
     public void testUSPS() throws Exception {
         System.out.println("USPS");
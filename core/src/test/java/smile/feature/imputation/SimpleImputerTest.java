@@ -18,6 +18,8 @@
 package smile.feature.imputation;
 
 import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import smile.data.DataFrame;
 import smile.io.Read;
 import smile.math.MathEx;
@@ -88,6 +90,18 @@ public class SimpleImputerTest {
         System.out.println(imputer);
     }
 
+    @Test
+    public void testStream() throws Exception {
+        System.out.println("SimpleImputer on stream");
+        DataFrame data = USArrests.data;
+        int n = data.size();
+        Stream<DataFrame> batches = IntStream.range(0, (n + 9) / 10)
+                .mapToObj(i -> data.slice(i * 10, Math.min(n, (i + 1) * 10)));
+        SimpleImputer imputer = SimpleImputer.fit(batches);
+        System.out.println(imputer);
+        assertEquals(SimpleImputer.fit(data).toString(), imputer.toString());
+    }
+
     @Test
     public void testLongley() throws Exception {
         System.out.println(Longley.data);
@@ -17,6 +17,8 @@
 
 package smile.feature.transform;
 
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import smile.data.DataFrame;
 import smile.test.data.Colon;
 import smile.test.data.Segment;
@@ -121,6 +123,25 @@ public class FeatureTransformTest {
         assertEquals(0.001494, df.getDouble(1, 6), 1E-4);
     }
 
+    @Test
+    public void testStandardizerStream() {
+        System.out.println("Standardizer on stream");
+
+        DataFrame train = Segment.train;
+        int n = train.size();
+        Stream<DataFrame> batches = IntStream.range(0, (n + 99) / 100)
+                .mapToObj(i -> train.slice(i * 100, Math.min(n, (i + 1) * 100)));
+        InvertibleColumnTransform transform = Standardizer.fit(batches);
+        DataFrame df = transform.apply(Segment.test);
+        DataFrame expected = Standardizer.fit(train).apply(Segment.test);
+
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 7; j++) {
+                assertEquals(expected.getDouble(i, j), df.getDouble(i, j), 1E-10);
+            }
+        }
+    }
+
     @Test
     public void testStandardizer() {
         System.out.println("Standardizer");
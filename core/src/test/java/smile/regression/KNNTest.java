@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2010-2021 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.regression;
+
+import smile.io.Read;
+import smile.io.Write;
+import smile.math.MathEx;
+import smile.test.data.*;
+import smile.validation.CrossValidation;
+import smile.validation.RegressionValidations;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author Haifeng Li
+ */
+public class KNNTest {
+
+    public KNNTest() {
+    }
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterAll
+    public static void tearDownClass() throws Exception {
+    }
+
+    @BeforeEach
+    public void setUp() {
+    }
+
+    @AfterEach
+    public void tearDown() {
+    }
+
+    @Test
+    public void testCPU() throws Exception {
+        System.out.println("CPU");
+
+        MathEx.setSeed(19650218); // to get repeatable results.
+
+        double[][] x = MathEx.clone(CPU.x);
+        MathEx.standardize(x);
+        RegressionValidations<KNN<double[]>> result = CrossValidation.regression(10, x, CPU.y,
+                (xi, yi) -> KNN.fit(xi, yi, 3));
+
+        System.out.println(result);
+
+        MathEx.setSeed(19650218); // to get repeatable results.
+        RegressionValidations<KNN<double[]>> block = CrossValidation.regression(10, x, CPU.y,
+                (xi, yi) -> KNN.fit(xi, yi, 3, true));
+
+        System.out.println(block);
+        // The results may slightly differ on tied neighbors.
+        assertEquals(result.avg.rmse, block.avg.rmse, 0.01);
+
+        KNN<double[]> model = KNN.fit(x, CPU.y, 3);
+        java.nio.file.Path temp = Write.object(model);
+        Read.object(temp);
+    }
+
+    @Test
+    public void testBatch() {
+        System.out.println("batch");
+
+        KNN<double[]> model = KNN.fit(Planes.x, Planes.y, 5, true);
+        double[][] x = new double[1000][];
+        System.arraycopy(Planes.x, 0, x, 0, x.length);
+        double[] batch = model.predict(x);
+        for (int i = 0; i < x.length; i++) {
+            assertEquals(model.predict(x[i]), batch[i], 1E-10);
+        }
+
+        float[][] xf = new float[Planes.x.length][];
+        for (int i = 0; i < xf.length; i++) {
+            xf[i] = new float[Planes.x[i].length];
+            for (int j = 0; j < xf[i].length; j++) {
+                xf[i][j] = (float) Planes.x[i][j];
+            }
+        }
+        KNN<float[]> fp32 = KNN.fit(xf, Planes.y, 5);
+        float[][] qf = new float[x.length][];
+        System.arraycopy(xf, 0, qf, 0, qf.length);
+        double[] prediction = fp32.predict(qf);
+        int diff = 0;
+        for (int i = 0; i < x.length; i++) {
+            if (Math.abs(prediction[i] - batch[i]) > 1E-7) diff++;
+        }
+        System.out.println("Different predictions of fp32 = " + diff);
+        assertTrue(diff < 50);
+    }
+}
@@ -120,5 +120,12 @@ public class CRFTest {
         System.out.format("Hypen error (Viterbi) rate = %.2f%%%n", 100.0 * viterbiError / n);
         assertEquals(470, error);
         assertEquals(508, viterbiError);
+
+        int[][] labels = model.predict(Hyphen.testSeq);
+        int[][] viterbi = model.viterbi(Hyphen.testSeq);
+        for (int i = 0; i < Hyphen.testSeq.length; i++) {
+            assertArrayEquals(model.predict(Hyphen.testSeq[i]), labels[i]);
+            assertArrayEquals(model.viterbi(Hyphen.testSeq[i]), viterbi[i]);
+        }
     }
 }
\ No newline at end of file
@@ -165,6 +165,42 @@ public class HMMTest {
         }
     }
 
+    /**
+     * Test of batch predict method, of class HMM.
+     */
+    @Test
+    public void testBatchPredict() {
+        System.out.println("batch predict");
+        MathEx.setSeed(19650218); // to get repeatable results.
+
+        double[] pi3 = {0.3, 0.3, 0.4};
+        double[][] a3 = {{0.6, 0.3, 0.1}, {0.2, 0.5, 0.3}, {0.25, 0.25, 0.5}};
+        double[][] b3 = {{0.5, 0.3, 0.1, 0.1}, {0.1, 0.2, 0.3, 0.4}, {0.25, 0.25, 0.25, 0.25}};
+        HMM hmm = new HMM(pi3, Matrix.of(a3), Matrix.of(b3));
+
+        int[][] sequences = new int[1000][];
+        for (int i = 0; i < sequences.length; i++) {
+            sequences[i] = new int[1 + MathEx.randomInt(50)];
+            for (int j = 0; j < sequences[i].length; j++) {
+                sequences[i][j] = MathEx.randomInt(4);
+            }
+        }
+
+        int[][] s = hmm.predict(sequences);
+        assertEquals(sequences.length, s.length);
+        for (int i = 0; i < sequences.length; i++) {
+            int[] si = hmm.predict(sequences[i]);
+            assertArrayEquals(si, s[i]);
+
+            // no other state sequence is more likely
+            double logp = hmm.logp(sequences[i], si);
+            int[] other = si.clone();
+            int t = MathEx.randomInt(other.length);
+            other[t] = (other[t] + 1) % 3;
+            assertTrue(logp >= hmm.logp(sequences[i], other));
+        }
+    }
+
     /**
      * Test of fit method, of class HMM.
      */
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package smile.deep;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * A multi-worker data loader that prefetches mini-batches in background
+ * threads. Each worker has its own collator, which may reuse preallocated
+ * buffers across the mini-batches that it loads. The workers claim the
+ * mini-batches in order and the number of mini-batches being loaded or
+ * waiting for consumption is bounded by the prefetch depth. The mini-batches
+ * are delivered either in order or as soon as they are ready.
+ * <p>
+ * The loader is closed automatically after the last mini-batch is delivered.
+ * If the consumer stops early, it should close the loader to cancel the
+ * workers and release the prefetched mini-batches.
+ *
+ * @param <T> the type of mini-batches.
+ *
+ * @author Haifeng Li
+ */
+public class DataLoader<T> implements Iterator<T>, AutoCloseable {
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(DataLoader.class);
+
+    /**
+     * The collator loads and assembles a mini-batch. A collator instance
+     * is used by only one worker thread. A collator that reuses buffers
+     * should rotate at least {@code prefetch + 1} of them because the
+     * mini-batches in flight and the one being consumed may all come
+     * from the same worker.
+     *
+     * @param <T> the type of mini-batches.
+     */
+    @FunctionalInterface
+    public interface Collator<T> {
+        /**
+         * Loads a mini-batch.
+         * @param batch the index of mini-batch.
+         * @return the mini-batch.
+         * @throws Exception if fail to load the mini-batch.
+         */
+        T collate(int batch) throws Exception;
+    }
+
+    /**
+     * Data loader options.
+     * @param workers the number of worker threads.
+     * @param prefetch the maximum number of mini-batches being loaded or
+     *                 waiting for consumption.
+     * @param ordered if true, the mini-batches are delivered in order.
+     *                Otherwise, they are delivered as soon as ready.
+     */
+    public record Options(int workers, int prefetch, boolean ordered) {
+        /** Constructor. */
+        public Options {
+            if (workers <= 0) {
+                throw new IllegalArgumentException("Invalid number of workers: " + workers);
+            }
+
+            if (prefetch < workers) {
+                throw new IllegalArgumentException(String.format("The prefetch depth %d is less than the number of workers %d", prefetch, workers));
+            }
+        }
+
+        /**
+         * Constructor with the prefetch depth of two mini-batches per worker
+         * and ordered delivery.
+         * @param workers the number of worker threads.
+         */
+        public Options(int workers) {
+            this(workers, 2 * workers, true);
+        }
+    }
+
+    /** The wrapper of the exception or error of a mini-batch. */
+    private record Failure(int batch, Throwable cause) { }
+
+    /** The number of mini-batches. */
+    private final int size;
+    /** The delivery order. */
+    private final boolean ordered;
+    /** The worker threads. */
+    private final Thread[] workers;
+    /** The permits of mini-batches in flight. */
+    private final Semaphore permits;
+    /** The index of next mini-batch to load. */
+    private final AtomicInteger next = new AtomicInteger();
+    /** The loaded mini-batches (or failures) by index. */
+    private final TreeMap<Integer, Object> results = new TreeMap<>();
+    /** The lock of results. */
+    private final ReentrantLock lock = new ReentrantLock();
+    /** The condition that a mini-batch is loaded. */
+    private final Condition ready = lock.newCondition();
+    /** The number of delivered mini-batches. */
+    private int delivered = 0;
+    /** True if the loader is closed. */
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor.
+     * @param size the number of mini-batches.
+     * @param collator the factory of collators, which is called once by each worker.
+     * @param options the data loader options.
+     */
+    public DataLoader(int size, Supplier<? extends Collator<T>> collator, Options options) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Invalid number of mini-batches: " + size);
+        }
+
+        this.size = size;
+        this.ordered = options.ordered();
+        this.permits = new Semaphore(options.prefetch());
+
+        int n = Math.min(options.workers(), Math.max(size, 1));
+        this.workers = new Thread[n];
+        for (int i = 0; i < n; i++) {
+            Thread thread = new Thread(() -> work(collator), "DataLoader-worker-" + i);
+            thread.setDaemon(true);
+            workers[i] = thread;
+        }
+
+        for (var worker : workers) {
+            worker.start();
+        }
+    }
+
+    /**
+     * The main loop of worker threads. Any throwable of collator is
+     * delivered to the consumer so that it never waits for a worker
+     * that has died.
+     * @param factory the factory of collators.
+     */
+    private void work(Supplier<? extends Collator<T>> factory) {
+        Collator<T> collator = null;
+        Throwable broken = null;
+        try {
+            collator = factory.get();
+        } catch (Throwable t) {
+            broken = t;
+        }
+
+        try {
+            while (!closed) {
+                permits.acquire();
+                int batch = next.getAndIncrement();
+                if (batch >= size) return;
+
+                Object result;
+                try {
+                    result = broken != null ? new Failure(batch, broken) : collator.collate(batch);
+                } catch (Throwable t) {
+                    result = new Failure(batch, t);
+                }
+
+                lock.lock();
+                try {
+                    if (closed) {
+                        release(result);
+                    } else {
+                        results.put(batch, result);
+                        ready.signalAll();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (InterruptedException ex) {
+            // cancelled by close()
+        }
+    }
+
+    /**
+     * Returns the number of mini-batches.
+     * @return the number of mini-batches.
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !closed && delivered < size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        Object result;
+        lock.lock();
+        try {
+            while ((result = poll()) == null) {
+                ready.await();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new NoSuchElementException("Interrupted while waiting for the next mini-batch");
+        } finally {
+            lock.unlock();
+        }
+
+        permits.release();
+        if (++delivered == size) {
+            close();
+        }
+
+        if (result instanceof Failure failure) {
+            close();
+            throw new IllegalStateException("Failed to load mini-batch " + failure.batch, failure.cause);
+        }
+        return (T) result;
+    }
+
+    /**
+     * Removes the next mini-batch to deliver if it is ready.
+     * The caller should hold the lock.
+     * @return the mini-batch or null if not ready.
+     */
+    private Object poll() {
+        if (ordered) {
+            return results.remove(delivered);
+        } else {
+            var entry = results.pollFirstEntry();
+            return entry == null ? null : entry.getValue();
+        }
+    }
+
+    /**
+     * Releases a prefetched mini-batch that won't be delivered.
+     * @param result the mini-batch or failure.
+     */
+    private static void release(Object result) {
+        if (result instanceof AutoCloseable batch) {
+            try {
+                batch.close();
+            } catch (Exception ex) {
+                logger.debug("Failed to release mini-batch", ex);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        for (var worker : workers) {
+            worker.interrupt();
+        }
+
+        lock.lock();
+        try {
+            results.values().forEach(DataLoader::release);
+            results.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -17,7 +17,6 @@
 package smile.deep;
 
 import java.util.Arrays;
-import java.util.Iterator;
 import smile.deep.tensor.Index;
 import smile.deep.tensor.Tensor;
 import smile.math.MathEx;
@@ -141,31 +140,19 @@ class DatasetImpl implements Dataset {
 }
 
     @Override
-    public Iterator<SampleBatch> iterator() {
-        return new Iterator<>() {
-            final int[] permutation = MathEx.permutate(size);
-            int[] index = new int[batch];
-            int i = 0;
-
-            @Override
-            public boolean hasNext() {
-                return i < size;
-            }
-
-            @Override
-            public SampleBatch next() {
-                int j = 0;
-                for (; j < batch && i < size; j++, i++) {
-                    index[j] = permutation[i];
-                }
-
-                if (j < batch) {
-                    index = Arrays.copyOf(index, j);
-                }
-
-                var idx = Index.of(index);
+    public DataLoader<SampleBatch> iterator() {
+        final int[] permutation = MathEx.permutate(size);
+        final int batches = (size + batch - 1) / batch;
+        // The mini-batches are sliced off the training thread.
+        return new DataLoader<>(batches, () -> {
+            final int[] buffer = new int[batch];
+            return i -> {
+                int start = i * batch;
+                int n = Math.min(batch, size - start);
+                System.arraycopy(permutation, start, buffer, 0, n);
+                var idx = Index.of(n == batch ? buffer : Arrays.copyOf(buffer, n));
                 return new SampleBatch(data.get(idx), target.get(idx));
-            }
-        };
+            };
+        }, new DataLoader.Options(1));
     }
 }
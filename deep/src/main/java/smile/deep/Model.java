@@ -16,6 +16,7 @@
  */
 package smile.deep;
 
+import java.util.Iterator;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.function.Function;
@@ -211,61 +212,67 @@ public class Model implements Function<Tensor, Tensor> {
         double lossValue = 0.0;
         for (int epoch = 1; epoch <= epochs; ++epoch) {
             // Iterate the data loader to yield batches from the dataset.
-            for (SampleBatch batch : train) {
-                Tensor data = device == null ? batch.data() : (dtype == null ? batch.data().to(device) : batch.data().to(device, dtype));
-                Tensor target = device == null ? batch.target() : batch.target().to(device);
-
-                if (transform != null) {
-                    var input = data;
-                    data = transform.apply(input);
-                    input.close();
-                }
-
-                // Reset gradients.
-                optimizer.reset();
-                // Execute the model on the input data.
-                Tensor prediction = net.forward(data);
-                // Compute a loss value to judge the prediction of our model.
-                Tensor error = loss.apply(prediction, target);
-                lossValue += error.floatValue();
-                // Compute gradients of the loss w.r.t. the parameters of our model.
-                error.backward();
-                // Update the parameters based on the calculated gradients.
-                optimizer.step();
-
-                // Explicitly free native memory
-                data.close();
-                target.close();
-                batch.close();
+            var batches = train.iterator();
+            try {
+                while (batches.hasNext()) {
+                    SampleBatch batch = batches.next();
+                    Tensor data = device == null ? batch.data() : (dtype == null ? batch.data().to(device) : batch.data().to(device, dtype));
+                    Tensor target = device == null ? batch.target() : batch.target().to(device);
+
+                    if (transform != null) {
+                        var input = data;
+                        data = transform.apply(input);
+                        input.close();
+                    }
 
-                if (learningRateSchedule != null) {
-                    double rate = learningRateSchedule.apply(batchIndex);
-                    optimizer.setLearningRate(rate);
-                }
+                    // Reset gradients.
+                    optimizer.reset();
+                    // Execute the model on the input data.
+                    Tensor prediction = net.forward(data);
+                    // Compute a loss value to judge the prediction of our model.
+                    Tensor error = loss.apply(prediction, target);
+                    lossValue += error.floatValue();
+                    // Compute gradients of the loss w.r.t. the parameters of our model.
+                    error.backward();
+                    // Update the parameters based on the calculated gradients.
+                    optimizer.step();
+
+                    // Explicitly free native memory
+                    data.close();
+                    target.close();
+                    batch.close();
 
-                if (++batchIndex % 100 == 0) {
-                    String msg = String.format("Epoch: %d | Batch: %d | Loss: %.4f", epoch, batchIndex, lossValue / 100);
                     if (learningRateSchedule != null) {
                         double rate = learningRateSchedule.apply(batchIndex);
-                        msg += String.format(" | LR: %.5f", rate);
+                        optimizer.setLearningRate(rate);
                     }
 
-                    if (test != null && batchIndex % 1000 == 0) {
-                        Map<String, Double> result = eval(test, metrics);
-                        StringBuilder sb = new StringBuilder(msg);
-                        train(); // return to training mode
-                        for (var metric : metrics) {
-                            String name = metric.name();
-                            sb.append(String.format(" | %s: %.2f%%", name, 100 * result.get(name)));
-                            metric.reset();
+                    if (++batchIndex % 100 == 0) {
+                        String msg = String.format("Epoch: %d | Batch: %d | Loss: %.4f", epoch, batchIndex, lossValue / 100);
+                        if (learningRateSchedule != null) {
+                            double rate = learningRateSchedule.apply(batchIndex);
+                            msg += String.format(" | LR: %.5f", rate);
+                        }
+
+                        if (test != null && batchIndex % 1000 == 0) {
+                            Map<String, Double> result = eval(test, metrics);
+                            StringBuilder sb = new StringBuilder(msg);
+                            train(); // return to training mode
+                            for (var metric : metrics) {
+                                String name = metric.name();
+                                sb.append(String.format(" | %s: %.2f%%", name, 100 * result.get(name)));
+                                metric.reset();
+                            }
+                            msg = sb.toString();
                         }
-                        msg = sb.toString();
-                    }
 
-                    logger.info(msg);
-                    lossValue = 0.0;
-                    free();
+                        logger.info(msg);
+                        lossValue = 0.0;
+                        free();
+                    }
                 }
+            } finally {
+                close(batches);
             }
 
             // Output the validation metrics.
@@ -290,6 +297,17 @@ public class Model implements Function<Tensor, Tensor> {
         }
     }
 
+    /**
+     * Closes the data loader if the iteration stops early, which cancels
+     * the prefetch workers and releases the prefetched mini-batches.
+     * @param batches the mini-batch iterator.
+     */
+    private static void close(Iterator<SampleBatch> batches) {
+        if (batches instanceof DataLoader<SampleBatch> loader) {
+            loader.close();
+        }
+    }
+
     /**
      * Free up tensors that was not managed by AutoScope.
      * For example, SequentialBlock doesn't release input
@@ -306,24 +324,30 @@ public class Model implements Function<Tensor, Tensor> {
      */
     public Map<String, Double> eval(Dataset dataset, Metric... metrics) {
         eval(); // evaluation mode
-        for (SampleBatch batch : dataset) {
-            Tensor data = device == null ? batch.data() : (dtype == null ? batch.data().to(device) : batch.data().to(device, dtype));;
-            Tensor target = device == null ? batch.target() : batch.target().to(device);
-
-            if (transform != null) {
-                var input = data;
-                data = transform.apply(input);
-                input.close();
-            }
+        var batches = dataset.iterator();
+        try {
+            while (batches.hasNext()) {
+                SampleBatch batch = batches.next();
+                Tensor data = device == null ? batch.data() : (dtype == null ? batch.data().to(device) : batch.data().to(device, dtype));;
+                Tensor target = device == null ? batch.target() : batch.target().to(device);
 
-            Tensor output = net.forward(data);
-            for (var metric : metrics) {
-                metric.update(output, target);
+                if (transform != null) {
+                    var input = data;
+                    data = transform.apply(input);
+                    input.close();
+                }
+
+                Tensor output = net.forward(data);
+                for (var metric : metrics) {
+                    metric.update(output, target);
+                }
+                // Explicitly free native memory
+                data.close();
+                target.close();
+                batch.close();
             }
-            // Explicitly free native memory
-            data.close();
-            target.close();
-            batch.close();
+        } finally {
+            close(batches);
         }
 
         Map<String, Double> map = new TreeMap<>();
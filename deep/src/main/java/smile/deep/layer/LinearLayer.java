@@ -52,6 +52,14 @@ public class LinearLayer implements Layer {
         this.module = new LinearImpl(options);
     }
 
+    /**
+     * Returns the weight matrix of size out x in.
+     * @return the weight matrix.
+     */
+    public Tensor weight() {
+        return new Tensor(module.weight());
+    }
+
     @Override
     public Module asTorch() {
         return module;
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package smile.deep.layer;
+
+import java.util.Arrays;
+import org.bytedeco.pytorch.Module;
+import smile.deep.tensor.ScalarType;
+import smile.deep.tensor.Tensor;
+
+/**
+ * A fully connected linear layer without bias for CPU inference, of which
+ * the weights are quantized to 8-bit or 4-bit integers. The layer has no
+ * PyTorch parameters. The input is converted to single precision and the
+ * output is converted back to the data type of input.
+ *
+ * @author Haifeng Li
+ */
+public class QuantizedLinearLayer implements Layer {
+    private final QuantizedWeight weight;
+    private final Module module = new Module();
+
+    /**
+     * Constructor.
+     * @param weight the quantized weight.
+     */
+    public QuantizedLinearLayer(QuantizedWeight weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * Returns the quantized weight.
+     * @return the quantized weight.
+     */
+    public QuantizedWeight weight() {
+        return weight;
+    }
+
+    @Override
+    public Module asTorch() {
+        return module;
+    }
+
+    @Override
+    public Tensor forward(Tensor input) {
+        long[] shape = input.shape();
+        int in = weight.in();
+        if (shape[shape.length - 1] != in) {
+            throw new IllegalArgumentException(String.format("The input size %d doesn't match the layer input features %d", shape[shape.length - 1], in));
+        }
+
+        float[] x;
+        try (var fp32 = input.to(ScalarType.Float32);
+             var tensor = fp32.contiguous()) {
+            x = new float[(int) tensor.length()];
+            tensor.asTorch().data_ptr_float().get(x);
+        }
+
+        int rows = x.length / in;
+        float[] y = new float[rows * weight.out()];
+        weight.mm(x, rows, y);
+
+        shape = Arrays.copyOf(shape, shape.length);
+        shape[shape.length - 1] = weight.out();
+        try (var output = Tensor.of(y, shape)) {
+            return output.to(input.device(), input.dtype());
+        }
+    }
+}
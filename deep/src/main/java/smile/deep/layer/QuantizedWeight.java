@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package smile.deep.layer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.stream.IntStream;
+import smile.math.simd.SIMD;
+
+/**
+ * The weight matrix of a linear layer quantized to 8-bit or 4-bit integers.
+ * The weights are quantized symmetrically, i.e. w = scale * q, with a scale
+ * per group of consecutive input features of an output channel. The 8-bit
+ * weights have one scale per output channel and the 4-bit weights have one
+ * scale per group of typically 32 or 64 weights. Two 4-bit weights are packed
+ * in a byte, the first one in the lower nibble.
+ * <p>
+ * The weights and scales are stored in little-endian buffers that may be
+ * memory-mapped from a checkpoint file so that a model larger than the heap
+ * is loaded on demand by the operating system. The matrix multiplication
+ * dequantizes a row of weights at a time and runs in parallel over blocks
+ * of output channels.
+ *
+ * @author Haifeng Li
+ */
+public class QuantizedWeight {
+    /** The number of output channels per parallel task. */
+    private static final int BLOCK = 16;
+    /** The size of header in bytes. */
+    private static final int HEADER = 4 * Integer.BYTES;
+    /** The number of bits per weight, either 8 or 4. */
+    private final int bits;
+    /** The number of output features. */
+    private final int out;
+    /** The number of input features. */
+    private final int in;
+    /** The number of weights sharing a scale. */
+    private final int groupSize;
+    /** The number of groups per output channel. */
+    private final int groups;
+    /** The quantized weights in row-major order. */
+    private final ByteBuffer weights;
+    /** The scales of groups in row-major order. */
+    private final FloatBuffer scales;
+
+    /**
+     * Constructor.
+     * @param bits the number of bits per weight, either 8 or 4.
+     * @param out the number of output features.
+     * @param in the number of input features.
+     * @param groupSize the number of weights sharing a scale.
+     * @param weights the quantized weights.
+     * @param scales the scales of groups.
+     */
+    public QuantizedWeight(int bits, int out, int in, int groupSize, ByteBuffer weights, FloatBuffer scales) {
+        if (bits != 8 && bits != 4) {
+            throw new IllegalArgumentException("Invalid number of bits: " + bits);
+        }
+
+        if (out <= 0 || in <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid weight matrix size: %d x %d", out, in));
+        }
+
+        if (groupSize <= 0 || in % groupSize != 0 || (bits == 4 && groupSize % 2 != 0)) {
+            throw new IllegalArgumentException(String.format("Invalid group size %d for %d input features", groupSize, in));
+        }
+
+        this.bits = bits;
+        this.out = out;
+        this.in = in;
+        this.groupSize = groupSize;
+        this.groups = in / groupSize;
+
+        if (weights.remaining() != (long) out * in * bits / 8) {
+            throw new IllegalArgumentException("Invalid size of quantized weights: " + weights.remaining());
+        }
+
+        if (scales.remaining() != (long) out * groups) {
+            throw new IllegalArgumentException("Invalid size of scales: " + scales.remaining());
+        }
+
+        this.weights = weights.slice().order(ByteOrder.LITTLE_ENDIAN);
+        this.scales = scales.slice();
+    }
+
+    /**
+     * Quantizes a weight matrix to 8-bit integers with a scale per output channel.
+     * @param w the weight matrix of size out x in in row-major order.
+     * @param out the number of output features.
+     * @param in the number of input features.
+     * @return the quantized weight.
+     */
+    public static QuantizedWeight int8(float[] w, int out, int in) {
+        return quantize(w, out, in, 8, in);
+    }
+
+    /**
+     * Quantizes a weight matrix to 4-bit integers with a scale per group.
+     * @param w the weight matrix of size out x in in row-major order.
+     * @param out the number of output features.
+     * @param in the number of input features.
+     * @param groupSize the number of weights sharing a scale.
+     * @return the quantized weight.
+     */
+    public static QuantizedWeight int4(float[] w, int out, int in, int groupSize) {
+        return quantize(w, out, in, 4, groupSize);
+    }
+
+    /**
+     * Quantizes a weight matrix.
+     * @param w the weight matrix of size out x in in row-major order.
+     * @param out the number of output features.
+     * @param in the number of input features.
+     * @param bits the number of bits per weight.
+     * @param groupSize the number of weights sharing a scale.
+     * @return the quantized weight.
+     */
+    private static QuantizedWeight quantize(float[] w, int out, int in, int bits, int groupSize) {
+        if (w.length != (long) out * in) {
+            throw new IllegalArgumentException(String.format("The weight array size %d doesn't match %d x %d", w.length, out, in));
+        }
+
+        if (groupSize <= 0 || in % groupSize != 0) {
+            throw new IllegalArgumentException(String.format("Invalid group size %d for %d input features", groupSize, in));
+        }
+
+        int groups = in / groupSize;
+        int max = bits == 8 ? 127 : 7;
+        var weights = ByteBuffer.allocate(out * in * bits / 8).order(ByteOrder.LITTLE_ENDIAN);
+        var scales = FloatBuffer.allocate(out * groups);
+
+        IntStream.range(0, out).parallel().forEach(o -> {
+            byte[] q = new byte[in];
+            for (int g = 0; g < groups; g++) {
+                int start = o * in + g * groupSize;
+                float amax = 0.0f;
+                for (int j = 0; j < groupSize; j++) {
+                    amax = Math.max(amax, Math.abs(w[start + j]));
+                }
+
+                float scale = amax / max;
+                scales.put(o * groups + g, scale);
+                for (int j = 0; j < groupSize; j++) {
+                    int v = scale == 0.0f ? 0 : Math.round(w[start + j] / scale);
+                    q[g * groupSize + j] = (byte) Math.max(-max, Math.min(max, v));
+                }
+            }
+
+            if (bits == 8) {
+                weights.put(o * in, q);
+            } else {
+                int offset = o * in / 2;
+                for (int j = 0; j < in; j += 2) {
+                    weights.put(offset + j / 2, (byte) (((q[j] + 8) & 0xF) | ((q[j + 1] + 8) << 4)));
+                }
+            }
+        });
+
+        return new QuantizedWeight(bits, out, in, groupSize, weights, scales);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("QuantizedWeight(int%d, %d x %d, group size = %d)", bits, out, in, groupSize);
+    }
+
+    /**
+     * Returns the number of bits per weight.
+     * @return the number of bits per weight.
+     */
+    public int bits() {
+        return bits;
+    }
+
+    /**
+     * Returns the number of output features.
+     * @return the number of output features.
+     */
+    public int out() {
+        return out;
+    }
+
+    /**
+     * Returns the number of input features.
+     * @return the number of input features.
+     */
+    public int in() {
+        return in;
+    }
+
+    /**
+     * Returns the number of weights sharing a scale.
+     * @return the number of weights sharing a scale.
+     */
+    public int groupSize() {
+        return groupSize;
+    }
+
+    /**
+     * Returns the number of bytes of quantized weights and scales.
+     * @return the number of bytes of quantized weights and scales.
+     */
+    public long bytes() {
+        return (long) weights.capacity() + (long) scales.capacity() * Float.BYTES;
+    }
+
+    /**
+     * Copies the quantized weights of an output channel as 8-bit integers.
+     * @param o the index of output channel.
+     * @param q the buffer of quantized weights of size in.
+     * @param packed the buffer of packed 4-bit weights of size in/2.
+     */
+    private void row(int o, byte[] q, byte[] packed) {
+        if (bits == 8) {
+            weights.get(o * in, q);
+        } else {
+            weights.get(o * in / 2, packed);
+            for (int j = 0; j < packed.length; j++) {
+                int b = packed[j];
+                q[2 * j] = (byte) ((b & 0xF) - 8);
+                q[2 * j + 1] = (byte) (((b >> 4) & 0xF) - 8);
+            }
+        }
+    }
+
+    /**
+     * Returns the dequantized weight matrix.
+     * @return the weight matrix of size out x in in row-major order.
+     */
+    public float[] dequantize() {
+        float[] w = new float[out * in];
+        IntStream.range(0, out).parallel().forEach(o -> {
+            byte[] q = new byte[in];
+            row(o, q, new byte[in / 2]);
+            for (int j = 0; j < in; j++) {
+                w[o * in + j] = scales.get(o * groups + j / groupSize) * q[j];
+            }
+        });
+        return w;
+    }
+
+    /**
+     * Computes y = x * W', where W is the weight matrix.
+     * @param x the input matrix of size rows x in in row-major order.
+     * @param rows the number of rows of input matrix.
+     * @param y the output matrix of size rows x out in row-major order.
+     */
+    public void mm(float[] x, int rows, float[] y) {
+        if (x.length < (long) rows * in || y.length < (long) rows * out) {
+            throw new IllegalArgumentException(String.format("Invalid input/output size: %d, %d", x.length, y.length));
+        }
+
+        int blocks = (out + BLOCK - 1) / BLOCK;
+        IntStream.range(0, blocks).parallel().forEach(b -> {
+            byte[] q = new byte[in];
+            byte[] packed = new byte[in / 2];
+            int end = Math.min(out, (b + 1) * BLOCK);
+            for (int o = b * BLOCK; o < end; o++) {
+                row(o, q, packed);
+                for (int r = 0; r < rows; r++) {
+                    float sum = 0.0f;
+                    for (int g = 0; g < groups; g++) {
+                        int offset = g * groupSize;
+                        sum += scales.get(o * groups + g) * SIMD.engine.dot(x, r * in + offset, q, offset, groupSize);
+                    }
+                    y[r * out + o] = sum;
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes the quantized weight to a file channel at its current position.
+     * @param channel the file channel.
+     * @throws IOException if fail to write the file.
+     */
+    public void write(FileChannel channel) throws IOException {
+        var header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(bits).putInt(out).putInt(in).putInt(groupSize).flip();
+        writeFully(channel, header);
+
+        var buffer = ByteBuffer.allocate(scales.capacity() * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(scales.duplicate().rewind());
+        writeFully(channel, buffer);
+        writeFully(channel, weights.duplicate().rewind());
+    }
+
+    /**
+     * Writes the buffer completely.
+     * @param channel the file channel.
+     * @param buffer the data buffer.
+     * @throws IOException if fail to write the file.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Memory-maps a quantized weight from a file channel at its current
+     * position, which is advanced to the end of the weight.
+     * @param channel the file channel.
+     * @return the quantized weight.
+     * @throws IOException if fail to read the file.
+     */
+    public static QuantizedWeight map(FileChannel channel) throws IOException {
+        var header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (channel.read(header) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        header.flip();
+
+        int bits = header.getInt();
+        int out = header.getInt();
+        int in = header.getInt();
+        int groupSize = header.getInt();
+        if (bits != 8 && bits != 4 || out <= 0 || in <= 0 || groupSize <= 0 || in % groupSize != 0) {
+            throw new IOException(String.format("Invalid quantized weight header: int%d, %d x %d, group size = %d", bits, out, in, groupSize));
+        }
+
+        long position = channel.position();
+        long scaleBytes = (long) out * (in / groupSize) * Float.BYTES;
+        long weightBytes = (long) out * in * bits / 8;
+        var scales = channel.map(FileChannel.MapMode.READ_ONLY, position, scaleBytes)
+                .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        var weights = channel.map(FileChannel.MapMode.READ_ONLY, position + scaleBytes, weightBytes);
+        channel.position(position + scaleBytes + weightBytes);
+        return new QuantizedWeight(bits, out, in, groupSize, weights, scales);
+    }
+}
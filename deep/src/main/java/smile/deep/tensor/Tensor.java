@@ -33,8 +33,12 @@ import smile.util.Tuple2;
  */
 public class Tensor implements AutoCloseable {
     private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(Tensor.class);
-    /** A scope controls the lifecycle of tensors, providing timely deallocation. */
-    private static final Stack<AutoScope> scopes = new Stack<>();
+    /**
+     * A scope controls the lifecycle of tensors, providing timely deallocation.
+     * The scopes are per thread so that the tensors created by data loader
+     * workers don't join the scope of training thread.
+     */
+    private static final ThreadLocal<Stack<AutoScope>> scopes = ThreadLocal.withInitial(Stack::new);
     /** Default options such as device and dtype. */
     private static Options defaultOptions;
     /** PyTorch Tensor handle. */
@@ -104,7 +108,7 @@ public class Tensor implements AutoCloseable {
      * @param scope a scope to automatically release tensors.
      */
     public static void push(AutoScope scope) {
-        scopes.push(scope);
+        scopes.get().push(scope);
     }
 
     /**
@@ -113,7 +117,7 @@ public class Tensor implements AutoCloseable {
      * @return the top level scope.
      */
     public static AutoScope pop() {
-        var scope = scopes.pop();
+        var scope = scopes.get().pop();
         scope.close();
         return scope;
     }
@@ -124,8 +128,9 @@ public class Tensor implements AutoCloseable {
      */
     public Tensor(org.bytedeco.pytorch.Tensor tensor) {
         this.value = tensor;
-        if (!scopes.isEmpty()) {
-            scopes.peek().add(this);
+        var stack = scopes.get();
+        if (!stack.isEmpty()) {
+            stack.peek().add(this);
         }
     }
 
@@ -1117,6 +1122,32 @@ public class Tensor implements AutoCloseable {
         }
     }
 
+    /**
+     * Returns the top-p (nucleus) distribution of a probability distribution,
+     * which keeps the smallest set of tokens whose cumulative probability
+     * mass exceeds the threshold p and renormalizes the probabilities.
+     * The other tokens have zero probability.
+     * @param p Probability threshold for top-p sampling.
+     * @return the top-p distribution of the same shape.
+     */
+    public Tensor nucleus(double p) {
+        try (var scope = new AutoScope()) {
+            var sort = torch.sort(value, -1, true);
+            var probsSort = scope.add(sort.get0());
+            var probsIdx = scope.add(sort.get1());
+            var probsSum = scope.add(torch.cumsum(probsSort, -1));
+
+            var mask = scope.add(probsSum.sub_(probsSort).gt(new Scalar(p)));
+            TensorIndexVector indexVector = new TensorIndexVector();
+            indexVector.push_back(new TensorIndex(mask));
+            probsSort.index_put_(indexVector, new Scalar(0.0f));
+
+            var sum = scope.add(probsSort.sum(new long[]{-1}, true, new ScalarTypeOptional()));
+            probsSort.div_(sum);
+            return new Tensor(value.scatter(-1, probsIdx, probsSort));
+        }
+    }
+
     /**
      * Stacks tensors in sequence horizontally (column wise).
      * @param tensors the tensors to concatenate.
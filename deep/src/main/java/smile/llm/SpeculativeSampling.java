@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package smile.llm;
+
+import java.util.Arrays;
+import smile.math.Random;
+
+/**
+ * The verification of draft tokens in speculative decoding. A small draft
+ * model proposes k tokens autoregressively, which the target model scores
+ * in one forward pass. The draft token x at step j is accepted with
+ * probability min(1, p(x) / q(x)), where p and q are the target and draft
+ * distributions. On the first rejection, a token is sampled from the
+ * normalized residual distribution max(0, p - q). If all draft tokens are
+ * accepted, a bonus token is sampled from the target distribution of
+ * the next position. The generated tokens follow exactly the target
+ * distribution while the target model runs once per k + 1 tokens at best.
+ *
+ * <h2>References</h2>
+ * <ol>
+ * <li>Yaniv Leviathan, Matan Kalman, and Yossi Matias. Fast Inference from Transformers via Speculative Decoding. ICML, 2023.</li>
+ * <li>Charlie Chen, et al. Accelerating Large Language Model Decoding with Speculative Sampling. arXiv:2302.01318, 2023.</li>
+ * </ol>
+ *
+ * @author Haifeng Li
+ */
+public class SpeculativeSampling {
+    /** Private constructor to prevent instance creation. */
+    private SpeculativeSampling() {
+
+    }
+
+    /**
+     * Verifies the draft tokens by rejection sampling.
+     * @param p the target distributions of k + 1 positions.
+     * @param q the draft distributions of k positions.
+     * @param draft the k draft tokens.
+     * @param random the random number generator.
+     * @return the accepted draft tokens followed by a token sampled from
+     *         the residual or target distribution.
+     */
+    public static int[] verify(float[][] p, float[][] q, int[] draft, Random random) {
+        int k = draft.length;
+        if (p.length != k + 1 || q.length != k) {
+            throw new IllegalArgumentException(String.format("Invalid number of distributions: %d, %d for %d draft tokens", p.length, q.length, k));
+        }
+
+        int[] tokens = new int[k + 1];
+        for (int j = 0; j < k; j++) {
+            int x = draft[j];
+            if (random.nextDouble() * q[j][x] < p[j][x]) {
+                tokens[j] = x;
+            } else {
+                tokens[j] = residual(p[j], q[j], random);
+                return Arrays.copyOf(tokens, j + 1);
+            }
+        }
+
+        tokens[k] = sample(p[k], random);
+        return tokens;
+    }
+
+    /**
+     * Verifies the draft tokens of greedy decoding, which accepts
+     * the longest prefix that agrees with the target model.
+     * @param target the k + 1 most probable tokens of target model.
+     * @param draft the k draft tokens.
+     * @return the accepted draft tokens followed by the next token
+     *         of target model.
+     */
+    public static int[] greedy(int[] target, int[] draft) {
+        int k = draft.length;
+        if (target.length != k + 1) {
+            throw new IllegalArgumentException(String.format("Invalid number of target tokens: %d for %d draft tokens", target.length, k));
+        }
+
+        int j = 0;
+        while (j < k && draft[j] == target[j]) j++;
+        return Arrays.copyOf(target, j + 1);
+    }
+
+    /**
+     * Samples a token from the normalized residual distribution max(0, p - q).
+     * @param p the target distribution.
+     * @param q the draft distribution.
+     * @param random the random number generator.
+     * @return the sampled token.
+     */
+    private static int residual(float[] p, float[] q, Random random) {
+        double sum = 0.0;
+        for (int i = 0; i < p.length; i++) {
+            sum += Math.max(0.0f, p[i] - q[i]);
+        }
+
+        // p equals to q up to rounding errors.
+        if (sum <= 0.0) {
+            return sample(p, random);
+        }
+
+        double u = random.nextDouble() * sum;
+        int last = 0;
+        for (int i = 0; i < p.length; i++) {
+            double r = Math.max(0.0f, p[i] - q[i]);
+            if (r > 0.0) {
+                last = i;
+                u -= r;
+                if (u < 0.0) return i;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Samples a token from a distribution.
+     * @param p the probability distribution.
+     * @param random the random number generator.
+     * @return the sampled token.
+     */
+    public static int sample(float[] p, Random random) {
+        double sum = 0.0;
+        for (float pi : p) {
+            sum += pi;
+        }
+
+        double u = random.nextDouble() * sum;
+        int last = 0;
+        for (int i = 0; i < p.length; i++) {
+            if (p[i] > 0.0f) {
+                last = i;
+                u -= p[i];
+                if (u < 0.0) return i;
+            }
+        }
+        return last;
+    }
+}
@@ -17,7 +17,7 @@
 package smile.llm.llama;
 
 import org.bytedeco.pytorch.Module;
-import smile.deep.layer.LinearLayer;
+import smile.deep.layer.Layer;
 import smile.deep.tensor.Device;
 import smile.deep.tensor.Index;
 import smile.deep.tensor.ScalarType;
@@ -45,7 +45,7 @@ public class Attention {
     /** The embedding dimension of each attention head. */
     final int headDim;
     /** Linear transformation for queries, keys, values, and output. */
-    final LinearLayer wq, wk, wv, wo;
+    final Layer wq, wk, wv, wo;
     /** Cached keys and values. */
     final Tensor cacheK, cacheV;
 
@@ -54,6 +54,16 @@ public class Attention {
      * @param args the model configuration parameters.
      */
     public Attention(ModelArgs args) {
+        this(args, null, "");
+    }
+
+    /**
+     * Constructor.
+     * @param args the model configuration parameters.
+     * @param quantized the optional checkpoint of quantized linear layers.
+     * @param prefix the name prefix of quantized layers.
+     */
+    public Attention(ModelArgs args, QuantizedCheckpoint quantized, String prefix) {
         this.numKvHeads = args.numKvHeads() == null ? args.numHeads() : args.numKvHeads();
         // JavaCPP doesn't support torch.distributed yet
         int modelParallelSize = 1; //fs_init.get_model_parallel_world_size();
@@ -62,10 +72,10 @@ public class Attention {
         this.numRep = this.numLocalHeads / this.numLocalKvHeads;
         this.headDim = args.dim() / args.numHeads();
 
-        this.wq = new LinearLayer(args.dim(), args.numHeads() * headDim, false);
-        this.wk = new LinearLayer(args.dim(), numKvHeads * headDim, false);
-        this.wv = new LinearLayer(args.dim(), numKvHeads * headDim, false);
-        this.wo = new LinearLayer(args.numHeads() * headDim, args.dim(), false);
+        this.wq = QuantizedCheckpoint.linear(quantized, prefix + "wq", args.dim(), args.numHeads() * headDim);
+        this.wk = QuantizedCheckpoint.linear(quantized, prefix + "wk", args.dim(), numKvHeads * headDim);
+        this.wv = QuantizedCheckpoint.linear(quantized, prefix + "wv", args.dim(), numKvHeads * headDim);
+        this.wo = QuantizedCheckpoint.linear(quantized, prefix + "wo", args.numHeads() * headDim, args.dim());
 
         this.cacheK = Tensor.zeros(args.maxBatchSize(), args.maxSeqLen(), numLocalKvHeads, headDim);
         this.cacheV = Tensor.zeros(args.maxBatchSize(), args.maxSeqLen(), numLocalKvHeads, headDim);
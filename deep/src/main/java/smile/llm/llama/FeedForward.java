@@ -18,7 +18,7 @@ package smile.llm.llama;
 
 import org.bytedeco.pytorch.Module;
 import smile.deep.activation.SiLU;
-import smile.deep.layer.LinearLayer;
+import smile.deep.layer.Layer;
 import smile.deep.tensor.Tensor;
 import smile.util.AutoScope;
 
@@ -29,7 +29,7 @@ import smile.util.AutoScope;
  * @author Haifeng Li
  */
 public class FeedForward {
-    final LinearLayer w1, w2, w3;
+    final Layer w1, w2, w3;
     final SiLU silu;
     final Module module;
 
@@ -44,15 +44,29 @@ public class FeedForward {
      * @param ffnDimMultiplier the multiplier for the hidden dimension of the feedforward layers.
      */
     public FeedForward(int dim, int hiddenDim, int multipleOf, Double ffnDimMultiplier) {
+        this(dim, hiddenDim, multipleOf, ffnDimMultiplier, null, "");
+    }
+
+    /**
+     * Constructor.
+     * @param dim the dimension of input tensor.
+     * @param hiddenDim the dimension of hidden layer, which is adjusted
+     *                  in the same way as the other constructor.
+     * @param multipleOf make SwiGLU hidden layer size multiple of large power of 2.
+     * @param ffnDimMultiplier the multiplier for the hidden dimension of the feedforward layers.
+     * @param quantized the optional checkpoint of quantized linear layers.
+     * @param prefix the name prefix of quantized layers.
+     */
+    public FeedForward(int dim, int hiddenDim, int multipleOf, Double ffnDimMultiplier, QuantizedCheckpoint quantized, String prefix) {
         hiddenDim = (int) (2 * hiddenDim / 3.0);
         // custom dim factor multiplier
         if (ffnDimMultiplier != null){
             hiddenDim = (int) (ffnDimMultiplier * hiddenDim);
         }
         hiddenDim = multipleOf * ((hiddenDim + multipleOf - 1) / multipleOf);
-        this.w1 = new LinearLayer(dim, hiddenDim, false);
-        this.w2 = new LinearLayer(hiddenDim, dim, false);
-        this.w3 = new LinearLayer(dim, hiddenDim, false);
+        this.w1 = QuantizedCheckpoint.linear(quantized, prefix + "w1", dim, hiddenDim);
+        this.w2 = QuantizedCheckpoint.linear(quantized, prefix + "w2", hiddenDim, dim);
+        this.w3 = QuantizedCheckpoint.linear(quantized, prefix + "w3", dim, hiddenDim);
         this.silu = new SiLU(true);
 
         this.module = new Module();
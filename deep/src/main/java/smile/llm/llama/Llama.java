@@ -31,6 +31,8 @@ import smile.deep.tensor.Tensor;
 import smile.llm.CompletionPrediction;
 import smile.llm.FinishReason;
 import smile.llm.Message;
+import smile.llm.SpeculativeSampling;
+import smile.math.Random;
 import smile.util.AutoScope;
 
 /**
@@ -48,6 +50,19 @@ public class Llama {
     final Transformer model;
     /** The tokenizer. */
     final Tokenizer tokenizer;
+    /**
+     * The tokens whose keys and values are in the first row of KV cache
+     * after the last generation of batch size 1, or null if unknown.
+     * The next prompt sharing a prefix with them skips the prefill
+     * of the common prefix.
+     */
+    private int[] cachedTokens;
+    /** The draft model of speculative decoding, or null if disabled. */
+    private Transformer draft;
+    /** The number of draft tokens per step of speculative decoding. */
+    private int speculation;
+    /** The tokens whose keys and values are in the KV cache of draft model. */
+    private int[] draftTokens;
 
     /**
      * Constructor.
@@ -82,6 +97,43 @@ public class Llama {
         return name;
     }
 
+    /**
+     * Returns the tokenizer.
+     * @return the tokenizer.
+     */
+    public Tokenizer tokenizer() {
+        return tokenizer;
+    }
+
+    /**
+     * Enables speculative decoding with a draft model, which is a much
+     * smaller model of the same vocabulary. For each step, the draft model
+     * proposes k tokens, which the target model verifies in one forward pass.
+     * It applies to the generation of batch size 1 without log probabilities.
+     * @param draft the draft model, or null to disable speculative decoding.
+     *              Its maximum batch size may be 1.
+     * @param k the number of draft tokens per step.
+     */
+    public synchronized void setDraftModel(Llama draft, int k) {
+        if (draft == null) {
+            this.draft = null;
+            this.draftTokens = null;
+            return;
+        }
+
+        if (k <= 0) {
+            throw new IllegalArgumentException("Invalid number of draft tokens: " + k);
+        }
+
+        if (draft.model.vocabSize != model.vocabSize) {
+            throw new IllegalArgumentException(String.format("The draft model has different vocabulary size: %d != %d", draft.model.vocabSize, model.vocabSize));
+        }
+
+        this.draft = draft.model;
+        this.speculation = k;
+        this.draftTokens = null;
+    }
+
     /**
      * Builds a Llama instance by initializing and loading a model checkpoint.
      * @param checkpointDir the directory path of checkpoint files.
@@ -104,33 +156,62 @@ public class Llama {
      * @return an instance of Llama model.
      */
     public static Llama build(String checkpointDir, String tokenizerPath, int maxBatchSize, int maxSeqLen, Integer deviceId) throws IOException {
+        if (deviceId == null) {
+            String localRank = Objects.requireNonNullElse(System.getenv("LOCAL_RANK"), "0");
+            deviceId = Integer.valueOf(localRank);
+        }
+        return build(checkpointDir, tokenizerPath, maxBatchSize, maxSeqLen, Device.CUDA(deviceId.byteValue()));
+    }
+
+    /**
+     * Builds a Llama instance by initializing and loading a model checkpoint.
+     * If the checkpoint directory contains the quantized linear layers
+     * converted by {@link QuantizedCheckpoint}, the model runs on CPU
+     * with the quantized weights memory-mapped.
+     * @param checkpointDir the directory path of checkpoint files.
+     * @param tokenizerPath the path of tokenizer model file.
+     * @param maxSeqLen the maximum sequence length for input text.
+     * @param maxBatchSize the maximum batch size for inference.
+     * @param device the compute device, either CUDA or CPU.
+     * @return an instance of Llama model.
+     */
+    public static Llama build(String checkpointDir, String tokenizerPath, int maxBatchSize, int maxSeqLen, Device device) throws IOException {
         File dir = new File(checkpointDir);
         if (!dir.exists()) {
             throw new IllegalArgumentException("Checkpoint directory doesn't exist: " + checkpointDir);
         }
 
+        if (!device.isCUDA() && !device.isCPU()) {
+            throw new IllegalArgumentException("Unsupported device: " + device);
+        }
+
+        File quantizedFile = new File(dir, QuantizedCheckpoint.FILE_NAME);
+        if (quantizedFile.exists() && !device.isCPU()) {
+            throw new IllegalArgumentException("Quantized checkpoint runs on CPU only: " + checkpointDir);
+        }
+
         String worldSize = Objects.requireNonNullElse(System.getenv("WORLD_SIZE"), "1");
         int modelParallelSize = Integer.valueOf(worldSize);
         String localRank = Objects.requireNonNullElse(System.getenv("LOCAL_RANK"), "0");
         int rank = Integer.valueOf(localRank);
-        if (deviceId == null) {
-            deviceId = rank;
-        }
 
         var startTime = System.currentTimeMillis();
-        cudart.cuInit(0);
-        torch_cuda.set_device(deviceId.byteValue());
-
         // half precision to lower memory usage.
         var meta = new TypeMeta();
-        meta.put(Tensor.isBF16Supported() ? torch.ScalarType.BFloat16 : torch.ScalarType.Half);
+        if (device.isCUDA()) {
+            cudart.cuInit(0);
+            torch_cuda.set_device(device.index());
+            meta.put(Tensor.isBF16Supported() ? torch.ScalarType.BFloat16 : torch.ScalarType.Half);
+        } else {
+            // CPU kernels support bfloat16 better than float16.
+            meta.put(torch.ScalarType.BFloat16);
+        }
         torch.set_default_dtype(meta);
 
-        Device device = Device.CUDA(deviceId.byteValue());
         var options = new Tensor.Options().device(device).requireGradients(false);
         Tensor.setDefaultOptions(options);
         var time = System.currentTimeMillis() - startTime;
-        logger.info("Initialized CUDA[{}]: {}.{} seconds", rank, time/1000, time%1000);
+        logger.info("Initialized {}[{}]: {}.{} seconds", device, rank, time/1000, time%1000);
 
         startTime = System.currentTimeMillis();
         List<String> checkpoints = new ArrayList<>();
@@ -156,7 +237,13 @@ public class Llama {
             throw new IllegalStateException("Tokenizer and ModelArgs have different vocabulary size.");
         }
 
-        var model = new Transformer(modelArgs, device);
+        QuantizedCheckpoint quantized = null;
+        if (quantizedFile.exists()) {
+            quantized = QuantizedCheckpoint.of(quantizedFile.getPath());
+            logger.info("Memory-mapped {}", quantized);
+        }
+
+        var model = new Transformer(modelArgs, device, quantized);
         model.eval();
         Collections.sort(checkpoints);
         var checkpoint = checkpoints.get(rank);
@@ -170,7 +257,9 @@ public class Llama {
     /**
      * Generates text sequences based on provided prompts. This method uses
      * the provided prompts as a basis for generating text. It employs nucleus
-     * sampling to produce text with controlled randomness.
+     * sampling to produce text with controlled randomness. If a draft model
+     * is set, a single prompt without log probabilities is completed by
+     * speculative decoding.
      * @param prompts List of tokenized prompts, where each prompt is represented as a list of integers.
      * @param maxGenLen Maximum length of the generated text sequence.
      * @param temperature Temperature value for controlling randomness in sampling.
@@ -181,7 +270,7 @@ public class Llama {
      * The batch size must be 1.
      * @return The generated text completion.
      */
-    public CompletionPrediction[] generate(int[][] prompts, int maxGenLen, double temperature, double topp, boolean logprobs, Long seed, SubmissionPublisher<String> publisher) {
+    public synchronized CompletionPrediction[] generate(int[][] prompts, int maxGenLen, double temperature, double topp, boolean logprobs, Long seed, SubmissionPublisher<String> publisher) {
         int batchSize = prompts.length;
         if (batchSize > model.params.maxBatchSize()) {
             throw new IllegalArgumentException("The number of prompts is greater than max_batch_size");
@@ -201,11 +290,21 @@ public class Llama {
             throw new IllegalArgumentException("The prompt length is greater than max_seq_len");
         }
 
+        if (draft != null && batchSize == 1 && !logprobs) {
+            return new CompletionPrediction[] { speculate(prompts[0], maxGenLen, temperature, topp, seed, publisher) };
+        }
+
         // seed must be the same in all processes
         if (seed != null) {
             torch.manual_seed(seed);
         }
 
+        // The KV cache of common prefix with the previous generation is
+        // still valid. At least one prompt token is fed to get the logits.
+        int prefix = batchSize == 1 ? commonPrefix(cachedTokens, prompts[0]) : 0;
+        // The KV cache will be overwritten.
+        cachedTokens = null;
+
         try (var guard = Tensor.noGradGuard();
              var scope = new AutoScope()) {
             Tensor.push(scope);
@@ -241,6 +340,10 @@ public class Llama {
                 }
             }
 
+            if (minPromptLen < totalLen) {
+                prevPos = prefix;
+            }
+
             int chunkPos = minPromptLen;
             for (int curPos = minPromptLen; curPos < totalLen; curPos++) {
                 try (var loopScope = new AutoScope()) {
@@ -298,6 +401,10 @@ public class Llama {
             }
 
             var longArray = tokens.to(Device.CPU()).longArray();
+            if (batchSize == 1) {
+                cachedTokens = Arrays.stream(longArray).limit(prevPos).mapToInt(x -> (int) x).toArray();
+            }
+
             float[] logprobArray = null;
             if (logprobs) {
                 logprobArray = tokenLogprobs.to(Device.CPU()).floatArray();
@@ -341,6 +448,181 @@ public class Llama {
         }
     }
 
+    /**
+     * Returns the length of common prefix between the tokens in the KV cache
+     * and the prompt, which is less than the prompt length so that at least
+     * one prompt token is fed to get the logits.
+     * @param cached the tokens in the KV cache, may be null.
+     * @param prompt the prompt tokens.
+     * @return the length of common prefix.
+     */
+    private static int commonPrefix(int[] cached, int[] prompt) {
+        int prefix = 0;
+        if (cached != null) {
+            int n = Math.min(cached.length, prompt.length - 1);
+            while (prefix < n && cached[prefix] == prompt[prefix]) prefix++;
+        }
+        return prefix;
+    }
+
+    /**
+     * Generates a text sequence by speculative decoding. Both models keep
+     * the keys and values of tokens at positions less than their cache
+     * position. On rejection, the cache position rolls back to the last
+     * accepted token so that the stale entries are overwritten by the
+     * next forward pass.
+     * @param prompt the prompt tokens.
+     * @param maxGenLen Maximum length of the generated text sequence.
+     * @param temperature Temperature value for controlling randomness in sampling.
+     * @param topp Top-p probability threshold for nucleus sampling.
+     * @param seed the optional random number generation seed to sample deterministically.
+     * @param publisher an optional flow publisher that asynchronously issues generated chunks.
+     * @return The generated text completion.
+     */
+    private CompletionPrediction speculate(int[] prompt, int maxGenLen, double temperature, double topp, Long seed, SubmissionPublisher<String> publisher) {
+        int totalLen = Math.min(Math.min(model.params.maxSeqLen(), draft.params.maxSeqLen()), maxGenLen + prompt.length);
+        int[] tokens = Arrays.copyOf(prompt, Math.max(totalLen, prompt.length));
+        var random = seed == null ? new Random() : new Random(seed);
+
+        int targetPos = commonPrefix(cachedTokens, prompt);
+        int draftPos = commonPrefix(draftTokens, prompt);
+        // The KV caches will be overwritten.
+        cachedTokens = null;
+        draftTokens = null;
+
+        int n = prompt.length;
+        int chunkPos = n;
+        int steps = 0;
+        boolean stop = false;
+        try (var guard = Tensor.noGradGuard()) {
+            while (n < totalLen && !stop) {
+                // The target model scores k draft tokens and the next one.
+                int k = Math.min(speculation, totalLen - 1 - n);
+                int[] proposal = new int[k];
+                float[][] q = new float[k][];
+                int[] accepted;
+                try (var scope = new AutoScope()) {
+                    Tensor.push(scope);
+                    for (int j = 0; j < k; j++) {
+                        var logits = draft.forward(input(tokens, draftPos, n + j), draftPos);
+                        draftPos = n + j;
+                        var last = logits.get(Index.Colon, Index.of(-1));
+                        if (temperature > 0) {
+                            q[j] = distribution(last, temperature, topp)[0];
+                            proposal[j] = SpeculativeSampling.sample(q[j], random);
+                        } else {
+                            proposal[j] = argmax(last)[0];
+                        }
+                        tokens[n + j] = proposal[j];
+                    }
+
+                    var logits = model.forward(input(tokens, targetPos, n + k), targetPos);
+                    int length = n + k - targetPos;
+                    var last = logits.get(Index.Colon, Index.slice(length - k - 1, length));
+                    if (temperature > 0) {
+                        accepted = SpeculativeSampling.verify(distribution(last, temperature, topp), q, proposal, random);
+                    } else {
+                        accepted = SpeculativeSampling.greedy(argmax(last), proposal);
+                    }
+                    // Free up memory at each iteration
+                    Tensor.pop();
+                }
+
+                // Roll back the caches to the last accepted draft token.
+                targetPos = n + accepted.length - 1;
+                draftPos = Math.min(draftPos, targetPos);
+                for (int token : accepted) {
+                    tokens[n++] = token;
+                    if (isStopToken(token)) {
+                        stop = true;
+                        break;
+                    }
+                }
+                steps++;
+
+                if (publisher != null && (n - chunkPos >= 20 || n >= totalLen || stop)) {
+                    int end = stop ? n - 1 : n;
+                    if (end > chunkPos) {
+                        try {
+                            var chunk = tokenizer.tryDecode(Arrays.copyOfRange(tokens, chunkPos, end));
+                            publisher.submit(chunk);
+                            chunkPos = end;
+                        } catch (Exception ex) {
+                            logger.debug("Cannot decode a chunk", ex);
+                        }
+                    }
+                }
+            }
+        }
+
+        cachedTokens = Arrays.copyOf(tokens, targetPos);
+        draftTokens = Arrays.copyOf(tokens, draftPos);
+        logger.debug("Speculative decoding generated {} tokens in {} steps", n - prompt.length, steps);
+
+        int[] completion = Arrays.copyOfRange(tokens, prompt.length, stop ? n - 1 : n);
+        var reason = stop ? FinishReason.stop : FinishReason.length;
+        return new CompletionPrediction(name, tokenizer.decode(completion), prompt, completion, reason, null);
+    }
+
+    /**
+     * Returns true if the token is a stop token.
+     * @param token the token.
+     * @return true if the token is a stop token.
+     */
+    private boolean isStopToken(int token) {
+        for (int stopToken : tokenizer.stopTokens()) {
+            if (token == stopToken) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the input tensor of tokens in [start, end) with batch size 1.
+     * @param tokens the tokens.
+     * @param start the inclusive start index.
+     * @param end the exclusive end index.
+     * @return the input tensor.
+     */
+    private Tensor input(int[] tokens, int start, int end) {
+        long[] data = new long[end - start];
+        for (int i = start; i < end; i++) {
+            data[i - start] = tokens[i];
+        }
+        return Tensor.of(data, 1, data.length).to(model.device());
+    }
+
+    /**
+     * Returns the next token distributions with temperature and top-p.
+     * @param logits the logits of shape (1, vocab_size) or (1, seqlen, vocab_size).
+     * @param temperature Temperature value for controlling randomness in sampling.
+     * @param topp Top-p probability threshold for nucleus sampling.
+     * @return the next token distributions.
+     */
+    private float[][] distribution(Tensor logits, double temperature, double topp) {
+        var probs = logits.div(temperature).softmax(-1);
+        if (topp < 1.0) {
+            probs = probs.nucleus(topp);
+        }
+
+        float[] array = probs.to(Device.CPU()).floatArray();
+        int vocabSize = model.vocabSize;
+        float[][] p = new float[array.length / vocabSize][];
+        for (int i = 0; i < p.length; i++) {
+            p[i] = Arrays.copyOfRange(array, i * vocabSize, (i + 1) * vocabSize);
+        }
+        return p;
+    }
+
+    /**
+     * Returns the most probable next tokens.
+     * @param logits the logits of shape (1, vocab_size) or (1, seqlen, vocab_size).
+     * @return the most probable next tokens.
+     */
+    private int[] argmax(Tensor logits) {
+        long[] array = logits.argmax(-1, false).to(Device.CPU()).longArray();
+        return Arrays.stream(array).mapToInt(x -> (int) x).toArray();
+    }
+
     /**
      * Performs text completion for a list of prompts
      * @param prompts List of text prompts.
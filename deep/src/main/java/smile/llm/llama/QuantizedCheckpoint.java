@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package smile.llm.llama;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import org.bytedeco.pytorch.TypeMeta;
+import org.bytedeco.pytorch.global.torch;
+import smile.deep.layer.Layer;
+import smile.deep.layer.LinearLayer;
+import smile.deep.layer.QuantizedLinearLayer;
+import smile.deep.layer.QuantizedWeight;
+import smile.deep.tensor.Device;
+import smile.deep.tensor.ScalarType;
+import smile.deep.tensor.Tensor;
+
+/**
+ * The checkpoint of quantized linear layers of Llama model for CPU inference.
+ * The weights of attention and feed forward layers, which are the bulk of
+ * model parameters, are quantized to 8-bit or 4-bit integers. The token
+ * embeddings, normalization layers, and the output layer stay in the regular
+ * PyTorch checkpoint of the same directory. The quantized weights are
+ * memory-mapped so that they are paged in on demand.
+ * <p>
+ * The file starts with a header of magic number, version and the number of
+ * entries, which are followed by the entries of layer name and weight.
+ *
+ * @author Haifeng Li
+ */
+public class QuantizedCheckpoint {
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(QuantizedCheckpoint.class);
+    /** The file name of quantized checkpoint in the checkpoint directory. */
+    public static final String FILE_NAME = "quantized.bin";
+    /** The magic number of file. */
+    private static final int MAGIC = 0x514C4D53;
+    /** The file format version. */
+    private static final int VERSION = 1;
+    /** The quantized weights by layer name. */
+    private final Map<String, QuantizedWeight> weights;
+
+    /**
+     * Constructor.
+     * @param weights the quantized weights by layer name.
+     */
+    public QuantizedCheckpoint(Map<String, QuantizedWeight> weights) {
+        this.weights = weights;
+    }
+
+    @Override
+    public String toString() {
+        long bytes = weights.values().stream().mapToLong(QuantizedWeight::bytes).sum();
+        return String.format("QuantizedCheckpoint(%d layers, %d MB)", weights.size(), bytes >> 20);
+    }
+
+    /**
+     * Returns the names of quantized layers.
+     * @return the names of quantized layers.
+     */
+    public Set<String> names() {
+        return weights.keySet();
+    }
+
+    /**
+     * Returns a linear layer without bias. If the checkpoint is null,
+     * it returns a regular linear layer. Otherwise, it returns the
+     * quantized layer of given name.
+     * @param checkpoint the optional quantized checkpoint.
+     * @param name the layer name.
+     * @param in the number of input features.
+     * @param out the number of output features.
+     * @return the linear layer.
+     */
+    static Layer linear(QuantizedCheckpoint checkpoint, String name, int in, int out) {
+        if (checkpoint == null) {
+            return new LinearLayer(in, out, false);
+        }
+
+        var weight = checkpoint.weights.get(name);
+        if (weight == null) {
+            throw new IllegalArgumentException("Quantized layer not found: " + name);
+        }
+
+        if (weight.in() != in || weight.out() != out) {
+            throw new IllegalArgumentException(String.format("Quantized layer %s has size %d x %d, expected %d x %d", name, weight.out(), weight.in(), out, in));
+        }
+        return new QuantizedLinearLayer(weight);
+    }
+
+    /**
+     * Memory-maps a quantized checkpoint file.
+     * @param path the file path.
+     * @return the quantized checkpoint.
+     * @throws IOException if fail to read the file.
+     */
+    public static QuantizedCheckpoint of(String path) throws IOException {
+        // The mapping remains valid after the channel is closed.
+        try (var channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            var header = read(channel, 3 * Integer.BYTES);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a quantized checkpoint: " + path);
+            }
+
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported quantized checkpoint version: " + version);
+            }
+
+            int count = header.getInt();
+            Map<String, QuantizedWeight> weights = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                int length = read(channel, Integer.BYTES).getInt();
+                var name = new String(read(channel, length).array(), StandardCharsets.UTF_8);
+                weights.put(name, QuantizedWeight.map(channel));
+            }
+            return new QuantizedCheckpoint(weights);
+        }
+    }
+
+    /**
+     * Reads bytes from the current position of a channel.
+     * @param channel the file channel.
+     * @param size the number of bytes.
+     * @return the buffer ready to get data.
+     * @throws IOException if fail to read the file.
+     */
+    private static ByteBuffer read(FileChannel channel, int size) throws IOException {
+        var buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * The writer of quantized checkpoint, which writes the layers one at
+     * a time so that the whole quantized model is never held in memory.
+     */
+    public static class Writer implements Closeable {
+        /** The file channel. */
+        private final FileChannel channel;
+        /** The number of written layers. */
+        private int count = 0;
+
+        /**
+         * Constructor.
+         * @param path the file path.
+         * @throws IOException if fail to create the file.
+         */
+        public Writer(String path) throws IOException {
+            channel = FileChannel.open(Path.of(path), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            write(header());
+        }
+
+        /**
+         * Returns the file header.
+         * @return the file header.
+         */
+        private ByteBuffer header() {
+            var header = ByteBuffer.allocate(3 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            return header.putInt(MAGIC).putInt(VERSION).putInt(count).flip();
+        }
+
+        /**
+         * Writes the buffer completely.
+         * @param buffer the data buffer.
+         * @throws IOException if fail to write the file.
+         */
+        private void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        /**
+         * Writes a quantized layer.
+         * @param name the layer name.
+         * @param weight the quantized weight.
+         * @throws IOException if fail to write the file.
+         */
+        public void write(String name, QuantizedWeight weight) throws IOException {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            var buffer = ByteBuffer.allocate(Integer.BYTES + bytes.length).order(ByteOrder.LITTLE_ENDIAN);
+            write(buffer.putInt(bytes.length).put(bytes).flip());
+            weight.write(channel);
+            count++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.position(0);
+            write(header());
+            channel.close();
+        }
+    }
+
+    /**
+     * Converts a Llama checkpoint to the quantized checkpoint for CPU
+     * inference. The output directory contains the quantized linear
+     * layers, the PyTorch checkpoint of other parameters in bfloat16,
+     * and the model configuration parameters.
+     *
+     * @param checkpointDir the directory path of checkpoint files.
+     * @param outputDir the directory path of quantized checkpoint.
+     * @param bits the number of bits per weight, either 8 or 4.
+     * @param groupSize the number of weights sharing a scale for 4-bit
+     *                  quantization. The 8-bit quantization has a scale
+     *                  per output channel.
+     * @throws IOException if fail to read or write the checkpoint files.
+     */
+    public static void quantize(String checkpointDir, String outputDir, int bits, int groupSize) throws IOException {
+        if (bits != 8 && bits != 4) {
+            throw new IllegalArgumentException("Invalid number of bits: " + bits);
+        }
+
+        File[] checkpoints = new File(checkpointDir).listFiles((dir, name) -> name.endsWith(".pt"));
+        if (checkpoints == null || checkpoints.length != 1) {
+            throw new IllegalArgumentException("Expect exactly one checkpoint file in " + checkpointDir);
+        }
+
+        var meta = new TypeMeta();
+        meta.put(torch.ScalarType.BFloat16);
+        torch.set_default_dtype(meta);
+        Device device = Device.CPU();
+        Tensor.setDefaultOptions(new Tensor.Options().device(device).requireGradients(false));
+
+        Files.createDirectories(Path.of(outputDir));
+        var params = checkpointDir + "/params.json";
+        var args = ModelArgs.from(params, 1, 32);
+        var checkpoint = checkpoints[0].getPath();
+        var output = outputDir + "/" + FILE_NAME;
+
+        try (var guard = Tensor.noGradGuard()) {
+            var startTime = System.currentTimeMillis();
+            var model = new Transformer(args, device);
+            model.load(checkpoint);
+            try (var writer = new Writer(output)) {
+                for (var block : model.layers) {
+                    var prefix = String.format("layers.%d.", block.layerId);
+                    var attention = block.attention;
+                    var feedForward = block.feedForward;
+                    write(writer, prefix + "attention.wq", attention.wq, bits, groupSize);
+                    write(writer, prefix + "attention.wk", attention.wk, bits, groupSize);
+                    write(writer, prefix + "attention.wv", attention.wv, bits, groupSize);
+                    write(writer, prefix + "attention.wo", attention.wo, bits, groupSize);
+                    write(writer, prefix + "feed_forward.w1", feedForward.w1, bits, groupSize);
+                    write(writer, prefix + "feed_forward.w2", feedForward.w2, bits, groupSize);
+                    write(writer, prefix + "feed_forward.w3", feedForward.w3, bits, groupSize);
+                    logger.info("Quantized layer {}", block.layerId);
+                }
+            }
+            var time = System.currentTimeMillis() - startTime;
+            logger.info("Quantized {} in {}.{} seconds", checkpoint, time/1000, time%1000);
+        }
+
+        // The model with quantized layers has only the other parameters,
+        // which are loaded from the original checkpoint and saved alone.
+        try (var guard = Tensor.noGradGuard()) {
+            var model = new Transformer(args, device, QuantizedCheckpoint.of(output));
+            model.load(checkpoint);
+            model.save(outputDir + "/" + checkpoints[0].getName());
+        }
+        Files.copy(Path.of(params), Path.of(outputDir, "params.json"), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Quantizes and writes a linear layer.
+     * @param writer the checkpoint writer.
+     * @param name the layer name.
+     * @param layer the linear layer.
+     * @param bits the number of bits per weight.
+     * @param groupSize the number of weights sharing a scale for 4-bit quantization.
+     * @throws IOException if fail to write the file.
+     */
+    private static void write(Writer writer, String name, Layer layer, int bits, int groupSize) throws IOException {
+        try (var weight = ((LinearLayer) layer).weight();
+             var fp32 = weight.to(ScalarType.Float32)) {
+            long[] shape = weight.shape();
+            int out = (int) shape[0];
+            int in = (int) shape[1];
+            float[] w = fp32.floatArray();
+            var quantized = bits == 8 ? QuantizedWeight.int8(w, out, in) : QuantizedWeight.int4(w, out, in, groupSize);
+            writer.write(name, quantized);
+        }
+    }
+
+    /**
+     * Converts a Llama checkpoint to the quantized checkpoint.
+     * @param args the command line arguments: the checkpoint directory,
+     *             the output directory, the quantization type int8 or int4,
+     *             and the optional group size of int4 (default 64).
+     * @throws IOException if fail to read or write the checkpoint files.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3 || !(args[2].equals("int8") || args[2].equals("int4"))) {
+            System.err.println("Usage: QuantizedCheckpoint <checkpoint_dir> <output_dir> <int8|int4> [group_size]");
+            System.exit(1);
+        }
+
+        int bits = args[2].equals("int8") ? 8 : 4;
+        int groupSize = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+        quantize(args[0], args[1], bits, groupSize);
+    }
+}
@@ -119,6 +119,17 @@ public class Tokenizer extends Tiktoken {
         tokens.add(encode("\n\n", false, false));
     }
 
+    /**
+     * Encodes a message header.
+     * @param message the message.
+     * @return the tokens.
+     */
+    public int[] encodeHeader(Message message) {
+        IntArrayList tokens = new IntArrayList();
+        encodeHeader(message, tokens);
+        return tokens.toArray();
+    }
+
     /**
      * Encodes a message.
      * @param message the message.
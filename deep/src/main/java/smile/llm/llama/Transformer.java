@@ -62,6 +62,17 @@ public class Transformer extends LayerBlock {
      * @param device the compute device.
      */
     public Transformer(ModelArgs args, Device device) {
+        this(args, device, null);
+    }
+
+    /**
+     * Constructor.
+     * @param args the model configuration parameters.
+     * @param device the compute device.
+     * @param quantized the optional checkpoint of quantized linear layers
+     *                  of attention and feed forward, which run on CPU only.
+     */
+    public Transformer(ModelArgs args, Device device, QuantizedCheckpoint quantized) {
         this.params = args;
         this.vocabSize = params.vocabSize();
         this.numLayers = params.numLayers();
@@ -70,7 +81,7 @@ public class Transformer extends LayerBlock {
         this.layers = new ArrayList<>();
         var moduleList = new ModuleListImpl();
         for (int layerId = 0; layerId < params.numLayers(); layerId++) {
-            var block = new TransformerBlock(layerId, params);
+            var block = new TransformerBlock(layerId, params, quantized);
             this.layers.add(block);
             moduleList.push_back(block.module);
         }
@@ -54,16 +54,29 @@ public class TransformerBlock {
      * @param args the model configuration parameters.
      */
     public TransformerBlock(int layerId, ModelArgs args) {
+        this(layerId, args, null);
+    }
+
+    /**
+     * Constructor.
+     * @param layerId the identifier of the block.
+     * @param args the model configuration parameters.
+     * @param quantized the optional checkpoint of quantized linear layers.
+     */
+    public TransformerBlock(int layerId, ModelArgs args, QuantizedCheckpoint quantized) {
         this.layerId = layerId;
         this.numHeads = args.numHeads();
         this.dim = args.dim();
         this.headDim = args.dim() / args.numHeads();
-        this.attention = new Attention(args);
+        String prefix = String.format("layers.%d.", layerId);
+        this.attention = new Attention(args, quantized, prefix + "attention.");
         this.feedForward = new FeedForward(
                 args.dim(),
                 4 * args.dim(),
                 args.multipleOf(),
-                args.ffnDimMultiplier()
+                args.ffnDimMultiplier(),
+                quantized,
+                prefix + "feed_forward."
         );
         this.attentionNorm = new RMSNormLayer(args.dim(), args.normEps());
         this.ffnNorm = new RMSNormLayer(args.dim(), args.normEps());
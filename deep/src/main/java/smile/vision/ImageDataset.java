@@ -21,12 +21,10 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.Objects;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.function.ToIntFunction;
 import javax.imageio.ImageIO;
+import smile.deep.DataLoader;
 import smile.deep.Dataset;
 import smile.deep.SampleBatch;
 import smile.deep.tensor.Tensor;
@@ -38,19 +36,23 @@ import smile.vision.transform.Transform;
  * in the dataset. The subdirectories are named after the corresponding
  * class and contain all the images for that class. Ensure that each image
  * file is named uniquely and stored in a common format such as JPEG or PNG.
+ * <p>
+ * The images are decoded and transformed by multiple data loader workers
+ * in parallel with the training.
  *
  * @author Haifeng Li
  */
 public class ImageDataset implements Dataset {
     record ImageFile(File file, String label) { }
-    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ImageDataset.class);
     private final ArrayList<ImageFile> samples = new ArrayList<>();
     private final int batch;
     private final Transform transform;
     private final ToIntFunction<String> targetTransform;
+    private final DataLoader.Options options;
 
     /**
-     * Constructor.
+     * Constructor. The images are loaded by half of available processors
+     * up to 8 workers.
      * @param batch the mini-batch size.
      * @param root the root directory of image dataset.
      * @param transform the transformation from image to tensor.
@@ -58,7 +60,22 @@ public class ImageDataset implements Dataset {
      * @throws IOException if the root directory doesn't exist or doesn't have images.
      */
     public ImageDataset(int batch, String root, Transform transform, ToIntFunction<String> targetTransform) throws IOException {
+        this(batch, root, transform, targetTransform,
+             new DataLoader.Options(Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors() / 2))));
+    }
+
+    /**
+     * Constructor.
+     * @param batch the mini-batch size.
+     * @param root the root directory of image dataset.
+     * @param transform the transformation from image to tensor.
+     * @param targetTransform the transform from image label to class index.
+     * @param options the data loader options.
+     * @throws IOException if the root directory doesn't exist or doesn't have images.
+     */
+    public ImageDataset(int batch, String root, Transform transform, ToIntFunction<String> targetTransform, DataLoader.Options options) throws IOException {
         this.batch = batch;
+        this.options = options;
         this.transform = transform;
         this.targetTransform = targetTransform;
 
@@ -98,71 +115,47 @@ public class ImageDataset implements Dataset {
     }
 
     @Override
-    public Iterator<SampleBatch> iterator() {
+    public DataLoader<SampleBatch> iterator() {
         final int size = samples.size();
         final int[] permutation = MathEx.permutate(size);
-        final BlockingQueue<SampleBatch> queue = new LinkedBlockingQueue<>(100);
-
-        final int start = Math.min(batch, size);
-        final int[] index = Arrays.copyOf(permutation, start);
-
-        try {
-            // prefetch the first batch
-            queue.put(readImages(index));
-        } catch (Exception ex) {
-            logger.error("Failed to load the first batch", ex);
-        }
-
-        final Runnable worker = () -> {
-            for (int i = start; i < size; ) {
-                int n = Math.min(batch, size - i);
-                System.arraycopy(permutation, i, index,  0, n);
-                i += n;
-
-                try {
-                    queue.put(readImages(n == index.length ? index : Arrays.copyOf(index, n)));
-                } catch (Exception ex) {
-                    logger.error("Failed to load images", ex);
-                }
-            }
-        };
-
-        Thread thread = new Thread(worker, "ImageDatasetLoader");
-        thread.start();
-
-        return new Iterator<>() {
-            @Override
-            public boolean hasNext() {
-                return !queue.isEmpty() || thread.isAlive();
-            }
-
-            @Override
-            public SampleBatch next() {
-                try {
-                    return queue.take();
-                } catch (InterruptedException ex) {
-                    logger.error("Failed to take next sample batch", ex);
-                    return null;
-                }
-            }
-        };
+        final int batches = (size + batch - 1) / batch;
+        return new DataLoader<>(batches, () -> {
+            // Each worker reuses its buffers of sample index, images and labels.
+            final int[] index = new int[batch];
+            final BufferedImage[] images = new BufferedImage[batch];
+            final long[] target = new long[batch];
+            return i -> {
+                int start = i * batch;
+                int n = Math.min(batch, size - start);
+                System.arraycopy(permutation, start, index, 0, n);
+                return readImages(index, n, images, target);
+            };
+        }, options);
     }
 
     /**
      * Reads a mini-batch of image samples.
      * @param index the sample index.
+     * @param n the number of samples.
+     * @param images the buffer of images.
+     * @param target the buffer of sample labels.
      * @return the sample batch.
      * @throws IOException if fail to read the image.
      */
-    private SampleBatch readImages(int[] index) throws IOException {
-        int n = index.length;
-        long[] target = new long[n];
-        BufferedImage[] images = new BufferedImage[n];
+    private SampleBatch readImages(int[] index, int n, BufferedImage[] images, long[] target) throws IOException {
         for (int i = 0; i < n; i++) {
             var sample = samples.get(index[i]);
             images[i] = ImageIO.read(sample.file);
+            if (images[i] == null) {
+                throw new IOException("Unsupported image format: " + sample.file);
+            }
             target[i] = targetTransform.applyAsInt(sample.label);
         }
-        return new SampleBatch(transform.forward(images), Tensor.of(target, images.length));
+
+        var data = transform.forward(n < images.length ? Arrays.copyOf(images, n) : images);
+        var labels = Tensor.of(n < target.length ? Arrays.copyOf(target, n) : target, n);
+        // Don't hold the decoded images until the next mini-batch.
+        Arrays.fill(images, null);
+        return new SampleBatch(data, labels);
     }
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package smile.deep;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author Haifeng Li
+ */
+public class DataLoaderTest {
+
+    public DataLoaderTest() {
+    }
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterAll
+    public static void tearDownClass() throws Exception {
+    }
+
+    @BeforeEach
+    public void setUp() {
+    }
+
+    @AfterEach
+    public void tearDown() {
+    }
+
+    /** A collator that sleeps a while and tracks the mini-batches in flight. */
+    private static DataLoader.Collator<Integer> collator(AtomicInteger inflight, AtomicInteger maxInflight) {
+        return batch -> {
+            maxInflight.accumulateAndGet(inflight.incrementAndGet(), Math::max);
+            Thread.sleep((batch * 7) % 5);
+            return batch;
+        };
+    }
+
+    @Test
+    public void testOrdered() {
+        System.out.println("ordered");
+        var inflight = new AtomicInteger();
+        var maxInflight = new AtomicInteger();
+        var loader = new DataLoader<>(50, () -> collator(inflight, maxInflight), new DataLoader.Options(4, 6, true));
+        assertEquals(50, loader.size());
+        for (int i = 0; i < 50; i++) {
+            assertTrue(loader.hasNext());
+            assertEquals(i, (int) loader.next());
+            inflight.decrementAndGet();
+        }
+        assertFalse(loader.hasNext());
+        // The permit is released before the consumer decrements the counter.
+        assertTrue(maxInflight.get() <= 6 + 1);
+    }
+
+    @Test
+    public void testUnordered() {
+        System.out.println("unordered");
+        var inflight = new AtomicInteger();
+        var maxInflight = new AtomicInteger();
+        var loader = new DataLoader<>(50, () -> collator(inflight, maxInflight), new DataLoader.Options(3, 3, false));
+        int[] batches = new int[50];
+        int n = 0;
+        while (loader.hasNext()) {
+            batches[n++] = loader.next();
+            inflight.decrementAndGet();
+        }
+        assertEquals(50, n);
+        Arrays.sort(batches);
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, batches[i]);
+        }
+        assertTrue(maxInflight.get() <= 3 + 1);
+    }
+
+    @Test
+    public void testWorkerBuffer() {
+        System.out.println("worker buffer");
+        // Each worker collates into its own ring of prefetch + 1 buffers.
+        var collators = new AtomicInteger();
+        var options = new DataLoader.Options(2);
+        var loader = new DataLoader<>(20, () -> {
+            collators.incrementAndGet();
+            int[][] buffers = new int[options.prefetch() + 1][4];
+            return batch -> {
+                int[] buffer = buffers[batch % buffers.length];
+                Arrays.fill(buffer, batch);
+                return buffer;
+            };
+        }, options);
+
+        var buffers = Collections.newSetFromMap(new IdentityHashMap<int[], Boolean>());
+        for (int i = 0; i < 20; i++) {
+            int[] batch = loader.next();
+            assertArrayEquals(new int[]{i, i, i, i}, batch);
+            buffers.add(batch);
+        }
+        assertEquals(2, collators.get());
+        assertTrue(buffers.size() <= 2 * (options.prefetch() + 1));
+    }
+
+    @Test
+    public void testFailure() {
+        System.out.println("failure");
+        var loader = new DataLoader<Integer>(10, () -> batch -> {
+            if (batch == 3) throw new java.io.IOException("corrupted");
+            return batch;
+        }, new DataLoader.Options(2));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, (int) loader.next());
+        }
+        var ex = assertThrows(IllegalStateException.class, loader::next);
+        assertEquals("corrupted", ex.getCause().getMessage());
+        assertFalse(loader.hasNext());
+    }
+
+    @Test
+    public void testError() {
+        System.out.println("error");
+        var loader = new DataLoader<Integer>(10, () -> batch -> {
+            if (batch == 3) throw new StackOverflowError("deep");
+            return batch;
+        }, new DataLoader.Options(2));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, (int) loader.next());
+        }
+        var ex = assertThrows(IllegalStateException.class, loader::next);
+        assertTrue(ex.getCause() instanceof StackOverflowError);
+        assertFalse(loader.hasNext());
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        System.out.println("close");
+        var loaded = new AtomicInteger();
+        var loader = new DataLoader<Integer>(1000, () -> batch -> {
+            loaded.incrementAndGet();
+            return batch;
+        }, new DataLoader.Options(2, 4, true));
+
+        assertEquals(0, (int) loader.next());
+        loader.close();
+        assertFalse(loader.hasNext());
+        Thread.sleep(50);
+        int count = loaded.get();
+        Thread.sleep(50);
+        assertEquals(count, loaded.get());
+        assertTrue(count < 10);
+    }
+
+    @Test
+    public void testEmpty() {
+        System.out.println("empty");
+        var loader = new DataLoader<Integer>(0, () -> batch -> batch, new DataLoader.Options(2));
+        assertFalse(loader.hasNext());
+    }
+}
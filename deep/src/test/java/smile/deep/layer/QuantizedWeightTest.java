@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.deep.layer;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import smile.math.MathEx;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author Haifeng Li
+ */
+public class QuantizedWeightTest {
+
+    public QuantizedWeightTest() {
+    }
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterAll
+    public static void tearDownClass() throws Exception {
+    }
+
+    @BeforeEach
+    public void setUp() {
+    }
+
+    @AfterEach
+    public void tearDown() {
+    }
+
+    /** Returns a random matrix in row-major order. */
+    private float[] random(int m, int n) {
+        float[] a = new float[m * n];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = (float) MathEx.random(-1, 1);
+        }
+        return a;
+    }
+
+    /** Returns x * w' in full precision. */
+    private float[] mm(float[] x, int rows, float[] w, int out, int in) {
+        float[] y = new float[rows * out];
+        for (int r = 0; r < rows; r++) {
+            for (int o = 0; o < out; o++) {
+                double sum = 0.0;
+                for (int j = 0; j < in; j++) {
+                    sum += x[r * in + j] * w[o * in + j];
+                }
+                y[r * out + o] = (float) sum;
+            }
+        }
+        return y;
+    }
+
+    /** Tests the quantization error, matrix multiplication and serialization. */
+    private void test(QuantizedWeight weight, float[] w, int rows, double tolerance) throws Exception {
+        int out = weight.out();
+        int in = weight.in();
+        int groupSize = weight.groupSize();
+        int max = weight.bits() == 8 ? 127 : 7;
+
+        float[] dw = weight.dequantize();
+        for (int o = 0; o < out; o++) {
+            for (int g = 0; g < in / groupSize; g++) {
+                float amax = 0.0f;
+                for (int j = 0; j < groupSize; j++) {
+                    amax = Math.max(amax, Math.abs(w[o * in + g * groupSize + j]));
+                }
+                for (int j = 0; j < groupSize; j++) {
+                    int k = o * in + g * groupSize + j;
+                    assertEquals(w[k], dw[k], amax / max / 2 + 1E-6);
+                }
+            }
+        }
+
+        float[] x = random(rows, in);
+        float[] y = new float[rows * out];
+        weight.mm(x, rows, y);
+        float[] expected = mm(x, rows, dw, out, in);
+        float[] exact = mm(x, rows, w, out, in);
+        for (int i = 0; i < y.length; i++) {
+            assertEquals(expected[i], y[i], 1E-3);
+            assertEquals(exact[i], y[i], tolerance);
+        }
+
+        File file = File.createTempFile("smile-quantized", ".bin");
+        file.deleteOnExit();
+        try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            weight.write(channel);
+        }
+
+        try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            var mapped = QuantizedWeight.map(channel);
+            assertEquals(channel.size(), channel.position());
+            assertEquals(weight.toString(), mapped.toString());
+            assertArrayEquals(dw, mapped.dequantize());
+        }
+    }
+
+    @Test
+    public void testInt8() throws Exception {
+        System.out.println("int8");
+        MathEx.setSeed(19650218); // to get repeatable results.
+        int out = 37, in = 96;
+        float[] w = random(out, in);
+        var weight = QuantizedWeight.int8(w, out, in);
+        System.out.println(weight);
+        assertEquals(out * in + out * 4, weight.bytes());
+        test(weight, w, 3, 0.1);
+    }
+
+    @Test
+    public void testInt4() throws Exception {
+        System.out.println("int4");
+        MathEx.setSeed(19650218); // to get repeatable results.
+        int out = 37, in = 96;
+        float[] w = random(out, in);
+        w[5] = 0.0f;
+        var weight = QuantizedWeight.int4(w, out, in, 32);
+        System.out.println(weight);
+        assertEquals(out * in / 2 + out * 3 * 4, weight.bytes());
+        test(weight, w, 2, 1.0);
+    }
+}
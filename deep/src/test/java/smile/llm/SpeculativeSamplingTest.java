@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package smile.llm;
+
+import smile.math.Random;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author Haifeng Li
+ */
+public class SpeculativeSamplingTest {
+
+    public SpeculativeSamplingTest() {
+    }
+
+    @BeforeAll
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterAll
+    public static void tearDownClass() throws Exception {
+    }
+
+    @BeforeEach
+    public void setUp() {
+    }
+
+    @AfterEach
+    public void tearDown() {
+    }
+
+    @Test
+    public void testVerify() {
+        System.out.println("verify");
+        float[] p0 = {0.5f, 0.3f, 0.2f, 0.0f};
+        float[] p1 = {0.1f, 0.2f, 0.3f, 0.4f};
+        float[] q0 = {0.1f, 0.2f, 0.3f, 0.4f};
+
+        // The first token follows the target distribution
+        // regardless of the draft distribution.
+        Random random = new Random(19650218);
+        int n = 200000;
+        int[] count = new int[4];
+        int accepted = 0;
+        for (int i = 0; i < n; i++) {
+            int x = SpeculativeSampling.sample(q0, random);
+            int[] tokens = SpeculativeSampling.verify(new float[][]{p0, p1}, new float[][]{q0}, new int[]{x}, random);
+            count[tokens[0]]++;
+            if (tokens.length == 2) accepted++;
+        }
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(p0[i], (double) count[i] / n, 0.005);
+        }
+        // The acceptance rate is sum(min(p, q)).
+        assertEquals(0.5, (double) accepted / n, 0.005);
+    }
+
+    @Test
+    public void testGreedy() {
+        System.out.println("greedy");
+        assertArrayEquals(new int[]{1, 2, 3, 4}, SpeculativeSampling.greedy(new int[]{1, 2, 3, 4}, new int[]{1, 2, 3}));
+        assertArrayEquals(new int[]{1, 5}, SpeculativeSampling.greedy(new int[]{1, 5, 3, 4}, new int[]{1, 2, 3}));
+        assertArrayEquals(new int[]{7}, SpeculativeSampling.greedy(new int[]{7}, new int[0]));
+    }
+}
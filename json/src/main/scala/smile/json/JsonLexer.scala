@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.json
+
+import scala.annotation.{switch, tailrec}
+import java.lang.{StringBuilder => JStringBuilder}
+
+/**
+ * The lexer of JSON tokens shared by the tree and pull parsers.
+ * The tokens don't consume the trailing whitespaces.
+ *
+ * @param input the parser input.
+ */
+private[json] abstract class JsonLexer(input: ParserInput) {
+  import JsonParser.ParsingException
+
+  /** The buffer of the last string token. */
+  protected[this] val sb = new JStringBuilder
+  /** The current character. */
+  protected[this] var cursorChar: Char = input.nextChar()
+
+  protected final val EOI = '\uFFFF' // compile-time constant
+
+  protected def `false`(): Boolean = advance() && ch('a') && ch('l') && ch('s') && ch('e')
+  protected def `null`(): Boolean = advance() && ch('u') && ch('l') && ch('l')
+  protected def `true`(): Boolean = advance() && ch('r') && ch('u') && ch('e')
+
+  // http://tools.ietf.org/html/rfc4627#section-2.4
+  // Leading zeros are not allowed.
+  protected def `number`(): JsValue = {
+    val start = input.cursor
+    val startChar = cursorChar
+    ch('-')
+    `int`()
+    val hasFrac = `frac`()
+    val hasExp = `exp`()
+    val hasLong = `long`()
+    val hasCounter = `counter`()
+
+    if (startChar == '0' && input.cursor - start == 1) JsInt.zero
+    else {
+      val s = String.valueOf(input.sliceCharArray(start, input.cursor))
+      if (hasFrac || hasExp) {
+        val n = s.toDouble
+        n match {
+          case 0.0 => JsDouble.zero
+          case 1.0 => JsDouble.one
+          case _   => JsDouble(n)
+        }
+      } else {
+        if (hasLong) JsLong(s.substring(0, s.length-1).toLong)
+        else if (hasCounter) JsCounter(s.substring(0, s.length-1).toLong)
+        else try {
+          val n = s.toInt
+          n match {
+            case 0 => JsInt.zero
+            case 1 => JsInt.one
+            case _ => JsInt(n)
+          }
+        } catch {
+          case _: NumberFormatException => JsLong(s.toLong)
+        }
+      }
+    }
+  }
+
+  private def `int`(): Unit = if (!ch('0')) oneOrMoreDigits()
+  private def `frac`(): Boolean = if (ch('.')) {oneOrMoreDigits(); true} else false
+  private def `exp`(): Boolean = if (ch('e') || ch('E')) { ch('-') || ch('+'); oneOrMoreDigits(); true } else false
+  private def `long`(): Boolean = if (ch('l') || ch('L')) true else false
+  private def `counter`(): Boolean = if (ch('c') || ch('C')) true else false
+
+  private def oneOrMoreDigits(): Unit = if (DIGIT()) zeroOrMoreDigits() else fail("DIGIT")
+  @tailrec private def zeroOrMoreDigits(): Unit = if (DIGIT()) zeroOrMoreDigits()
+
+  private def DIGIT(): Boolean = cursorChar >= '0' && cursorChar <= '9' && advance()
+
+  // http://tools.ietf.org/html/rfc4627#section-2.5
+  /** Reads a string into the buffer. */
+  protected def `string`(): Unit = {
+    if (cursorChar == '"') cursorChar = input.nextUtf8Char() else fail("'\"'")
+    sb.setLength(0)
+    while (`char`()) cursorChar = input.nextUtf8Char()
+    require('"')
+  }
+
+  private def `char`() =
+  // simple bloom-filter that quick-matches the most frequent case of characters that are ok to append
+  // (it doesn't match control chars, EOI, '"', '?', '\', 'b' and certain higher, non-ASCII chars)
+    if (((1L << cursorChar) & ((31 - cursorChar) >> 31) & 0x7ffffffbefffffffL) != 0L) appendSB(cursorChar)
+    else cursorChar match {
+      case '"' | EOI => false
+      case '\\' => advance(); `escaped`()
+      case c => (c >= ' ') && appendSB(c)
+    }
+
+  private def `escaped`() = {
+    def hexValue(c: Char): Int =
+      if ('0' <= c && c <= '9') c - '0'
+      else if ('a' <= c && c <= 'f') c - 87
+      else if ('A' <= c && c <= 'F') c - 55
+      else fail("hex digit")
+    def unicode() = {
+      var value = hexValue(cursorChar)
+      advance()
+      value = (value << 4) + hexValue(cursorChar)
+      advance()
+      value = (value << 4) + hexValue(cursorChar)
+      advance()
+      value = (value << 4) + hexValue(cursorChar)
+      appendSB(value.toChar)
+    }
+    (cursorChar: @switch) match {
+      case '"' | '/' | '\\' => appendSB(cursorChar)
+      case 'b' => appendSB('\b')
+      case 'f' => appendSB('\f')
+      case 'n' => appendSB('\n')
+      case 'r' => appendSB('\r')
+      case 't' => appendSB('\t')
+      case 'u' => advance(); unicode()
+      case _ => fail("JSON escape sequence")
+    }
+  }
+
+  // fast test whether cursorChar is one of " \n\r\t"
+  protected def isWhitespace: Boolean = ((1L << cursorChar) & ((cursorChar - 64) >> 31) & 0x100002600L) != 0L
+
+  @tailrec protected final def ws(): Unit = if (isWhitespace) { advance(); ws() }
+
+  ////////////////////////// HELPERS //////////////////////////
+
+  protected def ch(c: Char): Boolean = if (cursorChar == c) { advance(); true } else false
+  protected def ws(c: Char): Boolean = if (ch(c)) { ws(); true } else false
+  protected def advance(): Boolean = { cursorChar = input.nextChar(); true }
+  private def appendSB(c: Char): Boolean = { sb.append(c); true }
+  protected def require(c: Char): Unit = if (!ch(c)) fail(s"'$c'")
+
+  protected def fail(target: String, cursor: Int = input.cursor, errorChar: Char = cursorChar): Nothing = {
+    val ParserInput.Line(lineNr, col, text) = input.getLine(cursor)
+    val summary = {
+      val unexpected =
+        if (errorChar != EOI) {
+          val c = if (Character.isISOControl(errorChar)) "\\u%04x" format errorChar.toInt else errorChar.toString
+          s"character '$c'"
+        } else "end-of-input"
+      val expected = if (target != "'\uFFFF'") target else "end-of-input"
+      s"Unexpected $unexpected at input index $cursor (line $lineNr, position $col), expected $expected"
+    }
+    val detail = {
+      val sanitizedText = text.map(c => if (Character.isISOControl(c)) '?' else c)
+      s"\n$sanitizedText\n${" " * (col-1)}^\n"
+    }
+    throw new ParsingException(summary, detail)
+  }
+}
@@ -20,7 +20,6 @@ package smile.json
 import scala.language.implicitConversions
 import scala.annotation.{switch, tailrec}
 import scala.collection.mutable.SeqMap
-import java.lang.{StringBuilder => JStringBuilder}
 import java.nio.{CharBuffer, ByteBuffer}
 import java.nio.charset.Charset
 
@@ -31,15 +30,27 @@ import java.nio.charset.Charset
 object JsonParser {
   def apply(input: ParserInput): JsValue = new JsonParser(input).parseJsValue()
 
+  /** Returns a pull parser, which reports the document as a sequence of events. */
+  def pull(input: ParserInput): JsonPullParser = new JsonPullParser(input)
+
+  /** Returns the JSON value of a string, which may be an ObjectId or UUID. */
+  private[json] def string(s: String): JsValue = {
+    // Don't try to parse date/time/datetime/timestamp any more. The user can
+    // use asDate/asTime/asDateTime/asTimestamp on demand.
+    if (s.length == JsObjectId.formatLength && JsObjectId.regex.pattern.matcher(s).matches) {
+      JsObjectId(s.substring(9, 33))
+    } else if (s.length == JsUUID.formatLength && JsUUID.regex.pattern.matcher(s).matches) {
+      JsUUID(s)
+    } else {
+      JsString(s)
+    }
+  }
+
   class ParsingException(val summary: String, val detail: String = "")
     extends RuntimeException(if (summary.isEmpty) detail else if (detail.isEmpty) summary else summary + ":" + detail)
 }
 
-class JsonParser(input: ParserInput) {
-  import JsonParser.ParsingException
-
-  private[this] val sb = new JStringBuilder
-  private[this] var cursorChar: Char = input.nextChar()
+class JsonParser(input: ParserInput) extends JsonLexer(input) {
   private[this] var jsValue: JsValue = _
 
   def parseJsValue(): JsValue = {
@@ -51,8 +62,6 @@ class JsonParser(input: ParserInput) {
 
   ////////////////////// GRAMMAR ////////////////////////
 
-  private final val EOI = '\uFFFF' // compile-time constant
-
   // http://tools.ietf.org/html/rfc4627#section-2.1
   private def `value`(): Unit = {
     val mark = input.cursor
@@ -63,25 +72,11 @@ class JsonParser(input: ParserInput) {
       case 't' => simpleValue(`true`(), JsTrue)
       case '{' => advance(); `object`()
       case '[' => advance(); `array`()
-      case '0' | '1' | '2' | '3' | '4' | '5' | '6' | '7' | '8' | '9' | '-' => `number`()
-      case '"' => `string`(); jsValue = if (sb.length == 0) JsString.empty else parseString(sb.toString)
+      case '0' | '1' | '2' | '3' | '4' | '5' | '6' | '7' | '8' | '9' | '-' => jsValue = `number`()
+      case '"' => `string`(); jsValue = if (sb.length == 0) JsString.empty else JsonParser.string(sb.toString)
       case _ => fail("JSON Value")
     }
-  }
-
-  private def `false`() = advance() && ch('a') && ch('l') && ch('s') && ws('e')
-  private def `null`() = advance() && ch('u') && ch('l') && ws('l')
-  private def `true`() = advance() && ch('r') && ch('u') && ws('e')
-  private def parseString(s: String): JsValue = {
-    // Don't try to parse date/time/datetime/timestamp any more. The user can
-    // use asDate/asTime/asDateTime/asTimestamp on demand.
-    if (s.length == JsObjectId.formatLength && JsObjectId.regex.pattern.matcher(s).matches) {
-      JsObjectId(s.substring(9, 33))
-    } else if (s.length == JsUUID.formatLength && JsUUID.regex.pattern.matcher(s).matches) {
-      JsUUID(s)
-    } else {
-      JsString(s)
-    }
+    ws()
   }
 
   // http://tools.ietf.org/html/rfc4627#section-2.2
@@ -90,6 +85,7 @@ class JsonParser(input: ParserInput) {
     jsValue = if (cursorChar != '}') {
       @tailrec def members(map: SeqMap[String, JsValue]): SeqMap[String, JsValue] = {
         `string`()
+        ws()
         require(':')
         ws()
         val key = sb.toString
@@ -104,7 +100,6 @@ class JsonParser(input: ParserInput) {
       advance()
       JsObject()
     }
-    ws()
   }
 
   // http://tools.ietf.org/html/rfc4627#section-2.3
@@ -124,135 +119,6 @@ class JsonParser(input: ParserInput) {
       advance()
       JsArray()
     }
-    ws()
-  }
-
-  // http://tools.ietf.org/html/rfc4627#section-2.4
-  // Leading zeros are not allowed.
-  private def `number`(): Unit = {
-    val start = input.cursor
-    val startChar = cursorChar
-    ch('-')
-    `int`()
-    val hasFrac = `frac`()
-    val hasExp = `exp`()
-    val hasLong = `long`()
-    val hasCounter = `counter`()
-    jsValue =
-      if (startChar == '0' && input.cursor - start == 1) JsInt.zero
-      else {
-        val s = String.valueOf(input.sliceCharArray(start, input.cursor))
-        if (hasFrac || hasExp) {
-          val n = s.toDouble
-          n match {
-            case 0.0 => JsDouble.zero
-            case 1.0 => JsDouble.one
-            case _   => JsDouble(n)
-          }
-        } else {
-          if (hasLong) JsLong(s.substring(0, s.length-1).toLong)
-          else if (hasCounter) JsCounter(s.substring(0, s.length-1).toLong)
-          else try {
-            val n = s.toInt
-            n match {
-              case 0 => JsInt.zero
-              case 1 => JsInt.one
-              case _ => JsInt(n)
-            }
-          } catch {
-            case _: NumberFormatException => JsLong(s.toLong)
-          }
-        }
-      }
-    ws()
-  }
-
-  private def `int`(): Unit = if (!ch('0')) oneOrMoreDigits()
-  private def `frac`(): Boolean = if (ch('.')) {oneOrMoreDigits(); true} else false
-  private def `exp`(): Boolean = if (ch('e') || ch('E')) { ch('-') || ch('+'); oneOrMoreDigits(); true } else false
-  private def `long`(): Boolean = if (ch('l') || ch('L')) true else false
-  private def `counter`(): Boolean = if (ch('c') || ch('C')) true else false
-
-  private def oneOrMoreDigits(): Unit = if (DIGIT()) zeroOrMoreDigits() else fail("DIGIT")
-  @tailrec private def zeroOrMoreDigits(): Unit = if (DIGIT()) zeroOrMoreDigits()
-
-  private def DIGIT(): Boolean = cursorChar >= '0' && cursorChar <= '9' && advance()
-
-  // http://tools.ietf.org/html/rfc4627#section-2.5
-  private def `string`(): Unit = {
-    if (cursorChar == '"') cursorChar = input.nextUtf8Char() else fail("'\"'")
-    sb.setLength(0)
-    while (`char`()) cursorChar = input.nextUtf8Char()
-    require('"')
-    ws()
-  }
-
-  private def `char`() =
-  // simple bloom-filter that quick-matches the most frequent case of characters that are ok to append
-  // (it doesn't match control chars, EOI, '"', '?', '\', 'b' and certain higher, non-ASCII chars)
-    if (((1L << cursorChar) & ((31 - cursorChar) >> 31) & 0x7ffffffbefffffffL) != 0L) appendSB(cursorChar)
-    else cursorChar match {
-      case '"' | EOI => false
-      case '\\' => advance(); `escaped`()
-      case c => (c >= ' ') && appendSB(c)
-    }
-
-  private def `escaped`() = {
-    def hexValue(c: Char): Int =
-      if ('0' <= c && c <= '9') c - '0'
-      else if ('a' <= c && c <= 'f') c - 87
-      else if ('A' <= c && c <= 'F') c - 55
-      else fail("hex digit")
-    def unicode() = {
-      var value = hexValue(cursorChar)
-      advance()
-      value = (value << 4) + hexValue(cursorChar)
-      advance()
-      value = (value << 4) + hexValue(cursorChar)
-      advance()
-      value = (value << 4) + hexValue(cursorChar)
-      appendSB(value.toChar)
-    }
-    (cursorChar: @switch) match {
-      case '"' | '/' | '\\' => appendSB(cursorChar)
-      case 'b' => appendSB('\b')
-      case 'f' => appendSB('\f')
-      case 'n' => appendSB('\n')
-      case 'r' => appendSB('\r')
-      case 't' => appendSB('\t')
-      case 'u' => advance(); unicode()
-      case _ => fail("JSON escape sequence")
-    }
-  }
-
-  @tailrec private def ws(): Unit =
-  // fast test whether cursorChar is one of " \n\r\t"
-    if (((1L << cursorChar) & ((cursorChar - 64) >> 31) & 0x100002600L) != 0L) { advance(); ws() }
-
-  ////////////////////////// HELPERS //////////////////////////
-
-  private def ch(c: Char): Boolean = if (cursorChar == c) { advance(); true } else false
-  private def ws(c: Char): Boolean = if (ch(c)) { ws(); true } else false
-  private def advance(): Boolean = { cursorChar = input.nextChar(); true }
-  private def appendSB(c: Char): Boolean = { sb.append(c); true }
-  private def require(c: Char): Unit = if (!ch(c)) fail(s"'$c'")
-
-  private def fail(target: String, cursor: Int = input.cursor, errorChar: Char = cursorChar): Nothing = {
-    val ParserInput.Line(lineNr, col, text) = input.getLine(cursor)
-    val summary = {
-      val unexpected =
-        if (errorChar != EOI) {
-          val c = if (Character.isISOControl(errorChar)) "\\u%04x" format errorChar.toInt else errorChar.toString
-          s"character '$c'"
-        } else "end-of-input"
-      val expected = if (target != "'\uFFFF'") target else "end-of-input"
-      s"Unexpected $unexpected at input index $cursor (line $lineNr, position $col), expected $expected"
-    }
-    val detail = {
-      val sanitizedText = text.map(c => if (Character.isISOControl(c)) '?' else c)
-      s"\n$sanitizedText\n${" " * (col-1)}^\n"
-    }
-    throw new ParsingException(summary, detail)
   }
 }
 
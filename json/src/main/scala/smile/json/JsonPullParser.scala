@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.json
+
+import scala.annotation.{switch, tailrec}
+import scala.collection.mutable.SeqMap
+
+/** The events of pull parser. */
+sealed trait JsonEvent
+
+object JsonEvent {
+  /** The start of an object. */
+  case object StartObject extends JsonEvent
+  /** The end of an object. */
+  case object EndObject extends JsonEvent
+  /** The start of an array. */
+  case object StartArray extends JsonEvent
+  /** The end of an array. */
+  case object EndArray extends JsonEvent
+  /** The name of an object field, which is followed by its value. */
+  case class FieldName(name: String) extends JsonEvent
+  /** A scalar value. */
+  case class Value(value: JsValue) extends JsonEvent
+  /** The end of input. */
+  case object EndOfInput extends JsonEvent
+}
+
+/**
+ * Pull parser of JSON, which reports the structure of document as a
+ * sequence of events without building the object tree. The caller may
+ * skip the values that it is not interested in, or materialize a
+ * subtree with readValue(). The input may have a sequence of top-level
+ * values separated by whitespaces, e.g. newline-delimited JSON.
+ *
+ * {{{
+ * val parser = JsonParser.pull(input)
+ * var event = parser.next()
+ * while (event != JsonEvent.EndOfInput) {
+ *   event match {
+ *     case JsonEvent.FieldName("price") => println(parser.readValue())
+ *     case JsonEvent.FieldName(_) => parser.skipValue()
+ *     case _ => ()
+ *   }
+ *   event = parser.next()
+ * }
+ * }}}
+ *
+ * @param input the parser input.
+ */
+class JsonPullParser(input: ParserInput) extends JsonLexer(input) {
+  import JsonEvent._
+
+  /** True for an object and false for an array at each nesting level. */
+  private[this] var objects = new Array[Boolean](16)
+  /** True if a member or element has been read at each nesting level. */
+  private[this] var members = new Array[Boolean](16)
+  /** The nesting level. */
+  private[this] var depth = 0
+  /** True if the value of a field is expected. */
+  private[this] var pendingValue = false
+
+  /** Returns the nesting level of objects and arrays. */
+  def level: Int = depth
+
+  /** Returns the next event. */
+  def next(): JsonEvent = {
+    ws()
+    if (pendingValue) {
+      pendingValue = false
+      `value`()
+    } else if (depth == 0) {
+      if (cursorChar == EOI) EndOfInput else `value`()
+    } else if (objects(depth - 1)) {
+      if (ch('}')) {
+        depth -= 1
+        EndObject
+      } else {
+        separator()
+        `string`()
+        ws()
+        require(':')
+        pendingValue = true
+        FieldName(sb.toString)
+      }
+    } else {
+      if (ch(']')) {
+        depth -= 1
+        EndArray
+      } else {
+        separator()
+        `value`()
+      }
+    }
+  }
+
+  /**
+   * Skips the value of the field just read without allocation.
+   * If the value is an object or array, the whole subtree is skipped.
+   */
+  def skipValue(): Unit = {
+    if (!pendingValue) throw new IllegalStateException("skipValue() must follow a FieldName event")
+    pendingValue = false
+    ws()
+    (cursorChar: @switch) match {
+      case '{' | '[' => advance(); skipNested()
+      case '"' => skipString()
+      case _ =>
+        val mark = input.cursor
+        while (cursorChar != ',' && cursorChar != '}' && cursorChar != ']' && !isWhitespace && cursorChar != EOI) advance()
+        if (input.cursor == mark) fail("JSON Value")
+    }
+  }
+
+  /**
+   * Skips the rest of the object or array just started without
+   * allocation, including its end event.
+   */
+  def skipChildren(): Unit = {
+    if (depth == 0) throw new IllegalStateException("skipChildren() must follow a StartObject or StartArray event")
+    pendingValue = false
+    skipNested()
+    depth -= 1
+  }
+
+  /**
+   * Reads the next value and materializes it, including the subtree
+   * if it is an object or array.
+   */
+  def readValue(): JsValue = value(next())
+
+  /** Returns the value of an event, including the subtree of objects and arrays. */
+  private def value(event: JsonEvent): JsValue = event match {
+    case Value(value) => value
+    case StartObject =>
+      val map = SeqMap.empty[String, JsValue]
+      @tailrec def fields(): Unit = next() match {
+        case FieldName(name) => map.put(name, readValue()); fields()
+        case _ => ()
+      }
+      fields()
+      JsObject(map)
+    case StartArray =>
+      val list = Vector.newBuilder[JsValue]
+      @tailrec def elements(): Unit = next() match {
+        case EndArray => ()
+        case event => list += value(event); elements()
+      }
+      elements()
+      JsArray(list.result(): _*)
+    case _ => fail("JSON Value")
+  }
+
+  ////////////////////// GRAMMAR ////////////////////////
+
+  private def `value`(): JsonEvent = {
+    val mark = input.cursor
+    def simpleValue(matched: Boolean, value: JsValue): JsonEvent = if (matched) Value(value) else fail("JSON Value", mark)
+    (cursorChar: @switch) match {
+      case 'f' => simpleValue(`false`(), JsFalse)
+      case 'n' => simpleValue(`null`(), JsNull)
+      case 't' => simpleValue(`true`(), JsTrue)
+      case '{' => advance(); push(true); StartObject
+      case '[' => advance(); push(false); StartArray
+      case '0' | '1' | '2' | '3' | '4' | '5' | '6' | '7' | '8' | '9' | '-' => Value(`number`())
+      case '"' => `string`(); Value(if (sb.length == 0) JsString.empty else JsonParser.string(sb.toString))
+      case _ => fail("JSON Value")
+    }
+  }
+
+  /** Consumes the comma between the members or elements. */
+  private def separator(): Unit = {
+    if (members(depth - 1)) {
+      require(',')
+      ws()
+      if (cursorChar == '}' || cursorChar == ']') fail("JSON Value")
+    } else {
+      members(depth - 1) = true
+    }
+  }
+
+  private def push(isObject: Boolean): Unit = {
+    if (depth == objects.length) {
+      objects = java.util.Arrays.copyOf(objects, 2 * depth)
+      members = java.util.Arrays.copyOf(members, 2 * depth)
+    }
+    objects(depth) = isObject
+    members(depth) = false
+    depth += 1
+  }
+
+  /** Skips a string without decoding it. */
+  private def skipString(): Unit = {
+    advance()
+    while (cursorChar != '"') {
+      if (cursorChar == EOI) fail("'\"'")
+      if (cursorChar == '\\') advance()
+      advance()
+    }
+    advance()
+  }
+
+  /** Skips the rest of an object or array that has been opened. */
+  private def skipNested(): Unit = {
+    var level = 1
+    while (level > 0) {
+      (cursorChar: @switch) match {
+        case '"' => skipString()
+        case '{' | '[' => level += 1; advance()
+        case '}' | ']' => level -= 1; advance()
+        case EOI => fail("'}' or ']'")
+        case _ => advance()
+      }
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.json
+
+import org.specs2.mutable._
+import JsonEvent._
+
+class JsonPullParserSpec extends Specification {
+
+  def events(parser: JsonPullParser): List[JsonEvent] = {
+    val list = List.newBuilder[JsonEvent]
+    var event = parser.next()
+    while (event != EndOfInput) {
+      list += event
+      event = parser.next()
+    }
+    list.result()
+  }
+
+  "The JsonPullParser" should {
+    "report the events of a document" in {
+      val parser = JsonParser.pull("""{"a": 1, "b": [true, null, "x"], "c": {"d": 2.5}}""")
+      events(parser) === List(
+        StartObject,
+        FieldName("a"), Value(JsInt(1)),
+        FieldName("b"), StartArray, Value(JsTrue), Value(JsNull), Value(JsString("x")), EndArray,
+        FieldName("c"), StartObject, FieldName("d"), Value(JsDouble(2.5)), EndObject,
+        EndObject
+      )
+    }
+    "report the events of empty objects and arrays" in {
+      events(JsonParser.pull("""{"a": {}, "b": []}""")) === List(
+        StartObject, FieldName("a"), StartObject, EndObject, FieldName("b"), StartArray, EndArray, EndObject
+      )
+    }
+    "parse a sequence of top-level values" in {
+      val parser = JsonParser.pull("{\"a\": 1}\n{\"a\": 2}\n")
+      List.fill(2)(parser.readValue()) === List(JsObject("a" -> JsInt(1)), JsObject("a" -> JsInt(2)))
+      parser.next() === EndOfInput
+    }
+    "skip the values of fields" in {
+      val parser = JsonParser.pull("""{"a": {"x": [1, {"y": "}]"}]}, "b": "s\"}", "c": -1.5e3, "d": 7L}""")
+      parser.next() === StartObject
+      parser.next() === FieldName("a")
+      parser.skipValue()
+      parser.next() === FieldName("b")
+      parser.skipValue()
+      parser.next() === FieldName("c")
+      parser.skipValue()
+      parser.next() === FieldName("d")
+      parser.next() === Value(JsLong(7))
+      parser.next() === EndObject
+      parser.next() === EndOfInput
+    }
+    "skip the children of objects and arrays" in {
+      val parser = JsonParser.pull("""[[1, [2, 3]], {"a": "]"}, 4]""")
+      parser.next() === StartArray
+      parser.next() === StartArray
+      parser.next() === Value(JsInt(1))
+      parser.skipChildren()
+      parser.next() === StartObject
+      parser.skipChildren()
+      parser.next() === Value(JsInt(4))
+      parser.next() === EndArray
+      parser.level === 0
+    }
+    "read the same values as JsonParser" in {
+      val source = scala.io.Source.fromInputStream(getClass.getResourceAsStream("/store.json")).mkString
+      JsonParser.pull(source).readValue() === JsonParser(source)
+      JsonParser.pull(source.getBytes("UTF-8")).readValue() === JsonParser(source)
+    }
+    "reject malformed documents" in {
+      events(JsonParser.pull("""{"a": 1 "b": 2}""")) must throwA[JsonParser.ParsingException]
+      events(JsonParser.pull("""[1, 2,]""")) must throwA[JsonParser.ParsingException]
+      events(JsonParser.pull("""{"a" 1}""")) must throwA[JsonParser.ParsingException]
+    }
+  }
+}
@@ -25,7 +25,9 @@ import smile.math.MathEx;
 import smile.util.Paths;
 
 /**
- * Part-of-speech tagging with hidden Markov model.
+ * Part-of-speech tagging with hidden Markov model. The Viterbi decoding
+ * works on the cached logarithm of model parameters. A batch of sentences
+ * is tagged in parallel by {@link #tag(String[][])}.
  *
  * @author Haifeng Li
  */
@@ -58,6 +60,10 @@ public class HMMPOSTagger implements POSTagger, Serializable {
      * Suffix emission probabilities.
      */
     private double[][] c;
+    /**
+     * The cached log probabilities in the layout of Viterbi algorithm.
+     */
+    private transient volatile LogTables tables;
 
     /**
      * Default English POS tagger.
@@ -126,12 +132,13 @@ public class HMMPOSTagger implements POSTagger, Serializable {
     
     @Override
     public PennTreebankPOS[] tag(String[] sentence) {
-        int[] s = viterbi(sentence);   
-        
         int n = sentence.length;
+        int[][] o = translate(symbol, suffix, sentence);
+        int[] s = viterbi(o);
+
         PennTreebankPOS[] pos = new PennTreebankPOS[n];
         for (int i = 0; i < n; i++) {
-            if (symbol.get(sentence[i]) == null) {
+            if (o[i][0] == 0) {
                 pos[i] = RegexPOSTagger.tag(sentence[i]);
             }
             
@@ -143,42 +150,96 @@ public class HMMPOSTagger implements POSTagger, Serializable {
         return pos;
     }
 
+    /**
+     * The log probabilities of model in the layout of Viterbi algorithm,
+     * i.e. contiguous in the inner loops.
+     */
+    private static class LogTables {
+        /** The log initial state probabilities. */
+        final double[] pi;
+        /** The log state transition probabilities, at[j * N + i] = log P(s_j | s_i). */
+        final double[] at;
+        /** The log symbol emission probabilities, bt[o * N + i] = log P(o | s_i). */
+        final double[] bt;
+        /** The log suffix emission probabilities, ct[o * N + i] = log P(o | s_i). */
+        final double[] ct;
+
+        /**
+         * Constructor.
+         */
+        LogTables(double[] pi, double[][] a, double[][] b, double[][] c) {
+            int N = pi.length;
+            this.pi = new double[N];
+            this.at = new double[N * N];
+            this.bt = new double[b[0].length * N];
+            this.ct = new double[c[0].length * N];
+            for (int i = 0; i < N; i++) {
+                this.pi[i] = MathEx.log(pi[i]);
+                for (int j = 0; j < N; j++) {
+                    at[j * N + i] = MathEx.log(a[i][j]);
+                }
+                for (int j = 0; j < b[i].length; j++) {
+                    bt[j * N + i] = MathEx.log(b[i][j]);
+                }
+                for (int j = 0; j < c[i].length; j++) {
+                    ct[j * N + i] = MathEx.log(c[i][j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the cached log probabilities.
+     * @return the cached log probabilities.
+     */
+    private LogTables tables() {
+        LogTables model = tables;
+        if (model == null) {
+            model = new LogTables(pi, a, b, c);
+            tables = model;
+        }
+        return model;
+    }
+
     /**
      * Returns the most likely state sequence given the observation sequence by
      * the Viterbi algorithm, which maximizes the probability of
-     * <code>P(I | O, HMM)</code>. Note that only s[i] taking value -1 will be
-     * inferred. In the calculation, we may get ties. In this case, one of them
-     * is chosen randomly.
+     * <code>P(I | O, HMM)</code>. In the calculation, we may get ties. In this
+     * case, one of them is chosen randomly.
      *
-     * @param sentence an observation sequence.
+     * @param o the observation sequence in internal representation.
      * @return the most likely state sequence.
      */
-    private int[] viterbi(String[] sentence) {
-        int n = sentence.length;
-        int[][] o = translate(symbol, suffix, sentence);
+    private int[] viterbi(int[][] o) {
+        int n = o.length;
         int[] s = new int[n];
-        
+        if (n == 0) return s;
+
+        LogTables model = tables();
         int numStates = pi.length;
-        // The porbability of the most probable path.
-        double[][] delta = new double[n][numStates];
+        // The log probability of the most probable path.
+        double[] delta = new double[numStates];
+        double[] next = new double[numStates];
         // Backtrace.
-        int[][] psy = new int[n][numStates];
+        int[] psy = new int[n * numStates];
 
+        double[] emission = emission(model, o[0]);
+        int e = emission(o[0]) * numStates;
         for (int i = 0; i < numStates; i++) {
-            if (o[0][0] == 0 && o[0][1] >= 0) {
-                delta[0][i] = MathEx.log(pi[i]) + MathEx.log(c[i][o[0][1]]);
-            } else {
-                delta[0][i] = MathEx.log(pi[i]) + MathEx.log(b[i][o[0][0]]);
-            }
+            delta[i] = model.pi[i] + emission[e + i];
         }
 
         for (int t = 1; t < n; t++) {
+            emission = emission(model, o[t]);
+            e = emission(o[t]) * numStates;
+            int base = t * numStates;
             for (int k = 0; k < numStates; k++) {
+                int row = k * numStates;
                 double maxDelta = Double.NEGATIVE_INFINITY;
                 int maxPsy = -1;
 
                 for (int i = 0; i < numStates; i++) {
-                    double thisDelta = delta[t - 1][i] + MathEx.log(a[i][k]);
+                    double thisDelta = delta[i] + model.at[row + i];
 
                     if (maxDelta < thisDelta) {
                         maxDelta = thisDelta;
@@ -186,32 +247,45 @@ public class HMMPOSTagger implements POSTagger, Serializable {
                     }
                 }
 
-                if (o[t][0] == 0 && o[t][1] >= 0) {
-                    delta[t][k] = maxDelta + MathEx.log(c[k][o[t][1]]);
-                } else {
-                    delta[t][k] = maxDelta + MathEx.log(b[k][o[t][0]]);
-                }
-
-                psy[t][k] = maxPsy;
+                next[k] = maxDelta + emission[e + k];
+                psy[base + k] = maxPsy;
             }
+
+            double[] swap = delta;
+            delta = next;
+            next = swap;
         }
         
-        n = o.length - 1;
         double maxDelta = Double.NEGATIVE_INFINITY;
         for (int i = 0; i < numStates; i++) {
-            if (maxDelta < delta[n][i]) {
-                maxDelta = delta[n][i];
-                s[n] = i;
+            if (maxDelta < delta[i]) {
+                maxDelta = delta[i];
+                s[n - 1] = i;
             }
         }
 
-        for (int t = n; t-- > 0;) {
-            s[t] = psy[t + 1][s[t + 1]];
+        for (int t = n - 1; t-- > 0;) {
+            s[t] = psy[(t + 1) * numStates + s[t + 1]];
         }
         
         return s;
     }
 
+    /**
+     * Returns the emission table of an observation. Unknown words
+     * are emitted by the suffix if available.
+     */
+    private static double[] emission(LogTables model, int[] o) {
+        return o[0] == 0 && o[1] >= 0 ? model.ct : model.bt;
+    }
+
+    /**
+     * Returns the index of observation in its emission table.
+     */
+    private static int emission(int[] o) {
+        return o[0] == 0 && o[1] >= 0 ? o[1] : o[0];
+    }
+
     /**
      * Translate an observation sequence to internal representation.
      */
@@ -17,6 +17,8 @@
 
 package smile.nlp.pos;
 
+import java.util.Arrays;
+
 /**
  * Part-of-speech tagging (POS tagging) is the process of marking up the words
  * in a sentence as corresponding to a particular part of speech. Part-of-speech
@@ -33,4 +35,14 @@ public interface POSTagger {
      * @return the POS tags.
      */
     PennTreebankPOS[] tag(String[] sentence);
+
+    /**
+     * Tags a batch of sentences. The default implementation tags
+     * the sentences in parallel.
+     * @param sentences the sentences.
+     * @return the POS tags of each sentence.
+     */
+    default PennTreebankPOS[][] tag(String[][] sentences) {
+        return Arrays.stream(sentences).parallel().map(this::tag).toArray(PennTreebankPOS[][]::new);
+    }
 }
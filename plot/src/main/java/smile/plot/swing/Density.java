@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.plot.swing;
+
+import java.awt.Color;
+import smile.math.MathEx;
+import smile.stat.distribution.KernelDensity;
+import smile.stat.distribution.MultivariateKernelDensity;
+
+/**
+ * A density plot shows the kernel density estimation of data, which is
+ * a smoothed version of histogram. The univariate density is evaluated
+ * on a grid by linear binning and FFT. The bivariate density is shown
+ * as contours, which are evaluated by the dual-tree algorithm.
+ *
+ * @author Haifeng Li
+ */
+public class Density {
+    /** The number of grid points of univariate density. */
+    private static final int GRID_SIZE = 512;
+
+    /**
+     * Creates a density plot. The bandwidth of kernel will be
+     * estimated by the rule of thumb.
+     * @param data a sample set.
+     */
+    public static LinePlot of(double[] data) {
+        return of(new KernelDensity(data.clone()), data, Color.BLUE);
+    }
+
+    /**
+     * Creates a density plot.
+     * @param data a sample set.
+     * @param h the bandwidth of kernel.
+     */
+    public static LinePlot of(double[] data, double h) {
+        return of(data, h, Color.BLUE);
+    }
+
+    /**
+     * Creates a density plot.
+     * @param data a sample set.
+     * @param h the bandwidth of kernel.
+     * @param color the color of line.
+     */
+    public static LinePlot of(double[] data, double h, Color color) {
+        return of(new KernelDensity(data.clone(), h), data, color);
+    }
+
+    /**
+     * Creates a density plot.
+     * @param kde the kernel density estimation.
+     * @param data the sample set.
+     * @param color the color of line.
+     */
+    private static LinePlot of(KernelDensity kde, double[] data, Color color) {
+        double h = kde.bandwidth();
+        double from = MathEx.min(data) - 3 * h;
+        double to = MathEx.max(data) + 3 * h;
+        double[] p = kde.grid(from, to, GRID_SIZE);
+
+        double delta = (to - from) / (GRID_SIZE - 1);
+        double[][] points = new double[GRID_SIZE][2];
+        for (int i = 0; i < GRID_SIZE; i++) {
+            points[i][0] = from + i * delta;
+            points[i][1] = p[i];
+        }
+
+        return LinePlot.of(points, Line.Style.SOLID, color);
+    }
+
+    /**
+     * Creates a contour plot of bivariate density with 10 isolines. The
+     * bandwidth of kernel will be estimated by Scott's rule.
+     * @param data a sample set of two-dimensional points.
+     */
+    public static Contour of(double[][] data) {
+        return of(data, 100, 10);
+    }
+
+    /**
+     * Creates a contour plot of bivariate density. The bandwidth of
+     * kernel will be estimated by Scott's rule.
+     * @param data a sample set of two-dimensional points.
+     * @param m the number of grid points in each dimension.
+     * @param numLevels the number of contour levels.
+     */
+    public static Contour of(double[][] data, int m, int numLevels) {
+        if (data[0].length != 2) {
+            throw new IllegalArgumentException("The data is not two-dimensional: " + data[0].length);
+        }
+
+        if (m < 2) {
+            throw new IllegalArgumentException("Invalid number of grid points: " + m);
+        }
+
+        MultivariateKernelDensity kde = new MultivariateKernelDensity(data);
+        double[] h = kde.bandwidth();
+        double[] min = MathEx.colMin(data);
+        double[] max = MathEx.colMax(data);
+
+        double[] x = new double[m];
+        double[] y = new double[m];
+        for (int i = 0; i < m; i++) {
+            x[i] = min[0] - 3 * h[0] + i * (max[0] - min[0] + 6 * h[0]) / (m - 1);
+            y[i] = min[1] - 3 * h[1] + i * (max[1] - min[1] + 6 * h[1]) / (m - 1);
+        }
+
+        double[][] grid = new double[m * m][];
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < m; j++) {
+                grid[i * m + j] = new double[]{x[j], y[i]};
+            }
+        }
+
+        // The relative error is invisible in the plot.
+        double[] p = kde.p(grid, 1E-3, 0.0);
+        double[][] z = new double[m][m];
+        for (int i = 0; i < m; i++) {
+            System.arraycopy(p, i * m, z[i], 0, m);
+        }
+
+        return Contour.of(x, y, z, numLevels);
+    }
+}
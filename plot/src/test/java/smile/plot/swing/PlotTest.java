@@ -155,6 +155,30 @@ public class PlotTest {
         Histogram3D.of(data, 50, false).canvas().window();
     }
 
+    @Test
+    public void testDensity() throws Exception {
+        System.out.println("Density");
+
+        var cow = Read.csv(Paths.getTestData("stat/cow.txt")).column("V1").toDoubleArray();
+        var data = Arrays.stream(cow).filter(w -> w <= 3500).toArray();
+        var canvas = Density.of(data).canvas();
+        canvas.setAxisLabels("Weight", "Density");
+        canvas.window();
+    }
+
+    @Test
+    public void testDensity2D() throws Exception {
+        System.out.println("Density 2D");
+
+        double[] mu = {0.0, 0.0};
+        double[][] v = { {1.0, 0.6}, {0.6, 2.0} };
+        var gauss = new MultivariateGaussianDistribution(mu, Matrix.of(v));
+        var data = Stream.generate(gauss::rand).limit(10000).toArray(double[][]::new);
+        var canvas = ScatterPlot.of(data, '.').canvas();
+        canvas.add(Density.of(data));
+        canvas.window();
+    }
+
     @Test
     public void testQQ() throws Exception {
         System.out.println("QQ");
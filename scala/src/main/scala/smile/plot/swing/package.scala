@@ -375,6 +375,31 @@ package object swing {
     Hexmap.of(z, palette).canvas
   }
 
+  /** Kernel density plot. The bandwidth is estimated by the rule of thumb.
+    * @param data a sample set.
+    */
+  def density(data: Array[Double]): Canvas = {
+    Density.of(data).canvas
+  }
+
+  /** Kernel density plot.
+    * @param data a sample set.
+    * @param h the bandwidth of kernel.
+    * @param color the color of line.
+    */
+  def density(data: Array[Double], h: Double, color: Color): Canvas = {
+    Density.of(data, h, color).canvas
+  }
+
+  /** Contour plot of bivariate kernel density.
+    * @param data a sample set of two-dimensional points.
+    * @param m the number of grid points in each dimension.
+    * @param levels the number of contour levels.
+    */
+  def density(data: Array[Array[Double]], m: Int, levels: Int): Canvas = {
+    Density.of(data, m, levels).canvas
+  }
+
   /** Histogram plot.
     * @param data a sample set.
     * @param k the number of bins.
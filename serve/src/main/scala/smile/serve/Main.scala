@@ -24,14 +24,23 @@ import scopt.OParser
   * @param tokenizer the tokenizer model file path.
   * @param maxSeqLen the maximum sequence length.
   * @param maxBatchSize the maximum batch size.
-  * @param device the CUDA device ID. Note that CUDA won’t concurrently run
-  *               kernels on multiple devices from a single process.
+  * @param device the CUDA device ID, or -1 for CPU with a quantized checkpoint.
+  *               Note that CUDA won’t concurrently run kernels on multiple
+  *               devices from a single process.
+  * @param contextCacheSize the maximum number of tokens in the context cache
+  *                         of active threads.
+  * @param draft the optional checkpoint directory path of the draft model
+  *              for speculative decoding, which shares the tokenizer.
+  * @param speculation the number of draft tokens per step of speculative decoding.
   */
 case class ServeConfig(model: String,
                        tokenizer: String,
                        maxSeqLen: Int = 4096,
                        maxBatchSize: Int = 1,
-                       device: Int = 0)
+                       device: Int = 0,
+                       contextCacheSize: Long = 4000000,
+                       draft: String = "",
+                       speculation: Int = 4)
 
 /** The main entry to start SmileServe service.
   *
@@ -68,7 +77,20 @@ object Main {
         opt[Int]("device")
           .optional()
           .action((x, c) => c.copy(device = x))
-          .text("The CUDA device ID"),
+          .text("The CUDA device ID, or -1 for CPU"),
+        opt[Long]("context-cache-size")
+          .optional()
+          .action((x, c) => c.copy(contextCacheSize = x))
+          .text("The maximum number of tokens in the context cache of active threads"),
+        opt[String]("draft")
+          .optional()
+          .action((x, c) => c.copy(draft = x))
+          .text("The draft model checkpoint directory path for speculative decoding"),
+        opt[Int]("speculation")
+          .optional()
+          .validate(x => if (x > 0) success else failure("speculation must be positive"))
+          .action((x, c) => c.copy(speculation = x))
+          .text("The number of draft tokens per step of speculative decoding"),
         help("help").text("Display the usage information")
       )
     }
@@ -124,6 +124,27 @@ trait ChatDB extends Schema {
     })
   }
 
+  /** Returns the most recent messages of a thread in chronological order. */
+  def getContext(threadId: Long, limit: Int)
+                (implicit ec: ExecutionContext): Future[Seq[ThreadMessage]] = {
+    val q = messages.filter(_.threadId === threadId).sortBy(_.id.desc).take(limit).result
+    db.run(q).map(_.reverse)
+  }
+
+  /** Inserts the messages of a chat turn in a transaction. */
+  def insertMessages(threadId: Long, request: CompletionRequest, response: CompletionResponse)
+                    (implicit ec: ExecutionContext): Future[Option[Int]] = {
+    val now = Instant.now
+    val insert = for {
+      _ <- insertMessages(threadId, request.messages)
+      n <- messages ++= response.choices.map { choice =>
+        ThreadMessage(0, threadId, choice.message.role.toString, choice.message.content, Some(choice.finish_reason.toString), now)
+      }
+    } yield n
+
+    db.run(insert.transactionally)
+  }
+
   def insertMessage(threadId: Long, message: Message): Future[ThreadMessage] = {
     db.run(insertMessage += ThreadMessage(0, threadId, message.role.toString, message.content, None, Instant.now))
   }
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package smile.serve.chat
+
+import smile.llm.{Message, Role}
+import smile.llm.llama.Tokenizer
+
+/** The tokenized context of a conversation thread.
+  *
+  * @param messages the tokens of past messages in chronological order.
+  * @param size the total number of tokens.
+  */
+final case class ThreadContext(messages: Vector[Array[Int]], size: Int) {
+  /** Returns the context with more messages. */
+  def ++(tokens: Seq[Array[Int]]): ThreadContext = {
+    ThreadContext(messages ++ tokens, size + tokens.map(_.length).sum)
+  }
+}
+
+/** The size-bounded LRU cache of the tokenized context of active threads.
+  * It is accessed only by the generator actor so that it is not thread-safe.
+  *
+  * @param tokenizer the tokenizer.
+  * @param capacity the maximum total number of cached tokens.
+  *
+  * @author Karl Li
+  */
+class ContextCache(tokenizer: Tokenizer, capacity: Long) {
+  private val cache = new java.util.LinkedHashMap[Long, ThreadContext](16, 0.75f, true)
+  private val bos = tokenizer.encode("", true, false)
+  private val header = tokenizer.encodeHeader(new Message(Role.assistant, ""))
+  private var size = 0L
+
+  /** Returns the number of cached tokens. */
+  def tokens: Long = size
+
+  /** Returns the context of a thread if cached. */
+  def get(threadId: Long): Option[ThreadContext] = Option(cache.get(threadId))
+
+  /** Caches the context of a thread and evicts the least recently used threads. */
+  def put(threadId: Long, context: ThreadContext): Unit = {
+    val old = cache.put(threadId, context)
+    if (old != null) size -= old.size
+    size += context.size
+
+    val it = cache.entrySet.iterator
+    while (size > capacity && it.hasNext) {
+      val entry = it.next()
+      size -= entry.getValue.size
+      it.remove()
+    }
+  }
+
+  /** Removes the context of a thread. */
+  def remove(threadId: Long): Unit = {
+    val old = cache.remove(threadId)
+    if (old != null) size -= old.size
+  }
+
+  /** Tokenizes messages. */
+  def encode(messages: Seq[Message]): Seq[Array[Int]] = {
+    messages.map(tokenizer.encodeMessage)
+  }
+
+  /** Returns the prompt of a context, which drops the oldest messages
+    * if the prompt is longer than the given length. The messages of
+    * the current turn are always kept.
+    *
+    * @param context the past messages.
+    * @param turn the messages of current turn.
+    * @param maxLen the maximum length of prompt.
+    * @return the prompt tokens.
+    */
+  def prompt(context: ThreadContext, turn: Seq[Array[Int]], maxLen: Int): Array[Int] = {
+    var history = context.messages
+    var length = bos.length + context.size + turn.map(_.length).sum + header.length
+    while (length > maxLen && history.nonEmpty) {
+      length -= history.head.length
+      history = history.tail
+    }
+
+    val prompt = Array.newBuilder[Int]
+    prompt.sizeHint(length)
+    prompt ++= bos
+    history.foreach(prompt ++= _)
+    turn.foreach(prompt ++= _)
+    prompt ++= header
+    prompt.result()
+  }
+}
@@ -17,17 +17,23 @@
 package smile.serve.chat
 
 import java.util.concurrent.SubmissionPublisher
-import scala.concurrent.Await
-import scala.concurrent.duration._
+import scala.collection.mutable
+import scala.concurrent.Future
 import scala.util.{Failure, Success}
 import akka.actor.typed.{ActorRef, Behavior}
 import akka.actor.typed.scaladsl.Behaviors
 import akka.pattern.StatusReply
+import spray.json.JsObject
+import smile.deep.tensor.Device
 import smile.llm.{Message, Role}
 import smile.llm.llama._
 import smile.serve.ServeConfig
 
-/** GenAI actor.
+/** GenAI actor. The tokenized context of active threads is cached in
+  * memory so that a multi-turn conversation tokenizes only the messages
+  * of new turn, and the model reuses the KV cache of the common prefix
+  * with the previous generation. The database is accessed asynchronously
+  * and the actor never blocks on it.
   *
   * @author Karl Li
   */
@@ -36,72 +42,137 @@ object Generator {
   sealed trait Command
   final case class Chat(request: CompletionRequest, replyTo: ActorRef[StatusReply[CompletionResponse]]) extends Command
   final case class ChatStream(request: CompletionRequest, publisher: SubmissionPublisher[String]) extends Command
+  /** The past messages of a thread are loaded from the database. */
+  private final case class Resume(threadId: Long, history: Seq[Message], request: CompletionRequest, reply: Reply) extends Command
+  /** The database access failed. The thread id is 0 for a new thread. */
+  private final case class Fail(threadId: Long, ex: Throwable, reply: Reply) extends Command
+
+  /** The destination of completion. */
+  private sealed trait Reply {
+    /** The optional flow publisher of streaming. */
+    def publisher: SubmissionPublisher[String] = null
+    def success(response: CompletionResponse): Unit
+    def failure(ex: Throwable): Unit
+  }
+
+  private final case class ActorReply(replyTo: ActorRef[StatusReply[CompletionResponse]]) extends Reply {
+    override def success(response: CompletionResponse): Unit = replyTo ! StatusReply.Success(response)
+    override def failure(ex: Throwable): Unit = replyTo ! StatusReply.Error(ex)
+  }
+
+  private final case class StreamReply(override val publisher: SubmissionPublisher[String]) extends Reply {
+    override def success(response: CompletionResponse): Unit = publisher.close()
+    override def failure(ex: Throwable): Unit = publisher.close()
+  }
+
+  /** The maximum number of past messages to load for an uncached thread. */
+  private val maxHistory = 100
 
   def apply(config: ServeConfig, dao: ChatDB): Behavior[Command] = {
+    val device = if (config.device < 0) Device.CPU() else Device.CUDA(config.device.toByte)
     val model = Llama.build(config.model, config.tokenizer,
-      config.maxBatchSize, config.maxSeqLen, config.device)
+      config.maxBatchSize, config.maxSeqLen, device)
+    if (config.draft.nonEmpty) {
+      val draft = Llama.build(config.draft, config.tokenizer, 1, config.maxSeqLen, device)
+      model.setDraftModel(draft, config.speculation)
+    }
 
     Behaviors.setup { context =>
       implicit val ec = context.executionContext
       val log = context.log
+      // context.log cannot be used in future callbacks.
+      val logger = context.system.log
+      val cache = new ContextCache(model.tokenizer(), config.contextCacheSize)
+      // The writes are chained so that the messages are saved in order,
+      // and the history of a thread is loaded after its pending writes.
+      var writes: Future[Any] = Future.unit
+      // The requests of uncached threads queued behind the loading
+      // of history, so that they see the context updated by the
+      // previous turn rather than the stale history.
+      val pending = mutable.HashMap[Long, mutable.ArrayBuffer[(CompletionRequest, Reply)]]()
 
-      Behaviors.receiveMessage {
-        case Chat(request, replyTo) =>
-          try {
-            if (request.model != model.family()) {
-              throw new IllegalArgumentException(s"Unsupported model: ${request.model}")
-            }
+      def chat(request: CompletionRequest, reply: Reply): Unit = {
+        if (request.model != model.family()) {
+          throw new IllegalArgumentException(s"Unsupported model: ${request.model}")
+        }
 
-            val result = dao.insertMessages(request)
-            Await.ready(result, 10.seconds).onComplete {
-              case Success((threadId, context)) =>
-                val messages = context.reverse.map(msg => new Message(Role.valueOf(msg.role), msg.content)) ++ request.messages
-                val seed: java.lang.Long = if (request.seed.isDefined) request.seed.get else null
-                val completions = model.chat(Array(messages.toArray),
-                  request.max_tokens.getOrElse(config.maxSeqLen / 4), request.temperature.getOrElse(0.6),
-                  request.top_p.getOrElse(0.9), request.logprobs.getOrElse(false), seed, null)
-                val response = CompletionResponse(threadId, completions(0))
-                log.info("Reply {}", response)
-                dao.insertMessages(threadId, response)
-                replyTo ! StatusReply.Success(response)
-              case Failure(ex) =>
-                replyTo ! StatusReply.Error(ex)
+        request.threadId match {
+          case Some(threadId) if threadId > 0 =>
+            cache.get(threadId) match {
+              case Some(history) => generate(threadId, history, request, reply)
+              case None =>
+                pending.get(threadId) match {
+                  case Some(queue) => queue += ((request, reply))
+                  case None =>
+                    pending(threadId) = mutable.ArrayBuffer.empty
+                    val history = writes.transformWith(_ => dao.getContext(threadId, maxHistory))
+                    context.pipeToSelf(history) {
+                      case Success(messages) =>
+                        Resume(threadId, messages.map(msg => new Message(Role.valueOf(msg.role), msg.content)), request, reply)
+                      case Failure(ex) => Fail(threadId, ex, reply)
+                    }
+                }
             }
-          } catch {
-            case e: Throwable => replyTo ! StatusReply.Error(e)
-          }
-          Behaviors.same
+          case _ =>
+            context.pipeToSelf(dao.insertThread(JsObject.empty)) {
+              case Success(thread) => Resume(thread.id, Seq.empty, request, reply)
+              case Failure(ex) => Fail(0, ex, reply)
+            }
+        }
+      }
+
+      def generate(threadId: Long, history: ThreadContext, request: CompletionRequest, reply: Reply): Unit = {
+        val turn = cache.encode(request.messages)
+        val maxGenLen = request.max_tokens.getOrElse(config.maxSeqLen / 4)
+        val prompt = cache.prompt(history, turn, config.maxSeqLen - maxGenLen)
+        val seed: java.lang.Long = if (request.seed.isDefined) request.seed.get else null
+        val completions = model.generate(Array(prompt), maxGenLen, request.temperature.getOrElse(0.6),
+          request.top_p.getOrElse(0.9), request.logprobs.getOrElse(false), seed, reply.publisher)
+        val response = CompletionResponse(threadId, completions(0))
+        log.info("Reply {}", response)
+
+        cache.put(threadId, history ++ turn ++ cache.encode(response.choices.map(_.message)))
+        writes = writes.transformWith(_ => dao.insertMessages(threadId, request, response))
+        writes.failed.foreach(ex => logger.error(s"Failed to save the messages of thread $threadId", ex))
+        reply.success(response)
+      }
+
+      def handle(reply: Reply)(f: => Unit): Behavior[Command] = {
+        try {
+          f
+        } catch {
+          case e: Throwable =>
+            log.error("Chat: ", e)
+            reply.failure(e)
+        }
+        Behaviors.same
+      }
+
+      Behaviors.receiveMessage {
+        case Chat(request, replyTo) =>
+          val reply = ActorReply(replyTo)
+          handle(reply)(chat(request, reply))
 
         case ChatStream(request, publisher) =>
-          if (request.model != model.family()) {
-            publisher.close()
-            throw new IllegalArgumentException(s"Unsupported model: ${request.model}")
-          }
+          val reply = StreamReply(publisher)
+          handle(reply)(chat(request, reply))
 
-          val result = dao.insertMessages(request)
-          Await.ready(result, 10.seconds).onComplete {
-            case Success((threadId, context)) =>
-              try {
-                val messages = context.reverse.map(msg => new Message(Role.valueOf(msg.role), msg.content)) ++ request.messages
-                val seed: java.lang.Long = if (request.seed.isDefined) request.seed.get else null
-                val completions = model.chat(Array(messages.toArray),
-                  request.max_tokens.getOrElse(config.maxSeqLen / 4), request.temperature.getOrElse(0.6),
-                  request.top_p.getOrElse(0.9), request.logprobs.getOrElse(false), seed, publisher)
-                val response = CompletionResponse(threadId, completions(0))
-                log.info("Reply {}", response)
-                dao.insertMessages(threadId, response)
-              } catch {
-                case e: Throwable => log.error("ChatStream: ", e)
-              } finally {
-                publisher.close()
-              }
-            case Failure(ex) =>
-              publisher.close()
-              log.error("ChatStream: ", ex)
+        case Resume(threadId, messages, request, reply) =>
+          val queue = pending.remove(threadId)
+          handle(reply) {
+            val history = ThreadContext(Vector.empty, 0) ++ cache.encode(messages)
+            generate(threadId, history, request, reply)
           }
+          // The queued requests continue from the cached context.
+          queue.foreach(_.foreach { case (request, reply) => handle(reply)(chat(request, reply)) })
+          Behaviors.same
 
+        case Fail(threadId, ex, reply) =>
+          val queue = pending.remove(threadId)
+          handle(reply)(throw ex)
+          queue.foreach(_.foreach { case (_, reply) => handle(reply)(throw ex) })
           Behaviors.same
       }
     }
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile Shell is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile Shell is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.shell
+
+import java.util.concurrent.{Executors, ScheduledFuture, TimeUnit}
+import scala.collection.mutable.ArrayBuffer
+import scala.concurrent.{ExecutionContext, Future, Promise}
+import scala.concurrent.duration._
+import scala.util.control.NonFatal
+import akka.stream.scaladsl.Source
+import smile.data.Tuple
+
+/**
+  * The micro-batching prediction stage. The rows of all requests to a model
+  * are pooled and grouped into batches bounded by both size and time window.
+  * A batch is predicted as a data frame on the worker pool so that the
+  * vectorized model paths are used, and the prediction of each row is
+  * delivered to its own request. The responses of a request are emitted
+  * in the order of its rows.
+  *
+  * @param predict the batch prediction function.
+  * @param invalid the response of invalid rows.
+  * @param batchSize the maximum number of rows in a batch.
+  * @param batchWindow the maximum time to wait for a batch to fill.
+  * @param parallelism the number of worker threads, which also bounds
+  *                    the rows in flight per request to
+  *                    {@code batchSize * parallelism}.
+  * @param metrics the throughput and latency metrics.
+  * @param executor the worker pool.
+  */
+class MicroBatch[T](predict: Array[Tuple] => Array[T],
+                    invalid: T,
+                    batchSize: Int,
+                    batchWindow: FiniteDuration,
+                    parallelism: Int,
+                    val metrics: ServeMetrics,
+                    executor: ExecutionContext) extends (Source[Option[Tuple], Any] => Source[T, Any]) {
+  if (batchSize <= 0) {
+    throw new IllegalArgumentException(s"Invalid batch size: $batchSize")
+  }
+
+  if (parallelism <= 0) {
+    throw new IllegalArgumentException(s"Invalid parallelism: $parallelism")
+  }
+
+  /**
+    * A row waiting for prediction.
+    * @param row the row, of which None denotes an invalid instance.
+    * @param promise the promise of prediction.
+    * @param arrival the arrival time in nanoseconds.
+    */
+  private case class Request(row: Option[Tuple], promise: Promise[T], arrival: Long)
+
+  /** The rows waiting for the current batch to fill. */
+  private var pending = new ArrayBuffer[Request](batchSize)
+  /** The timer to flush the current batch at the end of time window. */
+  private var timer: ScheduledFuture[_] = _
+
+  override def apply(rows: Source[Option[Tuple], Any]): Source[T, Any] = {
+    // mapAsync preserves the order of rows while the rows
+    // of concurrent requests are batched together.
+    rows.mapAsync(batchSize * parallelism)(submit)
+  }
+
+  /**
+    * Submits a row for prediction.
+    * @param row the row, of which None denotes an invalid instance.
+    * @return the future of prediction.
+    */
+  def submit(row: Option[Tuple]): Future[T] = {
+    val request = Request(row, Promise[T](), System.nanoTime())
+    val full = synchronized {
+      pending += request
+      if (pending.size >= batchSize) {
+        if (timer != null) timer.cancel(false)
+        take()
+      } else {
+        if (pending.size == 1) {
+          val batch = pending
+          timer = MicroBatch.timer.schedule((() => flush(batch)): Runnable, batchWindow.toNanos, TimeUnit.NANOSECONDS)
+        }
+        null
+      }
+    }
+
+    if (full != null) dispatch(full)
+    request.promise.future
+  }
+
+  /**
+    * Flushes a batch at the end of its time window if it is still pending.
+    * @param batch the batch when the timer was scheduled.
+    */
+  private def flush(batch: ArrayBuffer[Request]): Unit = {
+    val requests = synchronized {
+      if (pending eq batch) take() else null
+    }
+
+    if (requests != null) dispatch(requests)
+  }
+
+  /** Takes the pending rows. Must be called in the lock. */
+  private def take(): ArrayBuffer[Request] = {
+    val requests = pending
+    pending = new ArrayBuffer[Request](batchSize)
+    timer = null
+    requests
+  }
+
+  /** Predicts a batch on the worker pool and completes the requests. */
+  private def dispatch(requests: ArrayBuffer[Request]): Unit = {
+    executor.execute(() => {
+      try {
+        val y = batch(requests.map(_.row).toSeq, requests.head.arrival)
+        requests.iterator.zip(y.iterator).foreach { case (request, yi) =>
+          request.promise.success(yi)
+        }
+      } catch {
+        case NonFatal(ex) => requests.foreach(_.promise.tryFailure(ex))
+      }
+    })
+  }
+
+  /**
+    * Predicts a batch of rows.
+    * @param rows the rows, of which None denotes an invalid instance.
+    * @param arrival the arrival time of the first row in nanoseconds,
+    *                so that the latency includes the queueing time.
+    * @return the predictions in the order of rows.
+    */
+  def batch(rows: Seq[Option[Tuple]], arrival: Long = System.nanoTime()): Seq[T] = {
+    val valid = rows.flatten.toArray
+    val y = if (valid.isEmpty) Seq.empty[T] else predict(valid).toSeq
+
+    var i = 0
+    val responses = rows.map {
+      case Some(_) =>
+        val yi = y(i)
+        i += 1
+        yi
+      case None => invalid
+    }
+
+    metrics.record(rows.size, rows.size - valid.length, System.nanoTime() - arrival)
+    responses
+  }
+}
+
+object MicroBatch {
+  /** The timer of batch windows shared by all models. */
+  private val timer = Executors.newSingleThreadScheduledExecutor { (task: Runnable) =>
+    val thread = new Thread(task, "smile-micro-batch")
+    thread.setDaemon(true)
+    thread
+  }
+}
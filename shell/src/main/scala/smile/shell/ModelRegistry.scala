@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile Shell is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile Shell is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.shell
+
+import java.io.File
+import java.util.concurrent.{ConcurrentHashMap, Executors, TimeUnit}
+import java.util.concurrent.atomic.{AtomicLong, AtomicReference}
+import scala.concurrent.{ExecutionContext, Future, Promise}
+import scala.concurrent.duration._
+import scala.jdk.CollectionConverters._
+import scala.util.{Failure, Success, Try}
+import com.typesafe.scalalogging.LazyLogging
+import spray.json._
+import spray.json.DefaultJsonProtocol._
+import smile.data.{DataFrame, Tuple}
+import smile.data.`type`.StructType
+import smile.data.measure.CategoricalMeasure
+import smile.model.{ClassificationModel, DataFrameModel, RegressionModel}
+
+/**
+  * A loaded version of model.
+  * @param name the model name.
+  * @param version the model version.
+  * @param model the model.
+  * @param predictor the micro-batching prediction stage.
+  * @param size the estimated heap footprint in bytes.
+  */
+case class ServedModel(name: String,
+                       version: String,
+                       model: DataFrameModel,
+                       predictor: MicroBatch[JsValue],
+                       size: Long) {
+  /** The schema of input data. */
+  def schema: StructType = model.schema
+}
+
+/**
+  * The registry entry of a named model. The entry outlives the loaded
+  * versions so that the metrics are accumulated across reloads.
+  * @param name the model name.
+  */
+class ModelSlot(val name: String) {
+  /** The throughput and latency metrics. */
+  val metrics = new ServeMetrics(name)
+  /** The loaded version, or null if not resident. */
+  val current = new AtomicReference[ServedModel]()
+  /** The in-flight loading, or null if none. */
+  val loading = new AtomicReference[Future[ServedModel]]()
+  /** The file of latest version. */
+  @volatile var file: File = _
+  /** The last access time in nanoseconds. */
+  @volatile var lastAccess: Long = System.nanoTime()
+}
+
+/**
+  * The registry of named and versioned models. The models are organized
+  * in the directory as {@code <root>/<name>/<version>}, where the version
+  * is the file name without extension and the latest version is the largest
+  * one in natural order, e.g. {@code 1.10} is after {@code 1.9}.
+  *
+  * The models are loaded lazily on the first request and the new versions
+  * of resident models are loaded in the background when the directory is
+  * rescanned. A new version serves synthetic warmup requests before it is
+  * atomically swapped in, while the old version keeps serving until then.
+  * If the total estimated footprint exceeds the memory budget, the least
+  * recently used models are evicted, which will be reloaded on demand.
+  *
+  * The heap footprint of a model is estimated by its serialized size.
+  *
+  * @param config the serve configuration.
+  */
+class ModelRegistry(config: ServeConfig) extends LazyLogging {
+  /** The worker pool of batch prediction shared by all models. */
+  private val executor = ExecutionContext.fromExecutorService(Executors.newFixedThreadPool(config.parallelism))
+  /** The background model loaders. */
+  private val loader = ExecutionContext.fromExecutorService(Executors.newFixedThreadPool(2))
+  /** The directory scanner. */
+  private val scheduler = Executors.newSingleThreadScheduledExecutor()
+  /** The registered models. */
+  private val slots = new ConcurrentHashMap[String, ModelSlot]()
+  /** The total estimated footprint of resident models. */
+  private val memory = new AtomicLong()
+  /** The memory budget in bytes. Non-positive means unlimited. */
+  private val budget = config.memoryBudget * 1024L * 1024L
+
+  /**
+    * Registers a model file.
+    * @param name the model name.
+    * @param file the model file.
+    */
+  def register(name: String, file: File): Unit = {
+    val slot = slots.computeIfAbsent(name, new ModelSlot(_))
+    if (slot.file != file) {
+      slot.file = file
+      // Reload in the background if the model is resident.
+      if (slot.current.get != null) load(slot)
+    }
+  }
+
+  /** Scans the model directory for new models and versions. */
+  def scan(): Unit = {
+    if (config.models.nonEmpty) {
+      val dirs = Option(new File(config.models).listFiles()).getOrElse(Array.empty[File])
+      for (dir <- dirs if dir.isDirectory && !dir.isHidden) {
+        ModelRegistry.latest(dir).foreach(register(dir.getName, _))
+      }
+    }
+  }
+
+  /** Scans the model directory periodically. */
+  def start(): Unit = {
+    scan()
+    if (config.models.nonEmpty && config.reload > 0) {
+      scheduler.scheduleWithFixedDelay(() => Try(scan()).failed.foreach { ex =>
+        logger.error(s"Failed to scan ${config.models}", ex)
+      }, config.reload, config.reload, TimeUnit.SECONDS)
+    }
+  }
+
+  /** Shuts down the worker pools. */
+  def shutdown(): Unit = {
+    scheduler.shutdown()
+    loader.shutdown()
+    executor.shutdown()
+  }
+
+  /**
+    * Returns the metrics of a model.
+    * @param name the model name.
+    * @return the metrics, or None if the model is unknown.
+    */
+  def metrics(name: String): Option[ServeMetrics] = {
+    Option(slots.get(name)).map(_.metrics)
+  }
+
+  /**
+    * Returns the model of given name, which is loaded if not resident.
+    * @param name the model name.
+    * @return the model, or None if the model is unknown.
+    */
+  def apply(name: String): Option[Future[ServedModel]] = {
+    Option(slots.get(name)).map { slot =>
+      slot.lastAccess = System.nanoTime()
+      val model = slot.current.get
+      if (model != null) Future.successful(model) else load(slot)
+    }
+  }
+
+  /** Loads the latest version of a model in the background. */
+  private def load(slot: ModelSlot): Future[ServedModel] = {
+    val promise = Promise[ServedModel]()
+    val inflight = slot.loading.compareAndExchange(null, promise.future)
+    if (inflight != null) return inflight
+
+    promise.completeWith(Future(swap(slot, read(slot)))(loader))
+    promise.future.onComplete { result =>
+      slot.loading.set(null)
+      result match {
+        // A newer version registered during the loading was not picked
+        // up by the in-flight loading. Loads it if the model is resident.
+        case Success(model) =>
+          if ((slot.current.get eq model) && model.version != ModelRegistry.version(slot.file)) load(slot)
+        case Failure(ex) =>
+          logger.error(s"Failed to load ${slot.file}", ex)
+      }
+    }(ExecutionContext.parasitic)
+    promise.future
+  }
+
+  /** Reads and warms up the latest version of a model. */
+  private def read(slot: ModelSlot): ServedModel = {
+    val file = slot.file
+    val version = ModelRegistry.version(file)
+    val current = slot.current.get
+    if (current != null && current.version == version) return current
+
+    val start = System.nanoTime()
+    val model = smile.read(file.toPath) match {
+      case model: DataFrameModel => model
+      case _ => throw new IllegalArgumentException(s"$file doesn't contain a valid model.")
+    }
+
+    val predict = ModelRegistry.predict(model, config.probability)
+    warmup(slot.name, model.schema, predict)
+    val predictor = new MicroBatch[JsValue](predict, JsString("Invalid instance"),
+      config.batchSize, config.batchWindow.millis, config.parallelism, slot.metrics, executor)
+
+    logger.info(f"Loaded ${slot.name} version $version in ${(System.nanoTime() - start) / 1E6}%.1f ms")
+    ServedModel(slot.name, version, model, predictor, file.length())
+  }
+
+  /** Runs synthetic requests so that the JIT compiles the prediction paths. */
+  private def warmup(name: String, schema: StructType, predict: Array[Tuple] => Array[JsValue]): Unit = {
+    ModelRegistry.warmup(schema, predict, config.batchSize, config.warmup).failed.foreach { ex =>
+      logger.warn(s"Failed to warm up $name: ${ex.getMessage}")
+    }
+  }
+
+  /** Atomically swaps in a model version and evicts idle models. */
+  private def swap(slot: ModelSlot, model: ServedModel): ServedModel = {
+    val old = slot.current.getAndSet(model)
+    if (old ne model) {
+      memory.addAndGet(model.size - (if (old == null) 0 else old.size))
+      evict(slot)
+    }
+    model
+  }
+
+  /** Evicts the least recently used models until within the memory budget. */
+  private def evict(keep: ModelSlot): Unit = synchronized {
+    while (budget > 0 && memory.get > budget) {
+      val victim = slots.values.asScala
+        .filter(slot => slot != keep && slot.current.get != null)
+        .minByOption(_.lastAccess)
+
+      victim match {
+        case Some(slot) =>
+          val model = slot.current.getAndSet(null)
+          if (model != null) {
+            memory.addAndGet(-model.size)
+            logger.info(s"Evicted ${model.name} version ${model.version}")
+          }
+        case None => return
+      }
+    }
+  }
+
+  /** Returns the JSON representation of registered models. */
+  def toJson: JsValue = {
+    val models = slots.values.asScala.toSeq.sortBy(_.name).map { slot =>
+      val model = slot.current.get
+      JsObject(
+        "name" -> JsString(slot.name),
+        "latest" -> JsString(ModelRegistry.version(slot.file)),
+        "version" -> (if (model == null) JsNull else JsString(model.version)),
+        "resident" -> JsBoolean(model != null),
+        "size" -> (if (model == null) 0L else model.size).toJson,
+        "idle" -> ((System.nanoTime() - slot.lastAccess) / 1E9).toJson
+      )
+    }
+
+    JsObject(
+      "memory" -> memory.get.toJson,
+      "budget" -> budget.toJson,
+      "models" -> JsArray(models.toVector)
+    )
+  }
+}
+
+object ModelRegistry {
+  /**
+    * Returns the batch prediction function of a model.
+    * @param model the model.
+    * @param probability the flag if output posteriori probabilities for soft classifiers.
+    * @return the batch prediction function.
+    */
+  def predict(model: DataFrameModel, probability: Boolean): Array[Tuple] => Array[JsValue] = {
+    model match {
+      case model: ClassificationModel => x => {
+        val data = DataFrame.of(java.util.Arrays.asList(x: _*), model.schema)
+        if (probability && model.classifier.soft()) {
+          val posteriori = new java.util.ArrayList[Array[Double]]()
+          val y = model.classifier.predict(data, posteriori)
+          Array.tabulate[JsValue](y.length) { i =>
+            JsObject(
+              "class" -> y(i).toJson,
+              "probability" -> posteriori.get(i).toJson
+            )
+          }
+        } else {
+          model.classifier.predict(data).map[JsValue](JsNumber(_))
+        }
+      }
+
+      case model: RegressionModel => x => {
+        val data = DataFrame.of(java.util.Arrays.asList(x: _*), model.schema)
+        model.regression.predict(data).map[JsValue](JsNumber(_))
+      }
+
+      case _ =>
+        throw new IllegalArgumentException(s"Unsupported model: ${model.algorithm}")
+    }
+  }
+
+  /**
+    * Runs synthetic requests on the batch prediction function. The synthetic
+    * row takes the first level of categorical fields and zero otherwise.
+    * @param schema the schema of input data.
+    * @param predict the batch prediction function.
+    * @param batchSize the number of rows per request.
+    * @param rounds the number of requests.
+    * @return the failure of warmup if any.
+    */
+  def warmup(schema: StructType, predict: Array[Tuple] => Array[JsValue], batchSize: Int, rounds: Int): Try[Unit] = {
+    if (rounds <= 0) return Success(())
+
+    val row = schema.fields().map[AnyRef] { field =>
+      Try {
+        val value = field.measure match {
+          case measure: CategoricalMeasure => measure.levels()(0)
+          case _ => "0"
+        }
+        field.valueOf(value)
+      }.getOrElse(null)
+    }
+
+    val batch = Array.fill(batchSize)(Tuple.of(row, schema))
+    Try((0 until rounds).foreach(_ => predict(batch)))
+  }
+
+  /**
+    * Returns the version of a model file, i.e. the file name without extension.
+    * @param file the model file.
+    * @return the version.
+    */
+  def version(file: File): String = {
+    val name = file.getName
+    val dot = name.lastIndexOf('.')
+    // A version like 1.2 has no extension.
+    if (dot > 0 && !name.substring(dot + 1).forall(_.isDigit)) name.substring(0, dot) else name
+  }
+
+  /**
+    * Returns the file of the latest version in a model directory.
+    * @param dir the model directory.
+    * @return the file of the latest version.
+    */
+  def latest(dir: File): Option[File] = {
+    val files = Option(dir.listFiles()).getOrElse(Array.empty[File])
+    files.filter(file => file.isFile && !file.isHidden)
+      .maxByOption(file => version(file))(versionOrdering)
+  }
+
+  /** The natural order of versions, which compares numbers numerically. */
+  val versionOrdering: Ordering[String] = new Ordering[String] {
+    override def compare(a: String, b: String): Int = {
+      val x = a.split("(?<=\\D)(?=\\d)|(?<=\\d)(?=\\D)")
+      val y = b.split("(?<=\\D)(?=\\d)|(?<=\\d)(?=\\D)")
+      val n = Math.min(x.length, y.length)
+      var i = 0
+      var c = 0
+      while (c == 0 && i < n) {
+        c = if (x(i).nonEmpty && y(i).nonEmpty && x(i).forall(_.isDigit) && y(i).forall(_.isDigit)) {
+          BigInt(x(i)).compare(BigInt(y(i)))
+        } else {
+          x(i).compareTo(y(i))
+        }
+        i += 1
+      }
+      if (c != 0) c else Integer.compare(x.length, y.length)
+    }
+  }
+}
@@ -17,6 +17,8 @@
 
 package smile.shell
 
+import java.io.File
+import scala.concurrent.Await
 import scala.concurrent.duration._
 import scala.util.{Failure, Success}
 import scopt.OParser
@@ -27,6 +29,7 @@ import akka.http.scaladsl.common._
 import akka.http.scaladsl.marshallers.sprayjson.SprayJsonSupport._
 import akka.http.scaladsl.model._
 import akka.http.scaladsl.server.Directives._
+import akka.http.scaladsl.server.Route
 import akka.stream.scaladsl.Source
 import akka.stream.alpakka.csv.scaladsl.{CsvParsing, CsvToMap}
 import akka.util.ByteString
@@ -36,15 +39,28 @@ import spray.json._
 import spray.json.DefaultJsonProtocol._
 import smile.data._
 import smile.data.`type`.StructType
-import smile.model.{ClassificationModel, RegressionModel}
 
 /**
   * Serve command options.
   * @param model the model file path.
+  * @param models the model registry directory.
   * @param probability the flag if output posteriori probabilities for soft classifiers.
+  * @param batchSize the maximum number of rows in a prediction batch.
+  * @param batchWindow the maximum time in milliseconds to wait for a batch to fill.
+  * @param parallelism the number of worker threads for batch prediction.
+  * @param reload the interval in seconds to rescan the model registry directory.
+  * @param memoryBudget the memory budget of resident models in MB. Non-positive means unlimited.
+  * @param warmup the number of synthetic batches to warm up a model before serving.
   */
-case class ServeConfig(model: String,
-                       probability: Boolean = false)
+case class ServeConfig(model: String = "",
+                       models: String = "",
+                       probability: Boolean = false,
+                       batchSize: Int = 64,
+                       batchWindow: Int = 5,
+                       parallelism: Int = Runtime.getRuntime.availableProcessors(),
+                       reload: Int = 60,
+                       memoryBudget: Long = 0,
+                       warmup: Int = 10)
 
 /**
   * Online prediction.
@@ -73,17 +89,53 @@ object Serve extends LazyLogging {
         programName("smile serve"),
         head("Smile", BuildInfo.version),
         opt[String]("model")
-          .required()
+          .optional()
           .action((x, c) => c.copy(model = x))
           .text("The model file"),
+        opt[String]("models")
+          .optional()
+          .action((x, c) => c.copy(models = x))
+          .text("The model registry directory of <name>/<version> files"),
         opt[Unit]("probability")
           .optional()
           .action((_, c) => c.copy(probability = true))
           .text("Output the posteriori probabilities for soft classifier"),
+        opt[Int]("batch-size")
+          .optional()
+          .validate(x => if (x > 0) success else failure("batch-size must be positive"))
+          .action((x, c) => c.copy(batchSize = x))
+          .text("The maximum number of rows in a prediction batch"),
+        opt[Int]("batch-window")
+          .optional()
+          .validate(x => if (x > 0) success else failure("batch-window must be positive"))
+          .action((x, c) => c.copy(batchWindow = x))
+          .text("The maximum time in milliseconds to wait for a batch to fill"),
+        opt[Int]("parallelism")
+          .optional()
+          .validate(x => if (x > 0) success else failure("parallelism must be positive"))
+          .action((x, c) => c.copy(parallelism = x))
+          .text("The number of worker threads for batch prediction"),
+        opt[Int]("reload")
+          .optional()
+          .action((x, c) => c.copy(reload = x))
+          .text("The interval in seconds to rescan the model registry, 0 to disable"),
+        opt[Long]("memory-budget")
+          .optional()
+          .action((x, c) => c.copy(memoryBudget = x))
+          .text("The memory budget of resident models in MB, 0 for unlimited"),
+        opt[Int]("warmup")
+          .optional()
+          .validate(x => if (x >= 0) success else failure("warmup must be non-negative"))
+          .action((x, c) => c.copy(warmup = x))
+          .text("The number of synthetic batches to warm up a model"),
+        checkConfig(c =>
+          if (c.model.isEmpty && c.models.isEmpty) failure("Either --model or --models is required")
+          else success
+        )
       )
     }
 
-    OParser.parse(parser, args, ServeConfig(""))
+    OParser.parse(parser, args, ServeConfig())
     // If arguments be bad, the error message would have been displayed.
   }
 
@@ -92,37 +144,23 @@ object Serve extends LazyLogging {
     * @param config the serve configuration.
     */
   def serve(config: ServeConfig): Unit = {
-    val model = smile.read(config.model)
-    val (schema, predictor) = model match {
-      case model: ClassificationModel =>
-        val schema = model.schema
-        val predict: Option[Tuple] => JsValue =
-          tuple => tuple.map { x =>
-            if (config.probability && model.classifier.soft()) {
-              val prob = Array.ofDim[Double](model.classifier.numClasses())
-              val y = model.classifier.predict(x, prob)
-              JsObject(
-                "class" -> y.toJson,
-                "probability" -> prob.toJson
-              )
-            } else {
-              JsNumber.apply(model.classifier.predict(x))
-            }
-          }.getOrElse(JsString("Invalid instance"))
-        (schema, predict)
-
-      case model: RegressionModel =>
-        val schema = model.schema
-        val predict: Option[Tuple] => JsValue =
-          tuple => tuple.map { x =>
-            JsNumber.apply(model.regression.predict(x))
-          }.getOrElse(JsString("Invalid instance"))
-        (schema, predict)
-
-      case _ =>
-        Console.err.println(s"{config.model} doesn't contain a valid model.")
-        return
+    val registry = new ModelRegistry(config)
+    // The model of --model is served at /v1/infer.
+    val default = if (config.model.isEmpty) None else {
+      val file = new File(config.model)
+      val name = ModelRegistry.version(file)
+      registry.register(name, file)
+      try {
+        Await.result(registry(name).get, Duration.Inf)
+      } catch {
+        case ex: Exception =>
+          Console.err.println(s"${config.model} doesn't contain a valid model: ${ex.getMessage}")
+          registry.shutdown()
+          return
+      }
+      Some(name)
     }
+    registry.start()
 
     implicit val system = ActorSystem(Behaviors.empty, "smile")
     // needed for the future flatMap/onComplete in the end
@@ -130,22 +168,60 @@ object Serve extends LazyLogging {
     // Source rendering support trait
     implicit val jsonStreamingSupport = EntityStreamingSupport.json()
 
-    val route = path("v1" / "infer") {
-      post {
-        parameters("format".?) { case format =>
-          format.getOrElse("json") match {
-            case "json" =>
-              entity(asSourceOf[JsValue]) { json =>
-                complete(processJSON(schema, json)(predictor))
-              }
-            case csvFormat if csvFormat.startsWith("csv") =>
-              extractDataBytes { bytes =>
-                complete(processCSV(schema, bytes, csvFormat)(predictor))
+    def infer(name: String): Route = {
+      registry(name) match {
+        case None => complete(StatusCodes.NotFound, s"Unknown model: $name")
+        case Some(future) =>
+          onComplete(future) {
+            case Success(model) =>
+              parameters("format".?) { case format =>
+                format.getOrElse("json") match {
+                  case "json" =>
+                    entity(asSourceOf[JsValue]) { json =>
+                      complete(processJSON(model.schema, json)(model.predictor))
+                    }
+                  case csvFormat if csvFormat.startsWith("csv") =>
+                    extractDataBytes { bytes =>
+                      complete(processCSV(model.schema, bytes, csvFormat)(model.predictor))
+                    }
+                  case _ =>
+                    complete(StatusCodes.UnsupportedMediaType)
+                }
               }
-            case _ =>
-              complete(StatusCodes.UnsupportedMediaType)
+            case Failure(ex) =>
+              complete(StatusCodes.ServiceUnavailable, s"Failed to load model $name: ${ex.getMessage}")
           }
+      }
+    }
+
+    def metrics(name: String): Route = {
+      registry.metrics(name) match {
+        case Some(metrics) => complete(metrics.toJson)
+        case None => complete(StatusCodes.NotFound, s"Unknown model: $name")
+      }
+    }
+
+    val route = pathPrefix("v1" / "models") {
+      pathEndOrSingleSlash {
+        get {
+          complete(registry.toJson)
         }
+      } ~ path(Segment / "infer") { name =>
+        post {
+          infer(name)
+        }
+      } ~ path(Segment / "metrics") { name =>
+        get {
+          metrics(name)
+        }
+      }
+    } ~ path("v1" / "infer") {
+      post {
+        default.map(infer).getOrElse(complete(StatusCodes.NotFound, "No default model"))
+      }
+    } ~ path("v1" / "metrics") {
+      get {
+        default.map(metrics).getOrElse(complete(registry.toJson))
       }
     }
 
@@ -156,16 +232,17 @@ object Serve extends LazyLogging {
       .map(_.addToCoordinatedShutdown(hardTerminationDeadline = 10.seconds))
     bindingFuture.onComplete {
       case Success(_) =>
-        system.log.info("Smile online at http://{}:{}/v1/infer", addr, port)
+        system.log.info("Smile online at http://{}:{}/v1", addr, port)
       case Failure(ex) =>
         system.log.error("Failed to bind HTTP endpoint, terminating system", ex)
         system.terminate()
     }
+    system.whenTerminated.onComplete(_ => registry.shutdown())
   }
 
   def processJSON[T](schema: StructType, stream: Source[JsValue, Any])
-                    (processor: Option[Tuple] => T): Source[T, Any]  = {
-    stream.map(schema.json(_)).map(processor)
+                    (processor: Source[Option[Tuple], Any] => Source[T, Any]): Source[T, Any]  = {
+    processor(stream.map(schema.json(_)))
   }
 
   def getCsvFormatByte(format: String, param: Array[String]): Byte = {
@@ -176,7 +253,7 @@ object Serve extends LazyLogging {
   }
 
   def processCSV[T](schema: StructType, bytes: Source[ByteString, Any], format: String)
-                   (processor: Option[Tuple] => T): Source[T, Any] = {
+                   (processor: Source[Option[Tuple], Any] => Source[T, Any]): Source[T, Any] = {
     var delimiter = CsvParsing.Comma
     var quote = CsvParsing.DoubleQuote
     var escape = CsvParsing.Backslash
@@ -199,13 +276,9 @@ object Serve extends LazyLogging {
     val lines = bytes.via(CsvParsing.lineScanner(delimiter, quote, escape))
 
     if (header) {
-      lines.via(CsvToMap.toMapAsStrings())
-        .map(schema.csv(_))
-        .map(processor)
+      processor(lines.via(CsvToMap.toMapAsStrings()).map(schema.csv(_)))
     } else {
-      lines.map(_.map(_.utf8String))
-        .map(schema.csv(_))
-        .map(processor)
+      processor(lines.map(_.map(_.utf8String)).map(schema.csv(_)))
     }
   }
 }
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile Shell is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile Shell is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.shell
+
+import java.util.concurrent.atomic.{AtomicLongArray, LongAdder}
+import spray.json._
+import spray.json.DefaultJsonProtocol._
+
+/**
+  * A lock-free histogram with fixed bucket upper bounds.
+  * @param bounds the inclusive upper bounds of buckets in ascending order.
+  *               The last bucket collects the values beyond the last bound.
+  */
+class Histogram(val bounds: Array[Double]) {
+  private val counts = new AtomicLongArray(bounds.length + 1)
+  private val sum = new LongAdder
+
+  /**
+    * Records a value.
+    * @param value the value.
+    */
+  def record(value: Double): Unit = {
+    var i = 0
+    while (i < bounds.length && value > bounds(i)) i += 1
+    counts.incrementAndGet(i)
+    sum.add(Math.round(value * 1000))
+  }
+
+  /** Returns the snapshot of bucket counts. */
+  def snapshot: Array[Long] = Array.tabulate(counts.length())(counts.get)
+
+  /**
+    * Returns the estimated quantile, i.e. the upper bound of the bucket
+    * where the quantile falls in.
+    * @param q the quantile in [0, 1].
+    */
+  def quantile(q: Double, counts: Array[Long] = snapshot): Double = {
+    val n = counts.sum
+    if (n == 0) return 0.0
+
+    val rank = Math.ceil(q * n).toLong max 1
+    var cumulative = 0L
+    var i = 0
+    while (i < bounds.length) {
+      cumulative += counts(i)
+      if (cumulative >= rank) return bounds(i)
+      i += 1
+    }
+    Double.PositiveInfinity
+  }
+
+  /** JSON has no infinity, which denotes the overflow bucket. */
+  private def json(x: Double): JsValue = {
+    if (x.isInfinite) JsString("+Inf") else JsNumber(x)
+  }
+
+  /** Returns the JSON representation. */
+  def toJson: JsValue = {
+    val counts = snapshot
+    val n = counts.sum
+    JsObject(
+      "count" -> n.toJson,
+      "mean" -> (if (n == 0) 0.0 else sum.sum() / 1000.0 / n).toJson,
+      "p50" -> json(quantile(0.50, counts)),
+      "p90" -> json(quantile(0.90, counts)),
+      "p99" -> json(quantile(0.99, counts)),
+      "bounds" -> bounds.toJson,
+      "counts" -> counts.toJson
+    )
+  }
+}
+
+/**
+  * The throughput and latency metrics of a served model.
+  * @param model the model name.
+  */
+class ServeMetrics(val model: String) {
+  private val start = System.nanoTime()
+  private val rows = new LongAdder
+  private val invalid = new LongAdder
+  private val batches = new LongAdder
+  /** The histogram of batch latency in milliseconds, including the queueing time. */
+  val latency = new Histogram(Array(0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 25, 50, 100, 250, 500, 1000))
+  /** The histogram of batch size. */
+  val batchSize = new Histogram(Array(1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024))
+
+  /**
+    * Records a prediction batch.
+    * @param size the number of rows in the batch.
+    * @param errors the number of invalid rows in the batch.
+    * @param nanos the elapsed time from the arrival of the first row
+    *              to the end of batch prediction in nanoseconds.
+    */
+  def record(size: Int, errors: Int, nanos: Long): Unit = {
+    rows.add(size)
+    invalid.add(errors)
+    batches.increment()
+    batchSize.record(size)
+    latency.record(nanos / 1E6)
+  }
+
+  /** Returns the JSON representation. */
+  def toJson: JsValue = {
+    val n = rows.sum()
+    val seconds = (System.nanoTime() - start) / 1E9
+    JsObject(
+      "model" -> JsString(model),
+      "rows" -> n.toJson,
+      "invalid" -> invalid.sum().toJson,
+      "batches" -> batches.sum().toJson,
+      "uptime" -> seconds.toJson,
+      "throughput" -> (n / seconds).toJson,
+      "latency" -> latency.toJson,
+      "batch_size" -> batchSize.toJson
+    )
+  }
+}
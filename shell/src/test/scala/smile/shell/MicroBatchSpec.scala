@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile Shell is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile Shell is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.shell
+
+import java.util.concurrent.{ConcurrentLinkedQueue, Executors}
+import scala.concurrent.{Await, ExecutionContext}
+import scala.concurrent.duration._
+import scala.jdk.CollectionConverters._
+import org.specs2.mutable._
+import smile.data.Tuple
+import smile.data.`type`.{DataTypes, StructField, StructType}
+
+class MicroBatchSpec extends Specification {
+  sequential
+
+  val schema = new StructType(new StructField("x", DataTypes.IntegerType))
+  def row(x: Int): Option[Tuple] = Some(Tuple.of(Array[AnyRef](Integer.valueOf(x)), schema))
+
+  /** Returns the micro-batch stage of doubling x and the sizes of predicted batches. */
+  def doubler(batchSize: Int, window: FiniteDuration): (MicroBatch[Int], ConcurrentLinkedQueue[Int]) = {
+    val sizes = new ConcurrentLinkedQueue[Int]()
+    val executor = ExecutionContext.fromExecutorService(Executors.newFixedThreadPool(2))
+    val predict = (x: Array[Tuple]) => {
+      sizes.add(x.length)
+      x.map(_.getInt(0) * 2)
+    }
+    (new MicroBatch[Int](predict, -1, batchSize, window, 2, new ServeMetrics("doubler"), executor), sizes)
+  }
+
+  "MicroBatch" should {
+    "order" in {
+      val (stage, _) = doubler(16, 5.millis)
+      val futures = (0 until 1000).map(i => stage.submit(row(i)))
+      futures.map(Await.result(_, 10.seconds)) mustEqual (0 until 1000).map(_ * 2)
+    }
+    "invalid rows" in {
+      val (stage, sizes) = doubler(4, 1.second)
+      val futures = Seq(row(1), None, row(3), None).map(stage.submit)
+      val y = futures.map(Await.result(_, 10.seconds))
+      y mustEqual Seq(2, -1, 6, -1)
+      // Only the valid rows are predicted.
+      sizes.asScala.toSeq mustEqual Seq(2)
+      stage.metrics.batchSize.snapshot.sum mustEqual 1
+    }
+    "cross-request batching" in {
+      val (stage, sizes) = doubler(8, 1.second)
+      // Single-row requests from concurrent clients.
+      val clients = Executors.newFixedThreadPool(8)
+      val futures = (0 until 8).map { i =>
+        clients.submit(() => stage.submit(row(i))).get()
+      }
+      clients.shutdown()
+      futures.map(Await.result(_, 10.seconds)) mustEqual (0 until 8).map(_ * 2)
+      sizes.asScala.toSeq mustEqual Seq(8)
+    }
+    "batch window" in {
+      val (stage, sizes) = doubler(100, 20.millis)
+      val futures = (0 until 3).map(i => stage.submit(row(i)))
+      futures.map(Await.result(_, 10.seconds)) mustEqual Seq(0, 2, 4)
+      sizes.asScala.toSeq mustEqual Seq(3)
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile Shell is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile Shell is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.shell
+
+import java.io.File
+import java.nio.file.{Files, StandardOpenOption}
+import java.util.Properties
+import scala.collection.mutable.ArrayBuffer
+import scala.concurrent.Await
+import scala.concurrent.duration._
+import org.specs2.mutable._
+import spray.json._
+import spray.json.DefaultJsonProtocol._
+import smile.read
+import smile.data.{DataFrame, Tuple}
+import smile.data.formula._
+import smile.data.measure.NominalScale
+import smile.data.`type`.{DataTypes, StructField, StructType}
+import smile.model.ClassificationModel
+import smile.util.Paths
+
+class ModelRegistrySpec extends Specification {
+  sequential
+
+  lazy val iris: DataFrame = read.arff(Paths.getTestData("weka/iris.arff"))
+  lazy val model: ClassificationModel = ClassificationModel("cart", "class" ~ ".", iris, new Properties())
+
+  /** Writes a model version padded with the given number of bytes. */
+  def save(dir: File, version: String, padding: Int = 0): File = {
+    val file = new File(dir, s"$version.sml")
+    smile.write(model, file.toPath)
+    if (padding > 0) Files.write(file.toPath, new Array[Byte](padding), StandardOpenOption.APPEND)
+    file
+  }
+
+  /** Returns the served version of a model, which is loaded if not resident. */
+  def version(registry: ModelRegistry, name: String): String = {
+    Await.result(registry(name).get, 10.seconds).version
+  }
+
+  /** Returns the resident flags of registered models. */
+  def resident(registry: ModelRegistry): Map[String, Boolean] = {
+    registry.toJson.asJsObject.fields("models") match {
+      case JsArray(models) => models.map { model =>
+        val fields = model.asJsObject.fields
+        fields("name").convertTo[String] -> fields("resident").convertTo[Boolean]
+      }.toMap
+      case json => throw new IllegalStateException(s"Unexpected JSON: $json")
+    }
+  }
+
+  /** Waits until the condition holds or times out in 10 seconds. */
+  def await(condition: => Boolean): Boolean = {
+    val deadline = System.nanoTime() + 10.seconds.toNanos
+    while (!condition && System.nanoTime() < deadline) Thread.sleep(10)
+    condition
+  }
+
+  "ModelRegistry" should {
+    "version" in {
+      ModelRegistry.version(new File("model.sml")) mustEqual "model"
+      ModelRegistry.version(new File("1.2")) mustEqual "1.2"
+      ModelRegistry.version(new File("1.2.sml")) mustEqual "1.2"
+    }
+    "version ordering" in {
+      val versions = Seq("1.10", "1.9", "2", "1.9.1", "v3", "1.2").sorted(ModelRegistry.versionOrdering)
+      versions mustEqual Seq("1.2", "1.9", "1.9.1", "1.10", "2", "v3")
+    }
+    "latest" in {
+      val dir = Files.createTempDirectory("smile").toFile
+      Seq("1.sml", "10.sml", "9.sml", ".11.sml").foreach(name => new File(dir, name).createNewFile())
+      ModelRegistry.latest(dir).map(_.getName) must beSome("10.sml")
+    }
+    "histogram" in {
+      val histogram = new Histogram(Array(1.0, 2.0, 4.0))
+      (1 to 100).foreach(i => histogram.record(if (i <= 90) 0.5 else 3.0))
+      histogram.quantile(0.5) mustEqual 1.0
+      histogram.quantile(0.99) mustEqual 4.0
+      histogram.snapshot.toSeq mustEqual Seq(90L, 0L, 10L, 0L)
+    }
+    "hot swap" in {
+      val dir = Files.createTempDirectory("smile").toFile
+      val registry = new ModelRegistry(ServeConfig(parallelism = 2, warmup = 0))
+      registry.register("iris", save(dir, "1"))
+      registry("unknown") must beNone
+      version(registry, "iris") mustEqual "1"
+
+      // Version 3 arrives while version 2 is being loaded,
+      // and is loaded after the in-flight loading.
+      registry.register("iris", save(dir, "2"))
+      registry.register("iris", save(dir, "3"))
+      val swapped = await(version(registry, "iris") == "3")
+      registry.shutdown()
+      swapped must beTrue
+    }
+    "LRU eviction" in {
+      val dir = Files.createTempDirectory("smile").toFile
+      // Two padded models exceed the budget of 1 MB.
+      val registry = new ModelRegistry(ServeConfig(parallelism = 2, memoryBudget = 1, warmup = 0))
+      registry.register("a", save(dir, "a", 600 * 1024))
+      registry.register("b", save(dir, "b", 600 * 1024))
+
+      version(registry, "a") mustEqual "a"
+      resident(registry) mustEqual Map("a" -> true, "b" -> false)
+      version(registry, "b") mustEqual "b"
+      resident(registry) mustEqual Map("a" -> false, "b" -> true)
+      // The evicted model is reloaded on demand.
+      version(registry, "a") mustEqual "a"
+      resident(registry) mustEqual Map("a" -> true, "b" -> false)
+      registry.shutdown()
+      ok
+    }
+    "warmup" in {
+      val nominal = new NominalScale("red", "green")
+      val schema = new StructType(
+        new StructField("color", DataTypes.IntegerType, nominal),
+        new StructField("x", DataTypes.DoubleType))
+      val batches = new ArrayBuffer[Array[Tuple]]()
+      val predict = (x: Array[Tuple]) => {
+        batches += x
+        x.map[JsValue](_ => JsNull)
+      }
+
+      ModelRegistry.warmup(schema, predict, 4, 3).isSuccess must beTrue
+      batches.size mustEqual 3
+      batches.forall(_.length == 4) must beTrue
+      // The first level of categorical fields and zero otherwise.
+      batches.head.head.get(0) mustEqual nominal.valueOf("red")
+      batches.head.head.getDouble(1) mustEqual 0.0
+
+      ModelRegistry.warmup(schema, predict, 4, 0).isSuccess must beTrue
+      batches.size mustEqual 3
+      ModelRegistry.warmup(schema, _ => throw new IllegalStateException("boom"), 4, 1).isFailure must beTrue
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2010-2021 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.math.simd;
+
+/**
+ * Vectorized kernels of the innermost vector operations such as dot
+ * product and distances, which dominate the cost of nearest neighbor
+ * search, clustering and kernel machines. If the incubator module
+ * {@code jdk.incubator.vector} is enabled, e.g. by the JVM option
+ * {@code --add-modules jdk.incubator.vector}, the kernels are implemented
+ * with the Java Vector API that compiles to SIMD instructions of the
+ * underlying hardware. Otherwise, they fall back to scalar loops.
+ * The SIMD kernels can be disabled by the system property
+ * {@code -Dsmile.simd=false}.
+ * <p>
+ * Note that the SIMD kernels sum the elements in a different order
+ * from the scalar loops so that the results may differ in the last
+ * bits. The kernels don't check the array lengths, which is the
+ * responsibility of caller.
+ *
+ * @author Haifeng Li
+ */
+public interface SIMD {
+    /** The default SIMD engine. */
+    SIMD engine = getInstance();
+
+    /**
+     * Creates an instance. Returns the Java Vector API implementation
+     * if the module {@code jdk.incubator.vector} is available and
+     * not disabled by the system property {@code smile.simd}.
+     * @return a SIMD instance.
+     */
+    static SIMD getInstance() {
+        boolean enabled = Boolean.parseBoolean(System.getProperty("smile.simd", "true"));
+        if (enabled && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return new VectorSIMD();
+            } catch (LinkageError e) {
+                org.slf4j.LoggerFactory.getLogger(SIMD.class).warn("Failed to load Java Vector API: {}", e.getMessage());
+            }
+        }
+        return new ScalarSIMD();
+    }
+
+    /**
+     * Returns true if the kernels are vectorized.
+     * @return true if the kernels are vectorized.
+     */
+    boolean isVectorized();
+
+    /**
+     * Returns the dot product between two vectors.
+     * @param x a vector.
+     * @param y a vector.
+     * @return the dot product.
+     */
+    double dot(double[] x, double[] y);
+
+    /**
+     * Returns the dot product between two vectors.
+     * @param x a vector.
+     * @param y a vector.
+     * @return the dot product.
+     */
+    float dot(float[] x, float[] y);
+
+    /**
+     * Returns the dot product between a float vector and an 8-bit
+     * integer vector, which is the inner loop of matrix multiplication
+     * with quantized weights.
+     * @param x a vector.
+     * @param xOffset the offset of first element of x.
+     * @param q an 8-bit integer vector.
+     * @param qOffset the offset of first element of q.
+     * @param n the number of elements.
+     * @return the dot product.
+     */
+    float dot(float[] x, int xOffset, byte[] q, int qOffset, int n);
+
+    /**
+     * Returns the squared Euclidean distance between two vectors.
+     * @param x a vector.
+     * @param y a vector.
+     * @return the squared Euclidean distance.
+     */
+    double squaredDistance(double[] x, double[] y);
+
+    /**
+     * Returns the squared Euclidean distance between two vectors.
+     * The sum is accumulated in double precision.
+     * @param x a vector.
+     * @param y a vector.
+     * @return the squared Euclidean distance.
+     */
+    double squaredDistance(float[] x, float[] y);
+
+    /**
+     * Returns the Manhattan distance between two vectors.
+     * @param x a vector.
+     * @param y a vector.
+     * @return the Manhattan distance.
+     */
+    double manhattan(double[] x, double[] y);
+
+    /**
+     * Returns the Manhattan distance between two vectors.
+     * The sum is accumulated in double precision.
+     * @param x a vector.
+     * @param y a vector.
+     * @return the Manhattan distance.
+     */
+    double manhattan(float[] x, float[] y);
+
+    /**
+     * Returns the sum of a vector.
+     * @param x a vector.
+     * @return the sum.
+     */
+    double sum(double[] x);
+
+    /**
+     * Returns the Pearson correlation coefficient between two vectors,
+     * computed in two passes of centered sums.
+     * @param x a vector.
+     * @param y a vector.
+     * @return the correlation coefficient, or NaN if either vector
+     *         is constant.
+     */
+    double cor(double[] x, double[] y);
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2010-2021 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.math.simd;
+
+/**
+ * The fallback of SIMD kernels with scalar loops.
+ *
+ * @author Haifeng Li
+ */
+final class ScalarSIMD implements SIMD {
+    /** Constructor. */
+    ScalarSIMD() {
+
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return false;
+    }
+
+    @Override
+    public double dot(double[] x, double[] y) {
+        double sum = 0.0;
+        for (int i = 0; i < x.length; i++) {
+            sum += x[i] * y[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] x, float[] y) {
+        float sum = 0.0F;
+        for (int i = 0; i < x.length; i++) {
+            sum += x[i] * y[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] x, int xOffset, byte[] q, int qOffset, int n) {
+        float sum = 0.0F;
+        for (int i = 0; i < n; i++) {
+            sum += x[xOffset + i] * q[qOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double squaredDistance(double[] x, double[] y) {
+        double sum = 0.0;
+        for (int i = 0; i < x.length; i++) {
+            double d = x[i] - y[i];
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    @Override
+    public double squaredDistance(float[] x, float[] y) {
+        double sum = 0.0;
+        for (int i = 0; i < x.length; i++) {
+            // convert x and y for better precision
+            double d = (double) x[i] - (double) y[i];
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    @Override
+    public double manhattan(double[] x, double[] y) {
+        double sum = 0.0;
+        for (int i = 0; i < x.length; i++) {
+            sum += Math.abs(x[i] - y[i]);
+        }
+        return sum;
+    }
+
+    @Override
+    public double manhattan(float[] x, float[] y) {
+        double sum = 0.0;
+        for (int i = 0; i < x.length; i++) {
+            sum += Math.abs((double) x[i] - (double) y[i]);
+        }
+        return sum;
+    }
+
+    @Override
+    public double sum(double[] x) {
+        double sum = 0.0;
+        for (double xi : x) {
+            sum += xi;
+        }
+        return sum;
+    }
+
+    @Override
+    public double cor(double[] x, double[] y) {
+        int n = x.length;
+        double mx = sum(x) / n;
+        double my = sum(y) / n;
+
+        double sxy = 0.0, sxx = 0.0, syy = 0.0;
+        for (int i = 0; i < n; i++) {
+            double dx = x[i] - mx;
+            double dy = y[i] - my;
+            sxy += dx * dy;
+            sxx += dx * dx;
+            syy += dy * dy;
+        }
+
+        if (sxx == 0 || syy == 0) {
+            return Double.NaN;
+        }
+
+        return sxy / Math.sqrt(sxx * syy);
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2010-2021 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.math.simd;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD kernels with the Java Vector API. The class is loaded only if
+ * the module {@code jdk.incubator.vector} is enabled. Each kernel
+ * processes the arrays in the preferred vector shape of the platform
+ * and finishes the tail with a scalar loop.
+ *
+ * @author Haifeng Li
+ */
+final class VectorSIMD implements SIMD {
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(VectorSIMD.class);
+    /** The preferred species of double vectors. */
+    private static final VectorSpecies<Double> D = DoubleVector.SPECIES_PREFERRED;
+    /** The preferred species of float vectors. */
+    private static final VectorSpecies<Float> F = FloatVector.SPECIES_PREFERRED;
+    /**
+     * The species of byte vectors with as many lanes as float vectors,
+     * which is null if the shape is not supported by the platform.
+     */
+    private static final VectorSpecies<Byte> B = byteSpecies();
+    /**
+     * The number of elements of float arrays to accumulate in single
+     * precision before adding the partial sums in double precision.
+     */
+    private static final int FLOAT_BLOCK = 1024;
+
+    /** Constructor. */
+    VectorSIMD() {
+        logger.info("SIMD kernels with {}-bit vectors of Java Vector API", D.vectorBitSize());
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+
+    @Override
+    public double dot(double[] x, double[] y) {
+        int n = x.length;
+        int bound = D.loopBound(n);
+        DoubleVector acc = DoubleVector.zero(D);
+        int i = 0;
+        for (; i < bound; i += D.length()) {
+            DoubleVector a = DoubleVector.fromArray(D, x, i);
+            DoubleVector b = DoubleVector.fromArray(D, y, i);
+            acc = a.fma(b, acc);
+        }
+
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            sum += x[i] * y[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] x, float[] y) {
+        int n = x.length;
+        int bound = F.loopBound(n);
+        FloatVector acc = FloatVector.zero(F);
+        int i = 0;
+        for (; i < bound; i += F.length()) {
+            FloatVector a = FloatVector.fromArray(F, x, i);
+            FloatVector b = FloatVector.fromArray(F, y, i);
+            acc = a.fma(b, acc);
+        }
+
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            sum += x[i] * y[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dot(float[] x, int xOffset, byte[] q, int qOffset, int n) {
+        int i = 0;
+        float sum = 0.0F;
+        if (B != null) {
+            int bound = F.loopBound(n);
+            FloatVector acc = FloatVector.zero(F);
+            for (; i < bound; i += F.length()) {
+                FloatVector a = FloatVector.fromArray(F, x, xOffset + i);
+                FloatVector b = (FloatVector) ByteVector.fromArray(B, q, qOffset + i).castShape(F, 0);
+                acc = a.fma(b, acc);
+            }
+            sum = acc.reduceLanes(VectorOperators.ADD);
+        }
+
+        for (; i < n; i++) {
+            sum += x[xOffset + i] * q[qOffset + i];
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the species of byte vectors with as many lanes as
+     * the preferred float vectors.
+     * @return the byte species or null if not supported.
+     */
+    private static VectorSpecies<Byte> byteSpecies() {
+        try {
+            return VectorSpecies.of(byte.class, VectorShape.forBitSize(F.length() * Byte.SIZE));
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public double squaredDistance(double[] x, double[] y) {
+        int n = x.length;
+        int bound = D.loopBound(n);
+        DoubleVector acc = DoubleVector.zero(D);
+        int i = 0;
+        for (; i < bound; i += D.length()) {
+            DoubleVector d = DoubleVector.fromArray(D, x, i).sub(DoubleVector.fromArray(D, y, i));
+            acc = d.fma(d, acc);
+        }
+
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            double d = x[i] - y[i];
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    @Override
+    public double squaredDistance(float[] x, float[] y) {
+        int n = x.length;
+        int bound = F.loopBound(n);
+        double sum = 0.0;
+        int i = 0;
+        while (i < bound) {
+            int end = Math.min(bound, i + FLOAT_BLOCK);
+            FloatVector acc = FloatVector.zero(F);
+            for (; i < end; i += F.length()) {
+                FloatVector d = FloatVector.fromArray(F, x, i).sub(FloatVector.fromArray(F, y, i));
+                acc = d.fma(d, acc);
+            }
+            sum += acc.reduceLanes(VectorOperators.ADD);
+        }
+
+        for (; i < n; i++) {
+            double d = (double) x[i] - (double) y[i];
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    @Override
+    public double manhattan(double[] x, double[] y) {
+        int n = x.length;
+        int bound = D.loopBound(n);
+        DoubleVector acc = DoubleVector.zero(D);
+        int i = 0;
+        for (; i < bound; i += D.length()) {
+            DoubleVector d = DoubleVector.fromArray(D, x, i).sub(DoubleVector.fromArray(D, y, i));
+            acc = acc.add(d.abs());
+        }
+
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            sum += Math.abs(x[i] - y[i]);
+        }
+        return sum;
+    }
+
+    @Override
+    public double manhattan(float[] x, float[] y) {
+        int n = x.length;
+        int bound = F.loopBound(n);
+        double sum = 0.0;
+        int i = 0;
+        while (i < bound) {
+            int end = Math.min(bound, i + FLOAT_BLOCK);
+            FloatVector acc = FloatVector.zero(F);
+            for (; i < end; i += F.length()) {
+                FloatVector d = FloatVector.fromArray(F, x, i).sub(FloatVector.fromArray(F, y, i));
+                acc = acc.add(d.abs());
+            }
+            sum += acc.reduceLanes(VectorOperators.ADD);
+        }
+
+        for (; i < n; i++) {
+            sum += Math.abs((double) x[i] - (double) y[i]);
+        }
+        return sum;
+    }
+
+    @Override
+    public double sum(double[] x) {
+        int n = x.length;
+        int bound = D.loopBound(n);
+        DoubleVector acc = DoubleVector.zero(D);
+        int i = 0;
+        for (; i < bound; i += D.length()) {
+            acc = acc.add(DoubleVector.fromArray(D, x, i));
+        }
+
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            sum += x[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double cor(double[] x, double[] y) {
+        int n = x.length;
+        double mx = sum(x) / n;
+        double my = sum(y) / n;
+
+        int bound = D.loopBound(n);
+        DoubleVector vx = DoubleVector.broadcast(D, mx);
+        DoubleVector vy = DoubleVector.broadcast(D, my);
+        DoubleVector axy = DoubleVector.zero(D);
+        DoubleVector axx = DoubleVector.zero(D);
+        DoubleVector ayy = DoubleVector.zero(D);
+        int i = 0;
+        for (; i < bound; i += D.length()) {
+            DoubleVector dx = DoubleVector.fromArray(D, x, i).sub(vx);
+            DoubleVector dy = DoubleVector.fromArray(D, y, i).sub(vy);
+            axy = dx.fma(dy, axy);
+            axx = dx.fma(dx, axx);
+            ayy = dy.fma(dy, ayy);
+        }
+
+        double sxy = axy.reduceLanes(VectorOperators.ADD);
+        double sxx = axx.reduceLanes(VectorOperators.ADD);
+        double syy = ayy.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            double dx = x[i] - mx;
+            double dy = y[i] - my;
+            sxy += dx * dy;
+            sxx += dx * dx;
+            syy += dy * dy;
+        }
+
+        if (sxx == 0 || syy == 0) {
+            return Double.NaN;
+        }
+
+        return sxy / Math.sqrt(sxx * syy);
+    }
+}
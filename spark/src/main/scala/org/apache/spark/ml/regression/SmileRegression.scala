@@ -71,8 +71,9 @@ private[ml] object SmileRegressionParams {
   * A Spark Estimator based on Smile's regression algorithms.
   * It allows to add a Smile model into a Spark MLLib Pipeline.
   *
-  * @note SmileRegression will collect the training Dataset
-  *       to the Spark Driver but train the model on a Spark Executor.
+  * @note SmileRegression trains the model on a single Spark Executor,
+  *       which gathers the whole training Dataset. For independent
+  *       models of groups, see smile.spark.partition.
   */
 class SmileRegression(override val uid: String)
   extends Predictor[Vector, SmileRegression, SmileRegressionModel]
@@ -91,19 +92,20 @@ class SmileRegression(override val uid: String)
       instr.logDataset(dataset)
       instr.logParams(this, labelCol, featuresCol, predictionCol)
 
-      val spark = dataset.sparkSession
-      val sc = spark.sparkContext
-
       val df = dataset.select($(labelCol), $(featuresCol))
 
       val persist = dataset.storageLevel == StorageLevel.NONE && (df.storageLevel == StorageLevel.NONE)
       if (persist) df.persist(StorageLevel.MEMORY_AND_DISK)
 
-      val x = df.select(getFeaturesCol).collect().map(row => row.getAs[Vector](0).toArray)
-      val y = df.select(getLabelCol).collect().map(row => row.getDouble(0))
-
-      val trainersRDD = sc.parallelize(Seq(getTrainer))
-      val model = trainersRDD.map(_.apply(x, y)).collect()(0)
+      // Gathers the training data into a single task and trains the model
+      // on the executor, rather than collecting the rows to the driver.
+      // The shuffle keeps the upstream stages running in parallel,
+      // which coalesce(1) would collapse into the training task.
+      val fit = getTrainer
+      val model = df.rdd.repartition(1).mapPartitions { rows =>
+        val data = rows.map(row => (row.getAs[Vector](1).toArray, row.getDouble(0))).toArray
+        Iterator.single(fit(data.map(_._1), data.map(_._2)))
+      }.collect()(0)
 
       if (persist) df.unpersist()
 
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package org.apache.spark.sql
+
+import java.io.ByteArrayOutputStream
+import java.nio.channels.Channels
+import org.apache.arrow.vector.ipc.WriteChannel
+import org.apache.arrow.vector.ipc.message.MessageSerializer
+import org.apache.spark.rdd.RDD
+import org.apache.spark.sql.types._
+import org.apache.spark.sql.util.ArrowUtils
+
+/**
+  * Access to the Arrow serialization of SparkSQL DataFrame, which is
+  * private to Spark SQL. Spark converts the partitions to Arrow record
+  * batches on the executors so that the data are transferred in the
+  * columnar format without per-row objects.
+  */
+object ArrowOps {
+  /**
+    * Returns true if all columns can be transferred in Arrow format
+    * and read by smile.io.Arrow.
+    *
+    * @param schema Spark schema
+    * @return true if the schema has only flat columns of supported types.
+    */
+  def isSupported(schema: StructType): Boolean = {
+    schema.nonEmpty && schema.forall { field =>
+      field.dataType match {
+        case BooleanType | ByteType | ShortType | IntegerType | LongType => true
+        case FloatType | DoubleType | StringType | BinaryType | DateType => true
+        case _: DecimalType => true
+        case _ => false
+      }
+    }
+  }
+
+  /**
+    * Returns the Arrow IPC message of the schema of a DataFrame,
+    * which precedes the record batches in an Arrow stream.
+    *
+    * @param df Spark DataFrame
+    * @return the serialized schema message.
+    */
+  def schema(df: DataFrame): Array[Byte] = {
+    val timeZoneId = df.sparkSession.sessionState.conf.sessionLocalTimeZone
+    val schema = ArrowUtils.toArrowSchema(df.schema, timeZoneId, true)
+    val bytes = new ByteArrayOutputStream
+    MessageSerializer.serialize(new WriteChannel(Channels.newChannel(bytes)), schema)
+    bytes.toByteArray
+  }
+
+  /**
+    * Returns the RDD of serialized Arrow record batches. The number of
+    * records per batch is controlled by spark.sql.execution.arrow.maxRecordsPerBatch.
+    *
+    * @param df Spark DataFrame
+    * @return the RDD of serialized record batches.
+    */
+  def batches(df: DataFrame): RDD[Array[Byte]] = df.toArrowBatchRdd
+}
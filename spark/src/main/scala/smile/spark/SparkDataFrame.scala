@@ -17,21 +17,60 @@
 
 package smile.spark
 
+import java.io.{ByteArrayInputStream, SequenceInputStream}
 import org.apache.spark.ml.DataTypeOps
+import org.apache.spark.sql.ArrowOps
 import smile.data.`type`.StructType
 import smile.data.{DataFrame, Tuple}
+import smile.io.Arrow
 import scala.jdk.CollectionConverters._
 
 /** Converts Smile DataFrame to SparkSQL DataFrame */
 object SparkDataFrame {
-  /** Returns a local Smile DataFrame. */
+  /**
+    * Returns a local Smile DataFrame. If all columns are flat and of
+    * the types supported by Arrow, the data are transferred as Arrow
+    * record batches. Otherwise, the rows are collected to the driver.
+    */
   def apply(df: org.apache.spark.sql.DataFrame): DataFrame = {
+    if (ArrowOps.isSupported(df.schema)) arrow(df) else rows(df)
+  }
+
+  /**
+    * Returns a local Smile DataFrame by collecting the rows.
+    * It supports nested and user defined types.
+    */
+  def rows(df: org.apache.spark.sql.DataFrame): DataFrame = {
     val schema = DataTypeOps.toSmileSchema(df.schema)
     DataFrame.of(
       df.collect()
         .map(row => SparkRowTuple(row, schema))
         .toList
-        .asJava)
+        .asJava,
+      schema)
+  }
+
+  /**
+    * Returns a local Smile DataFrame by the columnar transfer of Arrow
+    * record batches. The partitions are serialized on the executors
+    * in parallel by a single job and collected to the driver, where
+    * they are decoded into Smile vectors without per-row objects.
+    */
+  def arrow(df: org.apache.spark.sql.DataFrame): DataFrame = {
+    val messages = Iterator.single(ArrowOps.schema(df)) ++ ArrowOps.batches(df).collect().iterator
+    val input = new SequenceInputStream(messages.map(new ByteArrayInputStream(_)).asJavaEnumeration)
+    val stream = new Arrow().stream(input)
+    val frames = try {
+      stream.iterator().asScala.toArray
+    } finally {
+      stream.close()
+    }
+
+    frames.length match {
+      case 0 => rows(df)
+      case 1 => frames(0)
+      case _ => frames(0).union(frames.tail: _*)
+    }
   }
 }
 
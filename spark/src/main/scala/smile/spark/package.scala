@@ -19,8 +19,11 @@ package smile
 
 import java.util.Properties
 import java.util.function.BiFunction
+import scala.jdk.CollectionConverters._
 import scala.reflect.ClassTag
-import org.apache.spark.sql.SparkSession
+import org.apache.spark.ml.DataTypeOps
+import org.apache.spark.sql.{Row, SparkSession}
+import org.apache.spark.sql.types.{DoubleType, IntegerType}
 import smile.classification.{Classifier, DataFrameClassifier}
 import smile.data.DataFrame
 import smile.data.formula.Formula
@@ -293,4 +296,102 @@ package object spark {
       scores
     }
   }
+
+  /**
+    * Distributed scoring with a broadcast Smile model. The partitions are
+    * scored in batches of rows so that the model sees a Smile DataFrame
+    * instead of one tuple at a time.
+    */
+  object score {
+    /**
+      * Scores a SparkSQL DataFrame with a classifier.
+      *
+      * @param df     the data to score.
+      * @param model  the classifier, which is broadcast to the executors.
+      * @param column the name of prediction column.
+      * @param batch  the number of rows per batch.
+      * @return the data with the column of predicted class labels.
+      */
+    def classification(df: org.apache.spark.sql.DataFrame, model: DataFrameClassifier,
+                       column: String = "prediction", batch: Int = 10000): org.apache.spark.sql.DataFrame = {
+      val bc = df.sparkSession.sparkContext.broadcast(model)
+      apply(df, column, IntegerType, batch) { data => bc.value.predict(data).toSeq }
+    }
+
+    /**
+      * Scores a SparkSQL DataFrame with a regression model.
+      *
+      * @param df     the data to score.
+      * @param model  the regression model, which is broadcast to the executors.
+      * @param column the name of prediction column.
+      * @param batch  the number of rows per batch.
+      * @return the data with the column of predicted values.
+      */
+    def regression(df: org.apache.spark.sql.DataFrame, model: DataFrameRegression,
+                   column: String = "prediction", batch: Int = 10000): org.apache.spark.sql.DataFrame = {
+      val bc = df.sparkSession.sparkContext.broadcast(model)
+      apply(df, column, DoubleType, batch) { data => bc.value.predict(data).toSeq }
+    }
+
+    /** Appends the predictions of each batch of rows as a new column. */
+    private def apply(df: org.apache.spark.sql.DataFrame, column: String,
+                      dataType: org.apache.spark.sql.types.DataType, batch: Int)
+                     (predict: DataFrame => Seq[Any]): org.apache.spark.sql.DataFrame = {
+      if (batch <= 0) {
+        throw new IllegalArgumentException("Invalid batch size: " + batch)
+      }
+
+      val schema = DataTypeOps.toSmileSchema(df.schema)
+      val rdd = df.rdd.mapPartitions { rows =>
+        rows.grouped(batch).flatMap { group =>
+          val data = DataFrame.of(group.map(row => SparkRowTuple(row, schema)).asJava, schema)
+          group.iterator.zip(predict(data)).map { case (row, y) => Row.fromSeq(row.toSeq :+ y) }
+        }
+      }
+
+      df.sparkSession.createDataFrame(rdd, df.schema.add(column, dataType, false))
+    }
+  }
+
+  /**
+    * Embarrassingly parallel training of independent models on the
+    * partitions or groups of a SparkSQL DataFrame. Each model is trained
+    * on an executor and only the models are returned to the driver.
+    */
+  object partition {
+    /**
+      * Trains a model on each non-empty partition.
+      *
+      * @param df      the training data.
+      * @param trainer the model trainer.
+      * @return the models, one per non-empty partition.
+      */
+    def fit[M: ClassTag](df: org.apache.spark.sql.DataFrame)(trainer: DataFrame => M): Array[M] = {
+      val schema = DataTypeOps.toSmileSchema(df.schema)
+      df.rdd.mapPartitions { rows =>
+        if (rows.isEmpty) Iterator.empty
+        else Iterator.single(trainer(DataFrame.of(rows.map(row => SparkRowTuple(row, schema)).toList.asJava, schema)))
+      }.collect()
+    }
+
+    /**
+      * Trains a model for each distinct value of a key column. The data
+      * are repartitioned by the key so that each group is trained in
+      * one task.
+      *
+      * @param df      the training data.
+      * @param key     the name of group key column.
+      * @param trainer the model trainer.
+      * @return the map of key values to models.
+      */
+    def fit[M](df: org.apache.spark.sql.DataFrame, key: String)(trainer: DataFrame => M): Map[Any, M] = {
+      val schema = DataTypeOps.toSmileSchema(df.schema)
+      val index = df.schema.fieldIndex(key)
+      df.repartition(df(key)).rdd.mapPartitions { rows =>
+        rows.toList.groupBy(_.get(index)).iterator.map { case (value, group) =>
+          value -> trainer(DataFrame.of(group.map(row => SparkRowTuple(row, schema)).asJava, schema))
+        }
+      }.collect().toMap
+    }
+  }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2010-2024 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.spark
+
+import org.apache.spark.sql.SparkSession
+import org.specs2.mutable._
+import org.specs2.specification.{AfterAll, BeforeAll}
+import smile.classification.DecisionTree
+import smile.data.formula.Formula
+import smile.io.Read
+import smile.regression.OLS
+import smile.util.Paths
+
+class PartitionSpec extends Specification with BeforeAll with AfterAll {
+
+  implicit var spark: SparkSession = _
+  private val iris = Read.arff(Paths.getTestData("weka/iris.arff"))
+
+  def beforeAll(): Unit = {
+    spark = SparkSession.builder().master("local[*]").getOrCreate()
+  }
+
+  "Distributed scoring" should {
+    "score the partitions in batches with a broadcast classifier" in {
+      val model = DecisionTree.fit(Formula.lhs("class"), iris)
+      val expected = model.predict(iris).groupBy(identity).map { case (k, v) => k -> v.length }
+
+      val data = iris.toSpark.repartition(3)
+      val scored = score.classification(data, model, batch = 16)
+      val actual = scored.select("prediction").collect().map(_.getInt(0)).groupBy(identity).map { case (k, v) => k -> v.length }
+
+      scored.columns.last mustEqual "prediction"
+      scored.count() mustEqual iris.size()
+      actual mustEqual expected
+    }
+
+    "score the partitions with a broadcast regression model" in {
+      val model = OLS.fit(Formula.of("petalwidth", "petallength"), iris)
+      val expected = model.predict(iris).sum
+
+      val scored = score.regression(iris.toSpark.repartition(3), model, "fitted")
+      val actual = scored.select("fitted").collect().map(_.getDouble(0)).sum
+      actual must beCloseTo(expected, 1E-7)
+    }
+  }
+
+  "Partition training" should {
+    "fit a model per partition" in {
+      val models = partition.fit(iris.toSpark.repartition(3)) { data =>
+        OLS.fit(Formula.of("petalwidth", "petallength"), data)
+      }
+
+      models.length mustEqual 3
+    }
+
+    "fit a model per group" in {
+      val models = partition.fit(iris.toSpark, "class") { data =>
+        OLS.fit(Formula.of("petalwidth", "petallength"), data)
+      }
+
+      models.size mustEqual 3
+      models.values.map(_.coefficients().length).toSet mustEqual Set(1)
+    }
+  }
+
+  def afterAll(): Unit = {
+    spark.stop()
+  }
+}
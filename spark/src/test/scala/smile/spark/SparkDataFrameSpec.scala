@@ -24,6 +24,7 @@ import smile.data.`type`.{DataTypes, StructField}
 import smile.util.Paths
 
 case class Person(name:String,age:Int,friends:Array[String])
+case class Account(id:Long,name:String,balance:Double,active:Boolean,opened:java.sql.Date)
 
 class SparkDataFrameSpec extends Specification with BeforeAll with AfterAll{
 
@@ -78,6 +79,26 @@ class SparkDataFrameSpec extends Specification with BeforeAll with AfterAll{
 
       objectSmileMushrooms.schema() mustEqual implicitSmileMushrooms.schema()
     }
+
+    "convert flat DataFrame by Arrow record batches" in {
+      implicit val accountEncoder: Encoder[Account] = Encoders.product[Account]
+
+      val accounts = (0 until 1000).map { i =>
+        Account(i, s"name$i", i * 1.5, i % 2 == 0, java.sql.Date.valueOf(java.time.LocalDate.of(2020, 1, 1).plusDays(i)))
+      }
+      val sparkAccounts = spark.createDataset(accounts).toDF().repartition(4)
+      val arrow = SparkDataFrame.arrow(sparkAccounts)
+      val rows = SparkDataFrame.rows(sparkAccounts)
+
+      arrow.size() mustEqual 1000
+      arrow.schema().fields().map(_.name).toSeq mustEqual Seq("id", "name", "balance", "active", "opened")
+      val expected = (0 until rows.size()).map(i => rows(i).getLong("id") -> rows(i).getString("name")).toSet
+      val actual = (0 until arrow.size()).map(i => arrow(i).getLong("id") -> arrow(i).getString("name")).toSet
+      actual mustEqual expected
+      (0 until arrow.size()).map(i => arrow(i).getDouble("balance")).sum mustEqual (0 until 1000).map(_ * 1.5).sum
+      (0 until arrow.size()).count(i => arrow(i).getBoolean("active")) mustEqual 500
+      (0 until arrow.size()).map(i => arrow(i).getDate("opened").toEpochDay).min mustEqual java.time.LocalDate.of(2020, 1, 1).toEpochDay
+    }
   }
 
   def afterAll(): Unit = {